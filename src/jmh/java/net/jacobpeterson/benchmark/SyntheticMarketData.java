@@ -0,0 +1,251 @@
+package net.jacobpeterson.benchmark;
+
+import com.google.gson.JsonArray;
+import com.google.gson.stream.JsonWriter;
+import net.jacobpeterson.algorithm.update.ticker.AggregateUpdateType;
+import net.jacobpeterson.data.BacktestData;
+import net.jacobpeterson.data.cache.Segment;
+import net.jacobpeterson.data.cache.SegmentColumn;
+import net.jacobpeterson.data.cache.SegmentType;
+import net.jacobpeterson.data.cache.SegmentWriter;
+import net.jacobpeterson.util.GsonUtil;
+import net.jacobpeterson.util.TimeUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A deterministic generator of synthetic Polygon market data so that benchmarks run offline. The data of a ticker and
+ * date only depends on the seed, the ticker, and the date: prices follow a random walk during regular trading hours
+ * (minute aggregates, trades, and quotes with a one-cent spread) on weekdays.
+ */
+public class SyntheticMarketData {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final long MINUTE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final long seed;
+    private final int tradesPerDay;
+    private final int quotesPerDay;
+
+    /**
+     * Instantiates a new Synthetic market data.
+     *
+     * @param seed         the seed
+     * @param tradesPerDay the trades per day
+     * @param quotesPerDay the quotes per day
+     */
+    public SyntheticMarketData(long seed, int tradesPerDay, int quotesPerDay) {
+        this.seed = seed;
+        this.tradesPerDay = tradesPerDay;
+        this.quotesPerDay = quotesPerDay;
+    }
+
+    /**
+     * Generates the data of a ticker on a date.
+     *
+     * @param segmentType the segment type ({@link SegmentType#AGGREGATE} generates minute aggregates)
+     * @param ticker      the ticker
+     * @param date        the date
+     *
+     * @return the segment writer
+     */
+    public SegmentWriter generate(SegmentType segmentType, String ticker, LocalDate date) {
+        Random random = new Random(seed * 31 + ticker.hashCode() * 17L + date.toEpochDay() * 7 + segmentType.ordinal());
+        double price = 20 + Math.floorMod(ticker.hashCode(), 480) + random.nextDouble();
+        long openTimestamp = TimeUtil.toEpochNanos(date, TimeUtil.MARKET_OPEN_TIME);
+        long closeTimestamp = TimeUtil.toEpochNanos(date, TimeUtil.MARKET_CLOSE_TIME);
+
+        SegmentWriter segmentWriter = new SegmentWriter(segmentType);
+        switch (segmentType) {
+            case AGGREGATE:
+                for (long timestamp = openTimestamp; timestamp < closeTimestamp; timestamp += MINUTE_NANOS) {
+                    double open = price;
+                    double high = open;
+                    double low = open;
+                    for (int step = 0; step < 4; step++) {
+                        price = nextPrice(random, price);
+                        high = Math.max(high, price);
+                        low = Math.min(low, price);
+                    }
+                    segmentWriter.addRow();
+                    segmentWriter.setLong(SegmentColumn.TIMESTAMP, timestamp);
+                    segmentWriter.setDouble(SegmentColumn.OPEN, open);
+                    segmentWriter.setDouble(SegmentColumn.HIGH, high);
+                    segmentWriter.setDouble(SegmentColumn.LOW, low);
+                    segmentWriter.setDouble(SegmentColumn.CLOSE, price);
+                    segmentWriter.setDouble(SegmentColumn.VOLUME, 100 + random.nextInt(100_000));
+                    segmentWriter.setInt(SegmentColumn.COUNT, 1 + random.nextInt(1_000));
+                }
+                break;
+            case TRADE:
+                long tradeInterval = (closeTimestamp - openTimestamp) / Math.max(1, tradesPerDay);
+                for (int index = 0; index < tradesPerDay; index++) {
+                    long timestamp = openTimestamp + index * tradeInterval +
+                            (long) (random.nextDouble() * tradeInterval);
+                    price = nextPrice(random, price);
+                    segmentWriter.addRow();
+                    segmentWriter.setLong(SegmentColumn.TIMESTAMP, timestamp);
+                    segmentWriter.setLong(SegmentColumn.PARTICIPANT_TIMESTAMP, timestamp - random.nextInt(1_000_000));
+                    segmentWriter.setLong(SegmentColumn.SEQUENCE_NUMBER, index);
+                    segmentWriter.setDouble(SegmentColumn.PRICE, price);
+                    segmentWriter.setInt(SegmentColumn.SIZE, 1 + random.nextInt(500));
+                    segmentWriter.setInt(SegmentColumn.EXCHANGE, 1 + random.nextInt(20));
+                    segmentWriter.setInt(SegmentColumn.TAPE, 1 + random.nextInt(3));
+                    segmentWriter.setLong(SegmentColumn.CONDITIONS, random.nextInt(4) == 0 ? 1L << 12 : 0);
+                }
+                break;
+            case QUOTE:
+                long quoteInterval = (closeTimestamp - openTimestamp) / Math.max(1, quotesPerDay);
+                for (int index = 0; index < quotesPerDay; index++) {
+                    long timestamp = openTimestamp + index * quoteInterval +
+                            (long) (random.nextDouble() * quoteInterval);
+                    price = nextPrice(random, price);
+                    segmentWriter.addRow();
+                    segmentWriter.setLong(SegmentColumn.TIMESTAMP, timestamp);
+                    segmentWriter.setLong(SegmentColumn.PARTICIPANT_TIMESTAMP, timestamp - random.nextInt(1_000_000));
+                    segmentWriter.setLong(SegmentColumn.SEQUENCE_NUMBER, index);
+                    segmentWriter.setDouble(SegmentColumn.BID_PRICE, price - 0.005);
+                    segmentWriter.setInt(SegmentColumn.BID_SIZE, 1 + random.nextInt(50));
+                    segmentWriter.setInt(SegmentColumn.BID_EXCHANGE, 1 + random.nextInt(20));
+                    segmentWriter.setDouble(SegmentColumn.ASK_PRICE, price + 0.005);
+                    segmentWriter.setInt(SegmentColumn.ASK_SIZE, 1 + random.nextInt(50));
+                    segmentWriter.setInt(SegmentColumn.ASK_EXCHANGE, 1 + random.nextInt(20));
+                    segmentWriter.setInt(SegmentColumn.TAPE, 1 + random.nextInt(3));
+                    segmentWriter.setLong(SegmentColumn.CONDITIONS, 1L);
+                }
+                break;
+            default:
+                throw new UnsupportedOperationException();
+        }
+        return segmentWriter;
+    }
+
+    /**
+     * Gets the next price of the random walk, rounded to a cent.
+     *
+     * @param random the random
+     * @param price  the price
+     *
+     * @return the next price
+     */
+    private static double nextPrice(Random random, double price) {
+        return Math.max(1, Math.round((price + random.nextGaussian() * 0.02) * 100) / 100d);
+    }
+
+    /**
+     * Writes the data of tickers on the weekdays of a date range into the data cache of {@link BacktestData} as
+     * segment files (and optionally as the equivalent JSON files).
+     *
+     * @param backtestData the backtest data
+     * @param tickers      the tickers
+     * @param from         the from (inclusive)
+     * @param to           the to (exclusive)
+     * @param json         true to also write JSON files
+     * @param segmentTypes the segment types
+     *
+     * @return the number of files written
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public int writeDataCache(BacktestData backtestData, Collection<String> tickers, LocalDate from, LocalDate to,
+            boolean json, SegmentType... segmentTypes) throws IOException {
+        int fileCount = 0;
+        for (String ticker : tickers) {
+            for (LocalDate date = from; date.isBefore(to); date = date.plusDays(1)) {
+                if (date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY) {
+                    continue;
+                }
+
+                for (SegmentType segmentType : segmentTypes) {
+                    AggregateUpdateType aggregateUpdateType = segmentType == SegmentType.AGGREGATE ?
+                            AggregateUpdateType.MINUTE : null;
+                    SegmentWriter segmentWriter = generate(segmentType, ticker, date);
+                    segmentWriter.write(backtestData.getDataFile(ticker, date, aggregateUpdateType,
+                            segmentType.getFileExtension()));
+                    fileCount++;
+                    if (json) {
+                        writeJson(segmentWriter.toSegment(), backtestData.getDataFile(ticker, date,
+                                aggregateUpdateType, segmentType.getJsonFileExtension()));
+                        fileCount++;
+                    }
+                }
+            }
+        }
+        return fileCount;
+    }
+
+    /**
+     * Writes a segment as a JSON array of Polygon objects.
+     *
+     * @param segment the segment
+     * @param file    the file
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public static void writeJson(Segment segment, File file) throws IOException {
+        JsonArray jsonArray = new JsonArray();
+        for (int row = 0; row < segment.getRowCount(); row++) {
+            jsonArray.add(segment.toJsonObject(row));
+        }
+
+        file.getParentFile().mkdirs();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+                StandardCharsets.UTF_8))) {
+            GsonUtil.GSON.toJson(jsonArray, new JsonWriter(writer));
+        }
+    }
+
+    /**
+     * Creates ticker names: <code>T0000</code>, <code>T0001</code>, etc.
+     *
+     * @param count the count
+     *
+     * @return the tickers
+     */
+    public static List<String> createTickers(int count) {
+        ArrayList<String> tickers = new ArrayList<>(count);
+        for (int index = 0; index < count; index++) {
+            tickers.add(String.format("T%04d", index));
+        }
+        return tickers;
+    }
+
+    /**
+     * Writes a synthetic data cache. The arguments are: backtest data directory, ticker count, from date, to date
+     * (exclusive), trades per day, and quotes per day.
+     *
+     * @param args the arguments
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 6) {
+            LOGGER.error("Usage: <backtest data directory> <ticker count> <from> <to> <trades per day> " +
+                    "<quotes per day>");
+            return;
+        }
+
+        BacktestData backtestData = new BacktestData(null, null, new File(args[0]));
+        SyntheticMarketData syntheticMarketData = new SyntheticMarketData(0, Integer.parseInt(args[4]),
+                Integer.parseInt(args[5]));
+        int fileCount = syntheticMarketData.writeDataCache(backtestData, createTickers(Integer.parseInt(args[1])),
+                LocalDate.parse(args[2]), LocalDate.parse(args[3]), false, SegmentType.values());
+        LOGGER.info("Wrote {} synthetic data files to {}.", fileCount, backtestData.getDataCacheDirectory());
+    }
+}
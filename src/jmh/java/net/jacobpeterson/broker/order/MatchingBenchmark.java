@@ -0,0 +1,124 @@
+package net.jacobpeterson.broker.order;
+
+import io.github.mainstringargs.alpaca.enums.OrderSide;
+import io.github.mainstringargs.alpaca.enums.OrderTimeInForce;
+import io.github.mainstringargs.alpaca.enums.OrderType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link MatchingEngine} under synthetic load: a random walk of quotes against a book of resting limit
+ * and stop orders that is replenished as orders fill, and the submission and cancellation of resting orders.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MatchingBenchmark {
+
+    private static final int PRICE_COUNT = 1 << 16;
+    private static final long START_TIMESTAMP = 1_583_159_400_000_000_000L; // 2020-03-02T09:30-05:00
+
+    @Param({"100", "10000"})
+    private int restingOrderCount;
+
+    private MatchingEngine matchingEngine;
+    private OrderBook orderBook;
+    private Random random;
+    private double[] prices;
+    private int priceIndex;
+    private long timestamp;
+    private int filledCount;
+
+    /**
+     * Creates the matching engine with its resting orders and the random walk of prices.
+     */
+    @Setup
+    public void setup() {
+        matchingEngine = new MatchingEngine();
+        matchingEngine.setOrderListener((orderID, orderEvent, timestamp, price, quantity) -> {
+            if (orderEvent == OrderEvent.FILL) {
+                filledCount++;
+            }
+        });
+        orderBook = matchingEngine.getOrderBook("BENCH");
+        random = new Random(0);
+        timestamp = START_TIMESTAMP;
+        matchingEngine.advanceTime(timestamp);
+
+        prices = new double[PRICE_COUNT];
+        double price = 100;
+        for (int index = 0; index < PRICE_COUNT; index++) {
+            // Mean revert so the walk stays within the resting orders
+            price = Math.round((price + (100 - price) * 0.001 + random.nextGaussian() * 0.05) * 100) / 100d;
+            prices[index] = price;
+        }
+        orderBook.onQuote(timestamp, 99.99, 100.01);
+
+        for (int index = 0; index < restingOrderCount; index++) {
+            submitRestingOrder();
+        }
+    }
+
+    /**
+     * Submits a random resting order (a limit or stop on either side away from the current price).
+     *
+     * @return the order ID
+     */
+    private int submitRestingOrder() {
+        double offset = 0.05 + Math.round(random.nextDouble() * 500) / 100d;
+        boolean isBuy = random.nextBoolean();
+        double referencePrice = isBuy ? orderBook.getAskPrice() : orderBook.getBidPrice();
+        if (random.nextBoolean()) {
+            double limitPrice = isBuy ? referencePrice - offset : referencePrice + offset;
+            return matchingEngine.submitOrder("BENCH", 100, isBuy ? OrderSide.BUY : OrderSide.SELL,
+                    OrderType.LIMIT, OrderTimeInForce.GTC, limitPrice, Double.NaN);
+        } else {
+            double stopPrice = isBuy ? referencePrice + offset : referencePrice - offset;
+            return matchingEngine.submitOrder("BENCH", 100, isBuy ? OrderSide.BUY : OrderSide.SELL,
+                    OrderType.STOP, OrderTimeInForce.GTC, Double.NaN, stopPrice);
+        }
+    }
+
+    /**
+     * Matches one quote and replenishes any orders that filled.
+     *
+     * @return the number of open orders
+     */
+    @Benchmark
+    public int quote() {
+        double price = prices[priceIndex++ & (PRICE_COUNT - 1)];
+        filledCount = 0;
+        orderBook.onQuote(++timestamp, price - 0.01, price + 0.01);
+        for (int index = 0; index < filledCount; index++) {
+            submitRestingOrder();
+        }
+        return matchingEngine.getOpenOrderCount();
+    }
+
+    /**
+     * Submits and then cancels a resting order.
+     *
+     * @return the order ID
+     */
+    @Benchmark
+    public int submitAndCancel() {
+        int orderID = submitRestingOrder();
+        matchingEngine.cancelOrder(orderID);
+        return orderID;
+    }
+}
@@ -0,0 +1,255 @@
+package net.jacobpeterson.data.cache;
+
+import io.github.mainstringargs.domain.polygon.aggregates.Aggregate;
+import io.github.mainstringargs.domain.polygon.historicquotes.HistoricQuote;
+import io.github.mainstringargs.domain.polygon.historictrades.HistoricTrade;
+import net.jacobpeterson.benchmark.SyntheticMarketData;
+import net.jacobpeterson.data.cursor.AggregateCursor;
+import net.jacobpeterson.data.cursor.QuoteCursor;
+import net.jacobpeterson.data.cursor.SegmentCursor;
+import net.jacobpeterson.data.cursor.TradeCursor;
+import net.jacobpeterson.util.GsonUtil;
+import net.jacobpeterson.util.TimeUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures decoding one day of cached data: Gson into alpaca-java POJOs (the original JSON cache), streaming JSON into
+ * a {@link SegmentWriter} (the JSON cache conversion), and reading binary segments (raw or compressed) from the heap
+ * or a memory map and scanning them with a flyweight {@link SegmentCursor}, either whole or only the first 30 minutes
+ * after the open via the block index.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DecodeBenchmark {
+
+    private static final long OPENING_RANGE_NANOS = TimeUnit.MINUTES.toNanos(30);
+
+    @Param({"AGGREGATE", "TRADE", "QUOTE"})
+    private SegmentType segmentType;
+
+    private File directory;
+    private File jsonFile;
+    private File segmentFile;
+    private File compressedSegmentFile;
+    private SegmentCursor cursor;
+    private long openTimestamp;
+
+    /**
+     * Writes one day of synthetic data as JSON and as a segment.
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("decode-benchmark").toFile();
+        jsonFile = new File(directory, "data." + segmentType.getJsonFileExtension());
+        segmentFile = new File(directory, "data." + segmentType.getFileExtension());
+        compressedSegmentFile = new File(directory, "compressed." + segmentType.getFileExtension());
+
+        LocalDate date = LocalDate.of(2020, 3, 2);
+        SegmentWriter segmentWriter = new SyntheticMarketData(0, 100_000, 100_000).generate(segmentType, "BENCH", date);
+        segmentWriter.write(segmentFile);
+        segmentWriter.setCompressed(true);
+        segmentWriter.write(compressedSegmentFile);
+        SyntheticMarketData.writeJson(segmentWriter.toSegment(), jsonFile);
+        openTimestamp = TimeUtil.toEpochNanos(date, TimeUtil.MARKET_OPEN_TIME);
+
+        switch (segmentType) {
+            case AGGREGATE:
+                cursor = new AggregateCursor();
+                break;
+            case TRADE:
+                cursor = new TradeCursor();
+                break;
+            case QUOTE:
+                cursor = new QuoteCursor();
+                break;
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Deletes the data files.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jsonFile.delete();
+        segmentFile.delete();
+        compressedSegmentFile.delete();
+        directory.delete();
+    }
+
+    /**
+     * Parses the JSON file into alpaca-java POJOs with Gson.
+     *
+     * @return the number of POJOs
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    @Benchmark
+    public int jsonToPojos() throws IOException {
+        Class<?> pojoArrayClass;
+        switch (segmentType) {
+            case AGGREGATE:
+                pojoArrayClass = Aggregate[].class;
+                break;
+            case TRADE:
+                pojoArrayClass = HistoricTrade[].class;
+                break;
+            case QUOTE:
+                pojoArrayClass = HistoricQuote[].class;
+                break;
+            default:
+                throw new UnsupportedOperationException();
+        }
+        try (Reader reader = newJsonReader()) {
+            return ((Object[]) GsonUtil.GSON.fromJson(reader, pojoArrayClass)).length;
+        }
+    }
+
+    /**
+     * Streams the JSON file into a {@link SegmentWriter}.
+     *
+     * @return the number of rows
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    @Benchmark
+    public int jsonToSegment() throws IOException {
+        try (Reader reader = newJsonReader()) {
+            return JsonSegmentConverter.readJson(reader, new SegmentWriter(segmentType));
+        }
+    }
+
+    /**
+     * Reads the segment file onto the heap and scans every row.
+     *
+     * @return the checksum of the scan
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    @Benchmark
+    public long readSegment() throws IOException {
+        return scan(Segment.read(segmentFile));
+    }
+
+    /**
+     * Memory maps the segment file and scans every row.
+     *
+     * @return the checksum of the scan
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    @Benchmark
+    public long mapSegment() throws IOException {
+        return scan(Segment.map(segmentFile));
+    }
+
+    /**
+     * Reads the compressed segment file onto the heap, decodes it, and scans every row.
+     *
+     * @return the checksum of the scan
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    @Benchmark
+    public long readCompressedSegment() throws IOException {
+        return scan(Segment.read(compressedSegmentFile));
+    }
+
+    /**
+     * Reads only the blocks of the segment file that hold the first 30 minutes after the open and scans those rows.
+     *
+     * @return the checksum of the scan
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    @Benchmark
+    public long readSegmentTimeRange() throws IOException {
+        return scanTimeRange(Segment.read(segmentFile, openTimestamp, openTimestamp + OPENING_RANGE_NANOS));
+    }
+
+    /**
+     * Reads only the blocks of the compressed segment file that hold the first 30 minutes after the open, decodes
+     * them, and scans those rows.
+     *
+     * @return the checksum of the scan
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    @Benchmark
+    public long readCompressedSegmentTimeRange() throws IOException {
+        return scanTimeRange(Segment.read(compressedSegmentFile, openTimestamp, openTimestamp + OPENING_RANGE_NANOS));
+    }
+
+    /**
+     * Scans the rows of a segment within the first 30 minutes after the open with the cursor.
+     *
+     * @param segment the segment
+     *
+     * @return the checksum of the timestamps
+     */
+    private long scanTimeRange(Segment segment) {
+        long checksum = 0;
+        cursor.reset(segment, segment.findRow(openTimestamp), segment.findRow(openTimestamp + OPENING_RANGE_NANOS));
+        while (cursor.next()) {
+            checksum += cursor.getTimestamp();
+        }
+        return checksum;
+    }
+
+    /**
+     * Scans every row of a segment with the cursor.
+     *
+     * @param segment the segment
+     *
+     * @return the checksum of the timestamps
+     */
+    private long scan(Segment segment) {
+        long checksum = 0;
+        cursor.reset(segment);
+        while (cursor.next()) {
+            checksum += cursor.getTimestamp();
+        }
+        return checksum;
+    }
+
+    /**
+     * Opens a reader of the JSON file.
+     *
+     * @return the reader
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private Reader newJsonReader() throws IOException {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(jsonFile), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,148 @@
+package net.jacobpeterson.engine;
+
+import net.jacobpeterson.AlpacaJavaBacktest;
+import net.jacobpeterson.algorithm.TradingAlgorithm;
+import net.jacobpeterson.algorithm.update.ticker.AggregateUpdateType;
+import net.jacobpeterson.algorithm.update.ticker.PriceUpdateType;
+import net.jacobpeterson.benchmark.SyntheticMarketData;
+import net.jacobpeterson.data.BacktestData;
+import net.jacobpeterson.data.cache.SegmentType;
+import net.jacobpeterson.data.cursor.AggregateCursor;
+import net.jacobpeterson.data.cursor.QuoteCursor;
+import net.jacobpeterson.data.cursor.TradeCursor;
+import net.jacobpeterson.util.TimeUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures {@link AlpacaJavaBacktest#run(TradingAlgorithm)} replaying a week of synthetic minute aggregates, trades,
+ * and quotes of a number of tickers to an algorithm that only reads the cursors, which is the overhead of the replay
+ * engine, the segment iterators, and the order books. Compare <code>metricsEnabled</code> to see the overhead of
+ * {@link AlpacaJavaBacktest#setMetricsEnabled(boolean)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReplayBenchmark {
+
+    private static final LocalDate FROM = LocalDate.of(2020, 3, 2);
+    private static final LocalDate TO = LocalDate.of(2020, 3, 7);
+
+    @Param({"10", "100"})
+    private int tickerCount;
+
+    @Param({"true", "false"})
+    private boolean memoryMapped;
+
+    @Param({"false", "true"})
+    private boolean metricsEnabled;
+
+    private File directory;
+    private BacktestData backtestData;
+    private List<String> tickers;
+
+    /**
+     * Writes the synthetic data cache.
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("replay-benchmark").toFile();
+        backtestData = new BacktestData(null, null, directory);
+        backtestData.setMemoryMapped(memoryMapped);
+        backtestData.setDataFetcher((ticker, date, aggregateUpdateType, segmentType) -> {
+            throw new IOException("The synthetic data cache is missing " + ticker + " on " + date + "!");
+        });
+
+        tickers = SyntheticMarketData.createTickers(tickerCount);
+        new SyntheticMarketData(0, 10_000, 10_000).writeDataCache(backtestData, tickers, FROM, TO, false,
+                SegmentType.values());
+    }
+
+    /**
+     * Deletes the synthetic data cache.
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    /**
+     * Runs the backtest.
+     *
+     * @return the number of events
+     */
+    @Benchmark
+    public long run() {
+        AlpacaJavaBacktest alpacaJavaBacktest = new AlpacaJavaBacktest(backtestData);
+        alpacaJavaBacktest.setMetricsEnabled(metricsEnabled);
+        for (String ticker : tickers) {
+            alpacaJavaBacktest.addTickerUpdateTypes(ticker, AggregateUpdateType.MINUTE, PriceUpdateType.TRADE,
+                    PriceUpdateType.QUOTE);
+        }
+        alpacaJavaBacktest.setFrom(ZonedDateTime.of(FROM, LocalTime.MIDNIGHT, TimeUtil.NEW_YORK_ZONE_ID));
+        alpacaJavaBacktest.setTo(ZonedDateTime.of(TO, LocalTime.MIDNIGHT, TimeUtil.NEW_YORK_ZONE_ID));
+
+        CursorReadingAlgorithm cursorReadingAlgorithm = new CursorReadingAlgorithm();
+        alpacaJavaBacktest.run(cursorReadingAlgorithm);
+        return alpacaJavaBacktest.getReplayEngine().getEventCount() + (long) cursorReadingAlgorithm.checksum;
+    }
+
+    /**
+     * A {@link TradingAlgorithm} that reads a price from each cursor without materializing any POJOs.
+     */
+    private static class CursorReadingAlgorithm extends TradingAlgorithm {
+
+        private double checksum;
+
+        @Override
+        public void init() {}
+
+        @Override
+        public void onAggregateUpdate(String ticker, AggregateUpdateType aggregateUpdateType,
+                AggregateCursor aggregateCursor) {
+            checksum += aggregateCursor.getClose();
+        }
+
+        @Override
+        public void onTradeUpdate(String ticker, TradeCursor tradeCursor) {
+            checksum += tradeCursor.getPrice();
+        }
+
+        @Override
+        public void onQuoteUpdate(String ticker, QuoteCursor quoteCursor) {
+            checksum += quoteCursor.getBidPrice();
+        }
+    }
+}
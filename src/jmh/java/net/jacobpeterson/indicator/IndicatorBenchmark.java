@@ -0,0 +1,137 @@
+package net.jacobpeterson.indicator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-bar cost of updating streaming {@link Indicator}s against recomputing the same indicators over
+ * their whole window on every bar. Run with <code>./gradlew jmh</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IndicatorBenchmark {
+
+    private static final int BAR_COUNT = 1 << 16;
+
+    @Param({"14", "200"})
+    private int length;
+
+    private double[] highs;
+    private double[] lows;
+    private double[] closes;
+    private double[] volumes;
+    private int index;
+    private SimpleMovingAverage simpleMovingAverage;
+    private BollingerBands bollingerBands;
+    private RelativeStrengthIndex relativeStrengthIndex;
+    private VolumeWeightedAveragePrice volumeWeightedAveragePrice;
+
+    /**
+     * Generates a random walk of bars and creates the indicators.
+     */
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        highs = new double[BAR_COUNT];
+        lows = new double[BAR_COUNT];
+        closes = new double[BAR_COUNT];
+        volumes = new double[BAR_COUNT];
+        double price = 100;
+        for (int bar = 0; bar < BAR_COUNT; bar++) {
+            price = Math.max(1, price + random.nextGaussian() * 0.1);
+            closes[bar] = price;
+            highs[bar] = price + random.nextDouble() * 0.05;
+            lows[bar] = price - random.nextDouble() * 0.05;
+            volumes[bar] = 100 + random.nextInt(10_000);
+        }
+
+        simpleMovingAverage = new SimpleMovingAverage(length);
+        bollingerBands = new BollingerBands(length, 2);
+        relativeStrengthIndex = new RelativeStrengthIndex(length);
+        volumeWeightedAveragePrice = new VolumeWeightedAveragePrice(length);
+        index = length; // Leave room for the naive lookbacks
+    }
+
+    /**
+     * Gets the index of the next bar, wrapping around to the start of the bars.
+     *
+     * @return the index
+     */
+    private int nextIndex() {
+        if (++index == BAR_COUNT) {
+            index = length;
+        }
+        return index;
+    }
+
+    /**
+     * Updates the streaming indicators with one bar.
+     *
+     * @return the sum of the indicator values
+     */
+    @Benchmark
+    public double streaming() {
+        int bar = nextIndex();
+        double close = closes[bar];
+        simpleMovingAverage.update(bar, close, highs[bar], lows[bar], close, volumes[bar]);
+        bollingerBands.update(bar, close, highs[bar], lows[bar], close, volumes[bar]);
+        relativeStrengthIndex.update(bar, close, highs[bar], lows[bar], close, volumes[bar]);
+        volumeWeightedAveragePrice.update(bar, close, highs[bar], lows[bar], close, volumes[bar]);
+        return simpleMovingAverage.getValue() + bollingerBands.getUpperBand() + relativeStrengthIndex.getValue() +
+                volumeWeightedAveragePrice.getValue();
+    }
+
+    /**
+     * Recomputes the same indicators over their whole window for one bar.
+     *
+     * @return the sum of the indicator values
+     */
+    @Benchmark
+    public double naive() {
+        int bar = nextIndex();
+        int from = bar - length + 1;
+
+        double sum = 0;
+        double priceVolumeSum = 0;
+        double volumeSum = 0;
+        double gainSum = 0;
+        double lossSum = 0;
+        for (int i = from; i <= bar; i++) {
+            sum += closes[i];
+            priceVolumeSum += (highs[i] + lows[i] + closes[i]) / 3 * volumes[i];
+            volumeSum += volumes[i];
+            double change = closes[i] - closes[i - 1];
+            if (change > 0) {
+                gainSum += change;
+            } else {
+                lossSum -= change;
+            }
+        }
+        double mean = sum / length;
+        double squaredDeviationSum = 0;
+        for (int i = from; i <= bar; i++) {
+            double deviation = closes[i] - mean;
+            squaredDeviationSum += deviation * deviation;
+        }
+
+        double upperBand = mean + 2 * Math.sqrt(squaredDeviationSum / length);
+        double relativeStrength = lossSum == 0 ? 100 : 100 - 100 / (1 + gainSum / lossSum);
+        return mean + upperBand + relativeStrength + priceVolumeSum / volumeSum;
+    }
+}
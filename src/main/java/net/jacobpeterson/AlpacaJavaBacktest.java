@@ -5,13 +5,43 @@ import io.github.mainstringargs.polygon.PolygonAPI;
 import net.jacobpeterson.algorithm.TradingAlgorithm;
 import net.jacobpeterson.algorithm.update.OtherUpdateType;
 import net.jacobpeterson.algorithm.update.TickerUpdateType;
+import net.jacobpeterson.algorithm.update.other.BrokerUpdateType;
 import net.jacobpeterson.broker.BacktestBroker;
+import net.jacobpeterson.broker.ledger.Ledger;
+import net.jacobpeterson.checkpoint.BacktestCheckpoint;
+import net.jacobpeterson.checkpoint.CheckpointFormat;
+import net.jacobpeterson.checkpoint.CheckpointWriter;
+import net.jacobpeterson.checkpoint.Checkpointable;
 import net.jacobpeterson.data.BacktestData;
+import net.jacobpeterson.data.BacktestRecord;
+import net.jacobpeterson.data.record.BacktestRecorder;
+import net.jacobpeterson.engine.ReplayEngine;
+import net.jacobpeterson.engine.TimerWheel;
+import net.jacobpeterson.indicator.Indicators;
+import net.jacobpeterson.metrics.Metrics;
+import net.jacobpeterson.sweep.ParameterSweep;
+import net.jacobpeterson.util.TimeUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalTime;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
 
 /**
  * AlpacaJavaBacktest is a simple and fast Stock Trading Algorithm Backtesting Library for Java that uses
@@ -23,16 +53,33 @@ import java.util.HashMap;
  * a Polygon Java API and useful POJO classes.
  * <p>
  * Most things that should be thread safe in this library are thread safe so feel free to instantiate multiple instances
- * of this object and run backtests on any number of threads to speed up the backtest process.
+ * of this object and run backtests on any number of threads to speed up the backtest process. Use {@link
+ * ParameterSweep} to run many {@link TradingAlgorithm} instances in parallel over the same decoded market data.
  */
 public class AlpacaJavaBacktest {
 
+    private static final Logger LOGGER = LogManager.getLogger();
+
     private final BacktestData backtestData;
     private final BacktestBroker backtestBroker;
     private final HashMap<String, TickerUpdateType[]> tickerUpdateTypes;
     private final ArrayList<OtherUpdateType> otherUpdateTypes;
+    private final Metrics metrics;
+    private boolean aggregateSynthesisEnabled;
+    private boolean recordingEnabled;
+    private Duration equitySamplePeriod;
+    private File recordFile;
+    private Indicators warmIndicators;
+    private ZonedDateTime indicatorsCheckpointDateTime;
+    private Indicators indicatorsCheckpoint;
+    private boolean checkpointingEnabled;
+    private Duration checkpointInterval;
+    private File checkpointFile;
+    private String checkpointFileSuffix;
+    private long lastCheckpointNanos;
     private ZonedDateTime from;
     private ZonedDateTime to;
+    private volatile ReplayEngine replayEngine;
 
     /**
      * Instantiates a new Alpaca java backtest and creates new {@link AlpacaAPI} and {@link PolygonAPI} instances with
@@ -72,27 +119,527 @@ public class AlpacaJavaBacktest {
         this.backtestBroker = backtestBroker;
         this.tickerUpdateTypes = new HashMap<>();
         this.otherUpdateTypes = new ArrayList<>();
+        this.metrics = new Metrics();
+        this.aggregateSynthesisEnabled = true;
+        this.recordingEnabled = false;
+        this.equitySamplePeriod = Duration.ofMinutes(1);
+        this.checkpointInterval = Duration.ofMinutes(5);
+        this.checkpointFileSuffix = UUID.randomUUID().toString().substring(0, 8);
     }
 
     /**
-     * Runs a backtest.
+     * Runs a backtest. All the registered ticker update types and other update types between {@link #getFrom()} and
+     * {@link #getTo()} are merged into a single timestamp-ordered stream of events which is dispatched to the trading
+     * algorithm. If metrics are enabled (see {@link #setMetricsEnabled(boolean)}), a report of {@link #getMetrics()}
+     * and of the metrics of the {@link BacktestData} is logged once the backtest is complete. If recording is enabled
+     * (see {@link #setRecordingEnabled(boolean)}), the order events, equity curve and annotations of the backtest are
+     * recorded to {@link #getRecordFile()}. If checkpointing is enabled (see
+     * {@link #setCheckpointingEnabled(boolean)}), checkpoints are written so that the backtest can be resumed with
+     * {@link #resume(TradingAlgorithm)}.
      *
      * @param tradingAlgorithm the trading algorithm
      */
     public void run(TradingAlgorithm tradingAlgorithm) {
+        run(tradingAlgorithm, null);
+    }
+
+    /**
+     * Resumes a backtest from its latest checkpoint in {@link #getCheckpointFile(TradingAlgorithm)} (see {@link
+     * #setCheckpointingEnabled(boolean)}), or runs it from the start if there is no checkpoint (e.g. because the last
+     * run completed). Use a new {@link BacktestBroker} and a new instance of the trading algorithm with the same
+     * settings, update types, from, and to as the backtest that was checkpointed.
+     * <p>
+     * If the checkpoint file isn't set with {@link #setCheckpointFile(File)}, the default checkpoint file of the
+     * trading algorithm, from, and to is looked up regardless of its per-instance suffix and checkpoints continue to
+     * be written to it. Since several backtests of one trading algorithm class with the same from and to (e.g. the
+     * points of a {@link ParameterSweep}) leave several such files, resuming is then ambiguous and the checkpoint
+     * file of each backtest must be set instead.
+     * <p>
+     * The broker state (orders, positions, and cash), the performance statistics, the indicators, the state of the
+     * trading algorithm (if it implements {@link Checkpointable}), and the record file (if it was recorded) are
+     * restored and the replay restarts at the time of the checkpoint, so the results are the same as those of an
+     * uninterrupted run. {@link TradingAlgorithm#init()} is called again at the time of the checkpoint to reschedule
+     * its timers and attach its indicators.
+     *
+     * @param tradingAlgorithm the trading algorithm
+     *
+     * @throws IllegalStateException if the checkpoint was taken by a different backtest or if there are several
+     *                               default checkpoint files to resume from
+     * @throws UncheckedIOException  if the checkpoint can't be read
+     */
+    public void resume(TradingAlgorithm tradingAlgorithm) {
+        if (from == null || to == null) {
+            throw new IllegalStateException("The from and to of the backtest must be set!");
+        }
+
+        File file = checkpointFile != null ? checkpointFile : findDefaultCheckpointFile(tradingAlgorithm);
+        if (!file.exists()) {
+            LOGGER.info("There is no checkpoint at {}, running the backtest from the start", file);
+            run(tradingAlgorithm, null);
+            return;
+        }
+
+        BacktestCheckpoint backtestCheckpoint;
+        try {
+            backtestCheckpoint = BacktestCheckpoint.read(file);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        LOGGER.info("Resuming the backtest from {} at {}", file,
+                TimeUtil.toNewYorkDateTime(backtestCheckpoint.getTimestamp()));
+        run(tradingAlgorithm, backtestCheckpoint);
+    }
+
+    /**
+     * Finds the default checkpoint file of a trading algorithm to resume from and adopts its suffix, so that the
+     * resumed backtest keeps checkpointing to it.
+     *
+     * @param tradingAlgorithm the trading algorithm
+     *
+     * @return the checkpoint file (which doesn't exist if there is none to resume from)
+     *
+     * @throws IllegalStateException if there are several default checkpoint files to resume from
+     */
+    private File findDefaultCheckpointFile(TradingAlgorithm tradingAlgorithm) {
+        String prefix = getCheckpointFilePrefix(tradingAlgorithm);
+        String extension = "." + CheckpointFormat.FILE_EXTENSION;
+        File[] files = backtestData.getCheckpointsDirectory().listFiles((directory, name) ->
+                name.startsWith(prefix) && name.endsWith(extension));
+        if (files == null || files.length == 0) {
+            return getCheckpointFile(tradingAlgorithm);
+        } else if (files.length > 1) {
+            throw new IllegalStateException("There are " + files.length + " checkpoints of " + prefix + "* in " +
+                    backtestData.getCheckpointsDirectory() + ", set the checkpoint file to resume from!");
+        }
+
+        String fileName = files[0].getName();
+        checkpointFileSuffix = fileName.substring(prefix.length(), fileName.length() - extension.length());
+        return files[0];
+    }
+
+    /**
+     * Runs a backtest from its start or from a checkpoint.
+     *
+     * @param tradingAlgorithm   the trading algorithm
+     * @param backtestCheckpoint the backtest checkpoint (null to run from the start)
+     */
+    private void run(TradingAlgorithm tradingAlgorithm, BacktestCheckpoint backtestCheckpoint) {
+        if (from == null || to == null) {
+            throw new IllegalStateException("The from and to of the backtest must be set!");
+        }
+
+        String name = getName(tradingAlgorithm);
+        long startTimestamp = TimeUtil.toEpochNanos(from);
+        DataInputStream checkpointState = null;
+        if (backtestCheckpoint != null) {
+            checkBacktestCheckpoint(backtestCheckpoint, name);
+            startTimestamp = backtestCheckpoint.getTimestamp();
+            checkpointState = backtestCheckpoint.openState();
+            try {
+                backtestBroker.readState(readSection(checkpointState));
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+
         tradingAlgorithm.setBacktestData(backtestData);
         tradingAlgorithm.setBacktestBroker(backtestBroker);
+        backtestBroker.setTradingAlgorithm(tradingAlgorithm);
+        backtestBroker.setTradeUpdatesEnabled(otherUpdateTypes.contains(BrokerUpdateType.TRADE));
+        backtestBroker.getMatchingEngine().setMetrics(metrics.isEnabled() ? metrics : null);
+        backtestBroker.getMatchingEngine().setMarketCalendar(backtestData.findMarketCalendar(
+                TimeUtil.toNewYorkDate(TimeUtil.toEpochNanos(from)),
+                TimeUtil.toNewYorkDate(TimeUtil.toEpochNanos(to)).plusDays(1)));
+        backtestBroker.getMatchingEngine().advanceTime(startTimestamp);
+        tradingAlgorithm.getTimerWheel().reset(startTimestamp);
+
+        if (backtestCheckpoint == null) {
+            backtestBroker.getPerformanceStatistics().update(startTimestamp);
+        }
+
+        BacktestRecorder backtestRecorder = null;
+        if (checkpointState != null) {
+            backtestRecorder = resumeBacktestRecorder(checkpointState);
+        }
+        if (recordingEnabled) {
+            if (backtestRecorder == null) {
+                backtestRecorder = createBacktestRecorder(name);
+            }
+            recordFile = backtestRecorder.getFile();
+            backtestBroker.setBacktestRecorder(backtestRecorder);
+            scheduleEquitySamples(backtestRecorder, tradingAlgorithm, startTimestamp);
+        }
+        CheckpointWriter checkpointWriter = checkpointingEnabled ?
+                new CheckpointWriter(getCheckpointFile(tradingAlgorithm)) : null;
+        indicatorsCheckpoint = null;
+        boolean completed = false;
+        try {
+            tradingAlgorithm.init();
+            if (checkpointState != null) {
+                readAlgorithmState(checkpointState, tradingAlgorithm);
+            } else if (warmIndicators != null) {
+                tradingAlgorithm.getIndicators().copyStateFrom(warmIndicators);
+            }
+            if (indicatorsCheckpointDateTime != null &&
+                    TimeUtil.toEpochNanos(indicatorsCheckpointDateTime) > startTimestamp) {
+                // Events at the checkpoint time are dispatched before timers at that time, so checkpoint just before
+                tradingAlgorithm.getTimerWheel().schedule(TimeUtil.toEpochNanos(indicatorsCheckpointDateTime) - 1,
+                        timer -> checkpointIndicators(tradingAlgorithm));
+            }
+            if (checkpointWriter != null) {
+                scheduleCheckpoints(checkpointWriter, tradingAlgorithm, name, startTimestamp);
+            }
+
+            replayEngine = ReplayEngine.create(backtestData, tickerUpdateTypes, otherUpdateTypes,
+                    TimeUtil.toNewYorkDateTime(startTimestamp), to, aggregateSynthesisEnabled);
+            replayEngine.setMetrics(metrics);
+            replayEngine.run(tradingAlgorithm);
+            completed = !replayEngine.isHalted();
+        } finally {
+            backtestBroker.getPerformanceStatistics().update(tradingAlgorithm.getTimerWheel().getTime());
+            if (backtestRecorder != null) {
+                closeBacktestRecorder(backtestRecorder, tradingAlgorithm);
+            }
+            if (checkpointWriter != null) {
+                closeCheckpointWriter(checkpointWriter, completed);
+            }
+        }
+
+        LOGGER.info("Backtest statistics:\n{}", backtestBroker.getPerformanceStatistics().toReport());
+        if (metrics.isEnabled()) {
+            LOGGER.info("Backtest metrics:\n{}", metrics.toReport());
+        }
+        if (backtestData.getMetrics().isEnabled()) {
+            LOGGER.info("Backtest data metrics:\n{}", backtestData.getMetrics().toReport());
+        }
+    }
+
+    /**
+     * Gets the name of a trading algorithm that its records and checkpoints are named by.
+     *
+     * @param tradingAlgorithm the trading algorithm
+     *
+     * @return the name
+     */
+    private static String getName(TradingAlgorithm tradingAlgorithm) {
+        String name = tradingAlgorithm.getClass().getSimpleName();
+        if (name.isEmpty()) { // Anonymous classes
+            name = tradingAlgorithm.getClass().getName();
+        }
+        return name;
+    }
+
+    /**
+     * Creates a {@link BacktestRecorder} in {@link BacktestData#getBacktestRecordsDirectory()}.
+     *
+     * @param name the name of the backtest
+     *
+     * @return the backtest recorder
+     */
+    private BacktestRecorder createBacktestRecorder(String name) {
+        try {
+            return BacktestRecorder.create(backtestData.getBacktestRecordsDirectory(), name,
+                    TimeUtil.toEpochNanos(from), TimeUtil.toEpochNanos(to),
+                    backtestBroker.getLedger().getInitialCash());
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /**
+     * Reads the recorder section of a checkpoint and resumes the {@link BacktestRecorder} of the checkpointed run if
+     * recording is enabled.
+     *
+     * @param checkpointState the checkpoint state
+     *
+     * @return the backtest recorder (null if there is none to resume)
+     */
+    private BacktestRecorder resumeBacktestRecorder(DataInputStream checkpointState) {
+        DataInputStream recorderState;
+        try {
+            recorderState = readSection(checkpointState);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        if (recorderState == null || !recordingEnabled) {
+            return null;
+        }
+
+        try {
+            return BacktestRecorder.resume(recorderState);
+        } catch (IOException exception) {
+            LOGGER.warn("Could not resume the backtest record, recording the rest of the backtest to a new one",
+                    exception);
+            return null;
+        }
+    }
+
+    /**
+     * Schedules an equity sample to be recorded every {@link #getEquitySamplePeriod()} of simulated time from {@link
+     * #getFrom()}.
+     *
+     * @param backtestRecorder the backtest recorder
+     * @param tradingAlgorithm the trading algorithm
+     * @param startTimestamp   the timestamp that the run starts from
+     */
+    private void scheduleEquitySamples(BacktestRecorder backtestRecorder, TradingAlgorithm tradingAlgorithm,
+            long startTimestamp) {
+        Ledger ledger = backtestBroker.getLedger();
+        long fromTimestamp = TimeUtil.toEpochNanos(from);
+        long period = equitySamplePeriod.toNanos();
+        long periodCount = (startTimestamp - fromTimestamp + period - 1) / period; // Keep the sample times of a resume
+        tradingAlgorithm.getTimerWheel().scheduleAtFixedRate(fromTimestamp + periodCount * period, period,
+                timer -> backtestRecorder.recordEquity(timer.getDeadline(), ledger.getEquity(), ledger.getCash()));
+    }
 
-        tradingAlgorithm.init();
+    /**
+     * Records the final equity sample and closes a {@link BacktestRecorder}.
+     *
+     * @param backtestRecorder the backtest recorder
+     * @param tradingAlgorithm the trading algorithm
+     */
+    private void closeBacktestRecorder(BacktestRecorder backtestRecorder, TradingAlgorithm tradingAlgorithm) {
+        TimerWheel timerWheel = tradingAlgorithm.getTimerWheel();
+        Ledger ledger = backtestBroker.getLedger();
+        backtestRecorder.recordEquity(timerWheel.getTime(), ledger.getEquity(), ledger.getCash());
+        backtestBroker.setBacktestRecorder(null);
 
-        // TODO
+        try {
+            backtestRecorder.close();
+            LOGGER.info("Recorded the backtest to {}", backtestRecorder.getFile());
+        } catch (IOException exception) {
+            LOGGER.error("Could not record the backtest to {}", backtestRecorder.getFile(), exception);
+        }
+    }
+
+    /**
+     * Schedules a timer just before every New York midnight that takes a checkpoint if at least {@link
+     * #getCheckpointInterval()} of wall-clock time has passed since the last one. Between two days, no aggregate is
+     * being built and every event before midnight has been dispatched, so the replay can restart at midnight.
+     *
+     * @param checkpointWriter the checkpoint writer
+     * @param tradingAlgorithm the trading algorithm
+     * @param name             the name of the backtest
+     * @param startTimestamp   the timestamp that the run starts from
+     */
+    private void scheduleCheckpoints(CheckpointWriter checkpointWriter, TradingAlgorithm tradingAlgorithm, String name,
+            long startTimestamp) {
+        String configuration = getConfiguration();
+        lastCheckpointNanos = System.nanoTime();
+        // Events at midnight are dispatched before timers at midnight, so checkpoint just before
+        tradingAlgorithm.getTimerWheel().schedule(getNextMidnightTimestamp(startTimestamp) - 1,
+                deadline -> getNextMidnightTimestamp(deadline + 1) - 1,
+                timer -> {
+                    if (System.nanoTime() - lastCheckpointNanos >= checkpointInterval.toNanos()) {
+                        takeCheckpoint(checkpointWriter, tradingAlgorithm, name, configuration,
+                                timer.getDeadline() + 1);
+                        lastCheckpointNanos = System.nanoTime();
+                    }
+                });
+    }
+
+    /**
+     * Gets the timestamp of the first New York midnight after a timestamp.
+     *
+     * @param timestamp the timestamp (epoch nanoseconds)
+     *
+     * @return the midnight timestamp (epoch nanoseconds)
+     */
+    private static long getNextMidnightTimestamp(long timestamp) {
+        return TimeUtil.toEpochNanos(TimeUtil.toNewYorkDate(timestamp).plusDays(1), LocalTime.MIDNIGHT);
+    }
+
+    /**
+     * Serializes the state of the backtest into memory and submits it to a {@link CheckpointWriter}, which writes it
+     * to disk in the background. A checkpoint that can't be taken (e.g. because an indicator doesn't support
+     * checkpoints) is logged and skipped.
+     *
+     * @param checkpointWriter the checkpoint writer
+     * @param tradingAlgorithm the trading algorithm
+     * @param name             the name of the backtest
+     * @param configuration    the configuration of the backtest
+     * @param timestamp        the timestamp that the backtest resumes from
+     */
+    private void takeCheckpoint(CheckpointWriter checkpointWriter, TradingAlgorithm tradingAlgorithm, String name,
+            String configuration, long timestamp) {
+        BacktestRecorder backtestRecorder = backtestBroker.getBacktestRecorder();
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream);
+        try {
+            writeSection(dataOutputStream, backtestBroker::writeState);
+            writeSection(dataOutputStream, backtestRecorder == null || backtestRecorder.isFailed() ? null :
+                                           backtestRecorder::writeState);
+            writeSection(dataOutputStream, tradingAlgorithm.getIndicators()::writeState);
+            writeSection(dataOutputStream, tradingAlgorithm instanceof Checkpointable ?
+                                           ((Checkpointable) tradingAlgorithm)::writeState : null);
+        } catch (IOException | UnsupportedOperationException exception) {
+            LOGGER.warn("Could not checkpoint the backtest: {}", exception.getMessage());
+            return;
+        }
+
+        checkpointWriter.submit(new BacktestCheckpoint(System.currentTimeMillis(), TimeUtil.toEpochNanos(from),
+                TimeUtil.toEpochNanos(to), timestamp, name, configuration, byteArrayOutputStream.toByteArray()));
+    }
+
+    /**
+     * Waits for a {@link CheckpointWriter} and deletes its checkpoint if the backtest completed, since a completed
+     * backtest doesn't need to be resumed.
+     *
+     * @param checkpointWriter the checkpoint writer
+     * @param completed        true if the backtest completed (wasn't halted and didn't fail)
+     */
+    private void closeCheckpointWriter(CheckpointWriter checkpointWriter, boolean completed) {
+        checkpointWriter.close();
+        File file = checkpointWriter.getFile();
+        if (!completed) {
+            if (file.exists()) {
+                LOGGER.info("The backtest can be resumed from {}", file);
+            }
+        } else if (file.exists() && !file.delete()) {
+            LOGGER.warn("Could not delete the checkpoint {}", file);
+        }
+    }
+
+    /**
+     * Checks that a checkpoint was taken by this backtest.
+     *
+     * @param backtestCheckpoint the backtest checkpoint
+     * @param name               the name of the backtest
+     *
+     * @throws IllegalStateException if the checkpoint was taken by a different backtest
+     */
+    private void checkBacktestCheckpoint(BacktestCheckpoint backtestCheckpoint, String name) {
+        if (!backtestCheckpoint.getName().equals(name)) {
+            throw new IllegalStateException("The checkpoint was taken by " + backtestCheckpoint.getName() +
+                    ", not by " + name + "!");
+        }
+        if (backtestCheckpoint.getFromTimestamp() != TimeUtil.toEpochNanos(from) ||
+                backtestCheckpoint.getToTimestamp() != TimeUtil.toEpochNanos(to)) {
+            throw new IllegalStateException("The checkpoint was taken by a backtest from " +
+                    TimeUtil.toNewYorkDateTime(backtestCheckpoint.getFromTimestamp()) + " to " +
+                    TimeUtil.toNewYorkDateTime(backtestCheckpoint.getToTimestamp()) + "!");
+        }
+        if (!backtestCheckpoint.getConfiguration().equals(getConfiguration())) {
+            throw new IllegalStateException("The checkpoint was taken by a backtest with different update types: " +
+                    backtestCheckpoint.getConfiguration());
+        }
+    }
+
+    /**
+     * Reads the indicators and the trading algorithm sections of a checkpoint into a trading algorithm that was just
+     * initialized.
+     *
+     * @param checkpointState  the checkpoint state
+     * @param tradingAlgorithm the trading algorithm
+     */
+    private void readAlgorithmState(DataInputStream checkpointState, TradingAlgorithm tradingAlgorithm) {
+        try {
+            tradingAlgorithm.getIndicators().readState(readSection(checkpointState));
+            DataInputStream algorithmState = readSection(checkpointState);
+            if (tradingAlgorithm instanceof Checkpointable) {
+                if (algorithmState == null) {
+                    LOGGER.warn("The checkpoint doesn't have the state of the trading algorithm");
+                } else {
+                    ((Checkpointable) tradingAlgorithm).readState(algorithmState);
+                }
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /**
+     * Gets the configuration of this backtest that a checkpoint must match: the update types and the aggregate
+     * synthesis.
+     *
+     * @return the configuration
+     */
+    private String getConfiguration() {
+        StringBuilder configuration = new StringBuilder();
+        for (Map.Entry<String, TickerUpdateType[]> entry : new TreeMap<>(tickerUpdateTypes).entrySet()) {
+            configuration.append(entry.getKey()).append('=').append(Arrays.toString(entry.getValue())).append(';');
+        }
+        configuration.append(otherUpdateTypes).append(";aggregateSynthesisEnabled=").append(aggregateSynthesisEnabled);
+        return configuration.toString();
+    }
+
+    /**
+     * Writes a length-prefixed section of a checkpoint, so that a section can be skipped when it's read.
+     *
+     * @param dataOutput  the data output
+     * @param stateWriter the state writer (null for an absent section)
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private static void writeSection(DataOutput dataOutput, StateWriter stateWriter) throws IOException {
+        if (stateWriter == null) {
+            dataOutput.writeInt(-1);
+            return;
+        }
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        stateWriter.writeState(new DataOutputStream(byteArrayOutputStream));
+        byte[] bytes = byteArrayOutputStream.toByteArray();
+        dataOutput.writeInt(bytes.length);
+        dataOutput.write(bytes);
+    }
+
+    /**
+     * Reads a section of a checkpoint that was written by {@link #writeSection(DataOutput, StateWriter)}.
+     *
+     * @param dataInput the data input
+     *
+     * @return the data input of the section (null for an absent section)
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private static DataInputStream readSection(DataInput dataInput) throws IOException {
+        int length = dataInput.readInt();
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        dataInput.readFully(bytes);
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Writes a section of a checkpoint.
+     */
+    private interface StateWriter {
+
+        /**
+         * Writes the state.
+         *
+         * @param dataOutput the data output
+         *
+         * @throws IOException thrown for {@link IOException}s
+         */
+        void writeState(DataOutput dataOutput) throws IOException;
+    }
+
+    /**
+     * Takes the {@link #getIndicatorsCheckpoint()} of a trading algorithm.
+     *
+     * @param tradingAlgorithm the trading algorithm
+     */
+    private void checkpointIndicators(TradingAlgorithm tradingAlgorithm) {
+        try {
+            indicatorsCheckpoint = tradingAlgorithm.getIndicators().copy();
+        } catch (UnsupportedOperationException exception) {
+            LOGGER.warn("Could not checkpoint the indicators: {}", exception.getMessage());
+        }
     }
 
     /**
      * Shutdown this backtest (e.g. halt backtest, shutdown website, etc.).
      */
     public void shutdown() {
-        // TODO
+        ReplayEngine currentReplayEngine = replayEngine;
+        if (currentReplayEngine != null) {
+            currentReplayEngine.halt();
+        }
     }
 
     /**
@@ -123,6 +670,264 @@ public class AlpacaJavaBacktest {
         return backtestData;
     }
 
+    /**
+     * Gets backtest broker.
+     *
+     * @return the backtest broker
+     */
+    public BacktestBroker getBacktestBroker() {
+        return backtestBroker;
+    }
+
+    /**
+     * Gets the replay engine of the current or last run.
+     *
+     * @return the replay engine (null if this backtest hasn't been run)
+     */
+    public ReplayEngine getReplayEngine() {
+        return replayEngine;
+    }
+
+    /**
+     * Gets the metrics of the runs of this backtest (event merging, broker matching and order operations, indicator
+     * updates, and algorithm callbacks). These accumulate across runs until {@link Metrics#reset()} is called.
+     *
+     * @return the metrics
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Enables or disables both {@link #getMetrics()} and the metrics of the {@link BacktestData}. Metrics are disabled
+     * by default since timing every event costs a few clock reads per event.
+     *
+     * @param metricsEnabled the metrics enabled
+     */
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        metrics.setEnabled(metricsEnabled);
+        backtestData.getMetrics().setEnabled(metricsEnabled);
+    }
+
+    /**
+     * Returns true if the larger aggregate update types of a ticker are built from its smallest aggregate update type
+     * instead of being fetched separately. This is enabled by default.
+     *
+     * @return the boolean
+     */
+    public boolean isAggregateSynthesisEnabled() {
+        return aggregateSynthesisEnabled;
+    }
+
+    /**
+     * Sets if the larger aggregate update types of a ticker are built from its smallest aggregate update type (see
+     * {@link net.jacobpeterson.data.iterators.SynthesizedAggregateIterator}) instead of being fetched separately.
+     * Disable this to replay the aggregates exactly as Polygon provides them.
+     *
+     * @param aggregateSynthesisEnabled the aggregate synthesis enabled
+     */
+    public void setAggregateSynthesisEnabled(boolean aggregateSynthesisEnabled) {
+        this.aggregateSynthesisEnabled = aggregateSynthesisEnabled;
+    }
+
+    /**
+     * Returns true if runs are recorded to a {@link BacktestRecord} file. This is disabled by default since every
+     * recorded run writes its own file (e.g. one per point of a {@link net.jacobpeterson.sweep.ParameterSweep}).
+     *
+     * @return the boolean
+     */
+    public boolean isRecordingEnabled() {
+        return recordingEnabled;
+    }
+
+    /**
+     * Sets if runs are recorded to a {@link BacktestRecord} file in {@link
+     * BacktestData#getBacktestRecordsDirectory()}.
+     *
+     * @param recordingEnabled the recording enabled
+     */
+    public void setRecordingEnabled(boolean recordingEnabled) {
+        this.recordingEnabled = recordingEnabled;
+    }
+
+    /**
+     * Gets the simulated time between the equity samples that are recorded. Samples are only written when the equity
+     * or cash changes, so a short period costs little while the algorithm is flat.
+     *
+     * @return the equity sample period
+     */
+    public Duration getEquitySamplePeriod() {
+        return equitySamplePeriod;
+    }
+
+    /**
+     * Sets equity sample period. See {@link #getEquitySamplePeriod()}.
+     *
+     * @param equitySamplePeriod the equity sample period
+     */
+    public void setEquitySamplePeriod(Duration equitySamplePeriod) {
+        if (equitySamplePeriod.isNegative() || equitySamplePeriod.isZero()) {
+            throw new IllegalArgumentException("The equity sample period must be positive!");
+        }
+        this.equitySamplePeriod = equitySamplePeriod;
+    }
+
+    /**
+     * Gets the record file of the current or last run. Open it with {@link BacktestRecord#open(File)}.
+     *
+     * @return the record file (null if no run has been recorded)
+     */
+    public File getRecordFile() {
+        return recordFile;
+    }
+
+    /**
+     * Gets warm indicators.
+     *
+     * @return the warm indicators
+     */
+    public Indicators getWarmIndicators() {
+        return warmIndicators;
+    }
+
+    /**
+     * Sets the indicators whose state is copied into the indicators that the trading algorithm attaches in {@link
+     * TradingAlgorithm#init()} (see {@link Indicators#copyStateFrom(Indicators)}), so that the backtest starts with
+     * indicators that were warmed up by a previous backtest (see {@link #getIndicatorsCheckpoint()}) instead of
+     * warming them up again.
+     *
+     * @param warmIndicators the warm indicators (null to start with reset indicators)
+     */
+    public void setWarmIndicators(Indicators warmIndicators) {
+        this.warmIndicators = warmIndicators;
+    }
+
+    /**
+     * Gets indicators checkpoint date time.
+     *
+     * @return the indicators checkpoint date time
+     */
+    public ZonedDateTime getIndicatorsCheckpointDateTime() {
+        return indicatorsCheckpointDateTime;
+    }
+
+    /**
+     * Sets the time at which a copy of the indicators of the trading algorithm is taken during a run (see {@link
+     * #getIndicatorsCheckpoint()}). The checkpoint contains every update before this time, so it can warm up a
+     * backtest from this time. It must be before {@link #getTo()}. Use {@link Indicators#copy()} on the indicators
+     * of the trading algorithm for a checkpoint at {@link #getTo()}.
+     *
+     * @param indicatorsCheckpointDateTime the indicators checkpoint date time (null for no checkpoint)
+     */
+    public void setIndicatorsCheckpointDateTime(ZonedDateTime indicatorsCheckpointDateTime) {
+        this.indicatorsCheckpointDateTime = indicatorsCheckpointDateTime;
+    }
+
+    /**
+     * Gets the copy of the indicators that was taken at {@link #getIndicatorsCheckpointDateTime()} during the current
+     * or last run.
+     *
+     * @return the indicators checkpoint (null if no checkpoint was taken)
+     */
+    public Indicators getIndicatorsCheckpoint() {
+        return indicatorsCheckpoint;
+    }
+
+    /**
+     * Returns true if checkpoints are written during runs so that they can be resumed with {@link
+     * #resume(TradingAlgorithm)}. This is disabled by default.
+     *
+     * @return the boolean
+     */
+    public boolean isCheckpointingEnabled() {
+        return checkpointingEnabled;
+    }
+
+    /**
+     * Sets if a checkpoint is written to {@link #getCheckpointFile(TradingAlgorithm)} at the first New York midnight
+     * (of simulated time) after every {@link #getCheckpointInterval()} (of wall-clock time) during runs. The state is
+     * serialized into memory on the backtest thread, which only takes as long as copying the orders, positions, and
+     * indicators, and is written to disk on a background thread. The checkpoint is deleted once the run completes.
+     *
+     * @param checkpointingEnabled the checkpointing enabled
+     */
+    public void setCheckpointingEnabled(boolean checkpointingEnabled) {
+        this.checkpointingEnabled = checkpointingEnabled;
+    }
+
+    /**
+     * Gets the minimum wall-clock time between checkpoints, which bounds how much work is lost if a run is killed.
+     *
+     * @return the checkpoint interval
+     */
+    public Duration getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * Sets checkpoint interval. See {@link #getCheckpointInterval()}.
+     *
+     * @param checkpointInterval the checkpoint interval (zero to checkpoint at every New York midnight)
+     */
+    public void setCheckpointInterval(Duration checkpointInterval) {
+        if (checkpointInterval.isNegative()) {
+            throw new IllegalArgumentException("The checkpoint interval can't be negative!");
+        }
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Gets checkpoint file.
+     *
+     * @return the checkpoint file (null for the default, see {@link #getCheckpointFile(TradingAlgorithm)})
+     */
+    public File getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    /**
+     * Sets the file that checkpoints are written to and resumed from. Backtests that run at the same time must use
+     * different files, which the default checkpoint files are.
+     *
+     * @param checkpointFile the checkpoint file (null for the default, see {@link
+     *                       #getCheckpointFile(TradingAlgorithm)})
+     */
+    public void setCheckpointFile(File checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Gets the file that the checkpoints of a trading algorithm are written to. Unless it is set with {@link
+     * #setCheckpointFile(File)}, this is a file in {@link BacktestData#getCheckpointsDirectory()} that is named by the
+     * trading algorithm class, {@link #getFrom()}, {@link #getTo()}, and a random suffix of this instance, so that
+     * backtests that run at the same time (e.g. the points of a {@link ParameterSweep}) never share a checkpoint file.
+     *
+     * @param tradingAlgorithm the trading algorithm
+     *
+     * @return the checkpoint file
+     */
+    public File getCheckpointFile(TradingAlgorithm tradingAlgorithm) {
+        if (checkpointFile != null) {
+            return checkpointFile;
+        }
+
+        return new File(backtestData.getCheckpointsDirectory(), getCheckpointFilePrefix(tradingAlgorithm) +
+                checkpointFileSuffix + "." + CheckpointFormat.FILE_EXTENSION);
+    }
+
+    /**
+     * Gets the prefix of the default checkpoint files of a trading algorithm, which is followed by the suffix of an
+     * instance.
+     *
+     * @param tradingAlgorithm the trading algorithm
+     *
+     * @return the checkpoint file prefix
+     */
+    private String getCheckpointFilePrefix(TradingAlgorithm tradingAlgorithm) {
+        return getName(tradingAlgorithm).replaceAll("[^A-Za-z0-9_.-]", "_") + "-" + TimeUtil.toEpochNanos(from) +
+                "-" + TimeUtil.toEpochNanos(to) + "-";
+    }
+
     /**
      * Gets from.
      *
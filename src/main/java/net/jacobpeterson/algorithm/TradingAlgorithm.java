@@ -10,17 +10,48 @@ import net.jacobpeterson.algorithm.update.other.MarketEventUpdateType;
 import net.jacobpeterson.algorithm.update.ticker.AggregateUpdateType;
 import net.jacobpeterson.broker.BacktestBroker;
 import net.jacobpeterson.data.BacktestData;
+import net.jacobpeterson.data.calendar.MarketCalendar;
+import net.jacobpeterson.data.cursor.AggregateCursor;
+import net.jacobpeterson.data.cursor.QuoteCursor;
+import net.jacobpeterson.data.cursor.TradeCursor;
+import net.jacobpeterson.data.record.BacktestRecorder;
+import net.jacobpeterson.engine.ReplayEngine;
+import net.jacobpeterson.engine.Timer;
+import net.jacobpeterson.engine.TimerCallback;
+import net.jacobpeterson.engine.TimerWheel;
+import net.jacobpeterson.indicator.Indicator;
+import net.jacobpeterson.indicator.Indicators;
+import net.jacobpeterson.util.TimeUtil;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
 
 /**
  * This is where your algorithm will listen to quotes, trades, aggregated data, and order updates and then promptly
  * submit orders to {@link BacktestBroker} accordingly. Simply create a new class that extends this one and use {@link
  * AlpacaJavaBacktest#run(TradingAlgorithm)} to execute a backtest. {@link BacktestBroker} is updated constantly so if
  * your algorithm references current buying power, equity, P&L, etc., you will have accurate data.
+ * <p>
+ * A backtest that is resumed from a checkpoint (see {@link AlpacaJavaBacktest#resume(TradingAlgorithm)}) runs on a new
+ * instance of your algorithm: {@link #init()} is called again at the time of the checkpoint and then the state of the
+ * attached indicators is restored. Implement {@link net.jacobpeterson.checkpoint.Checkpointable} to checkpoint the
+ * state of your algorithm itself (e.g. its fields and the timers that it schedules outside of {@link #init()}).
  */
 public abstract class TradingAlgorithm {
 
+    /**
+     * The number of days after a date that the {@link MarketCalendar} is looked up for to find the next trading day,
+     * which is more than the longest market closure.
+     */
+    private static final int TRADING_DAY_LOOKAHEAD_DAYS = 14;
+
     protected BacktestData backtestData;
     protected BacktestBroker backtestBroker;
+    private final Indicators indicators = new Indicators();
+    private final TimerWheel timerWheel = new TimerWheel();
 
     /**
      * This method is executed before a backtest is executed. You'll then have access to {@link #getBacktestBroker()}
@@ -39,6 +70,24 @@ public abstract class TradingAlgorithm {
      */
     public void onAggregateUpdate(AggregateUpdateType aggregateUpdateType, Aggregate aggregate) {}
 
+    /**
+     * This method is executed on the close of an aggregate time frame with a flyweight cursor over the aggregate which
+     * is only valid for the duration of this call. Override this instead of {@link
+     * #onAggregateUpdate(AggregateUpdateType, Aggregate)} to receive aggregates without any allocation. By default,
+     * this materializes an {@link Aggregate} and calls {@link #onAggregateUpdate(AggregateUpdateType, Aggregate)}.
+     * <p>
+     * Indicators attached with {@link #attachIndicator(String, AggregateUpdateType, Indicator)} have already been
+     * updated with the aggregate when this is called.
+     *
+     * @param ticker              the ticker
+     * @param aggregateUpdateType the aggregate update type
+     * @param aggregateCursor     the aggregate cursor
+     */
+    public void onAggregateUpdate(String ticker, AggregateUpdateType aggregateUpdateType,
+            AggregateCursor aggregateCursor) {
+        onAggregateUpdate(aggregateUpdateType, aggregateCursor.toAggregate());
+    }
+
     /**
      * This method is executed when a trade is executed on an exchange.
      *
@@ -46,6 +95,18 @@ public abstract class TradingAlgorithm {
      */
     public void onTradeUpdate(HistoricTrade historicTrade) {}
 
+    /**
+     * This method is executed when a trade is executed on an exchange with a flyweight cursor over the trade which is
+     * only valid for the duration of this call. By default, this materializes a {@link HistoricTrade} and calls {@link
+     * #onTradeUpdate(HistoricTrade)}.
+     *
+     * @param ticker      the ticker
+     * @param tradeCursor the trade cursor
+     */
+    public void onTradeUpdate(String ticker, TradeCursor tradeCursor) {
+        onTradeUpdate(tradeCursor.toHistoricTrade());
+    }
+
     /**
      * This method is executed when there is a Level I (NBBO) quote update which occurs when there is a new best
      * bid/offer on an exchange.
@@ -54,6 +115,18 @@ public abstract class TradingAlgorithm {
      */
     public void onQuoteUpdate(HistoricQuote quote) {}
 
+    /**
+     * This method is executed when there is a Level I (NBBO) quote update with a flyweight cursor over the quote which
+     * is only valid for the duration of this call. By default, this materializes a {@link HistoricQuote} and calls
+     * {@link #onQuoteUpdate(HistoricQuote)}.
+     *
+     * @param ticker      the ticker
+     * @param quoteCursor the quote cursor
+     */
+    public void onQuoteUpdate(String ticker, QuoteCursor quoteCursor) {
+        onQuoteUpdate(quoteCursor.toHistoricQuote());
+    }
+
     /**
      * This method is executed when there is a trade update to an order.
      *
@@ -76,6 +149,209 @@ public abstract class TradingAlgorithm {
      */
     public void onMarketEventUpdate(MarketEventUpdateType marketEventUpdateType) {}
 
+    /**
+     * Attaches an {@link Indicator} to a ticker and aggregate update type so that it is updated with every aggregate
+     * before {@link #onAggregateUpdate(String, AggregateUpdateType, AggregateCursor)} is called. Call this in {@link
+     * #init()} and keep a reference to the returned indicator.
+     *
+     * @param <I>                 the {@link Indicator} type
+     * @param ticker              the ticker
+     * @param aggregateUpdateType the aggregate update type
+     * @param indicator           the indicator
+     *
+     * @return the indicator
+     */
+    public final <I extends Indicator> I attachIndicator(String ticker, AggregateUpdateType aggregateUpdateType,
+            I indicator) {
+        return indicators.attach(ticker, aggregateUpdateType, indicator);
+    }
+
+    /**
+     * Schedules a one-shot timer at a simulated date time. Timers fire before the events after their deadline (see
+     * {@link ReplayEngine#run(TradingAlgorithm)}), so an algorithm that rebalances on a schedule doesn't need to
+     * subscribe to aggregates just to get a clock tick. Call this in {@link #init()} or in any callback.
+     *
+     * @param dateTime      the date time
+     * @param timerCallback the timer callback
+     *
+     * @return the timer
+     */
+    public final Timer schedule(ZonedDateTime dateTime, TimerCallback timerCallback) {
+        return timerWheel.schedule(TimeUtil.toEpochNanos(dateTime), timerCallback);
+    }
+
+    /**
+     * Schedules a one-shot timer after a delay of simulated time.
+     *
+     * @param delay         the delay
+     * @param timerCallback the timer callback
+     *
+     * @return the timer
+     */
+    public final Timer schedule(Duration delay, TimerCallback timerCallback) {
+        return timerWheel.schedule(timerWheel.getTime() + delay.toNanos(), timerCallback);
+    }
+
+    /**
+     * Schedules a timer that fires at a fixed rate of simulated time (e.g. every 15 minutes from a market open).
+     *
+     * @param firstDateTime the first date time
+     * @param period        the period
+     * @param timerCallback the timer callback
+     *
+     * @return the timer
+     */
+    public final Timer scheduleAtFixedRate(ZonedDateTime firstDateTime, Duration period,
+            TimerCallback timerCallback) {
+        return timerWheel.scheduleAtFixedRate(TimeUtil.toEpochNanos(firstDateTime), period.toNanos(),
+                timerCallback);
+    }
+
+    /**
+     * Schedules a timer that fires at a New York time on every trading day (across daylight saving time changes).
+     * Trading days are taken from the {@link MarketCalendar} of {@link #getBacktestData()} (see {@link
+     * BacktestData#findMarketCalendar(LocalDate, LocalDate)}), so holidays are skipped, or are every weekday if the
+     * calendar isn't available. The timer still fires at its time on days that the market closes early.
+     *
+     * @param time          the New York time
+     * @param timerCallback the timer callback
+     *
+     * @return the timer
+     */
+    public final Timer scheduleDaily(LocalTime time, TimerCallback timerCallback) {
+        LocalDate date = TimeUtil.toNewYorkDate(timerWheel.getTime());
+        if (!isTradingDay(date) || TimeUtil.toEpochNanos(date, time) < timerWheel.getTime()) {
+            date = getNextTradingDay(date);
+        }
+
+        return timerWheel.schedule(TimeUtil.toEpochNanos(date, time),
+                deadline -> TimeUtil.toEpochNanos(getNextTradingDay(TimeUtil.toNewYorkDate(deadline)), time),
+                timerCallback);
+    }
+
+    /**
+     * Returns true if a date is a trading day of the {@link MarketCalendar}, or a weekday if the calendar isn't
+     * available.
+     *
+     * @param date the date
+     *
+     * @return the boolean
+     */
+    private boolean isTradingDay(LocalDate date) {
+        MarketCalendar marketCalendar = findMarketCalendar(date);
+        return marketCalendar != null ? marketCalendar.isTradingDay(date) : isWeekday(date);
+    }
+
+    /**
+     * Gets the next trading day of the {@link MarketCalendar} after a date, or the next weekday if the calendar isn't
+     * available.
+     *
+     * @param date the date
+     *
+     * @return the next trading day
+     */
+    private LocalDate getNextTradingDay(LocalDate date) {
+        MarketCalendar marketCalendar = findMarketCalendar(date);
+        LocalDate nextTradingDay = marketCalendar != null ? marketCalendar.getNextTradingDay(date) : null;
+        return nextTradingDay != null ? nextTradingDay : getNextWeekday(date);
+    }
+
+    /**
+     * Finds the {@link MarketCalendar} from a date to {@link #TRADING_DAY_LOOKAHEAD_DAYS} after it.
+     *
+     * @param date the date
+     *
+     * @return the market calendar (null if it isn't available)
+     */
+    private MarketCalendar findMarketCalendar(LocalDate date) {
+        return backtestData == null ? null :
+                backtestData.findMarketCalendar(date, date.plusDays(TRADING_DAY_LOOKAHEAD_DAYS));
+    }
+
+    /**
+     * Returns true if a date is a weekday.
+     *
+     * @param date the date
+     *
+     * @return the boolean
+     */
+    private static boolean isWeekday(LocalDate date) {
+        return date.getDayOfWeek() != DayOfWeek.SATURDAY && date.getDayOfWeek() != DayOfWeek.SUNDAY;
+    }
+
+    /**
+     * Gets the next weekday after a date.
+     *
+     * @param date the date
+     *
+     * @return the next weekday
+     */
+    private static LocalDate getNextWeekday(LocalDate date) {
+        do {
+            date = date.plusDays(1);
+        } while (!isWeekday(date));
+        return date;
+    }
+
+    /**
+     * Gets the simulated time of the backtest. While an event or a timer is dispatched, this is its timestamp.
+     *
+     * @return the current timestamp (epoch nanoseconds)
+     */
+    public final long getCurrentTimestamp() {
+        return timerWheel.getTime();
+    }
+
+    /**
+     * Gets the simulated New York date time of the backtest (see {@link #getCurrentTimestamp()}).
+     *
+     * @return the current date time
+     */
+    public final ZonedDateTime getCurrentDateTime() {
+        return TimeUtil.toNewYorkDateTime(timerWheel.getTime());
+    }
+
+    /**
+     * Records an annotation (e.g. the reason of a signal) at the current timestamp to the {@link BacktestRecorder} of
+     * the {@link BacktestBroker}. This does nothing if the backtest isn't recorded.
+     *
+     * @param text the text
+     */
+    public final void annotate(String text) {
+        annotate(null, text);
+    }
+
+    /**
+     * Records an annotation of a ticker at the current timestamp. See {@link #annotate(String)}.
+     *
+     * @param ticker the ticker (null for none)
+     * @param text   the text
+     */
+    public final void annotate(String ticker, String text) {
+        BacktestRecorder backtestRecorder = backtestBroker == null ? null : backtestBroker.getBacktestRecorder();
+        if (backtestRecorder != null) {
+            backtestRecorder.recordAnnotation(timerWheel.getTime(), ticker, text);
+        }
+    }
+
+    /**
+     * Gets the timer wheel that the timers of this algorithm are scheduled on.
+     *
+     * @return the timer wheel
+     */
+    public final TimerWheel getTimerWheel() {
+        return timerWheel;
+    }
+
+    /**
+     * Gets indicators.
+     *
+     * @return the indicators
+     */
+    public final Indicators getIndicators() {
+        return indicators;
+    }
+
     /**
      * Gets backtest data.
      *
@@ -1,26 +1,51 @@
 package net.jacobpeterson.broker;
 
+import com.google.gson.JsonObject;
 import io.github.mainstringargs.alpaca.enums.OrderSide;
 import io.github.mainstringargs.alpaca.enums.OrderTimeInForce;
 import io.github.mainstringargs.alpaca.enums.OrderType;
 import io.github.mainstringargs.domain.alpaca.account.Account;
 import io.github.mainstringargs.domain.alpaca.order.Order;
 import io.github.mainstringargs.domain.alpaca.position.Position;
+import io.github.mainstringargs.domain.alpaca.websocket.trade.TradeUpdate;
+import net.jacobpeterson.algorithm.TradingAlgorithm;
+import net.jacobpeterson.broker.ledger.Ledger;
+import net.jacobpeterson.broker.order.MatchingEngine;
+import net.jacobpeterson.broker.order.OrderBook;
+import net.jacobpeterson.broker.order.OrderEvent;
+import net.jacobpeterson.broker.order.OrderStatus;
+import net.jacobpeterson.broker.statistics.PerformanceStatistics;
+import net.jacobpeterson.checkpoint.Checkpointable;
 import net.jacobpeterson.data.BacktestData;
+import net.jacobpeterson.data.record.BacktestRecorder;
+import net.jacobpeterson.util.GsonUtil;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Locale;
+import java.util.UUID;
 
 /**
  * This is used as a simulated broker to submit orders, get account data, get orders, get positions, etc. The stuff you
  * usually might see in an investment portfolio. These orders are compared against bid/ask prices as well as traded
  * prices of an equity. This ensures that the backtesting is most accurate to what would happen in a live market.
+ * <p>
+ * Orders are matched by a primitive {@link MatchingEngine}. The alpaca-java {@link Order} and {@link TradeUpdate}
+ * POJOs are only created when they're requested or when trade updates are enabled. Likewise, cash, positions, and
+ * P&amp;L are kept in a primitive {@link Ledger} and the {@link Account} and {@link Position} POJOs are only created
+ * when they're requested.
  */
-public class BacktestBroker {
+public class BacktestBroker implements Checkpointable {
 
     private final BacktestData backtestData;
-    private Account account;
-    private ArrayList<Order> orders;
-    private ArrayList<Position> positions;
+    private final MatchingEngine matchingEngine;
+    private final Ledger ledger;
+    private final PerformanceStatistics performanceStatistics;
+    private TradingAlgorithm tradingAlgorithm;
+    private boolean tradeUpdatesEnabled;
+    private BacktestRecorder backtestRecorder;
 
     /**
      * Instantiates a new Backtest broker with the following defaults:
@@ -32,20 +57,34 @@ public class BacktestBroker {
      * @param backtestData the backtest data
      */
     public BacktestBroker(BacktestData backtestData) {
-        this(backtestData, createDefaultAccount(100_000, 4));
+        this(backtestData, 100_000, 4);
     }
 
     /**
-     * Instantiates a new Backtest portfolio.
+     * Instantiates a new Backtest portfolio with the equity and buying power multiplier of an account.
      *
      * @param backtestData the backtest data
      * @param account      the account
      */
     public BacktestBroker(BacktestData backtestData, Account account) {
+        this(backtestData, Double.parseDouble(account.getEquity()), Double.parseDouble(account.getMultiplier()));
+    }
+
+    /**
+     * Instantiates a new Backtest portfolio.
+     *
+     * @param backtestData          the backtest data
+     * @param equity                the equity
+     * @param buyingPowerMultiplier the buying power multiplier
+     */
+    public BacktestBroker(BacktestData backtestData, double equity, double buyingPowerMultiplier) {
         this.backtestData = backtestData;
-        this.account = account;
-        this.orders = new ArrayList<>();
-        this.positions = new ArrayList<>();
+        this.matchingEngine = new MatchingEngine();
+        this.ledger = new Ledger(equity, buyingPowerMultiplier);
+        this.performanceStatistics = new PerformanceStatistics(ledger);
+
+        matchingEngine.setOrderListener(this::onOrderEvent);
+        matchingEngine.setPriceListener(this::onPrice);
     }
 
     /**
@@ -65,81 +104,392 @@ public class BacktestBroker {
     }
 
     /**
-     * Submit an order.
+     * Submit an order. Use {@link MatchingEngine#submitOrder(String, int, OrderSide, OrderType, OrderTimeInForce,
+     * double, double)} via {@link #getMatchingEngine()} to submit orders without creating an {@link Order}. Either way,
+     * an order that would add more notional than the buying power is {@link OrderStatus#REJECTED}.
      *
      * @param ticker           the ticker
      * @param quantity         the quantity
      * @param orderSide        the order side
      * @param orderType        the order type
      * @param orderTimeInForce the order time in force
-     * @param limitPrice       the limit price
-     * @param stopPrice        the stop price
+     * @param limitPrice       the limit price (null if not applicable)
+     * @param stopPrice        the stop price (null if not applicable)
+     *
+     * @return the order
      */
-    public void submitOrder(String ticker, Integer quantity, OrderSide orderSide, OrderType orderType,
+    public Order submitOrder(String ticker, Integer quantity, OrderSide orderSide, OrderType orderType,
             OrderTimeInForce orderTimeInForce, Double limitPrice, Double stopPrice) {
-        // TODO
+        int orderID = matchingEngine.submitOrder(ticker, quantity, orderSide, orderType, orderTimeInForce,
+                limitPrice == null ? Double.NaN : limitPrice, stopPrice == null ? Double.NaN : stopPrice);
+        return getOrder(orderID);
     }
 
     /**
      * Cancel an order.
      *
      * @param order the order
+     *
+     * @return true if the order was canceled, false if it wasn't open
      */
-    public void cancelOrder(Order order) {
-        // TODO
+    public boolean cancelOrder(Order order) {
+        return matchingEngine.cancelOrder(getOrderID(order.getId()));
     }
 
     /**
-     * Gets account.
+     * Called by the {@link MatchingEngine} when an order event occurs.
      *
-     * @return the account
+     * @param orderID    the order ID
+     * @param orderEvent the order event
+     * @param timestamp  the timestamp
+     * @param price      the price
+     * @param quantity   the quantity
      */
-    public Account getAccount() {
-        return account;
+    private void onOrderEvent(int orderID, OrderEvent orderEvent, long timestamp, double price, int quantity) {
+        if (orderEvent == OrderEvent.FILL) {
+            double realizedProfitLoss = ledger.getRealizedProfitLoss();
+            ledger.onFill(matchingEngine.getOrderBookOfOrder(orderID),
+                    matchingEngine.getSide(orderID) == OrderSide.BUY ? quantity : -quantity, price);
+            performanceStatistics.onFill(timestamp, Math.abs(quantity * price),
+                    ledger.getRealizedProfitLoss() - realizedProfitLoss);
+        }
+
+        publishOrderEvent(orderID, orderEvent, timestamp, price, quantity);
+
+        // Rejecting the order while its NEW event is handled keeps the MatchingEngine from matching it
+        if (orderEvent == OrderEvent.NEW && !hasBuyingPower(orderID)) {
+            matchingEngine.rejectOrder(orderID);
+        }
     }
 
     /**
-     * Sets account.
+     * Records an order event and sends it to the {@link TradingAlgorithm} if trade updates are enabled.
      *
-     * @param account the account
+     * @param orderID    the order ID
+     * @param orderEvent the order event
+     * @param timestamp  the timestamp
+     * @param price      the price
+     * @param quantity   the quantity
      */
-    public void setAccount(Account account) {
-        this.account = account;
+    private void publishOrderEvent(int orderID, OrderEvent orderEvent, long timestamp, double price, int quantity) {
+        if (backtestRecorder != null) {
+            int recordedQuantity = orderEvent == OrderEvent.FILL ? quantity : matchingEngine.getQuantity(orderID);
+            backtestRecorder.recordOrderEvent(timestamp, orderID, orderEvent, matchingEngine.getTicker(orderID),
+                    matchingEngine.getSide(orderID), matchingEngine.getType(orderID),
+                    matchingEngine.getTimeInForce(orderID), recordedQuantity, price,
+                    matchingEngine.getLimitPrice(orderID), matchingEngine.getStopPrice(orderID));
+        }
+
+        if (!tradeUpdatesEnabled || tradingAlgorithm == null) {
+            return;
+        }
+
+        JsonObject tradeUpdateJson = new JsonObject();
+        tradeUpdateJson.addProperty("event", orderEvent.getAPIName());
+        if (orderEvent == OrderEvent.FILL) {
+            tradeUpdateJson.addProperty("price", String.valueOf(price));
+            tradeUpdateJson.addProperty("qty", String.valueOf(quantity));
+        }
+        tradeUpdateJson.add("order", toOrderJson(orderID));
+
+        tradingAlgorithm.onTradeUpdate(GsonUtil.GSON.fromJson(tradeUpdateJson, TradeUpdate.class));
     }
 
     /**
-     * Gets orders.
+     * Checks if there is enough buying power for a new order (see {@link Ledger#hasBuyingPower(OrderBook, int,
+     * double)}). The order is priced at its limit price, or else at its stop price, or else at the quote or last price
+     * it would fill at now. An order that can't be priced yet is accepted.
      *
-     * @return the orders
+     * @param orderID the order ID
+     *
+     * @return true if there is enough buying power
      */
-    public ArrayList<Order> getOrders() {
-        return orders;
+    private boolean hasBuyingPower(int orderID) {
+        OrderBook orderBook = matchingEngine.getOrderBookOfOrder(orderID);
+        boolean isBuy = matchingEngine.getSide(orderID) == OrderSide.BUY;
+        double price = matchingEngine.getLimitPrice(orderID);
+        if (price != price) {
+            price = matchingEngine.getStopPrice(orderID);
+        }
+        if (price != price) {
+            price = isBuy ? orderBook.getAskPrice() : orderBook.getBidPrice();
+        }
+        if (price != price) {
+            price = orderBook.getLastPrice();
+        }
+        if (price != price) {
+            return true;
+        }
+
+        int quantity = matchingEngine.getQuantity(orderID);
+        return ledger.hasBuyingPower(orderBook, isBuy ? quantity : -quantity, price);
+    }
+
+    /**
+     * Called by the {@link MatchingEngine} when the mark price of an {@link OrderBook} changes.
+     *
+     * @param orderBook the order book
+     * @param price     the price
+     */
+    private void onPrice(OrderBook orderBook, double price) {
+        ledger.onPrice(orderBook, price);
+        performanceStatistics.update(matchingEngine.getTimestamp());
+    }
+
+    /**
+     * Creates an {@link Order} of an order in the {@link MatchingEngine}.
+     *
+     * @param orderID the order ID
+     *
+     * @return the order
+     */
+    public Order getOrder(int orderID) {
+        return GsonUtil.GSON.fromJson(toOrderJson(orderID), Order.class);
+    }
+
+    /**
+     * Creates the Alpaca JSON of an order in the {@link MatchingEngine}.
+     *
+     * @param orderID the order ID
+     *
+     * @return the JSON object
+     */
+    private JsonObject toOrderJson(int orderID) {
+        String id = getAlpacaOrderID(orderID);
+        JsonObject orderJson = new JsonObject();
+        orderJson.addProperty("id", id);
+        orderJson.addProperty("client_order_id", id);
+        orderJson.addProperty("symbol", matchingEngine.getTicker(orderID));
+        orderJson.addProperty("asset_class", "us_equity");
+        orderJson.addProperty("qty", String.valueOf(matchingEngine.getQuantity(orderID)));
+        orderJson.addProperty("filled_qty", String.valueOf(matchingEngine.getFilledQuantity(orderID)));
+        addPriceProperty(orderJson, "filled_avg_price", matchingEngine.getFilledAveragePrice(orderID));
+        orderJson.addProperty("side", matchingEngine.getSide(orderID).name().toLowerCase(Locale.ROOT));
+        orderJson.addProperty("type", matchingEngine.getType(orderID).name().toLowerCase(Locale.ROOT));
+        orderJson.addProperty("time_in_force",
+                matchingEngine.getTimeInForce(orderID).name().toLowerCase(Locale.ROOT));
+        addPriceProperty(orderJson, "limit_price", matchingEngine.getLimitPrice(orderID));
+        addPriceProperty(orderJson, "stop_price", matchingEngine.getStopPrice(orderID));
+        orderJson.addProperty("status", matchingEngine.getStatus(orderID).getAPIName());
+        orderJson.addProperty("extended_hours", false);
+        return orderJson;
+    }
+
+    /**
+     * Adds a price property to a JSON object if the price is not NaN.
+     *
+     * @param jsonObject the json object
+     * @param property   the property
+     * @param price      the price
+     */
+    private static void addPriceProperty(JsonObject jsonObject, String property, double price) {
+        if (price == price) {
+            jsonObject.addProperty(property, String.valueOf(price));
+        }
+    }
+
+    /**
+     * Gets the Alpaca order ID (a UUID) of a {@link MatchingEngine} order ID.
+     *
+     * @param orderID the order ID
+     *
+     * @return the Alpaca order ID
+     */
+    public static String getAlpacaOrderID(int orderID) {
+        return new UUID(0, orderID).toString();
+    }
+
+    /**
+     * Gets the {@link MatchingEngine} order ID of an Alpaca order ID from {@link #getAlpacaOrderID(int)}.
+     *
+     * @param alpacaOrderID the Alpaca order ID
+     *
+     * @return the order ID
+     */
+    public static int getOrderID(String alpacaOrderID) {
+        return (int) UUID.fromString(alpacaOrderID).getLeastSignificantBits();
+    }
+
+    /**
+     * Creates an {@link Account} of the {@link Ledger}. Use {@link #getLedger()} to read the account without any
+     * allocation or parsing.
+     *
+     * @return the account
+     */
+    public Account getAccount() {
+        JsonObject accountJson = new JsonObject();
+        accountJson.addProperty("id", "backtest");
+        accountJson.addProperty("account_number", "backtest");
+        accountJson.addProperty("status", "ACTIVE");
+        accountJson.addProperty("currency", "USD");
+        accountJson.addProperty("cash", String.valueOf(ledger.getCash()));
+        accountJson.addProperty("portfolio_value", String.valueOf(ledger.getEquity()));
+        accountJson.addProperty("equity", String.valueOf(ledger.getEquity()));
+        accountJson.addProperty("last_equity", String.valueOf(ledger.getInitialCash()));
+        accountJson.addProperty("long_market_value", String.valueOf(ledger.getLongMarketValue()));
+        accountJson.addProperty("short_market_value", String.valueOf(ledger.getShortMarketValue()));
+        accountJson.addProperty("buying_power", String.valueOf(ledger.getBuyingPower()));
+        accountJson.addProperty("multiplier", String.valueOf(ledger.getMultiplier()));
+        return GsonUtil.GSON.fromJson(accountJson, Account.class);
     }
 
     /**
-     * Sets orders.
+     * Gets the open orders.
      *
-     * @param orders the orders
+     * @return the orders
      */
-    public void setOrders(ArrayList<Order> orders) {
-        this.orders = orders;
+    public ArrayList<Order> getOrders() {
+        ArrayList<Order> orders = new ArrayList<>(matchingEngine.getOpenOrderCount());
+        for (int orderID = 0; orderID < matchingEngine.getOrderCount(); orderID++) {
+            if (matchingEngine.getStatus(orderID) == OrderStatus.NEW) {
+                orders.add(getOrder(orderID));
+            }
+        }
+        return orders;
     }
 
     /**
-     * Gets positions.
+     * Creates the {@link Position}s of the {@link Ledger}. Use {@link #getLedger()} to read positions without any
+     * allocation or parsing.
      *
      * @return the positions
      */
     public ArrayList<Position> getPositions() {
+        ArrayList<Position> positions = new ArrayList<>(ledger.getPositionCount());
+        for (int id = 0; id < ledger.getPositionCapacity(); id++) {
+            long quantity = ledger.getQuantity(id);
+            if (quantity == 0) {
+                continue;
+            }
+
+            double marketValue = quantity * ledger.getMarkPrice(id);
+            double costBasis = ledger.getCostBasis(id);
+            JsonObject positionJson = new JsonObject();
+            positionJson.addProperty("symbol", ledger.getTicker(id));
+            positionJson.addProperty("asset_class", "us_equity");
+            positionJson.addProperty("avg_entry_price", String.valueOf(ledger.getAverageEntryPrice(id)));
+            positionJson.addProperty("qty", String.valueOf(quantity));
+            positionJson.addProperty("side", quantity > 0 ? "long" : "short");
+            positionJson.addProperty("market_value", String.valueOf(marketValue));
+            positionJson.addProperty("cost_basis", String.valueOf(costBasis));
+            positionJson.addProperty("unrealized_pl", String.valueOf(marketValue - costBasis));
+            positionJson.addProperty("unrealized_plpc", String.valueOf((marketValue - costBasis) /
+                    Math.abs(costBasis)));
+            positionJson.addProperty("current_price", String.valueOf(ledger.getMarkPrice(id)));
+            positions.add(GsonUtil.GSON.fromJson(positionJson, Position.class));
+        }
         return positions;
     }
 
     /**
-     * Sets positions.
+     * Writes the orders of the {@link MatchingEngine}, the account and positions of the {@link Ledger}, and the {@link
+     * PerformanceStatistics}.
+     *
+     * @param dataOutput the data output
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    @Override
+    public void writeState(DataOutput dataOutput) throws IOException {
+        matchingEngine.writeState(dataOutput);
+        ledger.writeState(dataOutput);
+        performanceStatistics.writeState(dataOutput);
+    }
+
+    /**
+     * Reads the state that was written by {@link #writeState(DataOutput)} into this broker, which must be new (no
+     * orders may have been submitted to it). See {@link MatchingEngine#readState(DataInput)}.
+     *
+     * @param dataInput the data input
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    @Override
+    public void readState(DataInput dataInput) throws IOException {
+        matchingEngine.readState(dataInput);
+        ledger.readState(dataInput);
+        performanceStatistics.readState(dataInput);
+    }
+
+    /**
+     * Gets ledger.
+     *
+     * @return the ledger
+     */
+    public Ledger getLedger() {
+        return ledger;
+    }
+
+    /**
+     * Gets the performance statistics that are computed from the fills and mark prices of the {@link Ledger}.
+     *
+     * @return the performance statistics
+     */
+    public PerformanceStatistics getPerformanceStatistics() {
+        return performanceStatistics;
+    }
+
+    /**
+     * Gets matching engine.
+     *
+     * @return the matching engine
+     */
+    public MatchingEngine getMatchingEngine() {
+        return matchingEngine;
+    }
+
+    /**
+     * Gets trading algorithm.
+     *
+     * @return the trading algorithm
+     */
+    public TradingAlgorithm getTradingAlgorithm() {
+        return tradingAlgorithm;
+    }
+
+    /**
+     * Sets the trading algorithm that trade updates are sent to.
+     *
+     * @param tradingAlgorithm the trading algorithm
+     */
+    public void setTradingAlgorithm(TradingAlgorithm tradingAlgorithm) {
+        this.tradingAlgorithm = tradingAlgorithm;
+    }
+
+    /**
+     * Returns true if trade updates are sent to {@link TradingAlgorithm#onTradeUpdate(TradeUpdate)}.
+     *
+     * @return the boolean
+     */
+    public boolean isTradeUpdatesEnabled() {
+        return tradeUpdatesEnabled;
+    }
+
+    /**
+     * Sets if trade updates are sent to {@link TradingAlgorithm#onTradeUpdate(TradeUpdate)}. This is enabled by
+     * {@link net.jacobpeterson.algorithm.update.other.BrokerUpdateType#TRADE}.
+     *
+     * @param tradeUpdatesEnabled the trade updates enabled
+     */
+    public void setTradeUpdatesEnabled(boolean tradeUpdatesEnabled) {
+        this.tradeUpdatesEnabled = tradeUpdatesEnabled;
+    }
+
+    /**
+     * Gets backtest recorder.
+     *
+     * @return the backtest recorder
+     */
+    public BacktestRecorder getBacktestRecorder() {
+        return backtestRecorder;
+    }
+
+    /**
+     * Sets the backtest recorder that order events are recorded to.
      *
-     * @param positions the positions
+     * @param backtestRecorder the backtest recorder (null to not record order events)
      */
-    public void setPositions(ArrayList<Position> positions) {
-        this.positions = positions;
+    public void setBacktestRecorder(BacktestRecorder backtestRecorder) {
+        this.backtestRecorder = backtestRecorder;
     }
 }
@@ -0,0 +1,474 @@
+package net.jacobpeterson.broker.ledger;
+
+import net.jacobpeterson.broker.order.OrderBook;
+import net.jacobpeterson.checkpoint.Checkpointable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The primitive account and position ledger of the {@link net.jacobpeterson.broker.BacktestBroker}. Positions are
+ * indexed by {@link OrderBook#getID()}. Cash, cost basis, realized P&amp;L, and market values are kept as running
+ * totals that are updated incrementally on each fill ({@link #onFill(OrderBook, int, double)}) and each mark price
+ * ({@link #onPrice(OrderBook, double)}), so reading equity, P&amp;L, or buying power is <code>O(1)</code> and
+ * allocation-free.
+ * <p>
+ * Buying power is <code>equity * multiplier</code> minus the gross market value of the positions. Positions are
+ * valued at the quote mid price, or at the last trade or bar price if there are no quotes.
+ * <p>
+ * This is not thread safe.
+ */
+public class Ledger implements Checkpointable {
+
+    private final double initialCash;
+    private final double multiplier;
+    private double cash;
+    private double realizedProfitLoss;
+    private double costBasis;
+    private double marketValue;
+    private double longMarketValue;
+    private double shortMarketValue;
+    private int positionCount;
+
+    private String[] tickers;
+    private long[] quantities;
+    private double[] costBases;
+    private double[] markPrices;
+
+    /**
+     * Instantiates a new Ledger.
+     *
+     * @param cash       the initial cash
+     * @param multiplier the buying power multiplier
+     */
+    public Ledger(double cash, double multiplier) {
+        this.initialCash = cash;
+        this.multiplier = multiplier;
+        this.cash = cash;
+
+        this.tickers = new String[16];
+        this.quantities = new long[16];
+        this.costBases = new double[16];
+        this.markPrices = new double[16];
+        Arrays.fill(markPrices, Double.NaN);
+    }
+
+    /**
+     * Applies a fill. The position is treated as one lot with an average cost, so reducing a position realizes P&amp;L
+     * against its average entry price, and a fill that crosses zero reverses the position at the fill price.
+     *
+     * @param orderBook the order book
+     * @param quantity  the signed quantity (positive for buys, negative for sells)
+     * @param price     the price
+     */
+    public void onFill(OrderBook orderBook, int quantity, double price) {
+        int id = orderBook.getID();
+        ensureCapacity(id);
+        tickers[id] = orderBook.getTicker();
+
+        double markPrice = markPrices[id];
+        if (markPrice != markPrice) {
+            markPrice = price;
+            markPrices[id] = price;
+        }
+
+        long oldQuantity = quantities[id];
+        removeFromTotals(id);
+
+        cash -= quantity * price;
+        long newQuantity = oldQuantity + quantity;
+        if (oldQuantity == 0 || (oldQuantity > 0) == (quantity > 0)) { // Opening or adding to a position
+            costBases[id] += quantity * price;
+        } else {
+            double averageEntryPrice = costBases[id] / oldQuantity;
+            long closedQuantity = Math.min(Math.abs(oldQuantity), Math.abs(quantity)) * Long.signum(oldQuantity);
+            realizedProfitLoss += closedQuantity * (price - averageEntryPrice);
+            if (newQuantity == 0) {
+                costBases[id] = 0;
+            } else if ((newQuantity > 0) == (oldQuantity > 0)) { // Reduced
+                costBases[id] = newQuantity * averageEntryPrice;
+            } else { // Reversed
+                costBases[id] = newQuantity * price;
+            }
+        }
+        quantities[id] = newQuantity;
+
+        addToTotals(id);
+        if (oldQuantity == 0 && newQuantity != 0) {
+            positionCount++;
+        } else if (oldQuantity != 0 && newQuantity == 0) {
+            positionCount--;
+        }
+    }
+
+    /**
+     * Marks a position to market.
+     *
+     * @param orderBook the order book
+     * @param price     the mark price
+     */
+    public void onPrice(OrderBook orderBook, double price) {
+        int id = orderBook.getID();
+        if (id >= quantities.length) {
+            return; // There has never been a position
+        }
+
+        long quantity = quantities[id];
+        if (quantity != 0) {
+            double delta = quantity * (price - markPrices[id]);
+            marketValue += delta;
+            if (quantity > 0) {
+                longMarketValue += delta;
+            } else {
+                shortMarketValue += delta;
+            }
+        }
+        markPrices[id] = price;
+    }
+
+    /**
+     * Removes the contribution of a position from the running totals.
+     *
+     * @param id the ID
+     */
+    private void removeFromTotals(int id) {
+        long quantity = quantities[id];
+        if (quantity == 0) {
+            return;
+        }
+        double positionMarketValue = quantity * markPrices[id];
+        marketValue -= positionMarketValue;
+        if (quantity > 0) {
+            longMarketValue -= positionMarketValue;
+        } else {
+            shortMarketValue -= positionMarketValue;
+        }
+        costBasis -= costBases[id];
+    }
+
+    /**
+     * Adds the contribution of a position to the running totals.
+     *
+     * @param id the ID
+     */
+    private void addToTotals(int id) {
+        long quantity = quantities[id];
+        if (quantity == 0) {
+            return;
+        }
+        double positionMarketValue = quantity * markPrices[id];
+        marketValue += positionMarketValue;
+        if (quantity > 0) {
+            longMarketValue += positionMarketValue;
+        } else {
+            shortMarketValue += positionMarketValue;
+        }
+        costBasis += costBases[id];
+    }
+
+    /**
+     * Grows the position columns to fit an ID.
+     *
+     * @param id the ID
+     */
+    private void ensureCapacity(int id) {
+        if (id < quantities.length) {
+            return;
+        }
+
+        int oldCapacity = quantities.length;
+        int newCapacity = Math.max(oldCapacity * 2, id + 1);
+        tickers = Arrays.copyOf(tickers, newCapacity);
+        quantities = Arrays.copyOf(quantities, newCapacity);
+        costBases = Arrays.copyOf(costBases, newCapacity);
+        markPrices = Arrays.copyOf(markPrices, newCapacity);
+        Arrays.fill(markPrices, oldCapacity, newCapacity, Double.NaN);
+    }
+
+    /**
+     * Writes the cash, the running totals, and the positions of this ledger.
+     *
+     * @param dataOutput the data output
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    @Override
+    public void writeState(DataOutput dataOutput) throws IOException {
+        dataOutput.writeDouble(initialCash);
+        dataOutput.writeDouble(multiplier);
+        dataOutput.writeDouble(cash);
+        dataOutput.writeDouble(realizedProfitLoss);
+        dataOutput.writeDouble(costBasis);
+        dataOutput.writeDouble(marketValue);
+        dataOutput.writeDouble(longMarketValue);
+        dataOutput.writeDouble(shortMarketValue);
+        dataOutput.writeInt(positionCount);
+
+        dataOutput.writeInt(quantities.length);
+        for (int id = 0; id < quantities.length; id++) {
+            dataOutput.writeBoolean(tickers[id] != null);
+            if (tickers[id] != null) {
+                dataOutput.writeUTF(tickers[id]);
+            }
+            dataOutput.writeLong(quantities[id]);
+            dataOutput.writeDouble(costBases[id]);
+            dataOutput.writeDouble(markPrices[id]);
+        }
+    }
+
+    /**
+     * Reads the state of a ledger with the same initial cash and multiplier that was written by {@link
+     * #writeState(DataOutput)} into this ledger.
+     *
+     * @param dataInput the data input
+     *
+     * @throws IOException              thrown for {@link IOException}s
+     * @throws IllegalArgumentException if the initial cash or the multiplier are different
+     */
+    @Override
+    public void readState(DataInput dataInput) throws IOException {
+        double sourceInitialCash = dataInput.readDouble();
+        double sourceMultiplier = dataInput.readDouble();
+        if (Double.compare(sourceInitialCash, initialCash) != 0 || Double.compare(sourceMultiplier, multiplier) != 0) {
+            throw new IllegalArgumentException("Can't read the state of a ledger with an initial cash of " +
+                    sourceInitialCash + " and a multiplier of " + sourceMultiplier + " into a ledger with an " +
+                    "initial cash of " + initialCash + " and a multiplier of " + multiplier + "!");
+        }
+
+        cash = dataInput.readDouble();
+        realizedProfitLoss = dataInput.readDouble();
+        costBasis = dataInput.readDouble();
+        marketValue = dataInput.readDouble();
+        longMarketValue = dataInput.readDouble();
+        shortMarketValue = dataInput.readDouble();
+        positionCount = dataInput.readInt();
+
+        int capacity = dataInput.readInt();
+        if (capacity < 0) {
+            throw new IOException("Invalid position capacity: " + capacity);
+        }
+        tickers = new String[capacity];
+        quantities = new long[capacity];
+        costBases = new double[capacity];
+        markPrices = new double[capacity];
+        for (int id = 0; id < capacity; id++) {
+            tickers[id] = dataInput.readBoolean() ? dataInput.readUTF() : null;
+            quantities[id] = dataInput.readLong();
+            costBases[id] = dataInput.readDouble();
+            markPrices[id] = dataInput.readDouble();
+        }
+    }
+
+    /**
+     * Gets the equity (cash plus the market value of the positions).
+     *
+     * @return the equity
+     */
+    public double getEquity() {
+        return cash + marketValue;
+    }
+
+    /**
+     * Gets the buying power.
+     *
+     * @return the buying power
+     */
+    public double getBuyingPower() {
+        return Math.max(0, getEquity() * multiplier - (longMarketValue - shortMarketValue));
+    }
+
+    /**
+     * Gets the gross market value that a fill would add to the positions, which is what it would take from the
+     * buying power. Only the part of a fill that opens or adds to a position adds market value, so reducing or closing
+     * a position adds none and reversing a position only adds the part past zero less the part that was closed.
+     *
+     * @param orderBook the order book
+     * @param quantity  the signed quantity (positive for buys, negative for sells)
+     * @param price     the price
+     *
+     * @return the added notional (0 or negative if the fill doesn't add to the positions)
+     */
+    public double getAddedNotional(OrderBook orderBook, int quantity, double price) {
+        long oldQuantity = getQuantity(orderBook.getID());
+        return (Math.abs(oldQuantity + quantity) - Math.abs(oldQuantity)) * price;
+    }
+
+    /**
+     * Checks if there is enough buying power for a fill (see {@link #getAddedNotional(OrderBook, int, double)}).
+     *
+     * @param orderBook the order book
+     * @param quantity  the signed quantity (positive for buys, negative for sells)
+     * @param price     the price
+     *
+     * @return true if the fill doesn't add more notional than the buying power
+     */
+    public boolean hasBuyingPower(OrderBook orderBook, int quantity, double price) {
+        return getAddedNotional(orderBook, quantity, price) <= getBuyingPower();
+    }
+
+    /**
+     * Gets the unrealized P&amp;L of the positions.
+     *
+     * @return the unrealized profit loss
+     */
+    public double getUnrealizedProfitLoss() {
+        return marketValue - costBasis;
+    }
+
+    /**
+     * Gets the total P&amp;L (equity minus the initial cash).
+     *
+     * @return the profit loss
+     */
+    public double getProfitLoss() {
+        return getEquity() - initialCash;
+    }
+
+    /**
+     * Gets the signed quantity of a position.
+     *
+     * @param id the {@link OrderBook#getID()}
+     *
+     * @return the quantity (0 if there is no position)
+     */
+    public long getQuantity(int id) {
+        return id < quantities.length ? quantities[id] : 0;
+    }
+
+    /**
+     * Gets the signed cost basis of a position.
+     *
+     * @param id the {@link OrderBook#getID()}
+     *
+     * @return the cost basis
+     */
+    public double getCostBasis(int id) {
+        return id < costBases.length ? costBases[id] : 0;
+    }
+
+    /**
+     * Gets the average entry price of a position.
+     *
+     * @param id the {@link OrderBook#getID()}
+     *
+     * @return the average entry price (NaN if there is no position)
+     */
+    public double getAverageEntryPrice(int id) {
+        long quantity = getQuantity(id);
+        return quantity == 0 ? Double.NaN : costBases[id] / quantity;
+    }
+
+    /**
+     * Gets the mark price of a position.
+     *
+     * @param id the {@link OrderBook#getID()}
+     *
+     * @return the mark price (NaN if it has never been marked)
+     */
+    public double getMarkPrice(int id) {
+        return id < markPrices.length ? markPrices[id] : Double.NaN;
+    }
+
+    /**
+     * Gets the ticker of a position.
+     *
+     * @param id the {@link OrderBook#getID()}
+     *
+     * @return the ticker (null if there has never been a position)
+     */
+    public String getTicker(int id) {
+        return id < tickers.length ? tickers[id] : null;
+    }
+
+    /**
+     * Gets the number of position IDs that have been allocated (some of which may be flat).
+     *
+     * @return the capacity
+     */
+    public int getPositionCapacity() {
+        return quantities.length;
+    }
+
+    /**
+     * Gets the number of open (non-flat) positions.
+     *
+     * @return the position count
+     */
+    public int getPositionCount() {
+        return positionCount;
+    }
+
+    /**
+     * Gets initial cash.
+     *
+     * @return the initial cash
+     */
+    public double getInitialCash() {
+        return initialCash;
+    }
+
+    /**
+     * Gets multiplier.
+     *
+     * @return the multiplier
+     */
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    /**
+     * Gets cash.
+     *
+     * @return the cash
+     */
+    public double getCash() {
+        return cash;
+    }
+
+    /**
+     * Gets realized profit loss.
+     *
+     * @return the realized profit loss
+     */
+    public double getRealizedProfitLoss() {
+        return realizedProfitLoss;
+    }
+
+    /**
+     * Gets the total cost basis of the positions.
+     *
+     * @return the cost basis
+     */
+    public double getCostBasis() {
+        return costBasis;
+    }
+
+    /**
+     * Gets the market value of the positions (long minus short).
+     *
+     * @return the market value
+     */
+    public double getMarketValue() {
+        return marketValue;
+    }
+
+    /**
+     * Gets long market value.
+     *
+     * @return the long market value
+     */
+    public double getLongMarketValue() {
+        return longMarketValue;
+    }
+
+    /**
+     * Gets short market value (negative).
+     *
+     * @return the short market value
+     */
+    public double getShortMarketValue() {
+        return shortMarketValue;
+    }
+}
@@ -0,0 +1,1065 @@
+package net.jacobpeterson.broker.order;
+
+import io.github.mainstringargs.alpaca.enums.OrderSide;
+import io.github.mainstringargs.alpaca.enums.OrderTimeInForce;
+import io.github.mainstringargs.alpaca.enums.OrderType;
+import net.jacobpeterson.checkpoint.Checkpointable;
+import net.jacobpeterson.data.calendar.MarketCalendar;
+import net.jacobpeterson.metrics.MetricCounter;
+import net.jacobpeterson.metrics.MetricType;
+import net.jacobpeterson.metrics.Metrics;
+import net.jacobpeterson.util.TimeUtil;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.IntPredicate;
+
+/**
+ * The order matching engine of the {@link net.jacobpeterson.broker.BacktestBroker}. Orders are stored in primitive
+ * columns indexed by an <code>int</code> order ID (assigned in submission order) and resting orders are indexed by
+ * price in the {@link OrderBook} of their ticker, so matching a market data event against thousands of resting orders
+ * is <code>O(log n)</code> per fill and <code>O(1)</code> when nothing fills, without any allocation.
+ * <p>
+ * The fill model is:
+ * <ul>
+ *     <li>Orders are filled completely at once.</li>
+ *     <li>Orders only fill during regular trading sessions (from the open to the close of the {@link
+ *     #getMarketCalendar()}, or from {@link TimeUtil#MARKET_OPEN_TIME} to {@link TimeUtil#MARKET_CLOSE_TIME} on
+ *     weekdays if there is no calendar), and never against extended hours quotes, trades, or bars.</li>
+ *     <li>A marketable order fills immediately at the ask (buys) or bid (sells), or at the last trade price if no
+ *     quote has been seen, if its order book has been priced in the current session. A market order submitted before
+ *     that (e.g. overnight or at the open) fills on the first price of the next session.</li>
+ *     <li>A resting limit order fills at its limit price once the ask (buys) or bid (sells) or a trade reaches it.</li>
+ *     <li>A stop order becomes a market order once the ask (buys) or bid (sells) or a trade reaches its stop price, and
+ *     a stop limit order becomes a limit order.</li>
+ *     <li>{@link OrderTimeInForce#DAY} orders expire at the next market close of the {@link #getMarketCalendar()} (so
+ *     on early closes and not on holidays), or at the next weekday close if there is no calendar. {@link
+ *     OrderTimeInForce#IOC} and {@link OrderTimeInForce#FOK} orders are canceled if they can't fill immediately.</li>
+ *     <li>{@link OrderTimeInForce#OPG} and {@link OrderTimeInForce#CLS} orders are rejected, since the opening and
+ *     closing auctions aren't simulated.</li>
+ * </ul>
+ * This is not thread safe, as it is driven by the single thread of the {@link net.jacobpeterson.engine.ReplayEngine}.
+ */
+public class MatchingEngine implements Checkpointable {
+
+    /**
+     * Prices are indexed as <code>Math.round(price * PRICE_SCALE)</code> so that equal prices compare equal.
+     */
+    public static final double PRICE_SCALE = 1_000_000d;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    final IntPredicate isOpen;
+    private final HashMap<String, OrderBook> orderBooks;
+    private final OrderHeap expirations;
+    private OrderListener orderListener;
+    PriceListener priceListener;
+    private Metrics metrics;
+    private long timestamp;
+    private MarketCalendar marketCalendar;
+    private long sessionFromTimestamp;
+    private long sessionOpenTimestamp;
+    private long sessionCloseTimestamp;
+    private long deferredExpirationTimestamp;
+
+    private OrderBook[] books;
+    private OrderSide[] sides;
+    private OrderType[] types;
+    private OrderTimeInForce[] timeInForces;
+    private OrderStatus[] statuses;
+    private OrderHeap[] restingHeaps;
+    private OrderHeap[] expirationHeaps;
+    private int[] quantities;
+    private int[] filledQuantities;
+    private double[] limitPrices;
+    private double[] stopPrices;
+    private double[] filledAveragePrices;
+    private long[] submittedTimestamps;
+    private long[] updatedTimestamps;
+    private int orderCount;
+    private int openOrderCount;
+
+    /**
+     * Instantiates a new Matching engine.
+     */
+    public MatchingEngine() {
+        this.isOpen = this::isOpen;
+        this.orderBooks = new HashMap<>();
+        this.expirations = new OrderHeap(false, isOpen);
+        this.orderListener = (orderID, orderEvent, timestamp, price, quantity) -> {};
+        this.priceListener = (orderBook, price) -> {};
+        this.sessionFromTimestamp = Long.MAX_VALUE;
+        this.sessionCloseTimestamp = Long.MIN_VALUE;
+        this.deferredExpirationTimestamp = Long.MAX_VALUE;
+
+        this.books = new OrderBook[INITIAL_CAPACITY];
+        this.sides = new OrderSide[INITIAL_CAPACITY];
+        this.types = new OrderType[INITIAL_CAPACITY];
+        this.timeInForces = new OrderTimeInForce[INITIAL_CAPACITY];
+        this.statuses = new OrderStatus[INITIAL_CAPACITY];
+        this.restingHeaps = new OrderHeap[INITIAL_CAPACITY];
+        this.expirationHeaps = new OrderHeap[INITIAL_CAPACITY];
+        this.quantities = new int[INITIAL_CAPACITY];
+        this.filledQuantities = new int[INITIAL_CAPACITY];
+        this.limitPrices = new double[INITIAL_CAPACITY];
+        this.stopPrices = new double[INITIAL_CAPACITY];
+        this.filledAveragePrices = new double[INITIAL_CAPACITY];
+        this.submittedTimestamps = new long[INITIAL_CAPACITY];
+        this.updatedTimestamps = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Gets the order book of a ticker, creating it if necessary. Market data sources should look this up once and keep
+     * it.
+     *
+     * @param ticker the ticker
+     *
+     * @return the order book
+     */
+    public OrderBook getOrderBook(String ticker) {
+        return orderBooks.computeIfAbsent(ticker, t -> new OrderBook(orderBooks.size(), t, this));
+    }
+
+    /**
+     * Submits an order at the current time of this engine.
+     *
+     * @param ticker           the ticker
+     * @param quantity         the quantity
+     * @param orderSide        the order side
+     * @param orderType        the order type
+     * @param orderTimeInForce the order time in force
+     * @param limitPrice       the limit price (NaN if not applicable)
+     * @param stopPrice        the stop price (NaN if not applicable)
+     *
+     * @return the order ID
+     *
+     * @throws IllegalArgumentException thrown if the order is invalid
+     */
+    public int submitOrder(String ticker, int quantity, OrderSide orderSide, OrderType orderType,
+            OrderTimeInForce orderTimeInForce, double limitPrice, double stopPrice) {
+        if (metrics == null) {
+            return submit(ticker, quantity, orderSide, orderType, orderTimeInForce, limitPrice, stopPrice);
+        }
+
+        long startNanos = System.nanoTime();
+        try {
+            return submit(ticker, quantity, orderSide, orderType, orderTimeInForce, limitPrice, stopPrice);
+        } finally {
+            metrics.lap(MetricType.BROKER_SUBMIT, startNanos);
+        }
+    }
+
+    /**
+     * Submits an order at the current time of this engine.
+     *
+     * @param ticker           the ticker
+     * @param quantity         the quantity
+     * @param orderSide        the order side
+     * @param orderType        the order type
+     * @param orderTimeInForce the order time in force
+     * @param limitPrice       the limit price
+     * @param stopPrice        the stop price
+     *
+     * @return the order ID
+     */
+    private int submit(String ticker, int quantity, OrderSide orderSide, OrderType orderType,
+            OrderTimeInForce orderTimeInForce, double limitPrice, double stopPrice) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive!");
+        }
+        if ((orderType == OrderType.LIMIT || orderType == OrderType.STOP_LIMIT) && !(limitPrice > 0)) {
+            throw new IllegalArgumentException("A positive limit price is required for " + orderType + " orders!");
+        }
+        if ((orderType == OrderType.STOP || orderType == OrderType.STOP_LIMIT) && !(stopPrice > 0)) {
+            throw new IllegalArgumentException("A positive stop price is required for " + orderType + " orders!");
+        }
+        if (orderTimeInForce == OrderTimeInForce.OPG || orderTimeInForce == OrderTimeInForce.CLS) {
+            throw new IllegalArgumentException(orderTimeInForce + " orders are not supported since the opening and " +
+                    "closing auctions aren't simulated!");
+        }
+
+        if (orderCount == sides.length) {
+            grow(orderCount * 2);
+        }
+        int orderID = orderCount++;
+        OrderBook orderBook = getOrderBook(ticker);
+        books[orderID] = orderBook;
+        sides[orderID] = orderSide;
+        types[orderID] = orderType;
+        timeInForces[orderID] = orderTimeInForce;
+        statuses[orderID] = OrderStatus.NEW;
+        quantities[orderID] = quantity;
+        limitPrices[orderID] = orderType == OrderType.LIMIT || orderType == OrderType.STOP_LIMIT ?
+                limitPrice : Double.NaN;
+        stopPrices[orderID] = orderType == OrderType.STOP || orderType == OrderType.STOP_LIMIT ?
+                stopPrice : Double.NaN;
+        filledAveragePrices[orderID] = Double.NaN;
+        submittedTimestamps[orderID] = timestamp;
+        updatedTimestamps[orderID] = timestamp;
+        openOrderCount++;
+
+        orderListener.onOrderEvent(orderID, OrderEvent.NEW, timestamp, Double.NaN, 0);
+        if (statuses[orderID] != OrderStatus.NEW) { // The listener canceled or rejected the order
+            return orderID;
+        }
+
+        if (orderTimeInForce == OrderTimeInForce.DAY) {
+            expirations.add(getExpirationTimestamp(), orderID);
+            expirationHeaps[orderID] = expirations;
+        }
+
+        boolean isBuy = orderSide == OrderSide.BUY;
+        double marketPrice = !isPricedInSession(orderBook) ? Double.NaN :
+                isBuy ? orderBook.getBuyPrice() : orderBook.getSellPrice();
+        switch (orderType) {
+            case MARKET:
+                if (marketPrice == marketPrice) {
+                    fill(orderID, marketPrice);
+                } else if (!cancelIfImmediate(orderID)) {
+                    rest(orderBook.pendingMarkets, 0, orderID);
+                }
+                break;
+            case LIMIT:
+                routeLimit(orderID, marketPrice);
+                break;
+            case STOP:
+            case STOP_LIMIT:
+                if (marketPrice == marketPrice && (isBuy ? marketPrice >= stopPrice : marketPrice <= stopPrice)) {
+                    trigger(orderID, marketPrice);
+                } else if (!cancelIfImmediate(orderID)) {
+                    rest(isBuy ? orderBook.buyStops : orderBook.sellStops, toPriceKey(stopPrice), orderID);
+                }
+                break;
+            default:
+                throw new UnsupportedOperationException();
+        }
+
+        return orderID;
+    }
+
+    /**
+     * Cancels an open order.
+     *
+     * @param orderID the order ID
+     *
+     * @return true if the order was canceled, false if it wasn't open
+     */
+    public boolean cancelOrder(int orderID) {
+        checkOrderID(orderID);
+        if (metrics == null) {
+            return close(orderID, OrderStatus.CANCELED, OrderEvent.CANCELED, timestamp);
+        }
+
+        long startNanos = System.nanoTime();
+        boolean canceled = close(orderID, OrderStatus.CANCELED, OrderEvent.CANCELED, timestamp);
+        metrics.lap(MetricType.BROKER_CANCEL, startNanos);
+        return canceled;
+    }
+
+    /**
+     * Rejects an open order. This is meant to be called by the {@link OrderListener} while it handles the {@link
+     * OrderEvent#NEW} event of an order, in which case the order is never matched.
+     *
+     * @param orderID the order ID
+     *
+     * @return true if the order was rejected, false if it wasn't open
+     */
+    public boolean rejectOrder(int orderID) {
+        checkOrderID(orderID);
+        return close(orderID, OrderStatus.REJECTED, OrderEvent.REJECTED, timestamp);
+    }
+
+    /**
+     * Advances the time of this engine and expires orders whose time in force has elapsed. The expiration of an order
+     * whose order book is fed by bars is deferred to the order book until the bar that contains its expiration has
+     * been matched (or has been skipped).
+     *
+     * @param timestamp the timestamp (epoch nanoseconds)
+     */
+    public void advanceTime(long timestamp) {
+        if (timestamp > this.timestamp) {
+            this.timestamp = timestamp;
+        }
+        while (expirations.prune() && expirations.peekKey() <= this.timestamp) {
+            OrderBook orderBook = books[expirations.peekOrderID()];
+            long barCloseTimestamp = orderBook.getBarCloseTimestamp(expirations.peekKey());
+            if (barCloseTimestamp < this.timestamp) {
+                expire(expirations);
+                continue;
+            }
+
+            long expirationTimestamp = expirations.peekKey();
+            int orderID = expirations.poll();
+            orderBook.deferredExpirations.add(expirationTimestamp, orderID);
+            expirationHeaps[orderID] = orderBook.deferredExpirations;
+            deferredExpirationTimestamp = Math.min(deferredExpirationTimestamp, barCloseTimestamp);
+        }
+        if (deferredExpirationTimestamp < this.timestamp) {
+            expireSkippedDeferred();
+        }
+    }
+
+    /**
+     * Expires the deferred orders of an order book that expire at or before a timestamp.
+     *
+     * @param orderBook the order book
+     * @param timestamp the timestamp (epoch nanoseconds)
+     */
+    void expireDeferred(OrderBook orderBook, long timestamp) {
+        OrderHeap deferredExpirations = orderBook.deferredExpirations;
+        while (deferredExpirations.prune() && deferredExpirations.peekKey() <= timestamp) {
+            expire(deferredExpirations);
+        }
+    }
+
+    /**
+     * Expires the deferred orders of every order book whose bar closed before the current time without being matched,
+     * e.g. because the ticker has no bar for it.
+     */
+    private void expireSkippedDeferred() {
+        deferredExpirationTimestamp = Long.MAX_VALUE;
+        for (OrderBook orderBook : orderBooks.values()) {
+            OrderHeap deferredExpirations = orderBook.deferredExpirations;
+            while (deferredExpirations.prune()) {
+                long barCloseTimestamp = orderBook.getBarCloseTimestamp(deferredExpirations.peekKey());
+                if (barCloseTimestamp >= timestamp) {
+                    deferredExpirationTimestamp = Math.min(deferredExpirationTimestamp, barCloseTimestamp);
+                    break;
+                }
+                expire(deferredExpirations);
+            }
+        }
+    }
+
+    /**
+     * Expires the top order of an expiration heap at its expiration timestamp.
+     *
+     * @param expirationHeap the expiration heap
+     */
+    private void expire(OrderHeap expirationHeap) {
+        long expirationTimestamp = expirationHeap.peekKey();
+        int orderID = expirationHeap.poll();
+        expirationHeaps[orderID] = null;
+        close(orderID, OrderStatus.EXPIRED, OrderEvent.EXPIRED, expirationTimestamp);
+    }
+
+    /**
+     * Returns true if a time range overlaps a regular trading session, in which case orders can match against the
+     * prices of the time range and the order book is marked as priced in that session.
+     *
+     * @param orderBook     the order book
+     * @param fromTimestamp the from timestamp (epoch nanoseconds, inclusive)
+     * @param toTimestamp   the to timestamp (epoch nanoseconds, exclusive)
+     *
+     * @return the boolean
+     */
+    boolean isRegularSession(OrderBook orderBook, long fromTimestamp, long toTimestamp) {
+        updateSession(fromTimestamp);
+        if (sessionOpenTimestamp >= toTimestamp) {
+            return false;
+        }
+        orderBook.pricedSessionCloseTimestamp = sessionCloseTimestamp;
+        return true;
+    }
+
+    /**
+     * Returns true if the current time is in a regular trading session and the prices of an order book are from it,
+     * so an order submitted now can fill at them.
+     *
+     * @param orderBook the order book
+     *
+     * @return the boolean
+     */
+    private boolean isPricedInSession(OrderBook orderBook) {
+        updateSession(timestamp);
+        return timestamp >= sessionOpenTimestamp && orderBook.pricedSessionCloseTimestamp == sessionCloseTimestamp;
+    }
+
+    /**
+     * Matches the resting orders of an order book against a price.
+     *
+     * @param orderBook the order book
+     * @param buyPrice  the price buy orders can fill at (NaN if none)
+     * @param sellPrice the price sell orders can fill at (NaN if none)
+     */
+    void match(OrderBook orderBook, double buyPrice, double sellPrice) {
+        boolean hasBuyPrice = buyPrice == buyPrice;
+        boolean hasSellPrice = sellPrice == sellPrice;
+        long buyKey = hasBuyPrice ? toPriceKey(buyPrice) : 0;
+        long sellKey = hasSellPrice ? toPriceKey(sellPrice) : 0;
+
+        if (hasBuyPrice && hasSellPrice) {
+            OrderHeap pendingMarkets = orderBook.pendingMarkets;
+            while (pendingMarkets.prune()) {
+                int orderID = takeResting(pendingMarkets);
+                fill(orderID, sides[orderID] == OrderSide.BUY ? buyPrice : sellPrice);
+            }
+        }
+
+        if (hasBuyPrice) {
+            OrderHeap buyStops = orderBook.buyStops;
+            while (buyStops.prune() && buyStops.peekKey() <= buyKey) {
+                trigger(takeResting(buyStops), buyPrice);
+            }
+            OrderHeap buyLimits = orderBook.buyLimits;
+            while (buyLimits.prune() && buyLimits.peekKey() >= buyKey) {
+                int orderID = takeResting(buyLimits);
+                fill(orderID, limitPrices[orderID]);
+            }
+        }
+
+        if (hasSellPrice) {
+            OrderHeap sellStops = orderBook.sellStops;
+            while (sellStops.prune() && sellStops.peekKey() >= sellKey) {
+                trigger(takeResting(sellStops), sellPrice);
+            }
+            OrderHeap sellLimits = orderBook.sellLimits;
+            while (sellLimits.prune() && sellLimits.peekKey() <= sellKey) {
+                int orderID = takeResting(sellLimits);
+                fill(orderID, limitPrices[orderID]);
+            }
+        }
+    }
+
+    /**
+     * Triggers a stop or stop limit order.
+     *
+     * @param orderID      the order ID
+     * @param triggerPrice the price that triggered the order
+     */
+    private void trigger(int orderID, double triggerPrice) {
+        if (types[orderID] == OrderType.STOP) {
+            fill(orderID, triggerPrice);
+        } else {
+            routeLimit(orderID, triggerPrice);
+        }
+    }
+
+    /**
+     * Fills a limit order immediately if it is marketable at the given price, otherwise rests it in its order book.
+     *
+     * @param orderID     the order ID
+     * @param marketPrice the market price (NaN if there is none)
+     */
+    private void routeLimit(int orderID, double marketPrice) {
+        OrderBook orderBook = books[orderID];
+        boolean isBuy = sides[orderID] == OrderSide.BUY;
+        double limitPrice = limitPrices[orderID];
+        if (marketPrice == marketPrice && (isBuy ? toPriceKey(marketPrice) <= toPriceKey(limitPrice) :
+                toPriceKey(marketPrice) >= toPriceKey(limitPrice))) {
+            fill(orderID, marketPrice);
+        } else if (!cancelIfImmediate(orderID)) {
+            rest(isBuy ? orderBook.buyLimits : orderBook.sellLimits, toPriceKey(limitPrice), orderID);
+        }
+    }
+
+    /**
+     * Cancels an order if its time in force requires it to fill immediately.
+     *
+     * @param orderID the order ID
+     *
+     * @return true if the order was canceled
+     */
+    private boolean cancelIfImmediate(int orderID) {
+        OrderTimeInForce orderTimeInForce = timeInForces[orderID];
+        if (orderTimeInForce == OrderTimeInForce.IOC || orderTimeInForce == OrderTimeInForce.FOK) {
+            return close(orderID, OrderStatus.CANCELED, OrderEvent.CANCELED, timestamp);
+        }
+        return false;
+    }
+
+    /**
+     * Rests an order in a heap of its order book.
+     *
+     * @param orderHeap the order heap
+     * @param key       the key
+     * @param orderID   the order ID
+     */
+    private void rest(OrderHeap orderHeap, long key, int orderID) {
+        orderHeap.add(key, orderID);
+        restingHeaps[orderID] = orderHeap;
+    }
+
+    /**
+     * Polls the top (live) order of a heap of an order book.
+     *
+     * @param orderHeap the order heap
+     *
+     * @return the order ID
+     */
+    private int takeResting(OrderHeap orderHeap) {
+        int orderID = orderHeap.poll();
+        restingHeaps[orderID] = null;
+        return orderID;
+    }
+
+    /**
+     * Fills an open order completely.
+     *
+     * @param orderID the order ID
+     * @param price   the price
+     */
+    private void fill(int orderID, double price) {
+        filledQuantities[orderID] = quantities[orderID];
+        filledAveragePrices[orderID] = price;
+        if (metrics != null) {
+            metrics.increment(MetricCounter.ORDER_FILLS);
+        }
+        close(orderID, OrderStatus.FILLED, OrderEvent.FILL, timestamp);
+    }
+
+    /**
+     * Closes an open order.
+     *
+     * @param orderID     the order ID
+     * @param orderStatus the order status
+     * @param orderEvent  the order event
+     * @param timestamp   the timestamp
+     *
+     * @return true if the order was closed, false if it wasn't open
+     */
+    private boolean close(int orderID, OrderStatus orderStatus, OrderEvent orderEvent, long timestamp) {
+        if (statuses[orderID] != OrderStatus.NEW) {
+            return false;
+        }
+
+        statuses[orderID] = orderStatus;
+        updatedTimestamps[orderID] = timestamp;
+        openOrderCount--;
+
+        if (restingHeaps[orderID] != null) {
+            restingHeaps[orderID].markStale();
+            restingHeaps[orderID] = null;
+        }
+        if (expirationHeaps[orderID] != null) {
+            expirationHeaps[orderID].markStale();
+            expirationHeaps[orderID] = null;
+        }
+
+        if (orderEvent == OrderEvent.FILL) {
+            orderListener.onOrderEvent(orderID, orderEvent, timestamp, filledAveragePrices[orderID],
+                    filledQuantities[orderID]);
+        } else {
+            orderListener.onOrderEvent(orderID, orderEvent, timestamp, Double.NaN, 0);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the timestamp that an order submitted now with a time in force of {@link OrderTimeInForce#DAY} expires
+     * at, which is the close of the current or next trading session. This is cached for the current session.
+     *
+     * @return the expiration timestamp (epoch nanoseconds)
+     */
+    private long getExpirationTimestamp() {
+        updateSession(timestamp);
+        return sessionCloseTimestamp;
+    }
+
+    /**
+     * Caches the open and close of the first trading session that closes after a timestamp, unless it is already
+     * cached.
+     *
+     * @param timestamp the timestamp (epoch nanoseconds)
+     */
+    private void updateSession(long timestamp) {
+        if (timestamp >= sessionFromTimestamp && timestamp < sessionCloseTimestamp) {
+            return;
+        }
+
+        LocalDate date = TimeUtil.toNewYorkDate(timestamp);
+        long closeTimestamp;
+        while ((closeTimestamp = getCloseTimestamp(date)) <= timestamp) {
+            date = date.plusDays(1);
+        }
+
+        LocalDate previousDate = date;
+        long previousCloseTimestamp;
+        do {
+            previousDate = previousDate.minusDays(1);
+        } while ((previousCloseTimestamp = getCloseTimestamp(previousDate)) == Long.MIN_VALUE);
+        sessionFromTimestamp = previousCloseTimestamp;
+        sessionOpenTimestamp = getOpenTimestamp(date);
+        sessionCloseTimestamp = closeTimestamp;
+    }
+
+    /**
+     * Gets the market open of a trading date from the {@link #getMarketCalendar()} if it covers the date, otherwise it
+     * is {@link TimeUtil#MARKET_OPEN_TIME}.
+     *
+     * @param date the date
+     *
+     * @return the open timestamp (epoch nanoseconds)
+     */
+    private long getOpenTimestamp(LocalDate date) {
+        if (marketCalendar != null && marketCalendar.covers(date, date.plusDays(1))) {
+            LocalTime openTime = marketCalendar.getOpenTime(date);
+            if (openTime != null) {
+                return TimeUtil.toEpochNanos(date, openTime);
+            }
+        }
+        return TimeUtil.toEpochNanos(date, TimeUtil.MARKET_OPEN_TIME);
+    }
+
+    /**
+     * Gets the market close of a date from the {@link #getMarketCalendar()} if it covers the date, otherwise it is
+     * {@link TimeUtil#MARKET_CLOSE_TIME} on weekdays.
+     *
+     * @param date the date
+     *
+     * @return the close timestamp (epoch nanoseconds, {@link Long#MIN_VALUE} if the market is closed on the date)
+     */
+    private long getCloseTimestamp(LocalDate date) {
+        if (marketCalendar != null && marketCalendar.covers(date, date.plusDays(1))) {
+            LocalTime closeTime = marketCalendar.getCloseTime(date);
+            return closeTime == null ? Long.MIN_VALUE : TimeUtil.toEpochNanos(date, closeTime);
+        }
+        return isWeekend(date) ? Long.MIN_VALUE : TimeUtil.toEpochNanos(date, TimeUtil.MARKET_CLOSE_TIME);
+    }
+
+    /**
+     * Returns true if a date is on a weekend.
+     *
+     * @param date the date
+     *
+     * @return the boolean
+     */
+    private static boolean isWeekend(LocalDate date) {
+        DayOfWeek dayOfWeek = date.getDayOfWeek();
+        return dayOfWeek == DayOfWeek.SATURDAY || dayOfWeek == DayOfWeek.SUNDAY;
+    }
+
+    /**
+     * Converts a price to its index key.
+     *
+     * @param price the price
+     *
+     * @return the price key
+     */
+    private static long toPriceKey(double price) {
+        return Math.round(price * PRICE_SCALE);
+    }
+
+    /**
+     * Grows the order columns.
+     *
+     * @param newCapacity the new capacity
+     */
+    private void grow(int newCapacity) {
+        books = Arrays.copyOf(books, newCapacity);
+        sides = Arrays.copyOf(sides, newCapacity);
+        types = Arrays.copyOf(types, newCapacity);
+        timeInForces = Arrays.copyOf(timeInForces, newCapacity);
+        statuses = Arrays.copyOf(statuses, newCapacity);
+        restingHeaps = Arrays.copyOf(restingHeaps, newCapacity);
+        expirationHeaps = Arrays.copyOf(expirationHeaps, newCapacity);
+        quantities = Arrays.copyOf(quantities, newCapacity);
+        filledQuantities = Arrays.copyOf(filledQuantities, newCapacity);
+        limitPrices = Arrays.copyOf(limitPrices, newCapacity);
+        stopPrices = Arrays.copyOf(stopPrices, newCapacity);
+        filledAveragePrices = Arrays.copyOf(filledAveragePrices, newCapacity);
+        submittedTimestamps = Arrays.copyOf(submittedTimestamps, newCapacity);
+        updatedTimestamps = Arrays.copyOf(updatedTimestamps, newCapacity);
+    }
+
+    /**
+     * Writes the time, the order books, and every order (including closed ones, so their IDs stay valid) of this
+     * engine.
+     *
+     * @param dataOutput the data output
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    @Override
+    public void writeState(DataOutput dataOutput) throws IOException {
+        dataOutput.writeLong(timestamp);
+
+        OrderBook[] orderBooksByID = new OrderBook[orderBooks.size()];
+        for (OrderBook orderBook : orderBooks.values()) {
+            orderBooksByID[orderBook.id] = orderBook;
+        }
+        dataOutput.writeInt(orderBooksByID.length);
+        for (OrderBook orderBook : orderBooksByID) {
+            dataOutput.writeUTF(orderBook.ticker);
+            orderBook.writeState(dataOutput);
+        }
+        expirations.writeState(dataOutput);
+
+        dataOutput.writeInt(orderCount);
+        dataOutput.writeInt(openOrderCount);
+        for (int orderID = 0; orderID < orderCount; orderID++) {
+            dataOutput.writeInt(books[orderID].id);
+            dataOutput.writeByte(sides[orderID].ordinal());
+            dataOutput.writeByte(types[orderID].ordinal());
+            dataOutput.writeByte(timeInForces[orderID].ordinal());
+            dataOutput.writeByte(statuses[orderID].ordinal());
+            dataOutput.writeByte(restingHeaps[orderID] == null ? -1 :
+                    Arrays.asList(books[orderID].getOrderHeaps()).indexOf(restingHeaps[orderID]));
+            dataOutput.writeByte(expirationHeaps[orderID] == null ? -1 :
+                    expirationHeaps[orderID] == expirations ? 0 : 1);
+            dataOutput.writeInt(quantities[orderID]);
+            dataOutput.writeInt(filledQuantities[orderID]);
+            dataOutput.writeDouble(limitPrices[orderID]);
+            dataOutput.writeDouble(stopPrices[orderID]);
+            dataOutput.writeDouble(filledAveragePrices[orderID]);
+            dataOutput.writeLong(submittedTimestamps[orderID]);
+            dataOutput.writeLong(updatedTimestamps[orderID]);
+        }
+    }
+
+    /**
+     * Reads the state that was written by {@link #writeState(DataOutput)} into this engine, which must be new (have
+     * no order books or orders). The listeners and metrics of this engine are kept.
+     *
+     * @param dataInput the data input
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    @Override
+    public void readState(DataInput dataInput) throws IOException {
+        if (!orderBooks.isEmpty() || orderCount != 0) {
+            throw new IllegalStateException("Can only read the state of a matching engine into a new one!");
+        }
+
+        timestamp = dataInput.readLong();
+
+        int orderBookCount = dataInput.readInt();
+        OrderBook[] orderBooksByID = new OrderBook[orderBookCount];
+        for (int id = 0; id < orderBookCount; id++) {
+            orderBooksByID[id] = getOrderBook(dataInput.readUTF());
+            orderBooksByID[id].readState(dataInput);
+        }
+        expirations.readState(dataInput);
+
+        int orderCount = dataInput.readInt();
+        openOrderCount = dataInput.readInt();
+        if (orderCount < 0 || openOrderCount < 0 || openOrderCount > orderCount) {
+            throw new IOException("Invalid order count: " + orderCount);
+        }
+        if (orderCount > sides.length) {
+            grow(Math.max(orderCount, sides.length * 2));
+        }
+        OrderSide[] orderSides = OrderSide.values();
+        OrderType[] orderTypes = OrderType.values();
+        OrderTimeInForce[] orderTimeInForces = OrderTimeInForce.values();
+        OrderStatus[] orderStatuses = OrderStatus.values();
+        try {
+            for (int orderID = 0; orderID < orderCount; orderID++) {
+                books[orderID] = orderBooksByID[dataInput.readInt()];
+                sides[orderID] = orderSides[dataInput.readByte()];
+                types[orderID] = orderTypes[dataInput.readByte()];
+                timeInForces[orderID] = orderTimeInForces[dataInput.readByte()];
+                statuses[orderID] = orderStatuses[dataInput.readByte()];
+                int restingHeapIndex = dataInput.readByte();
+                restingHeaps[orderID] = restingHeapIndex < 0 ? null : books[orderID].getOrderHeaps()[restingHeapIndex];
+                int expirationHeapIndex = dataInput.readByte();
+                expirationHeaps[orderID] = expirationHeapIndex < 0 ? null :
+                        expirationHeapIndex == 0 ? expirations : books[orderID].deferredExpirations;
+                quantities[orderID] = dataInput.readInt();
+                filledQuantities[orderID] = dataInput.readInt();
+                limitPrices[orderID] = dataInput.readDouble();
+                stopPrices[orderID] = dataInput.readDouble();
+                filledAveragePrices[orderID] = dataInput.readDouble();
+                submittedTimestamps[orderID] = dataInput.readLong();
+                updatedTimestamps[orderID] = dataInput.readLong();
+            }
+        } catch (ArrayIndexOutOfBoundsException exception) {
+            throw new IOException("Invalid order state!", exception);
+        }
+        this.orderCount = orderCount;
+
+        for (OrderBook orderBook : orderBooksByID) {
+            if (orderBook.deferredExpirations.prune()) {
+                deferredExpirationTimestamp = Math.min(deferredExpirationTimestamp,
+                        orderBook.getBarCloseTimestamp(orderBook.deferredExpirations.peekKey()));
+            }
+        }
+    }
+
+    /**
+     * Checks that an order ID exists.
+     *
+     * @param orderID the order ID
+     */
+    private void checkOrderID(int orderID) {
+        if (orderID < 0 || orderID >= orderCount) {
+            throw new IllegalArgumentException("Unknown order ID: " + orderID);
+        }
+    }
+
+    /**
+     * Returns true if an order is open.
+     *
+     * @param orderID the order ID
+     *
+     * @return the boolean
+     */
+    public boolean isOpen(int orderID) {
+        return statuses[orderID] == OrderStatus.NEW;
+    }
+
+    /**
+     * Gets the ticker of an order.
+     *
+     * @param orderID the order ID
+     *
+     * @return the ticker
+     */
+    public String getTicker(int orderID) {
+        checkOrderID(orderID);
+        return books[orderID].ticker;
+    }
+
+    /**
+     * Gets the order book of an order.
+     *
+     * @param orderID the order ID
+     *
+     * @return the order book
+     */
+    public OrderBook getOrderBookOfOrder(int orderID) {
+        checkOrderID(orderID);
+        return books[orderID];
+    }
+
+    /**
+     * Gets the side of an order.
+     *
+     * @param orderID the order ID
+     *
+     * @return the order side
+     */
+    public OrderSide getSide(int orderID) {
+        checkOrderID(orderID);
+        return sides[orderID];
+    }
+
+    /**
+     * Gets the type of an order.
+     *
+     * @param orderID the order ID
+     *
+     * @return the order type
+     */
+    public OrderType getType(int orderID) {
+        checkOrderID(orderID);
+        return types[orderID];
+    }
+
+    /**
+     * Gets the time in force of an order.
+     *
+     * @param orderID the order ID
+     *
+     * @return the order time in force
+     */
+    public OrderTimeInForce getTimeInForce(int orderID) {
+        checkOrderID(orderID);
+        return timeInForces[orderID];
+    }
+
+    /**
+     * Gets the status of an order.
+     *
+     * @param orderID the order ID
+     *
+     * @return the order status
+     */
+    public OrderStatus getStatus(int orderID) {
+        checkOrderID(orderID);
+        return statuses[orderID];
+    }
+
+    /**
+     * Gets the quantity of an order.
+     *
+     * @param orderID the order ID
+     *
+     * @return the quantity
+     */
+    public int getQuantity(int orderID) {
+        checkOrderID(orderID);
+        return quantities[orderID];
+    }
+
+    /**
+     * Gets the filled quantity of an order.
+     *
+     * @param orderID the order ID
+     *
+     * @return the filled quantity
+     */
+    public int getFilledQuantity(int orderID) {
+        checkOrderID(orderID);
+        return filledQuantities[orderID];
+    }
+
+    /**
+     * Gets the filled average price of an order.
+     *
+     * @param orderID the order ID
+     *
+     * @return the filled average price (NaN if it isn't filled)
+     */
+    public double getFilledAveragePrice(int orderID) {
+        checkOrderID(orderID);
+        return filledAveragePrices[orderID];
+    }
+
+    /**
+     * Gets the limit price of an order.
+     *
+     * @param orderID the order ID
+     *
+     * @return the limit price (NaN if not applicable)
+     */
+    public double getLimitPrice(int orderID) {
+        checkOrderID(orderID);
+        return limitPrices[orderID];
+    }
+
+    /**
+     * Gets the stop price of an order.
+     *
+     * @param orderID the order ID
+     *
+     * @return the stop price (NaN if not applicable)
+     */
+    public double getStopPrice(int orderID) {
+        checkOrderID(orderID);
+        return stopPrices[orderID];
+    }
+
+    /**
+     * Gets the submitted timestamp of an order.
+     *
+     * @param orderID the order ID
+     *
+     * @return the submitted timestamp (epoch nanoseconds)
+     */
+    public long getSubmittedTimestamp(int orderID) {
+        checkOrderID(orderID);
+        return submittedTimestamps[orderID];
+    }
+
+    /**
+     * Gets the timestamp of the last update (fill, cancel, or expiry) to an order.
+     *
+     * @param orderID the order ID
+     *
+     * @return the updated timestamp (epoch nanoseconds)
+     */
+    public long getUpdatedTimestamp(int orderID) {
+        checkOrderID(orderID);
+        return updatedTimestamps[orderID];
+    }
+
+    /**
+     * Gets the number of orders that have been submitted.
+     *
+     * @return the order count
+     */
+    public int getOrderCount() {
+        return orderCount;
+    }
+
+    /**
+     * Gets the number of open orders.
+     *
+     * @return the open order count
+     */
+    public int getOpenOrderCount() {
+        return openOrderCount;
+    }
+
+    /**
+     * Gets the current timestamp (epoch nanoseconds) of this engine.
+     *
+     * @return the timestamp
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Gets order listener.
+     *
+     * @return the order listener
+     */
+    public OrderListener getOrderListener() {
+        return orderListener;
+    }
+
+    /**
+     * Sets order listener.
+     *
+     * @param orderListener the order listener
+     */
+    public void setOrderListener(OrderListener orderListener) {
+        this.orderListener = orderListener;
+    }
+
+    /**
+     * Gets price listener.
+     *
+     * @return the price listener
+     */
+    public PriceListener getPriceListener() {
+        return priceListener;
+    }
+
+    /**
+     * Sets price listener.
+     *
+     * @param priceListener the price listener
+     */
+    public void setPriceListener(PriceListener priceListener) {
+        this.priceListener = priceListener;
+    }
+
+    /**
+     * Gets market calendar.
+     *
+     * @return the market calendar (null if there is none)
+     */
+    public MarketCalendar getMarketCalendar() {
+        return marketCalendar;
+    }
+
+    /**
+     * Sets the market calendar that the trading sessions (e.g. the expiration of {@link OrderTimeInForce#DAY} orders)
+     * are taken from. Dates that it doesn't cover fall back to weekdays from {@link TimeUtil#MARKET_OPEN_TIME} to
+     * {@link TimeUtil#MARKET_CLOSE_TIME}.
+     *
+     * @param marketCalendar the market calendar (null to only use weekdays)
+     */
+    public void setMarketCalendar(MarketCalendar marketCalendar) {
+        this.marketCalendar = marketCalendar;
+        sessionFromTimestamp = Long.MAX_VALUE;
+        sessionCloseTimestamp = Long.MIN_VALUE;
+    }
+
+    /**
+     * Gets metrics.
+     *
+     * @return the metrics (null if this engine isn't instrumented)
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics that order submissions, cancellations, and fills are recorded to.
+     *
+     * @param metrics the metrics (null to not instrument this engine)
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+}
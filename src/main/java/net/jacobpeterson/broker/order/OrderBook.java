@@ -0,0 +1,287 @@
+package net.jacobpeterson.broker.order;
+
+import net.jacobpeterson.algorithm.update.ticker.AggregateUpdateType;
+import net.jacobpeterson.util.TimeUtil;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The resting orders of one ticker in the {@link MatchingEngine}, indexed by price. Buy limits and sell stops are
+ * polled from the highest price and sell limits and buy stops from the lowest price, so each market data event only
+ * looks at the top of each {@link OrderHeap} unless orders actually fill or trigger.
+ * <p>
+ * An order book is fed by quotes and trades if they are replayed for its ticker, otherwise by the bars of the smallest
+ * replayed {@link AggregateUpdateType}. Each quote (mid price), trade, and bar price is also sent to the {@link
+ * PriceListener} of the {@link MatchingEngine} to mark positions to market, but orders only match against the prices
+ * of regular trading sessions, so extended hours quotes, trades, and bars never fill them.
+ * <p>
+ * Bars are only replayed at their close, so the orders of a book that is fed by bars that expire during a bar (e.g. a
+ * {@link net.jacobpeterson.engine.ReplayEngine} of daily bars, whose bar of a session is replayed at the following
+ * midnight) are deferred until that bar has been matched, instead of expiring before it is replayed.
+ */
+public class OrderBook {
+
+    final int id;
+    final String ticker;
+    final MatchingEngine matchingEngine;
+    final OrderHeap buyLimits;
+    final OrderHeap sellLimits;
+    final OrderHeap buyStops;
+    final OrderHeap sellStops;
+    final OrderHeap pendingMarkets;
+    final OrderHeap deferredExpirations;
+    double bidPrice;
+    double askPrice;
+    double lastPrice;
+    long pricedSessionCloseTimestamp;
+    private boolean tickFed;
+    private AggregateUpdateType barAggregateUpdateType;
+
+    /**
+     * Instantiates a new Order book.
+     *
+     * @param id             the ID
+     * @param ticker         the ticker
+     * @param matchingEngine the matching engine
+     */
+    OrderBook(int id, String ticker, MatchingEngine matchingEngine) {
+        this.id = id;
+        this.ticker = ticker;
+        this.matchingEngine = matchingEngine;
+        this.buyLimits = new OrderHeap(true, matchingEngine.isOpen);
+        this.sellLimits = new OrderHeap(false, matchingEngine.isOpen);
+        this.buyStops = new OrderHeap(false, matchingEngine.isOpen);
+        this.sellStops = new OrderHeap(true, matchingEngine.isOpen);
+        this.pendingMarkets = new OrderHeap(false, matchingEngine.isOpen);
+        this.deferredExpirations = new OrderHeap(false, matchingEngine.isOpen);
+        this.bidPrice = Double.NaN;
+        this.askPrice = Double.NaN;
+        this.lastPrice = Double.NaN;
+        this.pricedSessionCloseTimestamp = Long.MIN_VALUE;
+    }
+
+    /**
+     * Matches resting orders against a quote if it is in a regular trading session.
+     *
+     * @param timestamp the timestamp (epoch nanoseconds)
+     * @param bidPrice  the bid price (0 if there is no bid)
+     * @param askPrice  the ask price (0 if there is no ask)
+     */
+    public void onQuote(long timestamp, double bidPrice, double askPrice) {
+        tickFed = true;
+        this.bidPrice = bidPrice > 0 ? bidPrice : Double.NaN;
+        this.askPrice = askPrice > 0 ? askPrice : Double.NaN;
+        matchingEngine.advanceTime(timestamp);
+        if (this.bidPrice == this.bidPrice && this.askPrice == this.askPrice) {
+            matchingEngine.priceListener.onPrice(this, (this.bidPrice + this.askPrice) / 2);
+        }
+        if (matchingEngine.isRegularSession(this, timestamp, timestamp + 1)) {
+            matchingEngine.match(this, this.askPrice, this.bidPrice);
+        }
+    }
+
+    /**
+     * Matches resting orders against a trade if it is in a regular trading session.
+     *
+     * @param timestamp the timestamp (epoch nanoseconds)
+     * @param price     the price
+     */
+    public void onTrade(long timestamp, double price) {
+        tickFed = true;
+        lastPrice = price;
+        matchingEngine.advanceTime(timestamp);
+        matchingEngine.priceListener.onPrice(this, price);
+        if (matchingEngine.isRegularSession(this, timestamp, timestamp + 1)) {
+            matchingEngine.match(this, price, price);
+        }
+    }
+
+    /**
+     * Matches resting orders against a bar as if it traded at its open, then at whichever of its high or low is closer
+     * to its open, then at the other, and then at its close, if the bar overlaps a regular trading session. Orders
+     * whose expiration was deferred to this bar expire after it has been matched. This is ignored if this order book
+     * is fed by quotes or trades or if the bar is larger than bars that have already been matched.
+     *
+     * @param aggregateUpdateType the aggregate update type
+     * @param timestamp           the timestamp (epoch nanoseconds of the close of the bar)
+     * @param open                the open
+     * @param high                the high
+     * @param low                 the low
+     * @param close               the close
+     */
+    public void onBar(AggregateUpdateType aggregateUpdateType, long timestamp, double open, double high, double low,
+            double close) {
+        if (tickFed || barAggregateUpdateType != null &&
+                aggregateUpdateType.getSizeRanking() > barAggregateUpdateType.getSizeRanking()) {
+            return;
+        }
+        barAggregateUpdateType = aggregateUpdateType;
+
+        long startTimestamp = TimeUtil.getAggregateStartTimestamp(aggregateUpdateType, timestamp - 1);
+        matchingEngine.advanceTime(timestamp);
+        // Orders that expired before this bar started expired during a bar that was never replayed
+        matchingEngine.expireDeferred(this, startTimestamp);
+
+        boolean regularSession = matchingEngine.isRegularSession(this, startTimestamp, timestamp);
+        boolean lowFirst = open - low <= high - open;
+        matchBarPrice(open, regularSession);
+        matchBarPrice(lowFirst ? low : high, regularSession);
+        matchBarPrice(lowFirst ? high : low, regularSession);
+        matchBarPrice(close, regularSession);
+
+        matchingEngine.expireDeferred(this, timestamp);
+    }
+
+    /**
+     * Matches resting orders against a price of a bar.
+     *
+     * @param price          the price
+     * @param regularSession true if the bar overlaps a regular trading session
+     */
+    private void matchBarPrice(double price, boolean regularSession) {
+        lastPrice = price;
+        matchingEngine.priceListener.onPrice(this, price);
+        if (regularSession) {
+            matchingEngine.match(this, price, price);
+        }
+    }
+
+    /**
+     * Gets the close of the bar of this order book that contains a timestamp, which is when the orders of this order
+     * book that expire at the timestamp can expire.
+     *
+     * @param timestamp the timestamp (epoch nanoseconds)
+     *
+     * @return the bar close timestamp (epoch nanoseconds, {@link Long#MIN_VALUE} if this order book isn't fed by
+     * bars)
+     */
+    long getBarCloseTimestamp(long timestamp) {
+        if (tickFed || barAggregateUpdateType == null) {
+            return Long.MIN_VALUE;
+        }
+        return TimeUtil.getAggregateCloseTimestamp(barAggregateUpdateType,
+                TimeUtil.getAggregateStartTimestamp(barAggregateUpdateType, timestamp - 1));
+    }
+
+    /**
+     * Writes the prices, the resting orders, and the deferred expirations of this order book.
+     *
+     * @param dataOutput the data output
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    void writeState(DataOutput dataOutput) throws IOException {
+        dataOutput.writeDouble(bidPrice);
+        dataOutput.writeDouble(askPrice);
+        dataOutput.writeDouble(lastPrice);
+        dataOutput.writeLong(pricedSessionCloseTimestamp);
+        dataOutput.writeBoolean(tickFed);
+        dataOutput.writeByte(barAggregateUpdateType == null ? -1 : barAggregateUpdateType.ordinal());
+        for (OrderHeap orderHeap : getOrderHeaps()) {
+            orderHeap.writeState(dataOutput);
+        }
+        deferredExpirations.writeState(dataOutput);
+    }
+
+    /**
+     * Reads the prices, the resting orders, and the deferred expirations that were written by {@link
+     * #writeState(DataOutput)} into this order book.
+     *
+     * @param dataInput the data input
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    void readState(DataInput dataInput) throws IOException {
+        bidPrice = dataInput.readDouble();
+        askPrice = dataInput.readDouble();
+        lastPrice = dataInput.readDouble();
+        pricedSessionCloseTimestamp = dataInput.readLong();
+        tickFed = dataInput.readBoolean();
+        int barAggregateUpdateTypeOrdinal = dataInput.readByte();
+        try {
+            barAggregateUpdateType = barAggregateUpdateTypeOrdinal < 0 ? null :
+                    AggregateUpdateType.values()[barAggregateUpdateTypeOrdinal];
+        } catch (ArrayIndexOutOfBoundsException exception) {
+            throw new IOException("Invalid aggregate update type: " + barAggregateUpdateTypeOrdinal, exception);
+        }
+        for (OrderHeap orderHeap : getOrderHeaps()) {
+            orderHeap.readState(dataInput);
+        }
+        deferredExpirations.readState(dataInput);
+    }
+
+    /**
+     * Gets the order heaps of this order book in a fixed order, so an order can refer to the heap that it rests in by
+     * index.
+     *
+     * @return the order heaps
+     */
+    OrderHeap[] getOrderHeaps() {
+        return new OrderHeap[]{buyLimits, sellLimits, buyStops, sellStops, pendingMarkets};
+    }
+
+    /**
+     * Gets the price a marketable buy order would fill at.
+     *
+     * @return the buy price (NaN if there is no price yet)
+     */
+    double getBuyPrice() {
+        return askPrice == askPrice ? askPrice : lastPrice;
+    }
+
+    /**
+     * Gets the price a marketable sell order would fill at.
+     *
+     * @return the sell price (NaN if there is no price yet)
+     */
+    double getSellPrice() {
+        return bidPrice == bidPrice ? bidPrice : lastPrice;
+    }
+
+    /**
+     * Gets the ID, which is assigned by the {@link MatchingEngine} in the order that order books are created.
+     *
+     * @return the ID
+     */
+    public int getID() {
+        return id;
+    }
+
+    /**
+     * Gets ticker.
+     *
+     * @return the ticker
+     */
+    public String getTicker() {
+        return ticker;
+    }
+
+    /**
+     * Gets the last bid price.
+     *
+     * @return the bid price (NaN if there is none)
+     */
+    public double getBidPrice() {
+        return bidPrice;
+    }
+
+    /**
+     * Gets the last ask price.
+     *
+     * @return the ask price (NaN if there is none)
+     */
+    public double getAskPrice() {
+        return askPrice;
+    }
+
+    /**
+     * Gets the last trade (or bar) price.
+     *
+     * @return the last price (NaN if there is none)
+     */
+    public double getLastPrice() {
+        return lastPrice;
+    }
+}
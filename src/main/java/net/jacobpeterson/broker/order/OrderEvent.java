@@ -0,0 +1,53 @@
+package net.jacobpeterson.broker.order;
+
+/**
+ * The enum Order event emitted by the {@link MatchingEngine} which corresponds to the <code>event</code> of an Alpaca
+ * trade update.
+ */
+public enum OrderEvent {
+
+    /**
+     * An order was accepted.
+     */
+    NEW("new"),
+
+    /**
+     * An order was completely filled.
+     */
+    FILL("fill"),
+
+    /**
+     * An order was canceled.
+     */
+    CANCELED("canceled"),
+
+    /**
+     * An order expired due to its time in force.
+     */
+    EXPIRED("expired"),
+
+    /**
+     * An order was rejected (e.g. for insufficient buying power).
+     */
+    REJECTED("rejected");
+
+    private final String apiName;
+
+    /**
+     * Instantiates a new Order event.
+     *
+     * @param apiName the Alpaca API name
+     */
+    OrderEvent(String apiName) {
+        this.apiName = apiName;
+    }
+
+    /**
+     * Gets the Alpaca API name.
+     *
+     * @return the API name
+     */
+    public String getAPIName() {
+        return apiName;
+    }
+}
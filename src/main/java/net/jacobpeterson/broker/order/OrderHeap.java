@@ -0,0 +1,267 @@
+package net.jacobpeterson.broker.order;
+
+import net.jacobpeterson.checkpoint.Checkpointable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * A primitive binary heap of order IDs keyed by a <code>long</code> (a scaled price or a timestamp) with ties broken
+ * by the lower order ID (which is the earlier order). Removed orders are deleted lazily: they stay in the heap until
+ * they reach the top or until stale entries make up half of the heap, at which point the heap is compacted. This keeps
+ * adding, polling, and removing <code>O(log n)</code> (amortized) without any allocation.
+ */
+public class OrderHeap implements Checkpointable {
+
+    private final boolean descending;
+    private final IntPredicate isLive;
+    private long[] keys;
+    private int[] orderIDs;
+    private int size;
+    private int staleCount;
+
+    /**
+     * Instantiates a new Order heap.
+     *
+     * @param descending true to poll the highest key first, false to poll the lowest key first
+     * @param isLive     the predicate that tests if an order ID in this heap is still live (not stale)
+     */
+    public OrderHeap(boolean descending, IntPredicate isLive) {
+        this.descending = descending;
+        this.isLive = isLive;
+        this.keys = new long[16];
+        this.orderIDs = new int[16];
+    }
+
+    /**
+     * Adds an order.
+     *
+     * @param key     the key
+     * @param orderID the order ID
+     */
+    public void add(long key, int orderID) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            orderIDs = Arrays.copyOf(orderIDs, size * 2);
+        }
+        keys[size] = key;
+        orderIDs[size] = orderID;
+        siftUp(size++);
+    }
+
+    /**
+     * Removes stale orders from the top of this heap.
+     *
+     * @return true if this heap has a live order at the top
+     */
+    public boolean prune() {
+        while (size > 0 && !isLive.test(orderIDs[0])) {
+            removeTop();
+            staleCount--;
+        }
+        return size > 0;
+    }
+
+    /**
+     * Records that an order in this heap has become stale and compacts this heap if stale orders make up half of it.
+     */
+    public void markStale() {
+        staleCount++;
+        if (staleCount > 32 && staleCount * 2 > size) {
+            compact();
+        }
+    }
+
+    /**
+     * Removes every stale order and rebuilds this heap in <code>O(n)</code>.
+     */
+    private void compact() {
+        int liveSize = 0;
+        for (int index = 0; index < size; index++) {
+            if (isLive.test(orderIDs[index])) {
+                keys[liveSize] = keys[index];
+                orderIDs[liveSize] = orderIDs[index];
+                liveSize++;
+            }
+        }
+        size = liveSize;
+        staleCount = 0;
+        for (int index = (size >>> 1) - 1; index >= 0; index--) {
+            siftDown(index);
+        }
+    }
+
+    /**
+     * Gets the key of the top order. Call {@link #prune()} first.
+     *
+     * @return the key
+     */
+    public long peekKey() {
+        return keys[0];
+    }
+
+    /**
+     * Gets the order ID of the top order. Call {@link #prune()} first.
+     *
+     * @return the order ID
+     */
+    public int peekOrderID() {
+        return orderIDs[0];
+    }
+
+    /**
+     * Removes and returns the order ID of the top order. Call {@link #prune()} first.
+     *
+     * @return the order ID
+     */
+    public int poll() {
+        int orderID = orderIDs[0];
+        removeTop();
+        return orderID;
+    }
+
+    /**
+     * Removes the top entry.
+     */
+    private void removeTop() {
+        size--;
+        if (size > 0) {
+            keys[0] = keys[size];
+            orderIDs[0] = orderIDs[size];
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Returns true if the entry at index <code>a</code> should be polled before the entry at index <code>b</code>.
+     *
+     * @param a the a
+     * @param b the b
+     *
+     * @return the boolean
+     */
+    private boolean isBefore(int a, int b) {
+        if (keys[a] != keys[b]) {
+            return descending ? keys[a] > keys[b] : keys[a] < keys[b];
+        }
+        return orderIDs[a] < orderIDs[b];
+    }
+
+    /**
+     * Sifts up an entry.
+     *
+     * @param index the index
+     */
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!isBefore(index, parent)) {
+                break;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    /**
+     * Sifts down an entry.
+     *
+     * @param index the index
+     */
+    private void siftDown(int index) {
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && isBefore(child + 1, child)) {
+                child++;
+            }
+            if (!isBefore(child, index)) {
+                break;
+            }
+            swap(index, child);
+            index = child;
+        }
+    }
+
+    /**
+     * Swaps two entries.
+     *
+     * @param a the a
+     * @param b the b
+     */
+    private void swap(int a, int b) {
+        long key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+        int orderID = orderIDs[a];
+        orderIDs[a] = orderIDs[b];
+        orderIDs[b] = orderID;
+    }
+
+    /**
+     * Writes the entries (including stale ones) of this heap in heap order.
+     *
+     * @param dataOutput the data output
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    @Override
+    public void writeState(DataOutput dataOutput) throws IOException {
+        dataOutput.writeInt(size);
+        dataOutput.writeInt(staleCount);
+        for (int index = 0; index < size; index++) {
+            dataOutput.writeLong(keys[index]);
+            dataOutput.writeInt(orderIDs[index]);
+        }
+    }
+
+    /**
+     * Reads the entries of a heap with the same ordering that were written by {@link #writeState(DataOutput)},
+     * replacing the entries of this heap.
+     *
+     * @param dataInput the data input
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    @Override
+    public void readState(DataInput dataInput) throws IOException {
+        int size = dataInput.readInt();
+        int staleCount = dataInput.readInt();
+        if (size < 0 || staleCount < 0 || staleCount > size) {
+            throw new IOException("Invalid order heap size: " + size);
+        }
+
+        int capacity = Math.max(16, Integer.highestOneBit(Math.max(size, 1)) << 1);
+        keys = new long[capacity];
+        orderIDs = new int[capacity];
+        for (int index = 0; index < size; index++) {
+            keys[index] = dataInput.readLong();
+            orderIDs[index] = dataInput.readInt();
+        }
+        this.size = size;
+        this.staleCount = staleCount;
+    }
+
+    /**
+     * Gets the number of entries, including stale ones.
+     *
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if this is descending.
+     *
+     * @return the boolean
+     */
+    public boolean isDescending() {
+        return descending;
+    }
+}
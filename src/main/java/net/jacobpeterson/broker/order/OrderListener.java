@@ -0,0 +1,20 @@
+package net.jacobpeterson.broker.order;
+
+/**
+ * A listener of {@link OrderEvent}s from the {@link MatchingEngine}. The order can be read with the primitive getters
+ * of the {@link MatchingEngine} by its order ID.
+ */
+@FunctionalInterface
+public interface OrderListener {
+
+    /**
+     * Called when an order event occurs.
+     *
+     * @param orderID    the order ID
+     * @param orderEvent the order event
+     * @param timestamp  the timestamp (epoch nanoseconds)
+     * @param price      the fill price (NaN if this isn't a fill)
+     * @param quantity   the fill quantity (0 if this isn't a fill)
+     */
+    void onOrderEvent(int orderID, OrderEvent orderEvent, long timestamp, double price, int quantity);
+}
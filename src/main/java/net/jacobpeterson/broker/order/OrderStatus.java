@@ -0,0 +1,52 @@
+package net.jacobpeterson.broker.order;
+
+/**
+ * The enum Order status of an order in the {@link MatchingEngine}.
+ */
+public enum OrderStatus {
+
+    /**
+     * The order is open (resting, waiting for its stop to trigger, or waiting for a price to fill at).
+     */
+    NEW("new"),
+
+    /**
+     * The order is filled.
+     */
+    FILLED("filled"),
+
+    /**
+     * The order is canceled.
+     */
+    CANCELED("canceled"),
+
+    /**
+     * The order is expired.
+     */
+    EXPIRED("expired"),
+
+    /**
+     * The order is rejected (e.g. for insufficient buying power).
+     */
+    REJECTED("rejected");
+
+    private final String apiName;
+
+    /**
+     * Instantiates a new Order status.
+     *
+     * @param apiName the Alpaca API name
+     */
+    OrderStatus(String apiName) {
+        this.apiName = apiName;
+    }
+
+    /**
+     * Gets the Alpaca API name.
+     *
+     * @return the API name
+     */
+    public String getAPIName() {
+        return apiName;
+    }
+}
@@ -0,0 +1,17 @@
+package net.jacobpeterson.broker.order;
+
+/**
+ * A listener of the mark price of each {@link OrderBook}, which is called on every quote, trade, and bar before orders
+ * are matched.
+ */
+@FunctionalInterface
+public interface PriceListener {
+
+    /**
+     * Called when the mark price of an order book changes.
+     *
+     * @param orderBook the order book
+     * @param price     the mark price
+     */
+    void onPrice(OrderBook orderBook, double price);
+}
@@ -0,0 +1,578 @@
+package net.jacobpeterson.broker.statistics;
+
+import net.jacobpeterson.broker.ledger.Ledger;
+import net.jacobpeterson.checkpoint.Checkpointable;
+import net.jacobpeterson.util.TimeUtil;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalTime;
+
+/**
+ * The performance statistics of a backtest (Sharpe, Sortino, max drawdown, CAGR, win rate, exposure, turnover, etc.)
+ * that are computed incrementally from the fills and the mark-to-market updates of a {@link Ledger}, so they use
+ * <code>O(1)</code> memory regardless of the length of the backtest and no equity curve needs to be kept.
+ * <p>
+ * The equity is sampled on every update: the drawdowns are tracked exactly with a running peak, and the exposure and
+ * the average equity are weighted by time. The returns of each New York day (from the last equity of the previous day
+ * to the last equity of the day) are fed into a {@link RunningStatistics} for the return ratios, which are annualized
+ * with {@link #getPeriodsPerYear()}. The day that is in progress counts as a period as well.
+ * <p>
+ * This is not thread safe.
+ */
+public class PerformanceStatistics implements Checkpointable {
+
+    private static final double NANOS_PER_YEAR = 365.25 * 24 * 60 * 60 * 1e9;
+
+    private final Ledger ledger;
+    private final RunningStatistics returnStatistics;
+    private int periodsPerYear;
+    private double riskFreeRate;
+
+    private boolean started;
+    private long firstTimestamp;
+    private long lastTimestamp;
+    private double lastEquity;
+    private double lastGrossExposure;
+    private boolean inMarket;
+
+    private double periodStartEquity;
+    private long nextPeriodTimestamp;
+
+    private double peakEquity;
+    private boolean underwater;
+    private long drawdownTimestamp;
+    private double maxDrawdown;
+    private long maxDrawdownDurationNanos;
+
+    private long exposureNanos;
+    private double equityNanos;
+    private double grossExposureNanos;
+
+    private long fillCount;
+    private double tradedNotional;
+    private long winningFillCount;
+    private long losingFillCount;
+    private double grossProfit;
+    private double grossLoss;
+
+    /**
+     * Instantiates a new Performance statistics with 252 periods per year and a risk-free rate of 0.
+     *
+     * @param ledger the ledger
+     */
+    public PerformanceStatistics(Ledger ledger) {
+        this.ledger = ledger;
+        this.returnStatistics = new RunningStatistics();
+        this.periodsPerYear = 252;
+    }
+
+    /**
+     * Samples the equity of the {@link Ledger} at a timestamp. This must be called after every change of the equity
+     * (fills and mark prices). A day without any update doesn't count as a period, so this should also be called while
+     * the {@link Ledger} has no positions.
+     *
+     * @param timestamp the timestamp (epoch nanoseconds)
+     */
+    public void update(long timestamp) {
+        double equity = ledger.getEquity();
+        if (!started) {
+            start(timestamp, equity);
+            return;
+        }
+
+        if (timestamp >= nextPeriodTimestamp) {
+            addPeriodReturn(returnStatistics, lastEquity);
+            periodStartEquity = lastEquity;
+            nextPeriodTimestamp = getNextPeriodTimestamp(timestamp);
+        }
+
+        if (timestamp > lastTimestamp) {
+            long elapsedNanos = timestamp - lastTimestamp;
+            if (inMarket) {
+                exposureNanos += elapsedNanos;
+            }
+            equityNanos += lastEquity * elapsedNanos;
+            grossExposureNanos += lastGrossExposure * elapsedNanos;
+            lastTimestamp = timestamp;
+        }
+
+        if (equity >= peakEquity) {
+            if (underwater) {
+                maxDrawdownDurationNanos = Math.max(maxDrawdownDurationNanos, lastTimestamp - drawdownTimestamp);
+                underwater = false;
+            }
+            peakEquity = equity;
+        } else {
+            if (!underwater) {
+                underwater = true;
+                drawdownTimestamp = lastTimestamp;
+            }
+            maxDrawdown = Math.max(maxDrawdown, 1 - equity / peakEquity);
+        }
+
+        lastEquity = equity;
+        sampleExposure(equity);
+    }
+
+    /**
+     * Records a fill and samples the equity (see {@link #update(long)}). Call this after the fill has been applied to
+     * the {@link Ledger}.
+     *
+     * @param timestamp          the timestamp (epoch nanoseconds)
+     * @param notional           the absolute notional value of the fill
+     * @param realizedProfitLoss the P&amp;L that was realized by the fill (0 if it opened or added to a position)
+     */
+    public void onFill(long timestamp, double notional, double realizedProfitLoss) {
+        fillCount++;
+        tradedNotional += notional;
+        if (realizedProfitLoss > 0) {
+            winningFillCount++;
+            grossProfit += realizedProfitLoss;
+        } else if (realizedProfitLoss < 0) {
+            losingFillCount++;
+            grossLoss -= realizedProfitLoss;
+        }
+        update(timestamp);
+    }
+
+    /**
+     * Starts sampling at a timestamp.
+     *
+     * @param timestamp the timestamp
+     * @param equity    the equity
+     */
+    private void start(long timestamp, double equity) {
+        started = true;
+        firstTimestamp = timestamp;
+        lastTimestamp = timestamp;
+        lastEquity = equity;
+        periodStartEquity = ledger.getInitialCash();
+        nextPeriodTimestamp = getNextPeriodTimestamp(timestamp);
+        peakEquity = Math.max(equity, periodStartEquity);
+        if (equity < peakEquity) {
+            underwater = true;
+            drawdownTimestamp = timestamp;
+            maxDrawdown = 1 - equity / peakEquity;
+        }
+        sampleExposure(equity);
+    }
+
+    /**
+     * Samples whether the {@link Ledger} has positions and its gross exposure.
+     *
+     * @param equity the equity
+     */
+    private void sampleExposure(double equity) {
+        inMarket = ledger.getPositionCount() != 0;
+        lastGrossExposure = inMarket && equity > 0 ?
+                            (ledger.getLongMarketValue() - ledger.getShortMarketValue()) / equity : 0;
+    }
+
+    /**
+     * Adds the excess return of the current period to a {@link RunningStatistics}.
+     *
+     * @param runningStatistics the running statistics
+     * @param periodEndEquity   the equity at the end of the period
+     */
+    private void addPeriodReturn(RunningStatistics runningStatistics, double periodEndEquity) {
+        if (periodStartEquity > 0) {
+            runningStatistics.add(periodEndEquity / periodStartEquity - 1 - riskFreeRate / periodsPerYear);
+        }
+    }
+
+    /**
+     * Gets the timestamp of the next New York midnight after a timestamp.
+     *
+     * @param timestamp the timestamp
+     *
+     * @return the next period timestamp
+     */
+    private static long getNextPeriodTimestamp(long timestamp) {
+        return TimeUtil.toEpochNanos(TimeUtil.toNewYorkDate(timestamp).plusDays(1), LocalTime.MIDNIGHT);
+    }
+
+    /**
+     * Resets these statistics (e.g. before the {@link Ledger} is reused for another backtest).
+     */
+    public void reset() {
+        returnStatistics.reset();
+        started = false;
+        firstTimestamp = 0;
+        lastTimestamp = 0;
+        lastEquity = 0;
+        lastGrossExposure = 0;
+        inMarket = false;
+        periodStartEquity = 0;
+        nextPeriodTimestamp = 0;
+        peakEquity = 0;
+        underwater = false;
+        drawdownTimestamp = 0;
+        maxDrawdown = 0;
+        maxDrawdownDurationNanos = 0;
+        exposureNanos = 0;
+        equityNanos = 0;
+        grossExposureNanos = 0;
+        fillCount = 0;
+        tradedNotional = 0;
+        winningFillCount = 0;
+        losingFillCount = 0;
+        grossProfit = 0;
+        grossLoss = 0;
+    }
+
+    /**
+     * Writes the running state of these statistics (but not the settings, e.g. {@link #getPeriodsPerYear()}).
+     *
+     * @param dataOutput the data output
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    @Override
+    public void writeState(DataOutput dataOutput) throws IOException {
+        returnStatistics.writeState(dataOutput);
+        dataOutput.writeBoolean(started);
+        dataOutput.writeLong(firstTimestamp);
+        dataOutput.writeLong(lastTimestamp);
+        dataOutput.writeDouble(lastEquity);
+        dataOutput.writeDouble(lastGrossExposure);
+        dataOutput.writeBoolean(inMarket);
+        dataOutput.writeDouble(periodStartEquity);
+        dataOutput.writeLong(nextPeriodTimestamp);
+        dataOutput.writeDouble(peakEquity);
+        dataOutput.writeBoolean(underwater);
+        dataOutput.writeLong(drawdownTimestamp);
+        dataOutput.writeDouble(maxDrawdown);
+        dataOutput.writeLong(maxDrawdownDurationNanos);
+        dataOutput.writeLong(exposureNanos);
+        dataOutput.writeDouble(equityNanos);
+        dataOutput.writeDouble(grossExposureNanos);
+        dataOutput.writeLong(fillCount);
+        dataOutput.writeDouble(tradedNotional);
+        dataOutput.writeLong(winningFillCount);
+        dataOutput.writeLong(losingFillCount);
+        dataOutput.writeDouble(grossProfit);
+        dataOutput.writeDouble(grossLoss);
+    }
+
+    /**
+     * Reads the running state that was written by {@link #writeState(DataOutput)} into these statistics, which must
+     * be computed from a {@link Ledger} with the same state.
+     *
+     * @param dataInput the data input
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    @Override
+    public void readState(DataInput dataInput) throws IOException {
+        returnStatistics.readState(dataInput);
+        started = dataInput.readBoolean();
+        firstTimestamp = dataInput.readLong();
+        lastTimestamp = dataInput.readLong();
+        lastEquity = dataInput.readDouble();
+        lastGrossExposure = dataInput.readDouble();
+        inMarket = dataInput.readBoolean();
+        periodStartEquity = dataInput.readDouble();
+        nextPeriodTimestamp = dataInput.readLong();
+        peakEquity = dataInput.readDouble();
+        underwater = dataInput.readBoolean();
+        drawdownTimestamp = dataInput.readLong();
+        maxDrawdown = dataInput.readDouble();
+        maxDrawdownDurationNanos = dataInput.readLong();
+        exposureNanos = dataInput.readLong();
+        equityNanos = dataInput.readDouble();
+        grossExposureNanos = dataInput.readDouble();
+        fillCount = dataInput.readLong();
+        tradedNotional = dataInput.readDouble();
+        winningFillCount = dataInput.readLong();
+        losingFillCount = dataInput.readLong();
+        grossProfit = dataInput.readDouble();
+        grossLoss = dataInput.readDouble();
+    }
+
+    /**
+     * Gets the statistics of the excess returns of the periods, including the period that is in progress.
+     *
+     * @return a copy of the return statistics
+     */
+    public RunningStatistics getReturnStatistics() {
+        RunningStatistics runningStatistics = new RunningStatistics(returnStatistics);
+        if (started) {
+            addPeriodReturn(runningStatistics, lastEquity);
+        }
+        return runningStatistics;
+    }
+
+    /**
+     * Gets the annualized Sharpe ratio (the mean excess return divided by its standard deviation).
+     *
+     * @return the sharpe ratio (NaN if there are less than 2 periods)
+     */
+    public double getSharpeRatio() {
+        RunningStatistics runningStatistics = getReturnStatistics();
+        return runningStatistics.getMean() / runningStatistics.getStandardDeviation() * Math.sqrt(periodsPerYear);
+    }
+
+    /**
+     * Gets the annualized Sortino ratio (the mean excess return divided by its downside deviation).
+     *
+     * @return the sortino ratio (NaN if there are no periods, infinite if no period had a negative excess return)
+     */
+    public double getSortinoRatio() {
+        RunningStatistics runningStatistics = getReturnStatistics();
+        return runningStatistics.getMean() / runningStatistics.getDownsideDeviation() * Math.sqrt(periodsPerYear);
+    }
+
+    /**
+     * Gets the annualized volatility (the standard deviation of the period returns).
+     *
+     * @return the annualized volatility (NaN if there are less than 2 periods)
+     */
+    public double getAnnualizedVolatility() {
+        return getReturnStatistics().getStandardDeviation() * Math.sqrt(periodsPerYear);
+    }
+
+    /**
+     * Gets the total return relative to the initial cash of the {@link Ledger}.
+     *
+     * @return the total return (e.g. 0.1 for 10%)
+     */
+    public double getTotalReturn() {
+        return (started ? lastEquity : ledger.getEquity()) / ledger.getInitialCash() - 1;
+    }
+
+    /**
+     * Gets the compound annual growth rate over the sampled time.
+     *
+     * @return the CAGR (NaN if no time has been sampled)
+     */
+    public double getCompoundAnnualGrowthRate() {
+        double years = (lastTimestamp - firstTimestamp) / NANOS_PER_YEAR;
+        return years <= 0 ? Double.NaN : Math.pow(1 + getTotalReturn(), 1 / years) - 1;
+    }
+
+    /**
+     * Gets the Calmar ratio (the CAGR divided by the max drawdown).
+     *
+     * @return the calmar ratio (NaN if no time has been sampled, infinite if there was no drawdown)
+     */
+    public double getCalmarRatio() {
+        return getCompoundAnnualGrowthRate() / maxDrawdown;
+    }
+
+    /**
+     * Gets the max drawdown (the largest decline of the equity from a previous peak).
+     *
+     * @return the max drawdown (e.g. 0.1 for 10%)
+     */
+    public double getMaxDrawdown() {
+        return maxDrawdown;
+    }
+
+    /**
+     * Gets the current drawdown.
+     *
+     * @return the current drawdown (e.g. 0.1 for 10%)
+     */
+    public double getCurrentDrawdown() {
+        return started && lastEquity < peakEquity ? 1 - lastEquity / peakEquity : 0;
+    }
+
+    /**
+     * Gets the longest time that the equity was below a previous peak, including the current drawdown.
+     *
+     * @return the max drawdown duration nanos
+     */
+    public long getMaxDrawdownDurationNanos() {
+        return underwater ? Math.max(maxDrawdownDurationNanos, lastTimestamp - drawdownTimestamp) :
+               maxDrawdownDurationNanos;
+    }
+
+    /**
+     * Gets the fraction of the sampled time that the {@link Ledger} had positions.
+     *
+     * @return the exposure (NaN if no time has been sampled)
+     */
+    public double getExposure() {
+        long elapsedNanos = lastTimestamp - firstTimestamp;
+        return elapsedNanos <= 0 ? Double.NaN : (double) exposureNanos / elapsedNanos;
+    }
+
+    /**
+     * Gets the time-weighted average of the gross market value of the positions divided by the equity.
+     *
+     * @return the average gross exposure (NaN if no time has been sampled)
+     */
+    public double getAverageGrossExposure() {
+        long elapsedNanos = lastTimestamp - firstTimestamp;
+        return elapsedNanos <= 0 ? Double.NaN : grossExposureNanos / elapsedNanos;
+    }
+
+    /**
+     * Gets the time-weighted average equity.
+     *
+     * @return the average equity
+     */
+    public double getAverageEquity() {
+        long elapsedNanos = lastTimestamp - firstTimestamp;
+        return elapsedNanos <= 0 ? (started ? lastEquity : ledger.getEquity()) : equityNanos / elapsedNanos;
+    }
+
+    /**
+     * Gets the turnover (the traded notional divided by the average equity).
+     *
+     * @return the turnover
+     */
+    public double getTurnover() {
+        return tradedNotional / getAverageEquity();
+    }
+
+    /**
+     * Gets the fraction of the fills that realized a profit out of the fills that realized a profit or a loss.
+     *
+     * @return the win rate (NaN if no fill has realized a profit or a loss)
+     */
+    public double getWinRate() {
+        long closingFillCount = winningFillCount + losingFillCount;
+        return closingFillCount == 0 ? Double.NaN : (double) winningFillCount / closingFillCount;
+    }
+
+    /**
+     * Gets the profit factor (the gross realized profit divided by the gross realized loss).
+     *
+     * @return the profit factor (NaN if nothing was realized, infinite if there were no losses)
+     */
+    public double getProfitFactor() {
+        return grossProfit / grossLoss;
+    }
+
+    /**
+     * Gets fill count.
+     *
+     * @return the fill count
+     */
+    public long getFillCount() {
+        return fillCount;
+    }
+
+    /**
+     * Gets the absolute notional value of all the fills.
+     *
+     * @return the traded notional
+     */
+    public double getTradedNotional() {
+        return tradedNotional;
+    }
+
+    /**
+     * Gets winning fill count.
+     *
+     * @return the winning fill count
+     */
+    public long getWinningFillCount() {
+        return winningFillCount;
+    }
+
+    /**
+     * Gets losing fill count.
+     *
+     * @return the losing fill count
+     */
+    public long getLosingFillCount() {
+        return losingFillCount;
+    }
+
+    /**
+     * Gets first timestamp.
+     *
+     * @return the first timestamp (epoch nanoseconds)
+     */
+    public long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    /**
+     * Gets last timestamp.
+     *
+     * @return the last timestamp (epoch nanoseconds)
+     */
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Gets the number of periods per year that the return ratios are annualized with (252 trading days by default).
+     *
+     * @return the periods per year
+     */
+    public int getPeriodsPerYear() {
+        return periodsPerYear;
+    }
+
+    /**
+     * Sets periods per year. See {@link #getPeriodsPerYear()}.
+     *
+     * @param periodsPerYear the periods per year
+     */
+    public void setPeriodsPerYear(int periodsPerYear) {
+        this.periodsPerYear = periodsPerYear;
+    }
+
+    /**
+     * Gets the annual risk-free rate that is subtracted from the period returns.
+     *
+     * @return the risk free rate (e.g. 0.02 for 2%)
+     */
+    public double getRiskFreeRate() {
+        return riskFreeRate;
+    }
+
+    /**
+     * Sets the annual risk-free rate. Since the excess returns are accumulated as the backtest runs, set this before
+     * the backtest is run.
+     *
+     * @param riskFreeRate the risk free rate (e.g. 0.02 for 2%)
+     */
+    public void setRiskFreeRate(double riskFreeRate) {
+        this.riskFreeRate = riskFreeRate;
+    }
+
+    /**
+     * Formats these statistics as a table.
+     *
+     * @return the report
+     */
+    public String toReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-22s %12.2f%%%n", "Total return", getTotalReturn() * 100));
+        report.append(String.format("%-22s %12.2f%%%n", "CAGR", getCompoundAnnualGrowthRate() * 100));
+        report.append(String.format("%-22s %12.2f%%%n", "Annualized volatility", getAnnualizedVolatility() * 100));
+        report.append(String.format("%-22s %12.3f%n", "Sharpe ratio", getSharpeRatio()));
+        report.append(String.format("%-22s %12.3f%n", "Sortino ratio", getSortinoRatio()));
+        report.append(String.format("%-22s %12.3f%n", "Calmar ratio", getCalmarRatio()));
+        report.append(String.format("%-22s %12.2f%%%n", "Max drawdown", maxDrawdown * 100));
+        report.append(String.format("%-22s %12.1f%n", "Max drawdown days", getMaxDrawdownDurationNanos() / 86400e9));
+        report.append(String.format("%-22s %12.2f%%%n", "Exposure", getExposure() * 100));
+        report.append(String.format("%-22s %12.3f%n", "Avg gross exposure", getAverageGrossExposure()));
+        report.append(String.format("%-22s %12.3f%n", "Turnover", getTurnover()));
+        report.append(String.format("%-22s %12d%n", "Fills", fillCount));
+        report.append(String.format("%-22s %12.2f%%%n", "Win rate", getWinRate() * 100));
+        report.append(String.format("%-22s %12.3f%n", "Profit factor", getProfitFactor()));
+        return report.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "PerformanceStatistics{" +
+                "totalReturn=" + getTotalReturn() +
+                ", sharpeRatio=" + getSharpeRatio() +
+                ", sortinoRatio=" + getSortinoRatio() +
+                ", maxDrawdown=" + maxDrawdown +
+                ", exposure=" + getExposure() +
+                ", turnover=" + getTurnover() +
+                ", winRate=" + getWinRate() +
+                ", fillCount=" + fillCount +
+                '}';
+    }
+}
@@ -0,0 +1,175 @@
+package net.jacobpeterson.broker.statistics;
+
+import net.jacobpeterson.checkpoint.Checkpointable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The running mean, variance, and downside deviation of a stream of values that are computed with Welford's online
+ * algorithm, so they're numerically stable and use <code>O(1)</code> memory regardless of the number of values.
+ * <p>
+ * This is not thread safe.
+ */
+public class RunningStatistics implements Checkpointable {
+
+    private long count;
+    private double mean;
+    private double sumOfSquaredDeviations;
+    private double sumOfSquaredDownsides;
+    private double min;
+    private double max;
+
+    /**
+     * Instantiates a new Running statistics.
+     */
+    public RunningStatistics() {
+        this.min = Double.NaN;
+        this.max = Double.NaN;
+    }
+
+    /**
+     * Instantiates a new Running statistics that is a copy of another.
+     *
+     * @param runningStatistics the running statistics
+     */
+    public RunningStatistics(RunningStatistics runningStatistics) {
+        this.count = runningStatistics.count;
+        this.mean = runningStatistics.mean;
+        this.sumOfSquaredDeviations = runningStatistics.sumOfSquaredDeviations;
+        this.sumOfSquaredDownsides = runningStatistics.sumOfSquaredDownsides;
+        this.min = runningStatistics.min;
+        this.max = runningStatistics.max;
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @param value the value
+     */
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        sumOfSquaredDeviations += delta * (value - mean);
+        if (value < 0) {
+            sumOfSquaredDownsides += value * value;
+        }
+        if (count == 1) {
+            min = value;
+            max = value;
+        } else {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+    }
+
+    /**
+     * Resets this to have no values.
+     */
+    public void reset() {
+        count = 0;
+        mean = 0;
+        sumOfSquaredDeviations = 0;
+        sumOfSquaredDownsides = 0;
+        min = Double.NaN;
+        max = Double.NaN;
+    }
+
+    @Override
+    public void writeState(DataOutput dataOutput) throws IOException {
+        dataOutput.writeLong(count);
+        dataOutput.writeDouble(mean);
+        dataOutput.writeDouble(sumOfSquaredDeviations);
+        dataOutput.writeDouble(sumOfSquaredDownsides);
+        dataOutput.writeDouble(min);
+        dataOutput.writeDouble(max);
+    }
+
+    @Override
+    public void readState(DataInput dataInput) throws IOException {
+        count = dataInput.readLong();
+        mean = dataInput.readDouble();
+        sumOfSquaredDeviations = dataInput.readDouble();
+        sumOfSquaredDownsides = dataInput.readDouble();
+        min = dataInput.readDouble();
+        max = dataInput.readDouble();
+    }
+
+    /**
+     * Gets count.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets mean.
+     *
+     * @return the mean (NaN if there are no values)
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * Gets the sample variance.
+     *
+     * @return the variance (NaN if there are less than 2 values)
+     */
+    public double getVariance() {
+        return count < 2 ? Double.NaN : sumOfSquaredDeviations / (count - 1);
+    }
+
+    /**
+     * Gets the sample standard deviation.
+     *
+     * @return the standard deviation (NaN if there are less than 2 values)
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Gets the downside deviation (the root mean square of the negative values, where the non-negative values count as
+     * 0).
+     *
+     * @return the downside deviation (NaN if there are no values)
+     */
+    public double getDownsideDeviation() {
+        return count == 0 ? Double.NaN : Math.sqrt(sumOfSquaredDownsides / count);
+    }
+
+    /**
+     * Gets min.
+     *
+     * @return the min (NaN if there are no values)
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Gets max.
+     *
+     * @return the max (NaN if there are no values)
+     */
+    public double getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "RunningStatistics{" +
+                "count=" + count +
+                ", mean=" + getMean() +
+                ", standardDeviation=" + getStandardDeviation() +
+                ", downsideDeviation=" + getDownsideDeviation() +
+                ", min=" + min +
+                ", max=" + max +
+                '}';
+    }
+}
@@ -0,0 +1,236 @@
+package net.jacobpeterson.checkpoint;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+/**
+ * A checkpoint of a running backtest (see {@link CheckpointFormat}) from which the backtest can be resumed with
+ * {@link net.jacobpeterson.AlpacaJavaBacktest#resume(net.jacobpeterson.algorithm.TradingAlgorithm)} after the process
+ * is killed. Checkpoints are taken between two New York days, so the position of the replay is simply the timestamp
+ * that the backtest resumes from: every event before it has been dispatched and none after it. The state of the
+ * broker, the recorder, the indicators, and the trading algorithm is kept as an opaque byte array that is read back by
+ * the {@link Checkpointable}s that wrote it.
+ * <p>
+ * This is immutable.
+ */
+public class BacktestCheckpoint {
+
+    private final long createdMillis;
+    private final long fromTimestamp;
+    private final long toTimestamp;
+    private final long timestamp;
+    private final String name;
+    private final String configuration;
+    private final byte[] state;
+
+    /**
+     * Instantiates a new Backtest checkpoint.
+     *
+     * @param createdMillis the created millis
+     * @param fromTimestamp the from timestamp of the backtest (epoch nanoseconds)
+     * @param toTimestamp   the to timestamp of the backtest (epoch nanoseconds)
+     * @param timestamp     the timestamp that the backtest resumes from (epoch nanoseconds)
+     * @param name          the name (the trading algorithm class)
+     * @param configuration the configuration (the update types of the backtest)
+     * @param state         the state (not copied)
+     */
+    public BacktestCheckpoint(long createdMillis, long fromTimestamp, long toTimestamp, long timestamp, String name,
+            String configuration, byte[] state) {
+        this.createdMillis = createdMillis;
+        this.fromTimestamp = fromTimestamp;
+        this.toTimestamp = toTimestamp;
+        this.timestamp = timestamp;
+        this.name = name;
+        this.configuration = configuration;
+        this.state = state;
+    }
+
+    /**
+     * Reads a checkpoint file.
+     *
+     * @param file the file
+     *
+     * @return the backtest checkpoint
+     *
+     * @throws IOException thrown for {@link IOException}s (including files that are corrupt or not checkpoints)
+     */
+    public static BacktestCheckpoint read(File file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        if (bytes.length < Integer.BYTES + Short.BYTES + Integer.BYTES ||
+                ByteBuffer.wrap(bytes).getInt() != CheckpointFormat.MAGIC) {
+            throw new IOException(file + " is not a backtest checkpoint");
+        }
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes, 0, bytes.length - Integer.BYTES);
+        if (ByteBuffer.wrap(bytes, bytes.length - Integer.BYTES, Integer.BYTES).getInt() != (int) crc32.getValue()) {
+            throw new IOException(file + " is corrupt (CRC32 mismatch)");
+        }
+
+        try (DataInputStream dataInputStream = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            dataInputStream.readInt();
+            short version = dataInputStream.readShort();
+            if (version != CheckpointFormat.VERSION) {
+                throw new IOException(file + " has an unsupported version: " + version);
+            }
+
+            long createdMillis = dataInputStream.readLong();
+            long fromTimestamp = dataInputStream.readLong();
+            long toTimestamp = dataInputStream.readLong();
+            long timestamp = dataInputStream.readLong();
+            String name = dataInputStream.readUTF();
+            String configuration = dataInputStream.readUTF();
+            int stateLength = dataInputStream.readInt();
+            if (stateLength < 0 || stateLength > dataInputStream.available() - Integer.BYTES) {
+                throw new IOException(file + " is corrupt (invalid state length)");
+            }
+            byte[] state = new byte[stateLength];
+            dataInputStream.readFully(state);
+            return new BacktestCheckpoint(createdMillis, fromTimestamp, toTimestamp, timestamp, name, configuration,
+                    state);
+        } catch (EOFException exception) {
+            throw new IOException(file + " is truncated", exception);
+        }
+    }
+
+    /**
+     * Writes this checkpoint to a temporary file next to a file and then moves it over the file atomically (if the
+     * file system supports it), so a crash while writing never leaves a partial checkpoint behind.
+     *
+     * @param file the file
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public void write(File file) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.exists() && !directory.mkdirs() && !directory.exists()) {
+            throw new IOException("Could not create " + directory);
+        }
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(state.length + 256);
+        DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream);
+        dataOutputStream.writeInt(CheckpointFormat.MAGIC);
+        dataOutputStream.writeShort(CheckpointFormat.VERSION);
+        dataOutputStream.writeLong(createdMillis);
+        dataOutputStream.writeLong(fromTimestamp);
+        dataOutputStream.writeLong(toTimestamp);
+        dataOutputStream.writeLong(timestamp);
+        dataOutputStream.writeUTF(name);
+        dataOutputStream.writeUTF(configuration);
+        dataOutputStream.writeInt(state.length);
+        dataOutputStream.write(state);
+        CRC32 crc32 = new CRC32();
+        crc32.update(byteArrayOutputStream.toByteArray());
+        dataOutputStream.writeInt((int) crc32.getValue());
+        dataOutputStream.flush();
+
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fileOutputStream = new FileOutputStream(temporaryFile)) {
+            byteArrayOutputStream.writeTo(fileOutputStream);
+            fileOutputStream.getFD().sync();
+        }
+        try {
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException exception) {
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Creates a data input that reads the state from the start.
+     *
+     * @return the data input stream
+     */
+    public DataInputStream openState() {
+        return new DataInputStream(new ByteArrayInputStream(state));
+    }
+
+    /**
+     * Gets created millis.
+     *
+     * @return the created millis
+     */
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    /**
+     * Gets from timestamp.
+     *
+     * @return the from timestamp
+     */
+    public long getFromTimestamp() {
+        return fromTimestamp;
+    }
+
+    /**
+     * Gets to timestamp.
+     *
+     * @return the to timestamp
+     */
+    public long getToTimestamp() {
+        return toTimestamp;
+    }
+
+    /**
+     * Gets the timestamp that the backtest resumes from. Every event before it was dispatched before the checkpoint
+     * was taken.
+     *
+     * @return the timestamp (epoch nanoseconds)
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Gets name.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets configuration.
+     *
+     * @return the configuration
+     */
+    public String getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * Gets the length of the state.
+     *
+     * @return the state length
+     */
+    public int getStateLength() {
+        return state.length;
+    }
+
+    @Override
+    public String toString() {
+        return "BacktestCheckpoint{" +
+                "createdMillis=" + createdMillis +
+                ", fromTimestamp=" + fromTimestamp +
+                ", toTimestamp=" + toTimestamp +
+                ", timestamp=" + timestamp +
+                ", name='" + name + '\'' +
+                ", configuration='" + configuration + '\'' +
+                ", stateLength=" + state.length +
+                '}';
+    }
+}
@@ -0,0 +1,44 @@
+package net.jacobpeterson.checkpoint;
+
+/**
+ * Constants that define the binary checkpoint file format that is written and read by {@link BacktestCheckpoint}. All
+ * values are big-endian and strings are modified UTF-8, as written by {@link java.io.DataOutput}.
+ * <p>
+ * A checkpoint file is laid out as follows:
+ * <pre>
+ * Header
+ *   int    magic ('AJBC')
+ *   short  version
+ *   long   created (epoch milliseconds)
+ *   long   from timestamp of the backtest (epoch nanoseconds)
+ *   long   to timestamp of the backtest (epoch nanoseconds)
+ *   long   timestamp that the backtest resumes from (epoch nanoseconds)
+ *   string name (the trading algorithm class)
+ *   string configuration (the update types of the backtest)
+ * State (sections that are each an int length, or -1 if absent, followed by that many bytes)
+ *   int    state length
+ *   Broker
+ *     Matching engine: long time, order books (ticker, prices, order heaps, deferred expirations),
+ *                      expiration heap, orders
+ *     Ledger: cash, running totals, positions
+ *     Performance statistics
+ *   Recorder (absent if not recording): file, next block offset, block index, tickers, summary
+ *   Indicators: by ticker and aggregate update type, each indicator's class and state
+ *   Algorithm (absent unless the trading algorithm implements {@link Checkpointable})
+ * int      CRC32 of everything before it
+ * </pre>
+ * Checkpoint files are replaced atomically, so a file is either a complete checkpoint or the previous one.
+ */
+public final class CheckpointFormat {
+
+    /** The constant FILE_EXTENSION. */
+    public static final String FILE_EXTENSION = "ckpt";
+
+    /** The constant MAGIC. */
+    public static final int MAGIC = 0x414A4243;
+
+    /** The constant VERSION. */
+    public static final short VERSION = 2;
+
+    private CheckpointFormat() {}
+}
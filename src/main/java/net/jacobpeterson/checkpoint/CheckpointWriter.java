@@ -0,0 +1,107 @@
+package net.jacobpeterson.checkpoint;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes {@link BacktestCheckpoint}s to a file on a single background thread so that the backtest thread only pays
+ * for serializing the state into memory. If a checkpoint is submitted while the previous one is still waiting to be
+ * written, the previous one is dropped since only the latest checkpoint matters. I/O errors are logged and don't stop
+ * the backtest.
+ * <p>
+ * This is thread safe.
+ */
+public class CheckpointWriter implements AutoCloseable {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final File file;
+    private final ExecutorService writerExecutorService;
+    private final AtomicReference<BacktestCheckpoint> pendingCheckpoint;
+    private final AtomicLong writtenCount;
+
+    /**
+     * Instantiates a new Checkpoint writer.
+     *
+     * @param file the file
+     */
+    public CheckpointWriter(File file) {
+        this.file = file;
+        this.writerExecutorService = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CheckpointWriter-" + file.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pendingCheckpoint = new AtomicReference<>();
+        this.writtenCount = new AtomicLong();
+    }
+
+    /**
+     * Submits a checkpoint to be written.
+     *
+     * @param backtestCheckpoint the backtest checkpoint
+     */
+    public void submit(BacktestCheckpoint backtestCheckpoint) {
+        if (pendingCheckpoint.getAndSet(backtestCheckpoint) == null) {
+            writerExecutorService.execute(this::writePendingCheckpoint);
+        }
+    }
+
+    /**
+     * Writes the pending checkpoint on the writer thread.
+     */
+    private void writePendingCheckpoint() {
+        BacktestCheckpoint backtestCheckpoint = pendingCheckpoint.getAndSet(null);
+        if (backtestCheckpoint == null) {
+            return;
+        }
+
+        try {
+            backtestCheckpoint.write(file);
+            writtenCount.incrementAndGet();
+            LOGGER.debug("Wrote a checkpoint of {} bytes to {}", backtestCheckpoint.getStateLength(), file);
+        } catch (IOException exception) {
+            LOGGER.error("Could not write the checkpoint {}", file, exception);
+        }
+    }
+
+    /**
+     * Waits for the pending checkpoint to be written and stops the writer thread.
+     */
+    @Override
+    public void close() {
+        writerExecutorService.shutdown();
+        try {
+            writerExecutorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            writerExecutorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Gets file.
+     *
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the number of checkpoints that have been written.
+     *
+     * @return the written count
+     */
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+}
@@ -0,0 +1,31 @@
+package net.jacobpeterson.checkpoint;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Something whose state can be written to a {@link BacktestCheckpoint} and read back to resume a backtest. A {@link
+ * net.jacobpeterson.algorithm.TradingAlgorithm} opts in to having its own state (e.g. its fields) checkpointed by
+ * implementing this.
+ */
+public interface Checkpointable {
+
+    /**
+     * Writes the state of this.
+     *
+     * @param dataOutput the data output
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    void writeState(DataOutput dataOutput) throws IOException;
+
+    /**
+     * Reads the state of this that was written by {@link #writeState(DataOutput)}, replacing the current state.
+     *
+     * @param dataInput the data input
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    void readState(DataInput dataInput) throws IOException;
+}
@@ -6,12 +6,53 @@ import io.github.mainstringargs.domain.polygon.aggregates.Aggregate;
 import io.github.mainstringargs.domain.polygon.historicquotes.HistoricQuote;
 import io.github.mainstringargs.domain.polygon.historictrades.HistoricTrade;
 import io.github.mainstringargs.polygon.PolygonAPI;
+import net.jacobpeterson.algorithm.update.TickerUpdateType;
 import net.jacobpeterson.algorithm.update.ticker.AggregateUpdateType;
+import net.jacobpeterson.data.bar.BarSpecification;
+import net.jacobpeterson.data.cache.CacheManifest;
+import net.jacobpeterson.data.cache.CacheManifestEntry;
+import net.jacobpeterson.data.cache.CacheVerification;
+import net.jacobpeterson.data.cache.JsonSegmentConverter;
+import net.jacobpeterson.data.cache.Segment;
+import net.jacobpeterson.data.cache.SegmentCache;
+import net.jacobpeterson.data.cache.SegmentLoader;
+import net.jacobpeterson.data.cache.SegmentType;
+import net.jacobpeterson.data.cache.SegmentWriter;
+import net.jacobpeterson.data.calendar.CalendarCache;
+import net.jacobpeterson.data.calendar.MarketCalendar;
+import net.jacobpeterson.data.fetch.AlpacaCalendarFetcher;
+import net.jacobpeterson.data.fetch.CalendarFetcher;
+import net.jacobpeterson.data.fetch.DataFetcher;
+import net.jacobpeterson.data.fetch.DataPrefetcher;
+import net.jacobpeterson.data.fetch.PolygonDataFetcher;
+import net.jacobpeterson.data.fetch.PrefetchResult;
+import net.jacobpeterson.data.fetch.TokenBucketRateLimiter;
+import net.jacobpeterson.data.iterators.AggregateIterator;
+import net.jacobpeterson.data.iterators.BarIterator;
+import net.jacobpeterson.data.iterators.QuoteIterator;
+import net.jacobpeterson.data.iterators.SynthesizedAggregateIterator;
+import net.jacobpeterson.data.iterators.TradeIterator;
+import net.jacobpeterson.data.series.BarSeries;
+import net.jacobpeterson.metrics.MetricCounter;
+import net.jacobpeterson.metrics.MetricType;
+import net.jacobpeterson.metrics.Metrics;
+import net.jacobpeterson.util.TimeUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
 import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Used for querying and caching data from <a href="https://polygon.io/">Polygon</a> and
@@ -21,11 +62,16 @@ import java.time.LocalDate;
  */
 public class BacktestData {
 
-    public static final String AGGREGATES_FILE_EXTENSION = "aggregates.json";
-    public static final String TRADES_FILE_EXTENSION = "trades.json";
-    public static final String QUOTES_FILE_EXTENSION = "quotes.json";
+    public static final String AGGREGATES_FILE_EXTENSION = "aggregates.seg";
+    public static final String TRADES_FILE_EXTENSION = "trades.seg";
+    public static final String QUOTES_FILE_EXTENSION = "quotes.seg";
+    public static final String AGGREGATES_JSON_FILE_EXTENSION = "aggregates.json";
+    public static final String TRADES_JSON_FILE_EXTENSION = "trades.json";
+    public static final String QUOTES_JSON_FILE_EXTENSION = "quotes.json";
     public static final String BACKTEST_DATA_DIRECTORY_NAME = ".alpacajavabacktest";
     public static final String DATA_CACHE_DIRECTORY_NAME = "data_cache";
+    public static final String BACKTEST_RECORDS_DIRECTORY_NAME = "backtest_records";
+    public static final String CHECKPOINTS_DIRECTORY_NAME = "checkpoints";
 
     private static final Logger LOGGER = LogManager.getLogger();
 
@@ -33,6 +79,19 @@ public class BacktestData {
     private final PolygonAPI polygonAPI;
     private final File backtestDataDirectory;
     private final File dataCacheDirectory;
+    private final File backtestRecordsDirectory;
+    private final File checkpointsDirectory;
+    private final Metrics metrics;
+    private final ConcurrentHashMap<File, CacheManifest> cacheManifests;
+    private final SegmentLoader fileSegmentLoader;
+    private final CalendarCache calendarCache;
+    private volatile boolean memoryMapped;
+    private volatile boolean cacheCompressed;
+    private volatile SegmentLoader segmentLoader;
+    private volatile DataFetcher dataFetcher;
+    private volatile CalendarFetcher calendarFetcher;
+    private volatile int readAheadDays;
+    private ExecutorService readAheadExecutorService;
 
     /**
      * Instantiates a new Backtest data with <code>System.getProperty("user.home")</code> as the data directory.
@@ -57,7 +116,28 @@ public class BacktestData {
         this.backtestDataDirectory = backtestDataDirectory == null ?
                                      new File(System.getProperty("java.io.tmpdir"), BACKTEST_DATA_DIRECTORY_NAME) :
                                      backtestDataDirectory;
-        this.dataCacheDirectory = new File(backtestDataDirectory, DATA_CACHE_DIRECTORY_NAME);
+        this.dataCacheDirectory = new File(this.backtestDataDirectory, DATA_CACHE_DIRECTORY_NAME);
+        this.backtestRecordsDirectory = new File(this.backtestDataDirectory, BACKTEST_RECORDS_DIRECTORY_NAME);
+        this.checkpointsDirectory = new File(this.backtestDataDirectory, CHECKPOINTS_DIRECTORY_NAME);
+        this.metrics = new Metrics();
+        this.cacheManifests = new ConcurrentHashMap<>();
+        this.memoryMapped = false;
+        this.fileSegmentLoader = new SegmentLoader() {
+            @Override
+            public Segment load(File file) throws IOException {
+                return readSegmentFile(file);
+            }
+
+            @Override
+            public Segment load(File file, long fromTimestamp, long toTimestamp) throws IOException {
+                return readSegmentFile(file, fromTimestamp, toTimestamp);
+            }
+        };
+        this.segmentLoader = fileSegmentLoader;
+        this.dataFetcher = new PolygonDataFetcher(polygonAPI);
+        this.calendarCache = new CalendarCache(new File(dataCacheDirectory, CalendarCache.CALENDAR_FILE_NAME));
+        this.calendarFetcher = alpacaAPI == null ? null : new AlpacaCalendarFetcher(alpacaAPI);
+        this.readAheadDays = 2;
     }
 
     /**
@@ -73,7 +153,96 @@ public class BacktestData {
      */
     public Iterable<Aggregate> getAggregates(String ticker, AggregateUpdateType aggregateUpdateType, LocalDate from,
             LocalDate to) {
-        return null;
+        return () -> new AggregateIterator(this, ticker, aggregateUpdateType, from, to);
+    }
+
+    /**
+     * Provides an iterable for the Aggregate data on a ticker whose timestamps are within a time range. Only the
+     * blocks of the cached segment files that hold that time range are read, so this is much cheaper than iterating
+     * over whole days when the time range is only part of a day (e.g. the first minutes after the open). This will
+     * fetch data from Polygon if it doesn't exist on the cache (or if the cache is disabled).
+     *
+     * @param ticker              the ticker
+     * @param aggregateUpdateType the aggregate update type
+     * @param from                the from ZonedDateTime (inclusive)
+     * @param to                  the to ZonedDateTime (exclusive)
+     *
+     * @return the aggregates
+     */
+    public Iterable<Aggregate> getAggregates(String ticker, AggregateUpdateType aggregateUpdateType,
+            ZonedDateTime from, ZonedDateTime to) {
+        return () -> new AggregateIterator(this, ticker, aggregateUpdateType, from, to);
+    }
+
+    /**
+     * Provides an iterable for Aggregate data on a ticker that is built from the Aggregate data of a smaller base
+     * aggregate update type (see {@link SynthesizedAggregateIterator}). Only the base Aggregate data is fetched from
+     * Polygon if it doesn't exist on the cache.
+     *
+     * @param ticker                  the ticker
+     * @param aggregateUpdateType     the aggregate update type
+     * @param baseAggregateUpdateType the base aggregate update type
+     * @param from                    the from LocalDate (inclusive)
+     * @param to                      the to LocalDate (exclusive)
+     *
+     * @return the aggregates
+     */
+    public Iterable<Aggregate> getAggregates(String ticker, AggregateUpdateType aggregateUpdateType,
+            AggregateUpdateType baseAggregateUpdateType, LocalDate from, LocalDate to) {
+        return () -> new SynthesizedAggregateIterator(this, ticker, aggregateUpdateType, baseAggregateUpdateType, from,
+                to);
+    }
+
+    /**
+     * Provides an iterable for the Aggregate data on a ticker whose timestamps are within a time range that is built
+     * from the Aggregate data of a smaller base aggregate update type (see {@link SynthesizedAggregateIterator}).
+     *
+     * @param ticker                  the ticker
+     * @param aggregateUpdateType     the aggregate update type
+     * @param baseAggregateUpdateType the base aggregate update type
+     * @param from                    the from ZonedDateTime (inclusive)
+     * @param to                      the to ZonedDateTime (exclusive)
+     *
+     * @return the aggregates
+     */
+    public Iterable<Aggregate> getAggregates(String ticker, AggregateUpdateType aggregateUpdateType,
+            AggregateUpdateType baseAggregateUpdateType, ZonedDateTime from, ZonedDateTime to) {
+        return () -> new SynthesizedAggregateIterator(this, ticker, aggregateUpdateType, baseAggregateUpdateType, from,
+                to);
+    }
+
+    /**
+     * Provides an iterable for custom bars on a ticker which are built from its Trade or Quote data (see {@link
+     * BarIterator}). The bars of each day are cached after they are built the first time, and the Trade or Quote data
+     * is fetched from Polygon if it doesn't exist on the cache.
+     *
+     * @param ticker           the ticker
+     * @param barSpecification the bar specification
+     * @param from             the from LocalDate (inclusive)
+     * @param to               the to LocalDate (exclusive)
+     *
+     * @return the bars
+     */
+    public Iterable<Aggregate> getBars(String ticker, BarSpecification barSpecification, LocalDate from,
+            LocalDate to) {
+        return () -> new BarIterator(this, ticker, barSpecification, from, to);
+    }
+
+    /**
+     * Loads Aggregate data on a ticker into a {@link BarSeries} for random access to long lookbacks (e.g. to warm up
+     * indicators in {@link net.jacobpeterson.algorithm.TradingAlgorithm#init()}). This will fetch data from Polygon if
+     * it doesn't exist on the cache (or if the cache is disabled).
+     *
+     * @param ticker              the ticker
+     * @param aggregateUpdateType the aggregate update type
+     * @param from                the from LocalDate
+     * @param to                  the to LocalDate
+     *
+     * @return the bar series
+     */
+    public BarSeries getBarSeries(String ticker, AggregateUpdateType aggregateUpdateType, LocalDate from,
+            LocalDate to) {
+        return BarSeries.load(this, ticker, aggregateUpdateType, from, to);
     }
 
     /**
@@ -87,7 +256,22 @@ public class BacktestData {
      * @return the trades
      */
     public Iterable<HistoricTrade> getTrades(String ticker, LocalDate from, LocalDate to) {
-        return null;
+        return () -> new TradeIterator(this, ticker, from, to);
+    }
+
+    /**
+     * Provides an iterator for the Trade data on a ticker whose timestamps are within a time range. Only the blocks of
+     * the cached segment files that hold that time range are read. This will fetch data from Polygon if it doesn't
+     * exist on the cache (or if the cache is disabled).
+     *
+     * @param ticker the ticker
+     * @param from   the from ZonedDateTime (inclusive)
+     * @param to     the to ZonedDateTime (exclusive)
+     *
+     * @return the trades
+     */
+    public Iterable<HistoricTrade> getTrades(String ticker, ZonedDateTime from, ZonedDateTime to) {
+        return () -> new TradeIterator(this, ticker, from, to);
     }
 
     /**
@@ -101,20 +285,106 @@ public class BacktestData {
      * @return the quotes
      */
     public Iterable<HistoricQuote> getQuotes(String ticker, LocalDate from, LocalDate to) {
-        return null;
+        return () -> new QuoteIterator(this, ticker, from, to);
     }
 
     /**
-     * Provides an iterator for the stock market calendar. This will fetch data from Polygon if it doesn't exist on the
-     * cache (or if the cache is disabled).
+     * Provides an iterator for the Quote data on a ticker whose timestamps are within a time range. Only the blocks of
+     * the cached segment files that hold that time range are read. This will fetch data from Polygon if it doesn't
+     * exist on the cache (or if the cache is disabled).
+     *
+     * @param ticker the ticker
+     * @param from   the from ZonedDateTime (inclusive)
+     * @param to     the to ZonedDateTime (exclusive)
+     *
+     * @return the quotes
+     */
+    public Iterable<HistoricQuote> getQuotes(String ticker, ZonedDateTime from, ZonedDateTime to) {
+        return () -> new QuoteIterator(this, ticker, from, to);
+    }
+
+    /**
+     * Provides an iterator for the stock market calendar. This will fetch the calendar via {@link
+     * #getCalendarFetcher()} if it doesn't exist on the cache (see {@link #getMarketCalendar(LocalDate, LocalDate)}).
+     *
+     * @param from the from (inclusive)
+     * @param to   the to (exclusive)
      *
-     * @param from the from
-     * @param to   the to
+     * @return a {@link Calendar} for every trading day
      *
-     * @return the calendar
+     * @throws UncheckedIOException thrown if the calendar couldn't be fetched
+     * @throws IllegalStateException thrown if the calendar isn't cached and there is no {@link CalendarFetcher}
      */
     public Iterable<Calendar> getCalendar(LocalDate from, LocalDate to) {
-        return null;
+        MarketCalendar marketCalendar;
+        try {
+            marketCalendar = getMarketCalendar(from, to);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        if (marketCalendar == null) {
+            throw new IllegalStateException("The calendar from " + from + " to " + to +
+                    " isn't cached and there is no CalendarFetcher to fetch it!");
+        }
+        return marketCalendar.getCalendars(from, to);
+    }
+
+    /**
+     * Gets the in-memory {@link MarketCalendar} that covers a date range from the {@link CalendarCache}, fetching the
+     * whole years of the date range that aren't cached yet via {@link #getCalendarFetcher()}.
+     *
+     * @param from the from (inclusive)
+     * @param to   the to (exclusive)
+     *
+     * @return the market calendar (null if the date range isn't cached and there is no calendar fetcher)
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public MarketCalendar getMarketCalendar(LocalDate from, LocalDate to) throws IOException {
+        return calendarCache.get(from, to, calendarFetcher);
+    }
+
+    /**
+     * Gets the {@link MarketCalendar} that covers a date range like {@link #getMarketCalendar(LocalDate, LocalDate)},
+     * but logs a warning and returns null instead of throwing if the calendar couldn't be fetched, so that callers
+     * can fall back to every day (or every weekday).
+     *
+     * @param from the from (inclusive)
+     * @param to   the to (exclusive)
+     *
+     * @return the market calendar (null if it isn't available)
+     */
+    public MarketCalendar findMarketCalendar(LocalDate from, LocalDate to) {
+        try {
+            return getMarketCalendar(from, to);
+        } catch (IOException exception) {
+            LOGGER.warn("Could not get the calendar from {} to {}, non-trading days won't be skipped", from, to,
+                    exception);
+            return null;
+        }
+    }
+
+    /**
+     * Gets the dates of the data files of an {@link AggregateUpdateType} within a date range (see {@link
+     * TimeUtil#getAggregateDateIntervals(AggregateUpdateType, LocalDate, LocalDate)}). If a {@link MarketCalendar} is
+     * available (see {@link #findMarketCalendar(LocalDate, LocalDate)}), the weekends and holidays are skipped for
+     * daily data files since they never have data, which saves a cache lookup (and a fetch the first time) for each.
+     *
+     * @param aggregateUpdateType the aggregate update type ({@link AggregateUpdateType#DAY} for trades and quotes)
+     * @param from                the from (inclusive)
+     * @param to                  the to (exclusive)
+     *
+     * @return the dates
+     */
+    public ArrayList<LocalDate> getDateIntervals(AggregateUpdateType aggregateUpdateType, LocalDate from,
+            LocalDate to) {
+        if (aggregateUpdateType.getSizeRanking() <= AggregateUpdateType.DAY.getSizeRanking() && from.isBefore(to)) {
+            MarketCalendar marketCalendar = findMarketCalendar(from, to);
+            if (marketCalendar != null) {
+                return marketCalendar.getAggregateDateIntervals(aggregateUpdateType, from, to);
+            }
+        }
+        return TimeUtil.getAggregateDateIntervals(aggregateUpdateType, from, to);
     }
 
     /**
@@ -133,6 +403,591 @@ public class BacktestData {
                  aggregateUpdateType.name().toLowerCase() + ".") + extension);
     }
 
+    /**
+     * Loads the segment of a {@link #getDataFile} entry, reading it from the data cache via {@link
+     * #readCachedSegment(File)} if it's cached and fetching it via {@link #fetchSegment(String, LocalDate,
+     * AggregateUpdateType, SegmentType)} otherwise.
+     *
+     * @param ticker              the ticker
+     * @param date                the date
+     * @param aggregateUpdateType the aggregate update type (null for trades and quotes)
+     * @param segmentType         the segment type
+     *
+     * @return the segment
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public Segment loadSegment(String ticker, LocalDate date, AggregateUpdateType aggregateUpdateType,
+            SegmentType segmentType) throws IOException {
+        return loadSegment(ticker, date, aggregateUpdateType, segmentType, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Loads the segment of a {@link #getDataFile} entry like {@link #loadSegment(String, LocalDate,
+     * AggregateUpdateType, SegmentType)}, but only reads the part of a cached segment file that holds a time range
+     * (see {@link #readCachedSegment(File, long, long)}).
+     *
+     * @param ticker              the ticker
+     * @param date                the date
+     * @param aggregateUpdateType the aggregate update type (null for trades and quotes)
+     * @param segmentType         the segment type
+     * @param fromTimestamp       the from timestamp (epoch nanoseconds, inclusive)
+     * @param toTimestamp         the to timestamp (epoch nanoseconds, exclusive)
+     *
+     * @return the segment
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public Segment loadSegment(String ticker, LocalDate date, AggregateUpdateType aggregateUpdateType,
+            SegmentType segmentType, long fromTimestamp, long toTimestamp) throws IOException {
+        Segment segment = readCachedSegment(getDataFile(ticker, date, aggregateUpdateType,
+                segmentType.getFileExtension()), fromTimestamp, toTimestamp);
+        if (segment != null) {
+            return segment;
+        }
+
+        LOGGER.debug("Fetching {} {} for {} since it is not cached", ticker, segmentType, date);
+        return fetchSegment(ticker, date, aggregateUpdateType, segmentType);
+    }
+
+    /**
+     * Reads a data cache file via {@link #readSegment(File)} if it's cached (see {@link #isCached(File)}). If the file
+     * was deleted since it was cached, it is removed from its {@link CacheManifest} and null is returned.
+     *
+     * @param file the file
+     *
+     * @return the segment (null if the file isn't cached)
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public Segment readCachedSegment(File file) throws IOException {
+        return readCachedSegment(file, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads the part of a data cache file that holds a time range via {@link #readSegment(File, long, long)} if it's
+     * cached, like {@link #readCachedSegment(File)}.
+     *
+     * @param file          the file
+     * @param fromTimestamp the from timestamp (epoch nanoseconds, inclusive)
+     * @param toTimestamp   the to timestamp (epoch nanoseconds, exclusive)
+     *
+     * @return the segment (null if the file isn't cached)
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public Segment readCachedSegment(File file, long fromTimestamp, long toTimestamp) throws IOException {
+        if (!isCached(file)) {
+            return null;
+        }
+
+        try {
+            return readSegment(file, fromTimestamp, toTimestamp);
+        } catch (FileNotFoundException | NoSuchFileException exception) {
+            LOGGER.warn("{} was deleted from the data cache, it will be fetched again", file);
+            segmentLoader.invalidate(file);
+            getCacheManifest(file.getParentFile()).remove(file.getName());
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if a data cache file is cached. This is an in-memory lookup in the {@link CacheManifest} of the
+     * directory of the file, except for files that were written to the data cache without {@link
+     * #writeSegment(SegmentWriter, File)} which are registered in the manifest the first time they are looked up. A
+     * file that isn't a valid segment isn't cached (so it will be fetched again).
+     *
+     * @param file the file
+     *
+     * @return the boolean
+     */
+    public boolean isCached(File file) {
+        CacheManifest cacheManifest;
+        try {
+            cacheManifest = getCacheManifest(file.getParentFile());
+        } catch (IOException exception) {
+            LOGGER.warn("Could not open the data cache manifest of {}", file.getParentFile(), exception);
+            return file.exists();
+        }
+
+        if (cacheManifest.contains(file.getName())) {
+            return true;
+        } else if (!file.exists()) {
+            return false;
+        }
+
+        try {
+            cacheManifest.register(file, false);
+            return true;
+        } catch (IOException exception) {
+            LOGGER.warn("{} is not a valid segment, it will be fetched again: {}", file, exception.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Writes a segment to a data cache file (compressed if {@link #isCacheCompressed()} is true) and registers it in
+     * the {@link CacheManifest} of its directory with its checksum.
+     *
+     * @param segmentWriter the segment writer
+     * @param file          the file
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public void writeSegment(SegmentWriter segmentWriter, File file) throws IOException {
+        segmentWriter.setCompressed(cacheCompressed);
+        segmentWriter.write(file);
+        segmentLoader.invalidate(file);
+
+        try {
+            getCacheManifest(file.getParentFile()).register(file, true);
+        } catch (IOException exception) {
+            LOGGER.warn("Could not register {} in the data cache manifest", file, exception);
+        }
+    }
+
+    /**
+     * Gets the {@link CacheManifest} of the data cache files of a ticker, opening it on first use.
+     *
+     * @param ticker the ticker
+     *
+     * @return the cache manifest
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public CacheManifest getCacheManifest(String ticker) throws IOException {
+        return getCacheManifest(new File(dataCacheDirectory, ticker));
+    }
+
+    /**
+     * Gets the {@link CacheManifest} of a data cache directory, opening it on first use.
+     *
+     * @param directory the directory
+     *
+     * @return the cache manifest
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private CacheManifest getCacheManifest(File directory) throws IOException {
+        CacheManifest cacheManifest = cacheManifests.get(directory);
+        if (cacheManifest == null) {
+            synchronized (cacheManifests) {
+                cacheManifest = cacheManifests.get(directory);
+                if (cacheManifest == null) {
+                    cacheManifest = CacheManifest.open(directory);
+                    cacheManifests.put(directory, cacheManifest);
+                }
+            }
+        }
+        return cacheManifest;
+    }
+
+    /**
+     * Verifies the {@link CacheManifest}s of every ticker in the data cache against their files. See {@link
+     * CacheManifest#verify(boolean, boolean)}.
+     *
+     * @param verifyChecksums true to verify the checksum of every file (which reads every file)
+     * @param repair          true to repair the manifests and delete corrupt files so that they are fetched again
+     *
+     * @return the cache verification
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public CacheVerification verifyDataCache(boolean verifyChecksums, boolean repair) throws IOException {
+        CacheVerification cacheVerification = new CacheVerification();
+        for (File tickerDirectory : listTickerDirectories()) {
+            cacheVerification.add(getCacheManifest(tickerDirectory).verify(verifyChecksums, repair));
+        }
+        return cacheVerification;
+    }
+
+    /**
+     * Rebuilds the {@link CacheManifest}s of every ticker in the data cache from their files. See {@link
+     * CacheManifest#rebuild(boolean)}.
+     *
+     * @param computeChecksums true to compute the checksum of every file (which reads every file)
+     *
+     * @return the number of indexed files
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public int rebuildCacheManifests(boolean computeChecksums) throws IOException {
+        int indexedCount = 0;
+        for (File tickerDirectory : listTickerDirectories()) {
+            CacheManifest cacheManifest = getCacheManifest(tickerDirectory);
+            cacheManifest.rebuild(computeChecksums);
+            indexedCount += cacheManifest.size();
+        }
+        return indexedCount;
+    }
+
+    /**
+     * Rewrites every cached segment file that isn't compressed as {@link #isCacheCompressed()} (e.g. to compress an
+     * existing data cache after enabling {@link #setCacheCompressed(boolean)}).
+     *
+     * @return the number of rewritten files
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public int recompressDataCache() throws IOException {
+        int rewrittenCount = 0;
+        for (File tickerDirectory : listTickerDirectories()) {
+            CacheManifest cacheManifest = getCacheManifest(tickerDirectory);
+            for (CacheManifestEntry entry : new ArrayList<>(cacheManifest.getEntries())) {
+                File file = new File(tickerDirectory, entry.getFileName());
+                Segment segment = Segment.read(file);
+                if (segment.isCompressed() != cacheCompressed) {
+                    writeSegment(SegmentWriter.fromSegment(segment), file);
+                    rewrittenCount++;
+                }
+            }
+            LOGGER.info("Recompressed the data cache of {}", tickerDirectory.getName());
+        }
+        return rewrittenCount;
+    }
+
+    /**
+     * Lists the ticker directories of the data cache.
+     *
+     * @return the ticker directories
+     */
+    private File[] listTickerDirectories() {
+        File[] tickerDirectories = dataCacheDirectory.listFiles(File::isDirectory);
+        return tickerDirectories == null ? new File[0] : tickerDirectories;
+    }
+
+    /**
+     * Reads a cached segment file via the current {@link #getSegmentLoader()}. The read is timed as {@link
+     * MetricType#SEGMENT_READ} if {@link #getMetrics()} is enabled.
+     *
+     * @param file the file
+     *
+     * @return the segment
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public Segment readSegment(File file) throws IOException {
+        if (!metrics.isEnabled()) {
+            return segmentLoader.load(file);
+        }
+
+        long startNanos = System.nanoTime();
+        Segment segment = segmentLoader.load(file);
+        metrics.lap(MetricType.SEGMENT_READ, startNanos);
+        return segment;
+    }
+
+    /**
+     * Reads the part of a cached segment file that holds a time range via the current {@link #getSegmentLoader()} (see
+     * {@link SegmentLoader#load(File, long, long)}). The read is timed as {@link MetricType#SEGMENT_READ} if {@link
+     * #getMetrics()} is enabled.
+     *
+     * @param file          the file
+     * @param fromTimestamp the from timestamp (epoch nanoseconds, inclusive)
+     * @param toTimestamp   the to timestamp (epoch nanoseconds, exclusive)
+     *
+     * @return the segment
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public Segment readSegment(File file, long fromTimestamp, long toTimestamp) throws IOException {
+        if (!metrics.isEnabled()) {
+            return segmentLoader.load(file, fromTimestamp, toTimestamp);
+        }
+
+        long startNanos = System.nanoTime();
+        Segment segment = segmentLoader.load(file, fromTimestamp, toTimestamp);
+        metrics.lap(MetricType.SEGMENT_READ, startNanos);
+        return segment;
+    }
+
+    /**
+     * Reads a cached segment file from disk. This will memory-map the file if {@link #isMemoryMapped()} is true,
+     * otherwise the file is read onto the heap. This is the default {@link SegmentLoader}.
+     *
+     * @param file the file
+     *
+     * @return the segment
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public Segment readSegmentFile(File file) throws IOException {
+        return memoryMapped ? Segment.map(file) : Segment.read(file);
+    }
+
+    /**
+     * Reads the part of a cached segment file that holds a time range from disk. If {@link #isMemoryMapped()} is true,
+     * the whole file is memory-mapped since only the pages that are read are loaded anyway, otherwise only the blocks
+     * that hold the time range are read onto the heap (see {@link Segment#read(File, long, long)}).
+     *
+     * @param file          the file
+     * @param fromTimestamp the from timestamp (epoch nanoseconds, inclusive)
+     * @param toTimestamp   the to timestamp (epoch nanoseconds, exclusive)
+     *
+     * @return the segment
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public Segment readSegmentFile(File file, long fromTimestamp, long toTimestamp) throws IOException {
+        return memoryMapped ? Segment.map(file) : Segment.read(file, fromTimestamp, toTimestamp);
+    }
+
+    /**
+     * Fetches the data of a {@link #getDataFile} entry via {@link #getDataFetcher()} and writes it to the data cache.
+     * The fetch is timed as {@link MetricType#DATA_FETCH} if {@link #getMetrics()} is enabled. Data that can't be
+     * fetched is never skipped: the {@link IOException} is thrown instead. Data that isn't final yet (see {@link
+     * #isFinal(LocalDate, AggregateUpdateType)}) is returned without being cached.
+     *
+     * @param ticker              the ticker
+     * @param date                the date
+     * @param aggregateUpdateType the aggregate update type (null for trades and quotes)
+     * @param segmentType         the segment type
+     *
+     * @return the fetched segment
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public Segment fetchSegment(String ticker, LocalDate date, AggregateUpdateType aggregateUpdateType,
+            SegmentType segmentType) throws IOException {
+        boolean metricsEnabled = metrics.isEnabled();
+        long startNanos = metricsEnabled ? System.nanoTime() : 0;
+
+        DataFetcher dataFetcher = this.dataFetcher;
+        if (dataFetcher == null) {
+            throw new IOException(ticker + " " + segmentType + " for " + date + " is not cached and there is no " +
+                    "data fetcher to fetch it with!");
+        }
+
+        SegmentWriter segmentWriter;
+        try {
+            segmentWriter = dataFetcher.fetch(ticker, date, aggregateUpdateType, segmentType);
+            if (isFinal(date, aggregateUpdateType)) {
+                writeSegment(segmentWriter, getDataFile(ticker, date, aggregateUpdateType,
+                        segmentType.getFileExtension()));
+            } else {
+                LOGGER.debug("Not caching {} {} for {} since it isn't final yet", ticker, segmentType, date);
+            }
+        } catch (IOException | RuntimeException exception) {
+            if (metricsEnabled) {
+                metrics.increment(MetricCounter.FETCH_FAILURES);
+            }
+            throw exception;
+        }
+
+        if (metricsEnabled) {
+            metrics.lap(MetricType.DATA_FETCH, startNanos);
+        }
+        return segmentWriter.toSegment();
+    }
+
+    /**
+     * Returns true if the data of a {@link #getDataFile} entry is final, i.e. every date it covers is before the
+     * current New York date. The data of the current date is still partial and the data of future dates is empty, so
+     * neither may be cached since cached data is never fetched again.
+     *
+     * @param date                the date
+     * @param aggregateUpdateType the aggregate update type (null for trades and quotes)
+     *
+     * @return the boolean
+     */
+    public static boolean isFinal(LocalDate date, AggregateUpdateType aggregateUpdateType) {
+        LocalDate nextDate = aggregateUpdateType == null ? date.plusDays(1) :
+                             TimeUtil.getNextAggregateDate(aggregateUpdateType, date);
+        return !nextDate.isAfter(LocalDate.now(TimeUtil.NEW_YORK_ZONE_ID));
+    }
+
+    /**
+     * Prefetches every data file of the tickers and ticker update types from a date range that isn't cached yet from
+     * Polygon with a {@link DataPrefetcher} using its default threads and retries. See {@link
+     * DataPrefetcher#prefetch(Collection, LocalDate, LocalDate, TickerUpdateType...)}.
+     *
+     * @param tickers           the tickers
+     * @param from              the from (inclusive)
+     * @param to                the to (exclusive)
+     * @param requestsPerSecond the maximum Polygon requests per second
+     * @param tickerUpdateTypes the ticker update types
+     *
+     * @return the prefetch result
+     *
+     * @throws InterruptedException thrown if interrupted while prefetching
+     */
+    public PrefetchResult prefetch(Collection<String> tickers, LocalDate from, LocalDate to,
+            double requestsPerSecond, TickerUpdateType... tickerUpdateTypes) throws InterruptedException {
+        DataFetcher rateLimitedDataFetcher = new PolygonDataFetcher(polygonAPI,
+                new TokenBucketRateLimiter(requestsPerSecond, Math.max(1, (int) requestsPerSecond)));
+        return new DataPrefetcher(this, rateLimitedDataFetcher).prefetch(tickers, from, to, tickerUpdateTypes);
+    }
+
+    /**
+     * Converts all legacy JSON data cache files into binary {@link Segment} files. See {@link
+     * JsonSegmentConverter#convertDataCache(File, boolean)}.
+     *
+     * @param deleteJson true to delete the JSON files after a successful conversion
+     *
+     * @return the number of converted files
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public int convertJsonDataCache(boolean deleteJson) throws IOException {
+        return JsonSegmentConverter.convertDataCache(dataCacheDirectory, deleteJson);
+    }
+
+    /**
+     * Returns true if cached segments are memory-mapped instead of read onto the heap. Memory-mapped segments are read
+     * with constant heap usage and their pages are shared between concurrent backtests via the OS page cache.
+     *
+     * @return the boolean
+     */
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * Sets whether cached segments are memory-mapped. See {@link #isMemoryMapped()}.
+     *
+     * @param memoryMapped the memory mapped
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    /**
+     * Returns true if segments are compressed when they are written to the data cache. See {@link
+     * SegmentWriter#setCompressed(boolean)}. Compressed and uncompressed segment files can be mixed in the data
+     * cache.
+     *
+     * @return the boolean
+     */
+    public boolean isCacheCompressed() {
+        return cacheCompressed;
+    }
+
+    /**
+     * Sets whether segments are compressed when they are written to the data cache. See {@link #isCacheCompressed()}.
+     *
+     * @param cacheCompressed the cache compressed
+     */
+    public void setCacheCompressed(boolean cacheCompressed) {
+        this.cacheCompressed = cacheCompressed;
+    }
+
+    /**
+     * Gets segment loader.
+     *
+     * @return the segment loader
+     */
+    public SegmentLoader getSegmentLoader() {
+        return segmentLoader;
+    }
+
+    /**
+     * Sets the segment loader used by {@link #readSegment(File)} (e.g. a {@link SegmentCache} to share decoded segments
+     * between backtests).
+     *
+     * @param segmentLoader the segment loader (null for {@link #readSegmentFile(File)} and {@link
+     *                      #readSegmentFile(File, long, long)})
+     */
+    public void setSegmentLoader(SegmentLoader segmentLoader) {
+        this.segmentLoader = segmentLoader == null ? fileSegmentLoader : segmentLoader;
+    }
+
+    /**
+     * Gets data fetcher.
+     *
+     * @return the data fetcher
+     */
+    public DataFetcher getDataFetcher() {
+        return dataFetcher;
+    }
+
+    /**
+     * Sets the data fetcher used to fetch data that isn't cached yet.
+     *
+     * @param dataFetcher the data fetcher (null to fail on data that isn't cached)
+     */
+    public void setDataFetcher(DataFetcher dataFetcher) {
+        this.dataFetcher = dataFetcher;
+    }
+
+    /**
+     * Gets calendar fetcher.
+     *
+     * @return the calendar fetcher
+     */
+    public CalendarFetcher getCalendarFetcher() {
+        return calendarFetcher;
+    }
+
+    /**
+     * Sets the calendar fetcher used to fetch the calendar when it isn't cached yet (an {@link AlpacaCalendarFetcher}
+     * by default if there is an {@link AlpacaAPI}).
+     *
+     * @param calendarFetcher the calendar fetcher (null to only use the cached calendar)
+     */
+    public void setCalendarFetcher(CalendarFetcher calendarFetcher) {
+        this.calendarFetcher = calendarFetcher;
+    }
+
+    /**
+     * Gets calendar cache.
+     *
+     * @return the calendar cache
+     */
+    public CalendarCache getCalendarCache() {
+        return calendarCache;
+    }
+
+    /**
+     * Gets the number of days that data iterators load ahead of their consumer.
+     *
+     * @return the read ahead days
+     */
+    public int getReadAheadDays() {
+        return readAheadDays;
+    }
+
+    /**
+     * Sets the number of days that data iterators load ahead of their consumer on {@link
+     * #getReadAheadExecutorService()}. This bounds the number of segments per iterator that are held in memory before
+     * they are consumed.
+     *
+     * @param readAheadDays the read ahead days (0 to load days on the consumer thread)
+     */
+    public void setReadAheadDays(int readAheadDays) {
+        this.readAheadDays = readAheadDays;
+    }
+
+    /**
+     * Gets the metrics of the data operations of this backtest data (fetches, segment reads, and the time that data
+     * iterators wait on segments). These are disabled by default and are shared by every backtest that uses this
+     * backtest data.
+     *
+     * @return the metrics
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Gets the executor service that data iterators use to load days ahead of their consumer. It is created on first
+     * use with one daemon thread per available processor.
+     *
+     * @return the read ahead executor service
+     */
+    public synchronized ExecutorService getReadAheadExecutorService() {
+        if (readAheadExecutorService == null) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            readAheadExecutorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "BacktestData-ReadAhead-" +
+                                threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+        return readAheadExecutorService;
+    }
+
     /**
      * Gets alpaca api.
      *
@@ -168,4 +1023,32 @@ public class BacktestData {
     public File getDataCacheDirectory() {
         return dataCacheDirectory;
     }
+
+    /**
+     * Gets the directory of the {@link BacktestRecord} files.
+     *
+     * @return the backtest records directory
+     */
+    public File getBacktestRecordsDirectory() {
+        return backtestRecordsDirectory;
+    }
+
+    /**
+     * Gets the directory of the {@link net.jacobpeterson.checkpoint.BacktestCheckpoint} files.
+     *
+     * @return the checkpoints directory
+     */
+    public File getCheckpointsDirectory() {
+        return checkpointsDirectory;
+    }
+
+    /**
+     * Opens the summaries of all the {@link BacktestRecord}s in {@link #getBacktestRecordsDirectory()}. See {@link
+     * BacktestRecord#list(File)}.
+     *
+     * @return the backtest records ordered by creation time
+     */
+    public ArrayList<BacktestRecord> listBacktestRecords() {
+        return BacktestRecord.list(backtestRecordsDirectory);
+    }
 }
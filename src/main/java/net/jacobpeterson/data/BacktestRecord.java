@@ -1,7 +1,825 @@
 package net.jacobpeterson.data;
 
+import io.github.mainstringargs.alpaca.enums.OrderSide;
+import io.github.mainstringargs.alpaca.enums.OrderTimeInForce;
+import io.github.mainstringargs.alpaca.enums.OrderType;
+import net.jacobpeterson.broker.order.OrderEvent;
+import net.jacobpeterson.data.record.BacktestRecorder;
+import net.jacobpeterson.data.record.EquityCurve;
+import net.jacobpeterson.data.record.RecordFormat;
+import net.jacobpeterson.data.record.RecordedAnnotation;
+import net.jacobpeterson.data.record.RecordedOrderEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.CRC32;
+
 /**
  * The type Backtest record. Used to record/index a backtest.
+ * <p>
+ * A backtest record is a record file that was written by a {@link BacktestRecorder} (see {@link RecordFormat}).
+ * {@link #open(File)} only reads the header and the summary in the footer, so {@link #list(File)} can compare
+ * thousands of backtests by their summaries. The block index is read the first time records are read, and only the
+ * blocks that overlap the requested time range and have records of the requested type are read (contiguous blocks
+ * with one read), so the equity curve or the fills of a time window load without replaying any market data.
+ * <p>
+ * A record file that wasn't closed (e.g. the JVM crashed during the backtest) has no footer, so its blocks are scanned
+ * when it's opened to rebuild the index and the summary. The blocks after the last complete block are ignored.
+ * <p>
+ * This is thread safe.
  */
 public class BacktestRecord {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final OrderEvent[] ORDER_EVENTS = OrderEvent.values();
+    private static final OrderSide[] ORDER_SIDES = OrderSide.values();
+    private static final OrderType[] ORDER_TYPES = OrderType.values();
+    private static final OrderTimeInForce[] ORDER_TIME_IN_FORCES = OrderTimeInForce.values();
+    private static final int MAX_READ_LENGTH = 16 * 1024 * 1024;
+
+    private final File file;
+    private String name;
+    private long createdMillis;
+    private long fromTimestamp;
+    private long toTimestamp;
+    private double initialCash;
+    private long headerLength;
+    private long footerOffset;
+
+    // The summary
+    private long orderEventCount;
+    private long fillCount;
+    private long equitySampleCount;
+    private long annotationCount;
+    private long firstTimestamp;
+    private long lastTimestamp;
+    private double finalEquity;
+    private double finalCash;
+
+    // The block index (null until it is loaded)
+    private String[] tickers;
+    private int blockCount;
+    private long[] blockOffsets;
+    private int[] blockPayloadLengths;
+    private int[] blockOrderEventCounts;
+    private int[] blockEquitySampleCounts;
+    private int[] blockAnnotationCounts;
+    private long[] blockFirstTimestamps;
+    private long[] blockLastTimestamps;
+
+    /**
+     * Instantiates a new Backtest record.
+     *
+     * @param file the file
+     */
+    private BacktestRecord(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens a record file by reading its header and summary (or by scanning its blocks if it wasn't closed).
+     *
+     * @param file the file
+     *
+     * @return the backtest record
+     *
+     * @throws IOException thrown for {@link IOException}s or if the file isn't a valid record file
+     */
+    public static BacktestRecord open(File file) throws IOException {
+        BacktestRecord backtestRecord = new BacktestRecord(file);
+        try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            backtestRecord.readHeader(fileChannel);
+            if (backtestRecord.footerOffset == 0) {
+                LOGGER.warn("{} wasn't closed, scanning its blocks", file);
+                backtestRecord.scan(fileChannel);
+            } else {
+                backtestRecord.readSummary(read(fileChannel, backtestRecord.footerOffset,
+                        Integer.BYTES + RecordFormat.SUMMARY_SIZE));
+            }
+        }
+        return backtestRecord;
+    }
+
+    /**
+     * Opens every record file in a directory (see {@link #open(File)}). Files that can't be opened are logged and
+     * skipped.
+     *
+     * @param directory the directory
+     *
+     * @return the backtest records ordered by creation time
+     */
+    public static ArrayList<BacktestRecord> list(File directory) {
+        ArrayList<BacktestRecord> backtestRecords = new ArrayList<>();
+        File[] files = directory.listFiles((dir, fileName) -> fileName.endsWith("." + RecordFormat.FILE_EXTENSION));
+        if (files == null) {
+            return backtestRecords;
+        }
+
+        for (File file : files) {
+            try {
+                backtestRecords.add(open(file));
+            } catch (IOException exception) {
+                LOGGER.warn("Could not open the backtest record {}", file, exception);
+            }
+        }
+        backtestRecords.sort(Comparator.comparingLong(BacktestRecord::getCreatedMillis));
+        return backtestRecords;
+    }
+
+    /**
+     * Reads the header.
+     *
+     * @param fileChannel the file channel
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private void readHeader(FileChannel fileChannel) throws IOException {
+        if (fileChannel.size() < RecordFormat.HEADER_SIZE) {
+            throw new IOException(file + " is not a backtest record");
+        }
+
+        ByteBuffer header = read(fileChannel, 0, RecordFormat.HEADER_SIZE);
+        if (header.getInt() != RecordFormat.MAGIC) {
+            throw new IOException(file + " is not a backtest record");
+        }
+        short version = header.getShort();
+        if (version != RecordFormat.VERSION) {
+            throw new IOException(file + " has an unsupported version: " + version);
+        }
+        int nameLength = header.getShort() & 0xFFFF;
+        createdMillis = header.getLong();
+        fromTimestamp = header.getLong();
+        toTimestamp = header.getLong();
+        initialCash = header.getDouble();
+        footerOffset = header.getLong();
+
+        ByteBuffer nameBuffer = read(fileChannel, RecordFormat.HEADER_SIZE, nameLength);
+        name = new String(nameBuffer.array(), 0, nameLength, StandardCharsets.UTF_8);
+        headerLength = RecordFormat.HEADER_SIZE + nameLength;
+        if (footerOffset != 0 && (footerOffset < headerLength || footerOffset > fileChannel.size())) {
+            throw new IOException(file + " has an invalid footer offset: " + footerOffset);
+        }
+    }
+
+    /**
+     * Reads the summary of the footer.
+     *
+     * @param footer the footer positioned at its length
+     */
+    private void readSummary(ByteBuffer footer) {
+        footer.getInt(); // The footer length
+        orderEventCount = footer.getLong();
+        fillCount = footer.getLong();
+        equitySampleCount = footer.getLong();
+        annotationCount = footer.getLong();
+        firstTimestamp = footer.getLong();
+        lastTimestamp = footer.getLong();
+        finalEquity = footer.getDouble();
+        finalCash = footer.getDouble();
+    }
+
+    /**
+     * Loads the ticker table and the block index from the footer if they haven't been loaded yet.
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private synchronized void loadIndex() throws IOException {
+        if (tickers != null) {
+            return;
+        }
+
+        try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long footerSize = fileChannel.size() - footerOffset;
+            if (footerSize < 2 * Integer.BYTES + RecordFormat.SUMMARY_SIZE || footerSize > Integer.MAX_VALUE) {
+                throw new IOException(file + " has a truncated footer");
+            }
+
+            ByteBuffer footer = read(fileChannel, footerOffset, (int) footerSize);
+            int footerLength = footer.getInt(0);
+            if (footerLength != footerSize - 2 * Integer.BYTES) {
+                throw new IOException(file + " has a truncated footer");
+            }
+            CRC32 crc32 = new CRC32();
+            crc32.update(footer.array(), Integer.BYTES, footerLength);
+            if ((int) crc32.getValue() != footer.getInt(Integer.BYTES + footerLength)) {
+                throw new IOException(file + " has a corrupt footer");
+            }
+
+            readSummary(footer);
+            String[] footerTickers = new String[footer.getInt()];
+            for (int tickerID = 0; tickerID < footerTickers.length; tickerID++) {
+                footerTickers[tickerID] = readString(footer);
+            }
+
+            allocateIndex(footer.getInt());
+            for (int block = 0; block < blockOffsets.length; block++) {
+                addBlock(footer.getLong(), footer.getInt(), footer.getInt(), footer.getInt(), footer.getInt(),
+                        footer.getLong(), footer.getLong());
+            }
+            tickers = footerTickers;
+        }
+    }
+
+    /**
+     * Scans the blocks of a record file that wasn't closed to rebuild its block index and summary.
+     *
+     * @param fileChannel the file channel
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private void scan(FileChannel fileChannel) throws IOException {
+        ArrayList<String> scannedTickers = new ArrayList<>();
+        allocateIndex(64);
+        firstTimestamp = Long.MAX_VALUE;
+        lastTimestamp = Long.MIN_VALUE;
+        finalEquity = Double.NaN;
+        finalCash = Double.NaN;
+
+        long fileSize = fileChannel.size();
+        long blockOffset = headerLength;
+        CRC32 crc32 = new CRC32();
+        while (fileSize - blockOffset >= RecordFormat.BLOCK_HEADER_SIZE) {
+            ByteBuffer blockHeader = read(fileChannel, blockOffset, RecordFormat.BLOCK_HEADER_SIZE);
+            int payloadLength = blockHeader.getInt();
+            if (payloadLength <= 0 || payloadLength > fileSize - blockOffset - RecordFormat.BLOCK_HEADER_SIZE) {
+                break;
+            }
+            ByteBuffer payload = read(fileChannel, blockOffset + RecordFormat.BLOCK_HEADER_SIZE, payloadLength);
+            crc32.reset();
+            crc32.update(payload.array(), 0, payloadLength);
+            if ((int) crc32.getValue() != blockHeader.getInt(RecordFormat.BLOCK_HEADER_SIZE - Integer.BYTES)) {
+                break;
+            }
+
+            int blockOrderEventCount = blockHeader.getInt();
+            int blockEquitySampleCount = blockHeader.getInt();
+            int blockAnnotationCount = blockHeader.getInt();
+            long blockFirstTimestamp = blockHeader.getLong();
+            long blockLastTimestamp = blockHeader.getLong();
+            addBlock(blockOffset, payloadLength, blockOrderEventCount, blockEquitySampleCount, blockAnnotationCount,
+                    blockFirstTimestamp, blockLastTimestamp);
+            orderEventCount += blockOrderEventCount;
+            equitySampleCount += blockEquitySampleCount;
+            annotationCount += blockAnnotationCount;
+            firstTimestamp = Math.min(firstTimestamp, blockFirstTimestamp);
+            lastTimestamp = Math.max(lastTimestamp, blockLastTimestamp);
+
+            decodeBlock(payload, Long.MIN_VALUE, Long.MAX_VALUE, (byte) 0, (recordType, timestamp, body) -> {
+                if (recordType == RecordFormat.TICKER_RECORD) {
+                    body.getInt(); // Ticker IDs are sequential
+                    scannedTickers.add(readString(body));
+                } else if (recordType == RecordFormat.ORDER_EVENT_RECORD) {
+                    int position = body.position();
+                    if (ORDER_EVENTS[body.get(position + Integer.BYTES)] == OrderEvent.FILL) {
+                        fillCount++;
+                    }
+                    skipBody(recordType, body);
+                } else if (recordType == RecordFormat.EQUITY_SAMPLE_RECORD) {
+                    finalEquity = body.getDouble();
+                    finalCash = body.getDouble();
+                } else {
+                    skipBody(recordType, body);
+                }
+            });
+            blockOffset += RecordFormat.BLOCK_HEADER_SIZE + payloadLength;
+        }
+
+        if (blockOffset < fileSize) {
+            LOGGER.warn("Ignoring the incomplete tail of {} at {} of {} bytes", file, blockOffset, fileSize);
+        }
+        if (blockCount == 0) {
+            firstTimestamp = 0;
+            lastTimestamp = 0;
+        }
+        tickers = scannedTickers.toArray(new String[0]);
+    }
+
+    /**
+     * Reads the equity curve of the whole backtest.
+     *
+     * @return the equity curve
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public EquityCurve readEquityCurve() throws IOException {
+        return readEquityCurve(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads the equity samples within a time range. Since samples are only recorded when the equity or cash changes,
+     * use {@link EquityCurve#getEquityAt(long)} on the whole curve to get the equity at an exact time.
+     *
+     * @param fromTimestamp the from timestamp (epoch nanoseconds, inclusive)
+     * @param toTimestamp   the to timestamp (epoch nanoseconds, exclusive)
+     *
+     * @return the equity curve
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public EquityCurve readEquityCurve(long fromTimestamp, long toTimestamp) throws IOException {
+        EquityCurve equityCurve = new EquityCurve();
+        readRecords(fromTimestamp, toTimestamp, RecordFormat.EQUITY_SAMPLE_RECORD,
+                (recordType, timestamp, body) -> equityCurve.add(timestamp, body.getDouble(), body.getDouble()));
+        return equityCurve;
+    }
+
+    /**
+     * Reads the order events within a time range.
+     *
+     * @param fromTimestamp the from timestamp (epoch nanoseconds, inclusive)
+     * @param toTimestamp   the to timestamp (epoch nanoseconds, exclusive)
+     *
+     * @return the recorded order events
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public ArrayList<RecordedOrderEvent> readOrderEvents(long fromTimestamp, long toTimestamp) throws IOException {
+        ArrayList<RecordedOrderEvent> recordedOrderEvents = new ArrayList<>();
+        readRecords(fromTimestamp, toTimestamp, RecordFormat.ORDER_EVENT_RECORD,
+                (recordType, timestamp, body) -> recordedOrderEvents.add(readOrderEvent(timestamp, body)));
+        return recordedOrderEvents;
+    }
+
+    /**
+     * Reads the fills (the {@link OrderEvent#FILL} order events) within a time range.
+     *
+     * @param fromTimestamp the from timestamp (epoch nanoseconds, inclusive)
+     * @param toTimestamp   the to timestamp (epoch nanoseconds, exclusive)
+     *
+     * @return the recorded fills
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public ArrayList<RecordedOrderEvent> readFills(long fromTimestamp, long toTimestamp) throws IOException {
+        ArrayList<RecordedOrderEvent> recordedFills = readOrderEvents(fromTimestamp, toTimestamp);
+        recordedFills.removeIf(recordedOrderEvent -> recordedOrderEvent.getOrderEvent() != OrderEvent.FILL);
+        return recordedFills;
+    }
+
+    /**
+     * Reads the annotations within a time range.
+     *
+     * @param fromTimestamp the from timestamp (epoch nanoseconds, inclusive)
+     * @param toTimestamp   the to timestamp (epoch nanoseconds, exclusive)
+     *
+     * @return the recorded annotations
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public ArrayList<RecordedAnnotation> readAnnotations(long fromTimestamp, long toTimestamp) throws IOException {
+        ArrayList<RecordedAnnotation> recordedAnnotations = new ArrayList<>();
+        readRecords(fromTimestamp, toTimestamp, RecordFormat.ANNOTATION_RECORD, (recordType, timestamp, body) -> {
+            int tickerID = body.getInt();
+            recordedAnnotations.add(new RecordedAnnotation(timestamp, getTicker(tickerID), readString(body)));
+        });
+        return recordedAnnotations;
+    }
+
+    /**
+     * Reads the records of a type within a time range from the blocks that can contain them. Contiguous blocks are
+     * read with a single read.
+     *
+     * @param fromTimestamp  the from timestamp (inclusive)
+     * @param toTimestamp    the to timestamp (exclusive)
+     * @param recordType     the record type
+     * @param recordConsumer the record consumer
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private void readRecords(long fromTimestamp, long toTimestamp, byte recordType, RecordConsumer recordConsumer)
+            throws IOException {
+        loadIndex();
+
+        try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            CRC32 crc32 = new CRC32();
+            int block = 0;
+            while (block < blockCount) {
+                if (!isBlockSelected(block, fromTimestamp, toTimestamp, recordType)) {
+                    block++;
+                    continue;
+                }
+
+                int endBlock = block + 1;
+                long readLength = RecordFormat.BLOCK_HEADER_SIZE + blockPayloadLengths[block];
+                while (endBlock < blockCount && isBlockSelected(endBlock, fromTimestamp, toTimestamp, recordType) &&
+                        blockOffsets[endBlock] == blockOffsets[block] + readLength &&
+                        readLength + RecordFormat.BLOCK_HEADER_SIZE + blockPayloadLengths[endBlock] <=
+                                MAX_READ_LENGTH) {
+                    readLength += RecordFormat.BLOCK_HEADER_SIZE + blockPayloadLengths[endBlock];
+                    endBlock++;
+                }
+
+                ByteBuffer blocks = read(fileChannel, blockOffsets[block], (int) readLength);
+                for (; block < endBlock; block++) {
+                    int payloadLength = blockPayloadLengths[block];
+                    int payloadOffset = blocks.position() + RecordFormat.BLOCK_HEADER_SIZE;
+                    crc32.reset();
+                    crc32.update(blocks.array(), payloadOffset, payloadLength);
+                    if (blocks.getInt(blocks.position()) != payloadLength ||
+                            (int) crc32.getValue() != blocks.getInt(payloadOffset - Integer.BYTES)) {
+                        throw new IOException(file + " has a corrupt block at " + blockOffsets[block]);
+                    }
+
+                    blocks.position(payloadOffset);
+                    ByteBuffer payload = blocks.slice().order(RecordFormat.BYTE_ORDER);
+                    payload.limit(payloadLength);
+                    decodeBlock(payload, fromTimestamp, toTimestamp, recordType, recordConsumer);
+                    blocks.position(payloadOffset + payloadLength);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if a block overlaps a time range and has records of a type.
+     *
+     * @param block         the block
+     * @param fromTimestamp the from timestamp (inclusive)
+     * @param toTimestamp   the to timestamp (exclusive)
+     * @param recordType    the record type
+     *
+     * @return the boolean
+     */
+    private boolean isBlockSelected(int block, long fromTimestamp, long toTimestamp, byte recordType) {
+        int recordCount = recordType == RecordFormat.ORDER_EVENT_RECORD ? blockOrderEventCounts[block] :
+                          recordType == RecordFormat.EQUITY_SAMPLE_RECORD ? blockEquitySampleCounts[block] :
+                          blockAnnotationCounts[block];
+        return recordCount > 0 && blockLastTimestamps[block] >= fromTimestamp &&
+                blockFirstTimestamps[block] < toTimestamp;
+    }
+
+    /**
+     * Decodes the records of a block payload, passing the records of a type within a time range to a consumer and
+     * skipping the others.
+     *
+     * @param payload        the payload
+     * @param fromTimestamp  the from timestamp (inclusive)
+     * @param toTimestamp    the to timestamp (exclusive)
+     * @param recordType     the record type (0 for every record type)
+     * @param recordConsumer the record consumer
+     *
+     * @throws IOException thrown if a record is malformed
+     */
+    private void decodeBlock(ByteBuffer payload, long fromTimestamp, long toTimestamp, byte recordType,
+            RecordConsumer recordConsumer) throws IOException {
+        try {
+            while (payload.hasRemaining()) {
+                byte type = payload.get();
+                long timestamp = payload.getLong();
+                if ((recordType == 0 || type == recordType) && timestamp >= fromTimestamp &&
+                        timestamp < toTimestamp) {
+                    recordConsumer.accept(type, timestamp, payload);
+                } else {
+                    skipBody(type, payload);
+                }
+            }
+        } catch (RuntimeException exception) { // Buffer underflows, unknown ordinals, etc.
+            throw new IOException(file + " has a malformed record", exception);
+        }
+    }
+
+    /**
+     * Skips the body of a record.
+     *
+     * @param recordType the record type
+     * @param body       the body
+     */
+    private static void skipBody(byte recordType, ByteBuffer body) {
+        int position = body.position();
+        switch (recordType) {
+            case RecordFormat.TICKER_RECORD:
+            case RecordFormat.ANNOTATION_RECORD:
+                body.position(position + Integer.BYTES + Short.BYTES +
+                        (body.getShort(position + Integer.BYTES) & 0xFFFF));
+                break;
+            case RecordFormat.ORDER_EVENT_RECORD:
+                OrderEvent orderEvent = ORDER_EVENTS[body.get(position + Integer.BYTES)];
+                body.position(position + 2 * Integer.BYTES + 2 + (orderEvent == OrderEvent.NEW ?
+                        2 + Integer.BYTES + 2 * Double.BYTES : orderEvent == OrderEvent.FILL ?
+                        Integer.BYTES + Double.BYTES : 0));
+                break;
+            case RecordFormat.EQUITY_SAMPLE_RECORD:
+                body.position(position + 2 * Double.BYTES);
+                break;
+            default:
+                throw new IllegalStateException("Unknown record type: " + recordType);
+        }
+    }
+
+    /**
+     * Reads the body of an order event record.
+     *
+     * @param timestamp the timestamp
+     * @param body      the body
+     *
+     * @return the recorded order event
+     */
+    private RecordedOrderEvent readOrderEvent(long timestamp, ByteBuffer body) {
+        int orderID = body.getInt();
+        OrderEvent orderEvent = ORDER_EVENTS[body.get()];
+        String ticker = getTicker(body.getInt());
+        OrderSide orderSide = ORDER_SIDES[body.get()];
+        OrderType orderType = null;
+        OrderTimeInForce orderTimeInForce = null;
+        int quantity = 0;
+        double price = Double.NaN;
+        double limitPrice = Double.NaN;
+        double stopPrice = Double.NaN;
+        if (orderEvent == OrderEvent.NEW) {
+            orderType = ORDER_TYPES[body.get()];
+            orderTimeInForce = ORDER_TIME_IN_FORCES[body.get()];
+            quantity = body.getInt();
+            limitPrice = body.getDouble();
+            stopPrice = body.getDouble();
+        } else if (orderEvent == OrderEvent.FILL) {
+            quantity = body.getInt();
+            price = body.getDouble();
+        }
+        return new RecordedOrderEvent(timestamp, orderID, orderEvent, ticker, orderSide, orderType, orderTimeInForce,
+                quantity, price, limitPrice, stopPrice);
+    }
+
+    /**
+     * Gets the ticker of a ticker ID.
+     *
+     * @param tickerID the ticker ID
+     *
+     * @return the ticker (null for {@link RecordFormat#NO_TICKER_ID})
+     */
+    private String getTicker(int tickerID) {
+        return tickerID == RecordFormat.NO_TICKER_ID ? null : tickers[tickerID];
+    }
+
+    /**
+     * Allocates the block index columns.
+     *
+     * @param capacity the capacity
+     */
+    private void allocateIndex(int capacity) {
+        blockCount = 0;
+        blockOffsets = new long[capacity];
+        blockPayloadLengths = new int[capacity];
+        blockOrderEventCounts = new int[capacity];
+        blockEquitySampleCounts = new int[capacity];
+        blockAnnotationCounts = new int[capacity];
+        blockFirstTimestamps = new long[capacity];
+        blockLastTimestamps = new long[capacity];
+    }
+
+    /**
+     * Adds a block to the block index.
+     *
+     * @param blockOffset            the block offset
+     * @param payloadLength          the payload length
+     * @param blockOrderEventCount   the order event count
+     * @param blockEquitySampleCount the equity sample count
+     * @param blockAnnotationCount   the annotation count
+     * @param blockFirstTimestamp    the first timestamp
+     * @param blockLastTimestamp     the last timestamp
+     */
+    private void addBlock(long blockOffset, int payloadLength, int blockOrderEventCount, int blockEquitySampleCount,
+            int blockAnnotationCount, long blockFirstTimestamp, long blockLastTimestamp) {
+        if (blockCount == blockOffsets.length) {
+            int capacity = Math.max(1, blockCount * 2);
+            blockOffsets = Arrays.copyOf(blockOffsets, capacity);
+            blockPayloadLengths = Arrays.copyOf(blockPayloadLengths, capacity);
+            blockOrderEventCounts = Arrays.copyOf(blockOrderEventCounts, capacity);
+            blockEquitySampleCounts = Arrays.copyOf(blockEquitySampleCounts, capacity);
+            blockAnnotationCounts = Arrays.copyOf(blockAnnotationCounts, capacity);
+            blockFirstTimestamps = Arrays.copyOf(blockFirstTimestamps, capacity);
+            blockLastTimestamps = Arrays.copyOf(blockLastTimestamps, capacity);
+        }
+        blockOffsets[blockCount] = blockOffset;
+        blockPayloadLengths[blockCount] = payloadLength;
+        blockOrderEventCounts[blockCount] = blockOrderEventCount;
+        blockEquitySampleCounts[blockCount] = blockEquitySampleCount;
+        blockAnnotationCounts[blockCount] = blockAnnotationCount;
+        blockFirstTimestamps[blockCount] = blockFirstTimestamp;
+        blockLastTimestamps[blockCount] = blockLastTimestamp;
+        blockCount++;
+    }
+
+    /**
+     * Reads bytes at a position of a file.
+     *
+     * @param fileChannel the file channel
+     * @param position    the position
+     * @param length      the length
+     *
+     * @return the little-endian byte buffer (flipped)
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private static ByteBuffer read(FileChannel fileChannel, long position, int length) throws IOException {
+        ByteBuffer byteBuffer = ByteBuffer.allocate(length).order(RecordFormat.BYTE_ORDER);
+        while (byteBuffer.hasRemaining()) {
+            int readCount = fileChannel.read(byteBuffer, position + byteBuffer.position());
+            if (readCount < 0) {
+                throw new EOFException("Unexpected end of file at " + (position + byteBuffer.position()));
+            }
+        }
+        byteBuffer.flip();
+        return byteBuffer;
+    }
+
+    /**
+     * Reads a string that is prefixed by its unsigned short length.
+     *
+     * @param byteBuffer the byte buffer
+     *
+     * @return the string
+     */
+    private static String readString(ByteBuffer byteBuffer) {
+        byte[] bytes = new byte[byteBuffer.getShort() & 0xFFFF];
+        byteBuffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets file.
+     *
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the name of the backtest (e.g. the trading algorithm).
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the time at which the backtest was run.
+     *
+     * @return the created millis (epoch milliseconds)
+     */
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    /**
+     * Gets the from timestamp of the backtest.
+     *
+     * @return the from timestamp (epoch nanoseconds)
+     */
+    public long getFromTimestamp() {
+        return fromTimestamp;
+    }
+
+    /**
+     * Gets the to timestamp of the backtest.
+     *
+     * @return the to timestamp (epoch nanoseconds)
+     */
+    public long getToTimestamp() {
+        return toTimestamp;
+    }
+
+    /**
+     * Gets initial cash.
+     *
+     * @return the initial cash
+     */
+    public double getInitialCash() {
+        return initialCash;
+    }
+
+    /**
+     * Returns true if the record file was closed (it has a footer), false if it was recovered by scanning its blocks.
+     *
+     * @return the boolean
+     */
+    public boolean isComplete() {
+        return footerOffset != 0;
+    }
+
+    /**
+     * Gets order event count.
+     *
+     * @return the order event count
+     */
+    public long getOrderEventCount() {
+        return orderEventCount;
+    }
+
+    /**
+     * Gets fill count.
+     *
+     * @return the fill count
+     */
+    public long getFillCount() {
+        return fillCount;
+    }
+
+    /**
+     * Gets equity sample count.
+     *
+     * @return the equity sample count
+     */
+    public long getEquitySampleCount() {
+        return equitySampleCount;
+    }
+
+    /**
+     * Gets annotation count.
+     *
+     * @return the annotation count
+     */
+    public long getAnnotationCount() {
+        return annotationCount;
+    }
+
+    /**
+     * Gets the timestamp of the first record.
+     *
+     * @return the first timestamp (epoch nanoseconds, 0 if there are no records)
+     */
+    public long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    /**
+     * Gets the timestamp of the last record.
+     *
+     * @return the last timestamp (epoch nanoseconds, 0 if there are no records)
+     */
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Gets the equity of the last equity sample.
+     *
+     * @return the final equity (NaN if there are no equity samples)
+     */
+    public double getFinalEquity() {
+        return finalEquity;
+    }
+
+    /**
+     * Gets the cash of the last equity sample.
+     *
+     * @return the final cash (NaN if there are no equity samples)
+     */
+    public double getFinalCash() {
+        return finalCash;
+    }
+
+    /**
+     * Gets the total P&amp;L (final equity minus the initial cash).
+     *
+     * @return the profit loss (NaN if there are no equity samples)
+     */
+    public double getProfitLoss() {
+        return finalEquity - initialCash;
+    }
+
+    @Override
+    public String toString() {
+        return "BacktestRecord{" +
+                "file=" + file +
+                ", name='" + name + '\'' +
+                ", createdMillis=" + createdMillis +
+                ", fromTimestamp=" + fromTimestamp +
+                ", toTimestamp=" + toTimestamp +
+                ", initialCash=" + initialCash +
+                ", complete=" + isComplete() +
+                ", orderEventCount=" + orderEventCount +
+                ", fillCount=" + fillCount +
+                ", equitySampleCount=" + equitySampleCount +
+                ", annotationCount=" + annotationCount +
+                ", finalEquity=" + finalEquity +
+                '}';
+    }
+
+    /**
+     * A consumer of the records that are decoded from a block.
+     */
+    @FunctionalInterface
+    private interface RecordConsumer {
+
+        /**
+         * Accepts a record. The body must be read completely.
+         *
+         * @param recordType the record type
+         * @param timestamp  the timestamp
+         * @param body       the payload positioned at the body of the record
+         */
+        void accept(byte recordType, long timestamp, ByteBuffer body);
+    }
 }
@@ -0,0 +1,184 @@
+package net.jacobpeterson.data.bar;
+
+import net.jacobpeterson.algorithm.update.ticker.PriceUpdateType;
+import net.jacobpeterson.data.cursor.QuoteCursor;
+import net.jacobpeterson.data.cursor.TradeCursor;
+
+/**
+ * Builds custom bars of a {@link BarSpecification} from a time-ordered stream of trades or quotes in a single pass.
+ * Only the open bar is kept (a few primitives), so memory use is <code>O(1)</code> and nothing is allocated per trade
+ * or quote. Closed bars are passed to a {@link BarListener}.
+ * <p>
+ * A {@link BarType#TIME} bar is closed by the first trade or quote after its interval (or by {@link #flush()}), so
+ * intervals without any trades or quotes have no bar. Other bars are closed by the trade or quote that reaches their
+ * size, which is included in the bar (the overshoot isn't carried into the next bar).
+ * <p>
+ * This is not thread safe.
+ */
+public class BarBuilder {
+
+    private final BarSpecification barSpecification;
+    private final BarListener barListener;
+    private final BarType barType;
+    private final long size;
+    private boolean building;
+    private long timestamp;
+    private long closeTimestamp;
+    private double open;
+    private double high;
+    private double low;
+    private double close;
+    private double volume;
+    private double dollars;
+    private int count;
+
+    /**
+     * Instantiates a new Bar builder.
+     *
+     * @param barSpecification the bar specification
+     * @param barListener      the bar listener
+     */
+    public BarBuilder(BarSpecification barSpecification, BarListener barListener) {
+        this.barSpecification = barSpecification;
+        this.barListener = barListener;
+        this.barType = barSpecification.getBarType();
+        this.size = barSpecification.getSize();
+    }
+
+    /**
+     * Adds a trade.
+     *
+     * @param timestamp the timestamp (epoch nanoseconds)
+     * @param price     the price
+     * @param size      the size
+     *
+     * @throws IllegalStateException thrown if the bars aren't built from trades
+     */
+    public void onTrade(long timestamp, double price, int size) {
+        if (barSpecification.getPriceUpdateType() != PriceUpdateType.TRADE) {
+            throw new IllegalStateException("These bars are built from quotes!");
+        }
+        add(timestamp, price, size);
+    }
+
+    /**
+     * Adds the current trade of a {@link TradeCursor}.
+     *
+     * @param tradeCursor the trade cursor
+     */
+    public void onTrade(TradeCursor tradeCursor) {
+        onTrade(tradeCursor.getTimestamp(), tradeCursor.getPrice(), tradeCursor.getSize());
+    }
+
+    /**
+     * Adds a quote. The price of a quote is the midpoint of its bid and ask.
+     *
+     * @param timestamp the timestamp (epoch nanoseconds)
+     * @param bidPrice  the bid price
+     * @param askPrice  the ask price
+     *
+     * @throws IllegalStateException thrown if the bars aren't built from quotes
+     */
+    public void onQuote(long timestamp, double bidPrice, double askPrice) {
+        if (barSpecification.getPriceUpdateType() != PriceUpdateType.QUOTE) {
+            throw new IllegalStateException("These bars are built from trades!");
+        }
+        add(timestamp, (bidPrice + askPrice) / 2, 0);
+    }
+
+    /**
+     * Adds the current quote of a {@link QuoteCursor}.
+     *
+     * @param quoteCursor the quote cursor
+     */
+    public void onQuote(QuoteCursor quoteCursor) {
+        onQuote(quoteCursor.getTimestamp(), quoteCursor.getBidPrice(), quoteCursor.getAskPrice());
+    }
+
+    /**
+     * Adds a trade or quote to the open bar, closing it first if the trade or quote is past its time interval and
+     * closing it afterwards if the trade or quote reaches its size.
+     *
+     * @param timestamp the timestamp
+     * @param price     the price
+     * @param size      the size
+     */
+    private void add(long timestamp, double price, int size) {
+        if (building && barType == BarType.TIME && timestamp >= closeTimestamp) {
+            flush();
+        }
+
+        if (!building) {
+            building = true;
+            if (barType == BarType.TIME) {
+                this.timestamp = timestamp - Math.floorMod(timestamp, this.size);
+                this.closeTimestamp = this.timestamp + this.size;
+            } else {
+                this.timestamp = timestamp;
+            }
+            open = price;
+            high = price;
+            low = price;
+            volume = 0;
+            dollars = 0;
+            count = 0;
+        } else {
+            if (price > high) {
+                high = price;
+            }
+            if (price < low) {
+                low = price;
+            }
+        }
+        if (barType != BarType.TIME) {
+            closeTimestamp = timestamp;
+        }
+        close = price;
+        volume += size;
+        dollars += price * size;
+        count++;
+
+        if ((barType == BarType.TICK && count >= this.size) || (barType == BarType.VOLUME && volume >= this.size) ||
+                (barType == BarType.DOLLAR && dollars >= this.size)) {
+            flush();
+        }
+    }
+
+    /**
+     * Closes the open bar (if any) and passes it to the {@link BarListener}. Call this at the end of a stream (e.g. at
+     * the end of a day).
+     */
+    public void flush() {
+        if (!building) {
+            return;
+        }
+
+        building = false;
+        barListener.onBar(timestamp, closeTimestamp, open, high, low, close, volume, count);
+    }
+
+    /**
+     * Discards the open bar (if any).
+     */
+    public void reset() {
+        building = false;
+    }
+
+    /**
+     * Returns true if a bar is open.
+     *
+     * @return the boolean
+     */
+    public boolean isBuilding() {
+        return building;
+    }
+
+    /**
+     * Gets bar specification.
+     *
+     * @return the bar specification
+     */
+    public BarSpecification getBarSpecification() {
+        return barSpecification;
+    }
+}
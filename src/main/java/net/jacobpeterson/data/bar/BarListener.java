@@ -0,0 +1,25 @@
+package net.jacobpeterson.data.bar;
+
+/**
+ * A listener of the bars that are closed by a {@link BarBuilder}.
+ */
+@FunctionalInterface
+public interface BarListener {
+
+    /**
+     * Called when a bar is closed.
+     *
+     * @param timestamp      the start timestamp of the bar (epoch nanoseconds), which is the start of the time
+     *                       interval of time bars and the timestamp of the first trade or quote of other bars
+     * @param closeTimestamp the close timestamp of the bar (epoch nanoseconds), which is the end of the time interval
+     *                       of time bars and the timestamp of the last trade or quote of other bars
+     * @param open           the open
+     * @param high           the high
+     * @param low            the low
+     * @param close          the close
+     * @param volume         the share volume (0 for quote bars)
+     * @param count          the number of trades or quotes
+     */
+    void onBar(long timestamp, long closeTimestamp, double open, double high, double low, double close,
+            double volume, int count);
+}
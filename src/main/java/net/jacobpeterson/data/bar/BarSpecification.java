@@ -0,0 +1,161 @@
+package net.jacobpeterson.data.bar;
+
+import net.jacobpeterson.algorithm.update.ticker.PriceUpdateType;
+import net.jacobpeterson.data.BacktestData;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable specification of custom bars: the {@link PriceUpdateType} they are built from, the {@link BarType}, and
+ * the size (the interval in nanoseconds of {@link BarType#TIME} bars, the number of trades or quotes of {@link
+ * BarType#TICK} bars, the shares of {@link BarType#VOLUME} bars, or the dollars of {@link BarType#DOLLAR} bars).
+ * <p>
+ * Quote bars track the midpoint of the bid and ask and can only be {@link BarType#TIME} or {@link BarType#TICK} bars.
+ */
+public final class BarSpecification {
+
+    private final PriceUpdateType priceUpdateType;
+    private final BarType barType;
+    private final long size;
+
+    /**
+     * Instantiates a new Bar specification.
+     *
+     * @param priceUpdateType the price update type the bars are built from
+     * @param barType         the bar type
+     * @param size            the size
+     *
+     * @throws IllegalArgumentException thrown if the specification is invalid
+     */
+    public BarSpecification(PriceUpdateType priceUpdateType, BarType barType, long size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Size must be positive!");
+        }
+        if (priceUpdateType == PriceUpdateType.QUOTE && (barType == BarType.VOLUME || barType == BarType.DOLLAR)) {
+            throw new IllegalArgumentException(barType + " bars can't be built from quotes!");
+        }
+        if (barType == BarType.TIME && size % TimeUnit.MILLISECONDS.toNanos(1) != 0) {
+            throw new IllegalArgumentException("The interval of time bars must be a whole number of milliseconds!");
+        }
+
+        this.priceUpdateType = Objects.requireNonNull(priceUpdateType);
+        this.barType = Objects.requireNonNull(barType);
+        this.size = size;
+    }
+
+    /**
+     * Creates a specification of time bars. Intervals are aligned to the epoch, which aligns them to New York hours
+     * when they evenly divide an hour (e.g. 5 seconds or 5 minutes).
+     *
+     * @param priceUpdateType the price update type the bars are built from
+     * @param interval        the interval
+     *
+     * @return the bar specification
+     */
+    public static BarSpecification timeBars(PriceUpdateType priceUpdateType, Duration interval) {
+        return new BarSpecification(priceUpdateType, BarType.TIME, interval.toNanos());
+    }
+
+    /**
+     * Creates a specification of tick bars.
+     *
+     * @param priceUpdateType the price update type the bars are built from
+     * @param ticks           the number of trades or quotes per bar
+     *
+     * @return the bar specification
+     */
+    public static BarSpecification tickBars(PriceUpdateType priceUpdateType, long ticks) {
+        return new BarSpecification(priceUpdateType, BarType.TICK, ticks);
+    }
+
+    /**
+     * Creates a specification of trade volume bars.
+     *
+     * @param shares the share volume per bar
+     *
+     * @return the bar specification
+     */
+    public static BarSpecification volumeBars(long shares) {
+        return new BarSpecification(PriceUpdateType.TRADE, BarType.VOLUME, shares);
+    }
+
+    /**
+     * Creates a specification of trade dollar bars.
+     *
+     * @param dollars the dollar value per bar
+     *
+     * @return the bar specification
+     */
+    public static BarSpecification dollarBars(long dollars) {
+        return new BarSpecification(PriceUpdateType.TRADE, BarType.DOLLAR, dollars);
+    }
+
+    /**
+     * Gets the extension of the cached bar files of this specification for {@link BacktestData#getDataFile} (e.g.
+     * <code>trade.time-5000ms.aggregates.seg</code>).
+     *
+     * @return the file extension
+     */
+    public String getFileExtension() {
+        return priceUpdateType.name().toLowerCase(Locale.ROOT) + "." + barType.name().toLowerCase(Locale.ROOT) + "-" +
+                (barType == BarType.TIME ? TimeUnit.NANOSECONDS.toMillis(size) + "ms" : String.valueOf(size)) + "." +
+                BacktestData.AGGREGATES_FILE_EXTENSION;
+    }
+
+    /**
+     * Gets price update type.
+     *
+     * @return the price update type
+     */
+    public PriceUpdateType getPriceUpdateType() {
+        return priceUpdateType;
+    }
+
+    /**
+     * Gets bar type.
+     *
+     * @return the bar type
+     */
+    public BarType getBarType() {
+        return barType;
+    }
+
+    /**
+     * Gets size.
+     *
+     * @return the size
+     */
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof BarSpecification)) {
+            return false;
+        }
+        BarSpecification barSpecification = (BarSpecification) object;
+        return priceUpdateType == barSpecification.priceUpdateType && barType == barSpecification.barType &&
+                size == barSpecification.size;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(priceUpdateType, barType, size);
+    }
+
+    @Override
+    public String toString() {
+        return "BarSpecification{" +
+                "priceUpdateType=" + priceUpdateType +
+                ", barType=" + barType +
+                ", size=" + size +
+                '}';
+    }
+}
@@ -0,0 +1,27 @@
+package net.jacobpeterson.data.bar;
+
+/**
+ * The enum Bar type of the rule that closes a bar built by a {@link BarBuilder}.
+ */
+public enum BarType {
+
+    /**
+     * A bar closes at the end of a fixed time interval.
+     */
+    TIME,
+
+    /**
+     * A bar closes once it contains a number of trades or quotes.
+     */
+    TICK,
+
+    /**
+     * A bar closes once the traded share volume reaches a threshold.
+     */
+    VOLUME,
+
+    /**
+     * A bar closes once the traded dollar value (price times size) reaches a threshold.
+     */
+    DOLLAR
+}
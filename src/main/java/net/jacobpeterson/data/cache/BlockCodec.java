@@ -0,0 +1,390 @@
+package net.jacobpeterson.data.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes and decodes the blocks of {@link SegmentFormat#FLAG_COMPRESSED} segments. Each column of a block is first
+ * encoded on its own to make it compressible:
+ * <ul>
+ * <li>{@link ColumnKind#LONG} columns (timestamps and sequence numbers) are encoded as the ZigZag varints of their
+ * delta-of-deltas, which is one or two bytes for regularly spaced values.</li>
+ * <li>{@link ColumnKind#DOUBLE} columns (prices and volumes) are encoded as the ZigZag varint deltas of their values
+ * scaled to integers by the fewest decimal places that round-trip every value of the block exactly. Columns that
+ * can't be scaled (e.g. with more than {@link #MAX_DECIMAL_PLACES} decimal places) are stored raw.</li>
+ * <li>{@link ColumnKind#INT} and {@link ColumnKind#BITMASK} columns are encoded as ZigZag varints.</li>
+ * </ul>
+ * The encoded columns are then compressed with {@link LZ4Codec}. A stored block is laid out as follows:
+ * <pre>
+ *   int   encoded length
+ *   bytes LZ4 compressed encoded columns
+ *     Per column: byte encoding (and byte decimal places for scaled columns), then the encoded values
+ * </pre>
+ * Decoding is lossless: a decoded block is byte for byte the raw block that was encoded.
+ */
+final class BlockCodec {
+
+    /**
+     * The maximum number of decimal places of scaled {@link ColumnKind#DOUBLE} columns.
+     */
+    static final int MAX_DECIMAL_PLACES = 9;
+
+    private static final byte RAW_ENCODING = 0;
+    private static final byte DELTA_OF_DELTA_ENCODING = 1;
+    private static final byte VARINT_ENCODING = 2;
+    private static final byte SCALED_ENCODING = 3;
+    private static final int MAX_VARINT_LENGTH = 10;
+    private static final long MAX_SCALED_VALUE = 1L << 53;
+    private static final double[] POWERS_OF_TEN = new double[MAX_DECIMAL_PLACES + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int decimalPlaces = 1; decimalPlaces <= MAX_DECIMAL_PLACES; decimalPlaces++) {
+            POWERS_OF_TEN[decimalPlaces] = POWERS_OF_TEN[decimalPlaces - 1] * 10;
+        }
+    }
+
+    private BlockCodec() {}
+
+    /**
+     * Encodes and compresses a raw block.
+     *
+     * @param segmentType the segment type
+     * @param rawBlock    the raw block
+     * @param rowsInBlock the rows in block
+     *
+     * @return the stored block
+     */
+    static ByteBuffer encode(SegmentType segmentType, ByteBuffer rawBlock, int rowsInBlock) {
+        byte[] encoded = new byte[segmentType.getColumnCount() * 2 + rowsInBlock * segmentType.getColumnCount() *
+                MAX_VARINT_LENGTH];
+        int position = 0;
+
+        for (int columnIndex = 0; columnIndex < segmentType.getColumnCount(); columnIndex++) {
+            ColumnKind columnKind = segmentType.getColumn(columnIndex).getColumnKind();
+            int columnOffset = rowsInBlock * segmentType.getColumnWidthPrefix(columnIndex);
+
+            switch (columnKind) {
+                case LONG:
+                    encoded[position++] = DELTA_OF_DELTA_ENCODING;
+                    long previousValue = 0;
+                    long previousDelta = 0;
+                    for (int row = 0; row < rowsInBlock; row++) {
+                        long value = rawBlock.getLong(columnOffset + row * Long.BYTES);
+                        long delta = value - previousValue;
+                        position = writeVarLong(encoded, position, zigZagEncode(delta - previousDelta));
+                        previousValue = value;
+                        previousDelta = delta;
+                    }
+                    break;
+                case DOUBLE:
+                    int decimalPlaces = getDecimalPlaces(rawBlock, columnOffset, rowsInBlock);
+                    if (decimalPlaces < 0) {
+                        encoded[position++] = RAW_ENCODING;
+                        for (int row = 0; row < rowsInBlock; row++) {
+                            position = writeLong(encoded, position,
+                                    rawBlock.getLong(columnOffset + row * Double.BYTES));
+                        }
+                    } else {
+                        encoded[position++] = SCALED_ENCODING;
+                        encoded[position++] = (byte) decimalPlaces;
+                        long previousScaledValue = 0;
+                        for (int row = 0; row < rowsInBlock; row++) {
+                            long scaledValue = Math.round(rawBlock.getDouble(columnOffset + row * Double.BYTES) *
+                                    POWERS_OF_TEN[decimalPlaces]);
+                            position = writeVarLong(encoded, position, zigZagEncode(scaledValue - previousScaledValue));
+                            previousScaledValue = scaledValue;
+                        }
+                    }
+                    break;
+                case INT:
+                    encoded[position++] = VARINT_ENCODING;
+                    for (int row = 0; row < rowsInBlock; row++) {
+                        position = writeVarLong(encoded, position,
+                                zigZagEncode(rawBlock.getInt(columnOffset + row * Integer.BYTES)));
+                    }
+                    break;
+                case BITMASK:
+                    encoded[position++] = VARINT_ENCODING;
+                    for (int row = 0; row < rowsInBlock; row++) {
+                        position = writeVarLong(encoded, position,
+                                zigZagEncode(rawBlock.getLong(columnOffset + row * Long.BYTES)));
+                    }
+                    break;
+                default:
+                    throw new UnsupportedOperationException(columnKind.name());
+            }
+        }
+
+        byte[] stored = new byte[Integer.BYTES + LZ4Codec.maxCompressedLength(position)];
+        writeInt(stored, 0, position);
+        int storedLength = Integer.BYTES + LZ4Codec.compress(encoded, position, stored, Integer.BYTES);
+        return ByteBuffer.wrap(stored, 0, storedLength).slice().order(SegmentFormat.BYTE_ORDER);
+    }
+
+    /**
+     * Decompresses and decodes a stored block.
+     *
+     * @param segmentType the segment type
+     * @param storedBlock the stored block
+     * @param rowsInBlock the rows in block
+     * @param rawLength   the raw length
+     *
+     * @return the raw block
+     *
+     * @throws IOException thrown if the stored block is corrupt
+     */
+    static ByteBuffer decode(SegmentType segmentType, ByteBuffer storedBlock, int rowsInBlock, int rawLength)
+            throws IOException {
+        if (rawLength != rowsInBlock * segmentType.getRowWidth() || storedBlock.remaining() < Integer.BYTES) {
+            throw new IOException("Corrupt segment block: unexpected length");
+        }
+
+        byte[] stored;
+        int storedOffset;
+        if (storedBlock.hasArray()) {
+            stored = storedBlock.array();
+            storedOffset = storedBlock.arrayOffset() + storedBlock.position();
+        } else {
+            stored = new byte[storedBlock.remaining()];
+            storedBlock.duplicate().get(stored);
+            storedOffset = 0;
+        }
+
+        int encodedLength = readInt(stored, storedOffset);
+        if (encodedLength < 0 || encodedLength > segmentType.getColumnCount() * 2 + rowsInBlock *
+                segmentType.getColumnCount() * MAX_VARINT_LENGTH) {
+            throw new IOException("Corrupt segment block: unexpected encoded length");
+        }
+        byte[] encoded = new byte[encodedLength];
+        LZ4Codec.decompress(stored, storedOffset + Integer.BYTES, storedBlock.remaining() - Integer.BYTES, encoded,
+                encodedLength);
+
+        ByteBuffer rawBlock = ByteBuffer.allocate(rawLength).order(SegmentFormat.BYTE_ORDER);
+        long[] values = new long[rowsInBlock];
+        int position = 0;
+        try {
+            for (int columnIndex = 0; columnIndex < segmentType.getColumnCount(); columnIndex++) {
+                ColumnKind columnKind = segmentType.getColumn(columnIndex).getColumnKind();
+                byte encoding = encoded[position++];
+
+                if (encoding == RAW_ENCODING && columnKind.getWidth() == Long.BYTES) {
+                    for (int row = 0; row < rowsInBlock; row++) {
+                        rawBlock.putLong(readLong(encoded, position));
+                        position += Long.BYTES;
+                    }
+                } else if (encoding == DELTA_OF_DELTA_ENCODING && columnKind == ColumnKind.LONG) {
+                    position = readVarLongs(encoded, position, values);
+                    long value = 0;
+                    long delta = 0;
+                    for (int row = 0; row < rowsInBlock; row++) {
+                        delta += zigZagDecode(values[row]);
+                        value += delta;
+                        rawBlock.putLong(value);
+                    }
+                } else if (encoding == SCALED_ENCODING && columnKind == ColumnKind.DOUBLE) {
+                    int decimalPlaces = encoded[position++];
+                    if (decimalPlaces < 0 || decimalPlaces > MAX_DECIMAL_PLACES) {
+                        throw new IOException("Corrupt segment block: unexpected decimal places");
+                    }
+                    position = readVarLongs(encoded, position, values);
+                    double powerOfTen = POWERS_OF_TEN[decimalPlaces];
+                    long scaledValue = 0;
+                    for (int row = 0; row < rowsInBlock; row++) {
+                        scaledValue += zigZagDecode(values[row]);
+                        rawBlock.putDouble(scaledValue / powerOfTen);
+                    }
+                } else if (encoding == VARINT_ENCODING && columnKind == ColumnKind.INT) {
+                    position = readVarLongs(encoded, position, values);
+                    for (int row = 0; row < rowsInBlock; row++) {
+                        rawBlock.putInt((int) zigZagDecode(values[row]));
+                    }
+                } else if (encoding == VARINT_ENCODING && columnKind == ColumnKind.BITMASK) {
+                    position = readVarLongs(encoded, position, values);
+                    for (int row = 0; row < rowsInBlock; row++) {
+                        rawBlock.putLong(zigZagDecode(values[row]));
+                    }
+                } else {
+                    throw new IOException("Corrupt segment block: unexpected " + columnKind + " column encoding " +
+                            encoding);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException exception) {
+            throw new IOException("Corrupt segment block: truncated column", exception);
+        }
+
+        if (position != encodedLength) {
+            throw new IOException("Corrupt segment block: unexpected trailing bytes");
+        }
+        rawBlock.flip();
+        return rawBlock;
+    }
+
+    /**
+     * Gets the fewest decimal places that round-trip every value of a {@link ColumnKind#DOUBLE} column when it's
+     * scaled to integers.
+     *
+     * @param rawBlock     the raw block
+     * @param columnOffset the column offset
+     * @param rowsInBlock  the rows in block
+     *
+     * @return the decimal places (-1 if the column can't be scaled)
+     */
+    private static int getDecimalPlaces(ByteBuffer rawBlock, int columnOffset, int rowsInBlock) {
+        int decimalPlaces = 0;
+        for (int row = 0; row < rowsInBlock; row++) {
+            double value = rawBlock.getDouble(columnOffset + row * Double.BYTES);
+            while (!isScalable(value, decimalPlaces)) {
+                if (++decimalPlaces > MAX_DECIMAL_PLACES) {
+                    return -1;
+                }
+            }
+        }
+
+        // Scaling by more decimal places than a value needs almost always round-trips, but verify it
+        for (int row = 0; row < rowsInBlock; row++) {
+            if (!isScalable(rawBlock.getDouble(columnOffset + row * Double.BYTES), decimalPlaces)) {
+                return -1;
+            }
+        }
+        return decimalPlaces;
+    }
+
+    /**
+     * Returns true if a value round-trips exactly when it's scaled to an integer by a number of decimal places.
+     *
+     * @param value         the value
+     * @param decimalPlaces the decimal places
+     *
+     * @return the boolean
+     */
+    private static boolean isScalable(double value, int decimalPlaces) {
+        double scaled = value * POWERS_OF_TEN[decimalPlaces];
+        if (!(Math.abs(scaled) < MAX_SCALED_VALUE)) { // Also false for NaN
+            return false;
+        }
+        return Double.doubleToRawLongBits(Math.round(scaled) / POWERS_OF_TEN[decimalPlaces]) ==
+                Double.doubleToRawLongBits(value);
+    }
+
+    /**
+     * ZigZag encodes a value so that small negative values are small unsigned values.
+     *
+     * @param value the value
+     *
+     * @return the encoded value
+     */
+    private static long zigZagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * ZigZag decodes a value.
+     *
+     * @param value the encoded value
+     *
+     * @return the value
+     */
+    private static long zigZagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Writes an unsigned varint (7 bits per byte, least significant group first).
+     *
+     * @param bytes    the bytes
+     * @param position the position
+     * @param value    the value
+     *
+     * @return the new position
+     */
+    private static int writeVarLong(byte[] bytes, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+     * Reads unsigned varints until the values array is full. Overlong varints aren't rejected here, but they can't
+     * make a block decode to the expected length.
+     *
+     * @param bytes    the bytes
+     * @param position the position
+     * @param values   the values
+     *
+     * @return the new position
+     */
+    private static int readVarLongs(byte[] bytes, int position, long[] values) {
+        for (int index = 0; index < values.length; index++) {
+            byte b = bytes[position++];
+            long value = b & 0x7F;
+            for (int shift = 7; b < 0; shift += 7) {
+                b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+            }
+            values[index] = value;
+        }
+        return position;
+    }
+
+    /**
+     * Writes a little-endian long.
+     *
+     * @param bytes    the bytes
+     * @param position the position
+     * @param value    the value
+     *
+     * @return the new position
+     */
+    private static int writeLong(byte[] bytes, int position, long value) {
+        for (int index = 0; index < Long.BYTES; index++) {
+            bytes[position++] = (byte) (value >>> (index * 8));
+        }
+        return position;
+    }
+
+    /**
+     * Reads a little-endian long.
+     *
+     * @param bytes    the bytes
+     * @param position the position
+     *
+     * @return the long
+     */
+    private static long readLong(byte[] bytes, int position) {
+        long value = 0;
+        for (int index = Long.BYTES - 1; index >= 0; index--) {
+            value = value << 8 | (bytes[position + index] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * Writes a little-endian int.
+     *
+     * @param bytes    the bytes
+     * @param position the position
+     * @param value    the value
+     */
+    private static void writeInt(byte[] bytes, int position, int value) {
+        for (int index = 0; index < Integer.BYTES; index++) {
+            bytes[position++] = (byte) (value >>> (index * 8));
+        }
+    }
+
+    /**
+     * Reads a little-endian int.
+     *
+     * @param bytes    the bytes
+     * @param position the position
+     *
+     * @return the int
+     */
+    private static int readInt(byte[] bytes, int position) {
+        return (bytes[position] & 0xFF) | (bytes[position + 1] & 0xFF) << 8 | (bytes[position + 2] & 0xFF) << 16 |
+                (bytes[position + 3] & 0xFF) << 24;
+    }
+}
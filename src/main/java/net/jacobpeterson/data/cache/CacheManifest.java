@@ -0,0 +1,572 @@
+package net.jacobpeterson.data.cache;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * An index of the segment files that are cached in one directory of the data cache (one ticker), so that checking
+ * whether a file is cached is an in-memory lookup instead of a filesystem call. The manifest is persisted as an
+ * append-only log in {@link #MANIFEST_FILE_NAME} which is memory-mapped and replayed when it is opened and compacted
+ * once most of its records are obsolete. Every record has a CRC32 so a record that was torn by a crash is dropped
+ * when the log is replayed.
+ * <p>
+ * A manifest only ever has false positives if files are deleted behind its back, which {@link #verify(boolean,
+ * boolean)} detects and repairs. Files that are written behind its back are simply missing from it until they are
+ * registered.
+ * <p>
+ * The log is laid out as follows (little-endian):
+ * <pre>
+ * Header (6 bytes)
+ *   int   magic ('AJBM')
+ *   short version
+ * Records
+ *   int   payload length
+ *   Payload
+ *     byte  operation (1 = put, 2 = remove)
+ *     short file name length
+ *     bytes file name (UTF-8)
+ *     Put only: long length, long last modified, long checksum, int row count, long first timestamp,
+ *     long last timestamp
+ *   int   CRC32 of the payload
+ * </pre>
+ * This is thread safe.
+ */
+public class CacheManifest {
+
+    /** The constant MANIFEST_FILE_NAME. */
+    public static final String MANIFEST_FILE_NAME = "manifest.log";
+
+    /** The constant MAGIC. */
+    public static final int MAGIC = 0x414A424D;
+
+    /** The constant VERSION. */
+    public static final short VERSION = 1;
+
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+    private static final int HEADER_SIZE = 6;
+    private static final byte PUT_OPERATION = 1;
+    private static final byte REMOVE_OPERATION = 2;
+    private static final int PUT_VALUES_SIZE = 5 * Long.BYTES + Integer.BYTES;
+    private static final int MIN_COMPACTION_RECORD_COUNT = 1024;
+    private static final String SEGMENT_FILE_SUFFIX = ".seg";
+    private static final int CHECKSUM_BUFFER_SIZE = 64 * 1024;
+
+    private final File directory;
+    private final File manifestFile;
+    private final ConcurrentHashMap<String, CacheManifestEntry> entries;
+    private int recordCount;
+
+    /**
+     * Instantiates a new empty Cache manifest.
+     *
+     * @param directory the directory
+     */
+    private CacheManifest(File directory) {
+        this.directory = directory;
+        this.manifestFile = new File(directory, MANIFEST_FILE_NAME);
+        this.entries = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Opens the manifest of a directory. If the directory has no manifest yet (or it is unreadable), the directory is
+     * scanned (without computing checksums) and a new manifest is written.
+     *
+     * @param directory the directory
+     *
+     * @return the cache manifest
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public static CacheManifest open(File directory) throws IOException {
+        CacheManifest cacheManifest = new CacheManifest(directory);
+        synchronized (cacheManifest) {
+            if (!cacheManifest.manifestFile.exists() || !cacheManifest.load()) {
+                cacheManifest.rebuild(false);
+            }
+        }
+        return cacheManifest;
+    }
+
+    /**
+     * Replays the manifest log. A torn or corrupt tail is truncated.
+     *
+     * @return false if the manifest file isn't a valid manifest
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private boolean load() throws IOException {
+        long validLength;
+        long fileLength;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(manifestFile, "r");
+             FileChannel fileChannel = randomAccessFile.getChannel()) {
+            fileLength = fileChannel.size();
+            if (fileLength < HEADER_SIZE || fileLength > Integer.MAX_VALUE) {
+                LOGGER.warn("{} is not a valid manifest, rebuilding it", manifestFile);
+                return false;
+            }
+
+            MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileLength);
+            buffer.order(BYTE_ORDER);
+            if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+                LOGGER.warn("{} is not a valid manifest, rebuilding it", manifestFile);
+                return false;
+            }
+
+            CRC32 crc32 = new CRC32();
+            validLength = buffer.position();
+            while (buffer.remaining() >= Integer.BYTES) {
+                int payloadLength = buffer.getInt();
+                if (payloadLength <= 0 || payloadLength > buffer.remaining() - Integer.BYTES) {
+                    break;
+                }
+
+                ByteBuffer payload = buffer.slice().order(BYTE_ORDER);
+                payload.limit(payloadLength);
+                crc32.reset();
+                crc32.update(payload.duplicate());
+                buffer.position(buffer.position() + payloadLength);
+                if ((int) crc32.getValue() != buffer.getInt() || !replay(payload)) {
+                    break;
+                }
+
+                recordCount++;
+                validLength = buffer.position();
+            }
+        }
+
+        if (validLength < fileLength) {
+            LOGGER.warn("Truncating the torn tail of {} at {} of {} bytes", manifestFile, validLength, fileLength);
+            try (FileChannel fileChannel = FileChannel.open(manifestFile.toPath(), StandardOpenOption.WRITE)) {
+                fileChannel.truncate(validLength);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Applies a record payload to the entries.
+     *
+     * @param payload the payload
+     *
+     * @return false if the payload is malformed
+     */
+    private boolean replay(ByteBuffer payload) {
+        byte operation = payload.get();
+        int fileNameLength = payload.getShort() & 0xFFFF;
+        if (fileNameLength > payload.remaining()) {
+            return false;
+        }
+        byte[] fileNameBytes = new byte[fileNameLength];
+        payload.get(fileNameBytes);
+        String fileName = new String(fileNameBytes, StandardCharsets.UTF_8);
+
+        if (operation == PUT_OPERATION && payload.remaining() == PUT_VALUES_SIZE) {
+            long length = payload.getLong();
+            long lastModified = payload.getLong();
+            long checksum = payload.getLong();
+            int rowCount = payload.getInt();
+            long firstTimestamp = payload.getLong();
+            long lastTimestamp = payload.getLong();
+            entries.put(fileName, new CacheManifestEntry(fileName, length, lastModified, checksum, rowCount,
+                    firstTimestamp, lastTimestamp));
+            return true;
+        } else if (operation == REMOVE_OPERATION && !payload.hasRemaining()) {
+            entries.remove(fileName);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Encodes a record.
+     *
+     * @param operation the operation
+     * @param fileName  the file name
+     * @param entry     the entry (null for removes)
+     *
+     * @return the record (flipped)
+     */
+    private static ByteBuffer encodeRecord(byte operation, String fileName, CacheManifestEntry entry) {
+        byte[] fileNameBytes = fileName.getBytes(StandardCharsets.UTF_8);
+        if (fileNameBytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("File name is too long: " + fileName);
+        }
+        int payloadLength = 1 + Short.BYTES + fileNameBytes.length + (entry == null ? 0 : PUT_VALUES_SIZE);
+
+        ByteBuffer record = ByteBuffer.allocate(payloadLength + 2 * Integer.BYTES).order(BYTE_ORDER);
+        record.putInt(payloadLength);
+        record.put(operation);
+        record.putShort((short) fileNameBytes.length);
+        record.put(fileNameBytes);
+        if (entry != null) {
+            record.putLong(entry.getLength());
+            record.putLong(entry.getLastModified());
+            record.putLong(entry.getChecksum());
+            record.putInt(entry.getRowCount());
+            record.putLong(entry.getFirstTimestamp());
+            record.putLong(entry.getLastTimestamp());
+        }
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(record.array(), Integer.BYTES, payloadLength);
+        record.putInt((int) crc32.getValue());
+        record.flip();
+        return record;
+    }
+
+    /**
+     * Appends a record to the manifest log (creating it if needed) and compacts the log if most of its records are
+     * obsolete.
+     *
+     * @param record the record
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private void append(ByteBuffer record) throws IOException {
+        if (!manifestFile.exists()) {
+            compact();
+            return;
+        }
+
+        try (FileChannel fileChannel = FileChannel.open(manifestFile.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            while (record.hasRemaining()) {
+                fileChannel.write(record);
+            }
+        }
+
+        if (++recordCount > MIN_COMPACTION_RECORD_COUNT && recordCount > 2 * entries.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrites the manifest log with one record per entry. The log is written to a temporary file which is then
+     * renamed over the manifest file.
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public synchronized void compact() throws IOException {
+        if (!directory.exists() && !directory.mkdirs() && !directory.exists()) {
+            throw new IOException("Could not create directory: " + directory);
+        }
+
+        File temporaryFile = new File(directory, MANIFEST_FILE_NAME + "." + UUID.randomUUID() +
+                SegmentWriter.TEMPORARY_FILE_SUFFIX);
+        try {
+            try (FileOutputStream fileOutputStream = new FileOutputStream(temporaryFile);
+                 FileChannel fileChannel = fileOutputStream.getChannel()) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(BYTE_ORDER);
+                header.putInt(MAGIC);
+                header.putShort(VERSION);
+                header.flip();
+                fileChannel.write(header);
+
+                for (CacheManifestEntry entry : entries.values()) {
+                    ByteBuffer record = encodeRecord(PUT_OPERATION, entry.getFileName(), entry);
+                    while (record.hasRemaining()) {
+                        fileChannel.write(record);
+                    }
+                }
+                fileChannel.force(false);
+            }
+
+            try {
+                Files.move(temporaryFile.toPath(), manifestFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException exception) {
+                Files.move(temporaryFile.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            recordCount = entries.size();
+        } finally {
+            Files.deleteIfExists(temporaryFile.toPath());
+        }
+    }
+
+    /**
+     * Creates the manifest entry of a segment file by reading its header (and the whole file if the checksum is
+     * computed).
+     *
+     * @param file            the file
+     * @param computeChecksum true to compute the CRC32 checksum of the file
+     *
+     * @return the cache manifest entry
+     *
+     * @throws IOException thrown for {@link IOException}s or if the file is not a valid segment
+     */
+    public static CacheManifestEntry createEntry(File file, boolean computeChecksum) throws IOException {
+        long lastModified = file.lastModified();
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel fileChannel = randomAccessFile.getChannel()) {
+            SegmentHeader header = SegmentHeader.read(fileChannel, file);
+            return new CacheManifestEntry(file.getName(), fileChannel.size(), lastModified,
+                    computeChecksum ? computeChecksum(fileChannel) : CacheManifestEntry.UNKNOWN_CHECKSUM,
+                    header.getRowCount(), header.getFirstTimestamp(), header.getLastTimestamp());
+        }
+    }
+
+    /**
+     * Computes the CRC32 checksum of the contents of a file channel.
+     *
+     * @param fileChannel the file channel
+     *
+     * @return the checksum
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private static long computeChecksum(FileChannel fileChannel) throws IOException {
+        CRC32 crc32 = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(CHECKSUM_BUFFER_SIZE);
+        long position = 0;
+        int readCount;
+        while ((readCount = fileChannel.read(buffer, position)) > 0) {
+            crc32.update(buffer.array(), 0, readCount);
+            position += readCount;
+            buffer.clear();
+        }
+        return crc32.getValue();
+    }
+
+    /**
+     * Gets the entry of a file.
+     *
+     * @param fileName the file name
+     *
+     * @return the cache manifest entry (null if the file isn't in this manifest)
+     */
+    public CacheManifestEntry get(String fileName) {
+        return entries.get(fileName);
+    }
+
+    /**
+     * Returns true if a file is in this manifest.
+     *
+     * @param fileName the file name
+     *
+     * @return the boolean
+     */
+    public boolean contains(String fileName) {
+        return entries.containsKey(fileName);
+    }
+
+    /**
+     * Puts an entry.
+     *
+     * @param entry the entry
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public synchronized void put(CacheManifestEntry entry) throws IOException {
+        entries.put(entry.getFileName(), entry);
+        append(encodeRecord(PUT_OPERATION, entry.getFileName(), entry));
+    }
+
+    /**
+     * Creates the entry of a segment file in the directory of this manifest and puts it.
+     *
+     * @param file            the file
+     * @param computeChecksum true to compute the CRC32 checksum of the file
+     *
+     * @return the cache manifest entry
+     *
+     * @throws IOException thrown for {@link IOException}s or if the file is not a valid segment
+     */
+    public CacheManifestEntry register(File file, boolean computeChecksum) throws IOException {
+        CacheManifestEntry entry = createEntry(file, computeChecksum);
+        put(entry);
+        return entry;
+    }
+
+    /**
+     * Removes the entry of a file.
+     *
+     * @param fileName the file name
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public synchronized void remove(String fileName) throws IOException {
+        if (entries.remove(fileName) != null) {
+            append(encodeRecord(REMOVE_OPERATION, fileName, null));
+        }
+    }
+
+    /**
+     * Rebuilds this manifest from the segment files in its directory. Files that aren't valid segments are left out.
+     *
+     * @param computeChecksums true to compute the CRC32 checksum of every file (which reads every file)
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public synchronized void rebuild(boolean computeChecksums) throws IOException {
+        entries.clear();
+        for (File file : listSegmentFiles()) {
+            try {
+                CacheManifestEntry entry = createEntry(file, computeChecksums);
+                entries.put(entry.getFileName(), entry);
+            } catch (IOException exception) {
+                LOGGER.warn("Leaving {} out of the manifest: {}", file, exception.getMessage());
+            }
+        }
+
+        if (directory.exists()) {
+            compact();
+        }
+    }
+
+    /**
+     * Verifies this manifest against the segment files in its directory. If <code>repair</code> is true, missing files
+     * are removed from this manifest, changed and unindexed files are (re)registered, and corrupt files are deleted
+     * from the data cache (so that they are fetched again) and removed from this manifest.
+     *
+     * @param verifyChecksums true to verify the checksum of every file (which reads every file). Entries without a
+     *                        checksum get one if <code>repair</code> is true.
+     * @param repair          true to repair this manifest and the data cache
+     *
+     * @return the cache verification
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public synchronized CacheVerification verify(boolean verifyChecksums, boolean repair) throws IOException {
+        CacheVerification cacheVerification = new CacheVerification();
+
+        for (CacheManifestEntry entry : new ArrayList<>(entries.values())) {
+            cacheVerification.incrementVerifiedCount();
+            File file = new File(directory, entry.getFileName());
+
+            if (!file.exists()) {
+                cacheVerification.getMissingFiles().add(file);
+                if (repair) {
+                    remove(entry.getFileName());
+                }
+                continue;
+            }
+
+            boolean changed = file.length() != entry.getLength() || file.lastModified() != entry.getLastModified();
+            if (!changed && !(verifyChecksums && (entry.hasChecksum() || repair))) {
+                continue;
+            }
+
+            CacheManifestEntry currentEntry;
+            try {
+                currentEntry = createEntry(file, verifyChecksums);
+            } catch (IOException exception) {
+                cacheVerification.getCorruptFiles().add(file);
+                if (repair) {
+                    deleteCorruptFile(file);
+                }
+                continue;
+            }
+
+            if (changed) {
+                cacheVerification.getChangedFiles().add(file);
+            } else if (entry.hasChecksum() && currentEntry.getChecksum() != entry.getChecksum()) {
+                cacheVerification.getCorruptFiles().add(file);
+                if (repair) {
+                    deleteCorruptFile(file);
+                }
+                continue;
+            }
+            if (repair) {
+                put(currentEntry);
+            }
+        }
+
+        for (File file : listSegmentFiles()) {
+            if (entries.containsKey(file.getName())) {
+                continue;
+            }
+
+            cacheVerification.getUnindexedFiles().add(file);
+            if (repair) {
+                try {
+                    register(file, verifyChecksums);
+                } catch (IOException exception) {
+                    cacheVerification.getCorruptFiles().add(file);
+                    deleteCorruptFile(file);
+                }
+            }
+        }
+
+        return cacheVerification;
+    }
+
+    /**
+     * Deletes a corrupt file from the data cache and removes it from this manifest.
+     *
+     * @param file the file
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private void deleteCorruptFile(File file) throws IOException {
+        LOGGER.warn("Deleting corrupt data cache file {}", file);
+        Files.deleteIfExists(file.toPath());
+        remove(file.getName());
+    }
+
+    /**
+     * Lists the segment files in the directory of this manifest.
+     *
+     * @return the segment files
+     */
+    private File[] listSegmentFiles() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_FILE_SUFFIX));
+        return files == null ? new File[0] : files;
+    }
+
+    /**
+     * Gets an unmodifiable view of the entries.
+     *
+     * @return the entries
+     */
+    public Collection<CacheManifestEntry> getEntries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    /**
+     * Gets the number of entries.
+     *
+     * @return the size
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets directory.
+     *
+     * @return the directory
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Gets manifest file.
+     *
+     * @return the manifest file
+     */
+    public File getManifestFile() {
+        return manifestFile;
+    }
+}
@@ -0,0 +1,129 @@
+package net.jacobpeterson.data.cache;
+
+/**
+ * An immutable entry of a {@link CacheManifest}: the name, length, and last modified time of a cached segment file,
+ * its CRC32 checksum (if it has been computed), and the row count and timestamp range of the segment.
+ */
+public final class CacheManifestEntry {
+
+    /**
+     * The checksum of entries whose checksum hasn't been computed. CRC32 checksums are unsigned 32-bit values so this
+     * never collides with an actual checksum.
+     */
+    public static final long UNKNOWN_CHECKSUM = -1;
+
+    private final String fileName;
+    private final long length;
+    private final long lastModified;
+    private final long checksum;
+    private final int rowCount;
+    private final long firstTimestamp;
+    private final long lastTimestamp;
+
+    /**
+     * Instantiates a new Cache manifest entry.
+     *
+     * @param fileName       the file name
+     * @param length         the length in bytes
+     * @param lastModified   the last modified time (epoch milliseconds)
+     * @param checksum       the CRC32 checksum of the file (or {@link #UNKNOWN_CHECKSUM})
+     * @param rowCount       the row count
+     * @param firstTimestamp the first timestamp (epoch nanoseconds)
+     * @param lastTimestamp  the last timestamp (epoch nanoseconds)
+     */
+    public CacheManifestEntry(String fileName, long length, long lastModified, long checksum, int rowCount,
+            long firstTimestamp, long lastTimestamp) {
+        this.fileName = fileName;
+        this.length = length;
+        this.lastModified = lastModified;
+        this.checksum = checksum;
+        this.rowCount = rowCount;
+        this.firstTimestamp = firstTimestamp;
+        this.lastTimestamp = lastTimestamp;
+    }
+
+    /**
+     * Returns true if the checksum of this entry has been computed.
+     *
+     * @return the boolean
+     */
+    public boolean hasChecksum() {
+        return checksum != UNKNOWN_CHECKSUM;
+    }
+
+    /**
+     * Gets file name.
+     *
+     * @return the file name
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Gets the length in bytes.
+     *
+     * @return the length
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Gets the last modified time (epoch milliseconds).
+     *
+     * @return the last modified
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Gets the CRC32 checksum of the file.
+     *
+     * @return the checksum (or {@link #UNKNOWN_CHECKSUM})
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Gets row count.
+     *
+     * @return the row count
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Gets the first timestamp (epoch nanoseconds).
+     *
+     * @return the first timestamp
+     */
+    public long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    /**
+     * Gets the last timestamp (epoch nanoseconds).
+     *
+     * @return the last timestamp
+     */
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheManifestEntry{" +
+                "fileName='" + fileName + '\'' +
+                ", length=" + length +
+                ", lastModified=" + lastModified +
+                ", checksum=" + checksum +
+                ", rowCount=" + rowCount +
+                ", firstTimestamp=" + firstTimestamp +
+                ", lastTimestamp=" + lastTimestamp +
+                '}';
+    }
+}
@@ -0,0 +1,83 @@
+package net.jacobpeterson.data.cache;
+
+import net.jacobpeterson.data.BacktestData;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A command line tool to verify, repair, and rebuild the {@link CacheManifest}s of a data cache and to compress or
+ * decompress its segment files.
+ */
+public final class CacheTool {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /**
+     * Instantiates a new Cache tool.
+     */
+    private CacheTool() {}
+
+    /**
+     * Runs a cache command on a data cache. <code>verify</code> reports the differences between the manifests and the
+     * files, <code>repair</code> also fixes them (deleting corrupt files so that they are fetched again), and
+     * <code>rebuild</code> rebuilds the manifests from the files. <code>--checksums</code> verifies or computes the
+     * checksum of every file. <code>compress</code> and <code>decompress</code> rewrite every segment file that isn't
+     * already compressed or decompressed.
+     *
+     * @param args <code>verify|repair|rebuild|compress|decompress [--checksums] [backtest_data_directory]</code>
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public static void main(String[] args) throws IOException {
+        File backtestDataDirectory = new File(System.getProperty("user.home"),
+                BacktestData.BACKTEST_DATA_DIRECTORY_NAME);
+        String command = null;
+        boolean checksums = false;
+
+        for (String arg : args) {
+            if (arg.equals("--checksums")) {
+                checksums = true;
+            } else if (command == null) {
+                command = arg;
+            } else {
+                backtestDataDirectory = new File(arg);
+            }
+        }
+
+        BacktestData backtestData = new BacktestData(null, null, backtestDataDirectory);
+        LOGGER.info("Running {} on the data cache in {}", command, backtestData.getDataCacheDirectory());
+
+        if ("verify".equals(command) || "repair".equals(command)) {
+            boolean repair = "repair".equals(command);
+            CacheVerification cacheVerification = backtestData.verifyDataCache(checksums, repair);
+
+            for (File file : cacheVerification.getMissingFiles()) {
+                LOGGER.info("Missing: {}", file);
+            }
+            for (File file : cacheVerification.getUnindexedFiles()) {
+                LOGGER.info("Unindexed: {}", file);
+            }
+            for (File file : cacheVerification.getChangedFiles()) {
+                LOGGER.info("Changed: {}", file);
+            }
+            for (File file : cacheVerification.getCorruptFiles()) {
+                LOGGER.info("Corrupt: {}", file);
+            }
+            LOGGER.info("{} {}", cacheVerification.isConsistent() ? "Consistent:" :
+                                 repair ? "Repaired:" : "Inconsistent:", cacheVerification);
+        } else if ("rebuild".equals(command)) {
+            int indexedCount = backtestData.rebuildCacheManifests(checksums);
+            LOGGER.info("Rebuilt the data cache manifests with {} files", indexedCount);
+        } else if ("compress".equals(command) || "decompress".equals(command)) {
+            backtestData.setCacheCompressed("compress".equals(command));
+            int rewrittenCount = backtestData.recompressDataCache();
+            LOGGER.info("Rewrote {} data cache files", rewrittenCount);
+        } else {
+            LOGGER.error("Usage: CacheTool verify|repair|rebuild|compress|decompress [--checksums] " +
+                    "[backtest_data_directory]");
+        }
+    }
+}
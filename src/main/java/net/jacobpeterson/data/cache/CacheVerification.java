@@ -0,0 +1,112 @@
+package net.jacobpeterson.data.cache;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The result of verifying {@link CacheManifest}s against the segment files in their directories.
+ */
+public class CacheVerification {
+
+    private final ArrayList<File> missingFiles;
+    private final ArrayList<File> unindexedFiles;
+    private final ArrayList<File> changedFiles;
+    private final ArrayList<File> corruptFiles;
+    private int verifiedCount;
+
+    /**
+     * Instantiates a new empty Cache verification.
+     */
+    public CacheVerification() {
+        this.missingFiles = new ArrayList<>();
+        this.unindexedFiles = new ArrayList<>();
+        this.changedFiles = new ArrayList<>();
+        this.corruptFiles = new ArrayList<>();
+    }
+
+    /**
+     * Adds the results of another verification to this one.
+     *
+     * @param cacheVerification the cache verification
+     */
+    public void add(CacheVerification cacheVerification) {
+        missingFiles.addAll(cacheVerification.missingFiles);
+        unindexedFiles.addAll(cacheVerification.unindexedFiles);
+        changedFiles.addAll(cacheVerification.changedFiles);
+        corruptFiles.addAll(cacheVerification.corruptFiles);
+        verifiedCount += cacheVerification.verifiedCount;
+    }
+
+    /**
+     * Returns true if the manifests and the directories agree.
+     *
+     * @return the boolean
+     */
+    public boolean isConsistent() {
+        return missingFiles.isEmpty() && unindexedFiles.isEmpty() && changedFiles.isEmpty() && corruptFiles.isEmpty();
+    }
+
+    /**
+     * Gets the files that are in a manifest but not in its directory.
+     *
+     * @return the missing files
+     */
+    public List<File> getMissingFiles() {
+        return missingFiles;
+    }
+
+    /**
+     * Gets the segment files that are in a directory but not in its manifest.
+     *
+     * @return the unindexed files
+     */
+    public List<File> getUnindexedFiles() {
+        return unindexedFiles;
+    }
+
+    /**
+     * Gets the files whose length or last modified time differ from their manifest entry.
+     *
+     * @return the changed files
+     */
+    public List<File> getChangedFiles() {
+        return changedFiles;
+    }
+
+    /**
+     * Gets the files that aren't valid segment files or whose checksum differs from their manifest entry.
+     *
+     * @return the corrupt files
+     */
+    public List<File> getCorruptFiles() {
+        return corruptFiles;
+    }
+
+    /**
+     * Gets the number of manifest entries that were verified.
+     *
+     * @return the verified count
+     */
+    public int getVerifiedCount() {
+        return verifiedCount;
+    }
+
+    /**
+     * Increments the number of manifest entries that were verified.
+     */
+    void incrementVerifiedCount() {
+        verifiedCount++;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheVerification{" +
+                "verifiedCount=" + verifiedCount +
+                ", missingCount=" + missingFiles.size() +
+                ", unindexedCount=" + unindexedFiles.size() +
+                ", changedCount=" + changedFiles.size() +
+                ", corruptCount=" + corruptFiles.size() +
+                '}';
+    }
+}
@@ -0,0 +1,46 @@
+package net.jacobpeterson.data.cache;
+
+/**
+ * The enum Column kind. Defines how a {@link SegmentColumn} is packed in a {@link Segment}.
+ */
+public enum ColumnKind {
+
+    /**
+     * Long column kind.
+     */
+    LONG(8),
+
+    /**
+     * Double column kind.
+     */
+    DOUBLE(8),
+
+    /**
+     * Int column kind.
+     */
+    INT(4),
+
+    /**
+     * Bitmask column kind. This is stored as a <code>long</code> where each set bit is a condition code (e.g. the
+     * <code>c</code> array of a Polygon trade or quote). Codes that are not in the range of 0 to 63 are dropped.
+     */
+    BITMASK(8);
+
+    /**
+     * The width in bytes.
+     */
+    private final int width;
+
+    ColumnKind(int width) {
+        this.width = width;
+    }
+
+    /**
+     * Gets the width in bytes of a single value of this column kind.
+     *
+     * @return the width
+     */
+    public int getWidth() {
+        return width;
+    }
+}
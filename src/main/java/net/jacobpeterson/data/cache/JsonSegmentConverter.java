@@ -0,0 +1,235 @@
+package net.jacobpeterson.data.cache;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import net.jacobpeterson.data.BacktestData;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Used to convert the legacy per-day JSON data cache files (e.g. <code>YYYY-MM-DD.minute.aggregates.json</code>) into
+ * {@link Segment} files. This can be run as a one-shot converter with: <code>java ... JsonSegmentConverter
+ * [backtest_data_directory] [--delete-json]</code>.
+ */
+public class JsonSegmentConverter {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /**
+     * Reads a JSON data file into a {@link SegmentWriter}. See {@link #readJson(Reader, SegmentWriter)}.
+     *
+     * @param jsonFile    the json file
+     * @param segmentType the segment type
+     *
+     * @return the segment writer
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public static SegmentWriter readJson(File jsonFile, SegmentType segmentType) throws IOException {
+        SegmentWriter segmentWriter = new SegmentWriter(segmentType);
+        try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(jsonFile),
+                StandardCharsets.UTF_8))) {
+            readJson(reader, segmentWriter);
+        }
+        return segmentWriter;
+    }
+
+    /**
+     * Reads JSON into a {@link SegmentWriter}, appending rows to any that are already in it. The JSON must either be an
+     * array of Polygon objects or an object with a <code>results</code> or <code>ticks</code> array of Polygon objects
+     * (e.g. a serialized Polygon API response). Condition codes that don't fit in a bitmask are counted in {@link
+     * SegmentWriter#getDroppedConditionCount()}.
+     *
+     * @param reader        the reader
+     * @param segmentWriter the segment writer
+     *
+     * @return the number of rows read
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public static int readJson(Reader reader, SegmentWriter segmentWriter) throws IOException {
+        int initialRowCount = segmentWriter.getRowCount();
+
+        JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.setLenient(true);
+
+        if (jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                String name = jsonReader.nextName();
+                if ((name.equals("results") || name.equals("ticks")) &&
+                        jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+                    readJsonArray(jsonReader, segmentWriter);
+                } else {
+                    jsonReader.skipValue();
+                }
+            }
+            jsonReader.endObject();
+        } else {
+            readJsonArray(jsonReader, segmentWriter);
+        }
+
+        return segmentWriter.getRowCount() - initialRowCount;
+    }
+
+    /**
+     * Reads a JSON array of Polygon objects into the segment writer.
+     *
+     * @param jsonReader    the json reader
+     * @param segmentWriter the segment writer
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private static void readJsonArray(JsonReader jsonReader, SegmentWriter segmentWriter) throws IOException {
+        SegmentType segmentType = segmentWriter.getSegmentType();
+        TimeUnit jsonTimestampUnit = segmentType.getJsonTimestampUnit();
+
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+            segmentWriter.addRow();
+
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                SegmentColumn column = segmentType.getColumnOfJsonKey(jsonReader.nextName());
+                if (column == null || jsonReader.peek() == JsonToken.NULL) {
+                    jsonReader.skipValue();
+                    continue;
+                }
+
+                switch (column.getColumnKind()) {
+                    case LONG:
+                        long value = jsonReader.nextLong();
+                        segmentWriter.setLong(column, column == SegmentColumn.TIMESTAMP ?
+                                                      jsonTimestampUnit.toNanos(value) : value);
+                        break;
+                    case DOUBLE:
+                        segmentWriter.setDouble(column, jsonReader.nextDouble());
+                        break;
+                    case INT:
+                        segmentWriter.setInt(column, (int) jsonReader.nextLong());
+                        break;
+                    case BITMASK:
+                        jsonReader.beginArray();
+                        while (jsonReader.hasNext()) {
+                            segmentWriter.addCondition(column, jsonReader.nextInt());
+                        }
+                        jsonReader.endArray();
+                        break;
+                }
+            }
+            jsonReader.endObject();
+        }
+        jsonReader.endArray();
+    }
+
+    /**
+     * Converts a single JSON data file into a segment file next to it.
+     *
+     * @param jsonFile    the json file
+     * @param segmentType the segment type
+     * @param deleteJson  true to delete the JSON file after a successful conversion
+     *
+     * @return the segment file
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public static File convert(File jsonFile, SegmentType segmentType, boolean deleteJson) throws IOException {
+        String jsonFileName = jsonFile.getName();
+        File segmentFile = new File(jsonFile.getParentFile(), jsonFileName.substring(0,
+                jsonFileName.length() - segmentType.getJsonFileExtension().length()) +
+                segmentType.getFileExtension());
+
+        readJson(jsonFile, segmentType).write(segmentFile);
+
+        if (deleteJson && !jsonFile.delete()) {
+            LOGGER.warn("Could not delete {}", jsonFile);
+        }
+
+        return segmentFile;
+    }
+
+    /**
+     * Converts all the JSON data files in a data cache directory (in the layout of {@link BacktestData#getDataFile})
+     * into segment files. JSON files that already have a segment file are skipped.
+     *
+     * @param dataCacheDirectory the data cache directory
+     * @param deleteJson         true to delete the JSON files after a successful conversion
+     *
+     * @return the number of converted files
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public static int convertDataCache(File dataCacheDirectory, boolean deleteJson) throws IOException {
+        File[] tickerDirectories = dataCacheDirectory.listFiles(File::isDirectory);
+        if (tickerDirectories == null) {
+            return 0;
+        }
+
+        int convertedCount = 0;
+        for (File tickerDirectory : tickerDirectories) {
+            File[] files = tickerDirectory.listFiles(File::isFile);
+            if (files == null) {
+                continue;
+            }
+
+            for (File file : files) {
+                for (SegmentType segmentType : SegmentType.values()) {
+                    String jsonFileName = file.getName();
+                    if (!jsonFileName.endsWith("." + segmentType.getJsonFileExtension())) {
+                        continue;
+                    }
+
+                    File segmentFile = new File(tickerDirectory, jsonFileName.substring(0,
+                            jsonFileName.length() - segmentType.getJsonFileExtension().length()) +
+                            segmentType.getFileExtension());
+                    if (segmentFile.exists()) {
+                        LOGGER.debug("Skipping {} since {} exists", file, segmentFile);
+                        continue;
+                    }
+
+                    convert(file, segmentType, deleteJson);
+                    convertedCount++;
+                }
+            }
+
+            LOGGER.info("Converted the data cache of {}", tickerDirectory.getName());
+        }
+
+        return convertedCount;
+    }
+
+    /**
+     * Runs a one-shot conversion of a data cache.
+     *
+     * @param args <code>[backtest_data_directory] [--delete-json]</code>
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public static void main(String[] args) throws IOException {
+        File backtestDataDirectory = new File(System.getProperty("user.home"),
+                BacktestData.BACKTEST_DATA_DIRECTORY_NAME);
+        boolean deleteJson = false;
+
+        for (String arg : args) {
+            if (arg.equals("--delete-json")) {
+                deleteJson = true;
+            } else {
+                backtestDataDirectory = new File(arg);
+            }
+        }
+
+        File dataCacheDirectory = new File(backtestDataDirectory, BacktestData.DATA_CACHE_DIRECTORY_NAME);
+        LOGGER.info("Converting JSON data cache in {}", dataCacheDirectory);
+        int convertedCount = convertDataCache(dataCacheDirectory, deleteJson);
+        LOGGER.info("Converted {} JSON data files", convertedCount);
+    }
+}
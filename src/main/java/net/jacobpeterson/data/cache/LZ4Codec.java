@@ -0,0 +1,256 @@
+package net.jacobpeterson.data.cache;
+
+import java.io.IOException;
+
+/**
+ * A pure Java implementation of the <a href="https://github.com/lz4/lz4/blob/dev/doc/lz4_Block_format.md">LZ4 block
+ * format</a> (a single-pass hash table compressor and a bounds-checked decompressor). It trades some compression ratio
+ * for speed which makes it suitable for decompressing segment blocks on every read.
+ */
+final class LZ4Codec {
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MATCH_FIND_LIMIT = 12;
+    private static final int MAX_OFFSET = 0xFFFF;
+    private static final int HASH_LOG = 12;
+    private static final int SKIP_TRIGGER = 6;
+    private static final int RUN_MASK = 0x0F;
+
+    private LZ4Codec() {}
+
+    /**
+     * Gets the maximum compressed length of a source length.
+     *
+     * @param length the source length
+     *
+     * @return the max compressed length
+     */
+    static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compresses bytes.
+     *
+     * @param source            the source
+     * @param sourceLength      the source length
+     * @param destination       the destination (at least {@link #maxCompressedLength(int)} long)
+     * @param destinationOffset the destination offset
+     *
+     * @return the compressed length
+     */
+    static int compress(byte[] source, int sourceLength, byte[] destination, int destinationOffset) {
+        int[] hashTable = new int[1 << HASH_LOG];
+        int sourcePosition = 0;
+        int anchor = 0;
+        int destinationPosition = destinationOffset;
+
+        if (sourceLength > MATCH_FIND_LIMIT) {
+            int matchStartLimit = sourceLength - MATCH_FIND_LIMIT;
+            int matchEndLimit = sourceLength - LAST_LITERALS;
+            sourcePosition = 1;
+
+            while (sourcePosition < matchStartLimit) {
+                int sequence = readInt(source, sourcePosition);
+                int hash = hash(sequence);
+                int reference = hashTable[hash];
+                hashTable[hash] = sourcePosition;
+
+                if (sourcePosition - reference > MAX_OFFSET || readInt(source, reference) != sequence ||
+                        reference >= sourcePosition) {
+                    sourcePosition += 1 + ((sourcePosition - anchor) >>> SKIP_TRIGGER);
+                    continue;
+                }
+
+                while (sourcePosition > anchor && reference > 0 &&
+                        source[sourcePosition - 1] == source[reference - 1]) {
+                    sourcePosition--;
+                    reference--;
+                }
+
+                int matchLength = MIN_MATCH;
+                while (sourcePosition + matchLength < matchEndLimit &&
+                        source[sourcePosition + matchLength] == source[reference + matchLength]) {
+                    matchLength++;
+                }
+
+                destinationPosition = writeSequence(source, anchor, sourcePosition - anchor, destination,
+                        destinationPosition, sourcePosition - reference, matchLength);
+                sourcePosition += matchLength;
+                anchor = sourcePosition;
+
+                if (sourcePosition - 2 > 0 && sourcePosition < matchStartLimit) {
+                    hashTable[hash(readInt(source, sourcePosition - 2))] = sourcePosition - 2;
+                }
+            }
+        }
+
+        return writeSequence(source, anchor, sourceLength - anchor, destination, destinationPosition, 0, 0) -
+                destinationOffset;
+    }
+
+    /**
+     * Writes a sequence of literals and a match (or only literals if <code>matchLength</code> is 0).
+     *
+     * @param source              the source
+     * @param literalOffset       the literal offset
+     * @param literalLength       the literal length
+     * @param destination         the destination
+     * @param destinationPosition the destination position
+     * @param matchOffset         the match offset (distance back from the match)
+     * @param matchLength         the match length
+     *
+     * @return the new destination position
+     */
+    private static int writeSequence(byte[] source, int literalOffset, int literalLength, byte[] destination,
+            int destinationPosition, int matchOffset, int matchLength) {
+        int tokenPosition = destinationPosition++;
+        int token = Math.min(literalLength, RUN_MASK) << 4;
+        if (literalLength >= RUN_MASK) {
+            destinationPosition = writeLength(destination, destinationPosition, literalLength - RUN_MASK);
+        }
+        System.arraycopy(source, literalOffset, destination, destinationPosition, literalLength);
+        destinationPosition += literalLength;
+
+        if (matchLength > 0) {
+            destination[destinationPosition++] = (byte) matchOffset;
+            destination[destinationPosition++] = (byte) (matchOffset >>> 8);
+            int extraMatchLength = matchLength - MIN_MATCH;
+            token |= Math.min(extraMatchLength, RUN_MASK);
+            if (extraMatchLength >= RUN_MASK) {
+                destinationPosition = writeLength(destination, destinationPosition, extraMatchLength - RUN_MASK);
+            }
+        }
+
+        destination[tokenPosition] = (byte) token;
+        return destinationPosition;
+    }
+
+    /**
+     * Writes the extra bytes of a literal or match length.
+     *
+     * @param destination         the destination
+     * @param destinationPosition the destination position
+     * @param length              the remaining length
+     *
+     * @return the new destination position
+     */
+    private static int writeLength(byte[] destination, int destinationPosition, int length) {
+        while (length >= 0xFF) {
+            destination[destinationPosition++] = (byte) 0xFF;
+            length -= 0xFF;
+        }
+        destination[destinationPosition++] = (byte) length;
+        return destinationPosition;
+    }
+
+    /**
+     * Decompresses bytes.
+     *
+     * @param source            the source
+     * @param sourceOffset      the source offset
+     * @param sourceLength      the source length
+     * @param destination       the destination
+     * @param destinationLength the exact decompressed length
+     *
+     * @throws IOException thrown if the compressed bytes are corrupt
+     */
+    static void decompress(byte[] source, int sourceOffset, int sourceLength, byte[] destination,
+            int destinationLength) throws IOException {
+        int sourcePosition = sourceOffset;
+        int sourceEnd = sourceOffset + sourceLength;
+        int destinationPosition = 0;
+
+        while (sourcePosition < sourceEnd) {
+            int token = source[sourcePosition++] & 0xFF;
+
+            int literalLength = token >>> 4;
+            if (literalLength == RUN_MASK) {
+                int lengthByte;
+                do {
+                    if (sourcePosition >= sourceEnd) {
+                        throw new IOException("Corrupt LZ4 block: truncated literal length");
+                    }
+                    lengthByte = source[sourcePosition++] & 0xFF;
+                    literalLength += lengthByte;
+                } while (lengthByte == 0xFF && literalLength <= destinationLength); // Stop before overflowing
+            }
+            if (literalLength > sourceEnd - sourcePosition ||
+                    literalLength > destinationLength - destinationPosition) {
+                throw new IOException("Corrupt LZ4 block: literals out of bounds");
+            }
+            System.arraycopy(source, sourcePosition, destination, destinationPosition, literalLength);
+            sourcePosition += literalLength;
+            destinationPosition += literalLength;
+
+            if (sourcePosition == sourceEnd) {
+                break; // The last sequence only has literals
+            }
+
+            if (sourceEnd - sourcePosition < 2) {
+                throw new IOException("Corrupt LZ4 block: truncated match offset");
+            }
+            int matchOffset = (source[sourcePosition] & 0xFF) | (source[sourcePosition + 1] & 0xFF) << 8;
+            sourcePosition += 2;
+            if (matchOffset == 0 || matchOffset > destinationPosition) {
+                throw new IOException("Corrupt LZ4 block: match offset out of bounds");
+            }
+
+            int matchLength = token & RUN_MASK;
+            if (matchLength == RUN_MASK) {
+                int lengthByte;
+                do {
+                    if (sourcePosition >= sourceEnd) {
+                        throw new IOException("Corrupt LZ4 block: truncated match length");
+                    }
+                    lengthByte = source[sourcePosition++] & 0xFF;
+                    matchLength += lengthByte;
+                } while (lengthByte == 0xFF && matchLength <= destinationLength);
+            }
+            matchLength += MIN_MATCH;
+            if (matchLength > destinationLength - destinationPosition) {
+                throw new IOException("Corrupt LZ4 block: match out of bounds");
+            }
+
+            int matchPosition = destinationPosition - matchOffset;
+            if (matchOffset >= matchLength) {
+                System.arraycopy(destination, matchPosition, destination, destinationPosition, matchLength);
+                destinationPosition += matchLength;
+            } else {
+                for (int index = 0; index < matchLength; index++) { // Overlapping matches repeat a pattern
+                    destination[destinationPosition++] = destination[matchPosition++];
+                }
+            }
+        }
+
+        if (destinationPosition != destinationLength) {
+            throw new IOException("Corrupt LZ4 block: decompressed " + destinationPosition + " of " +
+                    destinationLength + " bytes");
+        }
+    }
+
+    /**
+     * Reads a little-endian int.
+     *
+     * @param bytes    the bytes
+     * @param position the position
+     *
+     * @return the int
+     */
+    private static int readInt(byte[] bytes, int position) {
+        return (bytes[position] & 0xFF) | (bytes[position + 1] & 0xFF) << 8 | (bytes[position + 2] & 0xFF) << 16 |
+                (bytes[position + 3] & 0xFF) << 24;
+    }
+
+    /**
+     * Hashes a 4 byte sequence.
+     *
+     * @param sequence the sequence
+     *
+     * @return the hash
+     */
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+}
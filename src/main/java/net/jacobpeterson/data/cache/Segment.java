@@ -0,0 +1,557 @@
+package net.jacobpeterson.data.cache;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A read-only binary columnar segment of market data (e.g. one day of aggregates, trades, or quotes of a ticker). See
+ * {@link SegmentFormat} for the file layout. Rows are sorted by timestamp.
+ * <p>
+ * The blocks of a {@link SegmentFormat#FLAG_COMPRESSED} segment are decoded on first access, so reading a few rows
+ * of a segment (e.g. after seeking to a time of day) only decodes the blocks of those rows. Use {@link #decode()} to
+ * decode every block up front (e.g. on a read-ahead thread).
+ * <p>
+ * This is thread safe since all reads are absolute.
+ */
+public class Segment {
+
+    /**
+     * The maximum size of a single {@link MappedByteBuffer} region used by {@link #map(File)}.
+     */
+    private static final long MAX_MAPPED_REGION_SIZE = 1L << 30;
+
+    /**
+     * The last timestamp of a segment that was read from part of a segment file, which is read from its last row on
+     * first access.
+     */
+    static final long UNKNOWN_TIMESTAMP = Long.MIN_VALUE;
+
+    private final SegmentType segmentType;
+    private final int rowCount;
+    private final int blockRowCount;
+    private final long firstTimestamp;
+    private final long lastTimestamp;
+    private final long[] blockFirstTimestamps;
+    private final AtomicReferenceArray<ByteBuffer> blocks;
+    private final ByteBuffer[] storedBlocks;
+    private final int[] rawBlockLengths;
+
+    /**
+     * Instantiates a new Segment.
+     *
+     * @param segmentType          the segment type
+     * @param rowCount             the row count
+     * @param blockRowCount        the block row count
+     * @param firstTimestamp       the first timestamp
+     * @param lastTimestamp        the last timestamp
+     * @param blockFirstTimestamps the block first timestamps
+     * @param blocks               the blocks (raw/uncompressed with {@link SegmentFormat#BYTE_ORDER})
+     */
+    public Segment(SegmentType segmentType, int rowCount, int blockRowCount, long firstTimestamp,
+            long lastTimestamp, long[] blockFirstTimestamps, ByteBuffer[] blocks) {
+        this.segmentType = segmentType;
+        this.rowCount = rowCount;
+        this.blockRowCount = blockRowCount;
+        this.firstTimestamp = firstTimestamp;
+        this.lastTimestamp = lastTimestamp;
+        this.blockFirstTimestamps = blockFirstTimestamps;
+        this.blocks = new AtomicReferenceArray<>(blocks);
+        this.storedBlocks = null;
+        this.rawBlockLengths = null;
+    }
+
+    /**
+     * Instantiates a new {@link SegmentFormat#FLAG_COMPRESSED} Segment whose blocks are decoded on first access.
+     *
+     * @param segmentType          the segment type
+     * @param rowCount             the row count
+     * @param blockRowCount        the block row count
+     * @param firstTimestamp       the first timestamp
+     * @param lastTimestamp        the last timestamp
+     * @param blockFirstTimestamps the block first timestamps
+     * @param storedBlocks         the stored blocks (encoded by {@link BlockCodec})
+     * @param rawBlockLengths      the raw block lengths
+     */
+    Segment(SegmentType segmentType, int rowCount, int blockRowCount, long firstTimestamp, long lastTimestamp,
+            long[] blockFirstTimestamps, ByteBuffer[] storedBlocks, int[] rawBlockLengths) {
+        this.segmentType = segmentType;
+        this.rowCount = rowCount;
+        this.blockRowCount = blockRowCount;
+        this.firstTimestamp = firstTimestamp;
+        this.lastTimestamp = lastTimestamp;
+        this.blockFirstTimestamps = blockFirstTimestamps;
+        this.blocks = new AtomicReferenceArray<>(storedBlocks.length);
+        this.storedBlocks = storedBlocks;
+        this.rawBlockLengths = rawBlockLengths;
+    }
+
+    /**
+     * Reads a segment file into heap memory.
+     *
+     * @param file the file
+     *
+     * @return the segment
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public static Segment read(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel fileChannel = randomAccessFile.getChannel()) {
+            SegmentHeader header = SegmentHeader.read(fileChannel, file);
+
+            ByteBuffer[] blocks = new ByteBuffer[header.getBlockCount()];
+            for (int blockIndex = 0; blockIndex < blocks.length; blockIndex++) {
+                ByteBuffer block = ByteBuffer.allocate(header.getBlockStoredLength(blockIndex))
+                        .order(SegmentFormat.BYTE_ORDER);
+                readFully(fileChannel, block, header.getBlockOffset(blockIndex));
+                block.flip();
+                blocks[blockIndex] = block;
+            }
+
+            return header.toSegment(blocks);
+        }
+    }
+
+    /**
+     * Reads the blocks of a segment file that hold the rows within a time range into heap memory. Only the header, the
+     * block index, and those blocks are read from the file so this is much cheaper than {@link #read(File)} when the
+     * time range is a small part of the segment (e.g. the first minutes of a day of trades). The returned segment
+     * holds every row of those blocks, so it may also hold some rows just outside of the time range, and its rows are
+     * numbered from the first block that was read.
+     *
+     * @param file          the file
+     * @param fromTimestamp the from timestamp (epoch nanoseconds, inclusive)
+     * @param toTimestamp   the to timestamp (epoch nanoseconds, exclusive)
+     *
+     * @return the segment
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public static Segment read(File file, long fromTimestamp, long toTimestamp) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel fileChannel = randomAccessFile.getChannel()) {
+            SegmentHeader header = SegmentHeader.read(fileChannel, file);
+
+            int blockCount = header.getBlockCount();
+            if (blockCount == 0 || header.getLastTimestamp() < fromTimestamp ||
+                    header.getFirstTimestamp() >= toTimestamp) {
+                return header.toSegment(new ByteBuffer[0], 0, 0);
+            }
+
+            // Rows with the from timestamp may also be at the end of the block before the first block that starts at
+            // or after it
+            int fromBlockIndex = Math.max(header.findBlock(fromTimestamp) - 1, 0);
+            int toBlockIndex = header.findBlock(toTimestamp);
+
+            // The blocks are contiguous in the file so they are read with a single read
+            long fromOffset = header.getBlockOffset(fromBlockIndex);
+            long toOffset = header.getBlockOffset(toBlockIndex - 1) + header.getBlockStoredLength(toBlockIndex - 1);
+            ByteBuffer region = ByteBuffer.allocate((int) (toOffset - fromOffset)).order(SegmentFormat.BYTE_ORDER);
+            readFully(fileChannel, region, fromOffset);
+
+            ByteBuffer[] blocks = new ByteBuffer[toBlockIndex - fromBlockIndex];
+            for (int blockIndex = fromBlockIndex; blockIndex < toBlockIndex; blockIndex++) {
+                int blockPosition = (int) (header.getBlockOffset(blockIndex) - fromOffset);
+                region.limit(blockPosition + header.getBlockStoredLength(blockIndex));
+                region.position(blockPosition);
+                blocks[blockIndex - fromBlockIndex] = region.slice().order(SegmentFormat.BYTE_ORDER);
+            }
+
+            return header.toSegment(blocks, fromBlockIndex, toBlockIndex);
+        }
+    }
+
+    /**
+     * Memory-maps a segment file. The blocks of the returned segment are slices of {@link MappedByteBuffer}s so rows are
+     * read directly from the OS page cache without being copied onto the Java heap and the pages are shared between all
+     * segments (and processes) that map the same file. The mapping stays valid until the segment is garbage collected.
+     * The blocks of a compressed segment file are decoded from the mapping onto the heap on first access.
+     *
+     * @param file the file
+     *
+     * @return the segment
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public static Segment map(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel fileChannel = randomAccessFile.getChannel()) {
+            SegmentHeader header = SegmentHeader.read(fileChannel, file);
+            long fileSize = fileChannel.size();
+
+            ByteBuffer[] blocks = new ByteBuffer[header.getBlockCount()];
+            MappedByteBuffer region = null;
+            long regionOffset = 0;
+            for (int blockIndex = 0; blockIndex < blocks.length; blockIndex++) {
+                long blockOffset = header.getBlockOffset(blockIndex);
+                int blockLength = header.getBlockStoredLength(blockIndex);
+                if (blockOffset + blockLength > fileSize) {
+                    throw new EOFException("Segment file is truncated!");
+                }
+
+                // Map a new region if this block isn't inside of the current one
+                if (region == null || blockOffset + blockLength > regionOffset + region.capacity()) {
+                    regionOffset = blockOffset;
+                    region = fileChannel.map(FileChannel.MapMode.READ_ONLY, regionOffset,
+                            Math.min(MAX_MAPPED_REGION_SIZE, fileSize - regionOffset));
+                }
+
+                ByteBuffer block = region.duplicate();
+                block.position((int) (blockOffset - regionOffset));
+                block.limit(block.position() + blockLength);
+                blocks[blockIndex] = block.slice().order(SegmentFormat.BYTE_ORDER);
+            }
+
+            return header.toSegment(blocks);
+        }
+    }
+
+    /**
+     * Reads from the file channel until the buffer is full.
+     *
+     * @param fileChannel the file channel
+     * @param buffer      the buffer
+     * @param position    the file position
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    static void readFully(FileChannel fileChannel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = fileChannel.read(buffer, position);
+            if (read == -1) {
+                throw new EOFException("Segment file is truncated!");
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Gets the byte offset of a value in its block.
+     *
+     * @param blockIndex  the block index
+     * @param columnIndex the column index
+     * @param row         the row
+     *
+     * @return the offset
+     */
+    private int offsetOf(int blockIndex, int columnIndex, int row) {
+        int rowInBlock = row - blockIndex * blockRowCount;
+        return getRowsInBlock(blockIndex) * segmentType.getColumnWidthPrefix(columnIndex) +
+                rowInBlock * segmentType.getColumn(columnIndex).getColumnKind().getWidth();
+    }
+
+    /**
+     * Gets a long (or {@link ColumnKind#BITMASK}) value.
+     *
+     * @param column the column
+     * @param row    the row
+     *
+     * @return the long
+     */
+    public long getLong(SegmentColumn column, int row) {
+        int blockIndex = row / blockRowCount;
+        return getBlock(blockIndex).getLong(offsetOf(blockIndex, segmentType.getColumnIndex(column), row));
+    }
+
+    /**
+     * Gets a double value.
+     *
+     * @param column the column
+     * @param row    the row
+     *
+     * @return the double
+     */
+    public double getDouble(SegmentColumn column, int row) {
+        int blockIndex = row / blockRowCount;
+        return getBlock(blockIndex).getDouble(offsetOf(blockIndex, segmentType.getColumnIndex(column), row));
+    }
+
+    /**
+     * Gets an int value.
+     *
+     * @param column the column
+     * @param row    the row
+     *
+     * @return the int
+     */
+    public int getInt(SegmentColumn column, int row) {
+        int blockIndex = row / blockRowCount;
+        return getBlock(blockIndex).getInt(offsetOf(blockIndex, segmentType.getColumnIndex(column), row));
+    }
+
+    /**
+     * Gets the timestamp (epoch nanoseconds) of a row.
+     *
+     * @param row the row
+     *
+     * @return the timestamp
+     */
+    public long getTimestamp(int row) {
+        int blockIndex = row / blockRowCount;
+        return getBlock(blockIndex).getLong((row - blockIndex * blockRowCount) * ColumnKind.LONG.getWidth());
+    }
+
+    /**
+     * Finds the first row whose timestamp is at or after a timestamp with a binary search over the block index and
+     * then over the timestamps of a single block, so only that block is read (or decoded if this segment is
+     * compressed).
+     *
+     * @param timestamp the timestamp (epoch nanoseconds)
+     *
+     * @return the row ({@link #getRowCount()} if every row is before the timestamp)
+     */
+    public int findRow(long timestamp) {
+        if (rowCount == 0 || timestamp <= firstTimestamp) {
+            return 0;
+        }
+
+        int blockIndex = 0;
+        int highBlockIndex = blockFirstTimestamps.length;
+        while (blockIndex < highBlockIndex) { // Find the first block that starts at or after the timestamp
+            int middleBlockIndex = (blockIndex + highBlockIndex) >>> 1;
+            if (blockFirstTimestamps[middleBlockIndex] < timestamp) {
+                blockIndex = middleBlockIndex + 1;
+            } else {
+                highBlockIndex = middleBlockIndex;
+            }
+        }
+        if (blockIndex == 0) {
+            return 0;
+        }
+
+        // The row is either in the previous block or is the first row of the found block
+        blockIndex--;
+        ByteBuffer block = getBlock(blockIndex);
+        int rowInBlock = 0;
+        int highRowInBlock = getRowsInBlock(blockIndex);
+        while (rowInBlock < highRowInBlock) {
+            int middleRowInBlock = (rowInBlock + highRowInBlock) >>> 1;
+            if (block.getLong(middleRowInBlock * ColumnKind.LONG.getWidth()) < timestamp) {
+                rowInBlock = middleRowInBlock + 1;
+            } else {
+                highRowInBlock = middleRowInBlock;
+            }
+        }
+        return blockIndex * blockRowCount + rowInBlock;
+    }
+
+    /**
+     * Converts a row back into a Polygon JSON object (with the timestamp in the unit that Polygon uses) so that it can
+     * be deserialized into an alpaca-java POJO via {@link net.jacobpeterson.util.GsonUtil#GSON}.
+     *
+     * @param row the row
+     *
+     * @return the json object
+     */
+    public JsonObject toJsonObject(int row) {
+        JsonObject jsonObject = new JsonObject();
+        for (int columnIndex = 0; columnIndex < segmentType.getColumnCount(); columnIndex++) {
+            SegmentColumn column = segmentType.getColumn(columnIndex);
+
+            switch (column.getColumnKind()) {
+                case LONG:
+                    long value = getLong(column, row);
+                    if (column == SegmentColumn.TIMESTAMP) {
+                        value = segmentType.getJsonTimestampUnit().convert(value, TimeUnit.NANOSECONDS);
+                    }
+                    jsonObject.addProperty(column.getJsonKey(), value);
+                    break;
+                case DOUBLE:
+                    jsonObject.addProperty(column.getJsonKey(), getDouble(column, row));
+                    break;
+                case INT:
+                    jsonObject.addProperty(column.getJsonKey(), getInt(column, row));
+                    break;
+                case BITMASK:
+                    JsonArray codes = new JsonArray();
+                    long bitmask = getLong(column, row);
+                    while (bitmask != 0) {
+                        codes.add(Long.numberOfTrailingZeros(bitmask));
+                        bitmask &= bitmask - 1;
+                    }
+                    jsonObject.add(column.getJsonKey(), codes);
+                    break;
+            }
+        }
+        return jsonObject;
+    }
+
+    /**
+     * Gets the number of rows in a block.
+     *
+     * @param blockIndex the block index
+     *
+     * @return the rows in block
+     */
+    public int getRowsInBlock(int blockIndex) {
+        return blockIndex == blocks.length() - 1 ? rowCount - blockIndex * blockRowCount : blockRowCount;
+    }
+
+    /**
+     * Gets the approximate number of bytes that this segment holds once all of its blocks are decoded (including its
+     * stored blocks if it's compressed). This is used to bound the size of a {@link SegmentCache}.
+     *
+     * @return the memory size
+     */
+    public long getMemorySize() {
+        long memorySize = (long) rowCount * segmentType.getRowWidth();
+        if (storedBlocks != null) {
+            for (ByteBuffer storedBlock : storedBlocks) {
+                memorySize += storedBlock.capacity();
+            }
+        }
+        return memorySize;
+    }
+
+    /**
+     * Gets segment type.
+     *
+     * @return the segment type
+     */
+    public SegmentType getSegmentType() {
+        return segmentType;
+    }
+
+    /**
+     * Gets row count.
+     *
+     * @return the row count
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Gets block row count.
+     *
+     * @return the block row count
+     */
+    public int getBlockRowCount() {
+        return blockRowCount;
+    }
+
+    /**
+     * Gets block count.
+     *
+     * @return the block count
+     */
+    public int getBlockCount() {
+        return blocks.length();
+    }
+
+    /**
+     * Gets the first timestamp (epoch nanoseconds).
+     *
+     * @return the first timestamp
+     */
+    public long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    /**
+     * Gets the last timestamp (epoch nanoseconds).
+     *
+     * @return the last timestamp
+     */
+    public long getLastTimestamp() {
+        return lastTimestamp == UNKNOWN_TIMESTAMP && rowCount > 0 ? getTimestamp(rowCount - 1) : lastTimestamp;
+    }
+
+    /**
+     * Gets the first timestamp (epoch nanoseconds) of a block.
+     *
+     * @param blockIndex the block index
+     *
+     * @return the block first timestamp
+     */
+    public long getBlockFirstTimestamp(int blockIndex) {
+        return blockFirstTimestamps[blockIndex];
+    }
+
+    /**
+     * Gets the raw block buffer, decoding it first if this segment is compressed and it hasn't been decoded yet. Don't
+     * modify its position or limit since it is shared, use {@link ByteBuffer#duplicate()} instead.
+     *
+     * @param blockIndex the block index
+     *
+     * @return the block
+     *
+     * @throws UncheckedIOException thrown if a compressed block is corrupt
+     */
+    public ByteBuffer getBlock(int blockIndex) {
+        ByteBuffer block = blocks.get(blockIndex);
+        return block != null ? block : decodeBlock(blockIndex);
+    }
+
+    /**
+     * Decodes a compressed block. Concurrent decodes of the same block are harmless since they decode the same bytes
+     * and only the first is kept.
+     *
+     * @param blockIndex the block index
+     *
+     * @return the block
+     */
+    private ByteBuffer decodeBlock(int blockIndex) {
+        ByteBuffer block;
+        try {
+            block = BlockCodec.decode(segmentType, storedBlocks[blockIndex], getRowsInBlock(blockIndex),
+                    rawBlockLengths[blockIndex]);
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Block " + blockIndex + " of a " + segmentType + " segment is corrupt",
+                    exception);
+        }
+        return blocks.compareAndSet(blockIndex, null, block) ? block : blocks.get(blockIndex);
+    }
+
+    /**
+     * Decodes every block of this segment that hasn't been decoded yet. This does nothing if this segment isn't
+     * compressed.
+     *
+     * @return this segment
+     *
+     * @throws UncheckedIOException thrown if a compressed block is corrupt
+     */
+    public Segment decode() {
+        return decode(0, rowCount);
+    }
+
+    /**
+     * Decodes the blocks of a range of rows of this segment that haven't been decoded yet. This does nothing if this
+     * segment isn't compressed.
+     *
+     * @param fromRow the from row (inclusive)
+     * @param toRow   the to row (exclusive)
+     *
+     * @return this segment
+     *
+     * @throws UncheckedIOException thrown if a compressed block is corrupt
+     */
+    public Segment decode(int fromRow, int toRow) {
+        if (storedBlocks != null && fromRow < toRow) {
+            for (int blockIndex = fromRow / blockRowCount; blockIndex <= (toRow - 1) / blockRowCount; blockIndex++) {
+                getBlock(blockIndex);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns true if this segment was read from a {@link SegmentFormat#FLAG_COMPRESSED} segment file.
+     *
+     * @return the boolean
+     */
+    public boolean isCompressed() {
+        return storedBlocks != null;
+    }
+}
@@ -0,0 +1,443 @@
+package net.jacobpeterson.data.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link SegmentLoader} that keeps decoded {@link Segment}s in memory up to a maximum number of bytes (see {@link
+ * Segment#getMemorySize()}) so that segment files that are replayed again and again (e.g. by the backtests of a
+ * parameter sweep) are only read and decoded once. Segment files are keyed by their path, which encodes the ticker,
+ * date, and data type of the segment. Loading is single-flight: if several threads ask for the same file at the same
+ * time, one of them loads it and the others wait for that result.
+ * <p>
+ * Eviction uses a simplified W-TinyLFU policy: new segments enter a small LRU window and segments leaving the window
+ * are only admitted into the main LRU region if they have been requested more often (according to a count-min
+ * frequency sketch) than the segment that they would evict. Unlike plain LRU, this keeps a stable subset of the days
+ * cached when a loop of backtests sweeps over more days than fit into the cache.
+ * <p>
+ * One cache can be shared by every {@link net.jacobpeterson.data.BacktestData} of a process (see {@link
+ * #getSharedInstance()}). Files that are rewritten through {@link net.jacobpeterson.data.BacktestData} are invalidated
+ * automatically.
+ * <p>
+ * This is thread safe.
+ */
+public class SegmentCache implements SegmentLoader {
+
+    private static final int WINDOW_PERCENTAGE = 1;
+    private static SegmentCache sharedInstance;
+
+    private final SegmentLoader delegate;
+    private final ConcurrentHashMap<File, CompletableFuture<Segment>> segmentFutures;
+    private final LinkedHashMap<File, CachedSegment> windowSegments;
+    private final LinkedHashMap<File, CachedSegment> mainSegments;
+    private final FrequencySketch frequencySketch;
+    private final AtomicLong hitCount;
+    private final AtomicLong missCount;
+    private final AtomicLong evictionCount;
+    private long maximumBytes;
+    private long windowBytes;
+    private long mainBytes;
+
+    /**
+     * Instantiates a new Segment cache that reads segment files onto the heap with {@link Segment#read(File)}.
+     *
+     * @param maximumBytes the maximum bytes
+     */
+    public SegmentCache(long maximumBytes) {
+        this(maximumBytes, Segment::read);
+    }
+
+    /**
+     * Instantiates a new Segment cache.
+     *
+     * @param maximumBytes the maximum bytes
+     * @param delegate     the delegate that actually loads segments
+     */
+    public SegmentCache(long maximumBytes, SegmentLoader delegate) {
+        if (maximumBytes < 0) {
+            throw new IllegalArgumentException("Maximum bytes can't be negative!");
+        }
+
+        this.delegate = delegate;
+        this.segmentFutures = new ConcurrentHashMap<>();
+        this.windowSegments = new LinkedHashMap<>(16, 0.75f, true);
+        this.mainSegments = new LinkedHashMap<>(16, 0.75f, true);
+        this.frequencySketch = new FrequencySketch();
+        this.hitCount = new AtomicLong();
+        this.missCount = new AtomicLong();
+        this.evictionCount = new AtomicLong();
+        this.maximumBytes = maximumBytes;
+    }
+
+    /**
+     * Gets the process-wide segment cache, creating it on first use with a quarter of the maximum heap size.
+     *
+     * @return the shared instance
+     */
+    public static synchronized SegmentCache getSharedInstance() {
+        if (sharedInstance == null) {
+            sharedInstance = new SegmentCache(getDefaultMaximumBytes());
+        }
+        return sharedInstance;
+    }
+
+    /**
+     * Gets the default maximum bytes of a segment cache: a quarter of the maximum heap size.
+     *
+     * @return the default maximum bytes
+     */
+    public static long getDefaultMaximumBytes() {
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    @Override
+    public Segment load(File file) throws IOException {
+        Segment segment = get(file, true);
+        if (segment != null) {
+            return segment;
+        }
+
+        CompletableFuture<Segment> segmentFuture = segmentFutures.get(file);
+        if (segmentFuture == null) {
+            CompletableFuture<Segment> newSegmentFuture = new CompletableFuture<>();
+            segmentFuture = segmentFutures.putIfAbsent(file, newSegmentFuture);
+
+            if (segmentFuture == null) { // This thread won the race, so load the segment
+                // The segment may have been cached between the lookup above and winning the race
+                segment = get(file, false);
+                if (segment != null) {
+                    hitCount.incrementAndGet();
+                    segmentFutures.remove(file, newSegmentFuture);
+                    newSegmentFuture.complete(segment);
+                    return segment;
+                }
+
+                missCount.incrementAndGet();
+                try {
+                    segment = delegate.load(file);
+                } catch (IOException | RuntimeException exception) {
+                    segmentFutures.remove(file, newSegmentFuture);
+                    newSegmentFuture.completeExceptionally(exception);
+                    throw exception;
+                }
+
+                synchronized (this) {
+                    if (segmentFutures.remove(file, newSegmentFuture)) { // Unless invalidated while loading
+                        put(file, segment);
+                    }
+                }
+                newSegmentFuture.complete(segment);
+                return segment;
+            }
+        }
+
+        hitCount.incrementAndGet();
+        try {
+            return segmentFuture.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + file, exception);
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException) {
+                throw new IOException(cause.getMessage(), cause);
+            } else if (cause instanceof UncheckedIOException) {
+                throw new IOException(cause.getMessage(), cause.getCause());
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Gets a cached segment.
+     *
+     * @param file   the file
+     * @param record true to record the request in the hit count and the frequency sketch
+     *
+     * @return the segment (null if it isn't cached)
+     */
+    private synchronized Segment get(File file, boolean record) {
+        if (record) {
+            frequencySketch.increment(file);
+        }
+
+        CachedSegment cachedSegment = windowSegments.get(file);
+        if (cachedSegment == null) {
+            cachedSegment = mainSegments.get(file);
+        }
+        if (cachedSegment == null) {
+            return null;
+        }
+
+        if (record) {
+            hitCount.incrementAndGet();
+        }
+        return cachedSegment.segment;
+    }
+
+    /**
+     * Puts a loaded segment into the window and evicts segments until the cache is within its maximum bytes again.
+     *
+     * @param file    the file
+     * @param segment the segment
+     */
+    private void put(File file, Segment segment) {
+        long bytes = segment.getMemorySize();
+        if (bytes > maximumBytes) {
+            return; // It would evict everything else
+        }
+
+        windowSegments.put(file, new CachedSegment(segment, bytes));
+        windowBytes += bytes;
+        evict();
+    }
+
+    /**
+     * Moves segments from the window to the main region (if they are admitted) until the window is within its maximum
+     * bytes, then evicts from the main region until the cache is within its maximum bytes.
+     */
+    private void evict() {
+        long maximumWindowBytes = maximumBytes * WINDOW_PERCENTAGE / 100;
+        long maximumMainBytes = maximumBytes - maximumWindowBytes;
+
+        Iterator<Map.Entry<File, CachedSegment>> windowIterator = windowSegments.entrySet().iterator();
+        while (windowBytes > maximumWindowBytes && windowIterator.hasNext()) {
+            Map.Entry<File, CachedSegment> candidate = windowIterator.next();
+            windowIterator.remove();
+            windowBytes -= candidate.getValue().bytes;
+
+            if (mainBytes + candidate.getValue().bytes > maximumMainBytes && !mainSegments.isEmpty()) {
+                // Admit the candidate only if it's requested more often than the segment that it would evict first
+                Map.Entry<File, CachedSegment> victim = mainSegments.entrySet().iterator().next();
+                if (frequencySketch.frequency(candidate.getKey()) <= frequencySketch.frequency(victim.getKey())) {
+                    evictionCount.incrementAndGet();
+                    continue;
+                }
+            }
+
+            mainSegments.put(candidate.getKey(), candidate.getValue());
+            mainBytes += candidate.getValue().bytes;
+        }
+
+        Iterator<CachedSegment> mainIterator = mainSegments.values().iterator();
+        while (windowBytes + mainBytes > maximumBytes && mainIterator.hasNext()) {
+            mainBytes -= mainIterator.next().bytes;
+            mainIterator.remove();
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    @Override
+    public synchronized void invalidate(File file) {
+        segmentFutures.remove(file);
+
+        CachedSegment cachedSegment = windowSegments.remove(file);
+        if (cachedSegment != null) {
+            windowBytes -= cachedSegment.bytes;
+        }
+        cachedSegment = mainSegments.remove(file);
+        if (cachedSegment != null) {
+            mainBytes -= cachedSegment.bytes;
+        }
+    }
+
+    /**
+     * Removes every cached segment.
+     */
+    public synchronized void clear() {
+        segmentFutures.clear();
+        windowSegments.clear();
+        mainSegments.clear();
+        windowBytes = 0;
+        mainBytes = 0;
+    }
+
+    /**
+     * Gets the maximum bytes.
+     *
+     * @return the maximum bytes
+     */
+    public synchronized long getMaximumBytes() {
+        return maximumBytes;
+    }
+
+    /**
+     * Sets the maximum bytes, evicting segments if the cache is now over its maximum bytes.
+     *
+     * @param maximumBytes the maximum bytes
+     */
+    public synchronized void setMaximumBytes(long maximumBytes) {
+        if (maximumBytes < 0) {
+            throw new IllegalArgumentException("Maximum bytes can't be negative!");
+        }
+
+        this.maximumBytes = maximumBytes;
+        evict();
+    }
+
+    /**
+     * Gets the bytes of the cached segments.
+     *
+     * @return the bytes
+     */
+    public synchronized long getBytes() {
+        return windowBytes + mainBytes;
+    }
+
+    /**
+     * Gets the number of cached segments.
+     *
+     * @return the segment count
+     */
+    public synchronized int getSegmentCount() {
+        return windowSegments.size() + mainSegments.size();
+    }
+
+    /**
+     * Gets the number of loads that were served with a cached (or loading) segment.
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Gets the number of loads that had to be loaded by the delegate.
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Gets the number of segments that were evicted (or not admitted).
+     *
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Gets the ratio of hits to all loads.
+     *
+     * @return the hit ratio (0 if there were no loads)
+     */
+    public double getHitRatio() {
+        long hits = hitCount.get();
+        long loads = hits + missCount.get();
+        return loads == 0 ? 0 : (double) hits / loads;
+    }
+
+    @Override
+    public String toString() {
+        return "SegmentCache{" +
+                "bytes=" + getBytes() +
+                ", maximumBytes=" + getMaximumBytes() +
+                ", segmentCount=" + getSegmentCount() +
+                ", hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", evictionCount=" + evictionCount +
+                '}';
+    }
+
+    /**
+     * A cached segment and its bytes.
+     */
+    private static final class CachedSegment {
+
+        private final Segment segment;
+        private final long bytes;
+
+        /**
+         * Instantiates a new Cached segment.
+         *
+         * @param segment the segment
+         * @param bytes   the bytes
+         */
+        private CachedSegment(Segment segment, long bytes) {
+            this.segment = segment;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * A count-min sketch of 4-bit counters that estimates how often each file has been requested recently. All
+     * counters are halved after every {@link #SAMPLE_SIZE} increments so that old requests fade out.
+     */
+    private static final class FrequencySketch {
+
+        private static final int DEPTH = 4;
+        private static final int WIDTH_BITS = 12;
+        private static final int WIDTH = 1 << WIDTH_BITS;
+        private static final int SAMPLE_SIZE = 10 * WIDTH;
+        private static final int MAX_FREQUENCY = 15;
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+        private final byte[][] counters = new byte[DEPTH][WIDTH];
+        private int incrementCount;
+
+        /**
+         * Increments the frequency of a file.
+         *
+         * @param file the file
+         */
+        private void increment(File file) {
+            int hash = file.hashCode();
+            for (int row = 0; row < DEPTH; row++) {
+                int index = indexOf(hash, row);
+                if (counters[row][index] < MAX_FREQUENCY) {
+                    counters[row][index]++;
+                }
+            }
+
+            if (++incrementCount >= SAMPLE_SIZE) {
+                incrementCount = 0;
+                for (byte[] rowCounters : counters) {
+                    for (int index = 0; index < WIDTH; index++) {
+                        rowCounters[index] >>= 1;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Gets the estimated frequency of a file.
+         *
+         * @param file the file
+         *
+         * @return the frequency
+         */
+        private int frequency(File file) {
+            int hash = file.hashCode();
+            int frequency = MAX_FREQUENCY;
+            for (int row = 0; row < DEPTH; row++) {
+                frequency = Math.min(frequency, counters[row][indexOf(hash, row)]);
+            }
+            return frequency;
+        }
+
+        /**
+         * Gets the counter index of a hash in a row.
+         *
+         * @param hash the hash
+         * @param row  the row
+         *
+         * @return the index
+         */
+        private static int indexOf(int hash, int row) {
+            int mixed = (hash ^ (hash >>> 16)) * SEEDS[row];
+            return mixed >>> (Integer.SIZE - WIDTH_BITS);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package net.jacobpeterson.data.cache;
+
+/**
+ * The enum Segment column. Each column maps to a key of a Polygon JSON object (e.g. <code>o</code> for the open of an
+ * aggregate).
+ */
+public enum SegmentColumn {
+
+    /**
+     * Timestamp segment column. This is always stored as Unix epoch nanoseconds regardless of the unit Polygon uses.
+     */
+    TIMESTAMP("t", ColumnKind.LONG),
+
+    /**
+     * Open segment column.
+     */
+    OPEN("o", ColumnKind.DOUBLE),
+
+    /**
+     * High segment column.
+     */
+    HIGH("h", ColumnKind.DOUBLE),
+
+    /**
+     * Low segment column.
+     */
+    LOW("l", ColumnKind.DOUBLE),
+
+    /**
+     * Close segment column.
+     */
+    CLOSE("c", ColumnKind.DOUBLE),
+
+    /**
+     * Volume segment column.
+     */
+    VOLUME("v", ColumnKind.DOUBLE),
+
+    /**
+     * Count (number of items in the aggregate window) segment column.
+     */
+    COUNT("n", ColumnKind.INT),
+
+    /**
+     * Participant timestamp segment column.
+     */
+    PARTICIPANT_TIMESTAMP("y", ColumnKind.LONG),
+
+    /**
+     * Sequence number segment column.
+     */
+    SEQUENCE_NUMBER("q", ColumnKind.LONG),
+
+    /**
+     * Price segment column.
+     */
+    PRICE("p", ColumnKind.DOUBLE),
+
+    /**
+     * Size segment column.
+     */
+    SIZE("s", ColumnKind.INT),
+
+    /**
+     * Exchange segment column.
+     */
+    EXCHANGE("x", ColumnKind.INT),
+
+    /**
+     * Bid price segment column.
+     */
+    BID_PRICE("p", ColumnKind.DOUBLE),
+
+    /**
+     * Bid size segment column.
+     */
+    BID_SIZE("s", ColumnKind.INT),
+
+    /**
+     * Bid exchange segment column.
+     */
+    BID_EXCHANGE("x", ColumnKind.INT),
+
+    /**
+     * Ask price segment column.
+     */
+    ASK_PRICE("P", ColumnKind.DOUBLE),
+
+    /**
+     * Ask size segment column.
+     */
+    ASK_SIZE("S", ColumnKind.INT),
+
+    /**
+     * Ask exchange segment column.
+     */
+    ASK_EXCHANGE("X", ColumnKind.INT),
+
+    /**
+     * Tape segment column.
+     */
+    TAPE("z", ColumnKind.INT),
+
+    /**
+     * Conditions segment column.
+     */
+    CONDITIONS("c", ColumnKind.BITMASK);
+
+    /**
+     * The Polygon JSON key.
+     */
+    private final String jsonKey;
+
+    /**
+     * The Column kind.
+     */
+    private final ColumnKind columnKind;
+
+    SegmentColumn(String jsonKey, ColumnKind columnKind) {
+        this.jsonKey = jsonKey;
+        this.columnKind = columnKind;
+    }
+
+    /**
+     * Gets the Polygon JSON key.
+     *
+     * @return the json key
+     */
+    public String getJsonKey() {
+        return jsonKey;
+    }
+
+    /**
+     * Gets column kind.
+     *
+     * @return the column kind
+     */
+    public ColumnKind getColumnKind() {
+        return columnKind;
+    }
+}
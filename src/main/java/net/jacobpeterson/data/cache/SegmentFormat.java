@@ -0,0 +1,65 @@
+package net.jacobpeterson.data.cache;
+
+import java.nio.ByteOrder;
+
+/**
+ * Constants that define the binary columnar segment file format that is used for the data cache. All values are
+ * little-endian.
+ * <p>
+ * A segment file is laid out as follows:
+ * <pre>
+ * Header (48 bytes)
+ *   int   magic ('AJBS')
+ *   short version
+ *   byte  segment type ordinal
+ *   byte  flags
+ *   int   row count
+ *   int   block row count
+ *   int   block count
+ *   int   reserved
+ *   long  first timestamp (epoch nanoseconds)
+ *   long  last timestamp (epoch nanoseconds)
+ *   long  block index offset
+ * Block index (24 bytes per block)
+ *   long  first timestamp of block (epoch nanoseconds)
+ *   long  block offset
+ *   int   stored block length
+ *   int   raw block length
+ * Blocks
+ *   Each column of the segment type packed contiguously for the rows of the block
+ * </pre>
+ * If the {@link #FLAG_COMPRESSED} flag is set, each block is stored encoded and compressed by {@link BlockCodec} on its
+ * own, so any block can be decoded without decoding the blocks before it. The block index then holds both the stored
+ * (compressed) and the raw length of each block.
+ */
+public final class SegmentFormat {
+
+    /** The constant MAGIC. */
+    public static final int MAGIC = 0x414A4253;
+
+    /** The constant VERSION. */
+    public static final short VERSION = 1;
+
+    /** The constant BYTE_ORDER. */
+    public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    /** The constant HEADER_SIZE. */
+    public static final int HEADER_SIZE = 48;
+
+    /** The constant BLOCK_INDEX_ENTRY_SIZE. */
+    public static final int BLOCK_INDEX_ENTRY_SIZE = 24;
+
+    /** The constant DEFAULT_BLOCK_ROW_COUNT. */
+    public static final int DEFAULT_BLOCK_ROW_COUNT = 4096;
+
+    /** The constant FLAG_NONE. */
+    public static final byte FLAG_NONE = 0;
+
+    /** The constant FLAG_COMPRESSED. */
+    public static final byte FLAG_COMPRESSED = 1;
+
+    /** The constant SUPPORTED_FLAGS. */
+    public static final byte SUPPORTED_FLAGS = FLAG_COMPRESSED;
+
+    private SegmentFormat() {}
+}
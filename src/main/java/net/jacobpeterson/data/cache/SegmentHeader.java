@@ -0,0 +1,260 @@
+package net.jacobpeterson.data.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * The header and block index of a segment file. See {@link SegmentFormat}.
+ */
+class SegmentHeader {
+
+    private final SegmentType segmentType;
+    private final byte flags;
+    private final int rowCount;
+    private final int blockRowCount;
+    private final long firstTimestamp;
+    private final long lastTimestamp;
+    private final long[] blockFirstTimestamps;
+    private final long[] blockOffsets;
+    private final int[] blockStoredLengths;
+    private final int[] blockRawLengths;
+
+    /**
+     * Instantiates a new Segment header.
+     *
+     * @param segmentType    the segment type
+     * @param flags          the flags
+     * @param rowCount       the row count
+     * @param blockRowCount  the block row count
+     * @param blockCount     the block count
+     * @param firstTimestamp the first timestamp
+     * @param lastTimestamp  the last timestamp
+     */
+    SegmentHeader(SegmentType segmentType, byte flags, int rowCount, int blockRowCount, int blockCount,
+            long firstTimestamp, long lastTimestamp) {
+        this.segmentType = segmentType;
+        this.flags = flags;
+        this.rowCount = rowCount;
+        this.blockRowCount = blockRowCount;
+        this.firstTimestamp = firstTimestamp;
+        this.lastTimestamp = lastTimestamp;
+        this.blockFirstTimestamps = new long[blockCount];
+        this.blockOffsets = new long[blockCount];
+        this.blockStoredLengths = new int[blockCount];
+        this.blockRawLengths = new int[blockCount];
+    }
+
+    /**
+     * Reads and validates a segment header and block index.
+     *
+     * @param fileChannel the file channel
+     * @param file        the file (for error messages)
+     *
+     * @return the segment header
+     *
+     * @throws IOException thrown for {@link IOException}s or if the file is not a valid segment
+     */
+    static SegmentHeader read(FileChannel fileChannel, File file) throws IOException {
+        ByteBuffer headerBuffer = ByteBuffer.allocate(SegmentFormat.HEADER_SIZE).order(SegmentFormat.BYTE_ORDER);
+        Segment.readFully(fileChannel, headerBuffer, 0);
+        headerBuffer.flip();
+
+        if (headerBuffer.getInt() != SegmentFormat.MAGIC) {
+            throw new IOException(file + " is not a segment file!");
+        }
+        short version = headerBuffer.getShort();
+        if (version != SegmentFormat.VERSION) {
+            throw new IOException(file + " has an unsupported segment version: " + version);
+        }
+        int segmentTypeOrdinal = headerBuffer.get();
+        if (segmentTypeOrdinal < 0 || segmentTypeOrdinal >= SegmentType.values().length) {
+            throw new IOException(file + " has an unknown segment type: " + segmentTypeOrdinal);
+        }
+        byte flags = headerBuffer.get();
+        if ((flags & ~SegmentFormat.SUPPORTED_FLAGS) != 0) {
+            throw new IOException(file + " has unsupported segment flags: " + flags);
+        }
+        int rowCount = headerBuffer.getInt();
+        int blockRowCount = headerBuffer.getInt();
+        int blockCount = headerBuffer.getInt();
+        headerBuffer.getInt(); // Reserved
+        long firstTimestamp = headerBuffer.getLong();
+        long lastTimestamp = headerBuffer.getLong();
+        long blockIndexOffset = headerBuffer.getLong();
+
+        SegmentHeader header = new SegmentHeader(SegmentType.values()[segmentTypeOrdinal], flags, rowCount,
+                blockRowCount, blockCount, firstTimestamp, lastTimestamp);
+
+        ByteBuffer indexBuffer = ByteBuffer.allocate(blockCount * SegmentFormat.BLOCK_INDEX_ENTRY_SIZE)
+                .order(SegmentFormat.BYTE_ORDER);
+        Segment.readFully(fileChannel, indexBuffer, blockIndexOffset);
+        indexBuffer.flip();
+        for (int blockIndex = 0; blockIndex < blockCount; blockIndex++) {
+            header.blockFirstTimestamps[blockIndex] = indexBuffer.getLong();
+            header.blockOffsets[blockIndex] = indexBuffer.getLong();
+            header.blockStoredLengths[blockIndex] = indexBuffer.getInt();
+            header.blockRawLengths[blockIndex] = indexBuffer.getInt();
+        }
+
+        return header;
+    }
+
+    /**
+     * Writes this header and block index to the buffer.
+     *
+     * @param buffer the buffer
+     */
+    void write(ByteBuffer buffer) {
+        buffer.putInt(SegmentFormat.MAGIC);
+        buffer.putShort(SegmentFormat.VERSION);
+        buffer.put((byte) segmentType.ordinal());
+        buffer.put(flags);
+        buffer.putInt(rowCount);
+        buffer.putInt(blockRowCount);
+        buffer.putInt(getBlockCount());
+        buffer.putInt(0); // Reserved
+        buffer.putLong(firstTimestamp);
+        buffer.putLong(lastTimestamp);
+        buffer.putLong(SegmentFormat.HEADER_SIZE);
+
+        for (int blockIndex = 0; blockIndex < getBlockCount(); blockIndex++) {
+            buffer.putLong(blockFirstTimestamps[blockIndex]);
+            buffer.putLong(blockOffsets[blockIndex]);
+            buffer.putInt(blockStoredLengths[blockIndex]);
+            buffer.putInt(blockRawLengths[blockIndex]);
+        }
+    }
+
+    /**
+     * Sets a block index entry.
+     *
+     * @param blockIndex     the block index
+     * @param firstTimestamp the first timestamp
+     * @param offset         the offset
+     * @param storedLength   the stored length
+     * @param rawLength      the raw length
+     */
+    void setBlock(int blockIndex, long firstTimestamp, long offset, int storedLength, int rawLength) {
+        blockFirstTimestamps[blockIndex] = firstTimestamp;
+        blockOffsets[blockIndex] = offset;
+        blockStoredLengths[blockIndex] = storedLength;
+        blockRawLengths[blockIndex] = rawLength;
+    }
+
+    /**
+     * Creates a {@link Segment} with this header.
+     *
+     * @param blocks the stored blocks (raw unless this header is {@link #isCompressed()})
+     *
+     * @return the segment
+     */
+    Segment toSegment(ByteBuffer[] blocks) {
+        if (isCompressed()) {
+            return new Segment(segmentType, rowCount, blockRowCount, firstTimestamp, lastTimestamp,
+                    blockFirstTimestamps, blocks, blockRawLengths);
+        }
+        return new Segment(segmentType, rowCount, blockRowCount, firstTimestamp, lastTimestamp,
+                blockFirstTimestamps, blocks);
+    }
+
+    /**
+     * Creates a segment from some of the blocks of this header. The last timestamp of the segment is read from its
+     * last row on first access unless the blocks include the last block.
+     *
+     * @param blocks         the blocks from <code>fromBlockIndex</code> to <code>toBlockIndex</code>
+     * @param fromBlockIndex the from block index (inclusive)
+     * @param toBlockIndex   the to block index (exclusive)
+     *
+     * @return the segment
+     */
+    Segment toSegment(ByteBuffer[] blocks, int fromBlockIndex, int toBlockIndex) {
+        if (fromBlockIndex >= toBlockIndex) {
+            return new Segment(segmentType, 0, blockRowCount, 0, 0, new long[0], new ByteBuffer[0]);
+        }
+
+        int rowCount = Math.min(this.rowCount, toBlockIndex * blockRowCount) - fromBlockIndex * blockRowCount;
+        long firstTimestamp = blockFirstTimestamps[fromBlockIndex];
+        long lastTimestamp = toBlockIndex == getBlockCount() ? this.lastTimestamp : Segment.UNKNOWN_TIMESTAMP;
+        long[] blockFirstTimestamps = Arrays.copyOfRange(this.blockFirstTimestamps, fromBlockIndex, toBlockIndex);
+
+        if (isCompressed()) {
+            return new Segment(segmentType, rowCount, blockRowCount, firstTimestamp, lastTimestamp,
+                    blockFirstTimestamps, blocks, Arrays.copyOfRange(blockRawLengths, fromBlockIndex, toBlockIndex));
+        }
+        return new Segment(segmentType, rowCount, blockRowCount, firstTimestamp, lastTimestamp,
+                blockFirstTimestamps, blocks);
+    }
+
+    /**
+     * Finds the first block whose first timestamp is at or after a timestamp.
+     *
+     * @param timestamp the timestamp
+     *
+     * @return the block index ({@link #getBlockCount()} if every block starts before the timestamp)
+     */
+    int findBlock(long timestamp) {
+        int lowBlockIndex = 0;
+        int highBlockIndex = getBlockCount();
+        while (lowBlockIndex < highBlockIndex) {
+            int middleBlockIndex = (lowBlockIndex + highBlockIndex) >>> 1;
+            if (blockFirstTimestamps[middleBlockIndex] < timestamp) {
+                lowBlockIndex = middleBlockIndex + 1;
+            } else {
+                highBlockIndex = middleBlockIndex;
+            }
+        }
+        return lowBlockIndex;
+    }
+
+    /**
+     * Gets the size in bytes of the header and block index.
+     *
+     * @return the size
+     */
+    int getSize() {
+        return SegmentFormat.HEADER_SIZE + getBlockCount() * SegmentFormat.BLOCK_INDEX_ENTRY_SIZE;
+    }
+
+    SegmentType getSegmentType() {
+        return segmentType;
+    }
+
+    byte getFlags() {
+        return flags;
+    }
+
+    boolean isCompressed() {
+        return (flags & SegmentFormat.FLAG_COMPRESSED) != 0;
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    int getBlockCount() {
+        return blockOffsets.length;
+    }
+
+    long getBlockOffset(int blockIndex) {
+        return blockOffsets[blockIndex];
+    }
+
+    int getBlockStoredLength(int blockIndex) {
+        return blockStoredLengths[blockIndex];
+    }
+
+    int getBlockRawLength(int blockIndex) {
+        return blockRawLengths[blockIndex];
+    }
+}
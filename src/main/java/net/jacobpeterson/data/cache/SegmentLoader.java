@@ -0,0 +1,46 @@
+package net.jacobpeterson.data.cache;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Loads a {@link Segment} from a cached segment file.
+ */
+@FunctionalInterface
+public interface SegmentLoader {
+
+    /**
+     * Loads a segment.
+     *
+     * @param file the segment file
+     *
+     * @return the segment
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    Segment load(File file) throws IOException;
+
+    /**
+     * Loads a segment that holds at least the rows of a segment file within a time range. The whole segment is loaded
+     * by default, which suits loaders that keep segments to serve later loads of other time ranges.
+     *
+     * @param file          the segment file
+     * @param fromTimestamp the from timestamp (epoch nanoseconds, inclusive)
+     * @param toTimestamp   the to timestamp (epoch nanoseconds, exclusive)
+     *
+     * @return the segment
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    default Segment load(File file, long fromTimestamp, long toTimestamp) throws IOException {
+        return load(file);
+    }
+
+    /**
+     * Discards any segment of a file that this loader keeps (e.g. because the file was rewritten). This does nothing
+     * by default.
+     *
+     * @param file the segment file
+     */
+    default void invalidate(File file) {}
+}
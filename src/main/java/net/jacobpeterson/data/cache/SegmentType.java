@@ -0,0 +1,184 @@
+package net.jacobpeterson.data.cache;
+
+import net.jacobpeterson.data.BacktestData;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import static net.jacobpeterson.data.cache.SegmentColumn.*;
+
+/**
+ * The enum Segment type. Defines the ordered columns of a {@link Segment}. The first column is always {@link
+ * SegmentColumn#TIMESTAMP}.
+ */
+public enum SegmentType {
+
+    /**
+     * Aggregate segment type.
+     */
+    AGGREGATE(BacktestData.AGGREGATES_FILE_EXTENSION, BacktestData.AGGREGATES_JSON_FILE_EXTENSION,
+            TimeUnit.MILLISECONDS,
+            TIMESTAMP, OPEN, HIGH, LOW, CLOSE, VOLUME, COUNT),
+
+    /**
+     * Trade segment type.
+     */
+    TRADE(BacktestData.TRADES_FILE_EXTENSION, BacktestData.TRADES_JSON_FILE_EXTENSION,
+            TimeUnit.NANOSECONDS,
+            TIMESTAMP, PARTICIPANT_TIMESTAMP, SEQUENCE_NUMBER, PRICE, SIZE, EXCHANGE, TAPE, CONDITIONS),
+
+    /**
+     * Quote segment type.
+     */
+    QUOTE(BacktestData.QUOTES_FILE_EXTENSION, BacktestData.QUOTES_JSON_FILE_EXTENSION,
+            TimeUnit.NANOSECONDS,
+            TIMESTAMP, PARTICIPANT_TIMESTAMP, SEQUENCE_NUMBER, BID_PRICE, BID_SIZE, BID_EXCHANGE, ASK_PRICE, ASK_SIZE,
+            ASK_EXCHANGE, TAPE, CONDITIONS);
+
+    private final String fileExtension;
+    private final String jsonFileExtension;
+    private final TimeUnit jsonTimestampUnit;
+    private final SegmentColumn[] columns;
+    private final int[] columnIndices;
+    private final int[] columnWidthPrefixes;
+    private final int rowWidth;
+    private final HashMap<String, SegmentColumn> columnsOfJsonKeys;
+
+    SegmentType(String fileExtension, String jsonFileExtension, TimeUnit jsonTimestampUnit,
+            SegmentColumn... columns) {
+        this.fileExtension = fileExtension;
+        this.jsonFileExtension = jsonFileExtension;
+        this.jsonTimestampUnit = jsonTimestampUnit;
+        this.columns = columns;
+        this.columnIndices = new int[SegmentColumn.values().length];
+        this.columnWidthPrefixes = new int[columns.length];
+        this.columnsOfJsonKeys = new HashMap<>();
+
+        Arrays.fill(columnIndices, -1);
+        int widthPrefix = 0;
+        for (int index = 0; index < columns.length; index++) {
+            columnIndices[columns[index].ordinal()] = index;
+            columnWidthPrefixes[index] = widthPrefix;
+            columnsOfJsonKeys.put(columns[index].getJsonKey(), columns[index]);
+            widthPrefix += columns[index].getColumnKind().getWidth();
+        }
+        this.rowWidth = widthPrefix;
+    }
+
+    /**
+     * Gets the index of a column in this segment type.
+     *
+     * @param column the column
+     *
+     * @return the column index
+     *
+     * @throws IllegalArgumentException thrown if the column is not a part of this segment type
+     */
+    public int getColumnIndex(SegmentColumn column) {
+        int index = columnIndices[column.ordinal()];
+        if (index == -1) {
+            throw new IllegalArgumentException(column + " is not a column of " + this);
+        }
+        return index;
+    }
+
+    /**
+     * Returns true if the column is a part of this segment type.
+     *
+     * @param column the column
+     *
+     * @return the boolean
+     */
+    public boolean hasColumn(SegmentColumn column) {
+        return columnIndices[column.ordinal()] != -1;
+    }
+
+    /**
+     * Gets the sum of the widths of all the columns before the given column index. Since a block of a {@link Segment}
+     * stores each column contiguously, the column starts at <code>rowsInBlock * columnWidthPrefix</code>.
+     *
+     * @param columnIndex the column index
+     *
+     * @return the column width prefix
+     */
+    public int getColumnWidthPrefix(int columnIndex) {
+        return columnWidthPrefixes[columnIndex];
+    }
+
+    /**
+     * Gets the column of a Polygon JSON key.
+     *
+     * @param jsonKey the json key
+     *
+     * @return the column (null if the key isn't stored)
+     */
+    public SegmentColumn getColumnOfJsonKey(String jsonKey) {
+        return columnsOfJsonKeys.get(jsonKey);
+    }
+
+    /**
+     * Gets file extension used for {@link BacktestData#getDataFile}.
+     *
+     * @return the file extension
+     */
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    /**
+     * Gets the legacy JSON file extension used for {@link BacktestData#getDataFile}.
+     *
+     * @return the json file extension
+     */
+    public String getJsonFileExtension() {
+        return jsonFileExtension;
+    }
+
+    /**
+     * Gets the unit of the <code>t</code> timestamp in Polygon JSON.
+     *
+     * @return the json timestamp unit
+     */
+    public TimeUnit getJsonTimestampUnit() {
+        return jsonTimestampUnit;
+    }
+
+    /**
+     * Gets columns.
+     *
+     * @return the columns
+     */
+    public SegmentColumn[] getColumns() {
+        return columns.clone();
+    }
+
+    /**
+     * Gets column count.
+     *
+     * @return the column count
+     */
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    /**
+     * Gets column.
+     *
+     * @param columnIndex the column index
+     *
+     * @return the column
+     */
+    public SegmentColumn getColumn(int columnIndex) {
+        return columns[columnIndex];
+    }
+
+    /**
+     * Gets the width in bytes of a row (the sum of all column widths).
+     *
+     * @return the row width
+     */
+    public int getRowWidth() {
+        return rowWidth;
+    }
+}
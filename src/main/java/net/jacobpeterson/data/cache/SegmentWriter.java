@@ -0,0 +1,369 @@
+package net.jacobpeterson.data.cache;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+/**
+ * Used to build a {@link Segment} row by row and then write it to a segment file. Rows are sorted by timestamp before
+ * they are written.
+ * <p>
+ * This is not thread safe.
+ */
+public class SegmentWriter {
+
+    /**
+     * The suffix of the temporary files that segments are written to before they are renamed.
+     */
+    public static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final SegmentType segmentType;
+    private final int blockRowCount;
+    private long[][] columnValues;
+    private int rowCount;
+    private int droppedConditionCount;
+    private boolean compressed;
+
+    /**
+     * Instantiates a new Segment writer with {@link SegmentFormat#DEFAULT_BLOCK_ROW_COUNT}.
+     *
+     * @param segmentType the segment type
+     */
+    public SegmentWriter(SegmentType segmentType) {
+        this(segmentType, SegmentFormat.DEFAULT_BLOCK_ROW_COUNT);
+    }
+
+    /**
+     * Instantiates a new Segment writer.
+     *
+     * @param segmentType   the segment type
+     * @param blockRowCount the block row count
+     */
+    public SegmentWriter(SegmentType segmentType, int blockRowCount) {
+        if (blockRowCount <= 0) {
+            throw new IllegalArgumentException("Block row count must be positive!");
+        }
+
+        this.segmentType = segmentType;
+        this.blockRowCount = blockRowCount;
+        this.columnValues = new long[segmentType.getColumnCount()][INITIAL_CAPACITY];
+        this.rowCount = 0;
+    }
+
+    /**
+     * Creates a segment writer with the rows of a segment (e.g. to rewrite a segment file with or without
+     * compression).
+     *
+     * @param segment the segment
+     *
+     * @return the segment writer
+     */
+    public static SegmentWriter fromSegment(Segment segment) {
+        SegmentType segmentType = segment.getSegmentType();
+        SegmentWriter segmentWriter = new SegmentWriter(segmentType, segment.getBlockRowCount());
+        for (int row = 0; row < segment.getRowCount(); row++) {
+            segmentWriter.addRow();
+            for (int columnIndex = 0; columnIndex < segmentType.getColumnCount(); columnIndex++) {
+                SegmentColumn column = segmentType.getColumn(columnIndex);
+                // Doubles are read as their raw long bits
+                segmentWriter.columnValues[columnIndex][row] = column.getColumnKind() == ColumnKind.INT ?
+                                                               segment.getInt(column, row) :
+                                                               segment.getLong(column, row);
+            }
+        }
+        return segmentWriter;
+    }
+
+    /**
+     * Adds a new row with all values zeroed. Use the setters to set the values of this new row.
+     */
+    public void addRow() {
+        if (rowCount == columnValues[0].length) {
+            int newCapacity = columnValues[0].length * 2;
+            for (int columnIndex = 0; columnIndex < columnValues.length; columnIndex++) {
+                columnValues[columnIndex] = Arrays.copyOf(columnValues[columnIndex], newCapacity);
+            }
+        }
+        rowCount++;
+    }
+
+    /**
+     * Sets a long (or {@link ColumnKind#BITMASK}) value of the current row.
+     *
+     * @param column the column
+     * @param value  the value
+     */
+    public void setLong(SegmentColumn column, long value) {
+        columnValues[segmentType.getColumnIndex(column)][rowCount - 1] = value;
+    }
+
+    /**
+     * Sets a double value of the current row.
+     *
+     * @param column the column
+     * @param value  the value
+     */
+    public void setDouble(SegmentColumn column, double value) {
+        columnValues[segmentType.getColumnIndex(column)][rowCount - 1] = Double.doubleToRawLongBits(value);
+    }
+
+    /**
+     * Sets an int value of the current row.
+     *
+     * @param column the column
+     * @param value  the value
+     */
+    public void setInt(SegmentColumn column, int value) {
+        columnValues[segmentType.getColumnIndex(column)][rowCount - 1] = value;
+    }
+
+    /**
+     * Adds a condition code to a {@link ColumnKind#BITMASK} value of the current row. Codes outside of 0 to 63 can't be
+     * represented in the bitmask, so they are dropped and counted in {@link #getDroppedConditionCount()}.
+     *
+     * @param column the column
+     * @param code   the condition code
+     *
+     * @return true if the code was added, false if it was dropped
+     */
+    public boolean addCondition(SegmentColumn column, int code) {
+        if (code < 0 || code >= Long.SIZE) {
+            droppedConditionCount++;
+            return false;
+        }
+        columnValues[segmentType.getColumnIndex(column)][rowCount - 1] |= 1L << code;
+        return true;
+    }
+
+    /**
+     * Gets a raw value that has been set. Doubles are returned as their raw long bits.
+     *
+     * @param column the column
+     * @param row    the row
+     *
+     * @return the value
+     */
+    public long getLong(SegmentColumn column, int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Row " + row + " is out of bounds!");
+        }
+        return columnValues[segmentType.getColumnIndex(column)][row];
+    }
+
+    /**
+     * Sorts the rows by timestamp (stable) if they are not already sorted.
+     */
+    private void sortByTimestamp() {
+        long[] timestamps = columnValues[0];
+        boolean sorted = true;
+        for (int row = 1; row < rowCount && sorted; row++) {
+            sorted = timestamps[row - 1] <= timestamps[row];
+        }
+        if (sorted) {
+            return;
+        }
+
+        int[] order = IntStream.range(0, rowCount).boxed()
+                .sorted(Comparator.comparingLong(row -> timestamps[row]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        for (int columnIndex = 0; columnIndex < columnValues.length; columnIndex++) {
+            long[] sortedValues = new long[columnValues[columnIndex].length];
+            for (int row = 0; row < rowCount; row++) {
+                sortedValues[row] = columnValues[columnIndex][order[row]];
+            }
+            columnValues[columnIndex] = sortedValues;
+        }
+    }
+
+    /**
+     * Creates the header and the blocks of the rows that have been added.
+     *
+     * @param blocks     the array to fill with the blocks
+     * @param compressed true to encode and compress the blocks with {@link BlockCodec}
+     *
+     * @return the segment header (with the block offsets of a file)
+     */
+    private SegmentHeader createHeaderAndBlocks(ByteBuffer[] blocks, boolean compressed) {
+        sortByTimestamp();
+
+        SegmentHeader header = new SegmentHeader(segmentType,
+                compressed ? SegmentFormat.FLAG_COMPRESSED : SegmentFormat.FLAG_NONE, rowCount, blockRowCount,
+                blocks.length, rowCount == 0 ? 0 : columnValues[0][0],
+                rowCount == 0 ? 0 : columnValues[0][rowCount - 1]);
+
+        long offset = header.getSize();
+        for (int blockIndex = 0; blockIndex < blocks.length; blockIndex++) {
+            int firstRow = blockIndex * blockRowCount;
+            int rowsInBlock = Math.min(blockRowCount, rowCount - firstRow);
+            ByteBuffer block = ByteBuffer.allocate(rowsInBlock * segmentType.getRowWidth())
+                    .order(SegmentFormat.BYTE_ORDER);
+
+            for (int columnIndex = 0; columnIndex < columnValues.length; columnIndex++) {
+                long[] values = columnValues[columnIndex];
+                if (segmentType.getColumn(columnIndex).getColumnKind() == ColumnKind.INT) {
+                    for (int row = firstRow; row < firstRow + rowsInBlock; row++) {
+                        block.putInt((int) values[row]);
+                    }
+                } else {
+                    for (int row = firstRow; row < firstRow + rowsInBlock; row++) {
+                        block.putLong(values[row]);
+                    }
+                }
+            }
+            block.flip();
+            ByteBuffer storedBlock = compressed ? BlockCodec.encode(segmentType, block, rowsInBlock) : block;
+            blocks[blockIndex] = storedBlock;
+
+            header.setBlock(blockIndex, columnValues[0][firstRow], offset, storedBlock.remaining(), block.remaining());
+            offset += storedBlock.remaining();
+        }
+
+        return header;
+    }
+
+    /**
+     * Gets the number of blocks needed for the current rows.
+     *
+     * @return the block count
+     */
+    private int getBlockCount() {
+        return (rowCount + blockRowCount - 1) / blockRowCount;
+    }
+
+    /**
+     * Creates an in-memory {@link Segment} of the rows that have been added.
+     *
+     * @return the segment
+     */
+    public Segment toSegment() {
+        ByteBuffer[] blocks = new ByteBuffer[getBlockCount()];
+        return createHeaderAndBlocks(blocks, false).toSegment(blocks);
+    }
+
+    /**
+     * Writes the rows that have been added to a segment file. The segment is written to a temporary file in the same
+     * directory which is then renamed to the file, so the file either doesn't exist or is complete even if the process
+     * is killed while writing. The blocks are compressed if {@link #isCompressed()} is true. A warning is logged if
+     * any condition codes were dropped by {@link #addCondition(SegmentColumn, int)}.
+     *
+     * @param file the file
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public void write(File file) throws IOException {
+        if (droppedConditionCount > 0) {
+            LOGGER.warn("Dropped {} condition codes outside of 0 to 63 from {}", droppedConditionCount, file);
+        }
+
+        ByteBuffer[] blocks = new ByteBuffer[getBlockCount()];
+        SegmentHeader header = createHeaderAndBlocks(blocks, compressed);
+
+        ByteBuffer headerBuffer = ByteBuffer.allocate(header.getSize()).order(SegmentFormat.BYTE_ORDER);
+        header.write(headerBuffer);
+        headerBuffer.flip();
+
+        File parentFile = file.getParentFile();
+        if (parentFile != null && !parentFile.exists() && !parentFile.mkdirs() && !parentFile.exists()) {
+            throw new IOException("Could not create directory: " + parentFile);
+        }
+
+        File temporaryFile = new File(parentFile, file.getName() + "." + UUID.randomUUID() + TEMPORARY_FILE_SUFFIX);
+        try {
+            try (FileOutputStream fileOutputStream = new FileOutputStream(temporaryFile);
+                 FileChannel fileChannel = fileOutputStream.getChannel()) {
+                writeFully(fileChannel, headerBuffer);
+                for (ByteBuffer block : blocks) {
+                    writeFully(fileChannel, block.duplicate());
+                }
+                fileChannel.force(false);
+            }
+
+            try {
+                Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException exception) {
+                Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporaryFile.toPath());
+        }
+    }
+
+    /**
+     * Writes the entire buffer to the file channel.
+     *
+     * @param fileChannel the file channel
+     * @param buffer      the buffer
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private static void writeFully(FileChannel fileChannel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            fileChannel.write(buffer);
+        }
+    }
+
+    /**
+     * Returns true if {@link #write(File)} compresses the blocks of the segment file. See {@link
+     * SegmentFormat#FLAG_COMPRESSED}.
+     *
+     * @return the boolean
+     */
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * Sets whether {@link #write(File)} compresses the blocks of the segment file. Compressed segment files are
+     * typically several times smaller, but their blocks are decoded onto the heap when they are read.
+     *
+     * @param compressed the compressed
+     */
+    public void setCompressed(boolean compressed) {
+        this.compressed = compressed;
+    }
+
+    /**
+     * Gets segment type.
+     *
+     * @return the segment type
+     */
+    public SegmentType getSegmentType() {
+        return segmentType;
+    }
+
+    /**
+     * Gets row count.
+     *
+     * @return the row count
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Gets the number of condition codes that were dropped by {@link #addCondition(SegmentColumn, int)} since they
+     * can't be represented in a {@link ColumnKind#BITMASK}.
+     *
+     * @return the dropped condition count
+     */
+    public int getDroppedConditionCount() {
+        return droppedConditionCount;
+    }
+}
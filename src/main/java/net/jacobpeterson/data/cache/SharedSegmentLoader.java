@@ -0,0 +1,107 @@
+package net.jacobpeterson.data.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link SegmentLoader} that shares every loaded {@link Segment} between all of its callers so that a segment file is
+ * only read and decoded once no matter how many backtests replay it. Loading is single-flight: if several threads ask
+ * for the same file at the same time, one of them loads it and the others wait for that result.
+ * <p>
+ * Segments are kept until {@link #clear()} is called, so this is meant to be scoped to a batch of backtests over the
+ * same data (e.g. a parameter sweep).
+ * <p>
+ * This is thread safe.
+ */
+public class SharedSegmentLoader implements SegmentLoader {
+
+    private final SegmentLoader delegate;
+    private final ConcurrentHashMap<File, CompletableFuture<Segment>> segmentFutures;
+    private final AtomicLong loadCount;
+    private final AtomicLong sharedCount;
+
+    /**
+     * Instantiates a new Shared segment loader.
+     *
+     * @param delegate the delegate that actually loads segments
+     */
+    public SharedSegmentLoader(SegmentLoader delegate) {
+        this.delegate = delegate;
+        this.segmentFutures = new ConcurrentHashMap<>();
+        this.loadCount = new AtomicLong();
+        this.sharedCount = new AtomicLong();
+    }
+
+    @Override
+    public Segment load(File file) throws IOException {
+        CompletableFuture<Segment> segmentFuture = segmentFutures.get(file);
+
+        if (segmentFuture == null) {
+            CompletableFuture<Segment> newSegmentFuture = new CompletableFuture<>();
+            segmentFuture = segmentFutures.putIfAbsent(file, newSegmentFuture);
+
+            if (segmentFuture == null) { // This thread won the race, so load the segment
+                loadCount.incrementAndGet();
+                try {
+                    newSegmentFuture.complete(delegate.load(file));
+                } catch (IOException | RuntimeException exception) {
+                    segmentFutures.remove(file, newSegmentFuture);
+                    newSegmentFuture.completeExceptionally(exception);
+                    throw exception;
+                }
+                return newSegmentFuture.join();
+            }
+        }
+
+        sharedCount.incrementAndGet();
+        try {
+            return segmentFuture.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + file, exception);
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException) {
+                throw new IOException(cause.getMessage(), cause);
+            } else if (cause instanceof UncheckedIOException) {
+                throw new IOException(cause.getMessage(), cause.getCause());
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @Override
+    public void invalidate(File file) {
+        segmentFutures.remove(file);
+    }
+
+    /**
+     * Removes all the shared segments.
+     */
+    public void clear() {
+        segmentFutures.clear();
+    }
+
+    /**
+     * Gets the number of segments that were loaded by the delegate.
+     *
+     * @return the load count
+     */
+    public long getLoadCount() {
+        return loadCount.get();
+    }
+
+    /**
+     * Gets the number of loads that were served with an already loaded (or loading) segment.
+     *
+     * @return the shared count
+     */
+    public long getSharedCount() {
+        return sharedCount.get();
+    }
+}
@@ -0,0 +1,213 @@
+package net.jacobpeterson.data.calendar;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import io.github.mainstringargs.domain.alpaca.calendar.Calendar;
+import net.jacobpeterson.data.cache.SegmentWriter;
+import net.jacobpeterson.data.fetch.CalendarFetcher;
+import net.jacobpeterson.util.GsonUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A cache of the stock market calendar in a JSON file and in memory as a {@link MarketCalendar}. Whole years are
+ * fetched at a time (with a {@link CalendarFetcher}) when a date range that isn't cached is requested, so a backtest
+ * usually only fetches the calendar once and every later lookup is an in-memory binary search.
+ * <p>
+ * This is thread safe.
+ */
+public class CalendarCache {
+
+    public static final String CALENDAR_FILE_NAME = "calendar.json";
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final File file;
+    private volatile MarketCalendar marketCalendar;
+    private boolean read;
+
+    /**
+     * Instantiates a new Calendar cache. The file is read on first use.
+     *
+     * @param file the file
+     */
+    public CalendarCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Gets a {@link MarketCalendar} that covers a date range, fetching the whole years of the date range that aren't
+     * cached with a {@link CalendarFetcher}.
+     *
+     * @param from            the from (inclusive)
+     * @param to              the to (exclusive)
+     * @param calendarFetcher the calendar fetcher (null to only use the cached calendar)
+     *
+     * @return the market calendar (null if the date range isn't cached and there is no calendar fetcher)
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public MarketCalendar get(LocalDate from, LocalDate to, CalendarFetcher calendarFetcher) throws IOException {
+        MarketCalendar marketCalendar = this.marketCalendar;
+        if (marketCalendar != null && marketCalendar.covers(from, to)) {
+            return marketCalendar;
+        }
+
+        synchronized (this) {
+            if (!read) {
+                this.marketCalendar = readFile();
+                read = true;
+            }
+            marketCalendar = this.marketCalendar;
+            if (marketCalendar != null && marketCalendar.covers(from, to)) {
+                return marketCalendar;
+            }
+            if (calendarFetcher == null) {
+                return null;
+            }
+
+            LocalDate fetchFrom = LocalDate.of(from.getYear(), 1, 1);
+            LocalDate fetchTo = LocalDate.of((to.isAfter(from) ? to.minusDays(1) : from).getYear() + 1, 1, 1);
+            if (marketCalendar == null) {
+                marketCalendar = fetch(fetchFrom, fetchTo, calendarFetcher);
+            } else {
+                if (fetchFrom.isBefore(marketCalendar.getFrom())) {
+                    marketCalendar = marketCalendar.merge(fetch(fetchFrom, marketCalendar.getFrom(),
+                            calendarFetcher));
+                }
+                if (fetchTo.isAfter(marketCalendar.getTo())) {
+                    marketCalendar = marketCalendar.merge(fetch(marketCalendar.getTo(), fetchTo, calendarFetcher));
+                }
+            }
+
+            writeFile(marketCalendar);
+            this.marketCalendar = marketCalendar;
+            return marketCalendar;
+        }
+    }
+
+    /**
+     * Fetches a market calendar.
+     *
+     * @param from            the from (inclusive)
+     * @param to              the to (exclusive)
+     * @param calendarFetcher the calendar fetcher
+     *
+     * @return the market calendar
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private MarketCalendar fetch(LocalDate from, LocalDate to, CalendarFetcher calendarFetcher) throws IOException {
+        LOGGER.debug("Fetching the calendar from {} to {}", from, to);
+        try {
+            return new MarketCalendar(from, to, calendarFetcher.fetch(from, to));
+        } catch (IllegalArgumentException exception) {
+            throw new IOException("The fetched calendar from " + from + " to " + to + " is invalid", exception);
+        }
+    }
+
+    /**
+     * Reads the file.
+     *
+     * @return the market calendar (null if the file doesn't exist or is invalid)
+     */
+    private MarketCalendar readFile() {
+        if (!file.exists()) {
+            return null;
+        }
+
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            JsonObject jsonObject = GsonUtil.GSON.fromJson(reader, JsonObject.class);
+            ArrayList<Calendar> calendars = new ArrayList<>();
+            for (JsonElement calendarElement : jsonObject.getAsJsonArray("calendar")) {
+                calendars.add(GsonUtil.GSON.fromJson(calendarElement, Calendar.class));
+            }
+            return new MarketCalendar(LocalDate.parse(jsonObject.get("from").getAsString()),
+                    LocalDate.parse(jsonObject.get("to").getAsString()), calendars);
+        } catch (IOException | RuntimeException exception) {
+            LOGGER.warn("{} is invalid, the calendar will be fetched again", file, exception);
+            return null;
+        }
+    }
+
+    /**
+     * Writes a market calendar to the file. The file is written to a temporary file in the same directory which is
+     * then renamed to the file.
+     *
+     * @param marketCalendar the market calendar
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private void writeFile(MarketCalendar marketCalendar) throws IOException {
+        JsonArray calendarArray = new JsonArray();
+        List<Calendar> calendars = marketCalendar.getCalendars(marketCalendar.getFrom(), marketCalendar.getTo());
+        for (Calendar calendar : calendars) {
+            calendarArray.add(GsonUtil.GSON.toJsonTree(calendar));
+        }
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty("from", marketCalendar.getFrom().toString());
+        jsonObject.addProperty("to", marketCalendar.getTo().toString());
+        jsonObject.add("calendar", calendarArray);
+
+        File parentFile = file.getParentFile();
+        if (parentFile != null && !parentFile.exists() && !parentFile.mkdirs() && !parentFile.exists()) {
+            throw new IOException("Could not create directory: " + parentFile);
+        }
+
+        File temporaryFile = new File(parentFile, file.getName() + "." + UUID.randomUUID() +
+                SegmentWriter.TEMPORARY_FILE_SUFFIX);
+        try {
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(temporaryFile),
+                    StandardCharsets.UTF_8)) {
+                GsonUtil.GSON.toJson(jsonObject, writer);
+            }
+
+            try {
+                Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException exception) {
+                Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporaryFile.toPath());
+        }
+    }
+
+    /**
+     * Discards the in-memory and cached calendar so that it is fetched again.
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public synchronized void clear() throws IOException {
+        marketCalendar = null;
+        read = true;
+        Files.deleteIfExists(file.toPath());
+    }
+
+    /**
+     * Gets file.
+     *
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
+}
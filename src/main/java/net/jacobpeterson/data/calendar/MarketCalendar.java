@@ -0,0 +1,285 @@
+package net.jacobpeterson.data.calendar;
+
+import io.github.mainstringargs.domain.alpaca.calendar.Calendar;
+import net.jacobpeterson.algorithm.update.ticker.AggregateUpdateType;
+import net.jacobpeterson.util.TimeUtil;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * An immutable in-memory stock market calendar of the trading days (with their open and close times, which include
+ * early closes) within a date range. Lookups are binary searches over sorted arrays.
+ * <p>
+ * This is thread safe.
+ */
+public class MarketCalendar {
+
+    private final LocalDate from;
+    private final LocalDate to;
+    private final Calendar[] calendars;
+    private final LocalDate[] dates;
+    private final LocalTime[] openTimes;
+    private final LocalTime[] closeTimes;
+
+    /**
+     * Instantiates a new Market calendar.
+     *
+     * @param from      the from of the date range that the calendar covers (inclusive)
+     * @param to        the to of the date range that the calendar covers (exclusive)
+     * @param calendars a {@link Calendar} for every trading day in the date range (others are ignored)
+     *
+     * @throws IllegalArgumentException thrown if a {@link Calendar} has an invalid date or time
+     */
+    public MarketCalendar(LocalDate from, LocalDate to, Collection<Calendar> calendars) {
+        this.from = from;
+        this.to = to;
+
+        TreeMap<LocalDate, Calendar> calendarsOfDates = new TreeMap<>();
+        for (Calendar calendar : calendars) {
+            LocalDate date = parseDate(calendar);
+            if (!date.isBefore(from) && date.isBefore(to)) {
+                calendarsOfDates.putIfAbsent(date, calendar);
+            }
+        }
+
+        this.calendars = calendarsOfDates.values().toArray(new Calendar[0]);
+        this.dates = calendarsOfDates.keySet().toArray(new LocalDate[0]);
+        this.openTimes = new LocalTime[this.calendars.length];
+        this.closeTimes = new LocalTime[this.calendars.length];
+        for (int index = 0; index < this.calendars.length; index++) {
+            openTimes[index] = parseTime(this.calendars[index].getOpen(), TimeUtil.MARKET_OPEN_TIME);
+            closeTimes[index] = parseTime(this.calendars[index].getClose(), TimeUtil.MARKET_CLOSE_TIME);
+        }
+    }
+
+    /**
+     * Parses the date of a {@link Calendar}.
+     *
+     * @param calendar the calendar
+     *
+     * @return the date
+     */
+    private static LocalDate parseDate(Calendar calendar) {
+        try {
+            return LocalDate.parse(calendar.getDate());
+        } catch (RuntimeException exception) {
+            throw new IllegalArgumentException("Invalid calendar date: " + calendar.getDate(), exception);
+        }
+    }
+
+    /**
+     * Parses an open or close time of a {@link Calendar} (e.g. <code>09:30</code> or <code>0930</code>).
+     *
+     * @param time        the time
+     * @param defaultTime the default time if the time is missing
+     *
+     * @return the local time
+     */
+    private static LocalTime parseTime(String time, LocalTime defaultTime) {
+        if (time == null || time.isEmpty()) {
+            return defaultTime;
+        }
+        try {
+            return time.length() == 4 && time.indexOf(':') == -1 ?
+                   LocalTime.of(Integer.parseInt(time.substring(0, 2)), Integer.parseInt(time.substring(2))) :
+                   LocalTime.parse(time);
+        } catch (RuntimeException exception) {
+            throw new IllegalArgumentException("Invalid calendar time: " + time, exception);
+        }
+    }
+
+    /**
+     * Returns a market calendar that covers the date ranges of this and another market calendar, which must overlap or
+     * be adjacent. The trading days of the other market calendar replace the ones of this market calendar where they
+     * overlap.
+     *
+     * @param marketCalendar the market calendar
+     *
+     * @return the merged market calendar
+     */
+    public MarketCalendar merge(MarketCalendar marketCalendar) {
+        if (marketCalendar.from.isAfter(to) || marketCalendar.to.isBefore(from)) {
+            throw new IllegalArgumentException("Market calendars from " + from + " to " + to + " and from " +
+                    marketCalendar.from + " to " + marketCalendar.to + " are not contiguous!");
+        }
+
+        ArrayList<Calendar> mergedCalendars = new ArrayList<>(getCalendars(from, marketCalendar.from));
+        mergedCalendars.addAll(Arrays.asList(marketCalendar.calendars));
+        mergedCalendars.addAll(getCalendars(marketCalendar.to, to));
+
+        return new MarketCalendar(from.isBefore(marketCalendar.from) ? from : marketCalendar.from,
+                to.isAfter(marketCalendar.to) ? to : marketCalendar.to, mergedCalendars);
+    }
+
+    /**
+     * Returns true if this market calendar covers a date range.
+     *
+     * @param from the from (inclusive)
+     * @param to   the to (exclusive)
+     *
+     * @return the boolean
+     */
+    public boolean covers(LocalDate from, LocalDate to) {
+        return !from.isBefore(this.from) && !to.isAfter(this.to);
+    }
+
+    /**
+     * Returns true if the market is open on a date.
+     *
+     * @param date the date (within the date range of this calendar)
+     *
+     * @return the boolean
+     */
+    public boolean isTradingDay(LocalDate date) {
+        return indexOf(date) >= 0;
+    }
+
+    /**
+     * Gets the trading days within a date range.
+     *
+     * @param from the from (inclusive)
+     * @param to   the to (exclusive)
+     *
+     * @return the trading days
+     */
+    public ArrayList<LocalDate> getTradingDays(LocalDate from, LocalDate to) {
+        int fromIndex = insertionIndexOf(from);
+        int toIndex = insertionIndexOf(to);
+        return new ArrayList<>(Arrays.asList(dates).subList(fromIndex, Math.max(fromIndex, toIndex)));
+    }
+
+    /**
+     * Gets the date intervals of the data files of an {@link AggregateUpdateType} within a date range (see {@link
+     * TimeUtil#getAggregateDateIntervals(AggregateUpdateType, LocalDate, LocalDate)}) without the days that the market
+     * is closed. Date intervals that are longer than a day are not pruned.
+     *
+     * @param aggregateUpdateType the aggregate update type
+     * @param from                the from (inclusive)
+     * @param to                  the to (exclusive)
+     *
+     * @return the date intervals
+     */
+    public ArrayList<LocalDate> getAggregateDateIntervals(AggregateUpdateType aggregateUpdateType, LocalDate from,
+            LocalDate to) {
+        return aggregateUpdateType.getSizeRanking() <= AggregateUpdateType.DAY.getSizeRanking() ?
+               getTradingDays(from, to) : TimeUtil.getAggregateDateIntervals(aggregateUpdateType, from, to);
+    }
+
+    /**
+     * Gets the {@link Calendar}s of the trading days within a date range.
+     *
+     * @param from the from (inclusive)
+     * @param to   the to (exclusive)
+     *
+     * @return the calendars
+     */
+    public List<Calendar> getCalendars(LocalDate from, LocalDate to) {
+        int fromIndex = insertionIndexOf(from);
+        int toIndex = insertionIndexOf(to);
+        return fromIndex >= toIndex ? Collections.emptyList() :
+               Collections.unmodifiableList(Arrays.asList(calendars).subList(fromIndex, toIndex));
+    }
+
+    /**
+     * Gets the New York time that the market opens on a date.
+     *
+     * @param date the date
+     *
+     * @return the open time (null if the market is closed on the date)
+     */
+    public LocalTime getOpenTime(LocalDate date) {
+        int index = indexOf(date);
+        return index < 0 ? null : openTimes[index];
+    }
+
+    /**
+     * Gets the New York time that the market closes on a date, which is earlier than {@link
+     * TimeUtil#MARKET_CLOSE_TIME} on early close days.
+     *
+     * @param date the date
+     *
+     * @return the close time (null if the market is closed on the date)
+     */
+    public LocalTime getCloseTime(LocalDate date) {
+        int index = indexOf(date);
+        return index < 0 ? null : closeTimes[index];
+    }
+
+    /**
+     * Gets the first trading day after a date.
+     *
+     * @param date the date
+     *
+     * @return the next trading day (null if there are none within the date range of this calendar)
+     */
+    public LocalDate getNextTradingDay(LocalDate date) {
+        int index = insertionIndexOf(date.plusDays(1));
+        return index < dates.length ? dates[index] : null;
+    }
+
+    /**
+     * Gets the index of a trading day.
+     *
+     * @param date the date
+     *
+     * @return the index (negative if the date isn't a trading day)
+     */
+    private int indexOf(LocalDate date) {
+        return Arrays.binarySearch(dates, date);
+    }
+
+    /**
+     * Gets the index of the first trading day on or after a date.
+     *
+     * @param date the date
+     *
+     * @return the insertion index
+     */
+    private int insertionIndexOf(LocalDate date) {
+        int index = Arrays.binarySearch(dates, date);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Gets the number of trading days.
+     *
+     * @return the trading day count
+     */
+    public int getTradingDayCount() {
+        return dates.length;
+    }
+
+    /**
+     * Gets the from of the date range that this calendar covers (inclusive).
+     *
+     * @return the from
+     */
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    /**
+     * Gets the to of the date range that this calendar covers (exclusive).
+     *
+     * @return the to
+     */
+    public LocalDate getTo() {
+        return to;
+    }
+
+    @Override
+    public String toString() {
+        return "MarketCalendar{" +
+                "from=" + from +
+                ", to=" + to +
+                ", tradingDayCount=" + dates.length +
+                '}';
+    }
+}
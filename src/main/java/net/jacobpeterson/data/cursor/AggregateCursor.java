@@ -0,0 +1,89 @@
+package net.jacobpeterson.data.cursor;
+
+import io.github.mainstringargs.domain.polygon.aggregates.Aggregate;
+import net.jacobpeterson.data.cache.SegmentColumn;
+import net.jacobpeterson.data.cache.SegmentType;
+import net.jacobpeterson.util.GsonUtil;
+
+/**
+ * A flyweight {@link SegmentCursor} over {@link SegmentType#AGGREGATE} segments.
+ */
+public class AggregateCursor extends SegmentCursor {
+
+    private static final int OPEN_INDEX = SegmentType.AGGREGATE.getColumnIndex(SegmentColumn.OPEN);
+    private static final int HIGH_INDEX = SegmentType.AGGREGATE.getColumnIndex(SegmentColumn.HIGH);
+    private static final int LOW_INDEX = SegmentType.AGGREGATE.getColumnIndex(SegmentColumn.LOW);
+    private static final int CLOSE_INDEX = SegmentType.AGGREGATE.getColumnIndex(SegmentColumn.CLOSE);
+    private static final int VOLUME_INDEX = SegmentType.AGGREGATE.getColumnIndex(SegmentColumn.VOLUME);
+    private static final int COUNT_INDEX = SegmentType.AGGREGATE.getColumnIndex(SegmentColumn.COUNT);
+
+    /**
+     * Instantiates a new Aggregate cursor.
+     */
+    public AggregateCursor() {
+        super(SegmentType.AGGREGATE);
+    }
+
+    /**
+     * Gets open.
+     *
+     * @return the open
+     */
+    public double getOpen() {
+        return getDouble(OPEN_INDEX);
+    }
+
+    /**
+     * Gets high.
+     *
+     * @return the high
+     */
+    public double getHigh() {
+        return getDouble(HIGH_INDEX);
+    }
+
+    /**
+     * Gets low.
+     *
+     * @return the low
+     */
+    public double getLow() {
+        return getDouble(LOW_INDEX);
+    }
+
+    /**
+     * Gets close.
+     *
+     * @return the close
+     */
+    public double getClose() {
+        return getDouble(CLOSE_INDEX);
+    }
+
+    /**
+     * Gets volume.
+     *
+     * @return the volume
+     */
+    public double getVolume() {
+        return getDouble(VOLUME_INDEX);
+    }
+
+    /**
+     * Gets the number of items in the aggregate window.
+     *
+     * @return the count
+     */
+    public int getCount() {
+        return getInt(COUNT_INDEX);
+    }
+
+    /**
+     * Materializes the current row into a new {@link Aggregate}.
+     *
+     * @return the aggregate
+     */
+    public Aggregate toAggregate() {
+        return GsonUtil.GSON.fromJson(toJsonObject(), Aggregate.class);
+    }
+}
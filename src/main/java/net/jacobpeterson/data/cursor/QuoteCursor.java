@@ -0,0 +1,130 @@
+package net.jacobpeterson.data.cursor;
+
+import io.github.mainstringargs.domain.polygon.historicquotes.HistoricQuote;
+import net.jacobpeterson.data.cache.SegmentColumn;
+import net.jacobpeterson.data.cache.SegmentType;
+import net.jacobpeterson.util.GsonUtil;
+
+/**
+ * A flyweight {@link SegmentCursor} over {@link SegmentType#QUOTE} segments.
+ */
+public class QuoteCursor extends SegmentCursor {
+
+    private static final int PARTICIPANT_TIMESTAMP_INDEX =
+            SegmentType.QUOTE.getColumnIndex(SegmentColumn.PARTICIPANT_TIMESTAMP);
+    private static final int SEQUENCE_NUMBER_INDEX = SegmentType.QUOTE.getColumnIndex(SegmentColumn.SEQUENCE_NUMBER);
+    private static final int BID_PRICE_INDEX = SegmentType.QUOTE.getColumnIndex(SegmentColumn.BID_PRICE);
+    private static final int BID_SIZE_INDEX = SegmentType.QUOTE.getColumnIndex(SegmentColumn.BID_SIZE);
+    private static final int BID_EXCHANGE_INDEX = SegmentType.QUOTE.getColumnIndex(SegmentColumn.BID_EXCHANGE);
+    private static final int ASK_PRICE_INDEX = SegmentType.QUOTE.getColumnIndex(SegmentColumn.ASK_PRICE);
+    private static final int ASK_SIZE_INDEX = SegmentType.QUOTE.getColumnIndex(SegmentColumn.ASK_SIZE);
+    private static final int ASK_EXCHANGE_INDEX = SegmentType.QUOTE.getColumnIndex(SegmentColumn.ASK_EXCHANGE);
+    private static final int TAPE_INDEX = SegmentType.QUOTE.getColumnIndex(SegmentColumn.TAPE);
+    private static final int CONDITIONS_INDEX = SegmentType.QUOTE.getColumnIndex(SegmentColumn.CONDITIONS);
+
+    /**
+     * Instantiates a new Quote cursor.
+     */
+    public QuoteCursor() {
+        super(SegmentType.QUOTE);
+    }
+
+    /**
+     * Gets participant timestamp.
+     *
+     * @return the participant timestamp
+     */
+    public long getParticipantTimestamp() {
+        return getLong(PARTICIPANT_TIMESTAMP_INDEX);
+    }
+
+    /**
+     * Gets sequence number.
+     *
+     * @return the sequence number
+     */
+    public long getSequenceNumber() {
+        return getLong(SEQUENCE_NUMBER_INDEX);
+    }
+
+    /**
+     * Gets bid price.
+     *
+     * @return the bid price
+     */
+    public double getBidPrice() {
+        return getDouble(BID_PRICE_INDEX);
+    }
+
+    /**
+     * Gets bid size.
+     *
+     * @return the bid size
+     */
+    public int getBidSize() {
+        return getInt(BID_SIZE_INDEX);
+    }
+
+    /**
+     * Gets bid exchange.
+     *
+     * @return the bid exchange
+     */
+    public int getBidExchange() {
+        return getInt(BID_EXCHANGE_INDEX);
+    }
+
+    /**
+     * Gets ask price.
+     *
+     * @return the ask price
+     */
+    public double getAskPrice() {
+        return getDouble(ASK_PRICE_INDEX);
+    }
+
+    /**
+     * Gets ask size.
+     *
+     * @return the ask size
+     */
+    public int getAskSize() {
+        return getInt(ASK_SIZE_INDEX);
+    }
+
+    /**
+     * Gets ask exchange.
+     *
+     * @return the ask exchange
+     */
+    public int getAskExchange() {
+        return getInt(ASK_EXCHANGE_INDEX);
+    }
+
+    /**
+     * Gets tape.
+     *
+     * @return the tape
+     */
+    public int getTape() {
+        return getInt(TAPE_INDEX);
+    }
+
+    /**
+     * Gets the conditions bitmask. See {@link net.jacobpeterson.data.cache.ColumnKind#BITMASK}.
+     *
+     * @return the conditions
+     */
+    public long getConditions() {
+        return getLong(CONDITIONS_INDEX);
+    }
+
+    /**
+     * Materializes the current row into a new {@link HistoricQuote}.
+     *
+     * @return the historic quote
+     */
+    public HistoricQuote toHistoricQuote() {
+        return GsonUtil.GSON.fromJson(toJsonObject(), HistoricQuote.class);
+    }
+}
@@ -0,0 +1,229 @@
+package net.jacobpeterson.data.cursor;
+
+import com.google.gson.JsonObject;
+import net.jacobpeterson.data.cache.ColumnKind;
+import net.jacobpeterson.data.cache.Segment;
+import net.jacobpeterson.data.cache.SegmentType;
+
+import java.nio.ByteBuffer;
+import java.util.NoSuchElementException;
+
+/**
+ * A flyweight cursor over the rows of a {@link Segment}. The getters read the values of the current row directly from
+ * the segment's (possibly memory-mapped) blocks, so sweeping over a segment allocates nothing. A cursor can be {@link
+ * #reset(Segment)} onto another segment so one instance can be reused across many days.
+ * <p>
+ * This is not thread safe, but any number of cursors can read the same {@link Segment} concurrently.
+ */
+public abstract class SegmentCursor {
+
+    private final SegmentType segmentType;
+    private final int[] columnOffsets;
+    private Segment segment;
+    private ByteBuffer block;
+    private int row;
+    private int blockIndex;
+    private int rowInBlock;
+    private int rowsInBlock;
+    private int endRow;
+
+    /**
+     * Instantiates a new Segment cursor.
+     *
+     * @param segmentType the segment type
+     */
+    protected SegmentCursor(SegmentType segmentType) {
+        this.segmentType = segmentType;
+        this.columnOffsets = new int[segmentType.getColumnCount()];
+
+        this.reset(null);
+    }
+
+    /**
+     * Resets this cursor to be before the first row of a segment.
+     *
+     * @param segment the segment (null to clear this cursor)
+     */
+    public void reset(Segment segment) {
+        reset(segment, 0, segment == null ? 0 : segment.getRowCount());
+    }
+
+    /**
+     * Resets this cursor to be before a row of a segment and limits it to a range of rows (e.g. the rows of a time
+     * range found with {@link Segment#findRow(long)}). Only the blocks of the rows that are moved onto are read.
+     *
+     * @param segment the segment (null to clear this cursor)
+     * @param fromRow the from row (inclusive)
+     * @param endRow  the end row (exclusive)
+     */
+    public void reset(Segment segment, int fromRow, int endRow) {
+        if (segment != null && segment.getSegmentType() != segmentType) {
+            throw new IllegalArgumentException("Expected a " + segmentType + " segment, not " +
+                    segment.getSegmentType());
+        }
+        if (fromRow < 0 || endRow > (segment == null ? 0 : segment.getRowCount())) {
+            throw new IndexOutOfBoundsException("Rows " + fromRow + " to " + endRow + " are out of bounds!");
+        }
+
+        this.segment = segment;
+        this.block = null;
+        this.row = Math.min(fromRow, endRow) - 1;
+        this.blockIndex = -1;
+        this.rowInBlock = -1;
+        this.rowsInBlock = 0;
+        this.endRow = endRow;
+
+        if (fromRow > 0 && fromRow < endRow) {
+            // Position this cursor just before the from row so that the next call to next() moves onto it
+            seek(fromRow);
+            this.row--;
+            this.rowInBlock--;
+        }
+    }
+
+    /**
+     * Returns true if there is another row after the current row.
+     *
+     * @return the boolean
+     */
+    public boolean hasNext() {
+        return segment != null && row + 1 < endRow;
+    }
+
+    /**
+     * Moves this cursor to the next row.
+     *
+     * @return true if the cursor moved, false if there are no more rows
+     */
+    public boolean next() {
+        if (!hasNext()) {
+            return false;
+        }
+
+        row++;
+        if (++rowInBlock >= rowsInBlock) {
+            loadBlock(blockIndex + 1, 0);
+        }
+        return true;
+    }
+
+    /**
+     * Moves this cursor to a row.
+     *
+     * @param row the row
+     */
+    public void seek(int row) {
+        if (segment == null || row < 0 || row >= segment.getRowCount()) {
+            throw new NoSuchElementException("Row " + row + " is out of bounds!");
+        }
+
+        int newBlockIndex = row / segment.getBlockRowCount();
+        loadBlock(newBlockIndex, row - newBlockIndex * segment.getBlockRowCount());
+        this.row = row;
+    }
+
+    /**
+     * Loads a block and computes its column offsets.
+     *
+     * @param blockIndex the block index
+     * @param rowInBlock the row in block
+     */
+    private void loadBlock(int blockIndex, int rowInBlock) {
+        if (blockIndex != this.blockIndex) {
+            this.blockIndex = blockIndex;
+            this.block = segment.getBlock(blockIndex);
+            this.rowsInBlock = segment.getRowsInBlock(blockIndex);
+            for (int columnIndex = 0; columnIndex < columnOffsets.length; columnIndex++) {
+                columnOffsets[columnIndex] = rowsInBlock * segmentType.getColumnWidthPrefix(columnIndex);
+            }
+        }
+        this.rowInBlock = rowInBlock;
+    }
+
+    /**
+     * Gets the timestamp (epoch nanoseconds) of the current row.
+     *
+     * @return the timestamp
+     */
+    public long getTimestamp() {
+        return block.getLong(rowInBlock * ColumnKind.LONG.getWidth());
+    }
+
+    /**
+     * Gets a long (or {@link ColumnKind#BITMASK}) value of the current row.
+     *
+     * @param columnIndex the column index
+     *
+     * @return the long
+     */
+    protected final long getLong(int columnIndex) {
+        return block.getLong(columnOffsets[columnIndex] + rowInBlock * ColumnKind.LONG.getWidth());
+    }
+
+    /**
+     * Gets a double value of the current row.
+     *
+     * @param columnIndex the column index
+     *
+     * @return the double
+     */
+    protected final double getDouble(int columnIndex) {
+        return block.getDouble(columnOffsets[columnIndex] + rowInBlock * ColumnKind.DOUBLE.getWidth());
+    }
+
+    /**
+     * Gets an int value of the current row.
+     *
+     * @param columnIndex the column index
+     *
+     * @return the int
+     */
+    protected final int getInt(int columnIndex) {
+        return block.getInt(columnOffsets[columnIndex] + rowInBlock * ColumnKind.INT.getWidth());
+    }
+
+    /**
+     * Converts the current row into a Polygon JSON object. See {@link Segment#toJsonObject(int)}.
+     *
+     * @return the json object
+     */
+    public JsonObject toJsonObject() {
+        return segment.toJsonObject(row);
+    }
+
+    /**
+     * Gets the current row (-1 if before the first row).
+     *
+     * @return the row
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * Gets the end row (exclusive) that this cursor is limited to.
+     *
+     * @return the end row
+     */
+    public int getEndRow() {
+        return endRow;
+    }
+
+    /**
+     * Gets segment.
+     *
+     * @return the segment
+     */
+    public Segment getSegment() {
+        return segment;
+    }
+
+    /**
+     * Gets segment type.
+     *
+     * @return the segment type
+     */
+    public SegmentType getSegmentType() {
+        return segmentType;
+    }
+}
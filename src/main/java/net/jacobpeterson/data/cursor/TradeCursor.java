@@ -0,0 +1,100 @@
+package net.jacobpeterson.data.cursor;
+
+import io.github.mainstringargs.domain.polygon.historictrades.HistoricTrade;
+import net.jacobpeterson.data.cache.SegmentColumn;
+import net.jacobpeterson.data.cache.SegmentType;
+import net.jacobpeterson.util.GsonUtil;
+
+/**
+ * A flyweight {@link SegmentCursor} over {@link SegmentType#TRADE} segments.
+ */
+public class TradeCursor extends SegmentCursor {
+
+    private static final int PARTICIPANT_TIMESTAMP_INDEX =
+            SegmentType.TRADE.getColumnIndex(SegmentColumn.PARTICIPANT_TIMESTAMP);
+    private static final int SEQUENCE_NUMBER_INDEX = SegmentType.TRADE.getColumnIndex(SegmentColumn.SEQUENCE_NUMBER);
+    private static final int PRICE_INDEX = SegmentType.TRADE.getColumnIndex(SegmentColumn.PRICE);
+    private static final int SIZE_INDEX = SegmentType.TRADE.getColumnIndex(SegmentColumn.SIZE);
+    private static final int EXCHANGE_INDEX = SegmentType.TRADE.getColumnIndex(SegmentColumn.EXCHANGE);
+    private static final int TAPE_INDEX = SegmentType.TRADE.getColumnIndex(SegmentColumn.TAPE);
+    private static final int CONDITIONS_INDEX = SegmentType.TRADE.getColumnIndex(SegmentColumn.CONDITIONS);
+
+    /**
+     * Instantiates a new Trade cursor.
+     */
+    public TradeCursor() {
+        super(SegmentType.TRADE);
+    }
+
+    /**
+     * Gets participant timestamp.
+     *
+     * @return the participant timestamp
+     */
+    public long getParticipantTimestamp() {
+        return getLong(PARTICIPANT_TIMESTAMP_INDEX);
+    }
+
+    /**
+     * Gets sequence number.
+     *
+     * @return the sequence number
+     */
+    public long getSequenceNumber() {
+        return getLong(SEQUENCE_NUMBER_INDEX);
+    }
+
+    /**
+     * Gets price.
+     *
+     * @return the price
+     */
+    public double getPrice() {
+        return getDouble(PRICE_INDEX);
+    }
+
+    /**
+     * Gets size.
+     *
+     * @return the size
+     */
+    public int getSize() {
+        return getInt(SIZE_INDEX);
+    }
+
+    /**
+     * Gets exchange.
+     *
+     * @return the exchange
+     */
+    public int getExchange() {
+        return getInt(EXCHANGE_INDEX);
+    }
+
+    /**
+     * Gets tape.
+     *
+     * @return the tape
+     */
+    public int getTape() {
+        return getInt(TAPE_INDEX);
+    }
+
+    /**
+     * Gets the conditions bitmask. See {@link net.jacobpeterson.data.cache.ColumnKind#BITMASK}.
+     *
+     * @return the conditions
+     */
+    public long getConditions() {
+        return getLong(CONDITIONS_INDEX);
+    }
+
+    /**
+     * Materializes the current row into a new {@link HistoricTrade}.
+     *
+     * @return the historic trade
+     */
+    public HistoricTrade toHistoricTrade() {
+        return GsonUtil.GSON.fromJson(toJsonObject(), HistoricTrade.class);
+    }
+}
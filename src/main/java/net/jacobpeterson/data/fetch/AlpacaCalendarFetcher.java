@@ -0,0 +1,58 @@
+package net.jacobpeterson.data.fetch;
+
+import io.github.mainstringargs.alpaca.AlpacaAPI;
+import io.github.mainstringargs.domain.alpaca.calendar.Calendar;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link CalendarFetcher} that uses {@link AlpacaAPI}.
+ * <p>
+ * This is thread safe if the {@link AlpacaAPI} is thread safe.
+ */
+public class AlpacaCalendarFetcher implements CalendarFetcher {
+
+    private final AlpacaAPI alpacaAPI;
+
+    /**
+     * Instantiates a new Alpaca calendar fetcher.
+     *
+     * @param alpacaAPI the alpaca api
+     */
+    public AlpacaCalendarFetcher(AlpacaAPI alpacaAPI) {
+        this.alpacaAPI = alpacaAPI;
+    }
+
+    @Override
+    public List<Calendar> fetch(LocalDate from, LocalDate to) throws IOException {
+        if (alpacaAPI == null) {
+            throw new IOException("There is no AlpacaAPI to fetch the calendar from!");
+        }
+        if (!from.isBefore(to)) {
+            return new ArrayList<>();
+        }
+
+        ArrayList<Calendar> calendars;
+        try {
+            calendars = alpacaAPI.getCalendar(from, to.minusDays(1)); // Alpaca's end date is inclusive
+        } catch (Exception exception) {
+            throw new IOException("Could not fetch the calendar from " + from + " to " + to, exception);
+        }
+        if (calendars == null) {
+            throw new IOException("Alpaca returned no calendar from " + from + " to " + to);
+        }
+        return calendars;
+    }
+
+    /**
+     * Gets alpaca api.
+     *
+     * @return the alpaca api
+     */
+    public AlpacaAPI getAlpacaAPI() {
+        return alpacaAPI;
+    }
+}
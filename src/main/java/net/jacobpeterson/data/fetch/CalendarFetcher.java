@@ -0,0 +1,27 @@
+package net.jacobpeterson.data.fetch;
+
+import io.github.mainstringargs.domain.alpaca.calendar.Calendar;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Fetches the trading days of the stock market calendar from a remote source (e.g. Alpaca). Implementations must be
+ * thread safe.
+ */
+@FunctionalInterface
+public interface CalendarFetcher {
+
+    /**
+     * Fetches the calendar.
+     *
+     * @param from the from (inclusive)
+     * @param to   the to (exclusive)
+     *
+     * @return a {@link Calendar} for every trading day in the date range
+     *
+     * @throws IOException thrown for {@link IOException}s or if the remote source rejected the request
+     */
+    List<Calendar> fetch(LocalDate from, LocalDate to) throws IOException;
+}
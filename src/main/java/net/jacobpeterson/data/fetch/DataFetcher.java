@@ -0,0 +1,32 @@
+package net.jacobpeterson.data.fetch;
+
+import net.jacobpeterson.algorithm.update.ticker.AggregateUpdateType;
+import net.jacobpeterson.data.BacktestData;
+import net.jacobpeterson.data.cache.SegmentType;
+import net.jacobpeterson.data.cache.SegmentWriter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * Fetches the data of a single {@link BacktestData#getDataFile} entry from a remote source (e.g. Polygon).
+ * Implementations must be thread safe.
+ */
+@FunctionalInterface
+public interface DataFetcher {
+
+    /**
+     * Fetches data.
+     *
+     * @param ticker              the ticker
+     * @param date                the date of the data file
+     * @param aggregateUpdateType the aggregate update type (null for trades and quotes)
+     * @param segmentType         the segment type
+     *
+     * @return the segment writer containing the fetched rows (which may be empty, e.g. on a market holiday)
+     *
+     * @throws IOException thrown for {@link IOException}s or if the remote source rejected the request
+     */
+    SegmentWriter fetch(String ticker, LocalDate date, AggregateUpdateType aggregateUpdateType,
+            SegmentType segmentType) throws IOException;
+}
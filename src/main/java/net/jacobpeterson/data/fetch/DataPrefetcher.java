@@ -0,0 +1,323 @@
+package net.jacobpeterson.data.fetch;
+
+import net.jacobpeterson.algorithm.update.TickerUpdateType;
+import net.jacobpeterson.algorithm.update.ticker.AggregateUpdateType;
+import net.jacobpeterson.algorithm.update.ticker.PriceUpdateType;
+import net.jacobpeterson.data.BacktestData;
+import net.jacobpeterson.data.cache.SegmentType;
+import net.jacobpeterson.data.cache.SegmentWriter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bulk prefetches data files of a ticker universe and date range into the data cache of a {@link BacktestData}.
+ * Missing data files are fetched concurrently via a {@link DataFetcher} (which should be rate limited, e.g. with a
+ * {@link TokenBucketRateLimiter}) and failed fetches are retried with exponential backoff. Since every data file is
+ * written to a temporary file and then atomically renamed, an interrupted prefetch can simply be run again and it will
+ * resume where it stopped (deleting the temporary files that a killed prefetch left behind). The daily data files of
+ * weekends and holidays aren't fetched if the market calendar is available (see {@link
+ * BacktestData#getDateIntervals}), and neither are data files that aren't final yet (see {@link
+ * BacktestData#isFinal(LocalDate, AggregateUpdateType)}).
+ */
+public class DataPrefetcher {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final int PROGRESS_LOG_INTERVAL = 100;
+
+    private final BacktestData backtestData;
+    private final DataFetcher dataFetcher;
+    private int threadCount;
+    private int maxRetries;
+    private long initialBackoffMillis;
+    private long maxBackoffMillis;
+
+    /**
+     * Instantiates a new Data prefetcher with 8 threads, 5 retries, and a backoff of 500 ms up to 30 s.
+     *
+     * @param backtestData the backtest data
+     * @param dataFetcher  the data fetcher
+     */
+    public DataPrefetcher(BacktestData backtestData, DataFetcher dataFetcher) {
+        this.backtestData = backtestData;
+        this.dataFetcher = dataFetcher;
+        this.threadCount = 8;
+        this.maxRetries = 5;
+        this.initialBackoffMillis = 500;
+        this.maxBackoffMillis = 30_000;
+    }
+
+    /**
+     * Prefetches every final data file of the tickers and ticker update types from a date range that isn't cached yet.
+     *
+     * @param tickers           the tickers
+     * @param from              the from (inclusive)
+     * @param to                the to (exclusive)
+     * @param tickerUpdateTypes the {@link AggregateUpdateType}s and {@link PriceUpdateType}s to prefetch
+     *
+     * @return the prefetch result
+     *
+     * @throws InterruptedException thrown if interrupted while prefetching
+     */
+    public PrefetchResult prefetch(Collection<String> tickers, LocalDate from, LocalDate to,
+            TickerUpdateType... tickerUpdateTypes) throws InterruptedException {
+        long startNanos = System.nanoTime();
+
+        ArrayList<PrefetchTask> prefetchTasks = new ArrayList<>();
+        int requestedCount = 0;
+        int notFinalCount = 0;
+        for (String ticker : tickers) {
+            for (TickerUpdateType tickerUpdateType : tickerUpdateTypes) {
+                AggregateUpdateType aggregateUpdateType = tickerUpdateType instanceof AggregateUpdateType ?
+                                                          (AggregateUpdateType) tickerUpdateType : null;
+                SegmentType segmentType = aggregateUpdateType != null ? SegmentType.AGGREGATE :
+                                          tickerUpdateType == PriceUpdateType.TRADE ? SegmentType.TRADE :
+                                          SegmentType.QUOTE;
+
+                AggregateUpdateType dateIntervalType = aggregateUpdateType == null ? AggregateUpdateType.DAY :
+                                                       aggregateUpdateType;
+
+                for (LocalDate date : backtestData.getDateIntervals(dateIntervalType, from, to)) {
+                    if (!BacktestData.isFinal(date, aggregateUpdateType)) {
+                        notFinalCount++;
+                        continue;
+                    }
+
+                    requestedCount++;
+                    File dataFile = backtestData.getDataFile(ticker, date, aggregateUpdateType,
+                            segmentType.getFileExtension());
+                    if (!backtestData.isCached(dataFile)) {
+                        prefetchTasks.add(new PrefetchTask(ticker, date, aggregateUpdateType, segmentType, dataFile));
+                    }
+                }
+            }
+        }
+
+        deleteTemporaryFiles(prefetchTasks);
+
+        if (notFinalCount > 0) {
+            LOGGER.info("Skipping {} data files that aren't final yet", notFinalCount);
+        }
+        LOGGER.info("Prefetching {} of {} data files with {} threads", prefetchTasks.size(), requestedCount,
+                threadCount);
+
+        AtomicInteger fetchedCount = new AtomicInteger();
+        List<File> failedFiles = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        try {
+            for (PrefetchTask prefetchTask : prefetchTasks) {
+                executorService.execute(() -> {
+                    if (fetchWithRetries(prefetchTask)) {
+                        int fetched = fetchedCount.incrementAndGet();
+                        if (fetched % PROGRESS_LOG_INTERVAL == 0) {
+                            LOGGER.info("Prefetched {} of {} data files", fetched, prefetchTasks.size());
+                        }
+                    } else {
+                        failedFiles.add(prefetchTask.dataFile);
+                    }
+                });
+            }
+
+            executorService.shutdown();
+            while (!executorService.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOGGER.debug("Waiting for prefetch to finish...");
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        PrefetchResult prefetchResult = new PrefetchResult(requestedCount, requestedCount - prefetchTasks.size(),
+                fetchedCount.get(), failedFiles, System.nanoTime() - startNanos);
+        LOGGER.info("Prefetch finished: {}", prefetchResult);
+        return prefetchResult;
+    }
+
+    /**
+     * Deletes the temporary files that a prefetch which was killed while writing left behind in the directories of
+     * the data files to prefetch, since {@link SegmentWriter#write(File)} only cleans up its own temporary file if it
+     * fails within the process.
+     *
+     * @param prefetchTasks the prefetch tasks
+     */
+    private static void deleteTemporaryFiles(List<PrefetchTask> prefetchTasks) {
+        HashSet<File> directories = new HashSet<>();
+        for (PrefetchTask prefetchTask : prefetchTasks) {
+            File directory = prefetchTask.dataFile.getParentFile();
+            if (directory == null || !directories.add(directory)) {
+                continue;
+            }
+
+            File[] temporaryFiles = directory.listFiles((parent, name) ->
+                    name.endsWith(SegmentWriter.TEMPORARY_FILE_SUFFIX));
+            if (temporaryFiles == null) {
+                continue;
+            }
+            for (File temporaryFile : temporaryFiles) {
+                try {
+                    Files.deleteIfExists(temporaryFile.toPath());
+                    LOGGER.debug("Deleted the stale temporary file {}", temporaryFile);
+                } catch (IOException exception) {
+                    LOGGER.warn("Could not delete the stale temporary file {}", temporaryFile, exception);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fetches and writes a data file, retrying with exponential backoff and jitter.
+     *
+     * @param prefetchTask the prefetch task
+     *
+     * @return true if the data file was written
+     */
+    private boolean fetchWithRetries(PrefetchTask prefetchTask) {
+        for (int attempt = 0; ; attempt++) {
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+
+            try {
+                backtestData.writeSegment(dataFetcher.fetch(prefetchTask.ticker, prefetchTask.date,
+                        prefetchTask.aggregateUpdateType, prefetchTask.segmentType), prefetchTask.dataFile);
+                return true;
+            } catch (InterruptedIOException exception) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (IOException | RuntimeException exception) {
+                if (attempt >= maxRetries) {
+                    LOGGER.error("Could not prefetch {} after {} attempts!", prefetchTask.dataFile, attempt + 1,
+                            exception);
+                    return false;
+                }
+
+                long backoffMillis = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt, 30));
+                backoffMillis = backoffMillis / 2 + ThreadLocalRandom.current().nextLong(backoffMillis / 2 + 1);
+                LOGGER.warn("Could not prefetch {} (attempt {}), retrying in {} ms: {}", prefetchTask.dataFile,
+                        attempt + 1, backoffMillis, exception.getMessage());
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets thread count.
+     *
+     * @return the thread count
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Sets the number of data files that are fetched concurrently.
+     *
+     * @param threadCount the thread count
+     */
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Gets max retries.
+     *
+     * @return the max retries
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Sets max retries.
+     *
+     * @param maxRetries the max retries
+     */
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Gets initial backoff millis.
+     *
+     * @return the initial backoff millis
+     */
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    /**
+     * Sets initial backoff millis.
+     *
+     * @param initialBackoffMillis the initial backoff millis
+     */
+    public void setInitialBackoffMillis(long initialBackoffMillis) {
+        this.initialBackoffMillis = initialBackoffMillis;
+    }
+
+    /**
+     * Gets max backoff millis.
+     *
+     * @return the max backoff millis
+     */
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    /**
+     * Sets max backoff millis.
+     *
+     * @param maxBackoffMillis the max backoff millis
+     */
+    public void setMaxBackoffMillis(long maxBackoffMillis) {
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * A data file to prefetch.
+     */
+    private static class PrefetchTask {
+
+        private final String ticker;
+        private final LocalDate date;
+        private final AggregateUpdateType aggregateUpdateType;
+        private final SegmentType segmentType;
+        private final File dataFile;
+
+        /**
+         * Instantiates a new Prefetch task.
+         *
+         * @param ticker              the ticker
+         * @param date                the date
+         * @param aggregateUpdateType the aggregate update type
+         * @param segmentType         the segment type
+         * @param dataFile            the data file
+         */
+        PrefetchTask(String ticker, LocalDate date, AggregateUpdateType aggregateUpdateType,
+                SegmentType segmentType, File dataFile) {
+            this.ticker = ticker;
+            this.date = date;
+            this.aggregateUpdateType = aggregateUpdateType;
+            this.segmentType = segmentType;
+            this.dataFile = dataFile;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package net.jacobpeterson.data.fetch;
+
+import io.github.mainstringargs.polygon.PolygonAPI;
+import io.github.mainstringargs.polygon.enums.Timespan;
+import net.jacobpeterson.algorithm.update.ticker.AggregateUpdateType;
+import net.jacobpeterson.data.cache.JsonSegmentConverter;
+import net.jacobpeterson.data.cache.SegmentColumn;
+import net.jacobpeterson.data.cache.SegmentType;
+import net.jacobpeterson.data.cache.SegmentWriter;
+import net.jacobpeterson.util.GsonUtil;
+import net.jacobpeterson.util.TimeUtil;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link DataFetcher} that uses {@link PolygonAPI}. Responses are serialized back into JSON with {@link
+ * GsonUtil#GSON} and read with {@link JsonSegmentConverter} so they are stored exactly like converted JSON caches.
+ * <p>
+ * This is thread safe if the {@link PolygonAPI} is thread safe.
+ */
+public class PolygonDataFetcher implements DataFetcher {
+
+    /**
+     * The maximum number of trades or quotes requested per Polygon request.
+     */
+    public static final int MAX_TICK_RESULT_COUNT = 50_000;
+
+    private final PolygonAPI polygonAPI;
+    private final TokenBucketRateLimiter rateLimiter;
+
+    /**
+     * Instantiates a new Polygon data fetcher without a rate limit.
+     *
+     * @param polygonAPI the polygon api
+     */
+    public PolygonDataFetcher(PolygonAPI polygonAPI) {
+        this(polygonAPI, null);
+    }
+
+    /**
+     * Instantiates a new Polygon data fetcher.
+     *
+     * @param polygonAPI  the polygon api
+     * @param rateLimiter the rate limiter that every Polygon request acquires a permit from (null for no limit)
+     */
+    public PolygonDataFetcher(PolygonAPI polygonAPI, TokenBucketRateLimiter rateLimiter) {
+        this.polygonAPI = polygonAPI;
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public SegmentWriter fetch(String ticker, LocalDate date, AggregateUpdateType aggregateUpdateType,
+            SegmentType segmentType) throws IOException {
+        if (polygonAPI == null) {
+            throw new IOException("There is no PolygonAPI to fetch " + ticker + " " + segmentType + " from!");
+        }
+
+        SegmentWriter segmentWriter = new SegmentWriter(segmentType);
+        try {
+            switch (segmentType) {
+                case AGGREGATE:
+                    acquirePermit();
+                    readResponse(polygonAPI.getAggregates(ticker, 1, Timespan.valueOf(aggregateUpdateType.name()),
+                            date, TimeUtil.getNextAggregateDate(aggregateUpdateType, date).minusDays(1), false),
+                            segmentWriter);
+                    break;
+                case TRADE:
+                case QUOTE:
+                    Long timestampOffset = null;
+                    int pageRowCount;
+                    do {
+                        acquirePermit();
+                        Object response = segmentType == SegmentType.TRADE ?
+                                          polygonAPI.getHistoricTrades(ticker, date, timestampOffset, null, false,
+                                                  MAX_TICK_RESULT_COUNT) :
+                                          polygonAPI.getHistoricQuotes(ticker, date, timestampOffset, null, false,
+                                                  MAX_TICK_RESULT_COUNT);
+                        pageRowCount = readResponse(response, segmentWriter);
+
+                        if (pageRowCount > 0) {
+                            timestampOffset = segmentType.getJsonTimestampUnit().convert(segmentWriter.getLong(
+                                    SegmentColumn.TIMESTAMP, segmentWriter.getRowCount() - 1), TimeUnit.NANOSECONDS);
+                        }
+                    } while (pageRowCount >= MAX_TICK_RESULT_COUNT);
+                    break;
+            }
+        } catch (IOException exception) {
+            throw exception;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching " + ticker + " " + segmentType);
+        } catch (Exception exception) {
+            throw new IOException("Could not fetch " + ticker + " " + segmentType + " for " + date, exception);
+        }
+
+        return segmentWriter;
+    }
+
+    /**
+     * Acquires a permit from the {@link #rateLimiter} if there is one.
+     *
+     * @throws InterruptedException thrown if interrupted while waiting
+     */
+    private void acquirePermit() throws InterruptedException {
+        if (rateLimiter != null) {
+            rateLimiter.acquire();
+        }
+    }
+
+    /**
+     * Reads the results of a Polygon response into the segment writer.
+     *
+     * @param response      the response
+     * @param segmentWriter the segment writer
+     *
+     * @return the number of rows read
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private int readResponse(Object response, SegmentWriter segmentWriter) throws IOException {
+        if (response == null) {
+            return 0;
+        }
+        return JsonSegmentConverter.readJson(new StringReader(GsonUtil.GSON.toJson(response)), segmentWriter);
+    }
+
+    /**
+     * Gets polygon api.
+     *
+     * @return the polygon api
+     */
+    public PolygonAPI getPolygonAPI() {
+        return polygonAPI;
+    }
+}
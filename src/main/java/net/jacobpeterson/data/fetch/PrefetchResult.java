@@ -0,0 +1,101 @@
+package net.jacobpeterson.data.fetch;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of a {@link DataPrefetcher#prefetch} run.
+ */
+public class PrefetchResult {
+
+    private final int requestedCount;
+    private final int cachedCount;
+    private final int fetchedCount;
+    private final ArrayList<File> failedFiles;
+    private final long elapsedNanos;
+
+    /**
+     * Instantiates a new Prefetch result.
+     *
+     * @param requestedCount the number of data files requested
+     * @param cachedCount    the number of data files that were already cached
+     * @param fetchedCount   the number of data files that were fetched
+     * @param failedFiles    the data files that could not be fetched
+     * @param elapsedNanos   the elapsed nanos
+     */
+    public PrefetchResult(int requestedCount, int cachedCount, int fetchedCount, List<File> failedFiles,
+            long elapsedNanos) {
+        this.requestedCount = requestedCount;
+        this.cachedCount = cachedCount;
+        this.fetchedCount = fetchedCount;
+        this.failedFiles = new ArrayList<>(failedFiles);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Gets requested count.
+     *
+     * @return the requested count
+     */
+    public int getRequestedCount() {
+        return requestedCount;
+    }
+
+    /**
+     * Gets cached count.
+     *
+     * @return the cached count
+     */
+    public int getCachedCount() {
+        return cachedCount;
+    }
+
+    /**
+     * Gets fetched count.
+     *
+     * @return the fetched count
+     */
+    public int getFetchedCount() {
+        return fetchedCount;
+    }
+
+    /**
+     * Gets failed files.
+     *
+     * @return the failed files
+     */
+    public List<File> getFailedFiles() {
+        return Collections.unmodifiableList(failedFiles);
+    }
+
+    /**
+     * Gets elapsed nanos.
+     *
+     * @return the elapsed nanos
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns true if every requested data file is now cached.
+     *
+     * @return the boolean
+     */
+    public boolean isComplete() {
+        return failedFiles.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "PrefetchResult{" +
+                "requestedCount=" + requestedCount +
+                ", cachedCount=" + cachedCount +
+                ", fetchedCount=" + fetchedCount +
+                ", failedCount=" + failedFiles.size() +
+                ", elapsedMillis=" + elapsedNanos / 1_000_000 +
+                '}';
+    }
+}
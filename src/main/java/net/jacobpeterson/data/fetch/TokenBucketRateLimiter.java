@@ -0,0 +1,63 @@
+package net.jacobpeterson.data.fetch;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket rate limiter. Tokens are added at a constant rate up to a maximum burst size and every permit
+ * consumes one token.
+ * <p>
+ * This is thread safe.
+ */
+public class TokenBucketRateLimiter {
+
+    private final double permitsPerNano;
+    private final double burstSize;
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * Instantiates a new Token bucket rate limiter.
+     *
+     * @param permitsPerSecond the permits per second
+     * @param burstSize        the maximum number of permits that can be acquired without waiting
+     */
+    public TokenBucketRateLimiter(double permitsPerSecond, int burstSize) {
+        if (permitsPerSecond <= 0 || burstSize <= 0) {
+            throw new IllegalArgumentException("Permits per second and burst size must be positive!");
+        }
+
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burstSize = burstSize;
+        this.tokens = burstSize;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Acquires a permit, blocking until one is available.
+     *
+     * @throws InterruptedException thrown if interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        while ((waitNanos = tryAcquire()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Tries to acquire a permit without blocking.
+     *
+     * @return 0 if a permit was acquired, otherwise the nanoseconds until a permit should be available
+     */
+    private synchronized long tryAcquire() {
+        long nowNanos = System.nanoTime();
+        tokens = Math.min(burstSize, tokens + (nowNanos - lastRefillNanos) * permitsPerNano);
+        lastRefillNanos = nowNanos;
+
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1 - tokens) / permitsPerNano));
+    }
+}
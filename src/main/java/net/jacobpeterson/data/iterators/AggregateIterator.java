@@ -1,37 +1,18 @@
 package net.jacobpeterson.data.iterators;
 
-import com.google.gson.stream.JsonReader;
-import com.google.gson.stream.JsonWriter;
 import io.github.mainstringargs.domain.polygon.aggregates.Aggregate;
 import net.jacobpeterson.algorithm.update.ticker.AggregateUpdateType;
 import net.jacobpeterson.data.BacktestData;
-import net.jacobpeterson.util.TimeUtil;
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
+import net.jacobpeterson.data.cache.SegmentType;
+import net.jacobpeterson.data.cursor.AggregateCursor;
 
-import java.io.File;
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.time.ZonedDateTime;
 
 /**
  * The type Aggregate iterator.
  */
-public class AggregateIterator implements Iterator<Aggregate> {
-
-    private static final int MAX_AGGREGATE_RESULT_COUNT = 50_000;
-    private static final Logger LOGGER = LogManager.getLogger();
-
-    private final BacktestData backtestData;
-    private final String ticker;
-    private final AggregateUpdateType aggregateUpdateType;
-    private final ArrayList<LocalDate> dates;
-    private final HashMap<LocalDate, Aggregate> datesFetchedCache;
-    private final HashMap<LocalDate, File> datesFilesCached;
-    private int currentDateIndex;
-    private JsonReader currentFileReader;
-    private JsonWriter currentFileWriter;
+public class AggregateIterator extends SegmentIterator<AggregateCursor, Aggregate> {
 
     /**
      * Instantiates a new Aggregate iterator.
@@ -44,50 +25,26 @@ public class AggregateIterator implements Iterator<Aggregate> {
      */
     public AggregateIterator(BacktestData backtestData, String ticker, AggregateUpdateType aggregateUpdateType,
             LocalDate from, LocalDate to) {
-        this.backtestData = backtestData;
-        this.ticker = ticker;
-        this.aggregateUpdateType = aggregateUpdateType;
-        this.dates = TimeUtil.getAggregateDateIntervals(aggregateUpdateType, from, to);
-        this.datesFetchedCache = new HashMap<>();
-        this.datesFilesCached = new HashMap<>();
-        this.currentDateIndex = 0;
-
-        this.populateDatesLists();
+        super(backtestData, ticker, aggregateUpdateType, SegmentType.AGGREGATE, new AggregateCursor(), from, to);
     }
 
     /**
-     * Populate dates lists.
+     * Instantiates a new Aggregate iterator over the aggregates whose timestamps are within a time range.
+     *
+     * @param backtestData        the backtest data
+     * @param ticker              the ticker
+     * @param aggregateUpdateType the aggregate update type
+     * @param from                the from (inclusive)
+     * @param to                  the to (exclusive)
      */
-    private void populateDatesLists() {
-        for (LocalDate dayDate : dates) {
-            File dayCachedFile = backtestData.getDataFile(ticker, dayDate, aggregateUpdateType,
-                    BacktestData.AGGREGATES_FILE_EXTENSION);
-
-            if (dayCachedFile.exists()) {
-                datesFilesCached.put(dayDate, dayCachedFile);
-            } else {
-                datesFetchedCache.put(dayDate, null);
-            }
-        }
-    }
-
-    @Override
-    public boolean hasNext() {
-        return currentDateIndex - 1 != dates.size();
+    public AggregateIterator(BacktestData backtestData, String ticker, AggregateUpdateType aggregateUpdateType,
+            ZonedDateTime from, ZonedDateTime to) {
+        super(backtestData, ticker, aggregateUpdateType, SegmentType.AGGREGATE, new AggregateCursor(), from, to);
     }
 
     @Override
-    public Aggregate next() {
-        return null;
-    }
-
-    /**
-     * Gets ticker.
-     *
-     * @return the ticker
-     */
-    public String getTicker() {
-        return ticker;
+    protected Aggregate materialize(AggregateCursor cursor) {
+        return cursor.toAggregate();
     }
 
     /**
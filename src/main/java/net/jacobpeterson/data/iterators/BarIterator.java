@@ -0,0 +1,113 @@
+package net.jacobpeterson.data.iterators;
+
+import io.github.mainstringargs.domain.polygon.aggregates.Aggregate;
+import net.jacobpeterson.algorithm.update.ticker.PriceUpdateType;
+import net.jacobpeterson.data.BacktestData;
+import net.jacobpeterson.data.bar.BarBuilder;
+import net.jacobpeterson.data.bar.BarSpecification;
+import net.jacobpeterson.data.cache.Segment;
+import net.jacobpeterson.data.cache.SegmentColumn;
+import net.jacobpeterson.data.cache.SegmentType;
+import net.jacobpeterson.data.cache.SegmentWriter;
+import net.jacobpeterson.data.cursor.AggregateCursor;
+import net.jacobpeterson.data.cursor.QuoteCursor;
+import net.jacobpeterson.data.cursor.TradeCursor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+
+/**
+ * An iterator over custom bars of a {@link BarSpecification} which are built from the trades or quotes of each day
+ * with a {@link BarBuilder}. The bars of a day are written to the data cache (in a {@link BacktestData#getDataFile}
+ * file with the {@link BarSpecification#getFileExtension()}) the first time they are built so that the trades or
+ * quotes of a day are only rolled up once per specification. Bars don't span days and are timestamped at their start.
+ */
+public class BarIterator extends SegmentIterator<AggregateCursor, Aggregate> {
+
+    private final BarSpecification barSpecification;
+
+    /**
+     * Instantiates a new Bar iterator.
+     *
+     * @param backtestData     the backtest data
+     * @param ticker           the ticker
+     * @param barSpecification the bar specification
+     * @param from             the from (inclusive)
+     * @param to               the to (exclusive)
+     */
+    public BarIterator(BacktestData backtestData, String ticker, BarSpecification barSpecification, LocalDate from,
+            LocalDate to) {
+        super(backtestData, ticker, null, SegmentType.AGGREGATE, new AggregateCursor(), from, to);
+
+        this.barSpecification = barSpecification;
+    }
+
+    /**
+     * Reads the cached bars of a date, or builds them from the trades or quotes of the date (fetching those if they
+     * aren't cached) and caches them.
+     *
+     * @param date the date
+     *
+     * @return the segment
+     */
+    @Override
+    protected Segment loadSegment(LocalDate date) {
+        File barFile = backtestData.getDataFile(ticker, date, null, barSpecification.getFileExtension());
+
+        try {
+            Segment cachedSegment = backtestData.readCachedSegment(barFile);
+            if (cachedSegment != null) {
+                return cachedSegment;
+            }
+
+            SegmentWriter segmentWriter = new SegmentWriter(SegmentType.AGGREGATE);
+            BarBuilder barBuilder = new BarBuilder(barSpecification,
+                    (timestamp, closeTimestamp, open, high, low, close, volume, count) -> {
+                        segmentWriter.addRow();
+                        segmentWriter.setLong(SegmentColumn.TIMESTAMP, timestamp);
+                        segmentWriter.setDouble(SegmentColumn.OPEN, open);
+                        segmentWriter.setDouble(SegmentColumn.HIGH, high);
+                        segmentWriter.setDouble(SegmentColumn.LOW, low);
+                        segmentWriter.setDouble(SegmentColumn.CLOSE, close);
+                        segmentWriter.setDouble(SegmentColumn.VOLUME, volume);
+                        segmentWriter.setInt(SegmentColumn.COUNT, count);
+                    });
+
+            if (barSpecification.getPriceUpdateType() == PriceUpdateType.TRADE) {
+                TradeCursor tradeCursor = new TradeCursor();
+                tradeCursor.reset(backtestData.loadSegment(ticker, date, null, SegmentType.TRADE));
+                while (tradeCursor.next()) {
+                    barBuilder.onTrade(tradeCursor);
+                }
+            } else {
+                QuoteCursor quoteCursor = new QuoteCursor();
+                quoteCursor.reset(backtestData.loadSegment(ticker, date, null, SegmentType.QUOTE));
+                while (quoteCursor.next()) {
+                    barBuilder.onQuote(quoteCursor);
+                }
+            }
+            barBuilder.flush();
+
+            backtestData.writeSegment(segmentWriter, barFile);
+            return segmentWriter.toSegment();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    @Override
+    protected Aggregate materialize(AggregateCursor cursor) {
+        return cursor.toAggregate();
+    }
+
+    /**
+     * Gets bar specification.
+     *
+     * @return the bar specification
+     */
+    public BarSpecification getBarSpecification() {
+        return barSpecification;
+    }
+}
@@ -0,0 +1,44 @@
+package net.jacobpeterson.data.iterators;
+
+import io.github.mainstringargs.domain.polygon.historicquotes.HistoricQuote;
+import net.jacobpeterson.data.BacktestData;
+import net.jacobpeterson.data.cache.SegmentType;
+import net.jacobpeterson.data.cursor.QuoteCursor;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+
+/**
+ * The type Quote iterator.
+ */
+public class QuoteIterator extends SegmentIterator<QuoteCursor, HistoricQuote> {
+
+    /**
+     * Instantiates a new Quote iterator.
+     *
+     * @param backtestData the backtest data
+     * @param ticker       the ticker
+     * @param from         the from
+     * @param to           the to
+     */
+    public QuoteIterator(BacktestData backtestData, String ticker, LocalDate from, LocalDate to) {
+        super(backtestData, ticker, null, SegmentType.QUOTE, new QuoteCursor(), from, to);
+    }
+
+    /**
+     * Instantiates a new Quote iterator over the quotes within a time range.
+     *
+     * @param backtestData the backtest data
+     * @param ticker       the ticker
+     * @param from         the from (inclusive)
+     * @param to           the to (exclusive)
+     */
+    public QuoteIterator(BacktestData backtestData, String ticker, ZonedDateTime from, ZonedDateTime to) {
+        super(backtestData, ticker, null, SegmentType.QUOTE, new QuoteCursor(), from, to);
+    }
+
+    @Override
+    protected HistoricQuote materialize(QuoteCursor cursor) {
+        return cursor.toHistoricQuote();
+    }
+}
@@ -0,0 +1,449 @@
+package net.jacobpeterson.data.iterators;
+
+import net.jacobpeterson.algorithm.update.ticker.AggregateUpdateType;
+import net.jacobpeterson.data.BacktestData;
+import net.jacobpeterson.data.cache.Segment;
+import net.jacobpeterson.data.cache.SegmentType;
+import net.jacobpeterson.data.cursor.SegmentCursor;
+import net.jacobpeterson.metrics.MetricCounter;
+import net.jacobpeterson.metrics.MetricType;
+import net.jacobpeterson.metrics.Metrics;
+import net.jacobpeterson.util.TimeUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * An iterator over the cached {@link Segment}s of a ticker for a date range. It can be used either as a regular
+ * {@link Iterator} (which materializes a POJO for every row) or through {@link #advance()} and {@link #getCursor()},
+ * which reuses a single flyweight {@link SegmentCursor} for every row of every day.
+ * <p>
+ * If {@link BacktestData#getReadAheadDays()} is positive, the segments of the next days are loaded (and fetched if
+ * needed) on {@link BacktestData#getReadAheadExecutorService()} while the current day is being iterated so that I/O
+ * overlaps with the consumer. At most that many segments are loaded ahead of the consumer which bounds the memory used.
+ * The time the consumer spends waiting on a segment is available via {@link #getStallNanos()} and is also recorded as
+ * {@link MetricType#SEGMENT_WAIT} if {@link BacktestData#getMetrics()} is enabled.
+ * <p>
+ * An iterator created with a {@link ZonedDateTime} range only returns the rows within that time range and can be
+ * moved to a time with {@link #seek(long)}. The rows of each segment are found with the block index of the segment
+ * file (see {@link Segment#findRow(long)}) and only the blocks that hold them are read, so iterating over part of each
+ * day (e.g. the first minutes after the open) only touches the bytes of that part.
+ *
+ * @param <C> the {@link SegmentCursor} type
+ * @param <T> the POJO type
+ */
+public abstract class SegmentIterator<C extends SegmentCursor, T> implements Iterator<T> {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    protected final BacktestData backtestData;
+    protected final String ticker;
+    protected final AggregateUpdateType aggregateUpdateType;
+    protected final SegmentType segmentType;
+    protected final ArrayList<LocalDate> dates;
+    protected final HashMap<LocalDate, File> datesFilesCached;
+    protected final C cursor;
+    private final ArrayDeque<Future<Segment>> readAheadSegmentFutures;
+    private final long fromTimestamp;
+    private final long toTimestamp;
+    private long startTimestamp;
+    private int currentDateIndex;
+    private Segment pendingSegment;
+    private int pendingFromRow;
+    private int pendingEndRow;
+    private long stallNanos;
+    private int loadedSegmentCount;
+
+    /**
+     * Instantiates a new Segment iterator.
+     *
+     * @param backtestData        the backtest data
+     * @param ticker              the ticker
+     * @param aggregateUpdateType the aggregate update type (null for daily trade or quote segments)
+     * @param segmentType         the segment type
+     * @param cursor              the cursor
+     * @param from                the from (inclusive)
+     * @param to                  the to (exclusive)
+     */
+    protected SegmentIterator(BacktestData backtestData, String ticker, AggregateUpdateType aggregateUpdateType,
+            SegmentType segmentType, C cursor, LocalDate from, LocalDate to) {
+        this(backtestData, ticker, aggregateUpdateType, segmentType, cursor, from, to, Long.MIN_VALUE,
+                Long.MAX_VALUE);
+    }
+
+    /**
+     * Instantiates a new Segment iterator over the rows within a time range.
+     *
+     * @param backtestData        the backtest data
+     * @param ticker              the ticker
+     * @param aggregateUpdateType the aggregate update type (null for daily trade or quote segments)
+     * @param segmentType         the segment type
+     * @param cursor              the cursor
+     * @param from                the from (inclusive)
+     * @param to                  the to (exclusive)
+     */
+    protected SegmentIterator(BacktestData backtestData, String ticker, AggregateUpdateType aggregateUpdateType,
+            SegmentType segmentType, C cursor, ZonedDateTime from, ZonedDateTime to) {
+        this(backtestData, ticker, aggregateUpdateType, segmentType, cursor, getFromDate(from), getToDate(to),
+                TimeUtil.toEpochNanos(from), TimeUtil.toEpochNanos(to));
+    }
+
+    /**
+     * Instantiates a new Segment iterator.
+     *
+     * @param backtestData        the backtest data
+     * @param ticker              the ticker
+     * @param aggregateUpdateType the aggregate update type (null for daily trade or quote segments)
+     * @param segmentType         the segment type
+     * @param cursor              the cursor
+     * @param from                the from (inclusive)
+     * @param to                  the to (exclusive)
+     * @param fromTimestamp       the from timestamp (epoch nanoseconds, inclusive)
+     * @param toTimestamp         the to timestamp (epoch nanoseconds, exclusive)
+     */
+    private SegmentIterator(BacktestData backtestData, String ticker, AggregateUpdateType aggregateUpdateType,
+            SegmentType segmentType, C cursor, LocalDate from, LocalDate to, long fromTimestamp, long toTimestamp) {
+        this.backtestData = backtestData;
+        this.ticker = ticker;
+        this.aggregateUpdateType = aggregateUpdateType;
+        this.segmentType = segmentType;
+        this.dates = backtestData.getDateIntervals(aggregateUpdateType == null ? AggregateUpdateType.DAY :
+                                                   aggregateUpdateType, from, to);
+        this.datesFilesCached = new HashMap<>();
+        this.cursor = cursor;
+        this.readAheadSegmentFutures = new ArrayDeque<>();
+        this.fromTimestamp = fromTimestamp;
+        this.toTimestamp = toTimestamp;
+        this.startTimestamp = fromTimestamp;
+        this.currentDateIndex = 0;
+        this.pendingSegment = null;
+        this.stallNanos = 0;
+        this.loadedSegmentCount = 0;
+
+        this.populateDatesLists();
+    }
+
+    /**
+     * Gets the New York date of the start of a time range.
+     *
+     * @param from the from (inclusive)
+     *
+     * @return the from date (inclusive)
+     */
+    protected static LocalDate getFromDate(ZonedDateTime from) {
+        return TimeUtil.toNewYorkDate(TimeUtil.toEpochNanos(from));
+    }
+
+    /**
+     * Gets the New York date after the end of a time range.
+     *
+     * @param to the to (exclusive)
+     *
+     * @return the to date (exclusive)
+     */
+    protected static LocalDate getToDate(ZonedDateTime to) {
+        return TimeUtil.toNewYorkDate(TimeUtil.toEpochNanos(to) - 1).plusDays(1);
+    }
+
+    /**
+     * Populate dates lists.
+     */
+    private void populateDatesLists() {
+        for (LocalDate date : dates) {
+            File cachedFile = backtestData.getDataFile(ticker, date, aggregateUpdateType,
+                    segmentType.getFileExtension());
+
+            if (backtestData.isCached(cachedFile)) {
+                datesFilesCached.put(date, cachedFile);
+            }
+        }
+    }
+
+    /**
+     * Loads the segment of a date, fetching it (and writing it to the data cache) if it isn't cached.
+     *
+     * @param date the date
+     *
+     * @return the segment
+     */
+    protected Segment loadSegment(LocalDate date) {
+        File cachedFile = datesFilesCached.get(date);
+
+        Segment segment;
+        try {
+            if (cachedFile == null) {
+                LOGGER.debug("Fetching {} {} for {} since it is not cached", ticker, segmentType, date);
+                segment = backtestData.fetchSegment(ticker, date, aggregateUpdateType, segmentType);
+            } else {
+                segment = backtestData.loadSegment(ticker, date, aggregateUpdateType, segmentType, startTimestamp,
+                        toTimestamp);
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Could not load " + ticker + " " + segmentType + " for " + date, exception);
+        }
+
+        if (segment.getSegmentType() != segmentType) {
+            throw new IllegalStateException(cachedFile + " is not a " + segmentType + " segment!");
+        }
+        return segment;
+    }
+
+    /**
+     * Loads (if needed) and returns the next segment that has rows within the time range without moving the cursor
+     * onto it.
+     *
+     * @return the pending segment (null if there are none left)
+     */
+    private Segment peekPendingSegment() {
+        while (pendingSegment == null && (currentDateIndex < dates.size() || !readAheadSegmentFutures.isEmpty())) {
+            Segment segment = takeNextSegment();
+            if (segment != null && segment.getRowCount() > 0) {
+                int fromRow = segment.findRow(startTimestamp);
+                int endRow = toTimestamp == Long.MAX_VALUE ? segment.getRowCount() : segment.findRow(toTimestamp);
+                if (fromRow < endRow) {
+                    pendingSegment = segment;
+                    pendingFromRow = fromRow;
+                    pendingEndRow = endRow;
+                }
+            }
+        }
+        return pendingSegment;
+    }
+
+    /**
+     * Takes the segment of the next date, either from the read-ahead pipeline or by loading it on this thread. The
+     * time spent waiting is added to {@link #getStallNanos()}.
+     *
+     * @return the segment
+     */
+    private Segment takeNextSegment() {
+        int readAheadDays = backtestData.getReadAheadDays();
+        long startNanos = System.nanoTime();
+        Segment segment;
+
+        if (readAheadDays <= 0 && readAheadSegmentFutures.isEmpty()) {
+            segment = loadSegment(dates.get(currentDateIndex++));
+        } else {
+            fillReadAhead(readAheadDays);
+            try {
+                segment = readAheadSegmentFutures.poll().get();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a read-ahead segment!", exception);
+            } catch (ExecutionException exception) {
+                Throwable cause = exception.getCause();
+                throw cause instanceof RuntimeException ? (RuntimeException) cause :
+                      new IllegalStateException(cause);
+            }
+            fillReadAhead(readAheadDays);
+        }
+
+        long segmentStallNanos = System.nanoTime() - startNanos;
+        stallNanos += segmentStallNanos;
+        loadedSegmentCount++;
+
+        Metrics metrics = backtestData.getMetrics();
+        if (metrics.isEnabled()) {
+            metrics.record(MetricType.SEGMENT_WAIT, segmentStallNanos);
+            if (segment != null) {
+                metrics.add(MetricCounter.SEGMENT_ROWS, segment.getRowCount());
+            }
+        }
+        return segment;
+    }
+
+    /**
+     * Submits loads of the next dates until there are <code>readAheadDays</code> loads in flight (or at least one if
+     * there are dates remaining).
+     *
+     * @param readAheadDays the read ahead days
+     */
+    private void fillReadAhead(int readAheadDays) {
+        while (currentDateIndex < dates.size() &&
+                (readAheadSegmentFutures.size() < readAheadDays || readAheadSegmentFutures.isEmpty())) {
+            LocalDate date = dates.get(currentDateIndex++);
+            readAheadSegmentFutures.add(backtestData.getReadAheadExecutorService()
+                    .submit(() -> decode(loadSegment(date))));
+        }
+    }
+
+    /**
+     * Decodes the blocks of the rows of a segment that are within the time range (see {@link Segment#decode(int,
+     * int)}).
+     *
+     * @param segment the segment
+     *
+     * @return the segment
+     */
+    private Segment decode(Segment segment) {
+        return segment.decode(segment.findRow(startTimestamp), toTimestamp == Long.MAX_VALUE ?
+                                                               segment.getRowCount() : segment.findRow(toTimestamp));
+    }
+
+    /**
+     * Cancels any in-flight read-ahead loads. Use this when abandoning an iterator before it has been exhausted.
+     */
+    public void cancelReadAhead() {
+        for (Future<Segment> readAheadSegmentFuture : readAheadSegmentFutures) {
+            readAheadSegmentFuture.cancel(false);
+        }
+        readAheadSegmentFutures.clear();
+    }
+
+    /**
+     * Moves {@link #getCursor()} to the next row, moving onto the next day's segment as needed. This allocates nothing
+     * per row.
+     *
+     * @return true if the cursor moved, false if there are no more rows
+     */
+    public boolean advance() {
+        if (cursor.next()) {
+            return true;
+        }
+
+        Segment segment = peekPendingSegment();
+        if (segment == null) {
+            return false;
+        }
+        pendingSegment = null;
+        cursor.reset(segment, pendingFromRow, pendingEndRow);
+        return cursor.next();
+    }
+
+    /**
+     * Moves this iterator to just before the first row at or after a timestamp, so that the next {@link #advance()}
+     * or {@link #next()} moves onto it. The timestamp can be before or after the current row, but this iterator never
+     * returns rows outside of its time range. Seeking within the segment of the current row only moves the cursor,
+     * otherwise any in-flight read-ahead loads are cancelled and the segments from the date of the timestamp onward
+     * are loaded again.
+     *
+     * @param timestamp the timestamp (epoch nanoseconds)
+     */
+    public void seek(long timestamp) {
+        startTimestamp = Math.max(timestamp, fromTimestamp);
+
+        Segment segment = cursor.getSegment();
+        if (segment != null && segment.getRowCount() > 0 && startTimestamp >= segment.getFirstTimestamp() &&
+                startTimestamp <= segment.getLastTimestamp()) {
+            cursor.reset(segment, Math.min(segment.findRow(startTimestamp), cursor.getEndRow()), cursor.getEndRow());
+            return;
+        }
+
+        cancelReadAhead();
+        pendingSegment = null;
+        cursor.reset(null);
+
+        // Move back to the last date interval that starts on or before the date of the timestamp
+        int dateIndex = Collections.binarySearch(dates, TimeUtil.toNewYorkDate(startTimestamp));
+        currentDateIndex = dateIndex >= 0 ? dateIndex : Math.max(-dateIndex - 2, 0);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return cursor.hasNext() || peekPendingSegment() != null;
+    }
+
+    @Override
+    public T next() {
+        if (!advance()) {
+            throw new NoSuchElementException();
+        }
+        return materialize(cursor);
+    }
+
+    /**
+     * Materializes the current row of the cursor into a POJO.
+     *
+     * @param cursor the cursor
+     *
+     * @return the POJO
+     */
+    protected abstract T materialize(C cursor);
+
+    /**
+     * Gets the flyweight cursor which is positioned on the current row after {@link #advance()} or {@link #next()}.
+     *
+     * @return the cursor
+     */
+    public C getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Gets the total nanoseconds that the consumer of this iterator has spent waiting for segments to be loaded. A
+     * stall time that is close to the total run time means that the consumer is I/O-bound.
+     *
+     * @return the stall nanos
+     */
+    public long getStallNanos() {
+        return stallNanos;
+    }
+
+    /**
+     * Gets the number of segments that have been loaded.
+     *
+     * @return the loaded segment count
+     */
+    public int getLoadedSegmentCount() {
+        return loadedSegmentCount;
+    }
+
+    /**
+     * Gets the timestamp (epoch nanoseconds) that rows are returned from, which is the from timestamp or the timestamp
+     * of the last {@link #seek(long)}.
+     *
+     * @return the start timestamp
+     */
+    public long getStartTimestamp() {
+        return startTimestamp;
+    }
+
+    /**
+     * Gets the from timestamp (epoch nanoseconds, inclusive) of the time range of this iterator.
+     *
+     * @return the from timestamp ({@link Long#MIN_VALUE} if this iterator isn't limited to a time range)
+     */
+    public long getFromTimestamp() {
+        return fromTimestamp;
+    }
+
+    /**
+     * Gets the to timestamp (epoch nanoseconds, exclusive) of the time range of this iterator.
+     *
+     * @return the to timestamp ({@link Long#MAX_VALUE} if this iterator isn't limited to a time range)
+     */
+    public long getToTimestamp() {
+        return toTimestamp;
+    }
+
+    /**
+     * Gets ticker.
+     *
+     * @return the ticker
+     */
+    public String getTicker() {
+        return ticker;
+    }
+
+    /**
+     * Gets segment type.
+     *
+     * @return the segment type
+     */
+    public SegmentType getSegmentType() {
+        return segmentType;
+    }
+}
@@ -0,0 +1,215 @@
+package net.jacobpeterson.data.iterators;
+
+import net.jacobpeterson.algorithm.update.ticker.AggregateUpdateType;
+import net.jacobpeterson.data.BacktestData;
+import net.jacobpeterson.data.cache.Segment;
+import net.jacobpeterson.data.cache.SegmentColumn;
+import net.jacobpeterson.data.cache.SegmentType;
+import net.jacobpeterson.data.cache.SegmentWriter;
+import net.jacobpeterson.data.cursor.AggregateCursor;
+import net.jacobpeterson.util.TimeUtil;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+
+/**
+ * An {@link AggregateIterator} that builds the aggregates of an {@link AggregateUpdateType} from the aggregates of a
+ * smaller base {@link AggregateUpdateType} instead of fetching and caching them separately, so that the higher time
+ * frames are consistent with the base time frame and only the base time frame is ever fetched and cached. Only the
+ * {@link AggregateUpdateType}s that are cached per day ({@link AggregateUpdateType#MINUTE}, {@link
+ * AggregateUpdateType#HOUR}, and {@link AggregateUpdateType#DAY}) can be used as the base.
+ * <p>
+ * Aggregates are aligned to the New York calendar (see {@link TimeUtil#getAggregateStartTimestamp(
+ * AggregateUpdateType, long)}). Only the aggregates whose time frames start within the date range are built and the
+ * last aggregate is partial if the end of the date range cuts its time frame.
+ */
+public class SynthesizedAggregateIterator extends AggregateIterator {
+
+    private final AggregateUpdateType baseAggregateUpdateType;
+    private final LocalDate to;
+
+    /**
+     * Instantiates a new Synthesized aggregate iterator.
+     *
+     * @param backtestData            the backtest data
+     * @param ticker                  the ticker
+     * @param aggregateUpdateType     the aggregate update type to build
+     * @param baseAggregateUpdateType the base aggregate update type to build it from
+     * @param from                    the from (inclusive)
+     * @param to                      the to (exclusive)
+     */
+    public SynthesizedAggregateIterator(BacktestData backtestData, String ticker,
+            AggregateUpdateType aggregateUpdateType, AggregateUpdateType baseAggregateUpdateType, LocalDate from,
+            LocalDate to) {
+        super(backtestData, ticker, aggregateUpdateType, from, to);
+
+        if (!canSynthesize(aggregateUpdateType, baseAggregateUpdateType)) {
+            throw new IllegalArgumentException(aggregateUpdateType + " aggregates can't be built from " +
+                    baseAggregateUpdateType + " aggregates!");
+        }
+
+        this.baseAggregateUpdateType = baseAggregateUpdateType;
+        this.to = to;
+    }
+
+    /**
+     * Instantiates a new Synthesized aggregate iterator over the aggregates whose time frames start within a time
+     * range. Only the base aggregates from the start of the time range (or the last {@link #seek(long)}) onward are
+     * read.
+     *
+     * @param backtestData            the backtest data
+     * @param ticker                  the ticker
+     * @param aggregateUpdateType     the aggregate update type to build
+     * @param baseAggregateUpdateType the base aggregate update type to build it from
+     * @param from                    the from (inclusive)
+     * @param to                      the to (exclusive)
+     */
+    public SynthesizedAggregateIterator(BacktestData backtestData, String ticker,
+            AggregateUpdateType aggregateUpdateType, AggregateUpdateType baseAggregateUpdateType, ZonedDateTime from,
+            ZonedDateTime to) {
+        super(backtestData, ticker, aggregateUpdateType, from, to);
+
+        if (!canSynthesize(aggregateUpdateType, baseAggregateUpdateType)) {
+            throw new IllegalArgumentException(aggregateUpdateType + " aggregates can't be built from " +
+                    baseAggregateUpdateType + " aggregates!");
+        }
+
+        this.baseAggregateUpdateType = baseAggregateUpdateType;
+        this.to = getToDate(to);
+    }
+
+    /**
+     * Returns true if aggregates of an {@link AggregateUpdateType} can be built from a base {@link
+     * AggregateUpdateType}.
+     *
+     * @param aggregateUpdateType     the aggregate update type
+     * @param baseAggregateUpdateType the base aggregate update type
+     *
+     * @return the boolean
+     */
+    public static boolean canSynthesize(AggregateUpdateType aggregateUpdateType,
+            AggregateUpdateType baseAggregateUpdateType) {
+        return baseAggregateUpdateType.getSizeRanking() < aggregateUpdateType.getSizeRanking() &&
+                baseAggregateUpdateType.getSizeRanking() <= AggregateUpdateType.DAY.getSizeRanking();
+    }
+
+    /**
+     * Builds the aggregates whose time frames start within the date interval of a date from the base aggregates.
+     *
+     * @param date the date
+     *
+     * @return the segment
+     */
+    @Override
+    protected Segment loadSegment(LocalDate date) {
+        SegmentWriter segmentWriter = new SegmentWriter(SegmentType.AGGREGATE);
+
+        LocalDate nextDate = TimeUtil.getNextAggregateDate(aggregateUpdateType, date);
+        long intervalStartTimestamp = TimeUtil.toEpochNanos(date, LocalTime.MIDNIGHT);
+        long intervalEndTimestamp = TimeUtil.toEpochNanos(nextDate.isAfter(to) ? to : nextDate, LocalTime.MIDNIGHT);
+
+        long fromTimestamp = TimeUtil.getAggregateStartTimestamp(aggregateUpdateType, intervalStartTimestamp);
+        if (fromTimestamp < intervalStartTimestamp) {
+            fromTimestamp = TimeUtil.getAggregateCloseTimestamp(aggregateUpdateType, fromTimestamp);
+        }
+        if (fromTimestamp >= intervalEndTimestamp) {
+            return segmentWriter.toSegment();
+        }
+        long toTimestamp = TimeUtil.getAggregateCloseTimestamp(aggregateUpdateType,
+                TimeUtil.getAggregateStartTimestamp(aggregateUpdateType, intervalEndTimestamp - 1));
+
+        LocalDate baseTo = TimeUtil.toNewYorkDate(toTimestamp - 1).plusDays(1);
+        if (baseTo.isAfter(to)) {
+            baseTo = to;
+        }
+
+        AggregateCursor baseCursor = new AggregateCursor(); // Segments can be loaded concurrently by read-ahead
+        boolean building = false;
+        long closeTimestamp = 0;
+        double open = 0;
+        double high = 0;
+        double low = 0;
+        double close = 0;
+        double volume = 0;
+        long count = 0;
+
+        for (LocalDate baseDate : backtestData.getDateIntervals(baseAggregateUpdateType,
+                TimeUtil.toNewYorkDate(fromTimestamp), baseTo)) {
+            try {
+                // Aggregates that start before the start timestamp are skipped, so their base aggregates aren't read
+                baseCursor.reset(backtestData.loadSegment(ticker, baseDate, baseAggregateUpdateType,
+                        SegmentType.AGGREGATE, getStartTimestamp(), Long.MAX_VALUE));
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+
+            while (baseCursor.next()) {
+                long timestamp = baseCursor.getTimestamp();
+                if (timestamp < fromTimestamp || timestamp >= toTimestamp) {
+                    continue;
+                }
+
+                if (!building || timestamp >= closeTimestamp) {
+                    if (building) {
+                        setRow(segmentWriter, high, low, close, volume, count);
+                    }
+
+                    long startTimestamp = TimeUtil.getAggregateStartTimestamp(aggregateUpdateType, timestamp);
+                    closeTimestamp = TimeUtil.getAggregateCloseTimestamp(aggregateUpdateType, startTimestamp);
+                    building = true;
+                    open = baseCursor.getOpen();
+                    high = baseCursor.getHigh();
+                    low = baseCursor.getLow();
+                    volume = 0;
+                    count = 0;
+
+                    segmentWriter.addRow();
+                    segmentWriter.setLong(SegmentColumn.TIMESTAMP, startTimestamp);
+                    segmentWriter.setDouble(SegmentColumn.OPEN, open);
+                } else {
+                    high = Math.max(high, baseCursor.getHigh());
+                    low = Math.min(low, baseCursor.getLow());
+                }
+                close = baseCursor.getClose();
+                volume += baseCursor.getVolume();
+                count += baseCursor.getCount();
+            }
+        }
+        if (building) {
+            setRow(segmentWriter, high, low, close, volume, count);
+        }
+
+        return segmentWriter.toSegment();
+    }
+
+    /**
+     * Sets the values of the current row of a segment writer other than the timestamp and open.
+     *
+     * @param segmentWriter the segment writer
+     * @param high          the high
+     * @param low           the low
+     * @param close         the close
+     * @param volume        the volume
+     * @param count         the count
+     */
+    private static void setRow(SegmentWriter segmentWriter, double high, double low, double close, double volume,
+            long count) {
+        segmentWriter.setDouble(SegmentColumn.HIGH, high);
+        segmentWriter.setDouble(SegmentColumn.LOW, low);
+        segmentWriter.setDouble(SegmentColumn.CLOSE, close);
+        segmentWriter.setDouble(SegmentColumn.VOLUME, volume);
+        segmentWriter.setInt(SegmentColumn.COUNT, (int) Math.min(count, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Gets base aggregate update type.
+     *
+     * @return the base aggregate update type
+     */
+    public AggregateUpdateType getBaseAggregateUpdateType() {
+        return baseAggregateUpdateType;
+    }
+}
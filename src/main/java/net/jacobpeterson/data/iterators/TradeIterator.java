@@ -0,0 +1,44 @@
+package net.jacobpeterson.data.iterators;
+
+import io.github.mainstringargs.domain.polygon.historictrades.HistoricTrade;
+import net.jacobpeterson.data.BacktestData;
+import net.jacobpeterson.data.cache.SegmentType;
+import net.jacobpeterson.data.cursor.TradeCursor;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+
+/**
+ * The type Trade iterator.
+ */
+public class TradeIterator extends SegmentIterator<TradeCursor, HistoricTrade> {
+
+    /**
+     * Instantiates a new Trade iterator.
+     *
+     * @param backtestData the backtest data
+     * @param ticker       the ticker
+     * @param from         the from
+     * @param to           the to
+     */
+    public TradeIterator(BacktestData backtestData, String ticker, LocalDate from, LocalDate to) {
+        super(backtestData, ticker, null, SegmentType.TRADE, new TradeCursor(), from, to);
+    }
+
+    /**
+     * Instantiates a new Trade iterator over the trades within a time range.
+     *
+     * @param backtestData the backtest data
+     * @param ticker       the ticker
+     * @param from         the from (inclusive)
+     * @param to           the to (exclusive)
+     */
+    public TradeIterator(BacktestData backtestData, String ticker, ZonedDateTime from, ZonedDateTime to) {
+        super(backtestData, ticker, null, SegmentType.TRADE, new TradeCursor(), from, to);
+    }
+
+    @Override
+    protected HistoricTrade materialize(TradeCursor cursor) {
+        return cursor.toHistoricTrade();
+    }
+}
@@ -0,0 +1,759 @@
+package net.jacobpeterson.data.record;
+
+import io.github.mainstringargs.alpaca.enums.OrderSide;
+import io.github.mainstringargs.alpaca.enums.OrderTimeInForce;
+import io.github.mainstringargs.alpaca.enums.OrderType;
+import net.jacobpeterson.broker.order.OrderEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Records the order events, equity samples, and annotations of a backtest to an append-only record file (see {@link
+ * RecordFormat}) which can be read with {@link net.jacobpeterson.data.BacktestRecord} without replaying any market
+ * data.
+ * <p>
+ * Records are appended to an in-memory block which is handed off to a single background thread when it is full, so
+ * the backtest thread never waits on the file unless the writer falls {@link #BUFFER_COUNT} blocks behind. The writer
+ * thread computes the CRC32 of each block and writes it with one gathering write. The block index and the ticker table
+ * are kept in memory and written in the footer on {@link #close()}. An I/O error on the writer thread is logged, stops
+ * the recording, and is thrown by {@link #close()}.
+ * <p>
+ * Consecutive equity samples with the same equity and cash are skipped to keep the record compact.
+ * <p>
+ * This is not thread safe (records must be appended from the backtest thread).
+ */
+public class BacktestRecorder implements AutoCloseable {
+
+    /** The constant BUFFER_COUNT. */
+    public static final int BUFFER_COUNT = 4;
+
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final DateTimeFormatter FILE_NAME_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final File file;
+    private final FileChannel fileChannel;
+    private final int blockSize;
+    private final ExecutorService writerExecutorService;
+    private final ArrayBlockingQueue<ByteBuffer> freeBuffers;
+    private final HashMap<String, Integer> tickerIDs;
+    private final ArrayList<String> tickers;
+    private ByteBuffer blockIndexBuffer;
+    private ByteBuffer buffer;
+    private int allocatedBufferCount;
+    private long nextBlockOffset;
+    private volatile IOException writeException;
+    private boolean closed;
+
+    // The current block
+    private int blockOrderEventCount;
+    private int blockEquitySampleCount;
+    private int blockAnnotationCount;
+    private long blockFirstTimestamp;
+    private long blockLastTimestamp;
+
+    // The summary
+    private long orderEventCount;
+    private long fillCount;
+    private long equitySampleCount;
+    private long annotationCount;
+    private long firstTimestamp;
+    private long lastTimestamp;
+    private double lastEquity;
+    private double lastCash;
+
+    /**
+     * Instantiates a new Backtest recorder which creates (or truncates) a record file and writes its header.
+     *
+     * @param file          the file
+     * @param name          the name of the backtest (e.g. the trading algorithm)
+     * @param fromTimestamp the from timestamp of the backtest (epoch nanoseconds)
+     * @param toTimestamp   the to timestamp of the backtest (epoch nanoseconds)
+     * @param initialCash   the initial cash
+     * @param blockSize     the block size (the block index has an entry for each block)
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public BacktestRecorder(File file, String name, long fromTimestamp, long toTimestamp, double initialCash,
+            int blockSize) throws IOException {
+        this(file, openFile(file, blockSize), blockSize);
+
+        byte[] nameBytes = toBytes(name);
+        ByteBuffer header = ByteBuffer.allocate(RecordFormat.HEADER_SIZE + nameBytes.length)
+                .order(RecordFormat.BYTE_ORDER);
+        header.putInt(RecordFormat.MAGIC);
+        header.putShort(RecordFormat.VERSION);
+        header.putShort((short) nameBytes.length);
+        header.putLong(System.currentTimeMillis());
+        header.putLong(fromTimestamp);
+        header.putLong(toTimestamp);
+        header.putDouble(initialCash);
+        header.putLong(0);
+        header.put(nameBytes);
+        header.flip();
+        try {
+            writeFully(header, 0);
+        } catch (IOException exception) {
+            close();
+            throw exception;
+        }
+        this.nextBlockOffset = header.limit();
+    }
+
+    /**
+     * Instantiates a new Backtest recorder that appends blocks to an open record file.
+     *
+     * @param file        the file
+     * @param fileChannel the file channel
+     * @param blockSize   the block size
+     */
+    private BacktestRecorder(File file, FileChannel fileChannel, int blockSize) {
+        this.file = file;
+        this.fileChannel = fileChannel;
+        this.blockSize = blockSize;
+        this.writerExecutorService = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "BacktestRecorder-" + file.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.freeBuffers = new ArrayBlockingQueue<>(BUFFER_COUNT);
+        this.tickerIDs = new HashMap<>();
+        this.tickers = new ArrayList<>();
+        this.blockIndexBuffer = ByteBuffer.allocate(64 * RecordFormat.BLOCK_INDEX_ENTRY_SIZE)
+                .order(RecordFormat.BYTE_ORDER);
+        this.buffer = allocateBuffer(blockSize);
+        this.allocatedBufferCount = 1;
+        this.firstTimestamp = Long.MAX_VALUE;
+        this.lastTimestamp = Long.MIN_VALUE;
+        this.lastEquity = Double.NaN;
+        this.lastCash = Double.NaN;
+        resetBlock();
+    }
+
+    /**
+     * Creates (or truncates) a record file and opens it for writing.
+     *
+     * @param file      the file
+     * @param blockSize the block size
+     *
+     * @return the file channel
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private static FileChannel openFile(File file, int blockSize) throws IOException {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive!");
+        }
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.exists() && !directory.mkdirs() && !directory.exists()) {
+            throw new IOException("Could not create " + directory);
+        }
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Creates a backtest recorder with {@link RecordFormat#DEFAULT_BLOCK_SIZE} in a new record file in a directory.
+     * The file is named by the current date time, the name, and a random suffix so that concurrent backtests never
+     * share a file.
+     *
+     * @param directory     the directory
+     * @param name          the name of the backtest (e.g. the trading algorithm)
+     * @param fromTimestamp the from timestamp of the backtest (epoch nanoseconds)
+     * @param toTimestamp   the to timestamp of the backtest (epoch nanoseconds)
+     * @param initialCash   the initial cash
+     *
+     * @return the backtest recorder
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public static BacktestRecorder create(File directory, String name, long fromTimestamp, long toTimestamp,
+            double initialCash) throws IOException {
+        String fileName = LocalDateTime.now().format(FILE_NAME_FORMATTER) + "-" +
+                name.replaceAll("[^A-Za-z0-9_.-]", "_") + "-" + UUID.randomUUID().toString().substring(0, 8) + "." +
+                RecordFormat.FILE_EXTENSION;
+        return new BacktestRecorder(new File(directory, fileName), name, fromTimestamp, toTimestamp, initialCash,
+                RecordFormat.DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Records an order event.
+     *
+     * @param timestamp        the timestamp (epoch nanoseconds)
+     * @param orderID          the order ID
+     * @param orderEvent       the order event
+     * @param ticker           the ticker
+     * @param orderSide        the order side
+     * @param orderType        the order type (only recorded for {@link OrderEvent#NEW})
+     * @param orderTimeInForce the order time in force (only recorded for {@link OrderEvent#NEW})
+     * @param quantity         the order quantity for {@link OrderEvent#NEW} or the fill quantity for {@link
+     *                         OrderEvent#FILL}
+     * @param price            the fill price (only recorded for {@link OrderEvent#FILL})
+     * @param limitPrice       the limit price (NaN if not applicable, only recorded for {@link OrderEvent#NEW})
+     * @param stopPrice        the stop price (NaN if not applicable, only recorded for {@link OrderEvent#NEW})
+     */
+    public void recordOrderEvent(long timestamp, int orderID, OrderEvent orderEvent, String ticker,
+            OrderSide orderSide, OrderType orderType, OrderTimeInForce orderTimeInForce, int quantity, double price,
+            double limitPrice, double stopPrice) {
+        if (closed) {
+            return;
+        }
+
+        int tickerID = getTickerID(timestamp, ticker);
+        int length = 1 + Long.BYTES + Integer.BYTES + 1 + Integer.BYTES + 1 + (orderEvent == OrderEvent.NEW ?
+                2 + Integer.BYTES + 2 * Double.BYTES : orderEvent == OrderEvent.FILL ?
+                Integer.BYTES + Double.BYTES : 0);
+        ensureRemaining(length);
+
+        putRecordHeader(RecordFormat.ORDER_EVENT_RECORD, timestamp);
+        buffer.putInt(orderID);
+        buffer.put((byte) orderEvent.ordinal());
+        buffer.putInt(tickerID);
+        buffer.put((byte) orderSide.ordinal());
+        if (orderEvent == OrderEvent.NEW) {
+            buffer.put((byte) orderType.ordinal());
+            buffer.put((byte) orderTimeInForce.ordinal());
+            buffer.putInt(quantity);
+            buffer.putDouble(limitPrice);
+            buffer.putDouble(stopPrice);
+        } else if (orderEvent == OrderEvent.FILL) {
+            buffer.putInt(quantity);
+            buffer.putDouble(price);
+            fillCount++;
+        }
+        blockOrderEventCount++;
+        orderEventCount++;
+    }
+
+    /**
+     * Records an equity sample unless the equity and cash are the same as the last sample.
+     *
+     * @param timestamp the timestamp (epoch nanoseconds)
+     * @param equity    the equity
+     * @param cash      the cash
+     */
+    public void recordEquity(long timestamp, double equity, double cash) {
+        if (closed || (Double.compare(equity, lastEquity) == 0 && Double.compare(cash, lastCash) == 0)) {
+            return;
+        }
+
+        ensureRemaining(1 + Long.BYTES + 2 * Double.BYTES);
+        putRecordHeader(RecordFormat.EQUITY_SAMPLE_RECORD, timestamp);
+        buffer.putDouble(equity);
+        buffer.putDouble(cash);
+        lastEquity = equity;
+        lastCash = cash;
+        blockEquitySampleCount++;
+        equitySampleCount++;
+    }
+
+    /**
+     * Records an annotation (e.g. why the algorithm entered a position).
+     *
+     * @param timestamp the timestamp (epoch nanoseconds)
+     * @param ticker    the ticker (null if the annotation isn't about a ticker)
+     * @param text      the text (truncated to {@link RecordFormat#MAX_STRING_LENGTH} UTF-8 bytes)
+     */
+    public void recordAnnotation(long timestamp, String ticker, String text) {
+        if (closed) {
+            return;
+        }
+
+        int tickerID = ticker == null ? RecordFormat.NO_TICKER_ID : getTickerID(timestamp, ticker);
+        byte[] textBytes = toBytes(text);
+        ensureRemaining(1 + Long.BYTES + Integer.BYTES + Short.BYTES + textBytes.length);
+        putRecordHeader(RecordFormat.ANNOTATION_RECORD, timestamp);
+        buffer.putInt(tickerID);
+        buffer.putShort((short) textBytes.length);
+        buffer.put(textBytes);
+        blockAnnotationCount++;
+        annotationCount++;
+    }
+
+    /**
+     * Gets the ID of a ticker, recording a ticker record the first time the ticker is seen.
+     *
+     * @param timestamp the timestamp
+     * @param ticker    the ticker
+     *
+     * @return the ticker ID
+     */
+    private int getTickerID(long timestamp, String ticker) {
+        Integer tickerID = tickerIDs.get(ticker);
+        if (tickerID != null) {
+            return tickerID;
+        }
+
+        tickerID = tickers.size();
+        tickerIDs.put(ticker, tickerID);
+        tickers.add(ticker);
+
+        byte[] tickerBytes = toBytes(ticker);
+        ensureRemaining(1 + Long.BYTES + Integer.BYTES + Short.BYTES + tickerBytes.length);
+        putRecordHeader(RecordFormat.TICKER_RECORD, timestamp);
+        buffer.putInt(tickerID);
+        buffer.putShort((short) tickerBytes.length);
+        buffer.put(tickerBytes);
+        return tickerID;
+    }
+
+    /**
+     * Puts the type and timestamp of a record and updates the timestamps of the block and the summary.
+     *
+     * @param recordType the record type
+     * @param timestamp  the timestamp
+     */
+    private void putRecordHeader(byte recordType, long timestamp) {
+        buffer.put(recordType);
+        buffer.putLong(timestamp);
+        blockFirstTimestamp = Math.min(blockFirstTimestamp, timestamp);
+        blockLastTimestamp = Math.max(blockLastTimestamp, timestamp);
+        firstTimestamp = Math.min(firstTimestamp, timestamp);
+        lastTimestamp = Math.max(lastTimestamp, timestamp);
+    }
+
+    /**
+     * Ensures that the current block has room for a record, handing the block off to the writer thread if it doesn't.
+     *
+     * @param length the record length
+     */
+    private void ensureRemaining(int length) {
+        if (buffer.remaining() >= length) {
+            return;
+        }
+
+        flushBlock();
+        if (buffer.capacity() < length) { // A record that is larger than a block gets a block of its own
+            freeBuffers.offer(buffer);
+            buffer = allocateBuffer(length);
+        }
+    }
+
+    /**
+     * Hands the current block off to the writer thread (if it has any records) and takes a free buffer for the next
+     * block, waiting for one if the writer is {@link #BUFFER_COUNT} blocks behind.
+     */
+    private void flushBlock() {
+        if (buffer.position() == 0) {
+            return;
+        }
+
+        ByteBuffer payload = buffer;
+        payload.flip();
+        ByteBuffer blockHeader = ByteBuffer.allocate(RecordFormat.BLOCK_HEADER_SIZE).order(RecordFormat.BYTE_ORDER);
+        blockHeader.putInt(payload.limit());
+        blockHeader.putInt(blockOrderEventCount);
+        blockHeader.putInt(blockEquitySampleCount);
+        blockHeader.putInt(blockAnnotationCount);
+        blockHeader.putLong(blockFirstTimestamp);
+        blockHeader.putLong(blockLastTimestamp);
+
+        if (blockIndexBuffer.remaining() < RecordFormat.BLOCK_INDEX_ENTRY_SIZE) {
+            ByteBuffer grownBlockIndexBuffer = ByteBuffer.allocate(blockIndexBuffer.capacity() * 2)
+                    .order(RecordFormat.BYTE_ORDER);
+            blockIndexBuffer.flip();
+            grownBlockIndexBuffer.put(blockIndexBuffer);
+            blockIndexBuffer = grownBlockIndexBuffer;
+        }
+        blockIndexBuffer.putLong(nextBlockOffset);
+        blockIndexBuffer.putInt(payload.limit());
+        blockIndexBuffer.putInt(blockOrderEventCount);
+        blockIndexBuffer.putInt(blockEquitySampleCount);
+        blockIndexBuffer.putInt(blockAnnotationCount);
+        blockIndexBuffer.putLong(blockFirstTimestamp);
+        blockIndexBuffer.putLong(blockLastTimestamp);
+
+        long blockOffset = nextBlockOffset;
+        nextBlockOffset += RecordFormat.BLOCK_HEADER_SIZE + payload.limit();
+        resetBlock();
+
+        if (writeException == null) {
+            writerExecutorService.execute(() -> writeBlock(blockOffset, blockHeader, payload));
+        }
+        buffer = takeFreeBuffer();
+    }
+
+    /**
+     * Writes a block on the writer thread and returns its buffer to the free buffers.
+     *
+     * @param blockOffset the block offset
+     * @param blockHeader the block header (without its CRC32)
+     * @param payload     the payload
+     */
+    private void writeBlock(long blockOffset, ByteBuffer blockHeader, ByteBuffer payload) {
+        try {
+            if (writeException == null) {
+                CRC32 crc32 = new CRC32();
+                crc32.update(payload.array(), 0, payload.limit());
+                blockHeader.putInt((int) crc32.getValue());
+                blockHeader.flip();
+
+                long position = blockOffset;
+                ByteBuffer[] buffers = {blockHeader, payload};
+                while (blockHeader.hasRemaining() || payload.hasRemaining()) {
+                    fileChannel.position(position);
+                    position += fileChannel.write(buffers);
+                }
+            }
+        } catch (IOException exception) {
+            LOGGER.error("Could not write to {}, the rest of the backtest won't be recorded", file, exception);
+            writeException = exception;
+        } finally {
+            if (payload.capacity() == blockSize) {
+                payload.clear();
+                freeBuffers.offer(payload);
+            }
+        }
+    }
+
+    /**
+     * Takes a free buffer, allocating one if less than {@link #BUFFER_COUNT} buffers have been allocated.
+     *
+     * @return the buffer
+     */
+    private ByteBuffer takeFreeBuffer() {
+        ByteBuffer freeBuffer = freeBuffers.poll();
+        if (freeBuffer != null) {
+            return freeBuffer;
+        }
+        if (allocatedBufferCount < BUFFER_COUNT || writeException != null) {
+            allocatedBufferCount++;
+            return allocateBuffer(blockSize);
+        }
+
+        try {
+            return freeBuffers.take();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return allocateBuffer(blockSize);
+        }
+    }
+
+    /**
+     * Resets the counts and timestamps of the current block.
+     */
+    private void resetBlock() {
+        blockOrderEventCount = 0;
+        blockEquitySampleCount = 0;
+        blockAnnotationCount = 0;
+        blockFirstTimestamp = Long.MAX_VALUE;
+        blockLastTimestamp = Long.MIN_VALUE;
+    }
+
+    /**
+     * Hands the current block off to the writer thread and writes where the next block goes, the block index, the
+     * ticker table, and the summary of this recorder to a {@link net.jacobpeterson.checkpoint.BacktestCheckpoint}, so
+     * that {@link #resume(DataInput)} can continue the same record file after the backtest is resumed. Every record
+     * that is appended after this is discarded by {@link #resume(DataInput)}.
+     *
+     * @param dataOutput the data output
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public void writeState(DataOutput dataOutput) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("The recorder is closed!");
+        }
+        flushBlock();
+
+        dataOutput.writeUTF(file.getAbsolutePath());
+        dataOutput.writeInt(blockSize);
+        dataOutput.writeLong(nextBlockOffset);
+        dataOutput.writeInt(blockIndexBuffer.position());
+        dataOutput.write(blockIndexBuffer.array(), 0, blockIndexBuffer.position());
+        dataOutput.writeInt(tickers.size());
+        for (String ticker : tickers) {
+            dataOutput.writeUTF(ticker);
+        }
+        dataOutput.writeLong(orderEventCount);
+        dataOutput.writeLong(fillCount);
+        dataOutput.writeLong(equitySampleCount);
+        dataOutput.writeLong(annotationCount);
+        dataOutput.writeLong(firstTimestamp);
+        dataOutput.writeLong(lastTimestamp);
+        dataOutput.writeDouble(lastEquity);
+        dataOutput.writeDouble(lastCash);
+    }
+
+    /**
+     * Resumes recording to the record file of a recorder whose state was written by {@link #writeState(DataOutput)}.
+     * The blocks that were written after the state was written are truncated and the file is marked as not closed
+     * again. The state is read completely even if the file can't be resumed.
+     *
+     * @param dataInput the data input
+     *
+     * @return the backtest recorder
+     *
+     * @throws IOException thrown for {@link IOException}s (e.g. if the blocks before the state weren't all written)
+     */
+    public static BacktestRecorder resume(DataInput dataInput) throws IOException {
+        File file = new File(dataInput.readUTF());
+        int blockSize = dataInput.readInt();
+        long nextBlockOffset = dataInput.readLong();
+        int blockIndexLength = dataInput.readInt();
+        if (blockSize <= 0 || nextBlockOffset < RecordFormat.HEADER_SIZE || blockIndexLength < 0 ||
+                blockIndexLength % RecordFormat.BLOCK_INDEX_ENTRY_SIZE != 0) {
+            throw new IOException("Invalid recorder state!");
+        }
+        byte[] blockIndex = new byte[blockIndexLength];
+        dataInput.readFully(blockIndex);
+        int tickerCount = dataInput.readInt();
+        ArrayList<String> tickers = new ArrayList<>();
+        for (int index = 0; index < tickerCount; index++) {
+            tickers.add(dataInput.readUTF());
+        }
+        long orderEventCount = dataInput.readLong();
+        long fillCount = dataInput.readLong();
+        long equitySampleCount = dataInput.readLong();
+        long annotationCount = dataInput.readLong();
+        long firstTimestamp = dataInput.readLong();
+        long lastTimestamp = dataInput.readLong();
+        double lastEquity = dataInput.readDouble();
+        double lastCash = dataInput.readDouble();
+
+        FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+        try {
+            if (fileChannel.size() < nextBlockOffset) {
+                throw new IOException(file + " is shorter than when it was checkpointed");
+            }
+            fileChannel.truncate(nextBlockOffset);
+            ByteBuffer footerOffset = ByteBuffer.allocate(Long.BYTES).order(RecordFormat.BYTE_ORDER);
+            footerOffset.putLong(0);
+            footerOffset.flip();
+            while (footerOffset.hasRemaining()) {
+                fileChannel.write(footerOffset, RecordFormat.FOOTER_OFFSET_POSITION + footerOffset.position());
+            }
+        } catch (IOException exception) {
+            fileChannel.close();
+            throw exception;
+        }
+
+        BacktestRecorder backtestRecorder = new BacktestRecorder(file, fileChannel, blockSize);
+        backtestRecorder.nextBlockOffset = nextBlockOffset;
+        backtestRecorder.blockIndexBuffer = ByteBuffer.allocate(Math.max(blockIndexLength * 2,
+                backtestRecorder.blockIndexBuffer.capacity())).order(RecordFormat.BYTE_ORDER);
+        backtestRecorder.blockIndexBuffer.put(blockIndex);
+        for (String ticker : tickers) {
+            backtestRecorder.tickerIDs.put(ticker, backtestRecorder.tickers.size());
+            backtestRecorder.tickers.add(ticker);
+        }
+        backtestRecorder.orderEventCount = orderEventCount;
+        backtestRecorder.fillCount = fillCount;
+        backtestRecorder.equitySampleCount = equitySampleCount;
+        backtestRecorder.annotationCount = annotationCount;
+        backtestRecorder.firstTimestamp = firstTimestamp;
+        backtestRecorder.lastTimestamp = lastTimestamp;
+        backtestRecorder.lastEquity = lastEquity;
+        backtestRecorder.lastCash = lastCash;
+        return backtestRecorder;
+    }
+
+    /**
+     * Flushes the current block, waits for the writer thread, writes the footer, and sets the footer offset in the
+     * header. Records that are appended after this are ignored.
+     *
+     * @throws IOException thrown for {@link IOException}s (including an earlier error of the writer thread)
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        try {
+            if (buffer != null) {
+                flushBlock();
+            }
+            closed = true;
+
+            writerExecutorService.shutdown();
+            try {
+                if (!writerExecutorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+                    throw new IOException("Timed out waiting for the writer of " + file);
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the writer of " + file, exception);
+            }
+
+            if (writeException != null) {
+                throw writeException;
+            }
+            if (nextBlockOffset > 0) {
+                writeFooter();
+            }
+        } finally {
+            closed = true;
+            writerExecutorService.shutdownNow();
+            fileChannel.close();
+        }
+    }
+
+    /**
+     * Writes the footer after the last block and sets the footer offset in the header.
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private void writeFooter() throws IOException {
+        int tickersLength = Integer.BYTES;
+        ArrayList<byte[]> tickerBytes = new ArrayList<>(tickers.size());
+        for (String ticker : tickers) {
+            byte[] bytes = toBytes(ticker);
+            tickerBytes.add(bytes);
+            tickersLength += Short.BYTES + bytes.length;
+        }
+        int footerLength = RecordFormat.SUMMARY_SIZE + tickersLength + Integer.BYTES + blockIndexBuffer.position();
+
+        ByteBuffer footer = ByteBuffer.allocate(Integer.BYTES + footerLength + Integer.BYTES)
+                .order(RecordFormat.BYTE_ORDER);
+        footer.putInt(footerLength);
+        footer.putLong(orderEventCount);
+        footer.putLong(fillCount);
+        footer.putLong(equitySampleCount);
+        footer.putLong(annotationCount);
+        footer.putLong(firstTimestamp == Long.MAX_VALUE ? 0 : firstTimestamp);
+        footer.putLong(lastTimestamp == Long.MIN_VALUE ? 0 : lastTimestamp);
+        footer.putDouble(lastEquity);
+        footer.putDouble(lastCash);
+        footer.putInt(tickers.size());
+        for (byte[] bytes : tickerBytes) {
+            footer.putShort((short) bytes.length);
+            footer.put(bytes);
+        }
+        footer.putInt(blockIndexBuffer.position() / RecordFormat.BLOCK_INDEX_ENTRY_SIZE);
+        footer.put(blockIndexBuffer.array(), 0, blockIndexBuffer.position());
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(footer.array(), Integer.BYTES, footerLength);
+        footer.putInt((int) crc32.getValue());
+        footer.flip();
+        writeFully(footer, nextBlockOffset);
+
+        ByteBuffer footerOffset = ByteBuffer.allocate(Long.BYTES).order(RecordFormat.BYTE_ORDER);
+        footerOffset.putLong(nextBlockOffset);
+        footerOffset.flip();
+        fileChannel.force(false);
+        writeFully(footerOffset, RecordFormat.FOOTER_OFFSET_POSITION);
+        fileChannel.force(false);
+    }
+
+    /**
+     * Writes a buffer at a position of the file.
+     *
+     * @param byteBuffer the byte buffer
+     * @param position   the position
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private void writeFully(ByteBuffer byteBuffer, long position) throws IOException {
+        while (byteBuffer.hasRemaining()) {
+            position += fileChannel.write(byteBuffer, position);
+        }
+    }
+
+    /**
+     * Allocates a block buffer.
+     *
+     * @param capacity the capacity
+     *
+     * @return the byte buffer
+     */
+    private static ByteBuffer allocateBuffer(int capacity) {
+        return ByteBuffer.allocate(capacity).order(RecordFormat.BYTE_ORDER);
+    }
+
+    /**
+     * Encodes a string as UTF-8, truncating it to {@link RecordFormat#MAX_STRING_LENGTH} bytes.
+     *
+     * @param string the string
+     *
+     * @return the bytes
+     */
+    private static byte[] toBytes(String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= RecordFormat.MAX_STRING_LENGTH) {
+            return bytes;
+        }
+
+        int length = RecordFormat.MAX_STRING_LENGTH;
+        while ((bytes[length] & 0xC0) == 0x80) { // Don't split a multibyte character
+            length--;
+        }
+        byte[] truncatedBytes = new byte[length];
+        System.arraycopy(bytes, 0, truncatedBytes, 0, length);
+        return truncatedBytes;
+    }
+
+    /**
+     * Gets file.
+     *
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the number of order events that have been recorded.
+     *
+     * @return the order event count
+     */
+    public long getOrderEventCount() {
+        return orderEventCount;
+    }
+
+    /**
+     * Gets the number of equity samples that have been recorded.
+     *
+     * @return the equity sample count
+     */
+    public long getEquitySampleCount() {
+        return equitySampleCount;
+    }
+
+    /**
+     * Gets the number of annotations that have been recorded.
+     *
+     * @return the annotation count
+     */
+    public long getAnnotationCount() {
+        return annotationCount;
+    }
+
+    /**
+     * Returns true if an I/O error of the writer thread has stopped the recording.
+     *
+     * @return the boolean
+     */
+    public boolean isFailed() {
+        return writeException != null;
+    }
+
+    /**
+     * Returns true if this recorder has been closed.
+     *
+     * @return the boolean
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+}
@@ -0,0 +1,114 @@
+package net.jacobpeterson.data.record;
+
+import java.util.Arrays;
+
+/**
+ * The equity samples of a {@link net.jacobpeterson.data.BacktestRecord} as primitive columns in timestamp order.
+ */
+public class EquityCurve {
+
+    private long[] timestamps;
+    private double[] equities;
+    private double[] cashes;
+    private int size;
+
+    /**
+     * Instantiates a new empty Equity curve.
+     */
+    public EquityCurve() {
+        this.timestamps = new long[64];
+        this.equities = new double[64];
+        this.cashes = new double[64];
+        this.size = 0;
+    }
+
+    /**
+     * Adds a sample.
+     *
+     * @param timestamp the timestamp (epoch nanoseconds)
+     * @param equity    the equity
+     * @param cash      the cash
+     */
+    public void add(long timestamp, double equity, double cash) {
+        if (size == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+            equities = Arrays.copyOf(equities, size * 2);
+            cashes = Arrays.copyOf(cashes, size * 2);
+        }
+        timestamps[size] = timestamp;
+        equities[size] = equity;
+        cashes[size] = cash;
+        size++;
+    }
+
+    /**
+     * Gets the timestamp of a sample.
+     *
+     * @param index the index
+     *
+     * @return the timestamp (epoch nanoseconds)
+     */
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    /**
+     * Gets the equity of a sample.
+     *
+     * @param index the index
+     *
+     * @return the equity
+     */
+    public double getEquity(int index) {
+        return equities[index];
+    }
+
+    /**
+     * Gets the cash of a sample.
+     *
+     * @param index the index
+     *
+     * @return the cash
+     */
+    public double getCash(int index) {
+        return cashes[index];
+    }
+
+    /**
+     * Gets the equity at a timestamp, which is the equity of the last sample at or before it since samples are only
+     * recorded when the equity or cash changes.
+     *
+     * @param timestamp the timestamp (epoch nanoseconds)
+     *
+     * @return the equity (NaN if there is no sample at or before the timestamp)
+     */
+    public double getEquityAt(long timestamp) {
+        int index = Arrays.binarySearch(timestamps, 0, size, timestamp);
+        if (index < 0) {
+            index = -index - 2;
+        } else {
+            while (index + 1 < size && timestamps[index + 1] == timestamp) {
+                index++;
+            }
+        }
+        return index < 0 ? Double.NaN : equities[index];
+    }
+
+    /**
+     * Gets the number of samples.
+     *
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "EquityCurve{" +
+                "size=" + size +
+                ", firstEquity=" + (size == 0 ? Double.NaN : equities[0]) +
+                ", lastEquity=" + (size == 0 ? Double.NaN : equities[size - 1]) +
+                '}';
+    }
+}
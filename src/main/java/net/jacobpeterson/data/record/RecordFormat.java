@@ -0,0 +1,117 @@
+package net.jacobpeterson.data.record;
+
+import java.nio.ByteOrder;
+
+/**
+ * Constants that define the binary backtest record file format that is written by {@link BacktestRecorder} and read by
+ * {@link net.jacobpeterson.data.BacktestRecord}. All values are little-endian.
+ * <p>
+ * A record file is an append-only journal that is laid out as follows:
+ * <pre>
+ * Header (48 bytes + name)
+ *   int    magic ('AJBR')
+ *   short  version
+ *   short  name length
+ *   long   created (epoch milliseconds)
+ *   long   from timestamp (epoch nanoseconds)
+ *   long   to timestamp (epoch nanoseconds)
+ *   double initial cash
+ *   long   footer offset (0 until the recorder is closed)
+ *   bytes  name (UTF-8)
+ * Blocks
+ *   int    payload length
+ *   int    order event count
+ *   int    equity sample count
+ *   int    annotation count
+ *   long   first timestamp (epoch nanoseconds)
+ *   long   last timestamp (epoch nanoseconds)
+ *   int    CRC32 of the payload
+ *   Payload (records)
+ *     byte  record type
+ *     long  timestamp (epoch nanoseconds)
+ *     Ticker: int ticker ID, short length, bytes ticker (UTF-8)
+ *     Order event: int order ID, byte order event, int ticker ID, byte side,
+ *       New only: byte type, byte time in force, int quantity, double limit price, double stop price
+ *       Fill only: int quantity, double price
+ *     Equity sample: double equity, double cash
+ *     Annotation: int ticker ID (-1 for none), short length, bytes text (UTF-8)
+ * Footer
+ *   int    footer length (excluding this length and the CRC32)
+ *   Summary (64 bytes)
+ *     long   order event count
+ *     long   fill count
+ *     long   equity sample count
+ *     long   annotation count
+ *     long   first timestamp (epoch nanoseconds)
+ *     long   last timestamp (epoch nanoseconds)
+ *     double final equity
+ *     double final cash
+ *   int    ticker count
+ *     short length, bytes ticker (UTF-8)
+ *   int    block count
+ *   Block index (40 bytes per block)
+ *     long  block offset
+ *     int   payload length
+ *     int   order event count
+ *     int   equity sample count
+ *     int   annotation count
+ *     long  first timestamp (epoch nanoseconds)
+ *     long  last timestamp (epoch nanoseconds)
+ *   int    CRC32 of the footer
+ * </pre>
+ * Ticker IDs are defined by a ticker record before their first use and again in the footer so that any block can be
+ * decoded on its own. A record file whose footer offset is 0 wasn't closed (e.g. the JVM crashed), so its blocks are
+ * scanned and the blocks after the last one with a valid CRC32 are ignored.
+ */
+public final class RecordFormat {
+
+    /** The constant FILE_EXTENSION. */
+    public static final String FILE_EXTENSION = "rec";
+
+    /** The constant MAGIC. */
+    public static final int MAGIC = 0x414A4252;
+
+    /** The constant VERSION. */
+    public static final short VERSION = 1;
+
+    /** The constant BYTE_ORDER. */
+    public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    /** The constant HEADER_SIZE (without the name). */
+    public static final int HEADER_SIZE = 48;
+
+    /** The constant FOOTER_OFFSET_POSITION. */
+    public static final int FOOTER_OFFSET_POSITION = 40;
+
+    /** The constant BLOCK_HEADER_SIZE. */
+    public static final int BLOCK_HEADER_SIZE = 36;
+
+    /** The constant BLOCK_INDEX_ENTRY_SIZE. */
+    public static final int BLOCK_INDEX_ENTRY_SIZE = 40;
+
+    /** The constant SUMMARY_SIZE. */
+    public static final int SUMMARY_SIZE = 64;
+
+    /** The constant DEFAULT_BLOCK_SIZE. */
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    /** The constant TICKER_RECORD. */
+    public static final byte TICKER_RECORD = 1;
+
+    /** The constant ORDER_EVENT_RECORD. */
+    public static final byte ORDER_EVENT_RECORD = 2;
+
+    /** The constant EQUITY_SAMPLE_RECORD. */
+    public static final byte EQUITY_SAMPLE_RECORD = 3;
+
+    /** The constant ANNOTATION_RECORD. */
+    public static final byte ANNOTATION_RECORD = 4;
+
+    /** The constant NO_TICKER_ID. */
+    public static final int NO_TICKER_ID = -1;
+
+    /** The constant MAX_STRING_LENGTH (in UTF-8 bytes). */
+    public static final int MAX_STRING_LENGTH = 0xFFFF;
+
+    private RecordFormat() {}
+}
@@ -0,0 +1,61 @@
+package net.jacobpeterson.data.record;
+
+/**
+ * An annotation that was recorded by a {@link net.jacobpeterson.algorithm.TradingAlgorithm} in a {@link
+ * net.jacobpeterson.data.BacktestRecord}.
+ */
+public class RecordedAnnotation {
+
+    private final long timestamp;
+    private final String ticker;
+    private final String text;
+
+    /**
+     * Instantiates a new Recorded annotation.
+     *
+     * @param timestamp the timestamp (epoch nanoseconds)
+     * @param ticker    the ticker (null if the annotation isn't about a ticker)
+     * @param text      the text
+     */
+    public RecordedAnnotation(long timestamp, String ticker, String text) {
+        this.timestamp = timestamp;
+        this.ticker = ticker;
+        this.text = text;
+    }
+
+    /**
+     * Gets timestamp.
+     *
+     * @return the timestamp (epoch nanoseconds)
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Gets ticker.
+     *
+     * @return the ticker (null if the annotation isn't about a ticker)
+     */
+    public String getTicker() {
+        return ticker;
+    }
+
+    /**
+     * Gets text.
+     *
+     * @return the text
+     */
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public String toString() {
+        return "RecordedAnnotation{" +
+                "timestamp=" + timestamp +
+                ", ticker='" + ticker + '\'' +
+                ", text='" + text + '\'' +
+                '}';
+    }
+}
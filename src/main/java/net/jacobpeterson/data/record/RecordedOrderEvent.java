@@ -0,0 +1,173 @@
+package net.jacobpeterson.data.record;
+
+import io.github.mainstringargs.alpaca.enums.OrderSide;
+import io.github.mainstringargs.alpaca.enums.OrderTimeInForce;
+import io.github.mainstringargs.alpaca.enums.OrderType;
+import net.jacobpeterson.broker.order.OrderEvent;
+
+/**
+ * An {@link OrderEvent} of the {@link net.jacobpeterson.broker.order.MatchingEngine} that was recorded in a {@link
+ * net.jacobpeterson.data.BacktestRecord}.
+ */
+public class RecordedOrderEvent {
+
+    private final long timestamp;
+    private final int orderID;
+    private final OrderEvent orderEvent;
+    private final String ticker;
+    private final OrderSide orderSide;
+    private final OrderType orderType;
+    private final OrderTimeInForce orderTimeInForce;
+    private final int quantity;
+    private final double price;
+    private final double limitPrice;
+    private final double stopPrice;
+
+    /**
+     * Instantiates a new Recorded order event.
+     *
+     * @param timestamp        the timestamp (epoch nanoseconds)
+     * @param orderID          the order ID
+     * @param orderEvent       the order event
+     * @param ticker           the ticker
+     * @param orderSide        the order side
+     * @param orderType        the order type (null unless this is a {@link OrderEvent#NEW})
+     * @param orderTimeInForce the order time in force (null unless this is a {@link OrderEvent#NEW})
+     * @param quantity         the order quantity of a {@link OrderEvent#NEW} or the fill quantity of a {@link
+     *                         OrderEvent#FILL} (0 otherwise)
+     * @param price            the fill price (NaN unless this is a {@link OrderEvent#FILL})
+     * @param limitPrice       the limit price (NaN if not applicable or unless this is a {@link OrderEvent#NEW})
+     * @param stopPrice        the stop price (NaN if not applicable or unless this is a {@link OrderEvent#NEW})
+     */
+    public RecordedOrderEvent(long timestamp, int orderID, OrderEvent orderEvent, String ticker, OrderSide orderSide,
+            OrderType orderType, OrderTimeInForce orderTimeInForce, int quantity, double price, double limitPrice,
+            double stopPrice) {
+        this.timestamp = timestamp;
+        this.orderID = orderID;
+        this.orderEvent = orderEvent;
+        this.ticker = ticker;
+        this.orderSide = orderSide;
+        this.orderType = orderType;
+        this.orderTimeInForce = orderTimeInForce;
+        this.quantity = quantity;
+        this.price = price;
+        this.limitPrice = limitPrice;
+        this.stopPrice = stopPrice;
+    }
+
+    /**
+     * Gets timestamp.
+     *
+     * @return the timestamp (epoch nanoseconds)
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Gets order ID.
+     *
+     * @return the order ID
+     */
+    public int getOrderID() {
+        return orderID;
+    }
+
+    /**
+     * Gets order event.
+     *
+     * @return the order event
+     */
+    public OrderEvent getOrderEvent() {
+        return orderEvent;
+    }
+
+    /**
+     * Gets ticker.
+     *
+     * @return the ticker
+     */
+    public String getTicker() {
+        return ticker;
+    }
+
+    /**
+     * Gets order side.
+     *
+     * @return the order side
+     */
+    public OrderSide getOrderSide() {
+        return orderSide;
+    }
+
+    /**
+     * Gets order type.
+     *
+     * @return the order type (null unless this is a {@link OrderEvent#NEW})
+     */
+    public OrderType getOrderType() {
+        return orderType;
+    }
+
+    /**
+     * Gets order time in force.
+     *
+     * @return the order time in force (null unless this is a {@link OrderEvent#NEW})
+     */
+    public OrderTimeInForce getOrderTimeInForce() {
+        return orderTimeInForce;
+    }
+
+    /**
+     * Gets the order quantity of a {@link OrderEvent#NEW} or the fill quantity of a {@link OrderEvent#FILL}.
+     *
+     * @return the quantity
+     */
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Gets the fill price.
+     *
+     * @return the price (NaN unless this is a {@link OrderEvent#FILL})
+     */
+    public double getPrice() {
+        return price;
+    }
+
+    /**
+     * Gets limit price.
+     *
+     * @return the limit price (NaN if not applicable)
+     */
+    public double getLimitPrice() {
+        return limitPrice;
+    }
+
+    /**
+     * Gets stop price.
+     *
+     * @return the stop price (NaN if not applicable)
+     */
+    public double getStopPrice() {
+        return stopPrice;
+    }
+
+    @Override
+    public String toString() {
+        return "RecordedOrderEvent{" +
+                "timestamp=" + timestamp +
+                ", orderID=" + orderID +
+                ", orderEvent=" + orderEvent +
+                ", ticker='" + ticker + '\'' +
+                ", orderSide=" + orderSide +
+                ", orderType=" + orderType +
+                ", orderTimeInForce=" + orderTimeInForce +
+                ", quantity=" + quantity +
+                ", price=" + price +
+                ", limitPrice=" + limitPrice +
+                ", stopPrice=" + stopPrice +
+                '}';
+    }
+}
@@ -0,0 +1,32 @@
+package net.jacobpeterson.data.series;
+
+/**
+ * The enum Bar field of a {@link BarSeries}.
+ */
+public enum BarField {
+
+    /**
+     * Open bar field.
+     */
+    OPEN,
+
+    /**
+     * High bar field.
+     */
+    HIGH,
+
+    /**
+     * Low bar field.
+     */
+    LOW,
+
+    /**
+     * Close bar field.
+     */
+    CLOSE,
+
+    /**
+     * Volume bar field.
+     */
+    VOLUME
+}
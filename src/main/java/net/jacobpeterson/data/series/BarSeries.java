@@ -0,0 +1,315 @@
+package net.jacobpeterson.data.series;
+
+import net.jacobpeterson.algorithm.update.ticker.AggregateUpdateType;
+import net.jacobpeterson.data.BacktestData;
+import net.jacobpeterson.data.cursor.AggregateCursor;
+import net.jacobpeterson.data.iterators.AggregateIterator;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * A series of bars stored in primitive <code>long[]</code> and <code>double[]</code> columns. Compared to a list of
+ * {@link io.github.mainstringargs.domain.polygon.aggregates.Aggregate} POJOs, a bar takes 48 bytes and no objects, so
+ * very long lookbacks can be kept in memory without GC pressure. Bars are accessed by index in <code>O(1)</code> and
+ * by time in <code>O(log n)</code>. Use {@link RollingWindow} to compute statistics over a window of bars.
+ * <p>
+ * This is not thread safe while bars are being added, but it can be read concurrently once it is built.
+ */
+public class BarSeries {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final String ticker;
+    private final AggregateUpdateType aggregateUpdateType;
+    private long[] timestamps;
+    private double[] opens;
+    private double[] highs;
+    private double[] lows;
+    private double[] closes;
+    private double[] volumes;
+    private int size;
+
+    /**
+     * Instantiates a new Bar series.
+     *
+     * @param ticker              the ticker
+     * @param aggregateUpdateType the aggregate update type
+     */
+    public BarSeries(String ticker, AggregateUpdateType aggregateUpdateType) {
+        this.ticker = ticker;
+        this.aggregateUpdateType = aggregateUpdateType;
+        this.timestamps = new long[INITIAL_CAPACITY];
+        this.opens = new double[INITIAL_CAPACITY];
+        this.highs = new double[INITIAL_CAPACITY];
+        this.lows = new double[INITIAL_CAPACITY];
+        this.closes = new double[INITIAL_CAPACITY];
+        this.volumes = new double[INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+    /**
+     * Loads a bar series of a ticker from {@link BacktestData}. The aggregates are read through an {@link
+     * AggregateCursor} so no POJOs are created.
+     *
+     * @param backtestData        the backtest data
+     * @param ticker              the ticker
+     * @param aggregateUpdateType the aggregate update type
+     * @param from                the from (inclusive)
+     * @param to                  the to (exclusive)
+     *
+     * @return the bar series
+     */
+    public static BarSeries load(BacktestData backtestData, String ticker, AggregateUpdateType aggregateUpdateType,
+            LocalDate from, LocalDate to) {
+        BarSeries barSeries = new BarSeries(ticker, aggregateUpdateType);
+        AggregateIterator aggregateIterator = new AggregateIterator(backtestData, ticker, aggregateUpdateType, from,
+                to);
+        AggregateCursor cursor = aggregateIterator.getCursor();
+        while (aggregateIterator.advance()) {
+            barSeries.add(cursor);
+        }
+        return barSeries;
+    }
+
+    /**
+     * Adds a bar.
+     *
+     * @param timestamp the timestamp (epoch nanoseconds of the start of the bar)
+     * @param open      the open
+     * @param high      the high
+     * @param low       the low
+     * @param close     the close
+     * @param volume    the volume
+     *
+     * @throws IllegalArgumentException thrown if the timestamp is before the timestamp of the last bar
+     */
+    public void add(long timestamp, double open, double high, double low, double close, double volume) {
+        if (size > 0 && timestamp < timestamps[size - 1]) {
+            throw new IllegalArgumentException("Bars must be added in time order!");
+        }
+
+        if (size == timestamps.length) {
+            int newCapacity = size * 2;
+            timestamps = Arrays.copyOf(timestamps, newCapacity);
+            opens = Arrays.copyOf(opens, newCapacity);
+            highs = Arrays.copyOf(highs, newCapacity);
+            lows = Arrays.copyOf(lows, newCapacity);
+            closes = Arrays.copyOf(closes, newCapacity);
+            volumes = Arrays.copyOf(volumes, newCapacity);
+        }
+
+        timestamps[size] = timestamp;
+        opens[size] = open;
+        highs[size] = high;
+        lows[size] = low;
+        closes[size] = close;
+        volumes[size] = volume;
+        size++;
+    }
+
+    /**
+     * Adds the current bar of an aggregate cursor.
+     *
+     * @param aggregateCursor the aggregate cursor
+     */
+    public void add(AggregateCursor aggregateCursor) {
+        add(aggregateCursor.getTimestamp(), aggregateCursor.getOpen(), aggregateCursor.getHigh(),
+                aggregateCursor.getLow(), aggregateCursor.getClose(), aggregateCursor.getVolume());
+    }
+
+    /**
+     * Releases the unused capacity of the columns.
+     */
+    public void trimToSize() {
+        timestamps = Arrays.copyOf(timestamps, size);
+        opens = Arrays.copyOf(opens, size);
+        highs = Arrays.copyOf(highs, size);
+        lows = Arrays.copyOf(lows, size);
+        closes = Arrays.copyOf(closes, size);
+        volumes = Arrays.copyOf(volumes, size);
+    }
+
+    /**
+     * Gets the index of the last bar with a timestamp that is at or before the given timestamp.
+     *
+     * @param timestamp the timestamp (epoch nanoseconds)
+     *
+     * @return the index (-1 if every bar is after the timestamp)
+     */
+    public int floorIndex(long timestamp) {
+        int index = Arrays.binarySearch(timestamps, 0, size, timestamp);
+        if (index < 0) {
+            return -index - 2;
+        }
+        // Move to the last of any bars with an equal timestamp
+        while (index + 1 < size && timestamps[index + 1] == timestamp) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Gets the index of the first bar with a timestamp that is at or after the given timestamp.
+     *
+     * @param timestamp the timestamp (epoch nanoseconds)
+     *
+     * @return the index ({@link #size()} if every bar is before the timestamp)
+     */
+    public int ceilingIndex(long timestamp) {
+        int index = Arrays.binarySearch(timestamps, 0, size, timestamp);
+        if (index < 0) {
+            return -index - 1;
+        }
+        // Move to the first of any bars with an equal timestamp
+        while (index > 0 && timestamps[index - 1] == timestamp) {
+            index--;
+        }
+        return index;
+    }
+
+    /**
+     * Gets a field of a bar.
+     *
+     * @param barField the bar field
+     * @param index    the index
+     *
+     * @return the value
+     */
+    public double get(BarField barField, int index) {
+        checkIndex(index);
+        switch (barField) {
+            case OPEN:
+                return opens[index];
+            case HIGH:
+                return highs[index];
+            case LOW:
+                return lows[index];
+            case CLOSE:
+                return closes[index];
+            case VOLUME:
+                return volumes[index];
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Checks that an index is in bounds.
+     *
+     * @param index the index
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for size " + size);
+        }
+    }
+
+    /**
+     * Gets the timestamp (epoch nanoseconds of the start of the bar) of a bar.
+     *
+     * @param index the index
+     *
+     * @return the timestamp
+     */
+    public long getTimestamp(int index) {
+        checkIndex(index);
+        return timestamps[index];
+    }
+
+    /**
+     * Gets the open of a bar.
+     *
+     * @param index the index
+     *
+     * @return the open
+     */
+    public double getOpen(int index) {
+        checkIndex(index);
+        return opens[index];
+    }
+
+    /**
+     * Gets the high of a bar.
+     *
+     * @param index the index
+     *
+     * @return the high
+     */
+    public double getHigh(int index) {
+        checkIndex(index);
+        return highs[index];
+    }
+
+    /**
+     * Gets the low of a bar.
+     *
+     * @param index the index
+     *
+     * @return the low
+     */
+    public double getLow(int index) {
+        checkIndex(index);
+        return lows[index];
+    }
+
+    /**
+     * Gets the close of a bar.
+     *
+     * @param index the index
+     *
+     * @return the close
+     */
+    public double getClose(int index) {
+        checkIndex(index);
+        return closes[index];
+    }
+
+    /**
+     * Gets the volume of a bar.
+     *
+     * @param index the index
+     *
+     * @return the volume
+     */
+    public double getVolume(int index) {
+        checkIndex(index);
+        return volumes[index];
+    }
+
+    /**
+     * Gets the number of bars.
+     *
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if there are no bars.
+     *
+     * @return the boolean
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets ticker.
+     *
+     * @return the ticker
+     */
+    public String getTicker() {
+        return ticker;
+    }
+
+    /**
+     * Gets aggregate update type.
+     *
+     * @return the aggregate update type
+     */
+    public AggregateUpdateType getAggregateUpdateType() {
+        return aggregateUpdateType;
+    }
+}
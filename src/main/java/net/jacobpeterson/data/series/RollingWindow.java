@@ -0,0 +1,236 @@
+package net.jacobpeterson.data.series;
+
+/**
+ * A fixed-length window over a {@link BarField} of a {@link BarSeries} that can be slid forward through the series.
+ * Sliding forward by one bar updates the sum, mean, variance, min, and max in amortized <code>O(1)</code> (the min
+ * and max are tracked with monotonic deques), so statistics over long lookbacks cost the same as short ones. Moving
+ * backwards or jumping further than the window length rebuilds the window.
+ * <p>
+ * This is not thread safe.
+ */
+public class RollingWindow {
+
+    private final BarSeries barSeries;
+    private final BarField barField;
+    private final int length;
+    private final int[] minDeque;
+    private final int[] maxDeque;
+    private int minHead;
+    private int minTail;
+    private int maxHead;
+    private int maxTail;
+    private int endIndex;
+    private int count;
+    private double shift;
+    private double shiftedSum;
+    private double shiftedSumOfSquares;
+
+    /**
+     * Instantiates a new Rolling window that is positioned before the first bar.
+     *
+     * @param barSeries the bar series
+     * @param barField  the bar field
+     * @param length    the length
+     */
+    public RollingWindow(BarSeries barSeries, BarField barField, int length) {
+        if (length <= 0) {
+            throw new IllegalArgumentException("Length must be positive!");
+        }
+
+        this.barSeries = barSeries;
+        this.barField = barField;
+        this.length = length;
+        this.minDeque = new int[length];
+        this.maxDeque = new int[length];
+
+        this.reset();
+    }
+
+    /**
+     * Clears this window.
+     */
+    private void reset() {
+        minHead = minTail = maxHead = maxTail = 0;
+        endIndex = -1;
+        count = 0;
+        shift = 0;
+        shiftedSum = 0;
+        shiftedSumOfSquares = 0;
+    }
+
+    /**
+     * Moves this window so that its last bar is the given index.
+     *
+     * @param endIndex the end index (inclusive)
+     */
+    public void moveTo(int endIndex) {
+        if (endIndex < 0 || endIndex >= barSeries.size()) {
+            throw new IndexOutOfBoundsException("Index " + endIndex + " is out of bounds!");
+        }
+
+        if (endIndex < this.endIndex || endIndex - this.endIndex > length) {
+            reset();
+            this.endIndex = Math.max(-1, endIndex - length);
+        }
+        while (this.endIndex < endIndex) {
+            push(this.endIndex + 1);
+        }
+    }
+
+    /**
+     * Moves this window forward by one bar.
+     *
+     * @return true if this window moved, false if it is already at the end of the series
+     */
+    public boolean next() {
+        if (endIndex + 1 >= barSeries.size()) {
+            return false;
+        }
+        push(endIndex + 1);
+        return true;
+    }
+
+    /**
+     * Pushes a bar into the end of this window, evicting the oldest bar if this window is full.
+     *
+     * @param index the index
+     */
+    private void push(int index) {
+        double value = barSeries.get(barField, index);
+        if (count == 0) {
+            shift = value;
+        }
+
+        if (count == length) {
+            double evictedValue = barSeries.get(barField, index - length) - shift;
+            shiftedSum -= evictedValue;
+            shiftedSumOfSquares -= evictedValue * evictedValue;
+            count--;
+        }
+        int oldestIndex = index - length + 1;
+        if (minHead != minTail && minDeque[minHead % length] < oldestIndex) {
+            minHead++;
+        }
+        if (maxHead != maxTail && maxDeque[maxHead % length] < oldestIndex) {
+            maxHead++;
+        }
+
+        while (minHead != minTail && barSeries.get(barField, minDeque[(minTail - 1) % length]) >= value) {
+            minTail--;
+        }
+        minDeque[minTail++ % length] = index;
+        while (maxHead != maxTail && barSeries.get(barField, maxDeque[(maxTail - 1) % length]) <= value) {
+            maxTail--;
+        }
+        maxDeque[maxTail++ % length] = index;
+
+        double shiftedValue = value - shift;
+        shiftedSum += shiftedValue;
+        shiftedSumOfSquares += shiftedValue * shiftedValue;
+        count++;
+        endIndex = index;
+    }
+
+    /**
+     * Returns true if this window contains {@link #getLength()} bars.
+     *
+     * @return the boolean
+     */
+    public boolean isFull() {
+        return count == length;
+    }
+
+    /**
+     * Gets the sum.
+     *
+     * @return the sum
+     */
+    public double getSum() {
+        return shiftedSum + shift * count;
+    }
+
+    /**
+     * Gets the mean.
+     *
+     * @return the mean (NaN if empty)
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : getSum() / count;
+    }
+
+    /**
+     * Gets the population variance.
+     *
+     * @return the variance (NaN if empty)
+     */
+    public double getVariance() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double shiftedMean = shiftedSum / count;
+        return Math.max(0, shiftedSumOfSquares / count - shiftedMean * shiftedMean);
+    }
+
+    /**
+     * Gets the population standard deviation.
+     *
+     * @return the standard deviation (NaN if empty)
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Gets the minimum.
+     *
+     * @return the min (NaN if empty)
+     */
+    public double getMin() {
+        return count == 0 ? Double.NaN : barSeries.get(barField, minDeque[minHead % length]);
+    }
+
+    /**
+     * Gets the maximum.
+     *
+     * @return the max (NaN if empty)
+     */
+    public double getMax() {
+        return count == 0 ? Double.NaN : barSeries.get(barField, maxDeque[maxHead % length]);
+    }
+
+    /**
+     * Gets the index of the last bar in this window.
+     *
+     * @return the end index (-1 if positioned before the first bar)
+     */
+    public int getEndIndex() {
+        return endIndex;
+    }
+
+    /**
+     * Gets the number of bars in this window.
+     *
+     * @return the count
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Gets length.
+     *
+     * @return the length
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Gets bar field.
+     *
+     * @return the bar field
+     */
+    public BarField getBarField() {
+        return barField;
+    }
+}
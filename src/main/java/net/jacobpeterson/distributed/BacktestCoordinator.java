@@ -0,0 +1,499 @@
+package net.jacobpeterson.distributed;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Coordinates the backtests of a list of tasks (e.g. the points of a parameter grid or the tickers of a universe) that
+ * are run by {@link BacktestWorker}s in other JVMs, possibly on other machines that share the {@link
+ * net.jacobpeterson.data.BacktestData} directory. Every task is a string of parameters that is passed to a {@link
+ * BacktestJob} on the worker. Workers connect over a socket (see {@link DistributedProtocol}) and pull tasks, so a
+ * worker with more or faster slots simply takes more tasks and only a small {@link BacktestSummary} of each backtest
+ * is sent back.
+ * <p>
+ * A task that fails on a worker (or whose worker disconnects) is put back in the queue and retried on any slot until
+ * it has failed {@link #getMaximumAttempts()} times. Once the queue is empty, idle slots steal a copy of the task that
+ * has been running the longest if it has been running for longer than the average task, so a slow or hung worker
+ * doesn't hold up the end of the run; whichever copy finishes first is used.
+ */
+public class BacktestCoordinator implements AutoCloseable {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final long STEAL_CHECK_MILLIS = 100;
+
+    private final String jobClassName;
+    private final Task[] tasks;
+    private final ArrayDeque<Task> pendingTasks;
+    private final HashSet<String> workerNames;
+    private int port;
+    private int maximumAttempts;
+    private boolean stealingEnabled;
+    private int remainingCount;
+    private long retryCount;
+    private long speculativeCount;
+    private long completedCount;
+    private long completedElapsedNanos;
+    private long startNanos;
+    private ServerSocket serverSocket;
+    private volatile boolean closed;
+
+    /**
+     * Instantiates a new Backtest coordinator. By default, it listens on an ephemeral port (see {@link #getPort()}),
+     * retries a task until it has failed 3 times, and lets idle workers steal slow tasks.
+     *
+     * @param backtestJobClass the backtest job class (which must be on the classpath of every worker)
+     * @param parameters       the parameters of each task
+     */
+    public BacktestCoordinator(Class<? extends BacktestJob> backtestJobClass, List<String> parameters) {
+        this.jobClassName = backtestJobClass.getName();
+        this.tasks = new Task[parameters.size()];
+        this.pendingTasks = new ArrayDeque<>(parameters.size());
+        for (int taskID = 0; taskID < tasks.length; taskID++) {
+            tasks[taskID] = new Task(taskID, parameters.get(taskID));
+            pendingTasks.add(tasks[taskID]);
+        }
+        this.workerNames = new HashSet<>();
+        this.port = 0;
+        this.maximumAttempts = 3;
+        this.stealingEnabled = true;
+        this.remainingCount = tasks.length;
+    }
+
+    /**
+     * Starts listening for workers. Tasks are handed out as soon as workers connect.
+     *
+     * @return the port that is listened on
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public synchronized int start() throws IOException {
+        if (serverSocket != null) {
+            throw new IllegalStateException("The coordinator was already started!");
+        }
+
+        serverSocket = new ServerSocket(port);
+        port = serverSocket.getLocalPort();
+        startNanos = System.nanoTime();
+
+        Thread acceptThread = new Thread(this::acceptConnections, "BacktestCoordinator-" + port);
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        LOGGER.info("Coordinating {} tasks of {} on port {}", tasks.length, jobClassName, port);
+        return port;
+    }
+
+    /**
+     * Starts listening for workers (see {@link #start()}), blocks until every task has finished, and closes this.
+     *
+     * @return the ranked backtest summaries
+     *
+     * @throws IOException          thrown for {@link IOException}s
+     * @throws InterruptedException thrown if interrupted while waiting for the tasks
+     */
+    public BacktestSummaries run() throws IOException, InterruptedException {
+        start();
+        try {
+            return awaitSummaries();
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Blocks until every task has finished (successfully or not).
+     *
+     * @return the ranked backtest summaries
+     *
+     * @throws InterruptedException thrown if interrupted while waiting for the tasks
+     */
+    public synchronized BacktestSummaries awaitSummaries() throws InterruptedException {
+        if (serverSocket == null) {
+            throw new IllegalStateException("The coordinator wasn't started!");
+        }
+
+        while (remainingCount > 0) {
+            wait();
+        }
+        notifyAll(); // Let the connections of idle slots reply that there are no more tasks
+
+        ArrayList<BacktestSummary> summaries = new ArrayList<>(tasks.length);
+        for (Task task : tasks) {
+            summaries.add(task.summary);
+        }
+        BacktestSummaries backtestSummaries = new BacktestSummaries(summaries, System.nanoTime() - startNanos,
+                workerNames.size(), retryCount, speculativeCount);
+        LOGGER.info("Distributed backtest summaries:\n{}", backtestSummaries.toTable());
+        return backtestSummaries;
+    }
+
+    /**
+     * Accepts the connections of worker slots until this is closed.
+     */
+    private void acceptConnections() {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException exception) {
+                if (!closed) {
+                    LOGGER.error("Could not accept a worker connection", exception);
+                }
+                return;
+            }
+
+            Thread connectionThread = new Thread(() -> handleConnection(socket),
+                    "BacktestCoordinator-" + socket.getRemoteSocketAddress());
+            connectionThread.setDaemon(true);
+            connectionThread.start();
+        }
+    }
+
+    /**
+     * Runs the request/response loop of a worker slot connection. If the connection is lost while the slot holds a
+     * task, the task fails.
+     *
+     * @param acceptedSocket the accepted socket
+     */
+    private void handleConnection(Socket acceptedSocket) {
+        String workerName = String.valueOf(acceptedSocket.getRemoteSocketAddress());
+        Attempt attempt = null;
+        try (Socket socket = acceptedSocket) {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream dataOutputStream =
+                    new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            if (dataInputStream.readInt() != DistributedProtocol.MAGIC) {
+                throw new IOException(workerName + " is not a backtest worker");
+            }
+            short version = dataInputStream.readShort();
+            if (version != DistributedProtocol.VERSION) {
+                throw new IOException(workerName + " has an unsupported version: " + version);
+            }
+            workerName = dataInputStream.readUTF();
+            dataOutputStream.writeInt(DistributedProtocol.MAGIC);
+            dataOutputStream.writeShort(DistributedProtocol.VERSION);
+            dataOutputStream.flush();
+
+            while (true) {
+                byte messageType = dataInputStream.readByte();
+                switch (messageType) {
+                    case DistributedProtocol.REQUEST:
+                        if (attempt != null) {
+                            throw new IOException(workerName + " requested a task while running one");
+                        }
+                        attempt = takeTask();
+                        if (attempt == null) {
+                            dataOutputStream.writeByte(DistributedProtocol.DONE);
+                            dataOutputStream.flush();
+                            return;
+                        }
+                        dataOutputStream.writeByte(DistributedProtocol.TASK);
+                        dataOutputStream.writeInt(attempt.task.id);
+                        dataOutputStream.writeInt(attempt.number);
+                        dataOutputStream.writeUTF(jobClassName);
+                        dataOutputStream.writeUTF(attempt.task.parameters);
+                        dataOutputStream.flush();
+                        break;
+                    case DistributedProtocol.RESULT:
+                        BacktestSummary summary = BacktestSummary.read(dataInputStream);
+                        if (attempt == null || summary.getTaskID() != attempt.task.id) {
+                            throw new IOException(workerName + " sent a result of a task that it doesn't hold");
+                        }
+                        completeTask(attempt, summary);
+                        attempt = null;
+                        break;
+                    case DistributedProtocol.FAILURE:
+                        int taskID = dataInputStream.readInt();
+                        String failure = dataInputStream.readUTF();
+                        if (attempt == null || taskID != attempt.task.id) {
+                            throw new IOException(workerName + " sent a failure of a task that it doesn't hold");
+                        }
+                        failTask(attempt, workerName, failure);
+                        attempt = null;
+                        break;
+                    default:
+                        throw new IOException(workerName + " sent an unknown message type: " + messageType);
+                }
+            }
+        } catch (IOException exception) {
+            if (!closed) {
+                LOGGER.warn("Lost the connection to worker {}: {}", workerName, exception.toString());
+            }
+        } finally {
+            if (attempt != null) {
+                failTask(attempt, workerName, "Lost the connection to the worker");
+            }
+        }
+    }
+
+    /**
+     * Takes the next pending task or, once there are none, steals a copy of a slow running task. This blocks while
+     * there is nothing to take.
+     *
+     * @return the attempt (null if every task has finished or this was closed)
+     */
+    private synchronized Attempt takeTask() {
+        while (!closed && remainingCount > 0) {
+            Task task = pendingTasks.poll();
+            if (task == null && stealingEnabled) {
+                task = findSlowTask();
+                if (task != null) {
+                    speculativeCount++;
+                    LOGGER.debug("Stealing task {} which has been running for {} ms", task.id,
+                            (System.nanoTime() - task.startNanos) / 1_000_000);
+                }
+            }
+
+            if (task != null) {
+                task.runningCount++;
+                task.attemptCount++;
+                task.startNanos = System.nanoTime();
+                return new Attempt(task, task.attemptCount);
+            }
+
+            try {
+                if (stealingEnabled) {
+                    wait(STEAL_CHECK_MILLIS);
+                } else {
+                    wait();
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the task that has been running the longest on a single slot if it has been running for longer than the
+     * average task took.
+     *
+     * @return the slow task (null if there is none)
+     */
+    private Task findSlowTask() {
+        if (completedCount == 0) {
+            return null;
+        }
+
+        long averageElapsedNanos = completedElapsedNanos / completedCount;
+        long nowNanos = System.nanoTime();
+        Task slowTask = null;
+        for (Task task : tasks) {
+            if (task.summary == null && task.runningCount == 1 && nowNanos - task.startNanos > averageElapsedNanos &&
+                    (slowTask == null || task.startNanos < slowTask.startNanos)) {
+                slowTask = task;
+            }
+        }
+        return slowTask;
+    }
+
+    /**
+     * Completes a task with the summary of an attempt. The summaries of other attempts of an already completed task
+     * are ignored.
+     *
+     * @param attempt the attempt
+     * @param summary the summary
+     */
+    private synchronized void completeTask(Attempt attempt, BacktestSummary summary) {
+        Task task = attempt.task;
+        task.runningCount--;
+        if (task.summary != null) {
+            return;
+        }
+
+        task.summary = summary;
+        remainingCount--;
+        completedCount++;
+        completedElapsedNanos += summary.getElapsedNanos();
+        workerNames.add(summary.getWorkerName());
+        notifyAll();
+    }
+
+    /**
+     * Fails an attempt of a task. The task is put back in the queue unless another attempt of it is still running or
+     * it has failed {@link #getMaximumAttempts()} times.
+     *
+     * @param attempt    the attempt
+     * @param workerName the worker name
+     * @param failure    the failure message
+     */
+    private synchronized void failTask(Attempt attempt, String workerName, String failure) {
+        Task task = attempt.task;
+        task.runningCount--;
+        if (task.summary != null) {
+            return;
+        }
+
+        task.failureCount++;
+        if (task.runningCount > 0) {
+            LOGGER.warn("Task {} failed on {} while another attempt is running: {}", task.id, workerName, failure);
+        } else if (task.failureCount < maximumAttempts) {
+            LOGGER.warn("Task {} failed on {}, retrying: {}", task.id, workerName, failure);
+            retryCount++;
+            pendingTasks.addFirst(task);
+        } else {
+            LOGGER.error("Task {} with parameters {} failed {} times, giving up: {}", task.id, task.parameters,
+                    task.failureCount, failure);
+            task.summary = BacktestSummary.failed(task.id, task.parameters, workerName, attempt.number, failure);
+            remainingCount--;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Stops listening for workers. Tasks that haven't finished are abandoned, and connected worker slots are told that
+     * there are no more tasks once they ask for their next one.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (this) {
+            notifyAll();
+        }
+
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException exception) {
+            LOGGER.error("Could not close the coordinator socket", exception);
+        }
+    }
+
+    /**
+     * Gets the port that is listened on. This is the actual port once {@link #start()} was called.
+     *
+     * @return the port
+     */
+    public synchronized int getPort() {
+        return port;
+    }
+
+    /**
+     * Sets the port to listen on (0 for an ephemeral port).
+     *
+     * @param port the port
+     */
+    public synchronized void setPort(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Gets maximum attempts.
+     *
+     * @return the maximum attempts
+     */
+    public synchronized int getMaximumAttempts() {
+        return maximumAttempts;
+    }
+
+    /**
+     * Sets the number of times that a task may fail before it is given up.
+     *
+     * @param maximumAttempts the maximum attempts
+     */
+    public synchronized void setMaximumAttempts(int maximumAttempts) {
+        if (maximumAttempts < 1) {
+            throw new IllegalArgumentException("Maximum attempts must be at least 1!");
+        }
+        this.maximumAttempts = maximumAttempts;
+    }
+
+    /**
+     * Returns true if idle workers steal copies of slow tasks once the queue is empty.
+     *
+     * @return the boolean
+     */
+    public synchronized boolean isStealingEnabled() {
+        return stealingEnabled;
+    }
+
+    /**
+     * Sets stealing enabled.
+     *
+     * @param stealingEnabled the stealing enabled
+     */
+    public synchronized void setStealingEnabled(boolean stealingEnabled) {
+        this.stealingEnabled = stealingEnabled;
+    }
+
+    /**
+     * Gets the number of tasks that haven't finished yet.
+     *
+     * @return the remaining count
+     */
+    public synchronized int getRemainingCount() {
+        return remainingCount;
+    }
+
+    /**
+     * Gets the names of the workers that have completed tasks.
+     *
+     * @return the worker names
+     */
+    public synchronized Set<String> getWorkerNames() {
+        return Collections.unmodifiableSet(new HashSet<>(workerNames));
+    }
+
+    /**
+     * A task and its progress. This is guarded by the coordinator.
+     */
+    private static final class Task {
+
+        private final int id;
+        private final String parameters;
+        private int attemptCount;
+        private int failureCount;
+        private int runningCount;
+        private long startNanos;
+        private BacktestSummary summary;
+
+        /**
+         * Instantiates a new Task.
+         *
+         * @param id         the id
+         * @param parameters the parameters
+         */
+        private Task(int id, String parameters) {
+            this.id = id;
+            this.parameters = parameters;
+        }
+    }
+
+    /**
+     * An attempt of a task that a worker slot holds.
+     */
+    private static final class Attempt {
+
+        private final Task task;
+        private final int number;
+
+        /**
+         * Instantiates a new Attempt.
+         *
+         * @param task   the task
+         * @param number the number of the attempt (starting at 1)
+         */
+        private Attempt(Task task, int number) {
+            this.task = task;
+            this.number = number;
+        }
+    }
+}
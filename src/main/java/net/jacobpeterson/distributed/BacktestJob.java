@@ -0,0 +1,43 @@
+package net.jacobpeterson.distributed;
+
+import net.jacobpeterson.AlpacaJavaBacktest;
+import net.jacobpeterson.algorithm.TradingAlgorithm;
+
+/**
+ * Creates and configures the backtest of a task of a {@link BacktestCoordinator} on a {@link BacktestWorker}. A task
+ * is a string of parameters, e.g. a point of a parameter grid or a ticker of a universe, so the coordinator only
+ * needs to know how to split the work and the worker only needs to know how to run one piece of it.
+ * <p>
+ * Implementations must have a public no-argument constructor and be on the classpath of every worker, which
+ * instantiates one per job class and uses it from all of its slots at the same time, so they must be thread safe.
+ */
+public interface BacktestJob {
+
+    /**
+     * Creates the trading algorithm of a task.
+     *
+     * @param parameters the parameters of the task
+     *
+     * @return the trading algorithm
+     */
+    TradingAlgorithm createTradingAlgorithm(String parameters);
+
+    /**
+     * Configures the backtest of a task before it is run (e.g. from/to and update types).
+     *
+     * @param alpacaJavaBacktest the alpaca java backtest
+     * @param parameters         the parameters of the task
+     */
+    void configureBacktest(AlpacaJavaBacktest alpacaJavaBacktest, String parameters);
+
+    /**
+     * Scores a finished backtest (higher is better). By default, this is the final account equity.
+     *
+     * @param alpacaJavaBacktest the alpaca java backtest
+     *
+     * @return the score
+     */
+    default double score(AlpacaJavaBacktest alpacaJavaBacktest) {
+        return alpacaJavaBacktest.getBacktestBroker().getLedger().getEquity();
+    }
+}
@@ -0,0 +1,123 @@
+package net.jacobpeterson.distributed;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The summaries of the tasks of a {@link BacktestCoordinator} ranked by score (best first). Failed tasks are ranked
+ * last.
+ */
+public class BacktestSummaries {
+
+    private final ArrayList<BacktestSummary> rankedSummaries;
+    private final long elapsedNanos;
+    private final int workerCount;
+    private final long retryCount;
+    private final long speculativeCount;
+
+    /**
+     * Instantiates a new Backtest summaries.
+     *
+     * @param summaries        the summaries
+     * @param elapsedNanos     the elapsed nanos of all the tasks
+     * @param workerCount      the number of distinct workers that completed tasks
+     * @param retryCount       the number of task attempts that were retried
+     * @param speculativeCount the number of task attempts that were stolen from slow workers
+     */
+    public BacktestSummaries(List<BacktestSummary> summaries, long elapsedNanos, int workerCount, long retryCount,
+            long speculativeCount) {
+        this.rankedSummaries = new ArrayList<>(summaries);
+        this.elapsedNanos = elapsedNanos;
+        this.workerCount = workerCount;
+        this.retryCount = retryCount;
+        this.speculativeCount = speculativeCount;
+
+        this.rankedSummaries.sort(Comparator.comparing(BacktestSummary::isFailed)
+                .thenComparing(Comparator.comparingDouble(BacktestSummary::getScore).reversed()));
+    }
+
+    /**
+     * Gets the best summary.
+     *
+     * @return the best summary (null if there are no summaries)
+     */
+    public BacktestSummary getBest() {
+        return rankedSummaries.isEmpty() ? null : rankedSummaries.get(0);
+    }
+
+    /**
+     * Formats the ranked summaries as a plain text table.
+     *
+     * @return the table
+     */
+    public String toTable() {
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("%-6s %16s %8s %8s %12s %10s %-20s  %s%n", "Rank", "Score", "Sharpe", "Max DD",
+                "Events", "Millis", "Worker", "Parameters"));
+        for (int rank = 0; rank < rankedSummaries.size(); rank++) {
+            BacktestSummary summary = rankedSummaries.get(rank);
+            boolean failed = summary.isFailed();
+            table.append(String.format("%-6d %16s %8s %8s %12d %10d %-20s  %s%n", rank + 1,
+                    failed ? "FAILED" : String.format("%.4f", summary.getScore()),
+                    failed ? "-" : String.format("%.3f", summary.getSharpeRatio()),
+                    failed ? "-" : String.format("%.2f%%", summary.getMaxDrawdown() * 100),
+                    summary.getEventCount(), summary.getElapsedNanos() / 1_000_000, summary.getWorkerName(),
+                    summary.getParameters()));
+        }
+        table.append(String.format("%d backtests on %d workers in %d ms, %d retried, %d stolen%n",
+                rankedSummaries.size(), workerCount, elapsedNanos / 1_000_000, retryCount, speculativeCount));
+        return table.toString();
+    }
+
+    /**
+     * Gets the summaries ranked by score (best first).
+     *
+     * @return the ranked summaries
+     */
+    public List<BacktestSummary> getRankedSummaries() {
+        return Collections.unmodifiableList(rankedSummaries);
+    }
+
+    /**
+     * Gets elapsed nanos.
+     *
+     * @return the elapsed nanos
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Gets worker count.
+     *
+     * @return the worker count
+     */
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Gets retry count.
+     *
+     * @return the retry count
+     */
+    public long getRetryCount() {
+        return retryCount;
+    }
+
+    /**
+     * Gets speculative count.
+     *
+     * @return the speculative count
+     */
+    public long getSpeculativeCount() {
+        return speculativeCount;
+    }
+
+    @Override
+    public String toString() {
+        return toTable();
+    }
+}
@@ -0,0 +1,344 @@
+package net.jacobpeterson.distributed;
+
+import net.jacobpeterson.AlpacaJavaBacktest;
+import net.jacobpeterson.broker.ledger.Ledger;
+import net.jacobpeterson.broker.statistics.PerformanceStatistics;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A compact summary of the backtest of a task of a {@link BacktestCoordinator} that a {@link BacktestWorker} streams
+ * back instead of the whole backtest. If the backtest was recorded, the full {@link
+ * net.jacobpeterson.data.BacktestRecord} can be opened from {@link #getRecordFile()} in the shared {@link
+ * net.jacobpeterson.data.BacktestData} directory.
+ * <p>
+ * This is immutable.
+ */
+public class BacktestSummary {
+
+    private final int taskID;
+    private final String parameters;
+    private final String workerName;
+    private final int attempt;
+    private final double score;
+    private final double finalEquity;
+    private final double finalCash;
+    private final double totalReturn;
+    private final double sharpeRatio;
+    private final double maxDrawdown;
+    private final long fillCount;
+    private final long eventCount;
+    private final long elapsedNanos;
+    private final String recordFile;
+    private final String failure;
+
+    /**
+     * Instantiates a new Backtest summary.
+     *
+     * @param taskID       the task ID
+     * @param parameters   the parameters
+     * @param workerName   the worker name
+     * @param attempt      the attempt (starting at 1)
+     * @param score        the score
+     * @param finalEquity  the final equity
+     * @param finalCash    the final cash
+     * @param totalReturn  the total return
+     * @param sharpeRatio  the sharpe ratio
+     * @param maxDrawdown  the max drawdown
+     * @param fillCount    the fill count
+     * @param eventCount   the event count
+     * @param elapsedNanos the elapsed nanos
+     * @param recordFile   the record file (null if the backtest wasn't recorded)
+     * @param failure      the failure message (null if the backtest succeeded)
+     */
+    public BacktestSummary(int taskID, String parameters, String workerName, int attempt, double score,
+            double finalEquity, double finalCash, double totalReturn, double sharpeRatio, double maxDrawdown,
+            long fillCount, long eventCount, long elapsedNanos, String recordFile, String failure) {
+        this.taskID = taskID;
+        this.parameters = parameters;
+        this.workerName = workerName;
+        this.attempt = attempt;
+        this.score = score;
+        this.finalEquity = finalEquity;
+        this.finalCash = finalCash;
+        this.totalReturn = totalReturn;
+        this.sharpeRatio = sharpeRatio;
+        this.maxDrawdown = maxDrawdown;
+        this.fillCount = fillCount;
+        this.eventCount = eventCount;
+        this.elapsedNanos = elapsedNanos;
+        this.recordFile = recordFile;
+        this.failure = failure;
+    }
+
+    /**
+     * Summarizes a finished backtest.
+     *
+     * @param taskID             the task ID
+     * @param parameters         the parameters
+     * @param workerName         the worker name
+     * @param attempt            the attempt
+     * @param alpacaJavaBacktest the alpaca java backtest
+     * @param score              the score
+     * @param elapsedNanos       the elapsed nanos
+     *
+     * @return the backtest summary
+     */
+    public static BacktestSummary summarize(int taskID, String parameters, String workerName, int attempt,
+            AlpacaJavaBacktest alpacaJavaBacktest, double score, long elapsedNanos) {
+        Ledger ledger = alpacaJavaBacktest.getBacktestBroker().getLedger();
+        PerformanceStatistics performanceStatistics =
+                alpacaJavaBacktest.getBacktestBroker().getPerformanceStatistics();
+        File recordFile = alpacaJavaBacktest.getRecordFile();
+        return new BacktestSummary(taskID, parameters, workerName, attempt, score, ledger.getEquity(),
+                ledger.getCash(), performanceStatistics.getTotalReturn(), performanceStatistics.getSharpeRatio(),
+                performanceStatistics.getMaxDrawdown(), performanceStatistics.getFillCount(),
+                alpacaJavaBacktest.getReplayEngine().getEventCount(), elapsedNanos,
+                recordFile == null ? null : recordFile.getAbsolutePath(), null);
+    }
+
+    /**
+     * Creates the summary of a task that failed on every attempt.
+     *
+     * @param taskID     the task ID
+     * @param parameters the parameters
+     * @param workerName the worker name of the last attempt
+     * @param attempt    the last attempt
+     * @param failure    the failure message of the last attempt
+     *
+     * @return the backtest summary
+     */
+    public static BacktestSummary failed(int taskID, String parameters, String workerName, int attempt,
+            String failure) {
+        return new BacktestSummary(taskID, parameters, workerName, attempt, Double.NaN, Double.NaN, Double.NaN,
+                Double.NaN, Double.NaN, Double.NaN, 0, 0, 0, null, failure);
+    }
+
+    /**
+     * Reads a summary that was written by {@link #write(DataOutput)}.
+     *
+     * @param dataInput the data input
+     *
+     * @return the backtest summary
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public static BacktestSummary read(DataInput dataInput) throws IOException {
+        int taskID = dataInput.readInt();
+        String parameters = dataInput.readUTF();
+        String workerName = dataInput.readUTF();
+        int attempt = dataInput.readInt();
+        double score = dataInput.readDouble();
+        double finalEquity = dataInput.readDouble();
+        double finalCash = dataInput.readDouble();
+        double totalReturn = dataInput.readDouble();
+        double sharpeRatio = dataInput.readDouble();
+        double maxDrawdown = dataInput.readDouble();
+        long fillCount = dataInput.readLong();
+        long eventCount = dataInput.readLong();
+        long elapsedNanos = dataInput.readLong();
+        String recordFile = dataInput.readBoolean() ? dataInput.readUTF() : null;
+        String failure = dataInput.readBoolean() ? dataInput.readUTF() : null;
+        return new BacktestSummary(taskID, parameters, workerName, attempt, score, finalEquity, finalCash,
+                totalReturn, sharpeRatio, maxDrawdown, fillCount, eventCount, elapsedNanos, recordFile, failure);
+    }
+
+    /**
+     * Writes this summary.
+     *
+     * @param dataOutput the data output
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public void write(DataOutput dataOutput) throws IOException {
+        dataOutput.writeInt(taskID);
+        dataOutput.writeUTF(parameters);
+        dataOutput.writeUTF(workerName);
+        dataOutput.writeInt(attempt);
+        dataOutput.writeDouble(score);
+        dataOutput.writeDouble(finalEquity);
+        dataOutput.writeDouble(finalCash);
+        dataOutput.writeDouble(totalReturn);
+        dataOutput.writeDouble(sharpeRatio);
+        dataOutput.writeDouble(maxDrawdown);
+        dataOutput.writeLong(fillCount);
+        dataOutput.writeLong(eventCount);
+        dataOutput.writeLong(elapsedNanos);
+        dataOutput.writeBoolean(recordFile != null);
+        if (recordFile != null) {
+            dataOutput.writeUTF(recordFile);
+        }
+        dataOutput.writeBoolean(failure != null);
+        if (failure != null) {
+            dataOutput.writeUTF(failure);
+        }
+    }
+
+    /**
+     * Gets task ID.
+     *
+     * @return the task ID
+     */
+    public int getTaskID() {
+        return taskID;
+    }
+
+    /**
+     * Gets parameters.
+     *
+     * @return the parameters
+     */
+    public String getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Gets the name of the worker that ran the backtest.
+     *
+     * @return the worker name
+     */
+    public String getWorkerName() {
+        return workerName;
+    }
+
+    /**
+     * Gets attempt.
+     *
+     * @return the attempt (starting at 1)
+     */
+    public int getAttempt() {
+        return attempt;
+    }
+
+    /**
+     * Gets score (higher is better).
+     *
+     * @return the score
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * Gets final equity.
+     *
+     * @return the final equity
+     */
+    public double getFinalEquity() {
+        return finalEquity;
+    }
+
+    /**
+     * Gets final cash.
+     *
+     * @return the final cash
+     */
+    public double getFinalCash() {
+        return finalCash;
+    }
+
+    /**
+     * Gets total return.
+     *
+     * @return the total return
+     */
+    public double getTotalReturn() {
+        return totalReturn;
+    }
+
+    /**
+     * Gets sharpe ratio.
+     *
+     * @return the sharpe ratio
+     */
+    public double getSharpeRatio() {
+        return sharpeRatio;
+    }
+
+    /**
+     * Gets max drawdown.
+     *
+     * @return the max drawdown
+     */
+    public double getMaxDrawdown() {
+        return maxDrawdown;
+    }
+
+    /**
+     * Gets fill count.
+     *
+     * @return the fill count
+     */
+    public long getFillCount() {
+        return fillCount;
+    }
+
+    /**
+     * Gets event count.
+     *
+     * @return the event count
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Gets the elapsed nanos of the backtest on the worker.
+     *
+     * @return the elapsed nanos
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Gets record file.
+     *
+     * @return the record file (null if the backtest wasn't recorded)
+     */
+    public File getRecordFile() {
+        return recordFile == null ? null : new File(recordFile);
+    }
+
+    /**
+     * Gets failure.
+     *
+     * @return the failure message (null if the backtest succeeded)
+     */
+    public String getFailure() {
+        return failure;
+    }
+
+    /**
+     * Returns true if the backtest failed.
+     *
+     * @return the boolean
+     */
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    @Override
+    public String toString() {
+        return "BacktestSummary{" +
+                "taskID=" + taskID +
+                ", parameters='" + parameters + '\'' +
+                ", workerName='" + workerName + '\'' +
+                ", attempt=" + attempt +
+                ", score=" + score +
+                ", finalEquity=" + finalEquity +
+                ", finalCash=" + finalCash +
+                ", totalReturn=" + totalReturn +
+                ", sharpeRatio=" + sharpeRatio +
+                ", maxDrawdown=" + maxDrawdown +
+                ", fillCount=" + fillCount +
+                ", eventCount=" + eventCount +
+                ", elapsedNanos=" + elapsedNanos +
+                ", recordFile='" + recordFile + '\'' +
+                ", failure='" + failure + '\'' +
+                '}';
+    }
+}
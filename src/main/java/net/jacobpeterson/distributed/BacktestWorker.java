@@ -0,0 +1,383 @@
+package net.jacobpeterson.distributed;
+
+import net.jacobpeterson.AlpacaJavaBacktest;
+import net.jacobpeterson.algorithm.TradingAlgorithm;
+import net.jacobpeterson.data.BacktestData;
+import net.jacobpeterson.data.cache.SegmentCache;
+import net.jacobpeterson.data.cache.SegmentLoader;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the tasks of a {@link BacktestCoordinator} in this JVM. Every slot of the worker connects to the coordinator
+ * on its own and pulls one task at a time until the coordinator has no more tasks. All slots share one {@link
+ * BacktestData} whose segments are loaded through a {@link SegmentCache} (as in {@link
+ * net.jacobpeterson.sweep.ParameterSweep}), so workers on different machines only need the data cache directory to be
+ * shared (or copied) and each ticker/day is read and decoded at most once per worker.
+ * <p>
+ * Workers are usually started as separate JVMs with {@link #main(String[])} or {@link #launch(String, int, File,
+ * int)}.
+ */
+public class BacktestWorker {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final long CONNECT_RETRY_MILLIS = 100;
+
+    private final String host;
+    private final int port;
+    private final BacktestData backtestData;
+    private final ConcurrentHashMap<String, BacktestJob> backtestJobs;
+    private final AtomicLong completedCount;
+    private final AtomicLong failedCount;
+    private String name;
+    private int slots;
+    private long connectTimeoutMillis;
+
+    /**
+     * Instantiates a new Backtest worker. By default, it is named after this JVM, has a slot for every available
+     * processor, and waits up to 30 seconds for the coordinator to start listening.
+     *
+     * @param host         the host of the coordinator
+     * @param port         the port of the coordinator
+     * @param backtestData the backtest data
+     */
+    public BacktestWorker(String host, int port, BacktestData backtestData) {
+        this.host = host;
+        this.port = port;
+        this.backtestData = backtestData;
+        this.backtestJobs = new ConcurrentHashMap<>();
+        this.completedCount = new AtomicLong();
+        this.failedCount = new AtomicLong();
+        this.name = ManagementFactory.getRuntimeMXBean().getName();
+        this.slots = Runtime.getRuntime().availableProcessors();
+        this.connectTimeoutMillis = 30_000;
+    }
+
+    /**
+     * Runs a worker until its coordinator has no more tasks.
+     *
+     * @param args the host and port of the coordinator, and optionally the backtest data directory and the number of
+     *             slots
+     *
+     * @throws InterruptedException thrown if interrupted while running tasks
+     */
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 2) {
+            throw new IllegalArgumentException(
+                    "Usage: BacktestWorker <host> <port> [backtest data directory] [slots]");
+        }
+
+        BacktestData backtestData = args.length > 2 ?
+                                    new BacktestData(null, null, new File(args[2])) :
+                                    new BacktestData(null, null);
+        BacktestWorker backtestWorker = new BacktestWorker(args[0], Integer.parseInt(args[1]), backtestData);
+        if (args.length > 3) {
+            backtestWorker.setSlots(Integer.parseInt(args[3]));
+        }
+        backtestWorker.run();
+    }
+
+    /**
+     * Launches a worker in a new JVM with the classpath of this JVM (see {@link #main(String[])}). Its output is
+     * inherited from this process.
+     *
+     * @param host                  the host of the coordinator
+     * @param port                  the port of the coordinator
+     * @param backtestDataDirectory the backtest data directory
+     * @param slots                 the slots
+     *
+     * @return the worker process
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    public static Process launch(String host, int port, File backtestDataDirectory, int slots) throws IOException {
+        File javaFile = new File(new File(System.getProperty("java.home"), "bin"), "java");
+        ArrayList<String> command = new ArrayList<>();
+        command.add(javaFile.getPath());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        String log4jConfigurationFile = System.getProperty("log4j.configurationFile");
+        if (log4jConfigurationFile != null) {
+            command.add("-Dlog4j.configurationFile=" + log4jConfigurationFile);
+        }
+        command.add(BacktestWorker.class.getName());
+        command.add(host);
+        command.add(String.valueOf(port));
+        command.add(backtestDataDirectory.getAbsolutePath());
+        command.add(String.valueOf(slots));
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+    /**
+     * Runs the slots of this worker and blocks until the coordinator has no more tasks (or is unreachable).
+     *
+     * @throws InterruptedException thrown if interrupted while running tasks
+     */
+    public void run() throws InterruptedException {
+        SegmentLoader previousSegmentLoader = backtestData.getSegmentLoader();
+        SegmentCache segmentCache = previousSegmentLoader instanceof SegmentCache ?
+                                    (SegmentCache) previousSegmentLoader :
+                                    new SegmentCache(SegmentCache.getDefaultMaximumBytes(), previousSegmentLoader);
+        backtestData.setSegmentLoader(segmentCache);
+
+        long startNanos = System.nanoTime();
+        ArrayList<Thread> slotThreads = new ArrayList<>(slots);
+        try {
+            for (int slot = 0; slot < slots; slot++) {
+                int slotNumber = slot;
+                Thread slotThread = new Thread(() -> runSlot(slotNumber), "BacktestWorker-" + slot);
+                slotThreads.add(slotThread);
+                slotThread.start();
+            }
+            for (Thread slotThread : slotThreads) {
+                slotThread.join();
+            }
+        } finally {
+            for (Thread slotThread : slotThreads) {
+                slotThread.interrupt();
+            }
+            if (segmentCache != previousSegmentLoader) {
+                backtestData.setSegmentLoader(previousSegmentLoader);
+                segmentCache.clear();
+            }
+        }
+
+        LOGGER.info("Worker {} completed {} tasks ({} failed) on {} slots in {} ms", name, completedCount.get(),
+                failedCount.get(), slots, (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+    /**
+     * Runs the request/response loop of a slot.
+     *
+     * @param slot the slot
+     */
+    private void runSlot(int slot) {
+        try (Socket socket = connect()) {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream dataOutputStream =
+                    new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            dataOutputStream.writeInt(DistributedProtocol.MAGIC);
+            dataOutputStream.writeShort(DistributedProtocol.VERSION);
+            dataOutputStream.writeUTF(name);
+            dataOutputStream.flush();
+            if (dataInputStream.readInt() != DistributedProtocol.MAGIC) {
+                throw new IOException(host + ":" + port + " is not a backtest coordinator");
+            }
+            short version = dataInputStream.readShort();
+            if (version != DistributedProtocol.VERSION) {
+                throw new IOException(host + ":" + port + " has an unsupported version: " + version);
+            }
+
+            while (!Thread.currentThread().isInterrupted()) {
+                dataOutputStream.writeByte(DistributedProtocol.REQUEST);
+                dataOutputStream.flush();
+
+                byte messageType = dataInputStream.readByte();
+                if (messageType == DistributedProtocol.DONE) {
+                    return;
+                } else if (messageType != DistributedProtocol.TASK) {
+                    throw new IOException("The coordinator sent an unknown message type: " + messageType);
+                }
+
+                int taskID = dataInputStream.readInt();
+                int attempt = dataInputStream.readInt();
+                String jobClassName = dataInputStream.readUTF();
+                String parameters = dataInputStream.readUTF();
+                runTask(dataOutputStream, taskID, attempt, jobClassName, parameters);
+            }
+        } catch (IOException exception) {
+            LOGGER.error("Slot {} of worker {} lost its connection to {}:{}", slot, name, host, port, exception);
+        }
+    }
+
+    /**
+     * Connects to the coordinator, retrying until {@link #getConnectTimeoutMillis()} has passed.
+     *
+     * @return the socket
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private Socket connect() throws IOException {
+        long deadlineMillis = System.currentTimeMillis() + connectTimeoutMillis;
+        while (true) {
+            try {
+                return new Socket(host, port);
+            } catch (ConnectException exception) {
+                if (System.currentTimeMillis() >= deadlineMillis) {
+                    throw exception;
+                }
+                try {
+                    Thread.sleep(CONNECT_RETRY_MILLIS);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw exception;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the backtest of a task and sends its summary, or its failure, to the coordinator.
+     *
+     * @param dataOutputStream the data output stream
+     * @param taskID           the task ID
+     * @param attempt          the attempt
+     * @param jobClassName     the job class name
+     * @param parameters       the parameters
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private void runTask(DataOutputStream dataOutputStream, int taskID, int attempt, String jobClassName,
+            String parameters) throws IOException {
+        long startNanos = System.nanoTime();
+        BacktestSummary summary;
+        try {
+            BacktestJob backtestJob = getBacktestJob(jobClassName);
+            TradingAlgorithm tradingAlgorithm = backtestJob.createTradingAlgorithm(parameters);
+            AlpacaJavaBacktest alpacaJavaBacktest = new AlpacaJavaBacktest(backtestData);
+            backtestJob.configureBacktest(alpacaJavaBacktest, parameters);
+            alpacaJavaBacktest.run(tradingAlgorithm);
+
+            summary = BacktestSummary.summarize(taskID, parameters, name, attempt, alpacaJavaBacktest,
+                    backtestJob.score(alpacaJavaBacktest), System.nanoTime() - startNanos);
+        } catch (Exception exception) {
+            LOGGER.error("Task {} with parameters {} failed!", taskID, parameters, exception);
+            failedCount.incrementAndGet();
+
+            String failure = String.valueOf(exception);
+            dataOutputStream.writeByte(DistributedProtocol.FAILURE);
+            dataOutputStream.writeInt(taskID);
+            dataOutputStream.writeUTF(failure.length() > DistributedProtocol.MAXIMUM_MESSAGE_LENGTH ?
+                                      failure.substring(0, DistributedProtocol.MAXIMUM_MESSAGE_LENGTH) :
+                                      failure);
+            dataOutputStream.flush();
+            return;
+        }
+
+        completedCount.incrementAndGet();
+        dataOutputStream.writeByte(DistributedProtocol.RESULT);
+        summary.write(dataOutputStream);
+        dataOutputStream.flush();
+    }
+
+    /**
+     * Gets the {@link BacktestJob} instance of a class, instantiating it the first time.
+     *
+     * @param jobClassName the job class name
+     *
+     * @return the backtest job
+     */
+    private BacktestJob getBacktestJob(String jobClassName) {
+        return backtestJobs.computeIfAbsent(jobClassName, className -> {
+            try {
+                Class<?> jobClass = Class.forName(className);
+                if (!BacktestJob.class.isAssignableFrom(jobClass)) {
+                    throw new IllegalArgumentException(className + " is not a " + BacktestJob.class.getName());
+                }
+                return (BacktestJob) jobClass.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException exception) {
+                throw new IllegalArgumentException("Could not instantiate " + className, exception);
+            }
+        });
+    }
+
+    /**
+     * Gets backtest data.
+     *
+     * @return the backtest data
+     */
+    public BacktestData getBacktestData() {
+        return backtestData;
+    }
+
+    /**
+     * Gets name.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Sets the name that the coordinator knows this worker by.
+     *
+     * @param name the name
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets slots.
+     *
+     * @return the slots
+     */
+    public int getSlots() {
+        return slots;
+    }
+
+    /**
+     * Sets the number of tasks that run at the same time.
+     *
+     * @param slots the slots
+     */
+    public void setSlots(int slots) {
+        if (slots < 1) {
+            throw new IllegalArgumentException("Slots must be at least 1!");
+        }
+        this.slots = slots;
+    }
+
+    /**
+     * Gets connect timeout millis.
+     *
+     * @return the connect timeout millis
+     */
+    public long getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    /**
+     * Sets how long to keep retrying to connect to the coordinator.
+     *
+     * @param connectTimeoutMillis the connect timeout millis
+     */
+    public void setConnectTimeoutMillis(long connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    /**
+     * Gets the number of tasks that this worker completed.
+     *
+     * @return the completed count
+     */
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    /**
+     * Gets the number of tasks that failed on this worker.
+     *
+     * @return the failed count
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+}
@@ -0,0 +1,48 @@
+package net.jacobpeterson.distributed;
+
+/**
+ * Constants that define the socket protocol spoken between a {@link BacktestCoordinator} and the slots of a {@link
+ * BacktestWorker}. All values are big-endian and strings are modified UTF-8, as written by {@link
+ * java.io.DataOutput}. Each slot of a worker opens its own connection and runs at most one task at a time, so the
+ * protocol is a simple request/response loop:
+ * <pre>
+ * Handshake
+ *   worker      int magic ('AJBD'), short version, string worker name
+ *   coordinator int magic ('AJBD'), short version
+ * Loop
+ *   worker      byte REQUEST
+ *   coordinator byte TASK, int task ID, int attempt, string job class, string parameters
+ *               or byte DONE (the connection is then closed)
+ *   worker      byte RESULT, summary (see {@link BacktestSummary#write(java.io.DataOutput)})
+ *               or byte FAILURE, int task ID, string message
+ * </pre>
+ * A connection that is closed while it holds a task fails that task, so it is retried on another slot.
+ */
+public final class DistributedProtocol {
+
+    /** The constant MAGIC. */
+    public static final int MAGIC = 0x414A4244;
+
+    /** The constant VERSION. */
+    public static final short VERSION = 1;
+
+    /** The constant REQUEST. */
+    public static final byte REQUEST = 1;
+
+    /** The constant RESULT. */
+    public static final byte RESULT = 2;
+
+    /** The constant FAILURE. */
+    public static final byte FAILURE = 3;
+
+    /** The constant TASK. */
+    public static final byte TASK = 4;
+
+    /** The constant DONE. */
+    public static final byte DONE = 5;
+
+    /** The maximum length of a failure message (a modified UTF-8 string is at most 65535 bytes). */
+    public static final int MAXIMUM_MESSAGE_LENGTH = 16_384;
+
+    private DistributedProtocol() {}
+}
@@ -0,0 +1,80 @@
+package net.jacobpeterson.engine;
+
+import net.jacobpeterson.algorithm.TradingAlgorithm;
+import net.jacobpeterson.algorithm.update.ticker.AggregateUpdateType;
+import net.jacobpeterson.broker.order.OrderBook;
+import net.jacobpeterson.data.cursor.AggregateCursor;
+import net.jacobpeterson.data.iterators.AggregateIterator;
+import net.jacobpeterson.indicator.IndicatorGroup;
+import net.jacobpeterson.metrics.MetricType;
+import net.jacobpeterson.metrics.Metrics;
+import net.jacobpeterson.util.TimeUtil;
+
+/**
+ * An {@link EventSource} of aggregates. Aggregates are timestamped by Polygon at the start of their time frame, but
+ * they are dispatched at the close of their time frame so that an algorithm never sees an aggregate before it would
+ * have been complete in a live market. The {@link IndicatorGroup} of the ticker and aggregate update type and the
+ * {@link OrderBook} of the ticker are updated before the algorithm is called.
+ */
+public class AggregateEventSource extends SegmentEventSource<AggregateCursor> {
+
+    private final AggregateUpdateType aggregateUpdateType;
+    private TradingAlgorithm indicatorGroupTradingAlgorithm;
+    private IndicatorGroup indicatorGroup;
+
+    /**
+     * Instantiates a new Aggregate event source.
+     *
+     * @param aggregateIterator the aggregate iterator
+     * @param fromTimestamp     the from timestamp (epoch nanoseconds, inclusive)
+     * @param toTimestamp       the to timestamp (epoch nanoseconds, exclusive)
+     */
+    public AggregateEventSource(AggregateIterator aggregateIterator, long fromTimestamp, long toTimestamp) {
+        super(aggregateIterator.getTicker(), aggregateIterator, fromTimestamp, toTimestamp);
+
+        this.aggregateUpdateType = aggregateIterator.getAggregateUpdateType();
+    }
+
+    @Override
+    protected long getEventTimestamp(AggregateCursor cursor) {
+        return TimeUtil.getAggregateCloseTimestamp(aggregateUpdateType, cursor.getTimestamp());
+    }
+
+    @Override
+    public void dispatch(TradingAlgorithm tradingAlgorithm) {
+        if (tradingAlgorithm != indicatorGroupTradingAlgorithm) {
+            indicatorGroup = tradingAlgorithm.getIndicators().getIndicatorGroup(ticker, aggregateUpdateType);
+            indicatorGroupTradingAlgorithm = tradingAlgorithm;
+        }
+        Metrics metrics = this.metrics;
+        long nanos = dispatchNanos;
+
+        indicatorGroup.update(cursor);
+        if (metrics != null) {
+            nanos = metrics.lap(MetricType.INDICATOR_UPDATE, nanos);
+        }
+
+        OrderBook orderBook = getOrderBook(tradingAlgorithm);
+        if (orderBook != null) {
+            orderBook.onBar(aggregateUpdateType, getTimestamp(), cursor.getOpen(), cursor.getHigh(), cursor.getLow(),
+                    cursor.getClose());
+            if (metrics != null) {
+                nanos = metrics.lap(MetricType.BROKER_MATCH, nanos);
+            }
+        }
+
+        tradingAlgorithm.onAggregateUpdate(ticker, aggregateUpdateType, cursor);
+        if (metrics != null) {
+            dispatchNanos = metrics.lap(MetricType.AGGREGATE_CALLBACK, nanos);
+        }
+    }
+
+    /**
+     * Gets aggregate update type.
+     *
+     * @return the aggregate update type
+     */
+    public AggregateUpdateType getAggregateUpdateType() {
+        return aggregateUpdateType;
+    }
+}
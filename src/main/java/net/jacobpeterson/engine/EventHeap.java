@@ -0,0 +1,176 @@
+package net.jacobpeterson.engine;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A binary min-heap of <code>int</code> event source IDs keyed by <code>long</code> timestamps. Ties are broken by the
+ * source ID so the order of simultaneous events is deterministic. Nothing is boxed or allocated after the heap has grown
+ * to its final size.
+ * <p>
+ * This is not thread safe.
+ */
+public class EventHeap {
+
+    private long[] timestamps;
+    private int[] sourceIDs;
+    private int size;
+
+    /**
+     * Instantiates a new Event heap.
+     *
+     * @param initialCapacity the initial capacity
+     */
+    public EventHeap(int initialCapacity) {
+        this.timestamps = new long[Math.max(1, initialCapacity)];
+        this.sourceIDs = new int[Math.max(1, initialCapacity)];
+        this.size = 0;
+    }
+
+    /**
+     * Adds a source.
+     *
+     * @param sourceID  the source id
+     * @param timestamp the timestamp
+     */
+    public void add(int sourceID, long timestamp) {
+        if (size == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+            sourceIDs = Arrays.copyOf(sourceIDs, size * 2);
+        }
+
+        int index = size++;
+        // Sift up
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!isLess(timestamp, sourceID, timestamps[parent], sourceIDs[parent])) {
+                break;
+            }
+            timestamps[index] = timestamps[parent];
+            sourceIDs[index] = sourceIDs[parent];
+            index = parent;
+        }
+        timestamps[index] = timestamp;
+        sourceIDs[index] = sourceID;
+    }
+
+    /**
+     * Gets the source ID with the earliest timestamp.
+     *
+     * @return the source id
+     */
+    public int peekSourceID() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return sourceIDs[0];
+    }
+
+    /**
+     * Gets the earliest timestamp.
+     *
+     * @return the timestamp
+     */
+    public long peekTimestamp() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return timestamps[0];
+    }
+
+    /**
+     * Replaces the timestamp of the top source (e.g. after the source advanced to its next event) and restores the heap
+     * order. This is cheaper than a poll followed by an add.
+     *
+     * @param timestamp the new timestamp
+     */
+    public void updateTop(long timestamp) {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        siftDown(0, timestamp, sourceIDs[0]);
+    }
+
+    /**
+     * Removes the top source.
+     *
+     * @return the removed source id
+     */
+    public int poll() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+
+        int sourceID = sourceIDs[0];
+        size--;
+        if (size > 0) {
+            siftDown(0, timestamps[size], sourceIDs[size]);
+        }
+        return sourceID;
+    }
+
+    /**
+     * Sifts an entry down from an index.
+     *
+     * @param index     the index
+     * @param timestamp the timestamp
+     * @param sourceID  the source id
+     */
+    private void siftDown(int index, long timestamp, int sourceID) {
+        int half = size >>> 1;
+        while (index < half) {
+            int child = (index << 1) + 1;
+            int right = child + 1;
+            if (right < size && isLess(timestamps[right], sourceIDs[right], timestamps[child], sourceIDs[child])) {
+                child = right;
+            }
+            if (!isLess(timestamps[child], sourceIDs[child], timestamp, sourceID)) {
+                break;
+            }
+            timestamps[index] = timestamps[child];
+            sourceIDs[index] = sourceIDs[child];
+            index = child;
+        }
+        timestamps[index] = timestamp;
+        sourceIDs[index] = sourceID;
+    }
+
+    /**
+     * Compares two entries.
+     *
+     * @param timestamp      the timestamp
+     * @param sourceID       the source id
+     * @param otherTimestamp the other timestamp
+     * @param otherSourceID  the other source id
+     *
+     * @return true if the first entry is ordered before the other entry
+     */
+    private static boolean isLess(long timestamp, int sourceID, long otherTimestamp, int otherSourceID) {
+        return timestamp < otherTimestamp || (timestamp == otherTimestamp && sourceID < otherSourceID);
+    }
+
+    /**
+     * Returns true if this heap is empty.
+     *
+     * @return the boolean
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets size.
+     *
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all sources.
+     */
+    public void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,58 @@
+package net.jacobpeterson.engine;
+
+import net.jacobpeterson.algorithm.TradingAlgorithm;
+import net.jacobpeterson.metrics.Metrics;
+
+/**
+ * A time-ordered stream of events that is merged with other event sources by the {@link ReplayEngine}.
+ */
+public abstract class EventSource {
+
+    protected Metrics metrics;
+    protected long dispatchNanos;
+
+    /**
+     * Moves to the next event of this source. This is called once before the first event is read.
+     *
+     * @return true if there is a current event, false if this source is exhausted
+     */
+    public abstract boolean advance();
+
+    /**
+     * Gets the timestamp (epoch nanoseconds) of the current event.
+     *
+     * @return the timestamp
+     */
+    public abstract long getTimestamp();
+
+    /**
+     * Dispatches the current event to the {@link TradingAlgorithm}.
+     * <p>
+     * If {@link #getMetrics()} isn't null, <code>dispatchNanos</code> is the {@link System#nanoTime()} at which this
+     * dispatch started and this must set it to the {@link System#nanoTime()} at which it ended (usually the return
+     * value of the last {@link Metrics#lap(net.jacobpeterson.metrics.MetricType, long)}) so that the latencies of the
+     * {@link ReplayEngine} and its sources are measured with a single clock read at each boundary.
+     *
+     * @param tradingAlgorithm the trading algorithm
+     */
+    public abstract void dispatch(TradingAlgorithm tradingAlgorithm);
+
+    /**
+     * Gets metrics.
+     *
+     * @return the metrics (null if dispatching isn't instrumented)
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics that {@link #dispatch(TradingAlgorithm)} records its broker matching and callback latencies to.
+     * This is set by the {@link ReplayEngine} before it runs.
+     *
+     * @param metrics the metrics (null to not instrument dispatching)
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+}
@@ -0,0 +1,176 @@
+package net.jacobpeterson.engine;
+
+import net.jacobpeterson.algorithm.TradingAlgorithm;
+import net.jacobpeterson.algorithm.update.other.MarketEventUpdateType;
+import net.jacobpeterson.data.calendar.MarketCalendar;
+import net.jacobpeterson.metrics.MetricType;
+import net.jacobpeterson.metrics.Metrics;
+import net.jacobpeterson.util.TimeUtil;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.EnumSet;
+
+/**
+ * An {@link EventSource} of {@link MarketEventUpdateType}s. Sessions are generated for every trading day of a {@link
+ * MarketCalendar} with its open and close times (pre-market 04:00 to the open, market from the open to the close, and
+ * after-hours from the close to 20:00 New York time), so holidays have no sessions and early closes close early. If
+ * there is no market calendar, sessions are generated for every weekday with the regular US equity market hours
+ * (market 09:30 to 16:00).
+ */
+public class MarketEventSource extends EventSource {
+
+    private static final MarketEventUpdateType[] SESSION_EVENT_ORDER = {
+            MarketEventUpdateType.MARKET_PRE_OPEN,
+            MarketEventUpdateType.MARKET_PRE_CLOSE,
+            MarketEventUpdateType.MARKET_OPEN,
+            MarketEventUpdateType.MARKET_CLOSE,
+            MarketEventUpdateType.MARKET_AFTER_OPEN,
+            MarketEventUpdateType.MARKET_AFTER_CLOSE};
+    private static final MarketEventUpdateType[] MARKET_EVENT_UPDATE_TYPES = MarketEventUpdateType.values();
+
+    private long[] timestamps;
+    private int[] marketEventUpdateTypeOrdinals;
+    private int eventCount;
+    private int eventIndex;
+
+    /**
+     * Instantiates a new Market event source.
+     *
+     * @param marketEventUpdateTypes the market event update types to dispatch
+     * @param fromTimestamp          the from timestamp (epoch nanoseconds, inclusive)
+     * @param toTimestamp            the to timestamp (epoch nanoseconds, exclusive)
+     */
+    public MarketEventSource(EnumSet<MarketEventUpdateType> marketEventUpdateTypes, long fromTimestamp,
+            long toTimestamp) {
+        this(marketEventUpdateTypes, fromTimestamp, toTimestamp, null);
+    }
+
+    /**
+     * Instantiates a new Market event source.
+     *
+     * @param marketEventUpdateTypes the market event update types to dispatch
+     * @param fromTimestamp          the from timestamp (epoch nanoseconds, inclusive)
+     * @param toTimestamp            the to timestamp (epoch nanoseconds, exclusive)
+     * @param marketCalendar         the market calendar that covers the time range (null for every weekday)
+     */
+    public MarketEventSource(EnumSet<MarketEventUpdateType> marketEventUpdateTypes, long fromTimestamp,
+            long toTimestamp, MarketCalendar marketCalendar) {
+        this.timestamps = new long[64];
+        this.marketEventUpdateTypeOrdinals = new int[64];
+        this.eventCount = 0;
+        this.eventIndex = -1;
+
+        LocalDate date = TimeUtil.toNewYorkDate(fromTimestamp);
+        LocalDate toDate = TimeUtil.toNewYorkDate(toTimestamp);
+        for (; !date.isAfter(toDate); date = date.plusDays(1)) {
+            LocalTime openTime;
+            LocalTime closeTime;
+            if (marketCalendar != null) {
+                openTime = marketCalendar.getOpenTime(date);
+                closeTime = marketCalendar.getCloseTime(date);
+                if (openTime == null) {
+                    continue;
+                }
+            } else if (date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY) {
+                continue;
+            } else {
+                openTime = TimeUtil.MARKET_OPEN_TIME;
+                closeTime = TimeUtil.MARKET_CLOSE_TIME;
+            }
+
+            for (MarketEventUpdateType marketEventUpdateType : SESSION_EVENT_ORDER) {
+                if (!marketEventUpdateTypes.contains(marketEventUpdateType)) {
+                    continue;
+                }
+
+                long timestamp = TimeUtil.toEpochNanos(date, getSessionTime(marketEventUpdateType, openTime,
+                        closeTime));
+                if (timestamp >= fromTimestamp && timestamp < toTimestamp) {
+                    addEvent(timestamp, marketEventUpdateType);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the New York time of a market event on a regular trading day.
+     *
+     * @param marketEventUpdateType the market event update type
+     *
+     * @return the session time
+     */
+    public static LocalTime getSessionTime(MarketEventUpdateType marketEventUpdateType) {
+        return getSessionTime(marketEventUpdateType, TimeUtil.MARKET_OPEN_TIME, TimeUtil.MARKET_CLOSE_TIME);
+    }
+
+    /**
+     * Gets the New York time of a market event on a trading day with the given open and close times.
+     *
+     * @param marketEventUpdateType the market event update type
+     * @param openTime              the open time of the trading day
+     * @param closeTime             the close time of the trading day
+     *
+     * @return the session time
+     */
+    public static LocalTime getSessionTime(MarketEventUpdateType marketEventUpdateType, LocalTime openTime,
+            LocalTime closeTime) {
+        switch (marketEventUpdateType) {
+            case MARKET_PRE_OPEN:
+                return TimeUtil.PRE_MARKET_OPEN_TIME;
+            case MARKET_PRE_CLOSE:
+            case MARKET_OPEN:
+                return openTime;
+            case MARKET_CLOSE:
+            case MARKET_AFTER_OPEN:
+                return closeTime;
+            case MARKET_AFTER_CLOSE:
+                return TimeUtil.AFTER_HOURS_CLOSE_TIME;
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Adds an event.
+     *
+     * @param timestamp             the timestamp
+     * @param marketEventUpdateType the market event update type
+     */
+    private void addEvent(long timestamp, MarketEventUpdateType marketEventUpdateType) {
+        if (eventCount == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, eventCount * 2);
+            marketEventUpdateTypeOrdinals = Arrays.copyOf(marketEventUpdateTypeOrdinals, eventCount * 2);
+        }
+        timestamps[eventCount] = timestamp;
+        marketEventUpdateTypeOrdinals[eventCount] = marketEventUpdateType.ordinal();
+        eventCount++;
+    }
+
+    @Override
+    public boolean advance() {
+        if (eventIndex + 1 >= eventCount) {
+            return false;
+        }
+        eventIndex++;
+        return true;
+    }
+
+    @Override
+    public long getTimestamp() {
+        return timestamps[eventIndex];
+    }
+
+    @Override
+    public void dispatch(TradingAlgorithm tradingAlgorithm) {
+        Metrics metrics = this.metrics;
+        long nanos = dispatchNanos;
+
+        tradingAlgorithm.onMarketEventUpdate(MARKET_EVENT_UPDATE_TYPES[marketEventUpdateTypeOrdinals[eventIndex]]);
+        if (metrics != null) {
+            dispatchNanos = metrics.lap(MetricType.MARKET_EVENT_CALLBACK, nanos);
+        }
+    }
+}
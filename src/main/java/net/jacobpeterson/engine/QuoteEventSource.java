@@ -0,0 +1,45 @@
+package net.jacobpeterson.engine;
+
+import net.jacobpeterson.algorithm.TradingAlgorithm;
+import net.jacobpeterson.broker.order.OrderBook;
+import net.jacobpeterson.data.cursor.QuoteCursor;
+import net.jacobpeterson.data.iterators.QuoteIterator;
+import net.jacobpeterson.metrics.MetricType;
+import net.jacobpeterson.metrics.Metrics;
+
+/**
+ * An {@link EventSource} of quotes. Each quote is matched against the resting orders of the ticker before it is
+ * dispatched to the algorithm.
+ */
+public class QuoteEventSource extends SegmentEventSource<QuoteCursor> {
+
+    /**
+     * Instantiates a new Quote event source.
+     *
+     * @param quoteIterator the quote iterator
+     * @param fromTimestamp the from timestamp (epoch nanoseconds, inclusive)
+     * @param toTimestamp   the to timestamp (epoch nanoseconds, exclusive)
+     */
+    public QuoteEventSource(QuoteIterator quoteIterator, long fromTimestamp, long toTimestamp) {
+        super(quoteIterator.getTicker(), quoteIterator, fromTimestamp, toTimestamp);
+    }
+
+    @Override
+    public void dispatch(TradingAlgorithm tradingAlgorithm) {
+        Metrics metrics = this.metrics;
+        long nanos = dispatchNanos;
+
+        OrderBook orderBook = getOrderBook(tradingAlgorithm);
+        if (orderBook != null) {
+            orderBook.onQuote(getTimestamp(), cursor.getBidPrice(), cursor.getAskPrice());
+            if (metrics != null) {
+                nanos = metrics.lap(MetricType.BROKER_MATCH, nanos);
+            }
+        }
+
+        tradingAlgorithm.onQuoteUpdate(ticker, cursor);
+        if (metrics != null) {
+            dispatchNanos = metrics.lap(MetricType.QUOTE_CALLBACK, nanos);
+        }
+    }
+}
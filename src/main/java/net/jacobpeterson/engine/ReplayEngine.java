@@ -0,0 +1,370 @@
+package net.jacobpeterson.engine;
+
+import net.jacobpeterson.algorithm.TradingAlgorithm;
+import net.jacobpeterson.algorithm.update.OtherUpdateType;
+import net.jacobpeterson.algorithm.update.TickerUpdateType;
+import net.jacobpeterson.algorithm.update.other.MarketEventUpdateType;
+import net.jacobpeterson.algorithm.update.ticker.AggregateUpdateType;
+import net.jacobpeterson.algorithm.update.ticker.PriceUpdateType;
+import net.jacobpeterson.data.BacktestData;
+import net.jacobpeterson.data.calendar.MarketCalendar;
+import net.jacobpeterson.data.iterators.AggregateIterator;
+import net.jacobpeterson.data.iterators.QuoteIterator;
+import net.jacobpeterson.data.iterators.SegmentIterator;
+import net.jacobpeterson.data.iterators.SynthesizedAggregateIterator;
+import net.jacobpeterson.data.iterators.TradeIterator;
+import net.jacobpeterson.metrics.MetricCounter;
+import net.jacobpeterson.metrics.MetricType;
+import net.jacobpeterson.metrics.Metrics;
+import net.jacobpeterson.util.TimeUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The replay engine performs a k-way merge of any number of {@link EventSource}s into a single timestamp-ordered
+ * stream of events and dispatches them to a {@link TradingAlgorithm}. The merge uses an {@link EventHeap} so each event
+ * costs <code>O(log k)</code> for <code>k</code> sources without any boxing or allocation by the engine itself.
+ */
+public class ReplayEngine {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final ArrayList<EventSource> eventSources;
+    private Metrics metrics;
+    private long toTimestamp;
+    private volatile boolean halted;
+    private long eventCount;
+    private long timerCount;
+    private long elapsedNanos;
+    private long stallNanos;
+
+    /**
+     * Instantiates a new Replay engine.
+     */
+    public ReplayEngine() {
+        this.eventSources = new ArrayList<>();
+        this.toTimestamp = Long.MAX_VALUE;
+        this.halted = false;
+    }
+
+    /**
+     * Creates a replay engine with event sources for the given update types over a time range with aggregate
+     * synthesis enabled. See {@link #create(BacktestData, Map, Collection, ZonedDateTime, ZonedDateTime, boolean)}.
+     *
+     * @param backtestData      the backtest data
+     * @param tickerUpdateTypes the ticker update types of each ticker
+     * @param otherUpdateTypes  the other update types
+     * @param from              the from (inclusive)
+     * @param to                the to (exclusive)
+     *
+     * @return the replay engine
+     */
+    public static ReplayEngine create(BacktestData backtestData, Map<String, TickerUpdateType[]> tickerUpdateTypes,
+            Collection<OtherUpdateType> otherUpdateTypes, ZonedDateTime from, ZonedDateTime to) {
+        return create(backtestData, tickerUpdateTypes, otherUpdateTypes, from, to, true);
+    }
+
+    /**
+     * Creates a replay engine with event sources for the given update types over a time range. Simultaneous events are
+     * dispatched in this order: market events, then quotes, trades, and aggregates (smallest first) of each ticker in
+     * alphabetical order. Only the rows of the cached segment files within the time range are read (see {@link
+     * SegmentIterator}), so a time range that covers part of a day doesn't read whole days of trades or quotes. Market
+     * events follow the {@link MarketCalendar} of the backtest data if it's available (see {@link MarketEventSource}).
+     * <p>
+     * If <code>synthesizeAggregates</code> is true, only the smallest {@link AggregateUpdateType} of each ticker (by
+     * {@link AggregateUpdateType#getSizeRanking()}) is fetched and the larger ones are built from it with {@link
+     * SynthesizedAggregateIterator}s (as long as the smallest is at most {@link AggregateUpdateType#DAY}).
+     *
+     * @param backtestData         the backtest data
+     * @param tickerUpdateTypes    the ticker update types of each ticker
+     * @param otherUpdateTypes     the other update types
+     * @param from                 the from (inclusive)
+     * @param to                   the to (exclusive)
+     * @param synthesizeAggregates true to build larger aggregates from the smallest aggregate of each ticker
+     *
+     * @return the replay engine
+     */
+    public static ReplayEngine create(BacktestData backtestData, Map<String, TickerUpdateType[]> tickerUpdateTypes,
+            Collection<OtherUpdateType> otherUpdateTypes, ZonedDateTime from, ZonedDateTime to,
+            boolean synthesizeAggregates) {
+        ReplayEngine replayEngine = new ReplayEngine();
+
+        long fromTimestamp = TimeUtil.toEpochNanos(from);
+        long toTimestamp = TimeUtil.toEpochNanos(to);
+        replayEngine.setToTimestamp(toTimestamp);
+
+        EnumSet<MarketEventUpdateType> marketEventUpdateTypes = EnumSet.noneOf(MarketEventUpdateType.class);
+        for (OtherUpdateType otherUpdateType : otherUpdateTypes) {
+            if (otherUpdateType instanceof MarketEventUpdateType) {
+                marketEventUpdateTypes.add((MarketEventUpdateType) otherUpdateType);
+            }
+        }
+        if (!marketEventUpdateTypes.isEmpty()) {
+            MarketCalendar marketCalendar = backtestData.findMarketCalendar(TimeUtil.toNewYorkDate(fromTimestamp),
+                    TimeUtil.toNewYorkDate(toTimestamp).plusDays(1));
+            replayEngine.addEventSource(new MarketEventSource(marketEventUpdateTypes, fromTimestamp, toTimestamp,
+                    marketCalendar));
+        }
+
+        for (Map.Entry<String, TickerUpdateType[]> tickerEntry : new TreeMap<>(tickerUpdateTypes).entrySet()) {
+            String ticker = tickerEntry.getKey();
+            TickerUpdateType[] updateTypes = tickerEntry.getValue();
+
+            if (Arrays.asList(updateTypes).contains(PriceUpdateType.QUOTE)) {
+                replayEngine.addEventSource(new QuoteEventSource(
+                        new QuoteIterator(backtestData, ticker, from, to), fromTimestamp, toTimestamp));
+            }
+            if (Arrays.asList(updateTypes).contains(PriceUpdateType.TRADE)) {
+                replayEngine.addEventSource(new TradeEventSource(
+                        new TradeIterator(backtestData, ticker, from, to), fromTimestamp, toTimestamp));
+            }
+
+            AggregateUpdateType[] aggregateUpdateTypes = Arrays.stream(updateTypes)
+                    .filter(updateType -> updateType instanceof AggregateUpdateType)
+                    .map(updateType -> (AggregateUpdateType) updateType)
+                    .distinct()
+                    .sorted(Comparator.comparingInt(AggregateUpdateType::getSizeRanking))
+                    .toArray(AggregateUpdateType[]::new);
+            for (AggregateUpdateType aggregateUpdateType : aggregateUpdateTypes) {
+                AggregateUpdateType baseAggregateUpdateType = aggregateUpdateTypes[0];
+                // Aggregates are dispatched at their close, so start from the aggregate that closes after the from
+                ZonedDateTime aggregateFrom = TimeUtil.toNewYorkDateTime(
+                        TimeUtil.getAggregateStartTimestamp(aggregateUpdateType, fromTimestamp - 1));
+                AggregateIterator aggregateIterator = synthesizeAggregates &&
+                        SynthesizedAggregateIterator.canSynthesize(aggregateUpdateType, baseAggregateUpdateType) ?
+                        new SynthesizedAggregateIterator(backtestData, ticker, aggregateUpdateType,
+                                baseAggregateUpdateType, aggregateFrom, to) :
+                        new AggregateIterator(backtestData, ticker, aggregateUpdateType, aggregateFrom, to);
+                replayEngine.addEventSource(new AggregateEventSource(aggregateIterator, fromTimestamp, toTimestamp));
+            }
+        }
+
+        return replayEngine;
+    }
+
+    /**
+     * Adds an event source. Sources that are added first win timestamp ties.
+     *
+     * @param eventSource the event source
+     */
+    public void addEventSource(EventSource eventSource) {
+        eventSources.add(eventSource);
+    }
+
+    /**
+     * Runs the replay until all event sources are exhausted or {@link #halt()} is called. If {@link #getMetrics()} is
+     * enabled, the event sources record their dispatch latencies to it and the time spent advancing a source and
+     * merging its next event is recorded as {@link MetricType#EVENT_MERGE}.
+     * <p>
+     * The {@link TimerWheel} of the trading algorithm is advanced to the timestamp of each event before it's
+     * dispatched, so timers fire before the events that are after their deadline (and after the events at their
+     * deadline). Once the event sources are exhausted, the timers before {@link #getToTimestamp()} fire, so an
+     * algorithm that only needs a clock doesn't need to subscribe to any data.
+     *
+     * @param tradingAlgorithm the trading algorithm
+     *
+     * @return the number of events dispatched
+     */
+    public long run(TradingAlgorithm tradingAlgorithm) {
+        EventSource[] sources = eventSources.toArray(new EventSource[0]);
+        EventHeap eventHeap = new EventHeap(sources.length);
+        TimerWheel timerWheel = tradingAlgorithm.getTimerWheel();
+        Metrics runMetrics = metrics != null && metrics.isEnabled() ? metrics : null;
+        for (EventSource source : sources) {
+            source.setMetrics(runMetrics);
+        }
+        timerWheel.setMetrics(runMetrics);
+        long firedCount = timerWheel.getFiredCount();
+
+        long startNanos = System.nanoTime();
+        for (int sourceID = 0; sourceID < sources.length; sourceID++) {
+            if (sources[sourceID].advance()) {
+                eventHeap.add(sourceID, sources[sourceID].getTimestamp());
+            }
+        }
+
+        long dispatchedCount = 0;
+        if (runMetrics == null) {
+            while (!eventHeap.isEmpty()) {
+                timerWheel.advance(eventHeap.peekTimestamp(), tradingAlgorithm);
+                if (halted) {
+                    break;
+                }
+
+                EventSource eventSource = sources[eventHeap.peekSourceID()];
+                eventSource.dispatch(tradingAlgorithm);
+                dispatchedCount++;
+
+                if (eventSource.advance()) {
+                    eventHeap.updateTop(eventSource.getTimestamp());
+                } else {
+                    eventHeap.poll();
+                }
+            }
+            if (!halted && toTimestamp != Long.MAX_VALUE) {
+                timerWheel.advance(toTimestamp, tradingAlgorithm);
+            }
+        } else {
+            long nanos = System.nanoTime();
+            while (!eventHeap.isEmpty()) {
+                timerWheel.dispatchNanos = nanos;
+                timerWheel.advance(eventHeap.peekTimestamp(), tradingAlgorithm);
+                if (halted) {
+                    break;
+                }
+
+                EventSource eventSource = sources[eventHeap.peekSourceID()];
+                eventSource.dispatchNanos = timerWheel.dispatchNanos;
+                eventSource.dispatch(tradingAlgorithm);
+                dispatchedCount++;
+
+                if (eventSource.advance()) {
+                    eventHeap.updateTop(eventSource.getTimestamp());
+                } else {
+                    eventHeap.poll();
+                }
+                nanos = runMetrics.lap(MetricType.EVENT_MERGE, eventSource.dispatchNanos);
+            }
+            if (!halted && toTimestamp != Long.MAX_VALUE) {
+                timerWheel.dispatchNanos = nanos;
+                timerWheel.advance(toTimestamp, tradingAlgorithm);
+            }
+            runMetrics.add(MetricCounter.EVENTS, dispatchedCount);
+            runMetrics.add(MetricCounter.TIMERS, timerWheel.getFiredCount() - firedCount);
+        }
+
+        eventCount = dispatchedCount;
+        elapsedNanos = System.nanoTime() - startNanos;
+        stallNanos = 0;
+        for (EventSource source : sources) {
+            if (source instanceof SegmentEventSource) {
+                stallNanos += ((SegmentEventSource<?>) source).getSegmentIterator().getStallNanos();
+            }
+        }
+        timerCount = timerWheel.getFiredCount() - firedCount;
+        LOGGER.info("Replayed {} events from {} sources and fired {} timers in {} ms ({} events/s), stalled on " +
+                        "data for {} ms ({}%)", eventCount, sources.length, timerCount, elapsedNanos / 1_000_000,
+                String.format("%,.0f", getEventsPerSecond()), stallNanos / 1_000_000,
+                String.format("%.1f", getStallRatio() * 100));
+
+        return eventCount;
+    }
+
+    /**
+     * Gets metrics.
+     *
+     * @return the metrics (null if runs aren't instrumented)
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics that runs are recorded to while they are enabled.
+     *
+     * @param metrics the metrics (null to not instrument runs)
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Gets the to timestamp.
+     *
+     * @return the to timestamp (epoch nanoseconds, exclusive)
+     */
+    public long getToTimestamp() {
+        return toTimestamp;
+    }
+
+    /**
+     * Sets the timestamp that the {@link TimerWheel} of the trading algorithm is advanced to once the event sources are
+     * exhausted (see {@link #run(TradingAlgorithm)}).
+     *
+     * @param toTimestamp the to timestamp (epoch nanoseconds, exclusive, {@link Long#MAX_VALUE} to not fire the timers
+     *                    after the last event)
+     */
+    public void setToTimestamp(long toTimestamp) {
+        this.toTimestamp = toTimestamp;
+    }
+
+    /**
+     * Halts a running replay after the event that is currently being dispatched.
+     */
+    public void halt() {
+        halted = true;
+    }
+
+    /**
+     * Returns true if {@link #halt()} has been called.
+     *
+     * @return the boolean
+     */
+    public boolean isHalted() {
+        return halted;
+    }
+
+    /**
+     * Gets the number of events dispatched by the last run.
+     *
+     * @return the event count
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Gets the number of timers fired by the last run.
+     *
+     * @return the timer count
+     */
+    public long getTimerCount() {
+        return timerCount;
+    }
+
+    /**
+     * Gets the elapsed wall-clock nanoseconds of the last run.
+     *
+     * @return the elapsed nanos
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Gets the total nanoseconds of the last run that were spent waiting on segments to be loaded.
+     *
+     * @return the stall nanos
+     */
+    public long getStallNanos() {
+        return stallNanos;
+    }
+
+    /**
+     * Gets the fraction of the last run that was spent waiting on segments to be loaded. A ratio close to 1 means that
+     * the backtest is I/O-bound, a ratio close to 0 means that it is CPU-bound.
+     *
+     * @return the stall ratio
+     */
+    public double getStallRatio() {
+        return elapsedNanos == 0 ? 0 : Math.min(1, (double) stallNanos / elapsedNanos);
+    }
+
+    /**
+     * Gets the events per second of the last run.
+     *
+     * @return the events per second
+     */
+    public double getEventsPerSecond() {
+        return elapsedNanos == 0 ? 0 : eventCount * 1e9 / elapsedNanos;
+    }
+}
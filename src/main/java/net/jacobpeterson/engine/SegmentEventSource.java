@@ -0,0 +1,104 @@
+package net.jacobpeterson.engine;
+
+import net.jacobpeterson.algorithm.TradingAlgorithm;
+import net.jacobpeterson.broker.BacktestBroker;
+import net.jacobpeterson.broker.order.OrderBook;
+import net.jacobpeterson.data.cursor.SegmentCursor;
+import net.jacobpeterson.data.iterators.SegmentIterator;
+
+/**
+ * An {@link EventSource} over the flyweight cursor of a {@link SegmentIterator} bounded to a time range.
+ *
+ * @param <C> the {@link SegmentCursor} type
+ */
+public abstract class SegmentEventSource<C extends SegmentCursor> extends EventSource {
+
+    protected final String ticker;
+    protected final SegmentIterator<C, ?> segmentIterator;
+    protected final C cursor;
+    private final long fromTimestamp;
+    private final long toTimestamp;
+    private long timestamp;
+    private BacktestBroker orderBookBacktestBroker;
+    private OrderBook orderBook;
+
+    /**
+     * Instantiates a new Segment event source.
+     *
+     * @param ticker          the ticker
+     * @param segmentIterator the segment iterator
+     * @param fromTimestamp   the from timestamp (epoch nanoseconds, inclusive)
+     * @param toTimestamp     the to timestamp (epoch nanoseconds, exclusive)
+     */
+    protected SegmentEventSource(String ticker, SegmentIterator<C, ?> segmentIterator, long fromTimestamp,
+            long toTimestamp) {
+        this.ticker = ticker;
+        this.segmentIterator = segmentIterator;
+        this.cursor = segmentIterator.getCursor();
+        this.fromTimestamp = fromTimestamp;
+        this.toTimestamp = toTimestamp;
+    }
+
+    @Override
+    public boolean advance() {
+        while (segmentIterator.advance()) {
+            timestamp = getEventTimestamp(cursor);
+            if (timestamp < fromTimestamp) {
+                continue;
+            }
+            return timestamp < toTimestamp;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the timestamp (epoch nanoseconds) at which the current row of the cursor occurs.
+     *
+     * @param cursor the cursor
+     *
+     * @return the event timestamp
+     */
+    protected long getEventTimestamp(C cursor) {
+        return cursor.getTimestamp();
+    }
+
+    /**
+     * Gets the {@link OrderBook} of the ticker of this source in the {@link BacktestBroker} of a trading algorithm.
+     * The order book is looked up once per broker so that dispatching market data to the broker is allocation-free.
+     *
+     * @param tradingAlgorithm the trading algorithm
+     *
+     * @return the order book (null if the trading algorithm has no broker)
+     */
+    protected OrderBook getOrderBook(TradingAlgorithm tradingAlgorithm) {
+        BacktestBroker backtestBroker = tradingAlgorithm.getBacktestBroker();
+        if (backtestBroker != orderBookBacktestBroker) {
+            orderBook = backtestBroker == null ? null : backtestBroker.getMatchingEngine().getOrderBook(ticker);
+            orderBookBacktestBroker = backtestBroker;
+        }
+        return orderBook;
+    }
+
+    @Override
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Gets segment iterator.
+     *
+     * @return the segment iterator
+     */
+    public SegmentIterator<C, ?> getSegmentIterator() {
+        return segmentIterator;
+    }
+
+    /**
+     * Gets ticker.
+     *
+     * @return the ticker
+     */
+    public String getTicker() {
+        return ticker;
+    }
+}
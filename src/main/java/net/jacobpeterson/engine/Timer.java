@@ -0,0 +1,88 @@
+package net.jacobpeterson.engine;
+
+import java.util.function.LongUnaryOperator;
+
+/**
+ * A one-shot or recurring timer of a {@link TimerWheel}. Timers are created with the <code>schedule</code> methods of
+ * the {@link TimerWheel} and can be cancelled with {@link #cancel()}.
+ */
+public class Timer {
+
+    final TimerWheel timerWheel;
+    final TimerCallback timerCallback;
+    final LongUnaryOperator nextDeadlineOperator;
+    long deadline;
+    long sequence;
+    boolean active;
+
+    // The wheel bucket (or the due heap) that this timer is in
+    int level;
+    int slot;
+    Timer previous;
+    Timer next;
+
+    /**
+     * Instantiates a new Timer.
+     *
+     * @param timerWheel           the timer wheel
+     * @param deadline             the deadline (epoch nanoseconds)
+     * @param nextDeadlineOperator the operator that computes the next deadline from a deadline (null for a one-shot
+     *                             timer)
+     * @param timerCallback        the timer callback
+     */
+    Timer(TimerWheel timerWheel, long deadline, LongUnaryOperator nextDeadlineOperator,
+            TimerCallback timerCallback) {
+        this.timerWheel = timerWheel;
+        this.timerCallback = timerCallback;
+        this.nextDeadlineOperator = nextDeadlineOperator;
+        this.deadline = deadline;
+        this.active = true;
+        this.level = TimerWheel.UNSCHEDULED;
+    }
+
+    /**
+     * Cancels this timer. A recurring timer can cancel itself in its {@link TimerCallback}.
+     *
+     * @return true if this timer was cancelled, false if it had already fired (if it's a one-shot timer) or was
+     * already cancelled
+     */
+    public boolean cancel() {
+        return timerWheel.cancel(this);
+    }
+
+    /**
+     * Gets the deadline. While the {@link TimerCallback} is executed, this is the deadline that is firing.
+     *
+     * @return the deadline (epoch nanoseconds)
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Returns true if this timer fires again after each deadline.
+     *
+     * @return the boolean
+     */
+    public boolean isRecurring() {
+        return nextDeadlineOperator != null;
+    }
+
+    /**
+     * Returns true if this timer hasn't been cancelled and (if it's a one-shot timer) hasn't fired yet.
+     *
+     * @return the boolean
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public String toString() {
+        return "Timer{" +
+                "deadline=" + deadline +
+                ", recurring=" + isRecurring() +
+                ", active=" + active +
+                '}';
+    }
+}
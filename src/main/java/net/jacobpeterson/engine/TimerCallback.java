@@ -0,0 +1,16 @@
+package net.jacobpeterson.engine;
+
+/**
+ * A callback of a {@link Timer} that is executed at the simulated time of its deadline.
+ */
+@FunctionalInterface
+public interface TimerCallback {
+
+    /**
+     * This method is executed when a timer is due. The simulated time (see {@link TimerWheel#getTime()}) is the
+     * deadline of the timer.
+     *
+     * @param timer the timer
+     */
+    void onTimer(Timer timer);
+}
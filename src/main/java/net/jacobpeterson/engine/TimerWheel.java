@@ -0,0 +1,440 @@
+package net.jacobpeterson.engine;
+
+import net.jacobpeterson.algorithm.TradingAlgorithm;
+import net.jacobpeterson.broker.BacktestBroker;
+import net.jacobpeterson.metrics.MetricType;
+import net.jacobpeterson.metrics.Metrics;
+
+import java.util.Arrays;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * A hierarchical timing wheel of {@link Timer}s that are driven by the simulated time of the {@link ReplayEngine}.
+ * There are 5 levels of 64 buckets each whose buckets span 2<sup>26</sup> nanoseconds (about 67 milliseconds), 4.3
+ * seconds, 4.6 minutes, 4.9 hours, and 13 days, so scheduling and cancelling a timer is <code>O(1)</code> and timers
+ * further than about 2.3 years in the future wait in the last level until they are within range. When the simulated
+ * time advances, the buckets that it has passed are cascaded into the lower levels. Timers whose bucket in the lowest
+ * level is reached are moved into a small binary heap ordered by deadline (and then by the order in which they were
+ * scheduled) so that they fire at their exact deadline and in a deterministic order.
+ * <p>
+ * {@link #advance(long, TradingAlgorithm)} only does any work when a timer might be due or a bucket of the lowest level
+ * has been passed (see {@link #getNextExpiration()}), so the simulated time can jump over empty stretches (e.g. nights
+ * and weekends) without any events being dispatched in between.
+ * <p>
+ * This is not thread safe.
+ */
+public class TimerWheel {
+
+    static final int UNSCHEDULED = -1;
+    static final int DUE = -2;
+
+    private static final int[] SHIFTS = {26, 32, 38, 44, 50};
+    private static final int BUCKET_COUNT = 64;
+    private static final int BUCKET_MASK = BUCKET_COUNT - 1;
+
+    private final Timer[][] buckets;
+    private Timer[] dueTimers;
+    private int dueCount;
+    private int wheelCount;
+    private int timerCount;
+    private long sequence;
+    private long firedCount;
+    private long cursor;
+    private long time;
+    private long nextExpiration;
+    Metrics metrics;
+    long dispatchNanos;
+
+    /**
+     * Instantiates a new Timer wheel.
+     */
+    public TimerWheel() {
+        this.buckets = new Timer[SHIFTS.length][BUCKET_COUNT];
+        this.dueTimers = new Timer[16];
+        this.nextExpiration = Long.MAX_VALUE;
+    }
+
+    /**
+     * Schedules a one-shot timer. A deadline before the simulated time fires at the simulated time.
+     *
+     * @param deadline      the deadline (epoch nanoseconds)
+     * @param timerCallback the timer callback
+     *
+     * @return the timer
+     */
+    public Timer schedule(long deadline, TimerCallback timerCallback) {
+        return schedule(deadline, null, timerCallback);
+    }
+
+    /**
+     * Schedules a timer that fires at a fixed rate. If a callback takes more simulated time than the period (which can
+     * only happen if the simulated time jumps), the missed deadlines fire one after another.
+     *
+     * @param firstDeadline the first deadline (epoch nanoseconds)
+     * @param period        the period (nanoseconds)
+     * @param timerCallback the timer callback
+     *
+     * @return the timer
+     */
+    public Timer scheduleAtFixedRate(long firstDeadline, long period, TimerCallback timerCallback) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("The period must be positive!");
+        }
+
+        return schedule(firstDeadline, deadline -> deadline + period, timerCallback);
+    }
+
+    /**
+     * Schedules a recurring timer whose next deadline is computed from the deadline that has just fired (e.g. the
+     * same time on the next trading day).
+     *
+     * @param firstDeadline        the first deadline (epoch nanoseconds)
+     * @param nextDeadlineOperator the operator that computes the next deadline from a deadline (null for a one-shot
+     *                             timer). A next deadline that isn't after the deadline stops the timer.
+     * @param timerCallback        the timer callback
+     *
+     * @return the timer
+     */
+    public Timer schedule(long firstDeadline, LongUnaryOperator nextDeadlineOperator, TimerCallback timerCallback) {
+        if (timerCallback == null) {
+            throw new NullPointerException("The timer callback cannot be null!");
+        }
+
+        Timer timer = new Timer(this, Math.max(firstDeadline, time), nextDeadlineOperator, timerCallback);
+        timer.sequence = sequence++;
+        timerCount++;
+        place(timer);
+        updateNextExpiration();
+        return timer;
+    }
+
+    /**
+     * Cancels a timer.
+     *
+     * @param timer the timer
+     *
+     * @return true if the timer was cancelled
+     */
+    boolean cancel(Timer timer) {
+        if (!timer.active) {
+            return false;
+        }
+
+        timer.active = false;
+        timerCount--;
+        if (timer.level >= 0) {
+            unlink(timer);
+            updateNextExpiration();
+        } // Due timers are removed from the due heap when they are reached
+        return true;
+    }
+
+    /**
+     * Advances the simulated time to a timestamp after firing every timer whose deadline is before it (in deadline
+     * order, then in the order that they were scheduled). Timers that are scheduled by the fired callbacks with a
+     * deadline before the timestamp also fire. The simulated time never goes backwards.
+     *
+     * @param timestamp        the timestamp (epoch nanoseconds)
+     * @param tradingAlgorithm the trading algorithm whose {@link BacktestBroker} time is advanced to each deadline
+     *                         before its callback is executed
+     */
+    public final void advance(long timestamp, TradingAlgorithm tradingAlgorithm) {
+        if (timestamp > nextExpiration) {
+            expire(timestamp, tradingAlgorithm);
+        }
+        if (timestamp > time) {
+            time = timestamp;
+        }
+    }
+
+    /**
+     * Cascades the buckets that <code>timestamp</code> has passed and fires the due timers before it.
+     *
+     * @param timestamp        the timestamp
+     * @param tradingAlgorithm the trading algorithm
+     */
+    private void expire(long timestamp, TradingAlgorithm tradingAlgorithm) {
+        if (timestamp > cursor) {
+            long previousCursor = cursor;
+            cursor = timestamp;
+
+            // Lower levels are cascaded first so that timers from higher levels aren't cascaded twice
+            for (int level = 0; level < SHIFTS.length; level++) {
+                long previousTicks = previousCursor >> SHIFTS[level];
+                long ticks = cursor >> SHIFTS[level];
+                if (ticks == previousTicks) {
+                    break;
+                }
+
+                long bucketCount = Math.min(ticks - previousTicks, BUCKET_COUNT);
+                for (long tick = previousTicks + 1; bucketCount > 0; tick++, bucketCount--) {
+                    Timer[] levelBuckets = buckets[level];
+                    int slot = (int) tick & BUCKET_MASK;
+                    Timer timer = levelBuckets[slot];
+                    levelBuckets[slot] = null;
+                    while (timer != null) {
+                        Timer nextTimer = timer.next;
+                        timer.previous = null;
+                        timer.next = null;
+                        timer.level = UNSCHEDULED;
+                        wheelCount--;
+                        place(timer);
+                        timer = nextTimer;
+                    }
+                }
+            }
+        }
+
+        Metrics metrics = this.metrics;
+        BacktestBroker backtestBroker = tradingAlgorithm == null ? null : tradingAlgorithm.getBacktestBroker();
+        while (dueCount > 0 && dueTimers[0].deadline < timestamp) {
+            Timer timer = pollDue();
+            if (!timer.active) {
+                continue;
+            }
+
+            if (timer.deadline > time) {
+                time = timer.deadline;
+            }
+            if (backtestBroker != null) {
+                backtestBroker.getMatchingEngine().advanceTime(time);
+            }
+            if (timer.nextDeadlineOperator == null) {
+                timer.active = false;
+                timerCount--;
+            }
+
+            firedCount++;
+            timer.timerCallback.onTimer(timer);
+            if (metrics != null) {
+                dispatchNanos = metrics.lap(MetricType.TIMER_CALLBACK, dispatchNanos);
+            }
+
+            if (timer.active) {
+                long nextDeadline = timer.nextDeadlineOperator.applyAsLong(timer.deadline);
+                if (nextDeadline > timer.deadline) {
+                    timer.deadline = nextDeadline;
+                    timer.sequence = sequence++;
+                    place(timer);
+                } else {
+                    timer.active = false;
+                    timerCount--;
+                }
+            }
+        }
+
+        updateNextExpiration();
+    }
+
+    /**
+     * Places a timer into the bucket of the lowest level whose next level has the same tick as the cursor, or into
+     * the due heap if its deadline is within the tick of the cursor in the lowest level.
+     *
+     * @param timer the timer
+     */
+    private void place(Timer timer) {
+        long deadline = timer.deadline;
+        if ((deadline >> SHIFTS[0]) <= (cursor >> SHIFTS[0])) {
+            offerDue(timer);
+            return;
+        }
+
+        int level = 0;
+        while (level < SHIFTS.length - 1 && (deadline >> SHIFTS[level + 1]) != (cursor >> SHIFTS[level + 1])) {
+            level++;
+        }
+
+        Timer[] levelBuckets = buckets[level];
+        int slot = (int) (deadline >> SHIFTS[level]) & BUCKET_MASK;
+        Timer head = levelBuckets[slot];
+        timer.level = level;
+        timer.slot = slot;
+        timer.previous = null;
+        timer.next = head;
+        if (head != null) {
+            head.previous = timer;
+        }
+        levelBuckets[slot] = timer;
+        wheelCount++;
+    }
+
+    /**
+     * Unlinks a timer from its bucket.
+     *
+     * @param timer the timer
+     */
+    private void unlink(Timer timer) {
+        if (timer.previous != null) {
+            timer.previous.next = timer.next;
+        } else {
+            buckets[timer.level][timer.slot] = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.previous = timer.previous;
+        }
+        timer.previous = null;
+        timer.next = null;
+        timer.level = UNSCHEDULED;
+        wheelCount--;
+    }
+
+    /**
+     * Adds a timer to the due heap.
+     *
+     * @param timer the timer
+     */
+    private void offerDue(Timer timer) {
+        if (dueCount == dueTimers.length) {
+            dueTimers = Arrays.copyOf(dueTimers, dueCount * 2);
+        }
+
+        timer.level = DUE;
+        int index = dueCount++;
+        // Sift up
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!isBefore(timer, dueTimers[parent])) {
+                break;
+            }
+            dueTimers[index] = dueTimers[parent];
+            index = parent;
+        }
+        dueTimers[index] = timer;
+    }
+
+    /**
+     * Removes the earliest timer from the due heap.
+     *
+     * @return the timer
+     */
+    private Timer pollDue() {
+        Timer earliest = dueTimers[0];
+        earliest.level = UNSCHEDULED;
+        Timer last = dueTimers[--dueCount];
+        dueTimers[dueCount] = null;
+
+        if (dueCount > 0) {
+            int index = 0;
+            // Sift down
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= dueCount) {
+                    break;
+                }
+                if (child + 1 < dueCount && isBefore(dueTimers[child + 1], dueTimers[child])) {
+                    child++;
+                }
+                if (!isBefore(dueTimers[child], last)) {
+                    break;
+                }
+                dueTimers[index] = dueTimers[child];
+                index = child;
+            }
+            dueTimers[index] = last;
+        }
+        return earliest;
+    }
+
+    /**
+     * Returns true if a timer is due before another timer.
+     *
+     * @param timer the timer
+     * @param other the other timer
+     *
+     * @return the boolean
+     */
+    private static boolean isBefore(Timer timer, Timer other) {
+        return timer.deadline < other.deadline || (timer.deadline == other.deadline && timer.sequence < other.sequence);
+    }
+
+    /**
+     * Updates {@link #getNextExpiration()}.
+     */
+    private void updateNextExpiration() {
+        long expiration = Long.MAX_VALUE;
+        if (wheelCount > 0) {
+            expiration = (((cursor >> SHIFTS[0]) + 1) << SHIFTS[0]) - 1;
+        }
+        if (dueCount > 0) {
+            expiration = Math.min(expiration, dueTimers[0].deadline);
+        }
+        nextExpiration = expiration;
+    }
+
+    /**
+     * Cancels every timer and sets the simulated time (e.g. before the same algorithm is run again).
+     *
+     * @param timestamp the timestamp (epoch nanoseconds)
+     */
+    public void reset(long timestamp) {
+        for (Timer[] levelBuckets : buckets) {
+            for (int slot = 0; slot < BUCKET_COUNT; slot++) {
+                for (Timer timer = levelBuckets[slot]; timer != null; timer = timer.next) {
+                    timer.active = false;
+                    timer.level = UNSCHEDULED;
+                }
+                levelBuckets[slot] = null;
+            }
+        }
+        for (int index = 0; index < dueCount; index++) {
+            dueTimers[index].active = false;
+            dueTimers[index].level = UNSCHEDULED;
+            dueTimers[index] = null;
+        }
+
+        dueCount = 0;
+        wheelCount = 0;
+        timerCount = 0;
+        firedCount = 0;
+        cursor = timestamp;
+        time = timestamp;
+        nextExpiration = Long.MAX_VALUE;
+    }
+
+    /**
+     * Gets the simulated time. While an event or a timer is dispatched, this is its timestamp.
+     *
+     * @return the time (epoch nanoseconds)
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Gets the timestamp after which {@link #advance(long, TradingAlgorithm)} has work to do (a timer might be due or
+     * a bucket of the lowest level has been passed).
+     *
+     * @return the next expiration (epoch nanoseconds, {@link Long#MAX_VALUE} if there are no timers)
+     */
+    public long getNextExpiration() {
+        return nextExpiration;
+    }
+
+    /**
+     * Gets the number of active timers.
+     *
+     * @return the timer count
+     */
+    public int getTimerCount() {
+        return timerCount;
+    }
+
+    /**
+     * Gets the number of timer callbacks that have been executed since the last {@link #reset(long)}.
+     *
+     * @return the fired count
+     */
+    public long getFiredCount() {
+        return firedCount;
+    }
+
+    /**
+     * Sets the metrics that timer callbacks are recorded to as {@link MetricType#TIMER_CALLBACK}. This is set by the
+     * {@link ReplayEngine} before it runs.
+     *
+     * @param metrics the metrics (null to not instrument timer callbacks)
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+}
@@ -0,0 +1,45 @@
+package net.jacobpeterson.engine;
+
+import net.jacobpeterson.algorithm.TradingAlgorithm;
+import net.jacobpeterson.broker.order.OrderBook;
+import net.jacobpeterson.data.cursor.TradeCursor;
+import net.jacobpeterson.data.iterators.TradeIterator;
+import net.jacobpeterson.metrics.MetricType;
+import net.jacobpeterson.metrics.Metrics;
+
+/**
+ * An {@link EventSource} of trades. Each trade is matched against the resting orders of the ticker before it is
+ * dispatched to the algorithm.
+ */
+public class TradeEventSource extends SegmentEventSource<TradeCursor> {
+
+    /**
+     * Instantiates a new Trade event source.
+     *
+     * @param tradeIterator the trade iterator
+     * @param fromTimestamp the from timestamp (epoch nanoseconds, inclusive)
+     * @param toTimestamp   the to timestamp (epoch nanoseconds, exclusive)
+     */
+    public TradeEventSource(TradeIterator tradeIterator, long fromTimestamp, long toTimestamp) {
+        super(tradeIterator.getTicker(), tradeIterator, fromTimestamp, toTimestamp);
+    }
+
+    @Override
+    public void dispatch(TradingAlgorithm tradingAlgorithm) {
+        Metrics metrics = this.metrics;
+        long nanos = dispatchNanos;
+
+        OrderBook orderBook = getOrderBook(tradingAlgorithm);
+        if (orderBook != null) {
+            orderBook.onTrade(getTimestamp(), cursor.getPrice());
+            if (metrics != null) {
+                nanos = metrics.lap(MetricType.BROKER_MATCH, nanos);
+            }
+        }
+
+        tradingAlgorithm.onTradeUpdate(ticker, cursor);
+        if (metrics != null) {
+            dispatchNanos = metrics.lap(MetricType.TRADE_CALLBACK, nanos);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package net.jacobpeterson.indicator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Wilder's average true range. It is seeded with the simple average of the first <code>length</code> true ranges and
+ * then smoothed with a factor of <code>1 / length</code>. The true range of the first bar is its high minus its low.
+ */
+public class AverageTrueRange extends Indicator {
+
+    private final int length;
+    private double previousClose;
+    private int count;
+    private double value;
+
+    /**
+     * Instantiates a new Average true range.
+     *
+     * @param length the length
+     */
+    public AverageTrueRange(int length) {
+        if (length <= 0) {
+            throw new IllegalArgumentException("Length must be positive!");
+        }
+
+        this.length = length;
+
+        this.reset();
+    }
+
+    @Override
+    public void update(long timestamp, double open, double high, double low, double close, double volume) {
+        double trueRange = high - low;
+        if (previousClose == previousClose) {
+            trueRange = Math.max(trueRange, Math.max(Math.abs(high - previousClose), Math.abs(low - previousClose)));
+        }
+        previousClose = close;
+
+        if (count < length) {
+            value += trueRange / length;
+            count++;
+        } else {
+            value += (trueRange - value) / length;
+        }
+    }
+
+    @Override
+    public double getValue() {
+        return count == length ? value : Double.NaN;
+    }
+
+    @Override
+    public boolean isReady() {
+        return count == length;
+    }
+
+    @Override
+    public void reset() {
+        previousClose = Double.NaN;
+        count = 0;
+        value = 0;
+    }
+
+    @Override
+    public AverageTrueRange copy() {
+        AverageTrueRange averageTrueRange = new AverageTrueRange(length);
+        averageTrueRange.copyStateFrom(this);
+        return averageTrueRange;
+    }
+
+    @Override
+    public void copyStateFrom(Indicator indicator) {
+        AverageTrueRange averageTrueRange = castToThisType(indicator);
+        checkLength(length, averageTrueRange.length);
+        previousClose = averageTrueRange.previousClose;
+        count = averageTrueRange.count;
+        value = averageTrueRange.value;
+    }
+
+    @Override
+    public void writeState(DataOutput dataOutput) throws IOException {
+        dataOutput.writeInt(length);
+        dataOutput.writeDouble(previousClose);
+        dataOutput.writeInt(count);
+        dataOutput.writeDouble(value);
+    }
+
+    @Override
+    public void readState(DataInput dataInput) throws IOException {
+        checkLength(length, dataInput.readInt());
+        previousClose = dataInput.readDouble();
+        count = dataInput.readInt();
+        value = dataInput.readDouble();
+    }
+
+    /**
+     * Gets length.
+     *
+     * @return the length
+     */
+    public int getLength() {
+        return length;
+    }
+}
@@ -0,0 +1,175 @@
+package net.jacobpeterson.indicator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Bollinger bands of closes: a simple moving average (the middle band, which is {@link #getValue()}) plus and minus a
+ * multiple of the population standard deviation of the same closes. The running sums are kept relative to a shift
+ * value to avoid catastrophic cancellation and are recomputed from the ring buffer once every <code>length</code>
+ * updates.
+ */
+public class BollingerBands extends Indicator {
+
+    private final DoubleRingBuffer closes;
+    private final double standardDeviationMultiplier;
+    private double shift;
+    private double shiftedSum;
+    private double shiftedSumOfSquares;
+    private int updatesUntilResync;
+
+    /**
+     * Instantiates a new Bollinger bands.
+     *
+     * @param length                      the length
+     * @param standardDeviationMultiplier the standard deviation multiplier (typically 2)
+     */
+    public BollingerBands(int length, double standardDeviationMultiplier) {
+        this.closes = new DoubleRingBuffer(length);
+        this.standardDeviationMultiplier = standardDeviationMultiplier;
+
+        this.reset();
+    }
+
+    @Override
+    public void update(long timestamp, double open, double high, double low, double close, double volume) {
+        double evicted = closes.add(close);
+        if (--updatesUntilResync == 0) {
+            shift = closes.get(0);
+            shiftedSum = 0;
+            shiftedSumOfSquares = 0;
+            for (int index = 0; index < closes.size(); index++) {
+                double shifted = closes.get(index) - shift;
+                shiftedSum += shifted;
+                shiftedSumOfSquares += shifted * shifted;
+            }
+            updatesUntilResync = closes.getCapacity();
+            return;
+        }
+
+        if (closes.size() == 1) {
+            shift = close;
+        }
+        double shifted = close - shift;
+        shiftedSum += shifted;
+        shiftedSumOfSquares += shifted * shifted;
+        if (evicted == evicted) { // 'evicted' is NaN until the buffer is full
+            double shiftedEvicted = evicted - shift;
+            shiftedSum -= shiftedEvicted;
+            shiftedSumOfSquares -= shiftedEvicted * shiftedEvicted;
+        }
+    }
+
+    @Override
+    public double getValue() {
+        return closes.isFull() ? shift + shiftedSum / closes.getCapacity() : Double.NaN;
+    }
+
+    /**
+     * Gets the population standard deviation of the closes.
+     *
+     * @return the standard deviation (NaN if this indicator is not {@link #isReady()})
+     */
+    public double getStandardDeviation() {
+        if (!closes.isFull()) {
+            return Double.NaN;
+        }
+        double shiftedMean = shiftedSum / closes.getCapacity();
+        return Math.sqrt(Math.max(0, shiftedSumOfSquares / closes.getCapacity() - shiftedMean * shiftedMean));
+    }
+
+    /**
+     * Gets the upper band.
+     *
+     * @return the upper band
+     */
+    public double getUpperBand() {
+        return getValue() + standardDeviationMultiplier * getStandardDeviation();
+    }
+
+    /**
+     * Gets the middle band.
+     *
+     * @return the middle band
+     */
+    public double getMiddleBand() {
+        return getValue();
+    }
+
+    /**
+     * Gets the lower band.
+     *
+     * @return the lower band
+     */
+    public double getLowerBand() {
+        return getValue() - standardDeviationMultiplier * getStandardDeviation();
+    }
+
+    @Override
+    public boolean isReady() {
+        return closes.isFull();
+    }
+
+    @Override
+    public void reset() {
+        closes.clear();
+        shift = 0;
+        shiftedSum = 0;
+        shiftedSumOfSquares = 0;
+        updatesUntilResync = closes.getCapacity();
+    }
+
+    @Override
+    public BollingerBands copy() {
+        BollingerBands bollingerBands = new BollingerBands(getLength(), standardDeviationMultiplier);
+        bollingerBands.copyStateFrom(this);
+        return bollingerBands;
+    }
+
+    @Override
+    public void copyStateFrom(Indicator indicator) {
+        BollingerBands bollingerBands = castToThisType(indicator);
+        closes.copyFrom(bollingerBands.closes);
+        shift = bollingerBands.shift;
+        shiftedSum = bollingerBands.shiftedSum;
+        shiftedSumOfSquares = bollingerBands.shiftedSumOfSquares;
+        updatesUntilResync = bollingerBands.updatesUntilResync;
+    }
+
+    @Override
+    public void writeState(DataOutput dataOutput) throws IOException {
+        closes.writeState(dataOutput);
+        dataOutput.writeDouble(shift);
+        dataOutput.writeDouble(shiftedSum);
+        dataOutput.writeDouble(shiftedSumOfSquares);
+        dataOutput.writeInt(updatesUntilResync);
+    }
+
+    @Override
+    public void readState(DataInput dataInput) throws IOException {
+        closes.readState(dataInput);
+        shift = dataInput.readDouble();
+        shiftedSum = dataInput.readDouble();
+        shiftedSumOfSquares = dataInput.readDouble();
+        updatesUntilResync = dataInput.readInt();
+    }
+
+    /**
+     * Gets length.
+     *
+     * @return the length
+     */
+    public int getLength() {
+        return closes.getCapacity();
+    }
+
+    /**
+     * Gets standard deviation multiplier.
+     *
+     * @return the standard deviation multiplier
+     */
+    public double getStandardDeviationMultiplier() {
+        return standardDeviationMultiplier;
+    }
+}
@@ -0,0 +1,183 @@
+package net.jacobpeterson.indicator;
+
+import net.jacobpeterson.checkpoint.Checkpointable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A fixed-capacity ring buffer of <code>double</code>s that evicts its oldest value when a value is added while it is
+ * full.
+ */
+public class DoubleRingBuffer implements Checkpointable {
+
+    private final double[] values;
+    private int head;
+    private int size;
+
+    /**
+     * Instantiates a new Double ring buffer.
+     *
+     * @param capacity the capacity
+     */
+    public DoubleRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive!");
+        }
+
+        this.values = new double[capacity];
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @param value the value
+     *
+     * @return the evicted value (NaN if this buffer was not full)
+     */
+    public double add(double value) {
+        int tail = head + size;
+        if (tail >= values.length) {
+            tail -= values.length;
+        }
+
+        double evicted = Double.NaN;
+        if (size == values.length) {
+            evicted = values[head];
+            if (++head == values.length) {
+                head = 0;
+            }
+        } else {
+            size++;
+        }
+        values[tail] = value;
+        return evicted;
+    }
+
+    /**
+     * Gets a value.
+     *
+     * @param index the index (0 is the oldest value)
+     *
+     * @return the value
+     */
+    public double get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for size " + size);
+        }
+
+        int position = head + index;
+        if (position >= values.length) {
+            position -= values.length;
+        }
+        return values[position];
+    }
+
+    /**
+     * Gets the newest value.
+     *
+     * @return the newest value
+     */
+    public double getNewest() {
+        return get(size - 1);
+    }
+
+    /**
+     * Clears this buffer.
+     */
+    public void clear() {
+        Arrays.fill(values, 0);
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Copies the values of another buffer with the same capacity into this buffer.
+     *
+     * @param doubleRingBuffer the double ring buffer
+     *
+     * @throws IllegalArgumentException if the capacities don't match
+     */
+    public void copyFrom(DoubleRingBuffer doubleRingBuffer) {
+        if (doubleRingBuffer.values.length != values.length) {
+            throw new IllegalArgumentException("Can't copy a buffer with a capacity of " +
+                    doubleRingBuffer.values.length + " into a buffer with a capacity of " + values.length + "!");
+        }
+
+        System.arraycopy(doubleRingBuffer.values, 0, values, 0, values.length);
+        head = doubleRingBuffer.head;
+        size = doubleRingBuffer.size;
+    }
+
+    /**
+     * Writes the capacity and the values (oldest first) of this buffer.
+     *
+     * @param dataOutput the data output
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    @Override
+    public void writeState(DataOutput dataOutput) throws IOException {
+        dataOutput.writeInt(values.length);
+        dataOutput.writeInt(size);
+        for (int index = 0; index < size; index++) {
+            dataOutput.writeDouble(get(index));
+        }
+    }
+
+    /**
+     * Reads the values of a buffer with the same capacity that were written by {@link #writeState(DataOutput)} into
+     * this buffer.
+     *
+     * @param dataInput the data input
+     *
+     * @throws IOException              thrown for {@link IOException}s
+     * @throws IllegalArgumentException if the capacities don't match
+     */
+    @Override
+    public void readState(DataInput dataInput) throws IOException {
+        int capacity = dataInput.readInt();
+        if (capacity != values.length) {
+            throw new IllegalArgumentException("Can't read a buffer with a capacity of " + capacity +
+                    " into a buffer with a capacity of " + values.length + "!");
+        }
+
+        int size = dataInput.readInt();
+        if (size < 0 || size > capacity) {
+            throw new IOException("Invalid buffer size: " + size);
+        }
+        clear();
+        for (int index = 0; index < size; index++) {
+            add(dataInput.readDouble());
+        }
+    }
+
+    /**
+     * Returns true if this buffer contains {@link #getCapacity()} values.
+     *
+     * @return the boolean
+     */
+    public boolean isFull() {
+        return size == values.length;
+    }
+
+    /**
+     * Gets the number of values.
+     *
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets capacity.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return values.length;
+    }
+}
@@ -0,0 +1,99 @@
+package net.jacobpeterson.indicator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * An exponential moving average of closes with a smoothing factor of <code>2 / (length + 1)</code>. It is seeded with
+ * the simple average of the first <code>length</code> closes.
+ */
+public class ExponentialMovingAverage extends Indicator {
+
+    private final int length;
+    private final double alpha;
+    private int count;
+    private double value;
+
+    /**
+     * Instantiates a new Exponential moving average.
+     *
+     * @param length the length
+     */
+    public ExponentialMovingAverage(int length) {
+        if (length <= 0) {
+            throw new IllegalArgumentException("Length must be positive!");
+        }
+
+        this.length = length;
+        this.alpha = 2d / (length + 1);
+
+        this.reset();
+    }
+
+    @Override
+    public void update(long timestamp, double open, double high, double low, double close, double volume) {
+        if (count < length) {
+            value += close; // Sum the seed
+            if (++count == length) {
+                value /= length;
+            }
+        } else {
+            value += alpha * (close - value);
+        }
+    }
+
+    @Override
+    public double getValue() {
+        return count == length ? value : Double.NaN;
+    }
+
+    @Override
+    public boolean isReady() {
+        return count == length;
+    }
+
+    @Override
+    public void reset() {
+        count = 0;
+        value = 0;
+    }
+
+    @Override
+    public ExponentialMovingAverage copy() {
+        ExponentialMovingAverage exponentialMovingAverage = new ExponentialMovingAverage(length);
+        exponentialMovingAverage.copyStateFrom(this);
+        return exponentialMovingAverage;
+    }
+
+    @Override
+    public void copyStateFrom(Indicator indicator) {
+        ExponentialMovingAverage exponentialMovingAverage = castToThisType(indicator);
+        checkLength(length, exponentialMovingAverage.length);
+        count = exponentialMovingAverage.count;
+        value = exponentialMovingAverage.value;
+    }
+
+    @Override
+    public void writeState(DataOutput dataOutput) throws IOException {
+        dataOutput.writeInt(length);
+        dataOutput.writeInt(count);
+        dataOutput.writeDouble(value);
+    }
+
+    @Override
+    public void readState(DataInput dataInput) throws IOException {
+        checkLength(length, dataInput.readInt());
+        count = dataInput.readInt();
+        value = dataInput.readDouble();
+    }
+
+    /**
+     * Gets length.
+     *
+     * @return the length
+     */
+    public int getLength() {
+        return length;
+    }
+}
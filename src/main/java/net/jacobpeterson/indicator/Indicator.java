@@ -0,0 +1,146 @@
+package net.jacobpeterson.indicator;
+
+import net.jacobpeterson.checkpoint.Checkpointable;
+import net.jacobpeterson.data.cursor.AggregateCursor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A streaming indicator that is updated one bar at a time in <code>O(1)</code> and doesn't allocate after it is
+ * constructed. Attach indicators to a ticker and {@link net.jacobpeterson.algorithm.update.ticker.AggregateUpdateType}
+ * with {@link net.jacobpeterson.algorithm.TradingAlgorithm#attachIndicator} so that they are updated automatically
+ * before {@link net.jacobpeterson.algorithm.TradingAlgorithm#onAggregateUpdate} is called.
+ */
+public abstract class Indicator implements Checkpointable {
+
+    /**
+     * Updates this indicator with a bar.
+     *
+     * @param timestamp the timestamp (epoch nanoseconds of the start of the bar)
+     * @param open      the open
+     * @param high      the high
+     * @param low       the low
+     * @param close     the close
+     * @param volume    the volume
+     */
+    public abstract void update(long timestamp, double open, double high, double low, double close, double volume);
+
+    /**
+     * Updates this indicator with the current bar of an aggregate cursor.
+     *
+     * @param aggregateCursor the aggregate cursor
+     */
+    public void update(AggregateCursor aggregateCursor) {
+        update(aggregateCursor.getTimestamp(), aggregateCursor.getOpen(), aggregateCursor.getHigh(),
+                aggregateCursor.getLow(), aggregateCursor.getClose(), aggregateCursor.getVolume());
+    }
+
+    /**
+     * Gets the current value of this indicator.
+     *
+     * @return the value (NaN if this indicator is not {@link #isReady()})
+     */
+    public abstract double getValue();
+
+    /**
+     * Returns true if this indicator has been updated with enough bars for {@link #getValue()} to be valid.
+     *
+     * @return the boolean
+     */
+    public abstract boolean isReady();
+
+    /**
+     * Resets this indicator to its initial state.
+     */
+    public abstract void reset();
+
+    /**
+     * Creates a copy of this indicator with the same configuration and state (e.g. to checkpoint a warmed up
+     * indicator).
+     *
+     * @return the indicator
+     *
+     * @throws UnsupportedOperationException if this indicator doesn't support copying
+     */
+    public Indicator copy() {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " doesn't support copying!");
+    }
+
+    /**
+     * Copies the state of an indicator of the same type and configuration into this indicator (e.g. to resume from a
+     * checkpoint that was created with {@link #copy()}).
+     *
+     * @param indicator the indicator
+     *
+     * @throws UnsupportedOperationException if this indicator doesn't support copying
+     * @throws IllegalArgumentException      if the indicator has a different type or configuration
+     */
+    public void copyStateFrom(Indicator indicator) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " doesn't support copying!");
+    }
+
+    /**
+     * Writes the state of this indicator (but not its configuration) to a {@link
+     * net.jacobpeterson.checkpoint.BacktestCheckpoint}.
+     *
+     * @param dataOutput the data output
+     *
+     * @throws IOException                   thrown for {@link IOException}s
+     * @throws UnsupportedOperationException if this indicator doesn't support checkpoints
+     */
+    @Override
+    public void writeState(DataOutput dataOutput) throws IOException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " doesn't support checkpoints!");
+    }
+
+    /**
+     * Reads the state of an indicator of the same type and configuration that was written by {@link
+     * #writeState(DataOutput)} into this indicator.
+     *
+     * @param dataInput the data input
+     *
+     * @throws IOException                   thrown for {@link IOException}s
+     * @throws UnsupportedOperationException if this indicator doesn't support checkpoints
+     * @throws IllegalArgumentException      if the state is of an indicator with a different configuration
+     */
+    @Override
+    public void readState(DataInput dataInput) throws IOException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " doesn't support checkpoints!");
+    }
+
+    /**
+     * Casts an indicator whose state is copied into this indicator to the type of this indicator.
+     *
+     * @param <I>       the {@link Indicator} type
+     * @param indicator the indicator
+     *
+     * @return the indicator
+     *
+     * @throws IllegalArgumentException if the indicator has a different type
+     */
+    @SuppressWarnings("unchecked")
+    protected <I extends Indicator> I castToThisType(Indicator indicator) {
+        if (indicator.getClass() != getClass()) {
+            throw new IllegalArgumentException("Can't copy the state of a " + indicator.getClass().getSimpleName() +
+                    " into a " + getClass().getSimpleName() + "!");
+        }
+        return (I) indicator;
+    }
+
+    /**
+     * Checks that the length of an indicator whose state is copied into this indicator matches.
+     *
+     * @param length       the length of this indicator
+     * @param sourceLength the length of the indicator
+     *
+     * @throws IllegalArgumentException if the lengths don't match
+     */
+    protected static void checkLength(int length, int sourceLength) {
+        if (length != sourceLength) {
+            throw new IllegalArgumentException("Can't copy the state of an indicator with a length of " +
+                    sourceLength + " into an indicator with a length of " + length + "!");
+        }
+    }
+}
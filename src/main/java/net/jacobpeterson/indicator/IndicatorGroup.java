@@ -0,0 +1,171 @@
+package net.jacobpeterson.indicator;
+
+import net.jacobpeterson.checkpoint.Checkpointable;
+import net.jacobpeterson.data.cursor.AggregateCursor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The {@link Indicator}s attached to one ticker and aggregate update type. The indicators are kept in an array so that
+ * updating them doesn't allocate an iterator.
+ */
+public class IndicatorGroup implements Checkpointable {
+
+    private Indicator[] indicators;
+    private int size;
+
+    /**
+     * Instantiates a new Indicator group.
+     */
+    public IndicatorGroup() {
+        this.indicators = new Indicator[4];
+    }
+
+    /**
+     * Adds an indicator.
+     *
+     * @param indicator the indicator
+     */
+    public synchronized void add(Indicator indicator) {
+        if (size == indicators.length) {
+            indicators = Arrays.copyOf(indicators, size * 2);
+        }
+        indicators[size++] = indicator;
+    }
+
+    /**
+     * Removes an indicator.
+     *
+     * @param indicator the indicator
+     *
+     * @return true if the indicator was removed
+     */
+    public synchronized boolean remove(Indicator indicator) {
+        for (int index = 0; index < size; index++) {
+            if (indicators[index] == indicator) {
+                System.arraycopy(indicators, index + 1, indicators, index, size - index - 1);
+                indicators[--size] = null;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Updates every indicator with the current bar of an aggregate cursor.
+     *
+     * @param aggregateCursor the aggregate cursor
+     */
+    public void update(AggregateCursor aggregateCursor) {
+        if (size == 0) {
+            return;
+        }
+
+        long timestamp = aggregateCursor.getTimestamp();
+        double open = aggregateCursor.getOpen();
+        double high = aggregateCursor.getHigh();
+        double low = aggregateCursor.getLow();
+        double close = aggregateCursor.getClose();
+        double volume = aggregateCursor.getVolume();
+        for (int index = 0; index < size; index++) {
+            indicators[index].update(timestamp, open, high, low, close, volume);
+        }
+    }
+
+    /**
+     * Resets every indicator.
+     */
+    public synchronized void reset() {
+        for (int index = 0; index < size; index++) {
+            indicators[index].reset();
+        }
+    }
+
+    /**
+     * Creates a copy of this group with a copy of every indicator (see {@link Indicator#copy()}).
+     *
+     * @return the indicator group
+     */
+    public synchronized IndicatorGroup copy() {
+        IndicatorGroup indicatorGroup = new IndicatorGroup();
+        for (int index = 0; index < size; index++) {
+            indicatorGroup.add(indicators[index].copy());
+        }
+        return indicatorGroup;
+    }
+
+    /**
+     * Copies the state of every indicator of another group into the indicator at the same index of this group (see
+     * {@link Indicator#copyStateFrom(Indicator)}).
+     *
+     * @param indicatorGroup the indicator group
+     *
+     * @throws IllegalArgumentException if the groups have different indicators
+     */
+    public synchronized void copyStateFrom(IndicatorGroup indicatorGroup) {
+        synchronized (indicatorGroup) {
+            if (indicatorGroup.size != size) {
+                throw new IllegalArgumentException("Can't copy the state of a group of " + indicatorGroup.size +
+                        " indicators into a group of " + size + " indicators!");
+            }
+            for (int index = 0; index < size; index++) {
+                indicators[index].copyStateFrom(indicatorGroup.indicators[index]);
+            }
+        }
+    }
+
+    /**
+     * Writes the type and the state of every indicator (see {@link Indicator#writeState(DataOutput)}).
+     *
+     * @param dataOutput the data output
+     *
+     * @throws IOException                   thrown for {@link IOException}s
+     * @throws UnsupportedOperationException if an indicator doesn't support checkpoints
+     */
+    @Override
+    public synchronized void writeState(DataOutput dataOutput) throws IOException {
+        dataOutput.writeInt(size);
+        for (int index = 0; index < size; index++) {
+            dataOutput.writeUTF(indicators[index].getClass().getName());
+            indicators[index].writeState(dataOutput);
+        }
+    }
+
+    /**
+     * Reads the state of every indicator of a group that was written by {@link #writeState(DataOutput)} into the
+     * indicator at the same index of this group (see {@link Indicator#readState(DataInput)}).
+     *
+     * @param dataInput the data input
+     *
+     * @throws IOException              thrown for {@link IOException}s
+     * @throws IllegalArgumentException if the groups have different indicators
+     */
+    @Override
+    public synchronized void readState(DataInput dataInput) throws IOException {
+        int sourceSize = dataInput.readInt();
+        if (sourceSize != size) {
+            throw new IllegalArgumentException("Can't read the state of a group of " + sourceSize +
+                    " indicators into a group of " + size + " indicators!");
+        }
+        for (int index = 0; index < size; index++) {
+            String className = dataInput.readUTF();
+            if (!className.equals(indicators[index].getClass().getName())) {
+                throw new IllegalArgumentException("Can't read the state of a " + className + " into a " +
+                        indicators[index].getClass().getName() + "!");
+            }
+            indicators[index].readState(dataInput);
+        }
+    }
+
+    /**
+     * Gets the number of indicators.
+     *
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+}
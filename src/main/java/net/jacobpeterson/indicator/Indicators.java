@@ -0,0 +1,176 @@
+package net.jacobpeterson.indicator;
+
+import net.jacobpeterson.algorithm.update.ticker.AggregateUpdateType;
+import net.jacobpeterson.checkpoint.Checkpointable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The registry of {@link Indicator}s attached to a {@link net.jacobpeterson.algorithm.TradingAlgorithm} by ticker and
+ * {@link AggregateUpdateType}. The {@link net.jacobpeterson.engine.ReplayEngine} looks up the {@link IndicatorGroup}
+ * of each aggregate stream once and then updates it before every aggregate callback.
+ */
+public class Indicators implements Checkpointable {
+
+    private final HashMap<String, EnumMap<AggregateUpdateType, IndicatorGroup>> indicatorGroupsOfTickers;
+
+    /**
+     * Instantiates a new Indicators.
+     */
+    public Indicators() {
+        this.indicatorGroupsOfTickers = new HashMap<>();
+    }
+
+    /**
+     * Attaches an indicator to a ticker and aggregate update type.
+     *
+     * @param <I>                 the {@link Indicator} type
+     * @param ticker              the ticker
+     * @param aggregateUpdateType the aggregate update type
+     * @param indicator           the indicator
+     *
+     * @return the indicator
+     */
+    public <I extends Indicator> I attach(String ticker, AggregateUpdateType aggregateUpdateType, I indicator) {
+        getIndicatorGroup(ticker, aggregateUpdateType).add(indicator);
+        return indicator;
+    }
+
+    /**
+     * Detaches an indicator from a ticker and aggregate update type.
+     *
+     * @param ticker              the ticker
+     * @param aggregateUpdateType the aggregate update type
+     * @param indicator           the indicator
+     *
+     * @return true if the indicator was detached
+     */
+    public boolean detach(String ticker, AggregateUpdateType aggregateUpdateType, Indicator indicator) {
+        return getIndicatorGroup(ticker, aggregateUpdateType).remove(indicator);
+    }
+
+    /**
+     * Gets the indicator group of a ticker and aggregate update type, creating it if necessary. The returned group
+     * reflects indicators that are attached later.
+     *
+     * @param ticker              the ticker
+     * @param aggregateUpdateType the aggregate update type
+     *
+     * @return the indicator group
+     */
+    public synchronized IndicatorGroup getIndicatorGroup(String ticker, AggregateUpdateType aggregateUpdateType) {
+        return indicatorGroupsOfTickers.computeIfAbsent(ticker, t -> new EnumMap<>(AggregateUpdateType.class))
+                .computeIfAbsent(aggregateUpdateType, a -> new IndicatorGroup());
+    }
+
+    /**
+     * Creates a copy of this registry with a copy of every attached indicator (e.g. to checkpoint the warmed up
+     * indicators of an algorithm). See {@link Indicator#copy()}.
+     *
+     * @return the indicators
+     */
+    public synchronized Indicators copy() {
+        Indicators copy = new Indicators();
+        for (Map.Entry<String, EnumMap<AggregateUpdateType, IndicatorGroup>> entry :
+                indicatorGroupsOfTickers.entrySet()) {
+            EnumMap<AggregateUpdateType, IndicatorGroup> indicatorGroups = new EnumMap<>(AggregateUpdateType.class);
+            entry.getValue().forEach((aggregateUpdateType, indicatorGroup) ->
+                    indicatorGroups.put(aggregateUpdateType, indicatorGroup.copy()));
+            copy.indicatorGroupsOfTickers.put(entry.getKey(), indicatorGroups);
+        }
+        return copy;
+    }
+
+    /**
+     * Copies the state of the indicators of another registry into the indicators that are attached to the same ticker
+     * and aggregate update type (in the same order) of this registry, so that an algorithm whose indicators were just
+     * attached resumes from a checkpoint that was created with {@link #copy()}. See {@link
+     * Indicator#copyStateFrom(Indicator)}.
+     *
+     * @param indicators the indicators
+     *
+     * @throws IllegalArgumentException if the registries have different indicators
+     */
+    public synchronized void copyStateFrom(Indicators indicators) {
+        synchronized (indicators) {
+            for (Map.Entry<String, EnumMap<AggregateUpdateType, IndicatorGroup>> entry :
+                    indicators.indicatorGroupsOfTickers.entrySet()) {
+                entry.getValue().forEach((aggregateUpdateType, indicatorGroup) ->
+                        getIndicatorGroup(entry.getKey(), aggregateUpdateType).copyStateFrom(indicatorGroup));
+            }
+        }
+    }
+
+    /**
+     * Writes the state of every attached indicator by ticker and aggregate update type (see {@link
+     * IndicatorGroup#writeState(DataOutput)}).
+     *
+     * @param dataOutput the data output
+     *
+     * @throws IOException                   thrown for {@link IOException}s
+     * @throws UnsupportedOperationException if an indicator doesn't support checkpoints
+     */
+    @Override
+    public synchronized void writeState(DataOutput dataOutput) throws IOException {
+        ArrayList<String> tickers = new ArrayList<>();
+        ArrayList<AggregateUpdateType> aggregateUpdateTypes = new ArrayList<>();
+        ArrayList<IndicatorGroup> indicatorGroups = new ArrayList<>();
+        for (Map.Entry<String, EnumMap<AggregateUpdateType, IndicatorGroup>> entry :
+                indicatorGroupsOfTickers.entrySet()) {
+            for (Map.Entry<AggregateUpdateType, IndicatorGroup> groupEntry : entry.getValue().entrySet()) {
+                if (groupEntry.getValue().size() > 0) { // Empty groups are created by lookups
+                    tickers.add(entry.getKey());
+                    aggregateUpdateTypes.add(groupEntry.getKey());
+                    indicatorGroups.add(groupEntry.getValue());
+                }
+            }
+        }
+
+        dataOutput.writeInt(indicatorGroups.size());
+        for (int index = 0; index < indicatorGroups.size(); index++) {
+            dataOutput.writeUTF(tickers.get(index));
+            dataOutput.writeUTF(aggregateUpdateTypes.get(index).name());
+            indicatorGroups.get(index).writeState(dataOutput);
+        }
+    }
+
+    /**
+     * Reads the state of the indicators of a registry that was written by {@link #writeState(DataOutput)} into the
+     * indicators that are attached to the same ticker and aggregate update type (in the same order) of this registry,
+     * so that an algorithm whose indicators were just attached resumes from a checkpoint. See {@link
+     * IndicatorGroup#readState(DataInput)}.
+     *
+     * @param dataInput the data input
+     *
+     * @throws IOException              thrown for {@link IOException}s
+     * @throws IllegalArgumentException if the registries have different indicators
+     */
+    @Override
+    public synchronized void readState(DataInput dataInput) throws IOException {
+        int indicatorGroupCount = dataInput.readInt();
+        for (int index = 0; index < indicatorGroupCount; index++) {
+            String ticker = dataInput.readUTF();
+            String aggregateUpdateTypeName = dataInput.readUTF();
+            AggregateUpdateType aggregateUpdateType;
+            try {
+                aggregateUpdateType = AggregateUpdateType.valueOf(aggregateUpdateTypeName);
+            } catch (IllegalArgumentException exception) {
+                throw new IOException("Unknown aggregate update type: " + aggregateUpdateTypeName, exception);
+            }
+            getIndicatorGroup(ticker, aggregateUpdateType).readState(dataInput);
+        }
+    }
+
+    /**
+     * Resets every attached indicator (e.g. before the same algorithm is run again).
+     */
+    public synchronized void reset() {
+        indicatorGroupsOfTickers.values().forEach(groups -> groups.values().forEach(IndicatorGroup::reset));
+    }
+}
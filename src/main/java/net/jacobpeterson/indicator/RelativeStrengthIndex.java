@@ -0,0 +1,123 @@
+package net.jacobpeterson.indicator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Wilder's relative strength index of closes. The average gain and loss are seeded with the simple average of the first
+ * <code>length</code> close changes and then smoothed with a factor of <code>1 / length</code>.
+ */
+public class RelativeStrengthIndex extends Indicator {
+
+    private final int length;
+    private double previousClose;
+    private int changeCount;
+    private double averageGain;
+    private double averageLoss;
+
+    /**
+     * Instantiates a new Relative strength index.
+     *
+     * @param length the length
+     */
+    public RelativeStrengthIndex(int length) {
+        if (length <= 0) {
+            throw new IllegalArgumentException("Length must be positive!");
+        }
+
+        this.length = length;
+
+        this.reset();
+    }
+
+    @Override
+    public void update(long timestamp, double open, double high, double low, double close, double volume) {
+        if (previousClose != previousClose) { // First close
+            previousClose = close;
+            return;
+        }
+
+        double change = close - previousClose;
+        double gain = change > 0 ? change : 0;
+        double loss = change < 0 ? -change : 0;
+        previousClose = close;
+
+        if (changeCount < length) {
+            averageGain += gain / length;
+            averageLoss += loss / length;
+            changeCount++;
+        } else {
+            averageGain += (gain - averageGain) / length;
+            averageLoss += (loss - averageLoss) / length;
+        }
+    }
+
+    @Override
+    public double getValue() {
+        if (changeCount < length) {
+            return Double.NaN;
+        }
+        if (averageLoss == 0) {
+            return averageGain == 0 ? 50 : 100;
+        }
+        return 100 - 100 / (1 + averageGain / averageLoss);
+    }
+
+    @Override
+    public boolean isReady() {
+        return changeCount == length;
+    }
+
+    @Override
+    public void reset() {
+        previousClose = Double.NaN;
+        changeCount = 0;
+        averageGain = 0;
+        averageLoss = 0;
+    }
+
+    @Override
+    public RelativeStrengthIndex copy() {
+        RelativeStrengthIndex relativeStrengthIndex = new RelativeStrengthIndex(length);
+        relativeStrengthIndex.copyStateFrom(this);
+        return relativeStrengthIndex;
+    }
+
+    @Override
+    public void copyStateFrom(Indicator indicator) {
+        RelativeStrengthIndex relativeStrengthIndex = castToThisType(indicator);
+        checkLength(length, relativeStrengthIndex.length);
+        previousClose = relativeStrengthIndex.previousClose;
+        changeCount = relativeStrengthIndex.changeCount;
+        averageGain = relativeStrengthIndex.averageGain;
+        averageLoss = relativeStrengthIndex.averageLoss;
+    }
+
+    @Override
+    public void writeState(DataOutput dataOutput) throws IOException {
+        dataOutput.writeInt(length);
+        dataOutput.writeDouble(previousClose);
+        dataOutput.writeInt(changeCount);
+        dataOutput.writeDouble(averageGain);
+        dataOutput.writeDouble(averageLoss);
+    }
+
+    @Override
+    public void readState(DataInput dataInput) throws IOException {
+        checkLength(length, dataInput.readInt());
+        previousClose = dataInput.readDouble();
+        changeCount = dataInput.readInt();
+        averageGain = dataInput.readDouble();
+        averageLoss = dataInput.readDouble();
+    }
+
+    /**
+     * Gets length.
+     *
+     * @return the length
+     */
+    public int getLength() {
+        return length;
+    }
+}
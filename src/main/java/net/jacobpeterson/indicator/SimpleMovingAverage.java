@@ -0,0 +1,96 @@
+package net.jacobpeterson.indicator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A simple moving average of closes. The running sum is recomputed from the ring buffer once every <code>length</code>
+ * updates so that floating point error can't accumulate over a long backtest.
+ */
+public class SimpleMovingAverage extends Indicator {
+
+    private final DoubleRingBuffer closes;
+    private double sum;
+    private int updatesUntilResync;
+
+    /**
+     * Instantiates a new Simple moving average.
+     *
+     * @param length the length
+     */
+    public SimpleMovingAverage(int length) {
+        this.closes = new DoubleRingBuffer(length);
+
+        this.reset();
+    }
+
+    @Override
+    public void update(long timestamp, double open, double high, double low, double close, double volume) {
+        double evicted = closes.add(close);
+        if (--updatesUntilResync == 0) {
+            sum = 0;
+            for (int index = 0; index < closes.size(); index++) {
+                sum += closes.get(index);
+            }
+            updatesUntilResync = closes.getCapacity();
+        } else {
+            sum += evicted == evicted ? close - evicted : close; // 'evicted' is NaN until the buffer is full
+        }
+    }
+
+    @Override
+    public double getValue() {
+        return closes.isFull() ? sum / closes.getCapacity() : Double.NaN;
+    }
+
+    @Override
+    public boolean isReady() {
+        return closes.isFull();
+    }
+
+    @Override
+    public void reset() {
+        closes.clear();
+        sum = 0;
+        updatesUntilResync = closes.getCapacity();
+    }
+
+    @Override
+    public SimpleMovingAverage copy() {
+        SimpleMovingAverage simpleMovingAverage = new SimpleMovingAverage(getLength());
+        simpleMovingAverage.copyStateFrom(this);
+        return simpleMovingAverage;
+    }
+
+    @Override
+    public void copyStateFrom(Indicator indicator) {
+        SimpleMovingAverage simpleMovingAverage = castToThisType(indicator);
+        closes.copyFrom(simpleMovingAverage.closes);
+        sum = simpleMovingAverage.sum;
+        updatesUntilResync = simpleMovingAverage.updatesUntilResync;
+    }
+
+    @Override
+    public void writeState(DataOutput dataOutput) throws IOException {
+        closes.writeState(dataOutput);
+        dataOutput.writeDouble(sum);
+        dataOutput.writeInt(updatesUntilResync);
+    }
+
+    @Override
+    public void readState(DataInput dataInput) throws IOException {
+        closes.readState(dataInput);
+        sum = dataInput.readDouble();
+        updatesUntilResync = dataInput.readInt();
+    }
+
+    /**
+     * Gets length.
+     *
+     * @return the length
+     */
+    public int getLength() {
+        return closes.getCapacity();
+    }
+}
@@ -0,0 +1,170 @@
+package net.jacobpeterson.indicator;
+
+import net.jacobpeterson.util.TimeUtil;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalTime;
+
+/**
+ * A volume weighted average price of the typical price (<code>(high + low + close) / 3</code>) of bars. By default,
+ * it is anchored to the trading day and resets at midnight in New York. If a length is given, it is instead a rolling
+ * VWAP over the last <code>length</code> bars.
+ */
+public class VolumeWeightedAveragePrice extends Indicator {
+
+    private final DoubleRingBuffer priceVolumes;
+    private final DoubleRingBuffer volumes;
+    private double priceVolumeSum;
+    private double volumeSum;
+    private long nextSessionTimestamp;
+    private int updatesUntilResync;
+
+    /**
+     * Instantiates a new Volume weighted average price that is anchored to the trading day.
+     */
+    public VolumeWeightedAveragePrice() {
+        this.priceVolumes = null;
+        this.volumes = null;
+
+        this.reset();
+    }
+
+    /**
+     * Instantiates a new Volume weighted average price that is rolled over the last <code>length</code> bars.
+     *
+     * @param length the length
+     */
+    public VolumeWeightedAveragePrice(int length) {
+        this.priceVolumes = new DoubleRingBuffer(length);
+        this.volumes = new DoubleRingBuffer(length);
+
+        this.reset();
+    }
+
+    @Override
+    public void update(long timestamp, double open, double high, double low, double close, double volume) {
+        double priceVolume = (high + low + close) / 3 * volume;
+
+        if (priceVolumes == null) {
+            if (timestamp >= nextSessionTimestamp) {
+                // This allocates, but only once per trading day
+                nextSessionTimestamp = TimeUtil.toEpochNanos(TimeUtil.toNewYorkDate(timestamp).plusDays(1),
+                        LocalTime.MIDNIGHT);
+                priceVolumeSum = 0;
+                volumeSum = 0;
+            }
+            priceVolumeSum += priceVolume;
+            volumeSum += volume;
+            return;
+        }
+
+        double evictedPriceVolume = priceVolumes.add(priceVolume);
+        double evictedVolume = volumes.add(volume);
+        if (--updatesUntilResync == 0) {
+            priceVolumeSum = 0;
+            volumeSum = 0;
+            for (int index = 0; index < volumes.size(); index++) {
+                priceVolumeSum += priceVolumes.get(index);
+                volumeSum += volumes.get(index);
+            }
+            updatesUntilResync = volumes.getCapacity();
+        } else {
+            priceVolumeSum += priceVolume;
+            volumeSum += volume;
+            if (evictedVolume == evictedVolume) { // 'evictedVolume' is NaN until the buffer is full
+                priceVolumeSum -= evictedPriceVolume;
+                volumeSum -= evictedVolume;
+            }
+        }
+    }
+
+    @Override
+    public double getValue() {
+        return isReady() && volumeSum > 0 ? priceVolumeSum / volumeSum : Double.NaN;
+    }
+
+    @Override
+    public boolean isReady() {
+        return priceVolumes == null ? nextSessionTimestamp != Long.MIN_VALUE : volumes.isFull();
+    }
+
+    @Override
+    public void reset() {
+        if (priceVolumes != null) {
+            priceVolumes.clear();
+            volumes.clear();
+            updatesUntilResync = volumes.getCapacity();
+        }
+        priceVolumeSum = 0;
+        volumeSum = 0;
+        nextSessionTimestamp = Long.MIN_VALUE;
+    }
+
+    @Override
+    public VolumeWeightedAveragePrice copy() {
+        VolumeWeightedAveragePrice volumeWeightedAveragePrice = priceVolumes == null ?
+                                                                new VolumeWeightedAveragePrice() :
+                                                                new VolumeWeightedAveragePrice(volumes.getCapacity());
+        volumeWeightedAveragePrice.copyStateFrom(this);
+        return volumeWeightedAveragePrice;
+    }
+
+    @Override
+    public void copyStateFrom(Indicator indicator) {
+        VolumeWeightedAveragePrice volumeWeightedAveragePrice = castToThisType(indicator);
+        if (volumeWeightedAveragePrice.isSessionAnchored() != isSessionAnchored()) {
+            throw new IllegalArgumentException("Can't copy the state of a session anchored VWAP into a rolling VWAP " +
+                    "or vice versa!");
+        }
+
+        if (priceVolumes != null) {
+            priceVolumes.copyFrom(volumeWeightedAveragePrice.priceVolumes);
+            volumes.copyFrom(volumeWeightedAveragePrice.volumes);
+            updatesUntilResync = volumeWeightedAveragePrice.updatesUntilResync;
+        }
+        priceVolumeSum = volumeWeightedAveragePrice.priceVolumeSum;
+        volumeSum = volumeWeightedAveragePrice.volumeSum;
+        nextSessionTimestamp = volumeWeightedAveragePrice.nextSessionTimestamp;
+    }
+
+    @Override
+    public void writeState(DataOutput dataOutput) throws IOException {
+        dataOutput.writeBoolean(isSessionAnchored());
+        if (priceVolumes != null) {
+            priceVolumes.writeState(dataOutput);
+            volumes.writeState(dataOutput);
+            dataOutput.writeInt(updatesUntilResync);
+        }
+        dataOutput.writeDouble(priceVolumeSum);
+        dataOutput.writeDouble(volumeSum);
+        dataOutput.writeLong(nextSessionTimestamp);
+    }
+
+    @Override
+    public void readState(DataInput dataInput) throws IOException {
+        if (dataInput.readBoolean() != isSessionAnchored()) {
+            throw new IllegalArgumentException("Can't read the state of a session anchored VWAP into a rolling VWAP " +
+                    "or vice versa!");
+        }
+
+        if (priceVolumes != null) {
+            priceVolumes.readState(dataInput);
+            volumes.readState(dataInput);
+            updatesUntilResync = dataInput.readInt();
+        }
+        priceVolumeSum = dataInput.readDouble();
+        volumeSum = dataInput.readDouble();
+        nextSessionTimestamp = dataInput.readLong();
+    }
+
+    /**
+     * Returns true if this is anchored to the trading day rather than rolled over a number of bars.
+     *
+     * @return the boolean
+     */
+    public boolean isSessionAnchored() {
+        return priceVolumes == null;
+    }
+}
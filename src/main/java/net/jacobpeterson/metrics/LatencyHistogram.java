@@ -0,0 +1,184 @@
+package net.jacobpeterson.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread safe histogram of non-negative values (typically nanoseconds) with log-linear buckets in the style of
+ * HdrHistogram: values below 64 are counted exactly and every power of two above that is split into 32 linear
+ * sub-buckets, so any recorded value is reported within about 3% in a fixed 15 KB of counts. Recording is
+ * <code>O(1)</code> and allocation-free.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+    private static final int BUCKET_COUNT =
+            SUB_BUCKET_COUNT + (Long.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKET_HALF_COUNT;
+
+    private final AtomicLongArray counts;
+    private final LongAdder sum;
+    private final AtomicLong max;
+
+    /**
+     * Instantiates a new Latency histogram.
+     */
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKET_COUNT);
+        this.sum = new LongAdder();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param value the value (negative values are recorded as 0)
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+
+        counts.incrementAndGet(getBucketIndex(value));
+        sum.add(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Gets the index of the bucket of a value.
+     *
+     * @param value the value
+     *
+     * @return the bucket index
+     */
+    private static int getBucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        // The top SUB_BUCKET_BITS bits of the value, which are in [SUB_BUCKET_HALF_COUNT, SUB_BUCKET_COUNT)
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS + 1));
+        return SUB_BUCKET_COUNT + (exponent - SUB_BUCKET_BITS) * SUB_BUCKET_HALF_COUNT +
+                (subBucket - SUB_BUCKET_HALF_COUNT);
+    }
+
+    /**
+     * Gets the highest value that is counted in a bucket.
+     *
+     * @param bucketIndex the bucket index
+     *
+     * @return the highest value
+     */
+    private static long getBucketHighestValue(int bucketIndex) {
+        if (bucketIndex < SUB_BUCKET_COUNT) {
+            return bucketIndex;
+        }
+        int offset = bucketIndex - SUB_BUCKET_COUNT;
+        int exponent = offset / SUB_BUCKET_HALF_COUNT + SUB_BUCKET_BITS;
+        long subBucket = offset % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+        int shift = exponent - SUB_BUCKET_BITS + 1;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Gets the value at a percentile, which is the highest value of the bucket that contains the percentile (capped
+     * at {@link #getMax()}).
+     *
+     * @param percentile the percentile (0 to 100)
+     *
+     * @return the value (0 if nothing is recorded)
+     */
+    public long getValueAtPercentile(double percentile) {
+        long totalCount = getCount();
+        if (totalCount == 0) {
+            return 0;
+        }
+
+        long targetCount = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * totalCount));
+        long cumulativeCount = 0;
+        for (int bucketIndex = 0; bucketIndex < BUCKET_COUNT; bucketIndex++) {
+            cumulativeCount += counts.get(bucketIndex);
+            if (cumulativeCount >= targetCount) {
+                return Math.min(getBucketHighestValue(bucketIndex), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Adds the counts of another histogram to this one.
+     *
+     * @param latencyHistogram the latency histogram
+     */
+    public void add(LatencyHistogram latencyHistogram) {
+        for (int bucketIndex = 0; bucketIndex < BUCKET_COUNT; bucketIndex++) {
+            long bucketCount = latencyHistogram.counts.get(bucketIndex);
+            if (bucketCount != 0) {
+                counts.addAndGet(bucketIndex, bucketCount);
+            }
+        }
+        sum.add(latencyHistogram.getSum());
+        long otherMax = latencyHistogram.getMax();
+        long currentMax = max.get();
+        while (otherMax > currentMax && !max.compareAndSet(currentMax, otherMax)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Resets this histogram. This isn't atomic with respect to concurrent recording.
+     */
+    public void reset() {
+        for (int bucketIndex = 0; bucketIndex < BUCKET_COUNT; bucketIndex++) {
+            counts.set(bucketIndex, 0);
+        }
+        sum.reset();
+        max.set(0);
+    }
+
+    /**
+     * Gets the number of recorded values. This sums every bucket, so it isn't meant for hot paths.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        long totalCount = 0;
+        for (int bucketIndex = 0; bucketIndex < BUCKET_COUNT; bucketIndex++) {
+            totalCount += counts.get(bucketIndex);
+        }
+        return totalCount;
+    }
+
+    /**
+     * Gets the sum of the recorded values.
+     *
+     * @return the sum
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Gets the mean of the recorded values.
+     *
+     * @return the mean (0 if nothing is recorded)
+     */
+    public double getMean() {
+        long currentCount = getCount();
+        return currentCount == 0 ? 0 : (double) getSum() / currentCount;
+    }
+
+    /**
+     * Gets the maximum recorded value.
+     *
+     * @return the max
+     */
+    public long getMax() {
+        return max.get();
+    }
+}
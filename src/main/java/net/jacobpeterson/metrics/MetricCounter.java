@@ -0,0 +1,52 @@
+package net.jacobpeterson.metrics;
+
+/**
+ * The enum Metric counter of the quantities that are counted by {@link Metrics}.
+ */
+public enum MetricCounter {
+
+    /**
+     * Events dispatched by the {@link net.jacobpeterson.engine.ReplayEngine}.
+     */
+    EVENTS("Events"),
+
+    /**
+     * Timers fired by the {@link net.jacobpeterson.engine.ReplayEngine}.
+     */
+    TIMERS("Timers"),
+
+    /**
+     * Rows of the segments loaded by {@link net.jacobpeterson.data.iterators.SegmentIterator}s.
+     */
+    SEGMENT_ROWS("Segment rows"),
+
+    /**
+     * Segments that failed to be fetched.
+     */
+    FETCH_FAILURES("Fetch failures"),
+
+    /**
+     * Orders that were filled.
+     */
+    ORDER_FILLS("Order fills");
+
+    private final String displayName;
+
+    /**
+     * Instantiates a new Metric counter.
+     *
+     * @param displayName the display name
+     */
+    MetricCounter(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * Gets display name.
+     *
+     * @return the display name
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+}
@@ -0,0 +1,92 @@
+package net.jacobpeterson.metrics;
+
+/**
+ * The enum Metric type of the operations that are timed by {@link Metrics}.
+ */
+public enum MetricType {
+
+    /**
+     * Fetching a segment from Polygon (via the {@link net.jacobpeterson.data.fetch.DataFetcher}) and caching it.
+     */
+    DATA_FETCH("Data fetch"),
+
+    /**
+     * Reading a cached segment (via the {@link net.jacobpeterson.data.cache.SegmentLoader}).
+     */
+    SEGMENT_READ("Segment read"),
+
+    /**
+     * Waiting for the segment of the next date in a {@link net.jacobpeterson.data.iterators.SegmentIterator}.
+     */
+    SEGMENT_WAIT("Segment wait"),
+
+    /**
+     * Advancing an event source and merging its next event (including any segment wait).
+     */
+    EVENT_MERGE("Event merge"),
+
+    /**
+     * Updating the indicators attached to an aggregate stream.
+     */
+    INDICATOR_UPDATE("Indicator update"),
+
+    /**
+     * Matching resting orders against a quote, trade, or bar.
+     */
+    BROKER_MATCH("Broker match"),
+
+    /**
+     * Submitting an order (including any immediate fill).
+     */
+    BROKER_SUBMIT("Broker submit"),
+
+    /**
+     * Canceling an order.
+     */
+    BROKER_CANCEL("Broker cancel"),
+
+    /**
+     * The aggregate callbacks of the algorithm.
+     */
+    AGGREGATE_CALLBACK("Aggregate callback"),
+
+    /**
+     * The trade callbacks of the algorithm.
+     */
+    TRADE_CALLBACK("Trade callback"),
+
+    /**
+     * The quote callbacks of the algorithm.
+     */
+    QUOTE_CALLBACK("Quote callback"),
+
+    /**
+     * The market event callbacks of the algorithm.
+     */
+    MARKET_EVENT_CALLBACK("Market event callback"),
+
+    /**
+     * The timer callbacks of the algorithm.
+     */
+    TIMER_CALLBACK("Timer callback");
+
+    private final String displayName;
+
+    /**
+     * Instantiates a new Metric type.
+     *
+     * @param displayName the display name
+     */
+    MetricType(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * Gets display name.
+     *
+     * @return the display name
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+}
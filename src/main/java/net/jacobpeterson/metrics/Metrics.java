@@ -0,0 +1,171 @@
+package net.jacobpeterson.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hot-path instrumentation: a {@link LatencyHistogram} (in nanoseconds) per {@link MetricType} and a counter per
+ * {@link MetricCounter}. Metrics are disabled by default. Instrumented code reads {@link #isEnabled()} (usually once
+ * per run) and skips both the timing and the recording when it is false, so disabled metrics cost a predictable
+ * branch.
+ * <p>
+ * This is thread safe.
+ */
+public class Metrics {
+
+    private final LatencyHistogram[] latencyHistograms;
+    private final LongAdder[] counters;
+    private volatile boolean enabled;
+
+    /**
+     * Instantiates a new disabled Metrics.
+     */
+    public Metrics() {
+        this.latencyHistograms = new LatencyHistogram[MetricType.values().length];
+        for (int index = 0; index < latencyHistograms.length; index++) {
+            latencyHistograms[index] = new LatencyHistogram();
+        }
+        this.counters = new LongAdder[MetricCounter.values().length];
+        for (int index = 0; index < counters.length; index++) {
+            counters[index] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records the latency of an operation.
+     *
+     * @param metricType the metric type
+     * @param nanos      the nanoseconds
+     */
+    public void record(MetricType metricType, long nanos) {
+        latencyHistograms[metricType.ordinal()].record(nanos);
+    }
+
+    /**
+     * Records the latency of an operation that started at the given {@link System#nanoTime()} and returns the current
+     * {@link System#nanoTime()} so that consecutive operations can be timed with one clock read each.
+     *
+     * @param metricType the metric type
+     * @param startNanos the start nanos
+     *
+     * @return the current nano time
+     */
+    public long lap(MetricType metricType, long startNanos) {
+        long nanos = System.nanoTime();
+        latencyHistograms[metricType.ordinal()].record(nanos - startNanos);
+        return nanos;
+    }
+
+    /**
+     * Adds to a counter.
+     *
+     * @param metricCounter the metric counter
+     * @param amount        the amount
+     */
+    public void add(MetricCounter metricCounter, long amount) {
+        counters[metricCounter.ordinal()].add(amount);
+    }
+
+    /**
+     * Increments a counter.
+     *
+     * @param metricCounter the metric counter
+     */
+    public void increment(MetricCounter metricCounter) {
+        counters[metricCounter.ordinal()].increment();
+    }
+
+    /**
+     * Adds the histograms and counters of other metrics to these.
+     *
+     * @param metrics the metrics
+     */
+    public void add(Metrics metrics) {
+        for (int index = 0; index < latencyHistograms.length; index++) {
+            latencyHistograms[index].add(metrics.latencyHistograms[index]);
+        }
+        for (int index = 0; index < counters.length; index++) {
+            counters[index].add(metrics.counters[index].sum());
+        }
+    }
+
+    /**
+     * Resets every histogram and counter.
+     */
+    public void reset() {
+        for (LatencyHistogram latencyHistogram : latencyHistograms) {
+            latencyHistogram.reset();
+        }
+        for (LongAdder counter : counters) {
+            counter.reset();
+        }
+    }
+
+    /**
+     * Gets the latency histogram of a metric type.
+     *
+     * @param metricType the metric type
+     *
+     * @return the latency histogram
+     */
+    public LatencyHistogram getLatencyHistogram(MetricType metricType) {
+        return latencyHistograms[metricType.ordinal()];
+    }
+
+    /**
+     * Gets the value of a counter.
+     *
+     * @param metricCounter the metric counter
+     *
+     * @return the count
+     */
+    public long getCount(MetricCounter metricCounter) {
+        return counters[metricCounter.ordinal()].sum();
+    }
+
+    /**
+     * Formats a table of every metric type that has been recorded and every counter that isn't zero.
+     *
+     * @return the report
+     */
+    public String toReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-22s %12s %12s %10s %10s %10s %10s %10s%n", "Operation", "Count", "Total ms",
+                "Mean us", "p50 us", "p99 us", "p99.9 us", "Max us"));
+        for (MetricType metricType : MetricType.values()) {
+            LatencyHistogram latencyHistogram = getLatencyHistogram(metricType);
+            if (latencyHistogram.getCount() == 0) {
+                continue;
+            }
+            report.append(String.format("%-22s %12d %12.1f %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+                    metricType.getDisplayName(), latencyHistogram.getCount(), latencyHistogram.getSum() / 1e6,
+                    latencyHistogram.getMean() / 1e3, latencyHistogram.getValueAtPercentile(50) / 1e3,
+                    latencyHistogram.getValueAtPercentile(99) / 1e3,
+                    latencyHistogram.getValueAtPercentile(99.9) / 1e3, latencyHistogram.getMax() / 1e3));
+        }
+        for (MetricCounter metricCounter : MetricCounter.values()) {
+            long count = getCount(metricCounter);
+            if (count != 0) {
+                report.append(String.format("%-22s %12d%n", metricCounter.getDisplayName(), count));
+            }
+        }
+        return report.toString();
+    }
+
+    /**
+     * Returns true if metrics are being recorded.
+     *
+     * @return the boolean
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets if metrics are recorded.
+     *
+     * @param enabled the enabled
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+}
@@ -0,0 +1,217 @@
+package net.jacobpeterson.sweep;
+
+import net.jacobpeterson.AlpacaJavaBacktest;
+import net.jacobpeterson.algorithm.TradingAlgorithm;
+import net.jacobpeterson.data.BacktestData;
+import net.jacobpeterson.data.cache.SegmentCache;
+import net.jacobpeterson.data.cache.SegmentLoader;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Runs a backtest for every point of a parameter grid in parallel on a {@link ForkJoinPool}. Every backtest gets its
+ * own {@link TradingAlgorithm} (from a factory) and {@link net.jacobpeterson.broker.BacktestBroker}, but they all share
+ * one {@link BacktestData} whose segments are loaded through a {@link SegmentCache}, so each ticker/day is only read
+ * and decoded once regardless of the number of backtests (as long as the days of the sweep fit into the cache). If the
+ * {@link SegmentLoader} of the {@link BacktestData} is already a {@link SegmentCache} (e.g. {@link
+ * SegmentCache#getSharedInstance()}) it is used as is, otherwise it is wrapped by a {@link SegmentCache} of {@link
+ * SegmentCache#getDefaultMaximumBytes()} for the duration of the sweep.
+ * <p>
+ * Since the {@link SegmentLoader} of the {@link BacktestData} may be replaced while a sweep is running, don't run two
+ * sweeps on the same {@link BacktestData} at the same time.
+ *
+ * @param <P> the parameters type
+ */
+public class ParameterSweep<P> {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final BacktestData backtestData;
+    private final List<P> parameterGrid;
+    private final Function<P, TradingAlgorithm> tradingAlgorithmFactory;
+    private Consumer<AlpacaJavaBacktest> backtestConfigurer;
+    private ToDoubleFunction<AlpacaJavaBacktest> scoreFunction;
+    private int parallelism;
+
+    /**
+     * Instantiates a new Parameter sweep. By default, backtests are scored by their final account equity and run with a
+     * parallelism of the number of available processors.
+     *
+     * @param backtestData            the backtest data
+     * @param parameterGrid           the parameter grid
+     * @param tradingAlgorithmFactory the trading algorithm factory
+     * @param backtestConfigurer      configures each {@link AlpacaJavaBacktest} before it is run (e.g. from/to and
+     *                                update types)
+     */
+    public ParameterSweep(BacktestData backtestData, List<P> parameterGrid,
+            Function<P, TradingAlgorithm> tradingAlgorithmFactory, Consumer<AlpacaJavaBacktest> backtestConfigurer) {
+        this.backtestData = backtestData;
+        this.parameterGrid = new ArrayList<>(parameterGrid);
+        this.tradingAlgorithmFactory = tradingAlgorithmFactory;
+        this.backtestConfigurer = backtestConfigurer;
+        this.scoreFunction = alpacaJavaBacktest -> alpacaJavaBacktest.getBacktestBroker().getLedger().getEquity();
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Runs the sweep and blocks until every backtest has finished.
+     *
+     * @return the ranked sweep results
+     *
+     * @throws InterruptedException thrown if interrupted while waiting for the backtests
+     */
+    public SweepResults<P> run() throws InterruptedException {
+        SegmentLoader previousSegmentLoader = backtestData.getSegmentLoader();
+        SegmentCache segmentCache = installSegmentCache(backtestData);
+        long previousMissCount = segmentCache.getMissCount();
+        long previousHitCount = segmentCache.getHitCount();
+
+        ForkJoinPool forkJoinPool = new ForkJoinPool(parallelism);
+        long startNanos = System.nanoTime();
+        try {
+            ArrayList<Callable<SweepResult<P>>> backtestCallables = new ArrayList<>();
+            for (P parameters : parameterGrid) {
+                backtestCallables.add(() -> runBacktest(parameters));
+            }
+
+            ArrayList<SweepResult<P>> results = new ArrayList<>();
+            for (Future<SweepResult<P>> resultFuture : forkJoinPool.invokeAll(backtestCallables)) {
+                try {
+                    results.add(resultFuture.get());
+                } catch (ExecutionException exception) {
+                    throw new IllegalStateException(exception.getCause());
+                }
+            }
+
+            SweepResults<P> sweepResults = new SweepResults<>(results, System.nanoTime() - startNanos,
+                    segmentCache.getMissCount() - previousMissCount, segmentCache.getHitCount() - previousHitCount);
+            LOGGER.info("Parameter sweep results:\n{}", sweepResults.toTable());
+            return sweepResults;
+        } finally {
+            forkJoinPool.shutdownNow();
+            restoreSegmentLoader(backtestData, previousSegmentLoader, segmentCache);
+        }
+    }
+
+    /**
+     * Wraps the {@link SegmentLoader} of a {@link BacktestData} with a {@link SegmentCache} of {@link
+     * SegmentCache#getDefaultMaximumBytes()} unless it already is a {@link SegmentCache}.
+     *
+     * @param backtestData the backtest data
+     *
+     * @return the segment cache
+     */
+    static SegmentCache installSegmentCache(BacktestData backtestData) {
+        SegmentLoader segmentLoader = backtestData.getSegmentLoader();
+        if (segmentLoader instanceof SegmentCache) {
+            return (SegmentCache) segmentLoader;
+        }
+
+        SegmentCache segmentCache = new SegmentCache(SegmentCache.getDefaultMaximumBytes(), segmentLoader);
+        backtestData.setSegmentLoader(segmentCache);
+        return segmentCache;
+    }
+
+    /**
+     * Restores the {@link SegmentLoader} of a {@link BacktestData} that was replaced by {@link
+     * #installSegmentCache(BacktestData)} and clears the {@link SegmentCache} that replaced it.
+     *
+     * @param backtestData          the backtest data
+     * @param previousSegmentLoader the previous segment loader
+     * @param segmentCache          the segment cache
+     */
+    static void restoreSegmentLoader(BacktestData backtestData, SegmentLoader previousSegmentLoader,
+            SegmentCache segmentCache) {
+        if (segmentCache != previousSegmentLoader) {
+            backtestData.setSegmentLoader(previousSegmentLoader);
+            segmentCache.clear();
+        }
+    }
+
+    /**
+     * Runs the backtest of a single parameter grid point.
+     *
+     * @param parameters the parameters
+     *
+     * @return the sweep result
+     */
+    private SweepResult<P> runBacktest(P parameters) {
+        long startNanos = System.nanoTime();
+        try {
+            TradingAlgorithm tradingAlgorithm = tradingAlgorithmFactory.apply(parameters);
+            AlpacaJavaBacktest alpacaJavaBacktest = new AlpacaJavaBacktest(backtestData);
+            backtestConfigurer.accept(alpacaJavaBacktest);
+            alpacaJavaBacktest.run(tradingAlgorithm);
+
+            return SweepResult.summarize(parameters, alpacaJavaBacktest,
+                    scoreFunction.applyAsDouble(alpacaJavaBacktest), System.nanoTime() - startNanos);
+        } catch (Exception exception) {
+            LOGGER.error("Backtest with parameters {} failed!", parameters, exception);
+            return SweepResult.failed(parameters, System.nanoTime() - startNanos, exception);
+        }
+    }
+
+    /**
+     * Gets backtest configurer.
+     *
+     * @return the backtest configurer
+     */
+    public Consumer<AlpacaJavaBacktest> getBacktestConfigurer() {
+        return backtestConfigurer;
+    }
+
+    /**
+     * Sets backtest configurer.
+     *
+     * @param backtestConfigurer the backtest configurer
+     */
+    public void setBacktestConfigurer(Consumer<AlpacaJavaBacktest> backtestConfigurer) {
+        this.backtestConfigurer = backtestConfigurer;
+    }
+
+    /**
+     * Gets score function.
+     *
+     * @return the score function
+     */
+    public ToDoubleFunction<AlpacaJavaBacktest> getScoreFunction() {
+        return scoreFunction;
+    }
+
+    /**
+     * Sets the score function which scores a finished backtest (higher is better).
+     *
+     * @param scoreFunction the score function
+     */
+    public void setScoreFunction(ToDoubleFunction<AlpacaJavaBacktest> scoreFunction) {
+        this.scoreFunction = scoreFunction;
+    }
+
+    /**
+     * Gets parallelism.
+     *
+     * @return the parallelism
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of backtests that run at the same time.
+     *
+     * @param parallelism the parallelism
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+}
@@ -0,0 +1,166 @@
+package net.jacobpeterson.sweep;
+
+import net.jacobpeterson.AlpacaJavaBacktest;
+import net.jacobpeterson.broker.ledger.Ledger;
+import net.jacobpeterson.broker.statistics.PerformanceStatistics;
+
+import java.io.File;
+
+/**
+ * The result of a single backtest of a {@link ParameterSweep}. This only keeps the final {@link Ledger} and {@link
+ * PerformanceStatistics} of the backtest, not its {@link net.jacobpeterson.algorithm.TradingAlgorithm} or {@link
+ * AlpacaJavaBacktest}, so a sweep of many backtests doesn't hold the broker, order and replay state of every one of
+ * them until it returns. If the backtest was recorded, the full {@link net.jacobpeterson.data.BacktestRecord} can be
+ * opened from {@link #getRecordFile()}.
+ *
+ * @param <P> the parameters type
+ */
+public class SweepResult<P> {
+
+    private final P parameters;
+    private final double score;
+    private final Ledger ledger;
+    private final PerformanceStatistics performanceStatistics;
+    private final File recordFile;
+    private final long eventCount;
+    private final long elapsedNanos;
+    private final Throwable failure;
+
+    /**
+     * Instantiates a new Sweep result.
+     *
+     * @param parameters            the parameters
+     * @param score                 the score
+     * @param ledger                the ledger (null if the backtest failed)
+     * @param performanceStatistics the performance statistics (null if the backtest failed)
+     * @param recordFile            the record file (null if the backtest wasn't recorded)
+     * @param eventCount            the event count
+     * @param elapsedNanos          the elapsed nanos
+     * @param failure               the failure (null if the backtest succeeded)
+     */
+    public SweepResult(P parameters, double score, Ledger ledger, PerformanceStatistics performanceStatistics,
+            File recordFile, long eventCount, long elapsedNanos, Throwable failure) {
+        this.parameters = parameters;
+        this.score = score;
+        this.ledger = ledger;
+        this.performanceStatistics = performanceStatistics;
+        this.recordFile = recordFile;
+        this.eventCount = eventCount;
+        this.elapsedNanos = elapsedNanos;
+        this.failure = failure;
+    }
+
+    /**
+     * Summarizes a finished backtest.
+     *
+     * @param <P>                the parameters type
+     * @param parameters         the parameters
+     * @param alpacaJavaBacktest the alpaca java backtest
+     * @param score              the score
+     * @param elapsedNanos       the elapsed nanos
+     *
+     * @return the sweep result
+     */
+    public static <P> SweepResult<P> summarize(P parameters, AlpacaJavaBacktest alpacaJavaBacktest, double score,
+            long elapsedNanos) {
+        return new SweepResult<>(parameters, score, alpacaJavaBacktest.getBacktestBroker().getLedger(),
+                alpacaJavaBacktest.getBacktestBroker().getPerformanceStatistics(),
+                alpacaJavaBacktest.getRecordFile(), alpacaJavaBacktest.getReplayEngine().getEventCount(),
+                elapsedNanos, null);
+    }
+
+    /**
+     * Creates the result of a backtest that failed.
+     *
+     * @param <P>          the parameters type
+     * @param parameters   the parameters
+     * @param elapsedNanos the elapsed nanos
+     * @param failure      the failure
+     *
+     * @return the sweep result
+     */
+    public static <P> SweepResult<P> failed(P parameters, long elapsedNanos, Throwable failure) {
+        return new SweepResult<>(parameters, Double.NaN, null, null, null, 0, elapsedNanos, failure);
+    }
+
+    /**
+     * Gets parameters.
+     *
+     * @return the parameters
+     */
+    public P getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Gets score (higher is better).
+     *
+     * @return the score
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * Gets the final ledger of the backtest.
+     *
+     * @return the ledger (null if the backtest failed)
+     */
+    public Ledger getLedger() {
+        return ledger;
+    }
+
+    /**
+     * Gets the performance statistics of the backtest.
+     *
+     * @return the performance statistics (null if the backtest failed)
+     */
+    public PerformanceStatistics getPerformanceStatistics() {
+        return performanceStatistics;
+    }
+
+    /**
+     * Gets record file.
+     *
+     * @return the record file (null if the backtest wasn't recorded)
+     */
+    public File getRecordFile() {
+        return recordFile;
+    }
+
+    /**
+     * Gets event count.
+     *
+     * @return the event count
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Gets elapsed nanos.
+     *
+     * @return the elapsed nanos
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Gets failure.
+     *
+     * @return the failure (null if the backtest succeeded)
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Returns true if the backtest failed.
+     *
+     * @return the boolean
+     */
+    public boolean isFailed() {
+        return failure != null;
+    }
+}
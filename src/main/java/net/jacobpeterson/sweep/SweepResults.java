@@ -0,0 +1,125 @@
+package net.jacobpeterson.sweep;
+
+import net.jacobpeterson.broker.statistics.PerformanceStatistics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The results of a {@link ParameterSweep} ranked by score (best first). Failed backtests are ranked last.
+ *
+ * @param <P> the parameters type
+ */
+public class SweepResults<P> {
+
+    private final ArrayList<SweepResult<P>> rankedResults;
+    private final long elapsedNanos;
+    private final long segmentLoadCount;
+    private final long segmentSharedCount;
+
+    /**
+     * Instantiates a new Sweep results.
+     *
+     * @param results            the results
+     * @param elapsedNanos       the elapsed nanos of the whole sweep
+     * @param segmentLoadCount   the number of segments that were decoded
+     * @param segmentSharedCount the number of segment reads that were shared
+     */
+    public SweepResults(List<SweepResult<P>> results, long elapsedNanos, long segmentLoadCount,
+            long segmentSharedCount) {
+        this.rankedResults = new ArrayList<>(results);
+        this.elapsedNanos = elapsedNanos;
+        this.segmentLoadCount = segmentLoadCount;
+        this.segmentSharedCount = segmentSharedCount;
+
+        this.rankedResults.sort(getRankComparator());
+    }
+
+    /**
+     * Gets the comparator that ranks results by score (best first) and failed results last.
+     *
+     * @param <P> the parameters type
+     *
+     * @return the rank comparator
+     */
+    static <P> Comparator<SweepResult<P>> getRankComparator() {
+        return Comparator.<SweepResult<P>, Boolean>comparing(SweepResult::isFailed)
+                .thenComparing(Comparator.<SweepResult<P>>comparingDouble(SweepResult::getScore).reversed());
+    }
+
+    /**
+     * Gets the best result.
+     *
+     * @return the best result (null if there are no results)
+     */
+    public SweepResult<P> getBest() {
+        return rankedResults.isEmpty() ? null : rankedResults.get(0);
+    }
+
+    /**
+     * Formats the ranked results as a plain text table.
+     *
+     * @return the table
+     */
+    public String toTable() {
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("%-6s %16s %8s %8s %12s %10s  %s%n", "Rank", "Score", "Sharpe", "Max DD",
+                "Events", "Millis", "Parameters"));
+        for (int rank = 0; rank < rankedResults.size(); rank++) {
+            SweepResult<P> result = rankedResults.get(rank);
+            PerformanceStatistics performanceStatistics = result.getPerformanceStatistics();
+            boolean hasStatistics = !result.isFailed() && performanceStatistics != null;
+            table.append(String.format("%-6d %16s %8s %8s %12d %10d  %s%n", rank + 1,
+                    result.isFailed() ? "FAILED" : String.format("%.4f", result.getScore()),
+                    hasStatistics ? String.format("%.3f", performanceStatistics.getSharpeRatio()) : "-",
+                    hasStatistics ? String.format("%.2f%%", performanceStatistics.getMaxDrawdown() * 100) : "-",
+                    result.getEventCount(), result.getElapsedNanos() / 1_000_000, result.getParameters()));
+        }
+        table.append(String.format("%d backtests in %d ms, %d segments decoded, %d segment reads shared%n",
+                rankedResults.size(), elapsedNanos / 1_000_000, segmentLoadCount, segmentSharedCount));
+        return table.toString();
+    }
+
+    /**
+     * Gets the results ranked by score (best first).
+     *
+     * @return the ranked results
+     */
+    public List<SweepResult<P>> getRankedResults() {
+        return Collections.unmodifiableList(rankedResults);
+    }
+
+    /**
+     * Gets elapsed nanos.
+     *
+     * @return the elapsed nanos
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Gets segment load count.
+     *
+     * @return the segment load count
+     */
+    public long getSegmentLoadCount() {
+        return segmentLoadCount;
+    }
+
+    /**
+     * Gets segment shared count.
+     *
+     * @return the segment shared count
+     */
+    public long getSegmentSharedCount() {
+        return segmentSharedCount;
+    }
+
+    @Override
+    public String toString() {
+        return toTable();
+    }
+}
@@ -0,0 +1,131 @@
+package net.jacobpeterson.sweep;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A fold of a {@link WalkForwardOptimization}: the parameter grid is run on the training window and the best
+ * parameters are then run on the testing window that follows it.
+ *
+ * @param <P> the parameters type
+ */
+public class WalkForwardFold<P> {
+
+    private final int index;
+    private final ZonedDateTime trainingFrom;
+    private final ZonedDateTime trainingTo;
+    private final ZonedDateTime testingFrom;
+    private final ZonedDateTime testingTo;
+    private final ArrayList<SweepResult<P>> rankedTrainingResults;
+    private final SweepResult<P> testingResult;
+
+    /**
+     * Instantiates a new Walk forward fold.
+     *
+     * @param index           the index
+     * @param trainingFrom    the training from
+     * @param trainingTo      the training to
+     * @param testingFrom     the testing from
+     * @param testingTo       the testing to
+     * @param trainingResults the training results
+     * @param testingResult   the testing result (null if every training backtest failed)
+     */
+    public WalkForwardFold(int index, ZonedDateTime trainingFrom, ZonedDateTime trainingTo, ZonedDateTime testingFrom,
+            ZonedDateTime testingTo, List<SweepResult<P>> trainingResults, SweepResult<P> testingResult) {
+        this.index = index;
+        this.trainingFrom = trainingFrom;
+        this.trainingTo = trainingTo;
+        this.testingFrom = testingFrom;
+        this.testingTo = testingTo;
+        this.rankedTrainingResults = new ArrayList<>(trainingResults);
+        this.testingResult = testingResult;
+
+        this.rankedTrainingResults.sort(SweepResults.getRankComparator());
+    }
+
+    /**
+     * Gets the best parameters of the training window.
+     *
+     * @return the best parameters (null if every training backtest failed)
+     */
+    public P getBestParameters() {
+        return testingResult == null ? null : testingResult.getParameters();
+    }
+
+    /**
+     * Gets index.
+     *
+     * @return the index
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets training from.
+     *
+     * @return the training from
+     */
+    public ZonedDateTime getTrainingFrom() {
+        return trainingFrom;
+    }
+
+    /**
+     * Gets training to.
+     *
+     * @return the training to
+     */
+    public ZonedDateTime getTrainingTo() {
+        return trainingTo;
+    }
+
+    /**
+     * Gets testing from.
+     *
+     * @return the testing from
+     */
+    public ZonedDateTime getTestingFrom() {
+        return testingFrom;
+    }
+
+    /**
+     * Gets testing to.
+     *
+     * @return the testing to
+     */
+    public ZonedDateTime getTestingTo() {
+        return testingTo;
+    }
+
+    /**
+     * Gets the results of the training window ranked by score (best first).
+     *
+     * @return the ranked training results
+     */
+    public List<SweepResult<P>> getRankedTrainingResults() {
+        return Collections.unmodifiableList(rankedTrainingResults);
+    }
+
+    /**
+     * Gets the result of the best parameters on the testing window.
+     *
+     * @return the testing result (null if every training backtest failed)
+     */
+    public SweepResult<P> getTestingResult() {
+        return testingResult;
+    }
+
+    @Override
+    public String toString() {
+        return "WalkForwardFold{" +
+                "index=" + index +
+                ", trainingFrom=" + trainingFrom +
+                ", trainingTo=" + trainingTo +
+                ", testingFrom=" + testingFrom +
+                ", testingTo=" + testingTo +
+                ", bestParameters=" + getBestParameters() +
+                '}';
+    }
+}
@@ -0,0 +1,525 @@
+package net.jacobpeterson.sweep;
+
+import net.jacobpeterson.AlpacaJavaBacktest;
+import net.jacobpeterson.algorithm.TradingAlgorithm;
+import net.jacobpeterson.data.BacktestData;
+import net.jacobpeterson.data.cache.SegmentCache;
+import net.jacobpeterson.data.cache.SegmentLoader;
+import net.jacobpeterson.indicator.Indicators;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Period;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Runs a walk-forward optimization: the parameter grid is run on a training window, the best parameters are run on
+ * the testing window that follows it, and both windows are rolled forward by {@link #getStepPeriod()} until {@link
+ * #getTo()} (or the training window is expanded from {@link #getFrom()} if {@link #isAnchored()}).
+ * <p>
+ * Like a {@link ParameterSweep}, the backtests of all the folds run in parallel on a {@link ForkJoinPool} and share
+ * one {@link SegmentCache}, so overlapping windows only decode each ticker/day once. If {@link #isWarmStartEnabled()},
+ * the indicators of each backtest start warmed up instead of being warmed up again at the start of every window:
+ * <ul>
+ *     <li>A testing window starts with a copy of the indicators of the best parameters at the end of the training
+ *     window (see {@link AlpacaJavaBacktest#setWarmIndicators(Indicators)}).</li>
+ *     <li>A rolling training window starts with a checkpoint of the indicators of the same parameters that was taken
+ *     at its start during the previous training window (see {@link
+ *     AlpacaJavaBacktest#setIndicatorsCheckpointDateTime(ZonedDateTime)}), so the training windows of the same
+ *     parameters run one after another while the parameters of the grid run in parallel.</li>
+ * </ul>
+ * Only the state of the attached {@link net.jacobpeterson.indicator.Indicator}s is carried over. Every window starts
+ * with a new {@link TradingAlgorithm} (from the factory) and a new {@link net.jacobpeterson.broker.BacktestBroker}.
+ * <p>
+ * Since the {@link SegmentLoader} of the {@link BacktestData} may be replaced while an optimization is running, don't
+ * run it at the same time as another optimization or {@link ParameterSweep} on the same {@link BacktestData}.
+ *
+ * @param <P> the parameters type
+ */
+public class WalkForwardOptimization<P> {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final BacktestData backtestData;
+    private final List<P> parameterGrid;
+    private final Function<P, TradingAlgorithm> tradingAlgorithmFactory;
+    private Consumer<AlpacaJavaBacktest> backtestConfigurer;
+    private ToDoubleFunction<AlpacaJavaBacktest> scoreFunction;
+    private int parallelism;
+    private ZonedDateTime from;
+    private ZonedDateTime to;
+    private Period trainingPeriod;
+    private Period testingPeriod;
+    private Period stepPeriod;
+    private boolean anchored;
+    private boolean warmStartEnabled;
+
+    /**
+     * Instantiates a new Walk forward optimization. By default, backtests are scored by their final account equity,
+     * run with a parallelism of the number of available processors, and start with warm indicators. The windows must be
+     * set with {@link #setFrom(ZonedDateTime)}, {@link #setTo(ZonedDateTime)}, {@link #setTrainingPeriod(Period)}, and
+     * {@link #setTestingPeriod(Period)}.
+     *
+     * @param backtestData            the backtest data
+     * @param parameterGrid           the parameter grid
+     * @param tradingAlgorithmFactory the trading algorithm factory
+     * @param backtestConfigurer      configures each {@link AlpacaJavaBacktest} before it is run (e.g. update types,
+     *                                but not from/to since these are set to the window)
+     */
+    public WalkForwardOptimization(BacktestData backtestData, List<P> parameterGrid,
+            Function<P, TradingAlgorithm> tradingAlgorithmFactory, Consumer<AlpacaJavaBacktest> backtestConfigurer) {
+        this.backtestData = backtestData;
+        this.parameterGrid = new ArrayList<>(parameterGrid);
+        this.tradingAlgorithmFactory = tradingAlgorithmFactory;
+        this.backtestConfigurer = backtestConfigurer;
+        this.scoreFunction = alpacaJavaBacktest -> alpacaJavaBacktest.getBacktestBroker().getLedger().getEquity();
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+        this.warmStartEnabled = true;
+    }
+
+    /**
+     * Runs the optimization and blocks until every backtest has finished.
+     *
+     * @return the walk forward results
+     *
+     * @throws InterruptedException thrown if interrupted while waiting for the backtests
+     */
+    public WalkForwardResults<P> run() throws InterruptedException {
+        ArrayList<Window> windows = createWindows();
+        SegmentLoader previousSegmentLoader = backtestData.getSegmentLoader();
+        SegmentCache segmentCache = ParameterSweep.installSegmentCache(backtestData);
+        long previousMissCount = segmentCache.getMissCount();
+        long previousHitCount = segmentCache.getHitCount();
+
+        ForkJoinPool forkJoinPool = new ForkJoinPool(parallelism);
+        long startNanos = System.nanoTime();
+        try {
+            ArrayList<ArrayList<CompletableFuture<WindowRun<P>>>> trainingFutures = new ArrayList<>();
+            ArrayList<CompletableFuture<SweepResult<P>>> testingFutures = new ArrayList<>();
+            for (int index = 0; index < windows.size(); index++) {
+                Window window = windows.get(index);
+                Window nextWindow = index + 1 < windows.size() ? windows.get(index + 1) : null;
+                // Checkpoint at the start of the next training window if it starts within this one
+                ZonedDateTime checkpointDateTime = warmStartEnabled && !anchored && nextWindow != null &&
+                        nextWindow.trainingFrom.isAfter(window.trainingFrom) &&
+                        nextWindow.trainingFrom.isBefore(window.trainingTo) ? nextWindow.trainingFrom : null;
+                boolean resumesPrevious = warmStartEnabled && !anchored && index > 0 &&
+                        !window.trainingFrom.isAfter(windows.get(index - 1).trainingTo);
+
+                ArrayList<CompletableFuture<WindowRun<P>>> windowTrainingFutures = new ArrayList<>();
+                for (int parameterIndex = 0; parameterIndex < parameterGrid.size(); parameterIndex++) {
+                    P parameters = parameterGrid.get(parameterIndex);
+                    CompletableFuture<WindowRun<P>> trainingFuture;
+                    if (resumesPrevious) {
+                        trainingFuture = trainingFutures.get(index - 1).get(parameterIndex).thenApplyAsync(
+                                previousRun -> runBacktest(parameters, window.trainingFrom, window.trainingTo,
+                                        previousRun.getIndicatorsAt(window.trainingFrom), checkpointDateTime),
+                                forkJoinPool);
+                    } else {
+                        trainingFuture = CompletableFuture.supplyAsync(() -> runBacktest(parameters,
+                                window.trainingFrom, window.trainingTo, null, checkpointDateTime), forkJoinPool);
+                    }
+                    windowTrainingFutures.add(trainingFuture);
+                }
+                trainingFutures.add(windowTrainingFutures);
+
+                testingFutures.add(CompletableFuture.allOf(windowTrainingFutures.toArray(new CompletableFuture<?>[0]))
+                        .thenApplyAsync(ignored -> runTesting(window, windowTrainingFutures), forkJoinPool));
+            }
+
+            ArrayList<WalkForwardFold<P>> folds = new ArrayList<>();
+            for (int index = 0; index < windows.size(); index++) {
+                Window window = windows.get(index);
+                ArrayList<SweepResult<P>> trainingResults = new ArrayList<>();
+                try {
+                    for (CompletableFuture<WindowRun<P>> trainingFuture : trainingFutures.get(index)) {
+                        trainingResults.add(trainingFuture.get().result);
+                    }
+                    folds.add(new WalkForwardFold<>(index, window.trainingFrom, window.trainingTo,
+                            window.testingFrom, window.testingTo, trainingResults, testingFutures.get(index).get()));
+                } catch (ExecutionException exception) {
+                    throw new IllegalStateException(exception.getCause());
+                }
+            }
+
+            WalkForwardResults<P> walkForwardResults = new WalkForwardResults<>(folds,
+                    System.nanoTime() - startNanos, segmentCache.getMissCount() - previousMissCount,
+                    segmentCache.getHitCount() - previousHitCount);
+            LOGGER.info("Walk forward results:\n{}", walkForwardResults.toTable());
+            return walkForwardResults;
+        } finally {
+            forkJoinPool.shutdownNow();
+            ParameterSweep.restoreSegmentLoader(backtestData, previousSegmentLoader, segmentCache);
+        }
+    }
+
+    /**
+     * Creates the training and testing windows.
+     *
+     * @return the windows
+     */
+    private ArrayList<Window> createWindows() {
+        if (from == null || to == null || trainingPeriod == null || testingPeriod == null) {
+            throw new IllegalStateException("The from, to, training period, and testing period must be set!");
+        }
+        Period step = stepPeriod == null ? testingPeriod : stepPeriod;
+        if (!from.plus(step).isAfter(from) || !from.plus(trainingPeriod).isAfter(from) ||
+                !from.plus(testingPeriod).isAfter(from)) {
+            throw new IllegalStateException("The training, testing, and step periods must be positive!");
+        }
+
+        ArrayList<Window> windows = new ArrayList<>();
+        for (int index = 0; ; index++) {
+            ZonedDateTime trainingTo = from.plus(trainingPeriod).plus(step.multipliedBy(index));
+            if (!trainingTo.isBefore(to)) {
+                break;
+            }
+            ZonedDateTime trainingFrom = anchored ? from : from.plus(step.multipliedBy(index));
+            ZonedDateTime testingTo = trainingTo.plus(testingPeriod);
+            windows.add(new Window(trainingFrom, trainingTo, trainingTo, testingTo.isAfter(to) ? to : testingTo));
+        }
+        if (windows.isEmpty()) {
+            throw new IllegalStateException("The training period doesn't leave a testing window before the to!");
+        }
+        return windows;
+    }
+
+    /**
+     * Runs the best parameters of a training window on its testing window.
+     *
+     * @param window          the window
+     * @param trainingFutures the training futures (which are complete)
+     *
+     * @return the testing result (null if every training backtest failed)
+     */
+    private SweepResult<P> runTesting(Window window, List<CompletableFuture<WindowRun<P>>> trainingFutures) {
+        WindowRun<P> bestRun = null;
+        for (CompletableFuture<WindowRun<P>> trainingFuture : trainingFutures) {
+            WindowRun<P> windowRun = trainingFuture.join();
+            if (bestRun == null || SweepResults.<P>getRankComparator().compare(windowRun.result, bestRun.result) < 0) {
+                bestRun = windowRun;
+            }
+        }
+        if (bestRun == null || bestRun.result.isFailed()) {
+            LOGGER.error("Every training backtest from {} to {} failed!", window.trainingFrom, window.trainingTo);
+            return null;
+        }
+
+        return runBacktest(bestRun.result.getParameters(), window.testingFrom, window.testingTo,
+                bestRun.endIndicators, null).result;
+    }
+
+    /**
+     * Runs a backtest of the parameters on a window.
+     *
+     * @param parameters         the parameters
+     * @param from               the from
+     * @param to                 the to
+     * @param warmIndicators     the warm indicators (null to start with reset indicators)
+     * @param checkpointDateTime the indicators checkpoint date time (null for no checkpoint)
+     *
+     * @return the window run
+     */
+    private WindowRun<P> runBacktest(P parameters, ZonedDateTime from, ZonedDateTime to, Indicators warmIndicators,
+            ZonedDateTime checkpointDateTime) {
+        long startNanos = System.nanoTime();
+        try {
+            TradingAlgorithm tradingAlgorithm = tradingAlgorithmFactory.apply(parameters);
+            AlpacaJavaBacktest alpacaJavaBacktest = new AlpacaJavaBacktest(backtestData);
+            backtestConfigurer.accept(alpacaJavaBacktest);
+            alpacaJavaBacktest.setFrom(from);
+            alpacaJavaBacktest.setTo(to);
+            alpacaJavaBacktest.setWarmIndicators(warmIndicators);
+            alpacaJavaBacktest.setIndicatorsCheckpointDateTime(checkpointDateTime);
+            alpacaJavaBacktest.run(tradingAlgorithm);
+
+            SweepResult<P> result = SweepResult.summarize(parameters, alpacaJavaBacktest,
+                    scoreFunction.applyAsDouble(alpacaJavaBacktest), System.nanoTime() - startNanos);
+            return new WindowRun<>(result, to, warmStartEnabled ? copyIndicators(tradingAlgorithm) : null,
+                    checkpointDateTime, alpacaJavaBacktest.getIndicatorsCheckpoint());
+        } catch (Exception exception) {
+            LOGGER.error("Backtest with parameters {} from {} to {} failed!", parameters, from, to, exception);
+            return new WindowRun<>(SweepResult.failed(parameters, System.nanoTime() - startNanos, exception), to,
+                    null, null, null);
+        }
+    }
+
+    /**
+     * Copies the indicators of a trading algorithm.
+     *
+     * @param tradingAlgorithm the trading algorithm
+     *
+     * @return the indicators (null if an indicator doesn't support copying)
+     */
+    private static Indicators copyIndicators(TradingAlgorithm tradingAlgorithm) {
+        try {
+            return tradingAlgorithm.getIndicators().copy();
+        } catch (UnsupportedOperationException exception) {
+            LOGGER.warn("Could not copy the indicators: {}", exception.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Gets backtest configurer.
+     *
+     * @return the backtest configurer
+     */
+    public Consumer<AlpacaJavaBacktest> getBacktestConfigurer() {
+        return backtestConfigurer;
+    }
+
+    /**
+     * Sets backtest configurer.
+     *
+     * @param backtestConfigurer the backtest configurer
+     */
+    public void setBacktestConfigurer(Consumer<AlpacaJavaBacktest> backtestConfigurer) {
+        this.backtestConfigurer = backtestConfigurer;
+    }
+
+    /**
+     * Gets score function.
+     *
+     * @return the score function
+     */
+    public ToDoubleFunction<AlpacaJavaBacktest> getScoreFunction() {
+        return scoreFunction;
+    }
+
+    /**
+     * Sets the score function which scores a finished backtest (higher is better).
+     *
+     * @param scoreFunction the score function
+     */
+    public void setScoreFunction(ToDoubleFunction<AlpacaJavaBacktest> scoreFunction) {
+        this.scoreFunction = scoreFunction;
+    }
+
+    /**
+     * Gets parallelism.
+     *
+     * @return the parallelism
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of backtests that run at the same time.
+     *
+     * @param parallelism the parallelism
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Gets from.
+     *
+     * @return the from
+     */
+    public ZonedDateTime getFrom() {
+        return from;
+    }
+
+    /**
+     * Sets the start of the first training window.
+     *
+     * @param from the from
+     */
+    public void setFrom(ZonedDateTime from) {
+        this.from = from;
+    }
+
+    /**
+     * Gets to.
+     *
+     * @return the to
+     */
+    public ZonedDateTime getTo() {
+        return to;
+    }
+
+    /**
+     * Sets the end of the last testing window.
+     *
+     * @param to the to
+     */
+    public void setTo(ZonedDateTime to) {
+        this.to = to;
+    }
+
+    /**
+     * Gets training period.
+     *
+     * @return the training period
+     */
+    public Period getTrainingPeriod() {
+        return trainingPeriod;
+    }
+
+    /**
+     * Sets the length of the training windows (the length of the first training window if {@link #isAnchored()}).
+     *
+     * @param trainingPeriod the training period
+     */
+    public void setTrainingPeriod(Period trainingPeriod) {
+        this.trainingPeriod = trainingPeriod;
+    }
+
+    /**
+     * Gets testing period.
+     *
+     * @return the testing period
+     */
+    public Period getTestingPeriod() {
+        return testingPeriod;
+    }
+
+    /**
+     * Sets the length of the testing windows.
+     *
+     * @param testingPeriod the testing period
+     */
+    public void setTestingPeriod(Period testingPeriod) {
+        this.testingPeriod = testingPeriod;
+    }
+
+    /**
+     * Gets the period that the windows are rolled forward by.
+     *
+     * @return the step period (null for {@link #getTestingPeriod()})
+     */
+    public Period getStepPeriod() {
+        return stepPeriod;
+    }
+
+    /**
+     * Sets step period. See {@link #getStepPeriod()}.
+     *
+     * @param stepPeriod the step period (null for {@link #getTestingPeriod()})
+     */
+    public void setStepPeriod(Period stepPeriod) {
+        this.stepPeriod = stepPeriod;
+    }
+
+    /**
+     * Returns true if every training window starts at {@link #getFrom()} (an expanding window) instead of being rolled
+     * forward.
+     *
+     * @return the boolean
+     */
+    public boolean isAnchored() {
+        return anchored;
+    }
+
+    /**
+     * Sets anchored. See {@link #isAnchored()}.
+     *
+     * @param anchored the anchored
+     */
+    public void setAnchored(boolean anchored) {
+        this.anchored = anchored;
+    }
+
+    /**
+     * Returns true if the indicators of each window start from a warmed up state. See {@link
+     * WalkForwardOptimization}. This is enabled by default.
+     *
+     * @return the boolean
+     */
+    public boolean isWarmStartEnabled() {
+        return warmStartEnabled;
+    }
+
+    /**
+     * Sets warm start enabled. See {@link #isWarmStartEnabled()}.
+     *
+     * @param warmStartEnabled the warm start enabled
+     */
+    public void setWarmStartEnabled(boolean warmStartEnabled) {
+        this.warmStartEnabled = warmStartEnabled;
+    }
+
+    /**
+     * The training and testing window of a fold.
+     */
+    private static final class Window {
+
+        private final ZonedDateTime trainingFrom;
+        private final ZonedDateTime trainingTo;
+        private final ZonedDateTime testingFrom;
+        private final ZonedDateTime testingTo;
+
+        /**
+         * Instantiates a new Window.
+         *
+         * @param trainingFrom the training from
+         * @param trainingTo   the training to
+         * @param testingFrom  the testing from
+         * @param testingTo    the testing to
+         */
+        private Window(ZonedDateTime trainingFrom, ZonedDateTime trainingTo, ZonedDateTime testingFrom,
+                ZonedDateTime testingTo) {
+            this.trainingFrom = trainingFrom;
+            this.trainingTo = trainingTo;
+            this.testingFrom = testingFrom;
+            this.testingTo = testingTo;
+        }
+    }
+
+    /**
+     * The result of a backtest of a window and the indicators it warmed up.
+     *
+     * @param <P> the parameters type
+     */
+    private static final class WindowRun<P> {
+
+        private final SweepResult<P> result;
+        private final ZonedDateTime to;
+        private final Indicators endIndicators;
+        private final ZonedDateTime checkpointDateTime;
+        private final Indicators checkpointIndicators;
+
+        /**
+         * Instantiates a new Window run.
+         *
+         * @param result               the result
+         * @param to                   the to of the backtest
+         * @param endIndicators        the indicators at the to (null if they weren't copied)
+         * @param checkpointDateTime   the checkpoint date time (null for no checkpoint)
+         * @param checkpointIndicators the indicators at the checkpoint date time (null if they weren't copied)
+         */
+        private WindowRun(SweepResult<P> result, ZonedDateTime to, Indicators endIndicators,
+                ZonedDateTime checkpointDateTime, Indicators checkpointIndicators) {
+            this.result = result;
+            this.to = to;
+            this.endIndicators = endIndicators;
+            this.checkpointDateTime = checkpointDateTime;
+            this.checkpointIndicators = checkpointIndicators;
+        }
+
+        /**
+         * Gets the indicators that this run warmed up at a date time.
+         *
+         * @param dateTime the date time
+         *
+         * @return the indicators (null if there are none)
+         */
+        private Indicators getIndicatorsAt(ZonedDateTime dateTime) {
+            if (dateTime.isEqual(to)) {
+                return endIndicators;
+            }
+            return checkpointDateTime != null && dateTime.isEqual(checkpointDateTime) ? checkpointIndicators : null;
+        }
+    }
+}
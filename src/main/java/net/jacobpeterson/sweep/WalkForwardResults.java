@@ -0,0 +1,146 @@
+package net.jacobpeterson.sweep;
+
+import net.jacobpeterson.broker.statistics.PerformanceStatistics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The results of a {@link WalkForwardOptimization}: a {@link WalkForwardFold} for every training and testing window.
+ *
+ * @param <P> the parameters type
+ */
+public class WalkForwardResults<P> {
+
+    private final ArrayList<WalkForwardFold<P>> folds;
+    private final long elapsedNanos;
+    private final long segmentLoadCount;
+    private final long segmentSharedCount;
+
+    /**
+     * Instantiates a new Walk forward results.
+     *
+     * @param folds              the folds
+     * @param elapsedNanos       the elapsed nanos of the whole optimization
+     * @param segmentLoadCount   the number of segments that were decoded
+     * @param segmentSharedCount the number of segment reads that were shared
+     */
+    public WalkForwardResults(List<WalkForwardFold<P>> folds, long elapsedNanos, long segmentLoadCount,
+            long segmentSharedCount) {
+        this.folds = new ArrayList<>(folds);
+        this.elapsedNanos = elapsedNanos;
+        this.segmentLoadCount = segmentLoadCount;
+        this.segmentSharedCount = segmentSharedCount;
+    }
+
+    /**
+     * Gets the out-of-sample return of the walk forward (the total returns of the testing windows compounded).
+     *
+     * @return the out of sample return (e.g. 0.1 for 10%, NaN if a testing window failed)
+     */
+    public double getOutOfSampleReturn() {
+        double growth = 1;
+        for (WalkForwardFold<P> fold : folds) {
+            PerformanceStatistics performanceStatistics = getTestingStatistics(fold);
+            if (performanceStatistics == null) {
+                return Double.NaN;
+            }
+            growth *= 1 + performanceStatistics.getTotalReturn();
+        }
+        return growth - 1;
+    }
+
+    /**
+     * Gets the performance statistics of the testing window of a fold.
+     *
+     * @param fold the fold
+     *
+     * @return the performance statistics (null if the testing window failed)
+     */
+    private static PerformanceStatistics getTestingStatistics(WalkForwardFold<?> fold) {
+        SweepResult<?> testingResult = fold.getTestingResult();
+        return testingResult == null || testingResult.isFailed() ? null : testingResult.getPerformanceStatistics();
+    }
+
+    /**
+     * Formats the folds as a plain text table.
+     *
+     * @return the table
+     */
+    public String toTable() {
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("%-5s %-23s %-23s %16s %16s %9s %8s  %s%n", "Fold", "Training", "Testing",
+                "Training score", "Testing score", "Return", "Sharpe", "Parameters"));
+        for (WalkForwardFold<P> fold : folds) {
+            SweepResult<P> testingResult = fold.getTestingResult();
+            List<SweepResult<P>> rankedTrainingResults = fold.getRankedTrainingResults();
+            SweepResult<P> bestTrainingResult = rankedTrainingResults.isEmpty() ? null : rankedTrainingResults.get(0);
+            PerformanceStatistics performanceStatistics = getTestingStatistics(fold);
+            table.append(String.format("%-5d %-23s %-23s %16s %16s %9s %8s  %s%n", fold.getIndex(),
+                    fold.getTrainingFrom().toLocalDate() + " " + fold.getTrainingTo().toLocalDate(),
+                    fold.getTestingFrom().toLocalDate() + " " + fold.getTestingTo().toLocalDate(),
+                    formatScore(bestTrainingResult), formatScore(testingResult),
+                    performanceStatistics == null ? "-" :
+                    String.format("%.2f%%", performanceStatistics.getTotalReturn() * 100),
+                    performanceStatistics == null ? "-" : String.format("%.3f", performanceStatistics.getSharpeRatio()),
+                    fold.getBestParameters()));
+        }
+        table.append(String.format("%d folds in %d ms, %.2f%% out-of-sample return, %d segments decoded, " +
+                        "%d segment reads shared%n", folds.size(), elapsedNanos / 1_000_000,
+                getOutOfSampleReturn() * 100, segmentLoadCount, segmentSharedCount));
+        return table.toString();
+    }
+
+    /**
+     * Formats the score of a result.
+     *
+     * @param result the result
+     *
+     * @return the score
+     */
+    private static String formatScore(SweepResult<?> result) {
+        return result == null ? "-" : result.isFailed() ? "FAILED" : String.format("%.4f", result.getScore());
+    }
+
+    /**
+     * Gets the folds in chronological order.
+     *
+     * @return the folds
+     */
+    public List<WalkForwardFold<P>> getFolds() {
+        return Collections.unmodifiableList(folds);
+    }
+
+    /**
+     * Gets elapsed nanos.
+     *
+     * @return the elapsed nanos
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Gets segment load count.
+     *
+     * @return the segment load count
+     */
+    public long getSegmentLoadCount() {
+        return segmentLoadCount;
+    }
+
+    /**
+     * Gets segment shared count.
+     *
+     * @return the segment shared count
+     */
+    public long getSegmentSharedCount() {
+        return segmentSharedCount;
+    }
+
+    @Override
+    public String toString() {
+        return toTable();
+    }
+}
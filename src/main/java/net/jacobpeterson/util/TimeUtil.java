@@ -2,11 +2,36 @@ package net.jacobpeterson.util;
 
 import net.jacobpeterson.algorithm.update.ticker.AggregateUpdateType;
 
+import java.time.DayOfWeek;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.TemporalAdjusters;
 import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
 
 public class TimeUtil {
 
+    /** The constant NEW_YORK_ZONE_ID. */
+    public static final ZoneId NEW_YORK_ZONE_ID = ZoneId.of("America/New_York");
+
+    /** The constant PRE_MARKET_OPEN_TIME. */
+    public static final LocalTime PRE_MARKET_OPEN_TIME = LocalTime.of(4, 0);
+
+    /** The constant MARKET_OPEN_TIME. */
+    public static final LocalTime MARKET_OPEN_TIME = LocalTime.of(9, 30);
+
+    /** The constant MARKET_CLOSE_TIME. */
+    public static final LocalTime MARKET_CLOSE_TIME = LocalTime.of(16, 0);
+
+    /** The constant AFTER_HOURS_CLOSE_TIME. */
+    public static final LocalTime AFTER_HOURS_CLOSE_TIME = LocalTime.of(20, 0);
+
+    private static final long MINUTE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final long HOUR_NANOS = TimeUnit.HOURS.toNanos(1);
+
     /**
      * Gets date intervals.
      *
@@ -23,28 +48,167 @@ public class TimeUtil {
 
         while (currentDate.isBefore(to)) {
             dayDates.add(currentDate);
-
-            switch (aggregateUpdateType) {
-                case MINUTE:
-                case HOUR:
-                case DAY:
-                    currentDate = currentDate.plusDays(1);
-                    break;
-                case WEEK:
-                    currentDate = currentDate.plusWeeks(1);
-                    break;
-                case MONTH:
-                    currentDate = currentDate.plusMonths(1);
-                    break;
-                case QUARTER:
-                    currentDate = currentDate.plusMonths(3);
-                    break;
-                case YEAR:
-                    currentDate = currentDate.plusYears(1);
-                    break;
-            }
+            currentDate = getNextAggregateDate(aggregateUpdateType, currentDate);
         }
 
         return dayDates;
     }
+
+    /**
+     * Gets the date of the next date interval (the date after the last date covered by the data file of a date
+     * interval).
+     *
+     * @param aggregateUpdateType the aggregate update type
+     * @param date                the date of the date interval
+     *
+     * @return the next date
+     */
+    public static LocalDate getNextAggregateDate(AggregateUpdateType aggregateUpdateType, LocalDate date) {
+        switch (aggregateUpdateType) {
+            case MINUTE:
+            case HOUR:
+            case DAY:
+                return date.plusDays(1);
+            case WEEK:
+                return date.plusWeeks(1);
+            case MONTH:
+                return date.plusMonths(1);
+            case QUARTER:
+                return date.plusMonths(3);
+            case YEAR:
+                return date.plusYears(1);
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Gets the close timestamp of an aggregate time frame (the start of the next time frame).
+     *
+     * @param aggregateUpdateType the aggregate update type
+     * @param startTimestamp      the start timestamp of the aggregate (epoch nanoseconds)
+     *
+     * @return the close timestamp (epoch nanoseconds)
+     */
+    public static long getAggregateCloseTimestamp(AggregateUpdateType aggregateUpdateType, long startTimestamp) {
+        switch (aggregateUpdateType) {
+            case MINUTE:
+                return startTimestamp + MINUTE_NANOS;
+            case HOUR:
+                return startTimestamp + HOUR_NANOS;
+            default:
+                ZonedDateTime start = toNewYorkDateTime(startTimestamp);
+                switch (aggregateUpdateType) {
+                    case DAY:
+                        return toEpochNanos(start.plusDays(1));
+                    case WEEK:
+                        return toEpochNanos(start.plusWeeks(1));
+                    case MONTH:
+                        return toEpochNanos(start.plusMonths(1));
+                    case QUARTER:
+                        return toEpochNanos(start.plusMonths(3));
+                    case YEAR:
+                        return toEpochNanos(start.plusYears(1));
+                    default:
+                        throw new UnsupportedOperationException();
+                }
+        }
+    }
+
+    /**
+     * Gets the start timestamp of the aggregate time frame that contains a timestamp. Time frames are aligned to the
+     * New York calendar: hours and days start on the hour and at midnight, weeks start on Sunday, and months,
+     * quarters, and years start on their first day.
+     *
+     * @param aggregateUpdateType the aggregate update type
+     * @param timestamp           the timestamp (epoch nanoseconds)
+     *
+     * @return the start timestamp (epoch nanoseconds)
+     */
+    public static long getAggregateStartTimestamp(AggregateUpdateType aggregateUpdateType, long timestamp) {
+        switch (aggregateUpdateType) {
+            case MINUTE:
+                return timestamp - Math.floorMod(timestamp, MINUTE_NANOS);
+            case HOUR: // New York offsets from UTC are whole hours
+                return timestamp - Math.floorMod(timestamp, HOUR_NANOS);
+            default:
+                LocalDate date = toNewYorkDate(timestamp);
+                switch (aggregateUpdateType) {
+                    case DAY:
+                        break;
+                    case WEEK:
+                        date = date.with(TemporalAdjusters.previousOrSame(DayOfWeek.SUNDAY));
+                        break;
+                    case MONTH:
+                        date = date.withDayOfMonth(1);
+                        break;
+                    case QUARTER:
+                        date = LocalDate.of(date.getYear(), (date.getMonthValue() - 1) / 3 * 3 + 1, 1);
+                        break;
+                    case YEAR:
+                        date = date.withDayOfYear(1);
+                        break;
+                    default:
+                        throw new UnsupportedOperationException();
+                }
+                return toEpochNanos(date, LocalTime.MIDNIGHT);
+        }
+    }
+
+    /**
+     * Converts a {@link ZonedDateTime} to epoch nanoseconds.
+     *
+     * @param zonedDateTime the zoned date time
+     *
+     * @return the epoch nanoseconds
+     */
+    public static long toEpochNanos(ZonedDateTime zonedDateTime) {
+        return toEpochNanos(zonedDateTime.toInstant());
+    }
+
+    /**
+     * Converts an {@link Instant} to epoch nanoseconds.
+     *
+     * @param instant the instant
+     *
+     * @return the epoch nanoseconds
+     */
+    public static long toEpochNanos(Instant instant) {
+        return TimeUnit.SECONDS.toNanos(instant.getEpochSecond()) + instant.getNano();
+    }
+
+    /**
+     * Converts a New York date and time to epoch nanoseconds.
+     *
+     * @param date the date
+     * @param time the time
+     *
+     * @return the epoch nanoseconds
+     */
+    public static long toEpochNanos(LocalDate date, LocalTime time) {
+        return toEpochNanos(ZonedDateTime.of(date, time, NEW_YORK_ZONE_ID));
+    }
+
+    /**
+     * Converts epoch nanoseconds to a New York {@link ZonedDateTime}.
+     *
+     * @param epochNanos the epoch nanoseconds
+     *
+     * @return the zoned date time
+     */
+    public static ZonedDateTime toNewYorkDateTime(long epochNanos) {
+        return Instant.ofEpochSecond(Math.floorDiv(epochNanos, 1_000_000_000L), Math.floorMod(epochNanos,
+                1_000_000_000L)).atZone(NEW_YORK_ZONE_ID);
+    }
+
+    /**
+     * Converts epoch nanoseconds to a New York {@link LocalDate}.
+     *
+     * @param epochNanos the epoch nanoseconds
+     *
+     * @return the local date
+     */
+    public static LocalDate toNewYorkDate(long epochNanos) {
+        return toNewYorkDateTime(epochNanos).toLocalDate();
+    }
 }
@@ -0,0 +1,78 @@
+package net.jacobpeterson.broker;
+
+import io.github.mainstringargs.alpaca.enums.OrderSide;
+import io.github.mainstringargs.alpaca.enums.OrderTimeInForce;
+import io.github.mainstringargs.alpaca.enums.OrderType;
+import net.jacobpeterson.broker.order.MatchingEngine;
+import net.jacobpeterson.broker.order.OrderBook;
+import net.jacobpeterson.broker.order.OrderStatus;
+import net.jacobpeterson.util.TimeUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that the {@link BacktestBroker} rejects orders that exceed the buying power.
+ */
+public class BacktestBrokerTest {
+
+    private static final String TICKER = "AAPL";
+    private static final long TIMESTAMP = TimeUtil.toEpochNanos(LocalDate.of(2020, 3, 2), LocalTime.of(10, 0));
+
+    private BacktestBroker backtestBroker;
+    private MatchingEngine matchingEngine;
+
+    @Before
+    public void setUp() {
+        backtestBroker = new BacktestBroker(null, 10_000, 2);
+        matchingEngine = backtestBroker.getMatchingEngine();
+        OrderBook orderBook = matchingEngine.getOrderBook(TICKER);
+        orderBook.onQuote(TIMESTAMP, 99.5, 100.5);
+    }
+
+    @Test
+    public void marketOrderOverBuyingPowerIsRejected() {
+        assertEquals("rejected", backtestBroker.submitOrder(TICKER, 200, OrderSide.BUY, OrderType.MARKET,
+                OrderTimeInForce.DAY, null, null).getStatus());
+        assertEquals(0, backtestBroker.getLedger().getPositionCount());
+
+        assertEquals("filled", backtestBroker.submitOrder(TICKER, 199, OrderSide.BUY, OrderType.MARKET,
+                OrderTimeInForce.DAY, null, null).getStatus());
+        assertEquals(OrderStatus.REJECTED, matchingEngine.getStatus(submit(OrderSide.BUY, 1, OrderType.MARKET,
+                Double.NaN)));
+        assertEquals(0, matchingEngine.getOpenOrderCount());
+
+        // Closing the position takes no buying power
+        assertEquals(OrderStatus.FILLED, matchingEngine.getStatus(submit(OrderSide.SELL, 199, OrderType.MARKET,
+                Double.NaN)));
+        assertEquals(0, backtestBroker.getLedger().getPositionCount());
+    }
+
+    @Test
+    public void restingOrderOverBuyingPowerIsRejectedAtItsLimitPrice() {
+        int restingID = submit(OrderSide.SELL, 190, OrderType.LIMIT, 105);
+        assertEquals(OrderStatus.NEW, matchingEngine.getStatus(restingID));
+        assertEquals(OrderStatus.REJECTED, matchingEngine.getStatus(submit(OrderSide.SELL, 191, OrderType.LIMIT,
+                105)));
+        assertEquals(1, matchingEngine.getOpenOrderCount());
+    }
+
+    /**
+     * Submits a day order to the {@link MatchingEngine} of the broker.
+     *
+     * @param orderSide  the order side
+     * @param quantity   the quantity
+     * @param orderType  the order type
+     * @param limitPrice the limit price (NaN if not applicable)
+     *
+     * @return the order ID
+     */
+    private int submit(OrderSide orderSide, int quantity, OrderType orderType, double limitPrice) {
+        return matchingEngine.submitOrder(TICKER, quantity, orderSide, orderType, OrderTimeInForce.DAY, limitPrice,
+                Double.NaN);
+    }
+}
@@ -0,0 +1,116 @@
+package net.jacobpeterson.broker.ledger;
+
+import net.jacobpeterson.broker.order.MatchingEngine;
+import net.jacobpeterson.broker.order.OrderBook;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the realized P&amp;L and buying power of a {@link Ledger}.
+ */
+public class LedgerTest {
+
+    private static final double INITIAL_CASH = 10_000;
+    private static final double DELTA = 1e-9;
+
+    private Ledger ledger;
+    private OrderBook orderBook;
+
+    @Before
+    public void setUp() {
+        ledger = new Ledger(INITIAL_CASH, 2);
+        orderBook = new MatchingEngine().getOrderBook("AAPL");
+    }
+
+    @Test
+    public void longPositionRealizesProfitLossAgainstAverageEntryPrice() {
+        fill(10, 100); // Open
+        assertPosition(10, 100, 0);
+
+        fill(10, 110); // Add
+        assertPosition(20, 105, 0);
+
+        fill(-5, 120); // Reduce
+        assertPosition(15, 105, 75);
+
+        fill(-15, 95); // Close
+        assertPosition(0, Double.NaN, -75);
+        assertEquals(0, ledger.getPositionCount());
+
+        fill(10, 50); // Reopen and reverse
+        fill(-30, 60);
+        assertPosition(-20, 60, 25);
+        assertEquals(INITIAL_CASH + 1_225, ledger.getCash(), DELTA);
+    }
+
+    @Test
+    public void shortPositionRealizesProfitLossAgainstAverageEntryPrice() {
+        fill(-10, 100); // Open
+        assertPosition(-10, 100, 0);
+
+        fill(-10, 110); // Add
+        assertPosition(-20, 105, 0);
+
+        fill(5, 90); // Reduce
+        assertPosition(-15, 105, 75);
+
+        fill(15, 110); // Close
+        assertPosition(0, Double.NaN, 0);
+        assertEquals(0, ledger.getPositionCount());
+
+        fill(-10, 50); // Reopen and reverse
+        fill(30, 40);
+        assertPosition(20, 40, 100);
+        assertEquals(INITIAL_CASH - 700, ledger.getCash(), DELTA);
+    }
+
+    @Test
+    public void reducingPositionDoesNotTakeBuyingPower() {
+        assertEquals(2 * INITIAL_CASH, ledger.getBuyingPower(), DELTA);
+        assertEquals(10_000, ledger.getAddedNotional(orderBook, -100, 100), DELTA);
+
+        fill(100, 100);
+        assertEquals(10_000, ledger.getBuyingPower(), DELTA);
+        assertTrue(ledger.hasBuyingPower(orderBook, 100, 100));
+        assertFalse(ledger.hasBuyingPower(orderBook, 101, 100));
+
+        // Selling closes the long position before it opens a short position
+        assertEquals(-10_000, ledger.getAddedNotional(orderBook, -100, 100), DELTA);
+        assertEquals(10_000, ledger.getAddedNotional(orderBook, -300, 100), DELTA);
+        assertTrue(ledger.hasBuyingPower(orderBook, -300, 100));
+        assertFalse(ledger.hasBuyingPower(orderBook, -301, 100));
+
+        fill(-300, 100);
+        assertEquals(0, ledger.getBuyingPower(), DELTA);
+        assertTrue(ledger.hasBuyingPower(orderBook, 200, 100));
+        assertFalse(ledger.hasBuyingPower(orderBook, -1, 100));
+    }
+
+    /**
+     * Applies a fill of the order book to the ledger.
+     *
+     * @param quantity the signed quantity
+     * @param price    the price
+     */
+    private void fill(int quantity, double price) {
+        ledger.onFill(orderBook, quantity, price);
+    }
+
+    /**
+     * Asserts the position of the order book and the realized P&amp;L of the ledger.
+     *
+     * @param quantity           the signed quantity
+     * @param averageEntryPrice  the average entry price
+     * @param realizedProfitLoss the realized profit loss
+     */
+    private void assertPosition(long quantity, double averageEntryPrice, double realizedProfitLoss) {
+        assertEquals(quantity, ledger.getQuantity(orderBook.getID()));
+        assertEquals(averageEntryPrice, ledger.getAverageEntryPrice(orderBook.getID()), DELTA);
+        assertEquals(quantity == 0 ? 0 : quantity * averageEntryPrice, ledger.getCostBasis(orderBook.getID()), DELTA);
+        assertEquals(realizedProfitLoss, ledger.getRealizedProfitLoss(), DELTA);
+    }
+}
@@ -0,0 +1,431 @@
+package net.jacobpeterson.broker.order;
+
+import io.github.mainstringargs.alpaca.enums.OrderSide;
+import io.github.mainstringargs.alpaca.enums.OrderTimeInForce;
+import io.github.mainstringargs.alpaca.enums.OrderType;
+import io.github.mainstringargs.domain.alpaca.calendar.Calendar;
+import net.jacobpeterson.algorithm.update.ticker.AggregateUpdateType;
+import net.jacobpeterson.data.calendar.MarketCalendar;
+import net.jacobpeterson.util.GsonUtil;
+import net.jacobpeterson.util.TimeUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link MatchingEngine} and its {@link OrderBook}s.
+ */
+public class MatchingEngineTest {
+
+    private static final String TICKER = "AAPL";
+    private static final LocalDate MONDAY = LocalDate.of(2020, 3, 2);
+    private static final LocalDate SATURDAY = LocalDate.of(2020, 3, 7);
+    private static final double DELTA = 1e-9;
+
+    private MatchingEngine matchingEngine;
+    private OrderBook orderBook;
+    private List<String> fills;
+
+    @Before
+    public void setUp() {
+        matchingEngine = new MatchingEngine();
+        orderBook = matchingEngine.getOrderBook(TICKER);
+        fills = new ArrayList<>();
+        matchingEngine.setOrderListener((orderID, orderEvent, timestamp, price, quantity) -> {
+            if (orderEvent == OrderEvent.FILL) {
+                fills.add(orderID + "@" + price);
+            }
+        });
+    }
+
+    @Test
+    public void marketOrderFillsAtQuoteOrLastTrade() {
+        orderBook.onTrade(at(MONDAY, 10, 0), 100);
+        int tradeBuyID = submit(OrderSide.BUY, OrderType.MARKET, OrderTimeInForce.DAY, Double.NaN, Double.NaN);
+        assertFilled(tradeBuyID, 100);
+
+        orderBook.onQuote(at(MONDAY, 10, 1), 99.5, 100.5);
+        int buyID = submit(OrderSide.BUY, OrderType.MARKET, OrderTimeInForce.DAY, Double.NaN, Double.NaN);
+        int sellID = submit(OrderSide.SELL, OrderType.MARKET, OrderTimeInForce.DAY, Double.NaN, Double.NaN);
+        assertFilled(buyID, 100.5);
+        assertFilled(sellID, 99.5);
+    }
+
+    @Test
+    public void marketOrderWithoutPriceFillsOnNextPrice() {
+        matchingEngine.advanceTime(at(MONDAY, 10, 0));
+        int orderID = submit(OrderSide.BUY, OrderType.MARKET, OrderTimeInForce.GTC, Double.NaN, Double.NaN);
+        assertEquals(OrderStatus.NEW, matchingEngine.getStatus(orderID));
+
+        orderBook.onQuote(at(MONDAY, 10, 1), 99.5, 100.5);
+        assertFilled(orderID, 100.5);
+    }
+
+    @Test
+    public void limitOrderFillsAtLimitPriceOnceReached() {
+        orderBook.onQuote(at(MONDAY, 10, 0), 100, 101);
+        int buyID = submit(OrderSide.BUY, OrderType.LIMIT, OrderTimeInForce.DAY, 100, Double.NaN);
+        int sellID = submit(OrderSide.SELL, OrderType.LIMIT, OrderTimeInForce.DAY, 102, Double.NaN);
+        int marketableID = submit(OrderSide.BUY, OrderType.LIMIT, OrderTimeInForce.DAY, 101.5, Double.NaN);
+        assertFilled(marketableID, 101);
+
+        orderBook.onQuote(at(MONDAY, 10, 1), 100, 100.5);
+        assertEquals(OrderStatus.NEW, matchingEngine.getStatus(buyID));
+
+        orderBook.onQuote(at(MONDAY, 10, 2), 99, 99.5);
+        assertFilled(buyID, 100);
+        assertEquals(OrderStatus.NEW, matchingEngine.getStatus(sellID));
+
+        orderBook.onTrade(at(MONDAY, 10, 3), 102.5);
+        assertFilled(sellID, 102);
+    }
+
+    @Test
+    public void stopOrderTriggersAsMarketOrder() {
+        orderBook.onTrade(at(MONDAY, 10, 0), 100);
+        int buyStopID = submit(OrderSide.BUY, OrderType.STOP, OrderTimeInForce.GTC, Double.NaN, 105);
+        int sellStopID = submit(OrderSide.SELL, OrderType.STOP, OrderTimeInForce.GTC, Double.NaN, 95);
+
+        orderBook.onTrade(at(MONDAY, 10, 1), 104.99);
+        assertEquals(OrderStatus.NEW, matchingEngine.getStatus(buyStopID));
+
+        orderBook.onTrade(at(MONDAY, 10, 2), 106);
+        assertFilled(buyStopID, 106);
+        assertEquals(OrderStatus.NEW, matchingEngine.getStatus(sellStopID));
+
+        orderBook.onQuote(at(MONDAY, 10, 3), 94, 94.5);
+        assertFilled(sellStopID, 94);
+    }
+
+    @Test
+    public void stopLimitOrderTriggersAsLimitOrder() {
+        orderBook.onTrade(at(MONDAY, 10, 0), 100);
+        int orderID = submit(OrderSide.BUY, OrderType.STOP_LIMIT, OrderTimeInForce.GTC, 105.5, 105);
+
+        orderBook.onTrade(at(MONDAY, 10, 1), 107);
+        assertEquals(OrderStatus.NEW, matchingEngine.getStatus(orderID));
+        assertTopOrder(orderBook.buyLimits, orderID);
+
+        orderBook.onTrade(at(MONDAY, 10, 2), 105.2);
+        assertFilled(orderID, 105.5);
+    }
+
+    @Test
+    public void barMatchesOpenThenNearerExtremeThenClose() {
+        orderBook.onBar(AggregateUpdateType.MINUTE, at(MONDAY, 10, 0), 100, 100, 100, 100);
+        int buyLimitID = submit(OrderSide.BUY, OrderType.LIMIT, OrderTimeInForce.DAY, 99, Double.NaN);
+        int sellLimitID = submit(OrderSide.SELL, OrderType.LIMIT, OrderTimeInForce.DAY, 103, Double.NaN);
+        int marketID = submit(OrderSide.BUY, OrderType.MARKET, OrderTimeInForce.DAY, Double.NaN, Double.NaN);
+        assertFilled(marketID, 100);
+        fills.clear();
+
+        // The low is nearer to the open than the high, so the low trades first
+        orderBook.onBar(AggregateUpdateType.MINUTE, at(MONDAY, 10, 1), 100, 103.5, 98.5, 102);
+        assertEquals(Arrays.asList(buyLimitID + "@99.0", sellLimitID + "@103.0"), fills);
+        fills.clear();
+
+        int nextBuyLimitID = submit(OrderSide.BUY, OrderType.LIMIT, OrderTimeInForce.DAY, 99, Double.NaN);
+        int nextSellLimitID = submit(OrderSide.SELL, OrderType.LIMIT, OrderTimeInForce.DAY, 103, Double.NaN);
+        // The high is nearer to the open than the low, so the high trades first
+        orderBook.onBar(AggregateUpdateType.MINUTE, at(MONDAY, 10, 2), 102, 103.5, 98.5, 100);
+        assertEquals(Arrays.asList(nextSellLimitID + "@103.0", nextBuyLimitID + "@99.0"), fills);
+        assertEquals(100, orderBook.getLastPrice(), DELTA);
+    }
+
+    @Test
+    public void barOfLargerTypeIsIgnoredOnceSmallerBarsMatched() {
+        orderBook.onBar(AggregateUpdateType.MINUTE, at(MONDAY, 10, 0), 100, 100, 100, 100);
+        int orderID = submit(OrderSide.BUY, OrderType.LIMIT, OrderTimeInForce.GTC, 90, Double.NaN);
+
+        orderBook.onBar(AggregateUpdateType.HOUR, at(MONDAY, 11, 0), 100, 100, 80, 100);
+        assertEquals(OrderStatus.NEW, matchingEngine.getStatus(orderID));
+    }
+
+    @Test
+    public void immediateOrdersAreCanceledIfTheyCannotFill() {
+        matchingEngine.advanceTime(at(MONDAY, 10, 0));
+        int unpricedID = submit(OrderSide.BUY, OrderType.MARKET, OrderTimeInForce.FOK, Double.NaN, Double.NaN);
+        assertEquals(OrderStatus.CANCELED, matchingEngine.getStatus(unpricedID));
+
+        orderBook.onQuote(at(MONDAY, 10, 1), 100, 101);
+        int iocID = submit(OrderSide.BUY, OrderType.LIMIT, OrderTimeInForce.IOC, 100.5, Double.NaN);
+        int fokID = submit(OrderSide.SELL, OrderType.LIMIT, OrderTimeInForce.FOK, 100.5, Double.NaN);
+        int stopID = submit(OrderSide.BUY, OrderType.STOP, OrderTimeInForce.IOC, Double.NaN, 105);
+        int marketableID = submit(OrderSide.BUY, OrderType.LIMIT, OrderTimeInForce.IOC, 101, Double.NaN);
+        assertEquals(OrderStatus.CANCELED, matchingEngine.getStatus(iocID));
+        assertEquals(OrderStatus.CANCELED, matchingEngine.getStatus(fokID));
+        assertEquals(OrderStatus.CANCELED, matchingEngine.getStatus(stopID));
+        assertFilled(marketableID, 101);
+        assertEquals(0, matchingEngine.getOpenOrderCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void openingAndClosingOrdersAreRejected() {
+        matchingEngine.advanceTime(at(MONDAY, 10, 0));
+        submit(OrderSide.BUY, OrderType.MARKET, OrderTimeInForce.CLS, Double.NaN, Double.NaN);
+    }
+
+    @Test
+    public void dayOrderExpiresAtClose() {
+        orderBook.onQuote(at(MONDAY, 10, 0), 100, 101);
+        int orderID = submit(OrderSide.BUY, OrderType.LIMIT, OrderTimeInForce.DAY, 90, Double.NaN);
+
+        matchingEngine.advanceTime(at(MONDAY, 15, 59));
+        assertEquals(OrderStatus.NEW, matchingEngine.getStatus(orderID));
+        matchingEngine.advanceTime(at(MONDAY, 16, 0));
+        assertEquals(OrderStatus.EXPIRED, matchingEngine.getStatus(orderID));
+        assertEquals(at(MONDAY, 16, 0), matchingEngine.getUpdatedTimestamp(orderID));
+    }
+
+    @Test
+    public void ordersDoNotFillOnExtendedHoursPrices() {
+        orderBook.onQuote(at(MONDAY, 10, 0), 100, 101);
+        int orderID = submit(OrderSide.BUY, OrderType.LIMIT, OrderTimeInForce.GTC, 95, Double.NaN);
+
+        orderBook.onQuote(at(MONDAY, 17, 0), 89, 90);
+        orderBook.onTrade(at(MONDAY.plusDays(1), 8, 0), 90);
+        assertEquals(OrderStatus.NEW, matchingEngine.getStatus(orderID));
+        assertEquals(90, orderBook.getLastPrice(), DELTA);
+
+        orderBook.onQuote(at(MONDAY.plusDays(1), 9, 30) + 1, 93, 94);
+        assertFilled(orderID, 95);
+
+        // A pre-market bar closes at the open
+        OrderBook barOrderBook = matchingEngine.getOrderBook("SPY");
+        barOrderBook.onBar(AggregateUpdateType.MINUTE, at(MONDAY, 15, 0), 100, 100, 100, 100);
+        int barOrderID = matchingEngine.submitOrder("SPY", 1, OrderSide.BUY, OrderType.LIMIT,
+                OrderTimeInForce.GTC, 95, Double.NaN);
+        barOrderBook.onBar(AggregateUpdateType.MINUTE, at(MONDAY.plusDays(1), 9, 30), 90, 90, 90, 90);
+        assertEquals(OrderStatus.NEW, matchingEngine.getStatus(barOrderID));
+        barOrderBook.onBar(AggregateUpdateType.MINUTE, at(MONDAY.plusDays(1), 9, 31), 94, 94, 94, 94);
+        assertFilled(barOrderID, 95);
+    }
+
+    @Test
+    public void marketOrderOnWeekendFillsOnFirstPriceOfNextSession() {
+        orderBook.onQuote(at(SATURDAY.minusDays(1), 15, 59), 99, 101);
+        matchingEngine.advanceTime(at(SATURDAY, 12, 0));
+        int orderID = submit(OrderSide.BUY, OrderType.MARKET, OrderTimeInForce.DAY, Double.NaN, Double.NaN);
+        assertTopOrder(orderBook.pendingMarkets, orderID);
+
+        orderBook.onQuote(at(SATURDAY.plusDays(2), 9, 0), 104, 105);
+        assertEquals(OrderStatus.NEW, matchingEngine.getStatus(orderID));
+
+        orderBook.onQuote(at(SATURDAY.plusDays(2), 9, 30), 106, 107);
+        assertFilled(orderID, 107);
+    }
+
+    @Test
+    public void ordersDoNotFillOnHolidays() {
+        LocalDate thanksgiving = LocalDate.of(2020, 11, 26);
+        matchingEngine.setMarketCalendar(new MarketCalendar(LocalDate.of(2020, 11, 23), LocalDate.of(2020, 12, 1),
+                Arrays.asList(createCalendar(LocalDate.of(2020, 11, 23), "16:00"),
+                        createCalendar(LocalDate.of(2020, 11, 24), "16:00"),
+                        createCalendar(LocalDate.of(2020, 11, 25), "16:00"),
+                        createCalendar(LocalDate.of(2020, 11, 27), "13:00"),
+                        createCalendar(LocalDate.of(2020, 11, 30), "16:00"))));
+
+        orderBook.onQuote(at(thanksgiving.minusDays(1), 15, 0), 99, 100);
+        int limitID = submit(OrderSide.BUY, OrderType.LIMIT, OrderTimeInForce.GTC, 98, Double.NaN);
+        orderBook.onQuote(at(thanksgiving, 10, 0), 96, 97);
+        int marketID = submit(OrderSide.SELL, OrderType.MARKET, OrderTimeInForce.DAY, Double.NaN, Double.NaN);
+        assertEquals(OrderStatus.NEW, matchingEngine.getStatus(limitID));
+        assertEquals(OrderStatus.NEW, matchingEngine.getStatus(marketID));
+
+        // The day after closes early, so prices after 13:00 are extended hours
+        orderBook.onQuote(at(thanksgiving.plusDays(1), 13, 30), 95, 96);
+        assertEquals(OrderStatus.EXPIRED, matchingEngine.getStatus(marketID));
+        assertEquals(at(thanksgiving.plusDays(1), 13, 0), matchingEngine.getUpdatedTimestamp(marketID));
+        assertEquals(OrderStatus.NEW, matchingEngine.getStatus(limitID));
+
+        orderBook.onQuote(at(thanksgiving.plusDays(4), 9, 31), 96, 97);
+        assertFilled(limitID, 98);
+    }
+
+    @Test
+    public void dayOrderOfDailyBarsFillsOnBarOfItsSession() {
+        orderBook.onBar(AggregateUpdateType.DAY, at(MONDAY.plusDays(1), 0, 0), 10, 12, 9, 11);
+        int marketID = submit(OrderSide.BUY, OrderType.MARKET, OrderTimeInForce.DAY, Double.NaN, Double.NaN);
+        int limitID = submit(OrderSide.BUY, OrderType.LIMIT, OrderTimeInForce.DAY, 5, Double.NaN);
+        assertEquals(OrderStatus.NEW, matchingEngine.getStatus(marketID));
+
+        // The orders expire at Tuesday's close, but Tuesday's bar is only replayed at the following midnight
+        matchingEngine.advanceTime(at(MONDAY.plusDays(1), 16, 30));
+        assertEquals(OrderStatus.NEW, matchingEngine.getStatus(marketID));
+        assertEquals(OrderStatus.NEW, matchingEngine.getStatus(limitID));
+
+        orderBook.onBar(AggregateUpdateType.DAY, at(MONDAY.plusDays(2), 0, 0), 20, 22, 19, 21);
+        assertFilled(marketID, 20);
+        assertEquals(OrderStatus.EXPIRED, matchingEngine.getStatus(limitID));
+        assertEquals(at(MONDAY.plusDays(1), 16, 0), matchingEngine.getUpdatedTimestamp(limitID));
+    }
+
+    @Test
+    public void dayOrderOfDailyBarsExpiresIfItsBarIsSkipped() {
+        orderBook.onBar(AggregateUpdateType.DAY, at(MONDAY.plusDays(1), 0, 0), 10, 12, 9, 11);
+        int orderID = submit(OrderSide.BUY, OrderType.LIMIT, OrderTimeInForce.DAY, 5, Double.NaN);
+
+        matchingEngine.advanceTime(at(MONDAY.plusDays(2), 0, 0) + 1);
+        assertEquals(OrderStatus.EXPIRED, matchingEngine.getStatus(orderID));
+        assertEquals(at(MONDAY.plusDays(1), 16, 0), matchingEngine.getUpdatedTimestamp(orderID));
+    }
+
+    @Test
+    public void cancelCompactsStaleEntries() {
+        orderBook.onQuote(at(MONDAY, 10, 0), 200, 201);
+        int[] orderIDs = new int[100];
+        for (int index = 0; index < orderIDs.length; index++) {
+            orderIDs[index] = submit(OrderSide.BUY, OrderType.LIMIT, OrderTimeInForce.GTC, 100 + index,
+                    Double.NaN);
+        }
+        assertEquals(100, orderBook.buyLimits.size());
+
+        // Cancels the highest prices, which are the top of the heap
+        for (int index = orderIDs.length - 1; index >= 50; index--) {
+            assertTrue(matchingEngine.cancelOrder(orderIDs[index]));
+        }
+        assertEquals(100, orderBook.buyLimits.size());
+        assertTrue(matchingEngine.cancelOrder(orderIDs[49]));
+        assertEquals(49, orderBook.buyLimits.size());
+        assertEquals(49, matchingEngine.getOpenOrderCount());
+
+        orderBook.onQuote(at(MONDAY, 10, 1), 120, 120);
+        assertEquals(29, fills.size());
+        assertFilled(orderIDs[48], 148);
+        assertFilled(orderIDs[20], 120);
+        assertEquals(OrderStatus.CANCELED, matchingEngine.getStatus(orderIDs[99]));
+        assertEquals(OrderStatus.NEW, matchingEngine.getStatus(orderIDs[19]));
+    }
+
+    @Test
+    public void stateRoundTrips() throws IOException {
+        OrderBook barBook = matchingEngine.getOrderBook("SPY");
+        barBook.onBar(AggregateUpdateType.DAY, at(MONDAY.plusDays(1), 0, 0), 10, 12, 9, 11);
+        orderBook.onQuote(at(MONDAY.plusDays(1), 10, 0), 100, 101);
+        submit(OrderSide.BUY, OrderType.MARKET, OrderTimeInForce.DAY, Double.NaN, Double.NaN);
+        int limitID = submit(OrderSide.BUY, OrderType.LIMIT, OrderTimeInForce.DAY, 99, Double.NaN);
+        int stopID = submit(OrderSide.SELL, OrderType.STOP_LIMIT, OrderTimeInForce.GTC, 94, 95);
+        int canceledID = submit(OrderSide.SELL, OrderType.LIMIT, OrderTimeInForce.GTC, 110, Double.NaN);
+        matchingEngine.cancelOrder(canceledID);
+        int deferredID = matchingEngine.submitOrder("SPY", 5, OrderSide.SELL, OrderType.MARKET,
+                OrderTimeInForce.DAY, Double.NaN, Double.NaN);
+        matchingEngine.advanceTime(at(MONDAY.plusDays(1), 16, 30));
+
+        byte[] state = writeState(matchingEngine);
+        MatchingEngine restoredMatchingEngine = new MatchingEngine();
+        restoredMatchingEngine.readState(new DataInputStream(new ByteArrayInputStream(state)));
+        assertArrayEquals(state, writeState(restoredMatchingEngine));
+
+        for (MatchingEngine engine : Arrays.asList(matchingEngine, restoredMatchingEngine)) {
+            assertEquals(OrderStatus.EXPIRED, engine.getStatus(limitID));
+            assertEquals(OrderStatus.NEW, engine.getStatus(stopID));
+            assertEquals(OrderStatus.CANCELED, engine.getStatus(canceledID));
+            assertEquals(OrderStatus.NEW, engine.getStatus(deferredID));
+            assertEquals(2, engine.getOpenOrderCount());
+
+            engine.getOrderBook("SPY").onBar(AggregateUpdateType.DAY, at(MONDAY.plusDays(2), 0, 0), 20, 22, 19, 21);
+            engine.getOrderBook(TICKER).onTrade(at(MONDAY.plusDays(2), 10, 0), 94.5);
+            engine.getOrderBook(TICKER).onTrade(at(MONDAY.plusDays(2), 10, 1), 93);
+            assertEquals(OrderStatus.FILLED, engine.getStatus(deferredID));
+            assertEquals(20, engine.getFilledAveragePrice(deferredID), DELTA);
+            assertEquals(OrderStatus.FILLED, engine.getStatus(stopID));
+            assertEquals(94.5, engine.getFilledAveragePrice(stopID), DELTA);
+            assertEquals("SPY", engine.getTicker(deferredID));
+            assertEquals(5, engine.getFilledQuantity(deferredID));
+        }
+        assertArrayEquals(writeState(matchingEngine), writeState(restoredMatchingEngine));
+    }
+
+    /**
+     * Submits an order of one share of {@link #TICKER}.
+     *
+     * @param orderSide        the order side
+     * @param orderType        the order type
+     * @param orderTimeInForce the order time in force
+     * @param limitPrice       the limit price
+     * @param stopPrice        the stop price
+     *
+     * @return the order ID
+     */
+    private int submit(OrderSide orderSide, OrderType orderType, OrderTimeInForce orderTimeInForce,
+            double limitPrice, double stopPrice) {
+        return matchingEngine.submitOrder(TICKER, 1, orderSide, orderType, orderTimeInForce, limitPrice, stopPrice);
+    }
+
+    /**
+     * Asserts that an order is filled at a price.
+     *
+     * @param orderID the order ID
+     * @param price   the price
+     */
+    private void assertFilled(int orderID, double price) {
+        assertEquals(OrderStatus.FILLED, matchingEngine.getStatus(orderID));
+        assertEquals(price, matchingEngine.getFilledAveragePrice(orderID), DELTA);
+    }
+
+    /**
+     * Asserts that an order is the top live order of a heap.
+     *
+     * @param orderHeap the order heap
+     * @param orderID   the order ID
+     */
+    private static void assertTopOrder(OrderHeap orderHeap, int orderID) {
+        assertTrue(orderHeap.prune());
+        assertEquals(orderID, orderHeap.peekOrderID());
+    }
+
+    /**
+     * Writes the state of a matching engine.
+     *
+     * @param matchingEngine the matching engine
+     *
+     * @return the state
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private static byte[] writeState(MatchingEngine matchingEngine) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        matchingEngine.writeState(new DataOutputStream(byteArrayOutputStream));
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    /**
+     * Gets the epoch nanoseconds of a New York date and time.
+     *
+     * @param date   the date
+     * @param hour   the hour
+     * @param minute the minute
+     *
+     * @return the timestamp (epoch nanoseconds)
+     */
+    private static long at(LocalDate date, int hour, int minute) {
+        return TimeUtil.toEpochNanos(date, LocalTime.of(hour, minute));
+    }
+
+    /**
+     * Creates the {@link Calendar} of a trading day that opens at 9:30.
+     *
+     * @param date  the date
+     * @param close the close time
+     *
+     * @return the calendar
+     */
+    private static Calendar createCalendar(LocalDate date, String close) {
+        return GsonUtil.GSON.fromJson("{\"date\":\"" + date + "\",\"open\":\"09:30\",\"close\":\"" + close + "\"}",
+                Calendar.class);
+    }
+}
@@ -0,0 +1,376 @@
+package net.jacobpeterson.checkpoint;
+
+import io.github.mainstringargs.alpaca.enums.OrderSide;
+import io.github.mainstringargs.alpaca.enums.OrderTimeInForce;
+import io.github.mainstringargs.alpaca.enums.OrderType;
+import net.jacobpeterson.AlpacaJavaBacktest;
+import net.jacobpeterson.algorithm.TradingAlgorithm;
+import net.jacobpeterson.algorithm.update.ticker.AggregateUpdateType;
+import net.jacobpeterson.broker.BacktestBroker;
+import net.jacobpeterson.broker.order.MatchingEngine;
+import net.jacobpeterson.broker.order.OrderBook;
+import net.jacobpeterson.data.BacktestData;
+import net.jacobpeterson.data.cache.SegmentColumn;
+import net.jacobpeterson.data.cache.SegmentType;
+import net.jacobpeterson.data.cache.SegmentWriter;
+import net.jacobpeterson.data.cursor.AggregateCursor;
+import net.jacobpeterson.indicator.ExponentialMovingAverage;
+import net.jacobpeterson.indicator.Indicator;
+import net.jacobpeterson.indicator.Indicators;
+import net.jacobpeterson.indicator.RelativeStrengthIndex;
+import net.jacobpeterson.indicator.SimpleMovingAverage;
+import net.jacobpeterson.util.TimeUtil;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the state written to a {@link BacktestCheckpoint} is read back exactly and that a backtest that is halted
+ * and resumed from its checkpoint ends exactly like an uninterrupted backtest.
+ */
+public class BacktestCheckpointTest {
+
+    private static final String TICKER = "AAPL";
+    private static final LocalDate FIRST_DATE = LocalDate.of(2020, 3, 2);
+    private static final int DATE_COUNT = 3;
+    private static final int BARS_PER_DAY = 390;
+    private static final double DELTA = 1e-9;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private BacktestData backtestData;
+
+    @Before
+    public void setUp() throws IOException {
+        backtestData = new BacktestData(null, null, temporaryFolder.newFolder());
+    }
+
+    @Test
+    public void brokerStateRoundTrips() throws IOException {
+        BacktestBroker backtestBroker = new BacktestBroker(backtestData);
+        MatchingEngine matchingEngine = backtestBroker.getMatchingEngine();
+        long timestamp = TimeUtil.toEpochNanos(FIRST_DATE, LocalTime.of(10, 0));
+        OrderBook orderBook = matchingEngine.getOrderBook(TICKER);
+        orderBook.onQuote(timestamp, 99.9, 100.1);
+        matchingEngine.submitOrder(TICKER, 100, OrderSide.BUY, OrderType.MARKET, OrderTimeInForce.DAY, Double.NaN,
+                Double.NaN);
+        matchingEngine.submitOrder(TICKER, 40, OrderSide.SELL, OrderType.LIMIT, OrderTimeInForce.GTC, 101,
+                Double.NaN);
+        matchingEngine.submitOrder(TICKER, 60, OrderSide.SELL, OrderType.STOP, OrderTimeInForce.DAY, Double.NaN, 98);
+        matchingEngine.submitOrder(TICKER, 50, OrderSide.BUY, OrderType.LIMIT, OrderTimeInForce.DAY, 99, Double.NaN);
+        orderBook.onTrade(timestamp + 60_000_000_000L, 101.5);
+        orderBook.onQuote(timestamp + 120_000_000_000L, 100.4, 100.6);
+        assertEquals(2, backtestBroker.getPerformanceStatistics().getFillCount());
+
+        BacktestBroker resumedBacktestBroker = new BacktestBroker(backtestData);
+        assertStateRoundTrips(matchingEngine, resumedBacktestBroker.getMatchingEngine());
+        assertStateRoundTrips(backtestBroker.getLedger(), resumedBacktestBroker.getLedger());
+        assertStateRoundTrips(backtestBroker.getPerformanceStatistics(),
+                resumedBacktestBroker.getPerformanceStatistics());
+        assertBrokersEqual(backtestBroker, resumedBacktestBroker);
+
+        // Both brokers behave the same from here on
+        for (BacktestBroker broker : new BacktestBroker[]{backtestBroker, resumedBacktestBroker}) {
+            OrderBook brokerOrderBook = broker.getMatchingEngine().getOrderBook(TICKER);
+            brokerOrderBook.onTrade(timestamp + 180_000_000_000L, 98.9);
+            brokerOrderBook.onTrade(timestamp + 240_000_000_000L, 97.5);
+            brokerOrderBook.onQuote(timestamp + 300_000_000_000L, 97.4, 97.6);
+        }
+        assertBrokersEqual(backtestBroker, resumedBacktestBroker);
+        assertEquals(4, resumedBacktestBroker.getPerformanceStatistics().getFillCount());
+    }
+
+    @Test
+    public void indicatorsStateRoundTrips() throws IOException {
+        Indicators indicators = new Indicators();
+        Indicator[] attachedIndicators = attachIndicators(indicators);
+        Indicators resumedIndicators = new Indicators();
+        Indicator[] resumedAttachedIndicators = attachIndicators(resumedIndicators);
+        Random random = new Random(1);
+        double price = 100;
+        for (int bar = 0; bar < 50; bar++) {
+            price += random.nextGaussian();
+            updateIndicators(attachedIndicators, bar, price);
+        }
+        assertTrue(attachedIndicators[0].isReady());
+        assertFalse(resumedAttachedIndicators[0].isReady());
+
+        assertStateRoundTrips(indicators, resumedIndicators);
+        assertIndicatorsEqual(attachedIndicators, resumedAttachedIndicators);
+
+        for (int bar = 50; bar < 60; bar++) {
+            price += random.nextGaussian();
+            updateIndicators(attachedIndicators, bar, price);
+            updateIndicators(resumedAttachedIndicators, bar, price);
+        }
+        assertIndicatorsEqual(attachedIndicators, resumedAttachedIndicators);
+    }
+
+    @Test(timeout = 120_000)
+    public void resumedBacktestEndsLikeUninterruptedBacktest() throws IOException {
+        writeMinuteBars();
+
+        AlternatingAlgorithm uninterruptedAlgorithm = new AlternatingAlgorithm();
+        AlpacaJavaBacktest uninterruptedBacktest = createBacktest();
+        uninterruptedBacktest.run(uninterruptedAlgorithm);
+
+        File checkpointFile = new File(temporaryFolder.getRoot(), "backtest.checkpoint");
+        AlternatingAlgorithm haltedAlgorithm = new AlternatingAlgorithm();
+        AlpacaJavaBacktest haltedBacktest = createBacktest();
+        haltedBacktest.setCheckpointingEnabled(true);
+        haltedBacktest.setCheckpointInterval(Duration.ZERO);
+        haltedBacktest.setCheckpointFile(checkpointFile);
+        // Halt during the last day, after the checkpoint that was taken at the midnight before it
+        haltedAlgorithm.haltedBacktest = haltedBacktest;
+        haltedAlgorithm.haltAggregateCount = (DATE_COUNT - 1) * BARS_PER_DAY + 100;
+        haltedBacktest.run(haltedAlgorithm);
+        assertEquals(haltedAlgorithm.haltAggregateCount, haltedAlgorithm.aggregateCount);
+        assertTrue(checkpointFile.exists());
+        assertEquals(TimeUtil.toEpochNanos(FIRST_DATE.plusDays(DATE_COUNT - 1), LocalTime.MIDNIGHT),
+                BacktestCheckpoint.read(checkpointFile).getTimestamp());
+
+        AlternatingAlgorithm resumedAlgorithm = new AlternatingAlgorithm();
+        AlpacaJavaBacktest resumedBacktest = createBacktest();
+        resumedBacktest.setCheckpointingEnabled(true);
+        resumedBacktest.setCheckpointFile(checkpointFile);
+        resumedBacktest.resume(resumedAlgorithm);
+        assertFalse(checkpointFile.exists());
+
+        assertEquals(DATE_COUNT * BARS_PER_DAY, uninterruptedAlgorithm.aggregateCount);
+        assertEquals(uninterruptedAlgorithm.aggregateCount, resumedAlgorithm.aggregateCount);
+        assertTrue(uninterruptedBacktest.getBacktestBroker().getPerformanceStatistics().getFillCount() > 10);
+        assertBrokersEqual(uninterruptedBacktest.getBacktestBroker(), resumedBacktest.getBacktestBroker());
+    }
+
+    /**
+     * Writes the state of a {@link Checkpointable}, reads it into another one, and asserts that the other one writes
+     * the same state.
+     *
+     * @param checkpointable        the checkpointable
+     * @param resumedCheckpointable the checkpointable to read the state into
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private static void assertStateRoundTrips(Checkpointable checkpointable, Checkpointable resumedCheckpointable)
+            throws IOException {
+        byte[] state = writeState(checkpointable);
+        DataInput dataInput = new DataInputStream(new ByteArrayInputStream(state));
+        resumedCheckpointable.readState(dataInput);
+        assertArrayEquals(state, writeState(resumedCheckpointable));
+    }
+
+    /**
+     * Writes the state of a {@link Checkpointable}.
+     *
+     * @param checkpointable the checkpointable
+     *
+     * @return the state
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private static byte[] writeState(Checkpointable checkpointable) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        DataOutput dataOutput = new DataOutputStream(byteArrayOutputStream);
+        checkpointable.writeState(dataOutput);
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    /**
+     * Asserts that the orders, the ledger, and the performance statistics of two brokers are equal.
+     *
+     * @param expected the expected broker
+     * @param actual   the actual broker
+     */
+    private static void assertBrokersEqual(BacktestBroker expected, BacktestBroker actual) {
+        MatchingEngine expectedMatchingEngine = expected.getMatchingEngine();
+        MatchingEngine actualMatchingEngine = actual.getMatchingEngine();
+        assertEquals(expectedMatchingEngine.getOrderCount(), actualMatchingEngine.getOrderCount());
+        assertEquals(expectedMatchingEngine.getOpenOrderCount(), actualMatchingEngine.getOpenOrderCount());
+        for (int orderID = 0; orderID < expectedMatchingEngine.getOrderCount(); orderID++) {
+            assertEquals(expectedMatchingEngine.getStatus(orderID), actualMatchingEngine.getStatus(orderID));
+            assertEquals(expectedMatchingEngine.getFilledQuantity(orderID),
+                    actualMatchingEngine.getFilledQuantity(orderID));
+        }
+
+        assertEquals(expected.getLedger().getEquity(), actual.getLedger().getEquity(), DELTA);
+        assertEquals(expected.getLedger().getCash(), actual.getLedger().getCash(), DELTA);
+        assertEquals(expected.getLedger().getRealizedProfitLoss(), actual.getLedger().getRealizedProfitLoss(), DELTA);
+        assertEquals(expected.getLedger().getPositionCount(), actual.getLedger().getPositionCount());
+
+        assertEquals(expected.getPerformanceStatistics().getFillCount(),
+                actual.getPerformanceStatistics().getFillCount());
+        assertEquals(expected.getPerformanceStatistics().getTradedNotional(),
+                actual.getPerformanceStatistics().getTradedNotional(), DELTA);
+        assertEquals(expected.getPerformanceStatistics().getMaxDrawdown(),
+                actual.getPerformanceStatistics().getMaxDrawdown(), DELTA);
+        assertEquals(expected.getPerformanceStatistics().getTotalReturn(),
+                actual.getPerformanceStatistics().getTotalReturn(), DELTA);
+    }
+
+    /**
+     * Attaches indicators to several tickers and aggregate update types.
+     *
+     * @param indicators the indicators
+     *
+     * @return the attached indicators
+     */
+    private static Indicator[] attachIndicators(Indicators indicators) {
+        return new Indicator[]{
+                indicators.attach(TICKER, AggregateUpdateType.MINUTE, new SimpleMovingAverage(10)),
+                indicators.attach(TICKER, AggregateUpdateType.MINUTE, new ExponentialMovingAverage(20)),
+                indicators.attach("SPY", AggregateUpdateType.DAY, new RelativeStrengthIndex(14))};
+    }
+
+    /**
+     * Updates indicators with a bar.
+     *
+     * @param indicators the indicators
+     * @param bar        the bar index
+     * @param price      the close price of the bar
+     */
+    private static void updateIndicators(Indicator[] indicators, int bar, double price) {
+        for (Indicator indicator : indicators) {
+            indicator.update(bar, price - 0.5, price + 1, price - 1, price, 1_000 + bar);
+        }
+    }
+
+    /**
+     * Asserts that indicators have the same values.
+     *
+     * @param expected the expected indicators
+     * @param actual   the actual indicators
+     */
+    private static void assertIndicatorsEqual(Indicator[] expected, Indicator[] actual) {
+        for (int index = 0; index < expected.length; index++) {
+            assertEquals(expected[index].isReady(), actual[index].isReady());
+            assertEquals(expected[index].getValue(), actual[index].getValue(), DELTA);
+        }
+    }
+
+    /**
+     * Writes {@link #BARS_PER_DAY} minute bars of {@link #TICKER} for each regular session of {@link #DATE_COUNT}
+     * dates from {@link #FIRST_DATE} to the data cache, and empty data files for the dates around them that the
+     * replay may look up since there is no market calendar.
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private void writeMinuteBars() throws IOException {
+        Random random = new Random(2);
+        double price = 100;
+        for (int dateIndex = -1; dateIndex <= DATE_COUNT; dateIndex++) {
+            LocalDate date = FIRST_DATE.plusDays(dateIndex);
+            long openTimestamp = TimeUtil.toEpochNanos(date, TimeUtil.MARKET_OPEN_TIME);
+            SegmentWriter segmentWriter = new SegmentWriter(SegmentType.AGGREGATE);
+            for (int bar = 0; dateIndex >= 0 && dateIndex < DATE_COUNT && bar < BARS_PER_DAY; bar++) {
+                double open = price;
+                price = Math.max(1, Math.round((price + random.nextGaussian() * 0.2) * 100) / 100.0);
+                segmentWriter.addRow();
+                segmentWriter.setLong(SegmentColumn.TIMESTAMP, openTimestamp + bar * 60_000_000_000L);
+                segmentWriter.setDouble(SegmentColumn.OPEN, open);
+                segmentWriter.setDouble(SegmentColumn.HIGH, Math.max(open, price) + 0.05);
+                segmentWriter.setDouble(SegmentColumn.LOW, Math.min(open, price) - 0.05);
+                segmentWriter.setDouble(SegmentColumn.CLOSE, price);
+                segmentWriter.setDouble(SegmentColumn.VOLUME, 1_000 + random.nextInt(1_000));
+                segmentWriter.setInt(SegmentColumn.COUNT, 10);
+            }
+            backtestData.writeSegment(segmentWriter, backtestData.getDataFile(TICKER, date,
+                    AggregateUpdateType.MINUTE, SegmentType.AGGREGATE.getFileExtension()));
+        }
+    }
+
+    /**
+     * Creates a backtest of the minute bars of {@link #writeMinuteBars()}.
+     *
+     * @return the alpaca java backtest
+     */
+    private AlpacaJavaBacktest createBacktest() {
+        AlpacaJavaBacktest alpacaJavaBacktest = new AlpacaJavaBacktest(backtestData);
+        alpacaJavaBacktest.addTickerUpdateTypes(TICKER, AggregateUpdateType.MINUTE);
+        alpacaJavaBacktest.setFrom(TimeUtil.toNewYorkDateTime(TimeUtil.toEpochNanos(FIRST_DATE, LocalTime.MIDNIGHT)));
+        alpacaJavaBacktest.setTo(TimeUtil.toNewYorkDateTime(TimeUtil.toEpochNanos(FIRST_DATE.plusDays(DATE_COUNT),
+                LocalTime.MIDNIGHT)));
+        return alpacaJavaBacktest;
+    }
+
+    /**
+     * A {@link TradingAlgorithm} that buys when the close crosses above a moving average and sells short when it
+     * crosses below, so it trades all the time. Its own state is checkpointed, and it can halt its backtest after a
+     * number of aggregates.
+     */
+    public static class AlternatingAlgorithm extends TradingAlgorithm implements Checkpointable {
+
+        private SimpleMovingAverage simpleMovingAverage;
+        private int aggregateCount;
+        private int position;
+        private AlpacaJavaBacktest haltedBacktest;
+        private int haltAggregateCount = -1;
+
+        @Override
+        public void init() {
+            simpleMovingAverage = attachIndicator(TICKER, AggregateUpdateType.MINUTE, new SimpleMovingAverage(5));
+        }
+
+        @Override
+        public void onAggregateUpdate(String ticker, AggregateUpdateType aggregateUpdateType,
+                AggregateCursor aggregateCursor) {
+            aggregateCount++;
+            if (simpleMovingAverage.isReady()) {
+                double close = aggregateCursor.getClose();
+                if (close > simpleMovingAverage.getValue() && position <= 0) {
+                    submitMarketOrder(position == 0 ? 10 : 20, OrderSide.BUY);
+                    position = 10;
+                } else if (close < simpleMovingAverage.getValue() && position >= 0) {
+                    submitMarketOrder(position == 0 ? 10 : 20, OrderSide.SELL);
+                    position = -10;
+                }
+            }
+
+            if (aggregateCount == haltAggregateCount) {
+                haltedBacktest.shutdown();
+            }
+        }
+
+        /**
+         * Submits a market order of {@link #TICKER}.
+         *
+         * @param quantity  the quantity
+         * @param orderSide the order side
+         */
+        private void submitMarketOrder(int quantity, OrderSide orderSide) {
+            getBacktestBroker().getMatchingEngine().submitOrder(TICKER, quantity, orderSide, OrderType.MARKET,
+                    OrderTimeInForce.DAY, Double.NaN, Double.NaN);
+        }
+
+        @Override
+        public void writeState(DataOutput dataOutput) throws IOException {
+            dataOutput.writeInt(aggregateCount);
+            dataOutput.writeInt(position);
+        }
+
+        @Override
+        public void readState(DataInput dataInput) throws IOException {
+            aggregateCount = dataInput.readInt();
+            position = dataInput.readInt();
+        }
+    }
+}
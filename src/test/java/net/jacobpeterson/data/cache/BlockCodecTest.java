@@ -0,0 +1,223 @@
+package net.jacobpeterson.data.cache;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that {@link BlockCodec} decodes every encoded block to the exact bytes of its raw block and rejects corrupt
+ * stored blocks with {@link IOException}s.
+ */
+public class BlockCodecTest {
+
+    private static final int[] ROWS_IN_BLOCKS = {1, 2, 12, 100, SegmentFormat.DEFAULT_BLOCK_ROW_COUNT};
+
+    @Test
+    public void encodeRoundTripsMarketData() throws IOException {
+        Random random = new Random(1);
+        for (SegmentType segmentType : SegmentType.values()) {
+            for (int rowsInBlock : ROWS_IN_BLOCKS) {
+                long start = 1_583_159_400_000_000_000L + random.nextInt(1_000_000);
+                roundTrip(segmentType, rowsInBlock,
+                        row -> start + row * 1_000_000L + random.nextInt(1_000),
+                        row -> random.nextInt(10_000),
+                        row -> Math.round(10_000 + random.nextGaussian() * 100) / 100.0);
+            }
+        }
+    }
+
+    @Test
+    public void encodeRoundTripsExtremeValues() throws IOException {
+        Random random = new Random(2);
+        long[] longs = {Long.MIN_VALUE, Long.MAX_VALUE, 0, -1, Long.MIN_VALUE, 1, Long.MAX_VALUE};
+        int[] ints = {Integer.MIN_VALUE, Integer.MAX_VALUE, 0, -1, Integer.MIN_VALUE, 1};
+        for (SegmentType segmentType : SegmentType.values()) {
+            for (int rowsInBlock : ROWS_IN_BLOCKS) {
+                roundTrip(segmentType, rowsInBlock,
+                        row -> longs[row % longs.length],
+                        row -> ints[row % ints.length],
+                        row -> Double.longBitsToDouble(random.nextLong()));
+                roundTrip(segmentType, rowsInBlock,
+                        row -> random.nextLong(),
+                        row -> random.nextInt(),
+                        row -> row % 2 == 0 ? Double.MAX_VALUE : -Double.MIN_VALUE);
+            }
+        }
+    }
+
+    @Test
+    public void encodeRoundTripsDoublesThatCantBeScaled() throws IOException {
+        double[] rawValues = {Double.NaN, -0.0, Math.PI, 0.1234567891, 1e-10, 0.1 + 0.2, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.longBitsToDouble(0x7FF8_0000_0000_0001L), 1L << 60, 1e300};
+        for (double rawValue : rawValues) {
+            for (int rowsInBlock : ROWS_IN_BLOCKS) {
+                // A single value that can't be scaled makes its whole column raw
+                roundTrip(SegmentType.AGGREGATE, rowsInBlock,
+                        row -> row * 60_000_000_000L,
+                        row -> row,
+                        row -> row == rowsInBlock / 2 ? rawValue : 100 + row / 100.0);
+            }
+        }
+    }
+
+    @Test
+    public void encodeRoundTripsDoublesOfMaximumDecimalPlaces() throws IOException {
+        for (int rowsInBlock : ROWS_IN_BLOCKS) {
+            roundTrip(SegmentType.QUOTE, rowsInBlock,
+                    row -> row,
+                    row -> row,
+                    row -> row % 3 == 0 ? 0.123456789 : row % 3 == 1 ? -0.000000001 : 0.0);
+        }
+    }
+
+    @Test
+    public void decodeRejectsTruncatedBlocks() {
+        for (SegmentType segmentType : SegmentType.values()) {
+            ByteBuffer rawBlock = createMarketDataBlock(segmentType, 100);
+            ByteBuffer storedBlock = BlockCodec.encode(segmentType, rawBlock, 100);
+            for (int length = 0; length < storedBlock.remaining(); length++) {
+                ByteBuffer truncatedBlock = storedBlock.duplicate();
+                truncatedBlock.limit(length);
+                assertCorrupt(segmentType, truncatedBlock, 100, rawBlock.remaining());
+            }
+        }
+    }
+
+    @Test
+    public void decodeRejectsUnexpectedRawLength() {
+        ByteBuffer rawBlock = createMarketDataBlock(SegmentType.TRADE, 100);
+        ByteBuffer storedBlock = BlockCodec.encode(SegmentType.TRADE, rawBlock, 100);
+        assertCorrupt(SegmentType.TRADE, storedBlock, 100, rawBlock.remaining() - 1);
+        assertCorrupt(SegmentType.TRADE, storedBlock, 99, rawBlock.remaining());
+        assertCorrupt(SegmentType.QUOTE, storedBlock, 100, 100 * SegmentType.QUOTE.getRowWidth());
+    }
+
+    @Test
+    public void decodeRejectsCorruptBlocks() {
+        Random random = new Random(3);
+        for (SegmentType segmentType : SegmentType.values()) {
+            ByteBuffer rawBlock = createMarketDataBlock(segmentType, 100);
+            ByteBuffer storedBlock = BlockCodec.encode(segmentType, rawBlock, 100);
+            byte[] stored = toBytes(storedBlock);
+            for (int attempt = 0; attempt < 2_000; attempt++) {
+                byte[] corrupt = stored.clone();
+                for (int flip = random.nextInt(4); flip >= 0; flip--) {
+                    corrupt[random.nextInt(corrupt.length)] = (byte) random.nextInt();
+                }
+                try {
+                    BlockCodec.decode(segmentType, ByteBuffer.wrap(corrupt), 100, rawBlock.remaining());
+                } catch (IOException expected) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Encodes and decodes a raw block and asserts that the decoded block equals the raw block.
+     *
+     * @param segmentType the segment type
+     * @param rowsInBlock the rows in block
+     * @param longs       the values of {@link ColumnKind#LONG} and {@link ColumnKind#BITMASK} columns by row
+     * @param ints        the values of {@link ColumnKind#INT} columns by row
+     * @param doubles     the values of {@link ColumnKind#DOUBLE} columns by row
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private static void roundTrip(SegmentType segmentType, int rowsInBlock, IntToLongFunction longs,
+            IntUnaryOperator ints, IntToDoubleFunction doubles) throws IOException {
+        ByteBuffer rawBlock = createRawBlock(segmentType, rowsInBlock, longs, ints, doubles);
+        ByteBuffer storedBlock = BlockCodec.encode(segmentType, rawBlock, rowsInBlock);
+        ByteBuffer decodedBlock = BlockCodec.decode(segmentType, storedBlock, rowsInBlock, rawBlock.remaining());
+        assertArrayEquals(segmentType + " block of " + rowsInBlock + " rows", toBytes(rawBlock),
+                toBytes(decodedBlock));
+    }
+
+    /**
+     * Creates a raw block whose columns are laid out one after another.
+     *
+     * @param segmentType the segment type
+     * @param rowsInBlock the rows in block
+     * @param longs       the values of {@link ColumnKind#LONG} and {@link ColumnKind#BITMASK} columns by row
+     * @param ints        the values of {@link ColumnKind#INT} columns by row
+     * @param doubles     the values of {@link ColumnKind#DOUBLE} columns by row
+     *
+     * @return the raw block
+     */
+    private static ByteBuffer createRawBlock(SegmentType segmentType, int rowsInBlock, IntToLongFunction longs,
+            IntUnaryOperator ints, IntToDoubleFunction doubles) {
+        ByteBuffer rawBlock = ByteBuffer.allocate(rowsInBlock * segmentType.getRowWidth())
+                .order(SegmentFormat.BYTE_ORDER);
+        for (int columnIndex = 0; columnIndex < segmentType.getColumnCount(); columnIndex++) {
+            ColumnKind columnKind = segmentType.getColumn(columnIndex).getColumnKind();
+            for (int row = 0; row < rowsInBlock; row++) {
+                switch (columnKind) {
+                    case LONG:
+                    case BITMASK:
+                        rawBlock.putLong(longs.applyAsLong(row));
+                        break;
+                    case DOUBLE:
+                        rawBlock.putDouble(doubles.applyAsDouble(row));
+                        break;
+                    case INT:
+                        rawBlock.putInt(ints.applyAsInt(row));
+                        break;
+                    default:
+                        throw new UnsupportedOperationException(columnKind.name());
+                }
+            }
+        }
+        rawBlock.flip();
+        return rawBlock;
+    }
+
+    /**
+     * Creates a raw block of regularly spaced timestamps and prices in cents.
+     *
+     * @param segmentType the segment type
+     * @param rowsInBlock the rows in block
+     *
+     * @return the raw block
+     */
+    private static ByteBuffer createMarketDataBlock(SegmentType segmentType, int rowsInBlock) {
+        return createRawBlock(segmentType, rowsInBlock, row -> 1_583_159_400_000_000_000L + row * 1_000_000L,
+                row -> row % 7, row -> 100 + row % 13 / 100.0);
+    }
+
+    /**
+     * Asserts that decoding a stored block throws an {@link IOException}.
+     *
+     * @param segmentType the segment type
+     * @param storedBlock the stored block
+     * @param rowsInBlock the rows in block
+     * @param rawLength   the raw length
+     */
+    private static void assertCorrupt(SegmentType segmentType, ByteBuffer storedBlock, int rowsInBlock,
+            int rawLength) {
+        try {
+            BlockCodec.decode(segmentType, storedBlock, rowsInBlock, rawLength);
+            fail("Expected an IOException for a stored block of " + storedBlock.remaining() + " bytes");
+        } catch (IOException expected) {
+        }
+    }
+
+    /**
+     * Gets the remaining bytes of a buffer without changing its position.
+     *
+     * @param byteBuffer the byte buffer
+     *
+     * @return the bytes
+     */
+    private static byte[] toBytes(ByteBuffer byteBuffer) {
+        byte[] bytes = new byte[byteBuffer.remaining()];
+        byteBuffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,218 @@
+package net.jacobpeterson.data.cache;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that {@link LZ4Codec} round-trips bytes exactly and rejects corrupt input with {@link IOException}s.
+ */
+public class LZ4CodecTest {
+
+    @Test
+    public void compressRoundTripsRandomData() throws IOException {
+        Random random = new Random(1);
+        for (int length : new int[]{13, 100, 4_096, 70_000}) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            roundTrip(data);
+        }
+    }
+
+    @Test
+    public void compressRoundTripsCompressibleData() throws IOException {
+        Random random = new Random(2);
+        byte[] data = new byte[100_000];
+        for (int index = 0; index < data.length; index++) {
+            data[index] = (byte) ('a' + random.nextInt(4));
+        }
+        assertTrue(roundTrip(data) < data.length);
+    }
+
+    @Test
+    public void compressRoundTripsLongRuns() throws IOException {
+        Random random = new Random(3);
+        // Literal and match lengths of 15 and 270 (15 + 255) and more need extra length bytes
+        for (int runLength : new int[]{4, 15, 16, 19, 20, 269, 270, 271, 274, 275, 1_000, 100_000}) {
+            byte[] data = new byte[20 + runLength + 20];
+            random.nextBytes(data);
+            Arrays.fill(data, 20, 20 + runLength, (byte) 7);
+            roundTrip(data);
+
+            byte[] literals = new byte[runLength + 20];
+            random.nextBytes(literals);
+            roundTrip(literals);
+        }
+
+        byte[] zeros = new byte[1 << 20];
+        assertTrue(roundTrip(zeros) < zeros.length / 200);
+    }
+
+    @Test
+    public void compressRoundTripsOverlappingMatches() throws IOException {
+        for (int patternLength = 1; patternLength <= 8; patternLength++) {
+            byte[] data = new byte[10_000 + patternLength];
+            for (int index = 0; index < data.length; index++) {
+                data[index] = (byte) (index % patternLength * 31);
+            }
+            // Matches have an offset of the pattern length and are much longer than it
+            assertTrue(roundTrip(data) < data.length / 50);
+        }
+    }
+
+    @Test
+    public void compressRoundTripsShortBlocks() throws IOException {
+        Random random = new Random(4);
+        for (int length = 0; length <= 12; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            roundTrip(data);
+            roundTrip(new byte[length]);
+        }
+    }
+
+    @Test
+    public void decompressRejectsTruncatedInput() {
+        byte[] data = createCompressibleData(5);
+        byte[] compressed = compress(data);
+        for (int length = 0; length < compressed.length; length++) {
+            assertCorrupt(compressed, length, data.length);
+        }
+    }
+
+    @Test
+    public void decompressRejectsUnexpectedLength() {
+        byte[] data = createCompressibleData(6);
+        byte[] compressed = compress(data);
+        assertCorrupt(compressed, compressed.length, data.length - 1);
+        assertCorrupt(compressed, compressed.length, data.length + 1);
+        assertCorrupt(compressed, compressed.length, 0);
+    }
+
+    @Test
+    public void decompressRejectsInvalidMatchOffsets() {
+        // One literal, then a match of 4 bytes at an offset of 0 or past the start
+        assertCorrupt(new byte[]{0x10, 'a', 0, 0, 0x50, 'a', 'a', 'a', 'a', 'a'}, 10, 10);
+        assertCorrupt(new byte[]{0x10, 'a', 2, 0, 0x50, 'a', 'a', 'a', 'a', 'a'}, 10, 10);
+        // A match longer than the decompressed length
+        assertCorrupt(new byte[]{0x1F, 'a', 1, 0, (byte) 0xFF, 0x10}, 6, 100);
+    }
+
+    @Test
+    public void decompressRejectsOverflowingLengths() {
+        // Enough length bytes for the literal and match lengths to overflow an int if they weren't bounded
+        byte[] literalLengthBytes = new byte[9_000_000];
+        Arrays.fill(literalLengthBytes, (byte) 0xFF);
+        literalLengthBytes[0] = (byte) 0xF0;
+        literalLengthBytes[literalLengthBytes.length - 2] = 0;
+        assertCorrupt(literalLengthBytes, literalLengthBytes.length, 100);
+
+        byte[] matchLengthBytes = new byte[9_000_000];
+        Arrays.fill(matchLengthBytes, (byte) 0xFF);
+        matchLengthBytes[0] = 0x1F;
+        matchLengthBytes[1] = 'a';
+        matchLengthBytes[2] = 1;
+        matchLengthBytes[3] = 0;
+        matchLengthBytes[matchLengthBytes.length - 2] = 0;
+        assertCorrupt(matchLengthBytes, matchLengthBytes.length, 100);
+    }
+
+    @Test
+    public void decompressRejectsCorruptInput() {
+        byte[] data = createCompressibleData(7);
+        byte[] compressed = compress(data);
+        Random random = new Random(8);
+        for (int attempt = 0; attempt < 10_000; attempt++) {
+            byte[] corrupt = compressed.clone();
+            for (int flip = random.nextInt(4); flip >= 0; flip--) {
+                corrupt[random.nextInt(corrupt.length)] = (byte) random.nextInt();
+            }
+            assertCorruptOrDecompressed(corrupt, data.length);
+
+            byte[] garbage = new byte[1 + random.nextInt(64)];
+            random.nextBytes(garbage);
+            assertCorruptOrDecompressed(garbage, random.nextInt(256));
+        }
+    }
+
+    /**
+     * Compresses and decompresses data and asserts that the decompressed bytes equal the data.
+     *
+     * @param data the data
+     *
+     * @return the compressed length
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private static int roundTrip(byte[] data) throws IOException {
+        byte[] compressed = compress(data);
+        assertTrue(compressed.length <= LZ4Codec.maxCompressedLength(data.length));
+        byte[] decompressed = new byte[data.length];
+        LZ4Codec.decompress(compressed, 0, compressed.length, decompressed, decompressed.length);
+        assertArrayEquals(data, decompressed);
+        return compressed.length;
+    }
+
+    /**
+     * Compresses data at an offset into a larger destination to check that the offset is respected.
+     *
+     * @param data the data
+     *
+     * @return the compressed bytes
+     */
+    private static byte[] compress(byte[] data) {
+        byte[] destination = new byte[3 + LZ4Codec.maxCompressedLength(data.length)];
+        int compressedLength = LZ4Codec.compress(data, data.length, destination, 3);
+        return Arrays.copyOfRange(destination, 3, 3 + compressedLength);
+    }
+
+    /**
+     * Creates data with literals, short matches, and long runs.
+     *
+     * @param seed the seed
+     *
+     * @return the data
+     */
+    private static byte[] createCompressibleData(long seed) {
+        Random random = new Random(seed);
+        byte[] data = new byte[2_000];
+        for (int index = 0; index < data.length; index++) {
+            data[index] = index % 500 < 300 ? (byte) random.nextInt(8) : (byte) (index / 100);
+        }
+        return data;
+    }
+
+    /**
+     * Asserts that decompressing bytes throws an {@link IOException}.
+     *
+     * @param source            the source
+     * @param sourceLength      the source length
+     * @param destinationLength the destination length
+     */
+    private static void assertCorrupt(byte[] source, int sourceLength, int destinationLength) {
+        try {
+            LZ4Codec.decompress(source, 0, sourceLength, new byte[destinationLength], destinationLength);
+            fail("Expected an IOException for a source length of " + sourceLength);
+        } catch (IOException expected) {
+        }
+    }
+
+    /**
+     * Decompresses bytes that may or may not be corrupt, so only an {@link IOException} may be thrown.
+     *
+     * @param source            the source
+     * @param destinationLength the destination length
+     */
+    private static void assertCorruptOrDecompressed(byte[] source, int destinationLength) {
+        try {
+            LZ4Codec.decompress(source, 0, source.length, new byte[destinationLength], destinationLength);
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package net.jacobpeterson.data.cache;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that {@link SegmentCache} loads each file once and stays within its maximum bytes.
+ */
+public class SegmentCacheTest {
+
+    private static final int THREAD_COUNT = 8;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File segmentFile;
+    private long segmentBytes;
+    private AtomicInteger loadCount;
+
+    @Before
+    public void setUp() throws IOException {
+        SegmentWriter segmentWriter = new SegmentWriter(SegmentType.TRADE);
+        for (int row = 0; row < 1_000; row++) {
+            segmentWriter.addRow();
+            segmentWriter.setLong(SegmentColumn.TIMESTAMP, 1_583_159_400_000_000_000L + row * 1_000_000L);
+            segmentWriter.setDouble(SegmentColumn.PRICE, 100 + row % 50 / 100.0);
+            segmentWriter.setInt(SegmentColumn.SIZE, row % 100);
+        }
+        segmentFile = new File(temporaryFolder.getRoot(), "AAPL/2020-03-02." + SegmentType.TRADE.getFileExtension());
+        segmentWriter.write(segmentFile);
+        segmentBytes = Segment.read(segmentFile).getMemorySize();
+        loadCount = new AtomicInteger();
+    }
+
+    @Test
+    public void concurrentLoadsOfSameFileLoadItOnce() throws Exception {
+        CountDownLatch startLatch = new CountDownLatch(1);
+        SegmentCache[] segmentCache = new SegmentCache[1];
+        segmentCache[0] = new SegmentCache(10 * segmentBytes, file -> {
+            // Hold the load until every other thread is waiting for its result
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (segmentCache[0].getHitCount() < THREAD_COUNT - 1 && System.nanoTime() < deadline) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while loading " + file, exception);
+                }
+            }
+            return countingLoad(file);
+        });
+
+        ExecutorService executorService = Executors.newFixedThreadPool(THREAD_COUNT);
+        try {
+            List<Future<Segment>> segmentFutures = new ArrayList<>();
+            for (int thread = 0; thread < THREAD_COUNT; thread++) {
+                segmentFutures.add(executorService.submit(() -> {
+                    startLatch.await();
+                    return segmentCache[0].load(segmentFile);
+                }));
+            }
+            startLatch.countDown();
+
+            Segment segment = segmentFutures.get(0).get(30, TimeUnit.SECONDS);
+            for (Future<Segment> segmentFuture : segmentFutures) {
+                assertSame(segment, segmentFuture.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        assertEquals(1, loadCount.get());
+        assertEquals(1, segmentCache[0].getMissCount());
+        assertEquals(THREAD_COUNT - 1, segmentCache[0].getHitCount());
+
+        // Later loads are served from the cache
+        segmentCache[0].load(segmentFile);
+        assertEquals(1, loadCount.get());
+        assertEquals(THREAD_COUNT, segmentCache[0].getHitCount());
+    }
+
+    @Test
+    public void failedLoadIsRetried() throws IOException {
+        SegmentCache segmentCache = new SegmentCache(10 * segmentBytes, file -> {
+            if (loadCount.get() == 0) {
+                loadCount.incrementAndGet();
+                throw new IOException("Failed to load " + file);
+            }
+            return countingLoad(file);
+        });
+
+        try {
+            segmentCache.load(segmentFile);
+        } catch (IOException expected) {
+        }
+        assertEquals(0, segmentCache.getSegmentCount());
+        segmentCache.load(segmentFile);
+        assertEquals(2, loadCount.get());
+        assertEquals(1, segmentCache.getSegmentCount());
+    }
+
+    @Test
+    public void insertingPastMaximumBytesEvicts() throws IOException {
+        long maximumBytes = 3 * segmentBytes + segmentBytes / 2;
+        SegmentCache segmentCache = new SegmentCache(maximumBytes, this::countingLoad);
+
+        int fileCount = 10;
+        for (int index = 0; index < fileCount; index++) {
+            segmentCache.load(getFile(index));
+            assertTrue(segmentCache.getBytes() <= maximumBytes);
+        }
+        assertEquals(fileCount, loadCount.get());
+        assertEquals(3, segmentCache.getSegmentCount());
+        assertEquals(3 * segmentBytes, segmentCache.getBytes());
+        assertEquals(fileCount - 3, segmentCache.getEvictionCount());
+
+        // Shrinking the cache evicts too
+        segmentCache.setMaximumBytes(segmentBytes);
+        assertEquals(1, segmentCache.getSegmentCount());
+        assertTrue(segmentCache.getBytes() <= segmentBytes);
+        assertEquals(fileCount - 1, segmentCache.getEvictionCount());
+
+        // A segment that is larger than the cache isn't cached at all
+        segmentCache.setMaximumBytes(segmentBytes - 1);
+        segmentCache.load(getFile(fileCount));
+        assertEquals(0, segmentCache.getSegmentCount());
+        assertEquals(0, segmentCache.getBytes());
+    }
+
+    @Test
+    public void frequentlyLoadedSegmentsStayCached() throws IOException {
+        SegmentCache segmentCache = new SegmentCache(3 * segmentBytes + segmentBytes / 2, this::countingLoad);
+        Segment frequentSegment = null;
+        for (int index = 0; index < 20; index++) {
+            Segment segment = segmentCache.load(getFile(0));
+            if (frequentSegment != null) {
+                assertSame(frequentSegment, segment);
+            }
+            frequentSegment = segment;
+            // A sweep over files that are only loaded once
+            assertNotSame(frequentSegment, segmentCache.load(getFile(index + 1)));
+        }
+        assertEquals(21, loadCount.get());
+    }
+
+    /**
+     * Loads the segment file for any requested file and counts the load.
+     *
+     * @param file the requested file
+     *
+     * @return the segment
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private Segment countingLoad(File file) throws IOException {
+        loadCount.incrementAndGet();
+        return Segment.read(segmentFile);
+    }
+
+    /**
+     * Gets the file of a day, which doesn't have to exist since {@link #countingLoad(File)} ignores it.
+     *
+     * @param index the index of the day
+     *
+     * @return the file
+     */
+    private File getFile(int index) {
+        return new File(temporaryFolder.getRoot(), "AAPL/" + index + "." + SegmentType.TRADE.getFileExtension());
+    }
+}
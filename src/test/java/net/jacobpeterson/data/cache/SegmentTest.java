@@ -0,0 +1,201 @@
+package net.jacobpeterson.data.cache;
+
+import net.jacobpeterson.data.cursor.TradeCursor;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the on-disk format of {@link Segment}s by writing them with a {@link SegmentWriter} and reading them back
+ * through {@link Segment#read(File)} and {@link Segment#map(File)}.
+ */
+public class SegmentTest {
+
+    private static final int ROW_COUNT = 10_000;
+    private static final long FIRST_TIMESTAMP = 1_583_159_400_000_000_000L;
+    private static final double DELTA = 1e-9;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void readAndMapRoundTripUncompressedSegment() throws IOException {
+        File file = writeSegment(false);
+        assertSegment(Segment.read(file));
+        assertSegment(Segment.map(file));
+    }
+
+    @Test
+    public void readAndMapRoundTripCompressedSegment() throws IOException {
+        File file = writeSegment(true);
+        assertSegment(Segment.read(file));
+        assertSegment(Segment.map(file));
+    }
+
+    @Test
+    public void readOfTimeRangeOnlyReadsItsBlocks() throws IOException {
+        for (boolean compressed : new boolean[]{false, true}) {
+            File file = writeSegment(compressed);
+            int fromRow = 5_001;
+            Segment segment = Segment.read(file, getTimestamp(fromRow), getTimestamp(fromRow + 10));
+
+            // Only the second block holds the time range, so its rows are numbered from the first row of that block
+            int blockRowCount = SegmentFormat.DEFAULT_BLOCK_ROW_COUNT;
+            assertEquals(blockRowCount, segment.getRowCount());
+            assertEquals(getTimestamp(blockRowCount), segment.getFirstTimestamp());
+            int row = segment.findRow(getTimestamp(fromRow));
+            assertEquals(fromRow - blockRowCount, row);
+
+            TradeCursor tradeCursor = new TradeCursor();
+            tradeCursor.reset(segment, row, row + 10);
+            for (int index = 0; index < 10; index++) {
+                assertTrue(tradeCursor.next());
+                assertRow(tradeCursor, fromRow + index);
+            }
+            assertFalse(tradeCursor.next());
+        }
+    }
+
+    @Test
+    public void writerCountsDroppedConditions() throws IOException {
+        SegmentWriter segmentWriter = new SegmentWriter(SegmentType.TRADE);
+        segmentWriter.addRow();
+        assertTrue(segmentWriter.addCondition(SegmentColumn.CONDITIONS, 0));
+        assertTrue(segmentWriter.addCondition(SegmentColumn.CONDITIONS, 63));
+        assertFalse(segmentWriter.addCondition(SegmentColumn.CONDITIONS, 64));
+        assertFalse(segmentWriter.addCondition(SegmentColumn.CONDITIONS, -1));
+
+        assertEquals(1L | 1L << 63, segmentWriter.getLong(SegmentColumn.CONDITIONS, 0));
+        assertEquals(2, segmentWriter.getDroppedConditionCount());
+
+        assertEquals(1, JsonSegmentConverter.readJson(new StringReader("[{\"t\": 1, \"c\": [12, 64, 37, 100]}]"),
+                segmentWriter));
+        assertEquals(1L << 12 | 1L << 37, segmentWriter.getLong(SegmentColumn.CONDITIONS, 1));
+        assertEquals(4, segmentWriter.getDroppedConditionCount());
+    }
+
+    /**
+     * Writes a trade segment file of {@link #ROW_COUNT} rows that span several blocks. The rows are added in reverse
+     * order of their timestamps so they have to be sorted before they are written, and pairs of rows share a timestamp
+     * (including the last row of the first block and the first row of the second block).
+     *
+     * @param compressed true to compress the blocks
+     *
+     * @return the file
+     *
+     * @throws IOException thrown for {@link IOException}s
+     */
+    private File writeSegment(boolean compressed) throws IOException {
+        SegmentWriter segmentWriter = new SegmentWriter(SegmentType.TRADE);
+        for (int pair = ROW_COUNT / 2; pair >= 0; pair--) {
+            // The sort is stable, so rows with the same timestamp keep the order they were added in
+            for (int row = Math.max(pair * 2 - 1, 0); row <= Math.min(pair * 2, ROW_COUNT - 1); row++) {
+                segmentWriter.addRow();
+                segmentWriter.setLong(SegmentColumn.TIMESTAMP, getTimestamp(row));
+                segmentWriter.setLong(SegmentColumn.PARTICIPANT_TIMESTAMP, getTimestamp(row) - 17);
+                segmentWriter.setLong(SegmentColumn.SEQUENCE_NUMBER, row);
+                segmentWriter.setDouble(SegmentColumn.PRICE, getPrice(row));
+                segmentWriter.setInt(SegmentColumn.SIZE, row % 1_000);
+                segmentWriter.setInt(SegmentColumn.EXCHANGE, row % 20);
+                segmentWriter.setInt(SegmentColumn.TAPE, row % 3 + 1);
+                segmentWriter.addCondition(SegmentColumn.CONDITIONS, row % 64);
+                segmentWriter.addCondition(SegmentColumn.CONDITIONS, row * 7 % 64);
+            }
+        }
+        assertEquals(ROW_COUNT, segmentWriter.getRowCount());
+
+        segmentWriter.setCompressed(compressed);
+        File file = new File(temporaryFolder.getRoot(), "AAPL/2020-03-02." + SegmentType.TRADE.getFileExtension());
+        segmentWriter.write(file);
+        return file;
+    }
+
+    /**
+     * Asserts the layout and the rows of a segment that was written by {@link #writeSegment(boolean)}.
+     *
+     * @param segment the segment
+     */
+    private static void assertSegment(Segment segment) {
+        assertEquals(SegmentType.TRADE, segment.getSegmentType());
+        assertEquals(ROW_COUNT, segment.getRowCount());
+        assertEquals(3, segment.getBlockCount());
+        assertEquals(getTimestamp(0), segment.getFirstTimestamp());
+        assertEquals(getTimestamp(ROW_COUNT - 1), segment.getLastTimestamp());
+
+        TradeCursor tradeCursor = new TradeCursor();
+        tradeCursor.reset(segment);
+        for (int row = 0; row < ROW_COUNT; row++) {
+            assertTrue(tradeCursor.next());
+            assertEquals(row, tradeCursor.getRow());
+            assertRow(tradeCursor, row);
+        }
+        assertFalse(tradeCursor.next());
+
+        // A cursor limited to rows that span a block boundary
+        tradeCursor.reset(segment, 4_000, 8_200);
+        for (int row = 4_000; row < 8_200; row++) {
+            assertTrue(tradeCursor.next());
+            assertRow(tradeCursor, row);
+        }
+        assertFalse(tradeCursor.next());
+
+        assertEquals(0, segment.findRow(Long.MIN_VALUE));
+        assertEquals(ROW_COUNT, segment.findRow(getTimestamp(ROW_COUNT - 1) + 1));
+        for (int row = 0; row < ROW_COUNT; row++) {
+            int firstRowOfTimestamp = row == 0 || row % 2 == 1 ? row : row - 1;
+            assertEquals(firstRowOfTimestamp, segment.findRow(getTimestamp(row)));
+            assertEquals(firstRowOfTimestamp, segment.findRow(getTimestamp(row) - 1));
+        }
+        // The timestamp of the first row of the second block is also the timestamp of the last row of the first block
+        int blockRowCount = SegmentFormat.DEFAULT_BLOCK_ROW_COUNT;
+        assertEquals(getTimestamp(blockRowCount - 1), segment.getBlockFirstTimestamp(1));
+        assertEquals(blockRowCount - 1, segment.findRow(segment.getBlockFirstTimestamp(1)));
+    }
+
+    /**
+     * Asserts the values of the current row of a cursor.
+     *
+     * @param tradeCursor the trade cursor
+     * @param row         the row that was written
+     */
+    private static void assertRow(TradeCursor tradeCursor, int row) {
+        assertEquals(getTimestamp(row), tradeCursor.getTimestamp());
+        assertEquals(getTimestamp(row) - 17, tradeCursor.getParticipantTimestamp());
+        assertEquals(row, tradeCursor.getSequenceNumber());
+        assertEquals(getPrice(row), tradeCursor.getPrice(), DELTA);
+        assertEquals(row % 1_000, tradeCursor.getSize());
+        assertEquals(row % 20, tradeCursor.getExchange());
+        assertEquals(row % 3 + 1, tradeCursor.getTape());
+        assertEquals(1L << (row % 64) | 1L << (row * 7 % 64), tradeCursor.getConditions());
+    }
+
+    /**
+     * Gets the timestamp of a row, which is shared by the pairs of rows 1 and 2, 3 and 4, and so on.
+     *
+     * @param row the row
+     *
+     * @return the timestamp (epoch nanoseconds)
+     */
+    private static long getTimestamp(int row) {
+        return FIRST_TIMESTAMP + (row + 1) / 2 * 1_000_000L;
+    }
+
+    /**
+     * Gets the price of a row.
+     *
+     * @param row the row
+     *
+     * @return the price
+     */
+    private static double getPrice(int row) {
+        return 100 + row % 500 / 100.0;
+    }
+}
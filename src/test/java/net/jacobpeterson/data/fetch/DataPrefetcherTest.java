@@ -0,0 +1,235 @@
+package net.jacobpeterson.data.fetch;
+
+import net.jacobpeterson.algorithm.update.ticker.AggregateUpdateType;
+import net.jacobpeterson.data.BacktestData;
+import net.jacobpeterson.data.cache.Segment;
+import net.jacobpeterson.data.cache.SegmentColumn;
+import net.jacobpeterson.data.cache.SegmentType;
+import net.jacobpeterson.data.cache.SegmentWriter;
+import net.jacobpeterson.util.TimeUtil;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link DataPrefetcher} against a stub {@link DataFetcher}.
+ */
+public class DataPrefetcherTest {
+
+    private static final String TICKER = "AAPL";
+    private static final LocalDate FROM = LocalDate.of(2020, 1, 6);
+    private static final LocalDate TO = LocalDate.of(2020, 1, 10);
+    private static final List<LocalDate> DATES = Arrays.asList(FROM, FROM.plusDays(1), FROM.plusDays(2),
+            FROM.plusDays(3));
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private BacktestData backtestData;
+
+    @Before
+    public void setUp() throws IOException {
+        backtestData = new BacktestData(null, null, temporaryFolder.newFolder());
+    }
+
+    @Test
+    public void prefetchFetchesOnlyMissingFiles() throws Exception {
+        backtestData.writeSegment(createSegmentWriter(DATES.get(0)), getDataFile(DATES.get(0)));
+        backtestData.writeSegment(createSegmentWriter(DATES.get(2)), getDataFile(DATES.get(2)));
+
+        RecordingDataFetcher dataFetcher = new RecordingDataFetcher();
+        PrefetchResult prefetchResult = new DataPrefetcher(backtestData, dataFetcher)
+                .prefetch(Collections.singletonList(TICKER), FROM, TO, AggregateUpdateType.MINUTE);
+
+        assertEquals(new HashSet<>(Arrays.asList(DATES.get(1), DATES.get(3))), dataFetcher.fetchedDates);
+        assertEquals(4, prefetchResult.getRequestedCount());
+        assertEquals(2, prefetchResult.getCachedCount());
+        assertEquals(2, prefetchResult.getFetchedCount());
+        assertTrue(prefetchResult.isComplete());
+        for (LocalDate date : DATES) {
+            assertTrue(backtestData.isCached(getDataFile(date)));
+        }
+    }
+
+    @Test
+    public void prefetchGivesUpAfterMaxRetries() throws Exception {
+        AtomicInteger attemptCount = new AtomicInteger();
+        DataPrefetcher dataPrefetcher = new DataPrefetcher(backtestData, (ticker, date, aggregateUpdateType,
+                segmentType) -> {
+            attemptCount.incrementAndGet();
+            throw new IOException("Service unavailable");
+        });
+        dataPrefetcher.setMaxRetries(2);
+        dataPrefetcher.setInitialBackoffMillis(1);
+        dataPrefetcher.setMaxBackoffMillis(2);
+
+        PrefetchResult prefetchResult = dataPrefetcher.prefetch(Collections.singletonList(TICKER), FROM,
+                FROM.plusDays(1), AggregateUpdateType.MINUTE);
+
+        assertEquals(3, attemptCount.get());
+        assertFalse(prefetchResult.isComplete());
+        assertEquals(Collections.singletonList(getDataFile(FROM)), prefetchResult.getFailedFiles());
+        assertEquals(0, prefetchResult.getFetchedCount());
+        assertFalse(getDataFile(FROM).exists());
+    }
+
+    @Test
+    public void prefetchRetriesTransientFailures() throws Exception {
+        AtomicInteger attemptCount = new AtomicInteger();
+        DataPrefetcher dataPrefetcher = new DataPrefetcher(backtestData, (ticker, date, aggregateUpdateType,
+                segmentType) -> {
+            if (attemptCount.incrementAndGet() <= 2) {
+                throw new IOException("Too many requests");
+            }
+            return createSegmentWriter(date);
+        });
+        dataPrefetcher.setMaxRetries(2);
+        dataPrefetcher.setInitialBackoffMillis(1);
+        dataPrefetcher.setMaxBackoffMillis(2);
+
+        PrefetchResult prefetchResult = dataPrefetcher.prefetch(Collections.singletonList(TICKER), FROM,
+                FROM.plusDays(1), AggregateUpdateType.MINUTE);
+
+        assertEquals(3, attemptCount.get());
+        assertTrue(prefetchResult.isComplete());
+        assertEquals(1, prefetchResult.getFetchedCount());
+        assertTrue(backtestData.isCached(getDataFile(FROM)));
+    }
+
+    @Test
+    public void prefetchResumesHalfDonePrefetch() throws Exception {
+        Set<LocalDate> failingDates = new HashSet<>(Arrays.asList(DATES.get(1), DATES.get(3)));
+        DataPrefetcher firstDataPrefetcher = new DataPrefetcher(backtestData, (ticker, date, aggregateUpdateType,
+                segmentType) -> {
+            if (failingDates.contains(date)) {
+                throw new IOException("Connection reset");
+            }
+            return createSegmentWriter(date);
+        });
+        firstDataPrefetcher.setMaxRetries(0);
+        PrefetchResult firstPrefetchResult = firstDataPrefetcher.prefetch(Collections.singletonList(TICKER), FROM,
+                TO, AggregateUpdateType.MINUTE);
+        assertEquals(2, firstPrefetchResult.getFetchedCount());
+        assertEquals(2, firstPrefetchResult.getFailedFiles().size());
+
+        // A prefetch that was killed while writing leaves its temporary file behind
+        File dataFile = getDataFile(DATES.get(1));
+        File staleTemporaryFile = new File(dataFile.getParentFile(), dataFile.getName() + "." + UUID.randomUUID() +
+                SegmentWriter.TEMPORARY_FILE_SUFFIX);
+        assertTrue(staleTemporaryFile.createNewFile());
+
+        RecordingDataFetcher dataFetcher = new RecordingDataFetcher();
+        PrefetchResult prefetchResult = new DataPrefetcher(backtestData, dataFetcher)
+                .prefetch(Collections.singletonList(TICKER), FROM, TO, AggregateUpdateType.MINUTE);
+
+        assertEquals(failingDates, dataFetcher.fetchedDates);
+        assertEquals(2, prefetchResult.getCachedCount());
+        assertEquals(2, prefetchResult.getFetchedCount());
+        assertTrue(prefetchResult.isComplete());
+        for (LocalDate date : DATES) {
+            assertTrue(backtestData.isCached(getDataFile(date)));
+        }
+        File[] temporaryFiles = dataFile.getParentFile().listFiles((directory, name) ->
+                name.endsWith(SegmentWriter.TEMPORARY_FILE_SUFFIX));
+        assertEquals(0, temporaryFiles.length);
+    }
+
+    @Test
+    public void prefetchSkipsDataThatIsNotFinal() throws Exception {
+        LocalDate today = LocalDate.now(TimeUtil.NEW_YORK_ZONE_ID);
+
+        RecordingDataFetcher dataFetcher = new RecordingDataFetcher();
+        PrefetchResult prefetchResult = new DataPrefetcher(backtestData, dataFetcher)
+                .prefetch(Collections.singletonList(TICKER), today.minusDays(1), today.plusDays(2),
+                        AggregateUpdateType.MINUTE);
+
+        assertEquals(Collections.singleton(today.minusDays(1)), dataFetcher.fetchedDates);
+        assertEquals(1, prefetchResult.getRequestedCount());
+        assertFalse(getDataFile(today).exists());
+        assertFalse(getDataFile(today.plusDays(1)).exists());
+    }
+
+    @Test
+    public void fetchSegmentDoesNotCacheDataThatIsNotFinal() throws Exception {
+        LocalDate today = LocalDate.now(TimeUtil.NEW_YORK_ZONE_ID);
+        backtestData.setDataFetcher(new RecordingDataFetcher());
+
+        Segment segment = backtestData.fetchSegment(TICKER, today, AggregateUpdateType.MINUTE,
+                SegmentType.AGGREGATE);
+        assertEquals(1, segment.getRowCount());
+        assertFalse(backtestData.isCached(getDataFile(today)));
+
+        backtestData.fetchSegment(TICKER, today.minusDays(1), AggregateUpdateType.MINUTE, SegmentType.AGGREGATE);
+        assertTrue(backtestData.isCached(getDataFile(today.minusDays(1))));
+    }
+
+    @Test(expected = IOException.class)
+    public void fetchSegmentFailsWithoutDataFetcher() throws Exception {
+        backtestData.setDataFetcher(null);
+        backtestData.fetchSegment(TICKER, FROM, AggregateUpdateType.MINUTE, SegmentType.AGGREGATE);
+    }
+
+    /**
+     * Gets the minute aggregate data file of {@link #TICKER} of a date.
+     *
+     * @param date the date
+     *
+     * @return the data file
+     */
+    private File getDataFile(LocalDate date) {
+        return backtestData.getDataFile(TICKER, date, AggregateUpdateType.MINUTE,
+                SegmentType.AGGREGATE.getFileExtension());
+    }
+
+    /**
+     * Creates a segment writer with one minute aggregate at 10:00 of a date.
+     *
+     * @param date the date
+     *
+     * @return the segment writer
+     */
+    private static SegmentWriter createSegmentWriter(LocalDate date) {
+        SegmentWriter segmentWriter = new SegmentWriter(SegmentType.AGGREGATE);
+        segmentWriter.addRow();
+        segmentWriter.setLong(SegmentColumn.TIMESTAMP, TimeUtil.toEpochNanos(date, LocalTime.of(10, 0)));
+        segmentWriter.setDouble(SegmentColumn.OPEN, 100);
+        segmentWriter.setDouble(SegmentColumn.HIGH, 101);
+        segmentWriter.setDouble(SegmentColumn.LOW, 99);
+        segmentWriter.setDouble(SegmentColumn.CLOSE, 100.5);
+        segmentWriter.setDouble(SegmentColumn.VOLUME, 1000);
+        return segmentWriter;
+    }
+
+    /**
+     * A {@link DataFetcher} that records the dates it fetched.
+     */
+    private static class RecordingDataFetcher implements DataFetcher {
+
+        private final Set<LocalDate> fetchedDates = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public SegmentWriter fetch(String ticker, LocalDate date, AggregateUpdateType aggregateUpdateType,
+                SegmentType segmentType) {
+            fetchedDates.add(date);
+            return createSegmentWriter(date);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package net.jacobpeterson.data.fetch;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link TokenBucketRateLimiter}.
+ */
+public class TokenBucketRateLimiterTest {
+
+    @Test
+    public void acquireAllowsBurstWithoutWaiting() throws InterruptedException {
+        TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(1, 5);
+
+        long startNanos = System.nanoTime();
+        for (int permit = 0; permit < 5; permit++) {
+            rateLimiter.acquire();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+        assertTrue("The burst took " + elapsedMillis + " ms", elapsedMillis < 500);
+    }
+
+    @Test
+    public void acquirePacesPermitsToRate() throws InterruptedException {
+        TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(50, 1);
+        rateLimiter.acquire(); // Empties the bucket
+
+        long startNanos = System.nanoTime();
+        for (int permit = 0; permit < 10; permit++) {
+            rateLimiter.acquire();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+        // 10 permits at 50 per second take at least 200 ms (less a millisecond of rounding)
+        assertTrue("10 permits took " + elapsedMillis + " ms", elapsedMillis >= 199);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorRejectsNonPositiveRate() {
+        new TokenBucketRateLimiter(0, 1);
+    }
+}
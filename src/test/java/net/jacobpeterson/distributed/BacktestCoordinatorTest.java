@@ -0,0 +1,231 @@
+package net.jacobpeterson.distributed;
+
+import net.jacobpeterson.AlpacaJavaBacktest;
+import net.jacobpeterson.algorithm.TradingAlgorithm;
+import net.jacobpeterson.data.BacktestData;
+import net.jacobpeterson.util.TimeUtil;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests a {@link BacktestCoordinator} with {@link BacktestWorker}s that run in this JVM on an ephemeral port.
+ */
+public class BacktestCoordinatorTest {
+
+    private static final String FAILING_PARAMETERS = "fail";
+    private static final AtomicInteger FAILING_ATTEMPT_COUNT = new AtomicInteger();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private BacktestData backtestData;
+
+    @Before
+    public void setUp() throws IOException {
+        backtestData = new BacktestData(null, null, temporaryFolder.newFolder());
+        FAILING_ATTEMPT_COUNT.set(0);
+    }
+
+    @Test(timeout = 60_000)
+    public void runCompletesEveryTask() throws Exception {
+        List<String> parameters = Arrays.asList("1", "2", "3", "4");
+        BacktestCoordinator backtestCoordinator = new BacktestCoordinator(TrivialBacktestJob.class, parameters);
+        backtestCoordinator.setStealingEnabled(false);
+        backtestCoordinator.start();
+        BacktestWorker backtestWorker = createBacktestWorker(backtestCoordinator.getPort(), "worker", 2);
+        Thread workerThread = startWorker(backtestWorker);
+
+        BacktestSummaries backtestSummaries = awaitSummaries(backtestCoordinator, workerThread);
+
+        HashMap<String, BacktestSummary> summariesByParameters = getSummariesByParameters(backtestSummaries);
+        assertEquals(parameters.size(), summariesByParameters.size());
+        for (String taskParameters : parameters) {
+            BacktestSummary summary = summariesByParameters.get(taskParameters);
+            assertFalse(summary.getFailure(), summary.isFailed());
+            assertEquals("worker", summary.getWorkerName());
+            assertEquals(1, summary.getAttempt());
+        }
+        assertEquals(0, backtestSummaries.getRetryCount());
+        assertEquals(1, backtestSummaries.getWorkerCount());
+        assertEquals(parameters.size(), backtestWorker.getCompletedCount());
+        assertEquals(0, backtestCoordinator.getRemainingCount());
+    }
+
+    @Test(timeout = 60_000)
+    public void runRetriesFailingTaskUntilMaximumAttempts() throws Exception {
+        BacktestCoordinator backtestCoordinator = new BacktestCoordinator(TrivialBacktestJob.class,
+                Arrays.asList("1", FAILING_PARAMETERS, "2"));
+        backtestCoordinator.setStealingEnabled(false);
+        backtestCoordinator.setMaximumAttempts(3);
+        backtestCoordinator.start();
+        Thread workerThread = startWorker(createBacktestWorker(backtestCoordinator.getPort(), "worker", 2));
+
+        BacktestSummaries backtestSummaries = awaitSummaries(backtestCoordinator, workerThread);
+
+        HashMap<String, BacktestSummary> summariesByParameters = getSummariesByParameters(backtestSummaries);
+        BacktestSummary failedSummary = summariesByParameters.get(FAILING_PARAMETERS);
+        assertTrue(failedSummary.isFailed());
+        assertTrue(failedSummary.getFailure(), failedSummary.getFailure().contains("Task failed on purpose"));
+        assertEquals(3, failedSummary.getAttempt());
+        assertEquals(3, FAILING_ATTEMPT_COUNT.get());
+        assertEquals(2, backtestSummaries.getRetryCount());
+        assertFalse(summariesByParameters.get("1").isFailed());
+        assertFalse(summariesByParameters.get("2").isFailed());
+    }
+
+    @Test(timeout = 60_000)
+    public void runRequeuesTaskOfDroppedConnection() throws Exception {
+        BacktestCoordinator backtestCoordinator = new BacktestCoordinator(TrivialBacktestJob.class,
+                Collections.singletonList("1"));
+        backtestCoordinator.setStealingEnabled(false);
+        backtestCoordinator.setMaximumAttempts(2);
+        backtestCoordinator.start();
+
+        // A slot that takes the only task and then drops its connection without sending a result
+        try (Socket socket = new Socket("localhost", backtestCoordinator.getPort())) {
+            DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream dataOutputStream =
+                    new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            dataOutputStream.writeInt(DistributedProtocol.MAGIC);
+            dataOutputStream.writeShort(DistributedProtocol.VERSION);
+            dataOutputStream.writeUTF("dropped");
+            dataOutputStream.writeByte(DistributedProtocol.REQUEST);
+            dataOutputStream.flush();
+
+            assertEquals(DistributedProtocol.MAGIC, dataInputStream.readInt());
+            assertEquals(DistributedProtocol.VERSION, dataInputStream.readShort());
+            assertEquals(DistributedProtocol.TASK, dataInputStream.readByte());
+            assertEquals(0, dataInputStream.readInt());
+            assertEquals(1, dataInputStream.readInt());
+            assertEquals(TrivialBacktestJob.class.getName(), dataInputStream.readUTF());
+            assertEquals("1", dataInputStream.readUTF());
+        }
+
+        Thread workerThread = startWorker(createBacktestWorker(backtestCoordinator.getPort(), "worker", 1));
+        BacktestSummaries backtestSummaries = awaitSummaries(backtestCoordinator, workerThread);
+
+        BacktestSummary summary = backtestSummaries.getBest();
+        assertFalse(summary.getFailure(), summary.isFailed());
+        assertEquals("worker", summary.getWorkerName());
+        assertEquals(2, summary.getAttempt());
+        assertEquals(1, backtestSummaries.getRetryCount());
+    }
+
+    /**
+     * Creates a backtest worker.
+     *
+     * @param port  the port of the coordinator
+     * @param name  the name
+     * @param slots the slots
+     *
+     * @return the backtest worker
+     */
+    private BacktestWorker createBacktestWorker(int port, String name, int slots) {
+        BacktestWorker backtestWorker = new BacktestWorker("localhost", port, backtestData);
+        backtestWorker.setName(name);
+        backtestWorker.setSlots(slots);
+        backtestWorker.setConnectTimeoutMillis(5_000);
+        return backtestWorker;
+    }
+
+    /**
+     * Runs a backtest worker on a new thread.
+     *
+     * @param backtestWorker the backtest worker
+     *
+     * @return the worker thread
+     */
+    private static Thread startWorker(BacktestWorker backtestWorker) {
+        Thread workerThread = new Thread(() -> {
+            try {
+                backtestWorker.run();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        }, "BacktestCoordinatorTest-" + backtestWorker.getName());
+        workerThread.setDaemon(true);
+        workerThread.start();
+        return workerThread;
+    }
+
+    /**
+     * Awaits the summaries of a coordinator, closes it, and waits for its worker to finish.
+     *
+     * @param backtestCoordinator the backtest coordinator
+     * @param workerThread        the worker thread
+     *
+     * @return the backtest summaries
+     *
+     * @throws InterruptedException thrown if interrupted
+     */
+    private static BacktestSummaries awaitSummaries(BacktestCoordinator backtestCoordinator, Thread workerThread)
+            throws InterruptedException {
+        try {
+            return backtestCoordinator.awaitSummaries();
+        } finally {
+            backtestCoordinator.close();
+            workerThread.join();
+        }
+    }
+
+    /**
+     * Gets the summaries of a run by their parameters.
+     *
+     * @param backtestSummaries the backtest summaries
+     *
+     * @return the summaries by parameters
+     */
+    private static HashMap<String, BacktestSummary> getSummariesByParameters(BacktestSummaries backtestSummaries) {
+        HashMap<String, BacktestSummary> summariesByParameters = new HashMap<>();
+        for (BacktestSummary summary : backtestSummaries.getRankedSummaries()) {
+            summariesByParameters.put(summary.getParameters(), summary);
+        }
+        return summariesByParameters;
+    }
+
+    /**
+     * A {@link BacktestJob} of a trading algorithm that does nothing over a single day without any market data. Its
+     * backtests fail if their parameters are {@link #FAILING_PARAMETERS}.
+     */
+    public static class TrivialBacktestJob implements BacktestJob {
+
+        @Override
+        public TradingAlgorithm createTradingAlgorithm(String parameters) {
+            if (FAILING_PARAMETERS.equals(parameters)) {
+                FAILING_ATTEMPT_COUNT.incrementAndGet();
+                throw new IllegalStateException("Task failed on purpose");
+            }
+            return new TradingAlgorithm() {
+                @Override
+                public void init() {}
+            };
+        }
+
+        @Override
+        public void configureBacktest(AlpacaJavaBacktest alpacaJavaBacktest, String parameters) {
+            LocalDate date = LocalDate.of(2020, 3, 2);
+            alpacaJavaBacktest.setFrom(TimeUtil.toNewYorkDateTime(TimeUtil.toEpochNanos(date, LocalTime.of(9, 30))));
+            alpacaJavaBacktest.setTo(TimeUtil.toNewYorkDateTime(TimeUtil.toEpochNanos(date, LocalTime.of(16, 0))));
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package net.jacobpeterson.engine;
+
+import io.github.mainstringargs.domain.alpaca.calendar.Calendar;
+import net.jacobpeterson.algorithm.TradingAlgorithm;
+import net.jacobpeterson.data.BacktestData;
+import net.jacobpeterson.data.calendar.MarketCalendar;
+import net.jacobpeterson.util.GsonUtil;
+import net.jacobpeterson.util.TimeUtil;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that {@link TimerWheel} fires its {@link Timer}s at their exact deadlines and in a deterministic order.
+ */
+public class TimerWheelTest {
+
+    private static final long START = TimeUtil.toEpochNanos(LocalDate.of(2020, 3, 2), LocalTime.of(9, 30)) + 12_345;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private TimerWheel timerWheel;
+    private List<Long> firedDeadlines;
+
+    @Before
+    public void setUp() {
+        timerWheel = new TimerWheel();
+        timerWheel.reset(START);
+        firedDeadlines = new ArrayList<>();
+    }
+
+    @Test
+    public void timersCascadeAcrossLevelBoundaries() {
+        long[] deadlines = getLevelBoundaryDeadlines();
+        for (long deadline : deadlines) {
+            timerWheel.schedule(deadline, this::record);
+        }
+        assertEquals(deadlines.length, timerWheel.getTimerCount());
+
+        // Advance to just before, at, and just after every deadline so that each one is checked at its exact tick
+        TreeSet<Long> timestamps = new TreeSet<>();
+        for (long deadline : deadlines) {
+            timestamps.addAll(Arrays.asList(deadline - 1, deadline, deadline + 1));
+        }
+        for (long timestamp : timestamps.tailSet(START)) {
+            timerWheel.advance(timestamp, null);
+            assertEquals(countBefore(deadlines, timestamp), firedDeadlines.size());
+            assertEquals(timestamp, timerWheel.getTime());
+        }
+
+        assertEquals(toList(deadlines), firedDeadlines);
+        assertEquals(0, timerWheel.getTimerCount());
+        assertEquals(deadlines.length, timerWheel.getFiredCount());
+        assertEquals(Long.MAX_VALUE, timerWheel.getNextExpiration());
+    }
+
+    @Test
+    public void timersCascadeInOneJump() {
+        long[] deadlines = getLevelBoundaryDeadlines();
+        Random random = new Random(1);
+        List<Long> shuffledDeadlines = toList(deadlines);
+        Collections.shuffle(shuffledDeadlines, random);
+        for (long deadline : shuffledDeadlines) {
+            timerWheel.schedule(deadline, this::record);
+        }
+
+        timerWheel.advance(deadlines[deadlines.length / 2], null);
+        assertEquals(countBefore(deadlines, deadlines[deadlines.length / 2]), firedDeadlines.size());
+        timerWheel.advance(deadlines[deadlines.length - 1] + 1, null);
+        assertEquals(toList(deadlines), firedDeadlines);
+    }
+
+    @Test
+    public void cancelledTimersDontFire() {
+        Timer dueTimer = timerWheel.schedule(START + 10, this::record);
+        Timer wheelTimer = timerWheel.schedule(START + (1L << 40), this::record);
+        Timer keptTimer = timerWheel.schedule(START + (1L << 40) + 1, this::record);
+        // A timer that cancels another timer with the same deadline that was scheduled after it
+        Timer[] laterTimer = new Timer[1];
+        timerWheel.schedule(START + 1_000, timer -> {
+            record(timer);
+            assertTrue(laterTimer[0].cancel());
+        });
+        laterTimer[0] = timerWheel.schedule(START + 1_000, this::record);
+        assertEquals(5, timerWheel.getTimerCount());
+
+        // One timer is in the due heap and the other is in a bucket of a higher level of the wheel
+        assertTrue(dueTimer.cancel());
+        assertTrue(wheelTimer.cancel());
+        assertFalse(dueTimer.cancel());
+        assertFalse(wheelTimer.isActive());
+        assertEquals(3, timerWheel.getTimerCount());
+
+        timerWheel.advance(START + (1L << 41), null);
+        assertEquals(Arrays.asList(START + 1_000, START + (1L << 40) + 1), firedDeadlines);
+        assertFalse(laterTimer[0].isActive());
+        assertFalse(keptTimer.isActive());
+        assertFalse(keptTimer.cancel());
+        assertEquals(0, timerWheel.getTimerCount());
+    }
+
+    @Test
+    public void recurringTimersReschedule() {
+        Timer fixedRateTimer = timerWheel.scheduleAtFixedRate(START + 10, 100, this::record);
+        assertTrue(fixedRateTimer.isRecurring());
+
+        // The missed deadlines fire one after another at their own time
+        timerWheel.advance(START + 1_000, null);
+        List<Long> expectedDeadlines = new ArrayList<>();
+        for (long deadline = START + 10; deadline < START + 1_000; deadline += 100) {
+            expectedDeadlines.add(deadline);
+        }
+        assertEquals(expectedDeadlines, firedDeadlines);
+        assertEquals(START + 1_010, fixedRateTimer.getDeadline());
+        assertTrue(fixedRateTimer.isActive());
+
+        // A recurring timer that is cancelled by its own callback isn't rescheduled
+        firedDeadlines.clear();
+        assertTrue(fixedRateTimer.cancel());
+        int[] selfCancellingFiredCount = new int[1];
+        Timer selfCancellingTimer = timerWheel.scheduleAtFixedRate(START + 2_000, 1L << 33, timer -> {
+            record(timer);
+            if (++selfCancellingFiredCount[0] == 3) {
+                assertTrue(timer.cancel());
+            }
+        });
+        // A recurring timer whose next deadline isn't after its deadline stops
+        Timer stoppingTimer = timerWheel.schedule(START + 2_001,
+                deadline -> deadline < START + 2_001 + (2L << 38) ? deadline + (1L << 38) : deadline, this::record);
+
+        timerWheel.advance(START + (1L << 45), null);
+        assertFalse(selfCancellingTimer.isActive());
+        assertFalse(stoppingTimer.isActive());
+        assertEquals(0, timerWheel.getTimerCount());
+        assertEquals(Arrays.asList(START + 2_000, START + 2_001, START + 2_000 + (1L << 33),
+                START + 2_000 + (2L << 33), START + 2_001 + (1L << 38), START + 2_001 + (2L << 38)), firedDeadlines);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fixedRateRequiresPositivePeriod() {
+        timerWheel.scheduleAtFixedRate(START, 0, this::record);
+    }
+
+    @Test
+    public void timersWithSameDeadlineFireInScheduledOrder() {
+        long deadline = START + (1L << 35) + 7;
+        List<Integer> firedIndices = new ArrayList<>();
+        int index = 0;
+        // Some timers are scheduled while the deadline is in a higher level, and some after it has cascaded down
+        for (long timestamp : new long[]{START, deadline - (1L << 30), deadline - (1L << 20), deadline - 1}) {
+            timerWheel.advance(timestamp, null);
+            for (int count = 0; count < 25; count++) {
+                int timerIndex = index++;
+                timerWheel.schedule(deadline, timer -> firedIndices.add(timerIndex));
+            }
+        }
+        // A timer that is scheduled in the past fires at the simulated time before them
+        timerWheel.schedule(START, timer -> firedIndices.add(-1));
+
+        timerWheel.advance(deadline + 1, null);
+        List<Integer> expectedIndices = new ArrayList<>();
+        expectedIndices.add(-1);
+        for (int timerIndex = 0; timerIndex < index; timerIndex++) {
+            expectedIndices.add(timerIndex);
+        }
+        assertEquals(expectedIndices, firedIndices);
+    }
+
+    @Test
+    public void scheduleDailySkipsHolidays() {
+        LocalDate holiday = LocalDate.of(2020, 3, 4);
+        List<Calendar> calendars = new ArrayList<>();
+        for (LocalDate date = LocalDate.of(2020, 3, 2); date.isBefore(LocalDate.of(2020, 3, 21));
+                date = date.plusDays(1)) {
+            if (!date.equals(holiday) && date.getDayOfWeek().getValue() <= 5) {
+                calendars.add(GsonUtil.GSON.fromJson("{\"date\":\"" + date +
+                        "\",\"open\":\"09:30\",\"close\":\"16:00\"}", Calendar.class));
+            }
+        }
+        MarketCalendar marketCalendar = new MarketCalendar(LocalDate.of(2020, 3, 1), LocalDate.of(2020, 3, 31),
+                calendars);
+
+        TradingAlgorithm tradingAlgorithm = new TradingAlgorithm() {
+            @Override
+            public void init() {}
+        };
+        tradingAlgorithm.setBacktestData(new BacktestData(null, null, temporaryFolder.getRoot()) {
+            @Override
+            public MarketCalendar findMarketCalendar(LocalDate from, LocalDate to) {
+                return marketCalendar;
+            }
+        });
+        TimerWheel algorithmTimerWheel = tradingAlgorithm.getTimerWheel();
+        algorithmTimerWheel.reset(TimeUtil.toEpochNanos(LocalDate.of(2020, 3, 2), LocalTime.of(12, 0)));
+
+        // The time has passed on the first day, and the clocks change on the Sunday before the last day
+        List<ZonedDateTime> firedDateTimes = new ArrayList<>();
+        tradingAlgorithm.scheduleDaily(LocalTime.of(10, 0),
+                timer -> firedDateTimes.add(TimeUtil.toNewYorkDateTime(algorithmTimerWheel.getTime())));
+        algorithmTimerWheel.advance(TimeUtil.toEpochNanos(LocalDate.of(2020, 3, 10), LocalTime.MIDNIGHT), null);
+
+        List<LocalDate> firedDates = new ArrayList<>();
+        for (ZonedDateTime firedDateTime : firedDateTimes) {
+            assertEquals(LocalTime.of(10, 0), firedDateTime.toLocalTime());
+            firedDates.add(firedDateTime.toLocalDate());
+        }
+        assertEquals(Arrays.asList(LocalDate.of(2020, 3, 3), LocalDate.of(2020, 3, 5), LocalDate.of(2020, 3, 6),
+                LocalDate.of(2020, 3, 9)), firedDates);
+        assertEquals(1, algorithmTimerWheel.getTimerCount());
+    }
+
+    /**
+     * Records the deadline of a fired timer and asserts that it fired at its deadline.
+     *
+     * @param timer the timer
+     */
+    private void record(Timer timer) {
+        assertEquals(timer.getDeadline(), timerWheel.getTime());
+        firedDeadlines.add(timer.getDeadline());
+    }
+
+    /**
+     * Gets sorted deadlines on both sides of the bucket boundaries of every level of the wheel, and past its range.
+     *
+     * @return the deadlines
+     */
+    private static long[] getLevelBoundaryDeadlines() {
+        TreeSet<Long> deadlines = new TreeSet<>();
+        deadlines.add(START);
+        deadlines.add(START + 1);
+        for (int shift : new int[]{26, 32, 38, 44, 50, 56}) {
+            long boundary = (START >> shift) + 1 << shift;
+            for (long offset : new long[]{-1, 0, 1, 1L << shift}) {
+                deadlines.add(boundary + offset);
+            }
+            deadlines.add(START + (1L << shift) - 1);
+            deadlines.add(START + (3L << shift) + 5);
+        }
+        return deadlines.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Counts the deadlines before a timestamp.
+     *
+     * @param deadlines the sorted deadlines
+     * @param timestamp the timestamp
+     *
+     * @return the count
+     */
+    private static int countBefore(long[] deadlines, long timestamp) {
+        int count = 0;
+        while (count < deadlines.length && deadlines[count] < timestamp) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Converts deadlines to a list.
+     *
+     * @param deadlines the deadlines
+     *
+     * @return the list
+     */
+    private static List<Long> toList(long[] deadlines) {
+        List<Long> list = new ArrayList<>();
+        for (long deadline : deadlines) {
+            list.add(deadline);
+        }
+        return list;
+    }
+}